@@ -556,7 +556,7 @@ final class InstructionTester {
                     this.gui.setBottomProgressValue(i + 1, REPS);
                     this.gui.repaint();
 
-                    if (!exam.realize(false, false, 100L)) {
+                    if (!exam.realize(false, false, 100L + (long) i)) {
                         this.gui.logError("Exam generation failed but gave no error: " + file.getAbsolutePath());
                     }
 
@@ -659,7 +659,7 @@ final class InstructionTester {
                     this.gui.setBottomProgressValue(i + 1, REPS);
                     this.gui.repaint();
 
-                    if (!exam.realize(false, false, 100L)) {
+                    if (!exam.realize(false, false, 100L + (long) i)) {
                         this.gui.logError("Homework generation failed but gave no error: " + file.getAbsolutePath());
                     }
 
@@ -354,7 +354,7 @@ public final class LocalTestingApp extends ClientBase implements ExamContainerIn
                 }
             }
 
-            if (ok && !this.exam.realize(false, false, 12345L)) {
+            if (ok && !this.exam.realize(false, false, 12345L, System.nanoTime())) {
 
                 try {
                     SwingUtilities.invokeAndWait(kill);
@@ -3,6 +3,7 @@ package dev.mathops.app.assessment.qualitycontrol;
 import dev.mathops.assessment.EParserMode;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
+import dev.mathops.assessment.variable.GenerationCostTracker;
 import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.text.builder.HtmlBuilder;
@@ -12,16 +13,33 @@ import dev.mathops.text.parser.xml.XmlContentError;
 
 import javax.swing.SwingWorker;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The worker that perform the scan
  */
 final class ScanWorker extends SwingWorker<String, ProgressUpdate> {
 
+    /** The name of the report file written (in the user's home directory) as problems are scanned. */
+    private static final String REPORT_FILE_NAME = "qc_report.html";
+
+    /** The name of the file of per-problem timings written (in the user's home directory) as problems are scanned. */
+    private static final String TIMINGS_FILE_NAME = "qc_timings.csv";
+
+    /** The number of problems listed in the report of the most expensive problems to generate. */
+    private static final int NUM_EXPENSIVE = 20;
+
     /** The owning window to update with progress. */
     private final MainWindow owner;
 
@@ -90,7 +108,9 @@ final class ScanWorker extends SwingWorker<String, ProgressUpdate> {
                 final String reportText = report.toString();
                 publish(new ProgressUpdate(0.5f, "Scanning Problems...", reportText, 0));
                 final int dirLen = dirPath.length();
+                GenerationCostTracker.reset();
                 scanProblems(report, dirLen, problemFiles, pct1);
+                reportGenerationCosts(report);
             }
 
 //            if (!isCancelled()) {
@@ -117,7 +137,10 @@ final class ScanWorker extends SwingWorker<String, ProgressUpdate> {
     }
 
     /**
-     * Scans all problems, updating the displayed report after each.
+     * Scans all problems in parallel, updating the displayed report as each completes. Each problem is parsed and
+     * checked by its own task (so its realizations share no state with other problems), and results are appended to
+     * the report in order. The report section and time taken for each problem are also appended to report files in the
+     * user's home directory as they complete, so partial results survive a cancelled or interrupted scan.
      *
      * @param report       the report being constructed
      * @param dirLen       the length of the directory path being scanned
@@ -132,39 +155,111 @@ final class ScanWorker extends SwingWorker<String, ProgressUpdate> {
 
         int count = 0;
 
-        for (final File file : problemFiles) {
-            if (isCancelled()) {
-                break;
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        final File home = new File(System.getProperty("user.home"));
+        final File reportFile = new File(home, REPORT_FILE_NAME);
+        final File timingsFile = new File(home, TIMINGS_FILE_NAME);
+
+        try (final Writer reportOut = new FileWriter(reportFile, StandardCharsets.UTF_8);
+             final Writer timingsOut = new FileWriter(timingsFile, StandardCharsets.UTF_8)) {
+
+            reportOut.write("<html><body>\n");
+            timingsOut.write("problem,errors,ms\n");
+
+            final List<Future<ProblemResult>> results = new ArrayList<>(problemFiles.size());
+            for (final File file : problemFiles) {
+                results.add(pool.submit(() -> scanProblem(dirLen, file)));
             }
 
-//                Log.info("Scanning ", file.getAbsolutePath());
+            for (final Future<ProblemResult> future : results) {
+                if (isCancelled()) {
+                    break;
+                }
+
+                final ProblemResult result = future.get();
+                report.add(result.html());
+                count += result.count();
+                pct += step;
 
-            count += scanProblem(report, dirLen, file);
-            pct += step;
+                reportOut.write(result.html());
+                reportOut.flush();
+                timingsOut.write(result.path() + "," + result.count() + "," + result.ms() + "\n");
+                timingsOut.flush();
 
-            publish(new ProgressUpdate(pct, "Scanning Problems...", report.toString(), count));
+                publish(new ProgressUpdate(pct, "Scanning Problems...", report.toString(), count));
 
-            if (count >= this.maxErrors) {
-                break;
+                if (count >= this.maxErrors) {
+                    break;
+                }
             }
+
+            reportOut.write("</body></html>\n");
+        } catch (final IOException | ExecutionException ex) {
+            Log.warning(ex);
+        } catch (final InterruptedException ex) {
+            Log.warning(ex);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
         }
     }
 
+    /**
+     * Appends a table of the problems whose variables were most expensive to generate during the scan to the report,
+     * and logs them.
+     *
+     * @param report the report being constructed
+     */
+    private static void reportGenerationCosts(final HtmlBuilder report) {
+
+        final List<GenerationCostTracker.Cost> costs = GenerationCostTracker.getCosts();
+        final int num = Math.min(NUM_EXPENSIVE, costs.size());
+
+        report.sH(3).add("Most Expensive Problems to Generate").eH(3);
+        report.addln("<table><tr><th>Problem</th><th>Generations</th><th>Avg ms</th><th>Max ms</th>",
+                "<th>Avg re-samples</th><th>Failures</th></tr>");
+        for (int i = 0; i < num; ++i) {
+            final GenerationCostTracker.Cost cost = costs.get(i);
+            report.addln("<tr><td>", cost.identifier, "</td><td>", Long.toString(cost.generations), "</td><td>",
+                    String.format("%.3f", Double.valueOf(cost.getAverageMs())), "</td><td>",
+                    String.format("%.3f", Double.valueOf((double) cost.maxNanos / 1.0e6)), "</td><td>",
+                    String.format("%.1f", Double.valueOf(cost.getAverageResamples())), "</td><td>",
+                    Long.toString(cost.failures), "</td></tr>");
+        }
+        report.addln("</table>");
+
+        GenerationCostTracker.logMostExpensive(NUM_EXPENSIVE);
+    }
+
+    /**
+     * The result of scanning a single problem.
+     *
+     * @param path  the path of the problem file, relative to the directory being scanned
+     * @param html  the report section for the problem
+     * @param count the number of errors/warnings found
+     * @param ms    the time taken to parse and check the problem, in milliseconds
+     */
+    private record ProblemResult(String path, String html, int count, long ms) {
+    }
+
     /**
      * Scans a single problem.
      *
-     * @param report      the report being constructed
      * @param dirLen      the length of the directory path being scanned
      * @param problemFile the problem file to scan
-     * @return the number of errors/warnings found
+     * @return the result
      */
-    private int scanProblem(final HtmlBuilder report, final int dirLen, final File problemFile) {
+    private ProblemResult scanProblem(final int dirLen, final File problemFile) {
 
+        final long start = System.nanoTime();
+
+        final HtmlBuilder report = new HtmlBuilder(500);
         int count = 0;
 
         final String filePath = problemFile.getAbsolutePath();
         final String relativePath = filePath.substring(dirLen);
-        report.addln(relativePath).br();
 
         final String xml = FileLoader.loadFileAsString(problemFile, true);
         if (xml == null) {
@@ -185,22 +280,25 @@ final class ScanWorker extends SwingWorker<String, ProgressUpdate> {
                     }
                 }
 
-//                final long start = System.currentTimeMillis();
-
                 count += QualityControlChecks.problemQualityChecks(report, problemFile, prob);
-
-//                final long end = System.currentTimeMillis();
-//                final long duration = end - start;
-//                Log.info("Tests on ", prob.id, " took " + duration + " ms.");
-
             } catch (final ParsingException ex) {
                 report.sSpan(null, "style='color:red;'").add("ERROR: Exception while parsing file: ", ex.getMessage())
                         .eSpan().br().addln();
                 ++count;
+            } catch (final RuntimeException ex) {
+                report.sSpan(null, "style='color:red;'").add("ERROR: Exception while checking file: ", ex)
+                        .eSpan().br().addln();
+                ++count;
             }
         }
 
-        return count;
+        final long ms = (System.nanoTime() - start) / 1000000L;
+
+        final HtmlBuilder section = new HtmlBuilder(report.length() + 100);
+        section.addln(relativePath, " <span style='color:gray;'>(", Long.toString(ms), " ms)</span>").br();
+        section.add(report.toString());
+
+        return new ProblemResult(relativePath, section.toString(), count, ms);
     }
 
 //    /**
@@ -0,0 +1,221 @@
+package dev.mathops.app.exam;
+
+import dev.mathops.commons.log.Log;
+import dev.mathops.session.EExamRecordType;
+import dev.mathops.session.ExamArchive;
+import dev.mathops.session.ExamWriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Migrates exam records stored in a directory per student per exam into each term's exam archive. Records already in
+ * the archive are skipped, so the migration can be re-run safely (for example, after an interrupted run).
+ *
+ * <p>
+ * Arguments are the data directories to migrate (each containing "student" term directories), defaulting to
+ * "/imp/data". With the "--delete" option, each exam directory is deleted once all of its records have been migrated
+ * and read back from the archive successfully.
+ */
+public enum ExamArchiveMigrator {
+    ;
+
+    /** The number of exam directories examined. */
+    private static int examDirs;
+
+    /** The number of records migrated. */
+    private static int migrated;
+
+    /** The number of records skipped because they were already in the archive. */
+    private static int skipped;
+
+    /** The number of records that failed to migrate. */
+    private static int failed;
+
+    /** The number of exam directories deleted. */
+    private static int deleted;
+
+    /**
+     * Migrates all term directories within a data directory.
+     *
+     * @param dataDir the data directory
+     * @param delete  true to delete exam directories once migrated
+     */
+    private static void migrateDataDir(final File dataDir, final boolean delete) {
+
+        final File[] dirs = dataDir.listFiles();
+
+        if (dirs == null) {
+            Log.warning("Unable to list ", dataDir.getAbsolutePath());
+        } else {
+            for (final File dir : dirs) {
+                if (dir.isDirectory() && dir.getName().startsWith("student")) {
+                    migrateTerm(dir, delete);
+                }
+            }
+        }
+    }
+
+    /**
+     * Migrates all exam directories within a term directory.
+     *
+     * @param termDir the term directory
+     * @param delete  true to delete exam directories once migrated
+     */
+    private static void migrateTerm(final File termDir, final boolean delete) {
+
+        Log.info("Migrating ", termDir.getAbsolutePath());
+
+        final ExamArchive archive = ExamArchive.get(new File(termDir, ExamWriter.ARCHIVE_DIR));
+        final File[] studentDirs = termDir.listFiles();
+
+        if (archive == null || studentDirs == null) {
+            Log.warning("Unable to migrate ", termDir.getAbsolutePath());
+        } else {
+            for (final File studentDir : studentDirs) {
+                if (studentDir.isDirectory() && !ExamWriter.ARCHIVE_DIR.equals(studentDir.getName())) {
+                    final File[] exams = new File(studentDir, "exams").listFiles();
+
+                    if (exams != null) {
+                        for (final File examDir : exams) {
+                            if (examDir.isDirectory()) {
+                                migrateExam(archive, studentDir.getName(), examDir, delete);
+                            }
+                        }
+                    }
+                }
+            }
+
+            archive.close();
+        }
+    }
+
+    /**
+     * Migrates the records in a single exam directory.
+     *
+     * @param archive   the archive into which to migrate records
+     * @param studentId the student ID
+     * @param examDir   the exam directory
+     * @param delete    true to delete the exam directory once migrated
+     */
+    private static void migrateExam(final ExamArchive archive, final String studentId, final File examDir,
+                                    final boolean delete) {
+
+        final String name = examDir.getName();
+        final long serial;
+
+        try {
+            serial = name.startsWith("P") ? -Long.parseLong(name.substring(1)) : Long.parseLong(name);
+        } catch (final NumberFormatException ex) {
+            Log.warning("Skipping exam directory with unrecognized name: ", examDir.getAbsolutePath());
+            return;
+        }
+
+        ++examDirs;
+        boolean allMigrated = true;
+
+        final List<File> migratedFiles = new ArrayList<>(4);
+
+        for (final EExamRecordType type : EExamRecordType.values()) {
+            final File file = findFile(examDir, type);
+
+            if (file != null) {
+                if (archive.contains(studentId, serial, type)) {
+                    ++skipped;
+                    migratedFiles.add(file);
+                } else {
+                    final byte[] data = ExamWriter.readLegacyFile(file);
+
+                    if (data != null && archive.appendIfAbsent(studentId, serial, type, data)
+                        && Arrays.equals(data, archive.read(studentId, serial, type))) {
+                        ++migrated;
+                        migratedFiles.add(file);
+                    } else {
+                        ++failed;
+                        allMigrated = false;
+                        Log.warning("Failed to migrate ", file.getAbsolutePath());
+                    }
+                }
+            }
+        }
+
+        if (delete && allMigrated) {
+            final File[] remaining = examDir.listFiles();
+            if (remaining != null && remaining.length == migratedFiles.size()) {
+                boolean ok = true;
+                for (final File file : migratedFiles) {
+                    ok = file.delete() && ok;
+                }
+                if (ok && examDir.delete()) {
+                    ++deleted;
+                }
+            } else {
+                Log.warning("Not deleting ", examDir.getAbsolutePath(), ", which contains other files");
+            }
+        }
+    }
+
+    /**
+     * Finds the file in an exam directory that holds a type of record.
+     *
+     * @param examDir the exam directory
+     * @param type    the record type
+     * @return the file; {@code null} if not present
+     */
+    private static File findFile(final File examDir, final EExamRecordType type) {
+
+        File result = new File(examDir, type.legacyFilename);
+
+        if (!result.exists()) {
+            result = null;
+
+            // Older directories named the exam XML file after the exam version
+            if (type == EExamRecordType.EXAM) {
+                final File[] files = examDir.listFiles();
+                if (files != null) {
+                    for (final File file : files) {
+                        if (file.getName().endsWith(".xml.Z")) {
+                            result = file;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the migration.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        boolean delete = false;
+        final List<File> dirs = new ArrayList<>(2);
+
+        for (final String arg : args) {
+            if ("--delete".equals(arg)) {
+                delete = true;
+            } else {
+                dirs.add(new File(arg));
+            }
+        }
+
+        if (dirs.isEmpty()) {
+            dirs.add(new File("/imp/data"));
+        }
+
+        for (final File dir : dirs) {
+            migrateDataDir(dir, delete);
+        }
+
+        Log.info("Examined ", Integer.toString(examDirs), " exam directories: migrated ", Integer.toString(migrated),
+                " records, skipped ", Integer.toString(skipped), " already archived, ", Integer.toString(failed),
+                " failed, ", Integer.toString(deleted), " directories deleted");
+    }
+}
@@ -0,0 +1,263 @@
+package dev.mathops.app.exam;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The output stage of the exam harvester: a single thread that takes the CSV rows for each harvested exam from a
+ * bounded queue and writes them to the CSV file. Producers block when the queue is full, so output back-pressures
+ * parsing.
+ *
+ * <p>
+ * Progress is checkpointed to a progress file every {@code CHECKPOINT_INTERVAL} exams: the keys of the exams written
+ * since the last checkpoint, then a line "#" followed by the length of the CSV file once those exams' rows have been
+ * flushed. An interrupted harvest resumes by truncating the CSV file to the last checkpoint length and skipping the
+ * exams recorded before that checkpoint.
+ */
+final class HarvestSink implements Runnable {
+
+    /** The CSV header line. */
+    private static final String CSV_HEADER = "Serial,Student,Course,Unit,Version,Proctored,Remote,Item\r\n";
+
+    /** The number of exams between checkpoints. */
+    private static final int CHECKPOINT_INTERVAL = 500;
+
+    /** The interval between throughput reports, in nanoseconds. */
+    private static final long REPORT_INTERVAL = 10_000_000_000L;
+
+    /** The queue capacity. */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /** A queue entry that marks the end of output. */
+    private static final Harvested END = new Harvested(null, null);
+
+    /** The queue of harvested exams. */
+    private final BlockingQueue<Harvested> queue;
+
+    /** The stream to which the CSV file is written. */
+    private final FileOutputStream csvStream;
+
+    /** The writer for the CSV file. */
+    private final Writer csv;
+
+    /** The writer for the progress file. */
+    private final Writer progress;
+
+    /** The keys of exams written since the last checkpoint. */
+    private final List<String> pending;
+
+    /** The thread that writes output. */
+    private final Thread thread;
+
+    /** The time output started. */
+    private final long startTime;
+
+    /** The number of exams written. */
+    private long exams;
+
+    /** An error that stopped output; {@code null} if none. */
+    private IOException failure;
+
+    /**
+     * Constructs a new {@code HarvestSink}.
+     *
+     * @param csvFile      the CSV file
+     * @param progressFile the progress file
+     * @param resumeLength the CSV file length at the last checkpoint of an interrupted harvest; 0 to start over
+     * @throws IOException if the files could not be opened
+     */
+    HarvestSink(final File csvFile, final File progressFile, final long resumeLength) throws IOException {
+
+        final boolean resume = resumeLength > 0L;
+
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.csvStream = new FileOutputStream(csvFile, resume);
+        if (resume) {
+            this.csvStream.getChannel().truncate(resumeLength);
+        }
+        this.csv = new BufferedWriter(new OutputStreamWriter(this.csvStream, StandardCharsets.UTF_8), 1 << 16);
+        this.progress = new BufferedWriter(new FileWriter(progressFile, StandardCharsets.UTF_8, resume));
+        this.pending = new ArrayList<>(CHECKPOINT_INTERVAL);
+
+        if (!resume) {
+            this.csv.write(CSV_HEADER);
+        }
+
+        this.thread = new Thread(this, "Harvester output");
+        this.startTime = System.nanoTime();
+        this.thread.start();
+    }
+
+    /**
+     * Loads a progress file from an interrupted harvest.
+     *
+     * @param progressFile the progress file
+     * @param done         a collection to which to add the keys of exams written before the last checkpoint
+     * @return the length of the CSV file at the last checkpoint (0 if there was none)
+     * @throws IOException if the file could not be read
+     */
+    static long loadProgress(final File progressFile, final Collection<? super String> done) throws IOException {
+
+        long length = 0L;
+        final List<String> keys = new ArrayList<>(CHECKPOINT_INTERVAL);
+
+        try (final BufferedReader in = new BufferedReader(new FileReader(progressFile, StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith("#")) {
+                    try {
+                        length = Long.parseLong(line.substring(1));
+                        done.addAll(keys);
+                        keys.clear();
+                    } catch (final NumberFormatException ex) {
+                        // A torn final line from an interruption
+                        break;
+                    }
+                } else {
+                    keys.add(line);
+                }
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Adds the CSV rows for a harvested exam to the output queue, blocking while the queue is full.
+     *
+     * @param key  the exam key, recorded in the progress file
+     * @param rows the CSV rows (empty if the exam could not be read)
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    void put(final String key, final String rows) throws InterruptedException {
+
+        this.queue.put(new Harvested(key, rows));
+    }
+
+    /**
+     * Writes queued output until the end marker is taken from the queue.
+     */
+    @Override
+    public void run() {
+
+        long nextReport = this.startTime + REPORT_INTERVAL;
+
+        try {
+            for (Harvested item = this.queue.take(); item != END; item = this.queue.take()) {
+                if (this.failure == null) {
+                    try {
+                        this.csv.write(item.rows());
+                        this.pending.add(item.key());
+                        ++this.exams;
+
+                        if (this.pending.size() >= CHECKPOINT_INTERVAL) {
+                            checkpoint();
+                        }
+                    } catch (final IOException ex) {
+                        // Keep draining the queue so producers do not block forever
+                        Log.warning("Failed to write harvested exam data", ex);
+                        this.failure = ex;
+                    }
+                }
+
+                final long now = System.nanoTime();
+                if (now > nextReport) {
+                    nextReport = now + REPORT_INTERVAL;
+                    Log.info("  ", Long.toString(this.exams), " exams (", formatRate(this.exams, now), " exams/s)");
+                }
+            }
+
+            if (this.failure == null) {
+                checkpoint();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final IOException ex) {
+            Log.warning("Failed to write harvested exam data", ex);
+            this.failure = ex;
+        }
+    }
+
+    /**
+     * Flushes the CSV file and records a checkpoint in the progress file.
+     *
+     * @throws IOException if there is an error writing either file
+     */
+    private void checkpoint() throws IOException {
+
+        this.csv.flush();
+        final long length = this.csvStream.getChannel().position();
+
+        for (final String key : this.pending) {
+            this.progress.write(key);
+            this.progress.write('\n');
+        }
+        this.progress.write("#" + length + "\n");
+        this.progress.flush();
+        this.pending.clear();
+    }
+
+    /**
+     * Marks the end of output, waits for all queued output to be written, and closes the files.
+     *
+     * @return {@code true} if all output was written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean finish() throws InterruptedException {
+
+        this.queue.put(END);
+        this.thread.join();
+
+        try {
+            this.csv.close();
+            this.progress.close();
+        } catch (final IOException ex) {
+            Log.warning("Failed to close harvested exam data", ex);
+            this.failure = ex;
+        }
+
+        final long now = System.nanoTime();
+        Log.info("  Wrote ", Long.toString(this.exams), " exams in ",
+                String.format("%.1f", Double.valueOf((double) (now - this.startTime) / 1.0e9)), " s (",
+                formatRate(this.exams, now), " exams/s)");
+
+        return this.failure == null;
+    }
+
+    /**
+     * Formats the throughput so far.
+     *
+     * @param count the number of exams written
+     * @param now   the current time
+     * @return the formatted throughput, in exams per second
+     */
+    private String formatRate(final long count, final long now) {
+
+        final double seconds = (double) Math.max(1L, now - this.startTime) / 1.0e9;
+
+        return String.format("%.1f", Double.valueOf((double) count / seconds));
+    }
+
+    /**
+     * A harvested exam.
+     *
+     * @param key  the exam key
+     * @param rows the CSV rows
+     */
+    private record Harvested(String key, String rows) {
+    }
+}
@@ -6,161 +6,312 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
+import dev.mathops.session.EExamRecordType;
+import dev.mathops.session.ExamArchive;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.txn.messages.AbstractMessageBase;
 import dev.mathops.session.txn.messages.GetExamReply;
 import dev.mathops.session.txn.messages.MessageFactory;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.GZIPInputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Harvests exam data stored in server directories and generates a CSV file.
+ * Harvests exam data stored in server directories and generates a CSV file for each semester.
+ *
+ * <p>
+ * Each semester's exam archive is scanned sequentially, then student directories are walked in parallel for exams
+ * that have not been migrated into the archive. Each exam found is decompressed and parsed by a pool with one thread
+ * per core, whose bounded queue makes the scanner and walkers run tasks themselves when the pool falls behind. Rows
+ * are streamed to the CSV file through a {@code HarvestSink}, whose bounded queue in turn throttles the parsers.
+ *
+ * <p>
+ * A semester whose CSV file exists without a progress file has been harvested, and is skipped. A semester with a
+ * progress file was interrupted, and resumes from its last checkpoint. The "--restart" argument harvests every semester
+ * from the beginning.
  */
 public enum Harvester {
     ;
 
+    /** The name of the CSV file in each semester's directory. */
+    private static final String CSV_FILENAME = "exam_data.csv";
+
+    /** The name of the progress file in each semester's directory. */
+    private static final String PROGRESS_FILENAME = "exam_data.csv.progress";
+
+    /** The number of threads that walk student directories. */
+    private static final int WALKER_THREADS = 4;
+
     /**
      * Do the actual harvesting.
+     *
+     * @param restart true to harvest every semester from the beginning
      */
-    private static void harvest() {
-
-        final File impback = new File("/impback");
-        final File[] dirsBaK = impback.listFiles();
-        if (dirsBaK != null) {
-            for (final File dir : dirsBaK) {
-                if (dir.getName().startsWith("student")) {
-                    processSemester(dir);
-                }
-            }
-        }
+    private static void harvest(final boolean restart) {
+
+        final long start = System.nanoTime();
+        long total = 0L;
 
-        final File impcurrent = new File("/imp/data");
-        final File[] dirsCurrent = impcurrent.listFiles();
-        if (dirsCurrent != null) {
-            for (final File dir : dirsCurrent) {
-                if (dir.getName().startsWith("student")) {
-                    processSemester(dir);
+        for (final File base : new File[]{new File("/impback"), new File("/imp/data")}) {
+            final File[] dirs = base.listFiles();
+            if (dirs != null) {
+                for (final File dir : dirs) {
+                    if (dir.getName().startsWith("student")) {
+                        total += processSemester(dir, restart);
+                    }
                 }
             }
         }
+
+        final double seconds = (double) (System.nanoTime() - start) / 1.0e9;
+        Log.info("Harvested ", Long.toString(total), " exams in ", String.format("%.1f", Double.valueOf(seconds)),
+                " s (", String.format("%.1f", Double.valueOf((double) total / Math.max(seconds, 0.001))),
+                " exams/s)");
     }
 
     /**
      * Processes a single semester's data.
      *
-     * @param dir the directory with semester data
+     * @param dir     the directory with semester data
+     * @param restart true to harvest from the beginning even if the semester was harvested or interrupted
+     * @return the number of exams harvested
      */
-    private static void processSemester(final File dir) {
+    private static long processSemester(final File dir, final boolean restart) {
+
+        final File target = new File(dir, CSV_FILENAME);
+        final File progressFile = new File(dir, PROGRESS_FILENAME);
+
+        if (!restart && target.exists() && !progressFile.exists()) {
+            Log.info("SKIPPING (already harvested): " + dir.getAbsolutePath());
+            return 0L;
+        }
 
         Log.info("PROCESSING: " + dir.getAbsolutePath());
 
-        final File target = new File(dir, "exam_data.csv");
-        try (final FileWriter fw = new FileWriter(target, StandardCharsets.UTF_8); //
-             final BufferedWriter out = new BufferedWriter(fw)) {
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        final AtomicLong count = new AtomicLong();
+        boolean ok = false;
+
+        try {
+            long resumeLength = 0L;
+            if (!restart && target.exists() && progressFile.exists()) {
+                resumeLength = HarvestSink.loadProgress(progressFile, done);
+                if (resumeLength > 0L) {
+                    Log.info("  Resuming after ", Integer.toString(done.size()), " exams");
+                } else {
+                    done.clear();
+                }
+            }
+
+            final HarvestSink sink = new HarvestSink(target, progressFile, resumeLength);
 
-            out.write("Serial,Student,Course,Unit,Version,Proctored,Remote,Item\r\n");
+            final int cores = Runtime.getRuntime().availableProcessors();
+            final ThreadPoolExecutor parsers = new ThreadPoolExecutor(cores, cores, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(cores * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+            final ExecutorService walkers = Executors.newFixedThreadPool(WALKER_THREADS);
 
-            final File[] list = dir.listFiles();
-            if (list != null) {
-                for (final File file : list) {
-                    Log.finest(CoreConstants.DOT);
-                    if ("888888888".equals(file.getName())) {
-                        continue;
-                    }
+            try {
+                final Set<String> archived = processArchive(dir, done, parsers, sink, count);
 
-                    if (file.getName().startsWith("8")) {
-                        processStudent(file, out);
+                final File[] list = dir.listFiles();
+                if (list != null) {
+                    for (final File file : list) {
+                        final String name = file.getName();
+                        if (name.startsWith("8") && !"888888888".equals(name)) {
+                            walkers.execute(() -> processStudent(file, archived, done, parsers, sink, count));
+                        }
                     }
                 }
-                Log.fine(CoreConstants.EMPTY);
+
+                walkers.shutdown();
+                awaitForever(walkers);
+                parsers.shutdown();
+                awaitForever(parsers);
+            } finally {
+                walkers.shutdownNow();
+                parsers.shutdownNow();
+                ok = sink.finish();
             }
         } catch (final IOException ex) {
             Log.warning(ex);
+        } catch (final InterruptedException ex) {
+            Log.warning("Harvest interrupted; it will resume from the last checkpoint");
+            Thread.currentThread().interrupt();
+        }
+
+        if (ok && !Thread.currentThread().isInterrupted() && !progressFile.delete()) {
+            Log.warning("Unable to delete ", progressFile.getAbsolutePath());
+        }
+
+        return count.get();
+    }
+
+    /**
+     * Waits for an executor that has been shut down to terminate.
+     *
+     * @param executor the executor
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitForever(final ExecutorService executor) throws InterruptedException {
+
+        while (!executor.awaitTermination(1L, TimeUnit.MINUTES)) {
+            Log.finest(CoreConstants.DOT);
+        }
+    }
+
+    /**
+     * Processes all exams in a semester's exam archive, in a single sequential pass over the archive. Parsing is
+     * submitted to the parser pool.
+     *
+     * @param dir     the directory with semester data
+     * @param done    the keys of exams already harvested (from an interrupted harvest)
+     * @param parsers the parser pool
+     * @param sink    the output sink
+     * @param count   the count of exams harvested
+     * @return the set of "studentId/serial" keys of all exams in the archive
+     */
+    private static Set<String> processArchive(final File dir, final Set<String> done, final Executor parsers,
+                                              final HarvestSink sink, final AtomicLong count) {
+
+        final Set<String> archived = new HashSet<>(10000);
+        final File archiveDir = new File(dir, ExamWriter.ARCHIVE_DIR);
+
+        if (archiveDir.isDirectory()) {
+            final ExamArchive archive = ExamArchive.get(archiveDir);
+
+            if (archive != null) {
+                archive.scan(EExamRecordType.EXAM, rec -> {
+                    final String studentId = rec.studentId();
+                    final String key = studentId + CoreConstants.SLASH + Long.toString(rec.serial());
+                    final String serial = ExamWriter.serialName(rec.serial());
+                    archived.add(key);
+
+                    if (studentId.startsWith("8") && !"888888888".equals(studentId) && !done.contains(key)) {
+                        parsers.execute(() -> emit(key, studentId, serial, parseExam(rec.data()), sink, count));
+                    }
+                });
+                archive.close();
+            }
         }
 
+        return archived;
     }
 
     /**
-     * Processes a single student's folder within a single semester's data.
+     * Processes a single student's folder within a single semester's data. Reading and parsing is submitted to the
+     * parser pool.
      *
-     * @param dir the directory with student data
-     * @param out the writer to which to write the output
+     * @param dir      the directory with student data
+     * @param archived the set of "studentId/serial" keys of exams harvested from the exam archive
+     * @param done     the keys of exams already harvested (from an interrupted harvest)
+     * @param parsers  the parser pool
+     * @param sink     the output sink
+     * @param count    the count of exams harvested
      */
-    private static void processStudent(final File dir, final Writer out) {
+    private static void processStudent(final File dir, final Collection<String> archived,
+                                       final Collection<String> done, final Executor parsers,
+                                       final HarvestSink sink, final AtomicLong count) {
 
         final String studentId = dir.getName();
 
         final File[] exams = new File(dir, "exams").listFiles();
         if (exams != null) {
-            for (final File exam : exams) {
-                processExam(studentId, exam, out);
+            for (final File examDir : exams) {
+                String name = examDir.getName();
+
+                if (name.endsWith(")")) {
+                    final int start = name.indexOf('(');
+                    if (start >= 0) {
+                        name = name.substring(start, name.length() - 1);
+                    }
+                }
+
+                final String serial = name;
+                final String key = studentId + CoreConstants.SLASH
+                                   + (serial.startsWith("P") ? "-" + serial.substring(1) : serial);
+
+                if (!archived.contains(key) && !done.contains(key)) {
+                    parsers.execute(() -> emit(key, studentId, serial, readExam(examDir), sink, count));
+                }
             }
         }
     }
 
     /**
-     * Processes a single exam output folder.
+     * Formats the CSV rows for an exam and sends them to the output sink.
      *
+     * @param key       the exam key
      * @param studentId the student ID
-     * @param examDir   the exam folder
-     * @param out       the writer to which to write the output
+     * @param serial    the serial number
+     * @param exam      the exam; {@code null} if it could not be read
+     * @param sink      the output sink
+     * @param count     the count of exams harvested
      */
-    private static void processExam(final String studentId, final File examDir, final Writer out) {
-
-        final HtmlBuilder htm = new HtmlBuilder(100);
-
-        final ExamObj exam = readExam(examDir);
-        if (exam != null) {
-            final String course = exam.course;
-            final String unit = exam.courseUnit;
-            final String version = exam.examVersion;
-            final boolean proctored = exam.proctored;
-            final boolean remote = exam.remote;
-            String serial = examDir.getName();
-
-            if (serial.endsWith(")")) {
-                final int start = serial.indexOf('(');
-                if (start >= 0) {
-                    serial = serial.substring(start, serial.length() - 1);
-                }
-            }
+    private static void emit(final String key, final String studentId, final String serial, final ExamObj exam,
+                             final HarvestSink sink, final AtomicLong count) {
 
-            for (int s = 0; s < exam.getNumSections(); ++s) {
-                final ExamSection es = exam.getSection(s);
-                for (int p = 0; p < es.getNumProblems(); ++p) {
-                    final ExamProblem ep = es.getPresentedProblem(p);
-                    if (ep != null) {
-                        final AbstractProblemTemplate sel = ep.getSelectedProblem();
-                        if (sel != null && sel.id != null) {
-                            final String ref = sel.id;
-
-                            htm.addln(serial, CoreConstants.COMMA, studentId, CoreConstants.COMMA,
-                                    course, CoreConstants.COMMA, unit, CoreConstants.COMMA, version,
-                                    CoreConstants.COMMA, proctored //
-                                            ? "Y" : "N",
-                                    CoreConstants.COMMA, remote ? "Y" : "N",
-                                    CoreConstants.COMMA, ref);
-                            try {
-                                out.write(htm.toString());
-                            } catch (final IOException ex) {
-                                Log.warning(ex);
-                            }
-                            htm.reset();
-                        }
+        final String rows = exam == null ? CoreConstants.EMPTY : formatExam(studentId, serial, exam);
+
+        try {
+            sink.put(key, rows);
+            count.incrementAndGet();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Formats the CSV rows for a single exam.
+     *
+     * @param studentId the student ID
+     * @param serial    the serial number, formatted as in exam directory names ("P" and a number for practice exams)
+     * @param exam      the exam
+     * @return the CSV rows
+     */
+    static String formatExam(final String studentId, final String serial, final ExamObj exam) {
+
+        final HtmlBuilder htm = new HtmlBuilder(1000);
+
+        final String course = exam.course;
+        final String unit = exam.courseUnit;
+        final String version = exam.examVersion;
+        final boolean proctored = exam.proctored;
+        final boolean remote = exam.remote;
+
+        for (int s = 0; s < exam.getNumSections(); ++s) {
+            final ExamSection es = exam.getSection(s);
+            for (int p = 0; p < es.getNumProblems(); ++p) {
+                final ExamProblem ep = es.getPresentedProblem(p);
+                if (ep != null) {
+                    final AbstractProblemTemplate sel = ep.getSelectedProblem();
+                    if (sel != null && sel.id != null) {
+                        final String ref = sel.id;
+
+                        htm.addln(serial, CoreConstants.COMMA, studentId, CoreConstants.COMMA,
+                                course, CoreConstants.COMMA, unit, CoreConstants.COMMA, version,
+                                CoreConstants.COMMA, proctored //
+                                        ? "Y" : "N",
+                                CoreConstants.COMMA, remote ? "Y" : "N",
+                                CoreConstants.COMMA, ref);
                     }
                 }
             }
         }
+
+        return htm.toString();
     }
 
     /**
@@ -173,66 +324,53 @@ public enum Harvester {
 
         ExamObj exam = null;
 
-        final File file = new File(examDir, ExamWriter.EXAM_FILE);
-        byte[] result = null;
+        File file = new File(examDir, ExamWriter.EXAM_FILE);
 
-        if (file.exists()) {
-            try (final InputStream in = new GZIPInputStream(new FileInputStream(file));
-                 final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-
-                final byte[] buffer = new byte[1024];
-                int len = in.read(buffer);
-
-                while (len > 0) {
-                    baos.write(buffer, 0, len);
-                    len = in.read(buffer);
-                }
-                result = baos.toByteArray();
-            } catch (final IOException ex) {
-                Log.warning("Failed to read exam file ", file.getAbsolutePath(), ex);
-            }
-        } else {
+        if (!file.exists()) {
             // Old directories have HTML as well as xml
+            file = null;
             final File[] files = examDir.listFiles();
-            boolean found = false;
-            for (final File f : files) {
-                if (f.getName().endsWith(".xml.Z")) {
-                    try (final InputStream in = new GZIPInputStream(new FileInputStream(f));
-                         final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-
-                        final byte[] buffer = new byte[1024];
-                        int len = in.read(buffer);
-
-                        while (len > 0) {
-                            baos.write(buffer, 0, len);
-                            len = in.read(buffer);
-                        }
-                        result = baos.toByteArray();
-                    } catch (final IOException ex) {
-                        Log.warning("Failed to read exam file ",
-                                file.getAbsolutePath(), ex);
+            if (files != null) {
+                for (final File f : files) {
+                    if (f.getName().endsWith(".xml.Z")) {
+                        file = f;
+                        break;
                     }
-                    found = true;
-                    break;
                 }
             }
+        }
 
-            if (!found) {
-                Log.warning("Can't find exam file in ", examDir.getAbsolutePath());
+        if (file == null) {
+            Log.warning("Can't find exam file in ", examDir.getAbsolutePath());
+        } else {
+            final byte[] result = ExamWriter.readLegacyFile(file);
+            if (result != null) {
+                exam = parseExam(result);
             }
         }
 
-        if (result != null) {
-            final AbstractMessageBase msg = MessageFactory
-                    .parseMessage(new String(result, StandardCharsets.UTF_8).toCharArray());
+        return exam;
+    }
 
-            if (msg instanceof GetExamReply) {
-                exam = ((GetExamReply) msg).presentedExam;
+    /**
+     * Parses a presented exam from the XML of the reply that presented it.
+     *
+     * @param data the reply XML
+     * @return the parsed exam; {@code null} on any error
+     */
+    private static ExamObj parseExam(final byte[] data) {
 
-            } else {
-                Log.warning("Parsed object is ", msg.getClass().getName(),
-                        " rather than GetExamReply");
-            }
+        ExamObj exam = null;
+
+        final AbstractMessageBase msg = MessageFactory
+                .parseMessage(new String(data, StandardCharsets.UTF_8).toCharArray());
+
+        if (msg instanceof GetExamReply) {
+            exam = ((GetExamReply) msg).presentedExam;
+
+        } else if (msg != null) {
+            Log.warning("Parsed object is ", msg.getClass().getName(),
+                    " rather than GetExamReply");
         }
 
         return exam;
@@ -245,6 +383,6 @@ public enum Harvester {
      */
     public static void main(final String... args) {
 
-        harvest();
+        harvest(args.length > 0 && "--restart".equals(args[0]));
     }
 }
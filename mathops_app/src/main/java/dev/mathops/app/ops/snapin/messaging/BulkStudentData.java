@@ -0,0 +1,397 @@
+package dev.mathops.app.ops.snapin.messaging;
+
+import dev.mathops.commons.log.Log;
+import dev.mathops.db.Cache;
+import dev.mathops.db.DbConnection;
+import dev.mathops.db.field.TermKey;
+import dev.mathops.db.schema.ESchema;
+import dev.mathops.db.schema.legacy.impl.RawSttermLogic;
+import dev.mathops.db.schema.legacy.rec.RawSpecialStus;
+import dev.mathops.db.schema.legacy.rec.RawStexam;
+import dev.mathops.db.schema.legacy.rec.RawSthomework;
+import dev.mathops.db.schema.legacy.rec.RawStmilestone;
+import dev.mathops.db.schema.legacy.rec.RawStmsg;
+import dev.mathops.db.schema.legacy.rec.RawStterm;
+import dev.mathops.db.schema.legacy.rec.RawStudent;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The per-student rows needed to compute the course status of a population of students in the active term, loaded with
+ * a small number of set-based queries and indexed in memory by student ID.
+ *
+ * <p>
+ * Computing status one student at a time issues six to ten queries per student (student, stterm, stmilestone, stexam,
+ * sthomework, stmsg, and special_stus rows). This class instead loads the stterm rows for the term in one query, and
+ * the remaining tables in batches of students using "stu_id IN (...)" queries, so a population of several thousand
+ * students is loaded in a few dozen round trips.
+ *
+ * <p>
+ * Each accessor returns the same rows the corresponding per-student query would return (the same filters are applied,
+ * either in the query or in memory), as a new list the caller may modify. Students not in the population loaded have
+ * no data.
+ *
+ * <p>
+ * Neither these queries nor the per-student queries order their results, so each student's rows are sorted (see
+ * {@code sortStudentRows}) into an order that does not depend on the order in which the database returns rows.
+ * {@code EmailsNeeded} applies the same sort to rows it queries per student, so both paths see identical lists.
+ */
+public final class BulkStudentData {
+
+    /** The number of student IDs in each batched query. */
+    private static final int BATCH_SIZE = 500;
+
+    /** The order of a student's exams: by completion date and time. */
+    private static final Comparator<RawStexam> EXAM_ORDER = new RawStexam.FinishDateTimeComparator();
+
+    /** The order of a student's homeworks: by completion date and time. */
+    private static final Comparator<RawSthomework> HOMEWORK_ORDER = new RawSthomework.FinishDateTimeComparator();
+
+    /** The order of a student's messages: by date sent. */
+    private static final Comparator<RawStmsg> MESSAGE_ORDER = Comparator.comparing((RawStmsg row) -> row.msgDt,
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /** The order of a student's special category memberships: by category, then start date. */
+    private static final Comparator<RawSpecialStus> SPECIAL_ORDER = Comparator.comparing(
+            (RawSpecialStus row) -> row.stuType, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(row -> row.startDt, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /** The term whose data was loaded. */
+    private final TermKey term;
+
+    /** Student records, keyed by student ID. */
+    private final Map<String, RawStudent> students;
+
+    /** Student term records for the term, keyed by student ID. */
+    private final Map<String, RawStterm> stterms;
+
+    /** Student milestone overrides for the term, keyed by student ID. */
+    private final Map<String, List<RawStmilestone>> stmilestones;
+
+    /** Passed or failed exams, keyed by student ID. */
+    private final Map<String, List<RawStexam>> exams;
+
+    /** Passed or failed homeworks, keyed by student ID. */
+    private final Map<String, List<RawSthomework>> homeworks;
+
+    /** Messages sent, keyed by student ID. */
+    private final Map<String, List<RawStmsg>> messages;
+
+    /** Special student category memberships, keyed by student ID. */
+    private final Map<String, List<RawSpecialStus>> specials;
+
+    /**
+     * Constructs a new {@code BulkStudentData}.
+     *
+     * @param theTerm     the term whose data was loaded
+     * @param numStudents the number of students in the population
+     */
+    private BulkStudentData(final TermKey theTerm, final int numStudents) {
+
+        this.term = theTerm;
+
+        final int capacity = Math.max(16, numStudents * 4 / 3);
+        this.students = new HashMap<>(capacity);
+        this.stterms = new HashMap<>(capacity);
+        this.stmilestones = new HashMap<>(capacity);
+        this.exams = new HashMap<>(capacity);
+        this.homeworks = new HashMap<>(capacity);
+        this.messages = new HashMap<>(capacity);
+        this.specials = new HashMap<>(capacity);
+    }
+
+    /**
+     * Loads data for a population of students.
+     *
+     * @param cache      the data cache
+     * @param term       the term (generally the active term)
+     * @param studentIds the IDs of the students in the population
+     * @return the loaded data
+     * @throws SQLException if there is an error accessing the database
+     */
+    public static BulkStudentData load(final Cache cache, final TermKey term,
+                                       final Collection<String> studentIds) throws SQLException {
+
+        final long start = System.currentTimeMillis();
+
+        final BulkStudentData result = new BulkStudentData(term, studentIds.size());
+
+        for (final RawStterm row : RawSttermLogic.queryAllByTerm(cache, term)) {
+            if (studentIds.contains(row.stuId)) {
+                result.stterms.put(row.stuId, row);
+            }
+        }
+
+        final List<String> ids = new ArrayList<>(studentIds);
+        final int count = ids.size();
+
+        final DbConnection conn = cache.checkOutConnection(ESchema.LEGACY);
+        try {
+            for (int i = 0; i < count; i += BATCH_SIZE) {
+                final List<String> batch = ids.subList(i, Math.min(count, i + BATCH_SIZE));
+                result.loadBatch(conn, batch);
+            }
+        } finally {
+            Cache.checkInConnection(conn);
+        }
+
+        result.exams.values().forEach(rows -> rows.sort(EXAM_ORDER));
+        result.homeworks.values().forEach(rows -> rows.sort(HOMEWORK_ORDER));
+        result.messages.values().forEach(rows -> rows.sort(MESSAGE_ORDER));
+        result.specials.values().forEach(rows -> rows.sort(SPECIAL_ORDER));
+
+        final long elapsed = System.currentTimeMillis() - start;
+        Log.info("Loaded data for ", Integer.toString(count), " students in ", Long.toString(elapsed), " ms");
+
+        return result;
+    }
+
+    /**
+     * Loads the data for one batch of students.
+     *
+     * @param conn  the database connection
+     * @param batch the student IDs in the batch
+     * @throws SQLException if there is an error accessing the database
+     */
+    private void loadBatch(final DbConnection conn, final List<String> batch) throws SQLException {
+
+        final String in = makeInClause(batch.size());
+
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM student WHERE stu_id" + in)) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawStudent row = RawStudent.fromResultSet(rs);
+                    this.students.put(row.stuId, row);
+                }
+            }
+        }
+
+        // Filtered to the term in memory; track is filtered when rows are retrieved
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM stmilestone WHERE stu_id" + in)) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawStmilestone row = RawStmilestone.fromResultSet(rs);
+                    if (this.term.equals(row.termKey)) {
+                        this.stmilestones.computeIfAbsent(row.stuId, k -> new ArrayList<>(10)).add(row);
+                    }
+                }
+            }
+        }
+
+        // Same filter as RawStexamLogic.queryByStudent with "all" false
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM stexam WHERE stu_id" + in
+                + " AND (passed='Y' OR passed='N')")) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawStexam row = RawStexam.fromResultSet(rs);
+                    this.exams.computeIfAbsent(row.stuId, k -> new ArrayList<>(20)).add(row);
+                }
+            }
+        }
+
+        // Same filter as RawSthomeworkLogic.queryByStudent with "all" false
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM sthomework WHERE stu_id" + in
+                + " AND (passed='Y' OR passed='N')")) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawSthomework row = RawSthomework.fromResultSet(rs);
+                    this.homeworks.computeIfAbsent(row.stuId, k -> new ArrayList<>(40)).add(row);
+                }
+            }
+        }
+
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM stmsg WHERE stu_id" + in)) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawStmsg row = RawStmsg.fromResultSet(rs);
+                    this.messages.computeIfAbsent(row.stuId, k -> new ArrayList<>(10)).add(row);
+                }
+            }
+        }
+
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT * FROM special_stus WHERE stu_id" + in)) {
+            bind(ps, batch);
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final RawSpecialStus row = RawSpecialStus.fromResultSet(rs);
+                    this.specials.computeIfAbsent(row.stuId, k -> new ArrayList<>(2)).add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the rows queried for one student into the order in which this class returns them, so that results do not
+     * depend on the order in which the database returned the rows.
+     *
+     * @param theExams     the student's exams
+     * @param theHomeworks the student's homeworks
+     * @param theMessages  the student's messages
+     * @param theSpecials  the student's special student category memberships
+     */
+    static void sortStudentRows(final List<RawStexam> theExams, final List<RawSthomework> theHomeworks,
+                                final List<RawStmsg> theMessages, final List<RawSpecialStus> theSpecials) {
+
+        theExams.sort(EXAM_ORDER);
+        theHomeworks.sort(HOMEWORK_ORDER);
+        theMessages.sort(MESSAGE_ORDER);
+        theSpecials.sort(SPECIAL_ORDER);
+    }
+
+    /**
+     * Generates an " IN (?,?,...)" clause with a specified number of parameters.
+     *
+     * @param numParams the number of parameters
+     * @return the clause
+     */
+    private static String makeInClause(final int numParams) {
+
+        final StringBuilder builder = new StringBuilder(6 + numParams * 2);
+
+        builder.append(" IN (");
+        for (int i = 0; i < numParams; ++i) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('?');
+        }
+        builder.append(')');
+
+        return builder.toString();
+    }
+
+    /**
+     * Binds student IDs to the parameters of a prepared statement.
+     *
+     * @param ps    the prepared statement
+     * @param batch the student IDs
+     * @throws SQLException if there is an error binding parameters
+     */
+    private static void bind(final PreparedStatement ps, final List<String> batch) throws SQLException {
+
+        int index = 1;
+        for (final String stuId : batch) {
+            ps.setString(index, stuId);
+            ++index;
+        }
+    }
+
+    /**
+     * Gets a student record.
+     *
+     * @param stuId the student ID
+     * @return the student record; {@code null} if not found
+     */
+    public RawStudent getStudent(final String stuId) {
+
+        return this.students.get(stuId);
+    }
+
+    /**
+     * Gets a student's term record.
+     *
+     * @param stuId the student ID
+     * @return the student term record; {@code null} if not found
+     */
+    public RawStterm getStudentTerm(final String stuId) {
+
+        return this.stterms.get(stuId);
+    }
+
+    /**
+     * Gets a student's milestone overrides for the term in a pace track (as would be returned by
+     * {@code RawStmilestoneLogic.getStudentMilestones}).
+     *
+     * @param stuId the student ID
+     * @param track the pace track
+     * @return the milestone overrides
+     */
+    public List<RawStmilestone> getStudentMilestones(final String stuId, final String track) {
+
+        final List<RawStmilestone> all = this.stmilestones.get(stuId);
+        final List<RawStmilestone> result;
+
+        if (all == null) {
+            result = new ArrayList<>(0);
+        } else {
+            result = new ArrayList<>(all.size());
+            for (final RawStmilestone row : all) {
+                if (Objects.equals(track, row.paceTrack)) {
+                    result.add(row);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a student's passed or failed exams.
+     *
+     * @param stuId the student ID
+     * @return the exams
+     */
+    public List<RawStexam> getExams(final String stuId) {
+
+        return copy(this.exams.get(stuId));
+    }
+
+    /**
+     * Gets a student's passed or failed homeworks.
+     *
+     * @param stuId the student ID
+     * @return the homeworks
+     */
+    public List<RawSthomework> getHomeworks(final String stuId) {
+
+        return copy(this.homeworks.get(stuId));
+    }
+
+    /**
+     * Gets the messages sent to a student.
+     *
+     * @param stuId the student ID
+     * @return the messages
+     */
+    public List<RawStmsg> getMessages(final String stuId) {
+
+        return copy(this.messages.get(stuId));
+    }
+
+    /**
+     * Gets a student's special student category memberships.
+     *
+     * @param stuId the student ID
+     * @return the memberships
+     */
+    public List<RawSpecialStus> getSpecials(final String stuId) {
+
+        return copy(this.specials.get(stuId));
+    }
+
+    /**
+     * Makes a modifiable copy of a list.
+     *
+     * @param list the list (may be {@code null})
+     * @param <T>  the type of list element
+     * @return the copy
+     */
+    private static <T> List<T> copy(final List<T> list) {
+
+        return list == null ? new ArrayList<>(0) : new ArrayList<>(list);
+    }
+}
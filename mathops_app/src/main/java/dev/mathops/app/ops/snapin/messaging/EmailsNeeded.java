@@ -132,6 +132,33 @@ public class EmailsNeeded {
                                       final Map<Integer, ? extends Map<String, String>> instructors)
             throws SQLException {
 
+        processStudent(cache, stuId, regs, today, msMap, active, messagesDue, instructors, null);
+    }
+
+    /**
+     * Processes a single student's registrations, taking the student's data from data loaded in bulk for a population
+     * of students rather than querying it for this student. Results are identical to those from querying per student.
+     *
+     * @param cache       the data cache
+     * @param stuId       the student ID
+     * @param regs        the student's registrations (sorted map from course ID to registration)
+     * @param today       the current date
+     * @param msMap       map from pace to a map from track to list of milestones
+     * @param active      the active term
+     * @param messagesDue a map from student ID to message to be sent
+     * @param instructors a map from pace to map from track to instructor
+     * @param bulk        data loaded in bulk for the population that includes the student; {@code null} to query the
+     *                    student's data individually
+     * @throws SQLException if there is an error accessing the database
+     */
+    public static void processStudent(final Cache cache, final String stuId, final List<RawStcourse> regs,
+                                      final LocalDate today,
+                                      final Map<Integer, ? extends Map<String, List<RawMilestone>>> msMap,
+                                      final TermRec active,
+                                      final Map<? super String, ? super MessageToSend> messagesDue,
+                                      final Map<Integer, ? extends Map<String, String>> instructors,
+                                      final BulkStudentData bulk) throws SQLException {
+
         RawStcourse sc1 = null;
         RawStcourse sc2 = null;
         RawStcourse sc3 = null;
@@ -199,13 +226,15 @@ public class EmailsNeeded {
                             Log.warning("No milestones for pace ", paceInt,
                                     " track ", track);
                         } else {
-                            final List<RawStmilestone> stmilestones = RawStmilestoneLogic
-                                    .getStudentMilestones(cache, active.term, track, stuId);
+                            final List<RawStmilestone> stmilestones = bulk == null
+                                    ? RawStmilestoneLogic.getStudentMilestones(cache, active.term, track, stuId)
+                                    : bulk.getStudentMilestones(stuId, track);
                             stmilestones.sort(null);
 
-                            final RawStudent stu = RawStudentLogic.query(cache, stuId, false);
-                            final RawStterm stterm =
-                                    RawSttermLogic.query(cache, active.term, stuId);
+                            final RawStudent stu = bulk == null ? RawStudentLogic.query(cache, stuId, false)
+                                    : bulk.getStudent(stuId);
+                            final RawStterm stterm = bulk == null ? RawSttermLogic.query(cache, active.term, stuId)
+                                    : bulk.getStudentTerm(stuId);
 
                             if (stu == null) {
                                 Log.warning("ERROR: No student record for ", stuId);
@@ -215,16 +244,20 @@ public class EmailsNeeded {
                                 Log.info("Skipping student ", stuId,
                                         " marked 'do-not-disturb'");
                             } else {
-                                final List<RawStexam> exams =
-                                        RawStexamLogic.queryByStudent(cache, stuId, false);
-
-                                final List<RawSthomework> homeworks =
-                                        RawSthomeworkLogic.queryByStudent(cache, stuId, false);
-
-                                final List<RawStmsg> messages =
-                                        RawStmsgLogic.queryByStudent(cache, stuId);
-                                final List<RawSpecialStus> specials =
-                                        RawSpecialStusLogic.queryByStudent(cache, stuId);
+                                final List<RawStexam> exams = bulk == null
+                                        ? RawStexamLogic.queryByStudent(cache, stuId, false) : bulk.getExams(stuId);
+
+                                final List<RawSthomework> homeworks = bulk == null
+                                        ? RawSthomeworkLogic.queryByStudent(cache, stuId, false)
+                                        : bulk.getHomeworks(stuId);
+
+                                final List<RawStmsg> messages = bulk == null
+                                        ? RawStmsgLogic.queryByStudent(cache, stuId) : bulk.getMessages(stuId);
+                                final List<RawSpecialStus> specials = bulk == null
+                                        ? RawSpecialStusLogic.queryByStudent(cache, stuId) : bulk.getSpecials(stuId);
+                                if (bulk == null) {
+                                    BulkStudentData.sortStudentRows(exams, homeworks, messages, specials);
+                                }
 
                                 final LocalDate lastClassDay = cache.getSystemData().getLastClassDay();
 
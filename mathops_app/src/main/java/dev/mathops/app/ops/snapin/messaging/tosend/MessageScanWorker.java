@@ -7,6 +7,7 @@ import dev.mathops.db.Cache;
 import dev.mathops.db.schema.legacy.rec.RawMilestone;
 import dev.mathops.db.schema.legacy.rec.RawStcourse;
 import dev.mathops.db.schema.main.rec.TermRec;
+import dev.mathops.app.ops.snapin.messaging.BulkStudentData;
 import dev.mathops.app.ops.snapin.messaging.EPF;
 import dev.mathops.app.ops.snapin.messaging.EmailsNeeded;
 import dev.mathops.app.ops.snapin.messaging.MessagingFull;
@@ -19,10 +20,17 @@ import javax.swing.JProgressBar;
 import javax.swing.SwingWorker;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -30,9 +38,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public final class MessageScanWorker extends SwingWorker<String, ScannerStatus> implements IProgressListener {
 
+    /** The number of threads that process students. */
+    private static final int NUM_THREADS = 8;
+
     /** The data cache. */
     private final Cache cache;
 
+    /** A data cache for each thread that processes students. */
+    private final ThreadLocal<Cache> caches;
+
     /** The owning window to provide with results of the scan. */
     private final MessagingFull owner;
 
@@ -62,6 +76,7 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
         super();
 
         this.cache = theCache;
+        this.caches = ThreadLocal.withInitial(() -> new Cache(theCache.profile));
         this.owner = theOwner;
 
         this.progressBar = theProgress;
@@ -123,68 +138,34 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
                     final int totalSteps = 3 + numStudents;
                     int completed = 3;
 
-                    // if (!this.canceled.get()) {
-                    // completed = processPopulation(today, completed, totalSteps,
-                    // popScanner.nonCountedIncomplete, act, instructors, msMap);
-                    // }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.five, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.fiveWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.four, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.fourWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.three, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.threeWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoA, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoAWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoB, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoBWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoC, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.twoCWithForfeit, act,
-                                instructors, msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.oneA, act, instructors,
-                                msMap);
-                    }
-                    if (!this.canceled.get()) {
-                        completed = processPopulation(today, completed, totalSteps, popScanner.oneB, act, instructors,
-                                msMap);
+                    // popScanner.nonCountedIncomplete is not processed
+                    final List<Population> populations = Arrays.asList(popScanner.five, popScanner.fiveWithForfeit,
+                            popScanner.four, popScanner.fourWithForfeit, popScanner.three, popScanner.threeWithForfeit,
+                            popScanner.twoA, popScanner.twoAWithForfeit, popScanner.twoB, popScanner.twoBWithForfeit,
+                            popScanner.twoC, popScanner.twoCWithForfeit, popScanner.oneA, popScanner.oneB,
+                            popScanner.oneC);
+
+                    final Set<String> studentIds = new HashSet<>(numStudents * 4 / 3 + 1);
+                    for (final Population population : populations) {
+                        for (final PopulationSection popSect : population.sections.values()) {
+                            studentIds.addAll(popSect.students.keySet());
+                        }
                     }
-                    if (!this.canceled.get()) {
-                        processPopulation(today, completed, totalSteps, popScanner.oneC, act, instructors, msMap);
+
+                    progress("Loading student data", 2, totalSteps);
+                    final BulkStudentData bulk = BulkStudentData.load(this.cache, act.term, studentIds);
+
+                    final ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+                    try {
+                        for (final Population population : populations) {
+                            if (this.canceled.get()) {
+                                break;
+                            }
+                            completed = processPopulation(today, completed, totalSteps, population, act, instructors,
+                                    msMap, bulk, pool);
+                        }
+                    } finally {
+                        pool.shutdownNow();
                     }
 
                     progress("Finished", totalSteps, totalSteps);
@@ -202,7 +183,8 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
     }
 
     /**
-     * Processes a single category.
+     * Processes a single category. Students are processed in parallel, each thread using its own data cache, and
+     * their messages are added to each section's map in the order students appear in the section.
      *
      * @param today            the current date
      * @param initialCompleted the number of students completed on entry
@@ -211,14 +193,16 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
      * @param act              the active term
      * @param instructors      the instructors
      * @param msMap            milestones
+     * @param bulk             data loaded in bulk for all students being processed
+     * @param pool             the executor service that processes students
      * @return the number of students completed on exit
      * @throws SQLException if there is an error accessing the database
      */
     private int processPopulation(final LocalDate today, final int initialCompleted,
                                   final int totalSteps, final Population population, final TermRec act,
                                   final Map<Integer, ? extends Map<String, String>> instructors,
-                                  final Map<Integer, ? extends Map<String, List<RawMilestone>>> msMap)
-            throws SQLException {
+                                  final Map<Integer, ? extends Map<String, List<RawMilestone>>> msMap,
+                                  final BulkStudentData bulk, final ExecutorService pool) throws SQLException {
 
         int completed = initialCompleted;
 
@@ -227,16 +211,26 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
             final PopulationSection popSect = e.getValue();
             final Map<String, List<RawStcourse>> stuToRegsMap = popSect.students;
 
+            final List<Future<Map<String, MessageToSend>>> results = new ArrayList<>(stuToRegsMap.size());
+
             for (final Map.Entry<String, List<RawStcourse>> stuEntry : stuToRegsMap.entrySet()) {
 
                 final String studentId = stuEntry.getKey();
                 final List<RawStcourse> regs = stuEntry.getValue();
 
+                results.add(pool.submit(() -> {
+                    final Map<String, MessageToSend> due = new HashMap<>(2);
+                    EmailsNeeded.processStudent(this.caches.get(), studentId, regs, today, msMap, act, due,
+                            instructors, bulk);
+                    return due;
+                }));
+            }
+
+            for (final Future<Map<String, MessageToSend>> future : results) {
                 final String descr = "Processing student " + (completed - 3) + " out of " + (totalSteps - 3);
                 progress(descr, completed, totalSteps);
 
-                EmailsNeeded.processStudent(this.cache, studentId, regs, today, msMap, act, popSect.messagesDue,
-                        instructors);
+                popSect.messagesDue.putAll(await(future));
 
                 ++completed;
             }
@@ -245,6 +239,30 @@ public final class MessageScanWorker extends SwingWorker<String, ScannerStatus>
         return completed;
     }
 
+    /**
+     * Waits for the result of processing a student.
+     *
+     * @param future the future that will provide the result
+     * @return the result
+     * @throws SQLException if processing the student failed or the wait was interrupted
+     */
+    private static Map<String, MessageToSend> await(final Future<Map<String, MessageToSend>> future)
+            throws SQLException {
+
+        try {
+            return future.get();
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof final SQLException sqlEx) {
+                throw sqlEx;
+            }
+            throw new SQLException("Failed to process student", cause);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while processing students", ex);
+        }
+    }
+
     /**
      * Indicates progress.
      *
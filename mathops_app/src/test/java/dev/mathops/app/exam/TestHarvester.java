@@ -0,0 +1,115 @@
+package dev.mathops.app.exam;
+
+import dev.mathops.assessment.exam.ExamObj;
+import dev.mathops.assessment.exam.ExamProblem;
+import dev.mathops.assessment.exam.ExamSection;
+import dev.mathops.assessment.problem.template.ProblemAutoCorrectTemplate;
+import dev.mathops.session.EExamRecordType;
+import dev.mathops.session.ExamArchive;
+import dev.mathops.session.ExamWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code Harvester} class.
+ */
+final class TestHarvester {
+
+    /** A student ID. */
+    private static final String STUDENT = "800000001";
+
+    /** A temporary directory in which to store archives. */
+    @TempDir
+    File dir;
+
+    /**
+     * Constructs a new {@code TestHarvester}
+     */
+    TestHarvester() {
+
+        //  No action
+    }
+
+    /**
+     * Builds a presented exam with a single problem.
+     *
+     * @return the exam
+     */
+    private static ExamObj makeExam() {
+
+        final ExamObj exam = new ExamObj();
+        exam.course = "M 117";
+        exam.courseUnit = "1";
+        exam.examVersion = "171PE";
+
+        final ExamProblem problem = new ExamProblem(exam);
+        problem.setSelectedProblem(new ProblemAutoCorrectTemplate(2));
+
+        final ExamSection section = new ExamSection();
+        section.addProblem(problem);
+        section.setProblemOrder(new int[]{0});
+        exam.addSection(section);
+
+        return exam;
+    }
+
+    /**
+     * Reads the serial numbers of all exam records in the archive, formatted as the harvester formats them.
+     *
+     * @return the formatted serial numbers
+     */
+    private List<String> scanSerials() {
+
+        final List<String> serials = new ArrayList<>(2);
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        archive.scan(EExamRecordType.EXAM, rec -> serials.add(ExamWriter.serialName(rec.serial())));
+        archive.close();
+
+        return serials;
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Practice exam read from the archive is harvested with the legacy serial")
+    void test0101() {
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertTrue(archive.append(STUDENT, -5L, EExamRecordType.EXAM, "<exam/>".getBytes(StandardCharsets.UTF_8)),
+                "Append should succeed");
+        archive.close();
+
+        final List<String> serials = scanSerials();
+        assertEquals(List.of("P5"), serials, "Practice serial should be formatted as a legacy directory name");
+
+        final String rows = Harvester.formatExam(STUDENT, serials.getFirst(), makeExam());
+        assertTrue(rows.startsWith("P5," + STUDENT + ",M 117,1,171PE,N,N,autocorrect"),
+                "Practice exam row should begin with the legacy serial");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Graded exam read from the archive is harvested with its serial number")
+    void test0102() {
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertTrue(archive.append(STUDENT, 12345678L, EExamRecordType.EXAM, "<exam/>".getBytes(StandardCharsets.UTF_8)),
+                "Append should succeed");
+        archive.close();
+
+        final List<String> serials = scanSerials();
+        assertEquals(List.of("12345678"), serials, "Graded serial should be formatted as a number");
+
+        final String rows = Harvester.formatExam(STUDENT, serials.getFirst(), makeExam());
+        assertTrue(rows.startsWith("12345678," + STUDENT + ","), "Graded exam row should begin with the serial");
+    }
+}
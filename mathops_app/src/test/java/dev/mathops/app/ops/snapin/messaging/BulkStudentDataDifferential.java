@@ -0,0 +1,151 @@
+package dev.mathops.app.ops.snapin.messaging;
+
+import dev.mathops.db.Cache;
+import dev.mathops.db.cfg.Contexts;
+import dev.mathops.db.cfg.DatabaseConfig;
+import dev.mathops.db.cfg.Profile;
+import dev.mathops.db.field.TermKey;
+import dev.mathops.db.schema.legacy.impl.RawSpecialStusLogic;
+import dev.mathops.db.schema.legacy.impl.RawStexamLogic;
+import dev.mathops.db.schema.legacy.impl.RawSthomeworkLogic;
+import dev.mathops.db.schema.legacy.impl.RawStmilestoneLogic;
+import dev.mathops.db.schema.legacy.impl.RawStmsgLogic;
+import dev.mathops.db.schema.legacy.impl.RawStudentLogic;
+import dev.mathops.db.schema.legacy.impl.RawSttermLogic;
+import dev.mathops.db.schema.legacy.rec.RawSpecialStus;
+import dev.mathops.db.schema.legacy.rec.RawStexam;
+import dev.mathops.db.schema.legacy.rec.RawSthomework;
+import dev.mathops.db.schema.legacy.rec.RawStmilestone;
+import dev.mathops.db.schema.legacy.rec.RawStmsg;
+import dev.mathops.db.schema.legacy.rec.RawStterm;
+import dev.mathops.db.schema.main.rec.TermRec;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A differential harness that loads a population of students with {@code BulkStudentData} and compares every row it
+ * returns, in order, with the rows the per-student queries return (sorted as {@code EmailsNeeded} sorts them).
+ *
+ * <p>
+ * This needs a database, so it is run by hand against a test database rather than as part of the unit tests.
+ *
+ * <p>
+ * Usage: {@code BulkStudentDataDifferential [student-id...]} (with no arguments, the population is every student with
+ * a term record in the active term)
+ */
+enum BulkStudentDataDifferential {
+    ;
+
+    /**
+     * Main method to execute the comparison.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        final Profile profile = DatabaseConfig.getDefault().getCodeProfile(Contexts.BATCH_PATH);
+
+        if (profile == null) {
+            System.out.println("No 'batch' code profile configured");
+        } else {
+            final Cache cache = new Cache(profile);
+
+            try {
+                final TermRec active = cache.getSystemData().getActiveTerm();
+                final TermKey term = active.term;
+
+                final Collection<String> population;
+                if (args.length == 0) {
+                    population = new ArrayList<>(5000);
+                    for (final RawStterm row : RawSttermLogic.queryAllByTerm(cache, term)) {
+                        population.add(row.stuId);
+                    }
+                } else {
+                    population = Arrays.asList(args);
+                }
+
+                final BulkStudentData bulk = BulkStudentData.load(cache, term, population);
+
+                int mismatches = 0;
+                for (final String stuId : population) {
+                    mismatches += compareStudent(cache, term, bulk, stuId);
+                }
+
+                System.out.println("Compared " + population.size() + " students: " + mismatches + " mismatches");
+            } catch (final SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Compares the data loaded in bulk for one student with the data queried for that student individually.
+     *
+     * @param cache the data cache
+     * @param term  the term
+     * @param bulk  the data loaded in bulk
+     * @param stuId the student ID
+     * @return the number of mismatches found
+     * @throws SQLException if there is an error accessing the database
+     */
+    private static int compareStudent(final Cache cache, final TermKey term, final BulkStudentData bulk,
+                                      final String stuId) throws SQLException {
+
+        int mismatches = 0;
+
+        mismatches += check(stuId, "student", RawStudentLogic.query(cache, stuId, false), bulk.getStudent(stuId));
+
+        final RawStterm stterm = RawSttermLogic.query(cache, term, stuId);
+        mismatches += check(stuId, "stterm", stterm, bulk.getStudentTerm(stuId));
+
+        if (stterm != null) {
+            final String track = stterm.paceTrack;
+            final List<RawStmilestone> milestones = RawStmilestoneLogic.getStudentMilestones(cache, term, track, stuId);
+            final List<RawStmilestone> bulkMilestones = bulk.getStudentMilestones(stuId, track);
+            milestones.sort(null);
+            bulkMilestones.sort(null);
+            mismatches += check(stuId, "stmilestone", milestones, bulkMilestones);
+        }
+
+        final List<RawStexam> exams = RawStexamLogic.queryByStudent(cache, stuId, false);
+        final List<RawSthomework> homeworks = RawSthomeworkLogic.queryByStudent(cache, stuId, false);
+        final List<RawStmsg> messages = RawStmsgLogic.queryByStudent(cache, stuId);
+        final List<RawSpecialStus> specials = RawSpecialStusLogic.queryByStudent(cache, stuId);
+        BulkStudentData.sortStudentRows(exams, homeworks, messages, specials);
+
+        mismatches += check(stuId, "stexam", exams, bulk.getExams(stuId));
+        mismatches += check(stuId, "sthomework", homeworks, bulk.getHomeworks(stuId));
+        mismatches += check(stuId, "stmsg", messages, bulk.getMessages(stuId));
+        mismatches += check(stuId, "special_stus", specials, bulk.getSpecials(stuId));
+
+        return mismatches;
+    }
+
+    /**
+     * Compares the per-student and bulk values of one kind of data, printing any mismatch.
+     *
+     * @param stuId      the student ID
+     * @param what       the kind of data
+     * @param perStudent the value queried for the student individually
+     * @param fromBulk   the value loaded in bulk
+     * @return 1 if the values differ; 0 if they match
+     */
+    private static int check(final String stuId, final String what, final Object perStudent, final Object fromBulk) {
+
+        final int result;
+
+        if (Objects.equals(perStudent, fromBulk)) {
+            result = 0;
+        } else {
+            System.out.println(stuId + " " + what + ": per-student " + perStudent + ", bulk " + fromBulk);
+            result = 1;
+        }
+
+        return result;
+    }
+}
@@ -32,4 +32,11 @@ tasks {
     withType<JavaCompile> {
         options.compilerArgs.add("-Xlint:unchecked")
     }
-}
\ No newline at end of file
+}
+tasks.register<JavaExec>("instructionSnapshot") {
+    description = "Writes a binary snapshot of the parsed exams and problems in an instruction tree " +
+            "(-PinstructionDir=<dir>)."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("dev.mathops.assessment.InstructionSnapshotBuilder")
+    args(providers.gradleProperty("instructionDir").getOrElse("instruction"))
+}
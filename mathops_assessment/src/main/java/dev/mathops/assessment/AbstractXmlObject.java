@@ -3,12 +3,18 @@ package dev.mathops.assessment;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.text.builder.HtmlBuilder;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.Locale;
 
 /**
  * A base class for object that will serialize themselves into XML streams.
  */
-public abstract class AbstractXmlObject {
+public abstract class AbstractXmlObject implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -3820025369359072449L;
 
     /** Pre-created indent strings for fast indenting. */
     private static final String[] INDENTS = {CoreConstants.EMPTY,
@@ -42,16 +42,7 @@ public enum FactoryBase {
     static File getRefSourceFile(final File baseDir, final String ref) {
 
         // Convert into local pathname
-        File file = new File(baseDir, "instruction");
-
-        // If we were provided the instruction directory already, use it.
-        if (!file.exists()
-            && (baseDir.getAbsolutePath().endsWith("/instruction")
-                || baseDir.getAbsolutePath().endsWith("\\instruction")
-                || baseDir.getAbsolutePath().endsWith("/Assessment Bank")
-                || baseDir.getAbsolutePath().endsWith("\\Assessment Bank"))) {
-            file = baseDir;
-        }
+        File file = getRefRoot(baseDir);
 
         final String[] tokens = ref.split("\\.");
 
@@ -67,4 +58,27 @@ public enum FactoryBase {
 
         return file;
     }
+
+    /**
+     * Gets the directory relative to which references are resolved: the "instruction" directory under a base directory,
+     * or the base directory itself if it is already the instruction directory.
+     *
+     * @param baseDir the directory under which to look for source files
+     * @return the directory relative to which references are resolved
+     */
+    static File getRefRoot(final File baseDir) {
+
+        File file = new File(baseDir, "instruction");
+
+        // If we were provided the instruction directory already, use it.
+        if (!file.exists()
+            && (baseDir.getAbsolutePath().endsWith("/instruction")
+                || baseDir.getAbsolutePath().endsWith("\\instruction")
+                || baseDir.getAbsolutePath().endsWith("/Assessment Bank")
+                || baseDir.getAbsolutePath().endsWith("\\Assessment Bank"))) {
+            file = baseDir;
+        }
+
+        return file;
+    }
 }
@@ -63,7 +63,7 @@ public final class HtmlImage {
      *
      * @return the PNG file contents, {@code null} if the PNG could not be generated
      */
-    private byte[] toPng() {
+    public byte[] toPng() {
 
         if (this.png == null) {
             final Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName("png");
@@ -95,21 +95,36 @@ public final class HtmlImage {
      */
     public String toImg(final double overScale) {
 
-        final HtmlBuilder xml = new HtmlBuilder(2000);
         final byte[] data = toPng();
         final byte[] base64 = Base64.encode(data).getBytes(StandardCharsets.UTF_8);
 
+        return makeImg("data:image/png;base64," + new String(base64, StandardCharsets.UTF_8), this.img.getWidth(),
+                this.img.getHeight(), overScale);
+    }
+
+    /**
+     * Generates an inline &lt;img&gt; tag for the image that references the image by URL rather than including its
+     * data, including the proper vertical offset to align it with surrounding text, and including the specified
+     * alternate text. The backing image need not be present.
+     *
+     * @param src       the image URL
+     * @param imgWidth  the width of the image, in pixels
+     * @param imgHeight the height of the image, in pixels
+     * @param overScale the scale by which the backing image is larger than one pixel per point
+     * @return the inline image tag
+     */
+    public String makeImg(final String src, final int imgWidth, final int imgHeight, final double overScale) {
+
+        final HtmlBuilder xml = new HtmlBuilder(200 + src.length());
+
         final double scale = 1.0 / this.pointSize / overScale;
 
         final String marginBottomStr = Double.toString(this.vOffset / this.pointSize);
 
-        final int imgWidth = this.img.getWidth();
-        final int imgHeight = this.img.getHeight();
         final String widthStr = Double.toString((double) imgWidth * scale);
         final String heightStr = Double.toString((double) imgHeight * scale);
         xml.add("<img style='vertical-align:baseline;margin-bottom:", marginBottomStr, "em;width:", widthStr,
-                "em;height:", heightStr, "em;' src='data:image/png;base64,",
-                new String(base64, StandardCharsets.UTF_8));
+                "em;height:", heightStr, "em;' src='", src);
 
         if (this.alt != null) {
             final String escaped = XmlEscaper.escape(this.alt);
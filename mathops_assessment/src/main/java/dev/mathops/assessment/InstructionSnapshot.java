@@ -0,0 +1,429 @@
+package dev.mathops.assessment;
+
+import dev.mathops.assessment.exam.ExamObj;
+import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
+import dev.mathops.commons.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only, memory-mapped snapshot of the parsed exams and problems in an instruction tree, written by
+ * {@code InstructionSnapshotBuilder}. Decoding an object from the snapshot is much faster than parsing its XML, so a
+ * server that starts with a snapshot can deliver its first exams without waiting to parse their sources.
+ *
+ * <p>
+ * Each object is stored as it was returned by its factory (before problems are linked into exams, and before freezing),
+ * and is decoded only when requested. An object is used only if its source file's modification time matches the time
+ * recorded when the snapshot was written; objects whose sources are newer (or that cannot be decoded, as when a class
+ * has changed since the snapshot was written) are left to be parsed from XML.
+ *
+ * <p>
+ * The header records a fingerprint of the code that wrote the snapshot (a hash of the jar file or class directory
+ * containing this class), and a snapshot written by any other build is ignored, since its serialized objects may not
+ * match the current classes even where their serial version UIDs do. Objects are decoded through a filter that accepts
+ * only application classes and the {@code java.*} types they use.
+ *
+ * <p>
+ * File format (all integers big-endian):
+ * <pre>
+ * MAGIC (8 bytes), format version (int), code fingerprint (long)
+ * object data...
+ * index: entry count (int), then for each entry:
+ *     kind (byte: 0 = exam, 1 = problem), path length (short), path (UTF-8, relative to the instruction directory,
+ *     with '/' separators), source modification time (long), data offset (long), data length (int)
+ * index offset (long), MAGIC (8 bytes)
+ * </pre>
+ */
+public final class InstructionSnapshot {
+
+    /** The name of the snapshot file within the instruction directory. */
+    public static final String FILE_NAME = "instruction.snapshot";
+
+    /** The magic bytes at the start and end of a snapshot file. */
+    static final byte[] MAGIC = "MOPSNAP\u0001".getBytes(StandardCharsets.US_ASCII);
+
+    /** The format version. */
+    static final int VERSION = 2;
+
+    /** The length of the header (magic, version, and code fingerprint). */
+    static final int HEADER_LEN = 20;
+
+    /** The filter that limits the classes that may be decoded from a snapshot. */
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "dev.mathops.**;java.lang.*;java.util.*;java.util.regex.*;java.math.*;java.text.*;java.awt.*;"
+            + "java.awt.color.*;java.awt.geom.*;java.awt.font.*;!*");
+
+    /** The entry kind for an exam. */
+    static final byte KIND_EXAM = 0;
+
+    /** The entry kind for a problem. */
+    static final byte KIND_PROBLEM = 1;
+
+    /** The length of the trailer (index offset and magic). */
+    private static final int TRAILER_LEN = 16;
+
+    /** The instruction directory. */
+    private final File base;
+
+    /** The mapped snapshot file. */
+    private final MappedByteBuffer buffer;
+
+    /** The entries, keyed on relative path. */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Constructs a new {@code InstructionSnapshot}.
+     *
+     * @param theBase    the instruction directory
+     * @param theBuffer  the mapped snapshot file
+     * @param theEntries the entries
+     */
+    private InstructionSnapshot(final File theBase, final MappedByteBuffer theBuffer,
+                                final Map<String, Entry> theEntries) {
+
+        this.base = theBase;
+        this.buffer = theBuffer;
+        this.entries = theEntries;
+    }
+
+    /**
+     * Opens the snapshot in an instruction directory.
+     *
+     * @param base the instruction directory
+     * @return the snapshot; {@code null} if there is no snapshot, or it is not valid
+     */
+    static InstructionSnapshot open(final File base) {
+
+        final File file = new File(base, FILE_NAME);
+        InstructionSnapshot result = null;
+
+        if (file.exists()) {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 final FileChannel channel = raf.getChannel()) {
+
+                // The mapping remains valid after the channel is closed
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                final Map<String, Entry> index = readIndex(mapped);
+
+                if (index == null) {
+                    Log.warning("Ignoring invalid instruction snapshot ", file.getAbsolutePath());
+                } else if (mapped.getLong(MAGIC.length + 4) != codeFingerprint()) {
+                    Log.warning("Ignoring instruction snapshot ", file.getAbsolutePath(),
+                            " written by a different build");
+                } else {
+                    Log.info("Using instruction snapshot ", file.getAbsolutePath(), " with ",
+                            Integer.toString(index.size()), " objects");
+                    result = new InstructionSnapshot(base, mapped, index);
+                }
+            } catch (final IOException | RuntimeException ex) {
+                Log.warning("Unable to open instruction snapshot ", file.getAbsolutePath(), ex);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the index of a mapped snapshot.
+     *
+     * @param mapped the mapped snapshot
+     * @return the entries, keyed on relative path; {@code null} if the snapshot is not valid
+     */
+    private static Map<String, Entry> readIndex(final ByteBuffer mapped) {
+
+        Map<String, Entry> result = null;
+
+        final int size = mapped.limit();
+        if (size >= HEADER_LEN + TRAILER_LEN && hasMagic(mapped, 0) && hasMagic(mapped, size - MAGIC.length)
+            && mapped.getInt(MAGIC.length) == VERSION) {
+
+            final long indexOffset = mapped.getLong(size - TRAILER_LEN);
+            if (indexOffset >= (long) HEADER_LEN && indexOffset < (long) (size - TRAILER_LEN)) {
+                final ByteBuffer idx = mapped.duplicate();
+                idx.position((int) indexOffset);
+
+                final int count = idx.getInt();
+                result = new HashMap<>(count * 4 / 3 + 1);
+
+                for (int i = 0; i < count; ++i) {
+                    final byte kind = idx.get();
+                    final byte[] pathBytes = new byte[(int) idx.getShort() & 0xFFFF];
+                    idx.get(pathBytes);
+                    final long modified = idx.getLong();
+                    final long offset = idx.getLong();
+                    final int length = idx.getInt();
+
+                    final String path = new String(pathBytes, StandardCharsets.UTF_8);
+                    result.put(path, new Entry(kind, modified, (int) offset, length));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes a fingerprint of the code that writes and reads snapshots: the leading bytes of a SHA-256 hash of the
+     * jar file or class directory from which this class was loaded. The fingerprint is computed once.
+     *
+     * @return the fingerprint; 0 if it could not be computed (in which case no snapshot is used)
+     */
+    static long codeFingerprint() {
+
+        return FingerprintHolder.FINGERPRINT;
+    }
+
+    /**
+     * Computes the code fingerprint.
+     *
+     * @return the fingerprint; 0 if it could not be computed
+     */
+    private static long computeFingerprint() {
+
+        long result = 0L;
+
+        final CodeSource source = InstructionSnapshot.class.getProtectionDomain().getCodeSource();
+        final URL location = source == null ? null : source.getLocation();
+
+        if (location != null) {
+            try {
+                final File root = new File(location.toURI());
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digestCode(root, root, digest);
+                result = ByteBuffer.wrap(digest.digest()).getLong();
+            } catch (final URISyntaxException | IOException | NoSuchAlgorithmException | IllegalArgumentException ex) {
+                Log.warning("Unable to compute code fingerprint for instruction snapshot", ex);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a jar file, or the class files in a directory (descending into subdirectories), to a digest.
+     *
+     * @param root   the jar file or root class directory
+     * @param file   the file or directory to add
+     * @param digest the digest
+     * @throws IOException if a file could not be read
+     */
+    private static void digestCode(final File root, final File file, final MessageDigest digest) throws IOException {
+
+        if (file.isDirectory()) {
+            final File[] list = file.listFiles();
+            if (list != null) {
+                Arrays.sort(list);
+                for (final File child : list) {
+                    digestCode(root, child, digest);
+                }
+            }
+        } else if (file.equals(root) || file.getName().endsWith(".class")) {
+            digest.update(relativePath(root, file).getBytes(StandardCharsets.UTF_8));
+            digest.update(Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    /**
+     * Tests whether a buffer has the magic bytes at an offset.
+     *
+     * @param buf    the buffer
+     * @param offset the offset
+     * @return true if the magic bytes are present
+     */
+    private static boolean hasMagic(final ByteBuffer buf, final int offset) {
+
+        boolean result = true;
+
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (buf.get(offset + i) != MAGIC[i]) {
+                result = false;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the path of a file relative to an instruction directory, as stored in the snapshot index.
+     *
+     * @param base the instruction directory
+     * @param file the file
+     * @return the relative path
+     */
+    static String relativePath(final File base, final File file) {
+
+        return base.toPath().toAbsolutePath().relativize(file.toPath().toAbsolutePath()).toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Gets the number of objects in the snapshot.
+     *
+     * @return the number of objects
+     */
+    public int size() {
+
+        return this.entries.size();
+    }
+
+    /**
+     * Decodes an exam from the snapshot.
+     *
+     * @param source the exam's source file
+     * @return the exam, as returned by {@code ExamFactory}; {@code null} if the snapshot has no current copy of the
+     *         exam
+     */
+    ExamObj getExam(final File source) {
+
+        return decode(source, KIND_EXAM) instanceof final ExamObj exam ? exam : null;
+    }
+
+    /**
+     * Decodes a problem from the snapshot.
+     *
+     * @param source the problem's source file
+     * @return the problem, as returned by {@code ProblemTemplateFactory}; {@code null} if the snapshot has no current
+     *         copy of the problem
+     */
+    AbstractProblemTemplate getProblem(final File source) {
+
+        return decode(source, KIND_PROBLEM) instanceof final AbstractProblemTemplate problem ? problem : null;
+    }
+
+    /**
+     * Decodes an object from the snapshot, if the snapshot holds a copy of the object that is current with its source
+     * file.
+     *
+     * @param source the object's source file
+     * @param kind   the kind of object expected
+     * @return the object; {@code null} if not available
+     */
+    private Object decode(final File source, final byte kind) {
+
+        Object result = null;
+
+        final Entry entry = this.entries.get(relativePath(this.base, source));
+
+        if (entry != null && entry.kind() == kind && entry.modified() == source.lastModified()) {
+            final ByteBuffer data = this.buffer.duplicate();
+            data.position(entry.offset());
+            data.limit(entry.offset() + entry.length());
+
+            try (final ObjectInputStream in = new ObjectInputStream(new BufferInputStream(data))) {
+                in.setObjectInputFilter(FILTER);
+                result = in.readObject();
+            } catch (final IOException | ClassNotFoundException | RuntimeException ex) {
+                Log.warning("Unable to decode ", source.getAbsolutePath(), " from instruction snapshot", ex);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * An index entry.
+     *
+     * @param kind     the kind of object
+     * @param modified the modification time of the source file when the snapshot was written
+     * @param offset   the offset of the object data
+     * @param length   the length of the object data
+     */
+    private record Entry(byte kind, long modified, int offset, int length) {
+    }
+
+    /**
+     * Holds the code fingerprint, computed on first use.
+     */
+    private static final class FingerprintHolder {
+
+        /** The code fingerprint. */
+        static final long FINGERPRINT = computeFingerprint();
+    }
+
+    /**
+     * An input stream that reads from a byte buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        /** The buffer. */
+        private final ByteBuffer buf;
+
+        /**
+         * Constructs a new {@code BufferInputStream}.
+         *
+         * @param theBuf the buffer, positioned at the first byte to read, with its limit at the end of the data
+         */
+        BufferInputStream(final ByteBuffer theBuf) {
+
+            super();
+
+            this.buf = theBuf;
+        }
+
+        /**
+         * Reads a single byte.
+         *
+         * @return the byte, or -1 at the end of the data
+         */
+        @Override
+        public int read() {
+
+            return this.buf.hasRemaining() ? (int) this.buf.get() & 0xFF : -1;
+        }
+
+        /**
+         * Reads bytes into an array.
+         *
+         * @param b   the array
+         * @param off the offset in the array
+         * @param len the maximum number of bytes to read
+         * @return the number of bytes read, or -1 at the end of the data
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+
+            final int result;
+
+            if (len == 0) {
+                result = 0;
+            } else if (this.buf.hasRemaining()) {
+                result = Math.min(len, this.buf.remaining());
+                this.buf.get(b, off, result);
+            } else {
+                result = -1;
+            }
+
+            return result;
+        }
+
+        /**
+         * Gets the number of bytes that can be read without blocking.
+         *
+         * @return the number of bytes remaining
+         */
+        @Override
+        public int available() {
+
+            return this.buf.remaining();
+        }
+    }
+}
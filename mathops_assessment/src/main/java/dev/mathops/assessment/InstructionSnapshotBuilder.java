@@ -0,0 +1,206 @@
+package dev.mathops.assessment;
+
+import dev.mathops.assessment.exam.ExamFactory;
+import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
+import dev.mathops.commons.file.FileLoader;
+import dev.mathops.commons.log.Log;
+import dev.mathops.text.parser.ParsingException;
+import dev.mathops.text.parser.xml.XmlContent;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A build step that parses every exam and problem in an instruction tree and writes an {@code InstructionSnapshot} of
+ * the parsed objects into the tree, so servers can decode them at startup rather than parsing XML.
+ *
+ * <p>
+ * Objects that cannot be serialized are left out of the snapshot (and will be parsed from XML); they are listed in the
+ * log. The snapshot is written to a temporary file and then moved into place, so a running server never maps a
+ * partially written snapshot.
+ *
+ * <p>
+ * Usage: {@code InstructionSnapshotBuilder <instruction-directory>}
+ */
+public enum InstructionSnapshotBuilder {
+    ;
+
+    /**
+     * Builds a snapshot of an instruction tree.
+     *
+     * @param base the instruction directory
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void build(final File base) throws IOException {
+
+        final long start = System.nanoTime();
+
+        final List<File> exams = new ArrayList<>(200);
+        final List<File> problems = new ArrayList<>(2000);
+        collect(base, exams, problems);
+
+        final File target = new File(base, InstructionSnapshot.FILE_NAME);
+        final File temp = new File(base, InstructionSnapshot.FILE_NAME + ".tmp");
+
+        final List<IndexEntry> index = new ArrayList<>(exams.size() + problems.size());
+        int skipped = 0;
+
+        try (final FileOutputStream fos = new FileOutputStream(temp);
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536))) {
+
+            out.write(InstructionSnapshot.MAGIC);
+            out.writeInt(InstructionSnapshot.VERSION);
+            out.writeLong(InstructionSnapshot.codeFingerprint());
+
+            for (final File file : exams) {
+                if (!write(base, file, InstructionSnapshot.KIND_EXAM, out, index)) {
+                    ++skipped;
+                }
+            }
+            for (final File file : problems) {
+                if (!write(base, file, InstructionSnapshot.KIND_PROBLEM, out, index)) {
+                    ++skipped;
+                }
+            }
+
+            final long indexOffset = (long) out.size();
+            out.writeInt(index.size());
+            for (final IndexEntry entry : index) {
+                final byte[] pathBytes = entry.path().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(entry.kind());
+                out.writeShort(pathBytes.length);
+                out.write(pathBytes);
+                out.writeLong(entry.modified());
+                out.writeLong(entry.offset());
+                out.writeInt(entry.length());
+            }
+
+            out.writeLong(indexOffset);
+            out.write(InstructionSnapshot.MAGIC);
+        }
+
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        final long elapsedMs = (System.nanoTime() - start) / 1000000L;
+        Log.info("Wrote ", target.getAbsolutePath(), " with ", Integer.toString(index.size()), " objects (",
+                Integer.toString(skipped), " skipped) in ", Long.toString(elapsedMs), " ms");
+    }
+
+    /**
+     * Collects exam and problem files, descending into subdirectories.
+     *
+     * @param dir      the directory to scan
+     * @param exams    the list to which to add exam files
+     * @param problems the list to which to add problem files
+     */
+    private static void collect(final File dir, final List<? super File> exams, final List<? super File> problems) {
+
+        final String path = dir.getAbsolutePath();
+        final File[] list = dir.listFiles();
+
+        if (list != null) {
+            Arrays.sort(list);
+
+            for (final File file : list) {
+                if (file.isDirectory()) {
+                    collect(file, exams, problems);
+                } else if (file.getName().toLowerCase(Locale.ROOT).endsWith(".xml")) {
+                    if (InstructionalCache.isExamDirectory(path)) {
+                        exams.add(file);
+                    } else if (InstructionalCache.isProblemDirectory(path)) {
+                        problems.add(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a file and writes the parsed object to the snapshot.
+     *
+     * @param base  the instruction directory
+     * @param file  the file to parse
+     * @param kind  the kind of object the file contains
+     * @param out   the snapshot output stream
+     * @param index the index to which to add an entry for the object
+     * @return true if the object was written
+     */
+    private static boolean write(final File base, final File file, final byte kind, final DataOutputStream out,
+                                 final List<? super IndexEntry> index) {
+
+        boolean written = false;
+
+        final long modified = file.lastModified();
+        final String xml = FileLoader.loadFileAsString(file, true);
+
+        if (xml != null) {
+            try {
+                final XmlContent content = new XmlContent(xml, false, false);
+                final Object parsed = kind == InstructionSnapshot.KIND_EXAM
+                        ? ExamFactory.load(content, EParserMode.ALLOW_DEPRECATED)
+                        : ProblemTemplateFactory.load(content, EParserMode.ALLOW_DEPRECATED);
+
+                if (parsed != null) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(xml.length() << 1);
+                    try (final ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                        oos.writeObject(parsed);
+                    }
+
+                    final long offset = (long) out.size();
+                    bytes.writeTo(out);
+                    index.add(new IndexEntry(InstructionSnapshot.relativePath(base, file), kind, modified, offset,
+                            bytes.size()));
+                    written = true;
+                }
+            } catch (final ParsingException ex) {
+                Log.warning("Failed to parse ", file.getAbsolutePath(), ex);
+            } catch (final IOException ex) {
+                Log.warning("Unable to serialize ", file.getAbsolutePath(), " (it will be parsed from XML)", ex);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * An index entry.
+     *
+     * @param path     the path relative to the instruction directory
+     * @param kind     the kind of object
+     * @param modified the source file modification time
+     * @param offset   the offset of the object data
+     * @param length   the length of the object data
+     */
+    private record IndexEntry(String path, byte kind, long modified, long offset, int length) {
+    }
+
+    /**
+     * Main method to build a snapshot.
+     *
+     * @param args command-line arguments: the instruction directory
+     */
+    public static void main(final String... args) {
+
+        if (args.length == 1) {
+            try {
+                build(new File(args[0]));
+            } catch (final IOException ex) {
+                Log.warning("Failed to write instruction snapshot", ex);
+            }
+        } else {
+            Log.warning("Usage: InstructionSnapshotBuilder <instruction-directory>");
+        }
+    }
+}
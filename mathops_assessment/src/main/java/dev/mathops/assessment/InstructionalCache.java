@@ -17,45 +17,91 @@ import dev.mathops.text.parser.ParsingException;
 import dev.mathops.text.parser.xml.XmlContent;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * A singleton class that processes requests for instructional materials (exams, problems and homework assignments), and
- * caches them for later retrievals. A background thread scans a directory and caches any exam, problem and homework
- * files found, and periodically rescans that directory for files that have changed since the last scan.
+ * caches them for later retrievals.
+ *
+ * <p>
+ * Each exam or problem reference is loaded at most once: the first request for a reference installs a future in the
+ * cache and performs the load, and concurrent requests for the same reference wait on that future. Requests for
+ * different references never block one another.
+ *
+ * <p>
+ * The singleton instance watches its data directory with an {@code InstructionalCacheWatcher}, which compares file
+ * modification times against {@code fileTimestamps} and evicts cached objects whose source files have changed, so they
+ * are reloaded on their next request. A server calls {@code shutdown} when it stops, which stops the watcher.
+ *
+ * <p>
+ * A server can call {@code startWarmup} at startup to load all exams and problems in the background (see
+ * {@code InstructionalCacheWarmup}) rather than waiting for each to be requested.
+ *
+ * <p>
+ * Cached exams and problems are frozen templates, shared by all threads and never modified. Freezing prevents only
+ * their realization; not modifying them is otherwise left to callers. {@code getExam} returns a copy of an exam that
+ * shares those problem templates, and realizing that copy makes copies of only the problems it selects.
+ *
+ * <p>
+ * If the data directory contains an {@code InstructionSnapshot} (written by {@code InstructionSnapshotBuilder}), exams
+ * and problems are decoded from it rather than parsed from XML, unless their source files have changed since the
+ * snapshot was written.
  */
 public final class InstructionalCache implements InstructionalCacheInt {
 
     /** The singleton instance. */
     private static InstructionalCache instance = null;
 
-    /** Object on which to synchronize member variable access. */
+    /**
+     * True to use an instruction snapshot if one exists. This is fixed when the class is loaded; snapshots are ignored
+     * (only to measure their effect) by setting the "mathops.instructionSnapshot" system property to "false".
+     */
+    static final boolean SNAPSHOT_ENABLED = Boolean.parseBoolean(System.getProperty("mathops.instructionSnapshot",
+            "true"));
+
+    /** Object on which to synchronize scans. */
     private final Object synch;
 
     /** The file under which to search for instructional data files. */
     private final File base;
 
-    /** A cache of exam objects. */
+    /** A map from exam reference to the path of its source file. */
     private final Map<String, String> examFiles;
 
-    /** A cache of problem objects. */
+    /** A map from problem reference to the path of its source file. */
     private final Map<String, String> problemFiles;
 
-    /** A cache of exam objects. */
-    private final Map<String, ExamObj> examCache;
+    /** A cache of exam objects, each a future that completes when the exam has loaded. */
+    private final Map<String, CompletableFuture<ExamObj>> examCache;
 
-    /** A cache of problem objects. */
-    private final Map<String, AbstractProblemTemplate> problemCache;
+    /** A cache of problem objects, each a future that completes when the problem has loaded. */
+    private final Map<String, CompletableFuture<AbstractProblemTemplate>> problemCache;
 
     /** A cache of timestamps on files that have been loaded. */
     private final Map<String, Long> fileTimestamps;
 
+    /** A map from the path of each loaded file to the reference under which it was cached. */
+    private final Map<String, String> pathRefs;
+
+    /** The watcher that evicts objects whose source files change; {@code null} if not watching. */
+    private InstructionalCacheWatcher watcher = null;
+
+    /** The snapshot of parsed objects; {@code null} if there is none. */
+    private final InstructionSnapshot snapshot;
+
+    /** The most recently started warm-up; {@code null} if none has been started. */
+    private volatile InstructionalCacheWarmup warmup = null;
+
     /**
      * Constructs a new {@code InstructionalCache}.
      *
@@ -66,12 +112,15 @@ public final class InstructionalCache implements InstructionalCacheInt {
         this.base = theBase;
         this.synch = new Object();
 
-        this.examFiles = new HashMap<>(100);
-        this.problemFiles = new HashMap<>(500);
+        this.examFiles = new ConcurrentHashMap<>(100);
+        this.problemFiles = new ConcurrentHashMap<>(500);
 
-        this.examCache = new HashMap<>(100);
-        this.problemCache = new HashMap<>(500);
-        this.fileTimestamps = new HashMap<>(600);
+        this.examCache = new ConcurrentHashMap<>(100);
+        this.problemCache = new ConcurrentHashMap<>(500);
+        this.fileTimestamps = new ConcurrentHashMap<>(600);
+        this.pathRefs = new ConcurrentHashMap<>(600);
+
+        this.snapshot = SNAPSHOT_ENABLED ? InstructionSnapshot.open(theBase) : null;
     }
 
     /**
@@ -119,12 +168,60 @@ public final class InstructionalCache implements InstructionalCacheInt {
 
                 instance = new InstructionalCache(file);
 //                instance.rescan();
+                instance.startWatcher();
             }
 
             return instance;
         }
     }
 
+    /**
+     * Shuts down the singleton instance, stopping the watcher on its data directory. A later call to
+     * {@code getInstance} creates a new instance.
+     */
+    public static void shutdown() {
+
+        synchronized (CoreConstants.INSTANCE_SYNCH) {
+            if (instance != null) {
+                instance.stopWatcher();
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Starts loading every exam and problem in the data directory in the background, unless a warm-up is already
+     * running. Requests can be served while the warm-up runs.
+     *
+     * @param priorityExams the references of exams to load first (such as those whose testing windows are open)
+     * @param parallelism   the maximum number of objects to load concurrently
+     * @return the warm-up, which can be queried for progress
+     */
+    public InstructionalCacheWarmup startWarmup(final Collection<String> priorityExams, final int parallelism) {
+
+        synchronized (this.synch) {
+            InstructionalCacheWarmup result = this.warmup;
+
+            if (result == null || result.isDone()) {
+                result = new InstructionalCacheWarmup(this, this.base, priorityExams, parallelism);
+                this.warmup = result;
+                result.start();
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Gets the most recently started warm-up.
+     *
+     * @return the warm-up; {@code null} if none has been started
+     */
+    public InstructionalCacheWarmup getWarmup() {
+
+        return this.warmup;
+    }
+
     /**
      * Retrieves the exam based on a {@code Reference}.
      *
@@ -138,6 +235,18 @@ public final class InstructionalCache implements InstructionalCacheInt {
         return exam == null ? null : exam.deepCopy();
     }
 
+    /**
+     * Retrieves the shared template for an exam, without copying it. The returned template is frozen and must not be
+     * modified; it is suitable for reading the exam's attributes before deciding whether a copy is needed.
+     *
+     * @param ref the reference of the exam to load
+     * @return the exam template, or {@code null} if it could not be loaded
+     */
+    public static ExamObj getExamTemplate(final String ref) {
+
+        return getInstance().retrieveExam(ref);
+    }
+
     /**
      * Gets the list of scanned exam references.
      *
@@ -155,93 +264,105 @@ public final class InstructionalCache implements InstructionalCacheInt {
      * @return the loaded {@code ExamObj} object on success, or an empty {@code ExamObj} object containing the set of
      *         errors encountered on failure
      */
-    private ExamObj retrieveExam(final String ref) {
+    ExamObj retrieveExam(final String ref) {
 
-        synchronized (this.synch) {
-            ExamObj exam = this.examCache.get(ref);
+        return retrieve(this.examCache, ref, this::loadExam);
+    }
 
-            if (exam == null) {
-                final File file = FactoryBase.getRefSourceFile(this.base, ref);
+    /**
+     * Loads an exam from its source file, along with all of its problems.
+     *
+     * @param ref the reference of the exam to load
+     * @return the loaded {@code ExamObj} object on success, or {@code null} on failure
+     */
+    private ExamObj loadExam(final String ref) {
 
-                final String xml = FileLoader.loadFileAsString(file, true);
-                if (xml != null) {
-                    final String path = file.getAbsolutePath();
+        ExamObj exam = null;
 
-                    try {
-                        final XmlContent content = new XmlContent(xml, false, false);
-                        exam = ExamFactory.load(content, EParserMode.ALLOW_DEPRECATED);
+        final File file = FactoryBase.getRefSourceFile(this.base, ref);
+        final String path = file.getAbsolutePath();
+        final long timestamp = file.lastModified();
 
-                        if (exam == null || exam.ref == null) {
-                            Log.warning("FAILED TO LOAD exam", ref);
-                        } else {
-                            final String test;
+        final ExamObj loaded = readExam(file);
+        if (loaded != null) {
+            if (loaded.ref == null) {
+                Log.warning("FAILED TO LOAD exam", ref);
+            } else {
+                final String test;
 
-                            if (path.indexOf('\\') == -1) {
-                                test = path.replace(Contexts.ROOT_PATH, CoreConstants.DOT);
-                            } else {
-                                test = path.replace("\\", CoreConstants.DOT);
-                            }
+                if (path.indexOf('\\') == -1) {
+                    test = path.replace(Contexts.ROOT_PATH, CoreConstants.DOT);
+                } else {
+                    test = path.replace("\\", CoreConstants.DOT);
+                }
 
-                            if (!test.endsWith(exam.ref + ".xml")) {
-                                Log.warning("Origin: ", test, ", ref: ", exam.ref);
-                            }
+                if (!test.endsWith(loaded.ref + ".xml")) {
+                    Log.warning("Origin: ", test, ", ref: ", loaded.ref);
+                }
 
-                            Log.info("Caching exam ", exam.ref);
+                Log.info("Caching exam ", loaded.ref);
 
-                            this.examCache.put(ref, exam);
-                            this.fileTimestamps.put(path, Long.valueOf(file.lastModified()));
-                        }
-                    } catch (final ParsingException ex) {
-                        Log.warning("Failed to parse exam from ", path, ex);
-                    }
-                }
+                this.fileTimestamps.put(path, Long.valueOf(timestamp));
+                this.pathRefs.put(path, ref);
+                exam = loaded;
             }
+        }
 
-            if (exam != null) {
-                // Now, load the exam with its problems, so it can be realized
-                final int numSect = exam.getNumSections();
+        if (exam != null) {
+            linkProblems(exam, ref);
+            exam.freeze();
+        }
 
-                for (int i = 0; i < numSect; i++) {
-                    final ExamSection esect = exam.getSection(i);
+        return exam;
+    }
 
-                    final int numProb = esect.getNumProblems();
+    /**
+     * Loads the problems referenced by an exam and installs them in the exam, so it can be realized.
+     *
+     * @param exam the exam
+     * @param ref  the exam reference
+     */
+    private void linkProblems(final ExamObj exam, final String ref) {
 
-                    for (int j = 0; j < numProb; j++) {
-                        final ExamProblem eprob = esect.getProblem(j);
+        final int numSect = exam.getNumSections();
 
-                        final int count = eprob.getNumProblems();
+        for (int i = 0; i < numSect; i++) {
+            final ExamSection esect = exam.getSection(i);
 
-                        for (int k = 0; k < count; k++) {
-                            final String pref = eprob.getProblem(k).id;
+            final int numProb = esect.getNumProblems();
 
-                            if (pref == null) {
-                                Log.warning("Preferred problem (" + k + " of " + count + ") is null");
-                                throw new IllegalArgumentException("The " + (k + 1) + "th choice for problem "
-                                        + (j + 1) + " on section " + (i + 1) + " of exam " + exam.examVersion
-                                        + " had a null identifier reference");
-                            }
+            for (int j = 0; j < numProb; j++) {
+                final ExamProblem eprob = esect.getProblem(j);
 
-                            final String actualRef;
-                            if (pref.startsWith(exam.refRoot + ".")) {
-                                actualRef = pref;
-                            } else {
-                                actualRef = exam.refRoot + "." + pref;
-                            }
+                final int count = eprob.getNumProblems();
 
-                            final AbstractProblemTemplate prob = retrieveProblem(actualRef);
+                for (int k = 0; k < count; k++) {
+                    final String pref = eprob.getProblem(k).id;
 
-                            if (prob == null) {
-                                Log.warning("Exam ", ref, " problem ",
-                                        pref, " not found");
-                            } else {
-                                eprob.setProblem(k, prob);
-                            }
-                        }
+                    if (pref == null) {
+                        Log.warning("Preferred problem (" + k + " of " + count + ") is null");
+                        throw new IllegalArgumentException("The " + (k + 1) + "th choice for problem "
+                                + (j + 1) + " on section " + (i + 1) + " of exam " + exam.examVersion
+                                + " had a null identifier reference");
+                    }
+
+                    final String actualRef;
+                    if (pref.startsWith(exam.refRoot + ".")) {
+                        actualRef = pref;
+                    } else {
+                        actualRef = exam.refRoot + "." + pref;
+                    }
+
+                    final AbstractProblemTemplate prob = retrieveProblem(actualRef);
+
+                    if (prob == null) {
+                        Log.warning("Exam ", ref, " problem ",
+                                pref, " not found");
+                    } else {
+                        eprob.setProblem(k, prob);
                     }
                 }
             }
-
-            return exam;
         }
     }
 
@@ -253,44 +374,141 @@ public final class InstructionalCache implements InstructionalCacheInt {
      */
     public AbstractProblemTemplate retrieveProblem(final String ref) {
 
-         Log.info("Retrieve problem: ", ref);
+        Log.info("Retrieve problem: ", ref);
 
-        synchronized (this.synch) {
-            AbstractProblemTemplate problem;
+        final AbstractProblemTemplate problem;
+
+        if (ref == null) {
+            Log.warning("Reference with null ref");
+            problem = null;
+        } else {
+            problem = retrieve(this.problemCache, ref, this::loadProblem);
+        }
+
+        return problem;
+    }
+
+    /**
+     * Loads a problem from its source file.
+     *
+     * @param ref the reference of the problem to load
+     * @return the loaded {@code Problem} object on success, or {@code null} on failure
+     */
+    private AbstractProblemTemplate loadProblem(final String ref) {
+
+        AbstractProblemTemplate problem = null;
+
+        final File file = FactoryBase.getRefSourceFile(this.base, ref);
+        final String path = file.getAbsolutePath();
+        final long timestamp = file.lastModified();
 
-            if (ref == null) {
-                Log.warning("Reference with null ref");
-                problem = null;
+        final AbstractProblemTemplate loaded = readProblem(file);
+        if (loaded != null) {
+            if (loaded.id == null) {
+                Log.warning("No ref in retrieved problem ", ref);
             } else {
-                problem = this.problemCache.get(ref);
-
-                if (problem == null) {
-                    final File file = FactoryBase.getRefSourceFile(this.base, ref);
-
-                    final String xml = FileLoader.loadFileAsString(file, true);
-                    if (xml != null) {
-                        final String path = file.getAbsolutePath();
-
-                        try {
-                            final XmlContent content = new XmlContent(xml, false, false);
-                            problem = ProblemTemplateFactory.load(content, EParserMode.ALLOW_DEPRECATED);
-
-                            if (problem.id == null) {
-                                Log.warning("No ref in retrieved problem ", ref);
-                            } else {
-                                Log.info("Caching problem ", problem.id);
-                                this.problemCache.put(ref, problem);
-                                this.fileTimestamps.put(path, Long.valueOf(file.lastModified()));
-                            }
-                        } catch (final ParsingException ex) {
-                            Log.warning("Failed to parse problem from ", path, ex);
-                        }
-                    }
+                Log.info("Caching problem ", loaded.id);
+                loaded.freeze();
+                this.fileTimestamps.put(path, Long.valueOf(timestamp));
+                this.pathRefs.put(path, ref);
+                problem = loaded;
+            }
+        }
+
+        return problem;
+    }
+
+    /**
+     * Reads an exam from the snapshot, or parses it from its source file if the snapshot has no current copy.
+     *
+     * @param file the source file
+     * @return the exam, as returned by {@code ExamFactory} (neither linked nor frozen); {@code null} if the file could
+     *         not be read or parsed
+     */
+    private ExamObj readExam(final File file) {
+
+        ExamObj exam = this.snapshot == null ? null : this.snapshot.getExam(file);
+
+        if (exam == null) {
+            final String xml = FileLoader.loadFileAsString(file, true);
+
+            if (xml != null) {
+                try {
+                    final XmlContent content = new XmlContent(xml, false, false);
+                    exam = ExamFactory.load(content, EParserMode.ALLOW_DEPRECATED);
+                } catch (final ParsingException ex) {
+                    Log.warning("Failed to parse exam from ", file.getAbsolutePath(), ex);
                 }
             }
+        }
+
+        return exam;
+    }
+
+    /**
+     * Reads a problem from the snapshot, or parses it from its source file if the snapshot has no current copy.
+     *
+     * @param file the source file
+     * @return the problem, as returned by {@code ProblemTemplateFactory} (not frozen); {@code null} if the file could
+     *         not be read or parsed
+     */
+    private AbstractProblemTemplate readProblem(final File file) {
+
+        AbstractProblemTemplate problem = this.snapshot == null ? null : this.snapshot.getProblem(file);
 
-            return problem;
+        if (problem == null) {
+            final String xml = FileLoader.loadFileAsString(file, true);
+
+            if (xml != null) {
+                try {
+                    final XmlContent content = new XmlContent(xml, false, false);
+                    problem = ProblemTemplateFactory.load(content, EParserMode.ALLOW_DEPRECATED);
+                } catch (final ParsingException ex) {
+                    Log.warning("Failed to parse problem from ", file.getAbsolutePath(), ex);
+                }
+            }
+        }
+
+        return problem;
+    }
+
+    /**
+     * Retrieves an object from one of the caches, loading it if it is not yet present. If another thread is already
+     * loading the same reference, this waits for that load to complete and shares its result. Failed loads are not
+     * cached, so they will be retried on the next request.
+     *
+     * @param cache  the cache
+     * @param ref    the reference to retrieve
+     * @param loader the function that loads the object (returning {@code null} on failure)
+     * @param <T>    the type of object
+     * @return the object, or {@code null} if it could not be loaded
+     */
+    private static <T> T retrieve(final Map<String, CompletableFuture<T>> cache, final String ref,
+                                  final Function<String, T> loader) {
+
+        CompletableFuture<T> future = cache.get(ref);
+
+        if (future == null) {
+            final CompletableFuture<T> created = new CompletableFuture<>();
+            future = cache.putIfAbsent(ref, created);
+
+            if (future == null) {
+                future = created;
+                try {
+                    final T loaded = loader.apply(ref);
+                    if (loaded == null) {
+                        cache.remove(ref, created);
+                    }
+                    created.complete(loaded);
+                } catch (final RuntimeException ex) {
+                    cache.remove(ref, created);
+                    created.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
         }
+
+        return future.join();
     }
 
     /**
@@ -317,6 +535,23 @@ public final class InstructionalCache implements InstructionalCacheInt {
         return prob == null ? null : prob.deepCopy();
     }
 
+    /**
+     * Retrieves the shared template for a problem, without copying it. The returned template is frozen and must not be
+     * modified; it is suitable for installing as a candidate problem in an exam obtained from {@code getExam}, since
+     * realizing the exam copies the problems it selects.
+     *
+     * @param ref the {@code Reference} to the problem to load
+     * @return the problem template, or {@code null} if it could not be loaded
+     */
+    public static AbstractProblemTemplate getProblemTemplate(final String ref) {
+
+        final AbstractProblemTemplate prob = getInstance().retrieveProblem(ref);
+        if (prob == null) {
+            Log.warning("No problem ", ref);
+        }
+        return prob;
+    }
+
     /**
      * Retrieves a problem based on a {@code Reference}.
      *
@@ -336,6 +571,73 @@ public final class InstructionalCache implements InstructionalCacheInt {
     public void forgetProblem(final String ref) {
 
         this.problemCache.remove(ref);
+        this.examCache.clear();
+    }
+
+    /**
+     * Starts watching the data directory for changes to loaded files.
+     */
+    private void startWatcher() {
+
+        try {
+            this.watcher = new InstructionalCacheWatcher(this, this.base);
+            this.watcher.start();
+        } catch (final IOException ex) {
+            Log.warning("Unable to watch ", this.base.getAbsolutePath(), " for changes", ex);
+        }
+    }
+
+    /**
+     * Stops watching the data directory, if it is being watched.
+     */
+    private void stopWatcher() {
+
+        if (this.watcher != null) {
+            this.watcher.stop();
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Called by the watcher when an XML file in the data directory was created, modified, or deleted. If the file was
+     * loaded into the cache and its modification time no longer matches the timestamp recorded when it was loaded, the
+     * cached object is evicted. Since exams hold the problems they were loaded with, evicting a problem also evicts all
+     * exams.
+     *
+     * @param file the file
+     */
+    void fileChanged(final File file) {
+
+        final String path = file.getAbsolutePath();
+        final Long time = this.fileTimestamps.get(path);
+
+        if (time != null && (!file.exists() || time.longValue() != file.lastModified())) {
+            this.fileTimestamps.remove(path);
+            final String ref = this.pathRefs.remove(path);
+
+            if (ref != null) {
+                if (this.examCache.remove(ref) != null) {
+                    Log.info("Evicted exam ", ref, " after change to ", path);
+                }
+                if (this.problemCache.remove(ref) != null) {
+                    Log.info("Evicted problem ", ref, " after change to ", path);
+                    this.examCache.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by the watcher when change events may have been lost. Evicts all cached objects.
+     */
+    void invalidateAll() {
+
+        Log.info("Evicting all cached exams and problems");
+
+        this.examCache.clear();
+        this.problemCache.clear();
+        this.fileTimestamps.clear();
+        this.pathRefs.clear();
     }
 
     /**
@@ -408,30 +710,22 @@ public final class InstructionalCache implements InstructionalCacheInt {
                 if (file.getName().toLowerCase(Locale.ROOT).endsWith(".xml")) {
                     boolean changed = true;
 
-                    synchronized (this.fileTimestamps) {
-                        final Long time = this.fileTimestamps.get(file.getAbsolutePath());
+                    final Long time = this.fileTimestamps.get(file.getAbsolutePath());
 
-                        if (time != null) {
-                            if (time.longValue() == file.lastModified()) {
-                                changed = false;
-                            } else {
-                                Log.info(file.getAbsolutePath(), " had timestamp ", time, " and now has timestamp ",
-                                        Long.toString(file.lastModified()));
-                            }
+                    if (time != null) {
+                        if (time.longValue() == file.lastModified()) {
+                            changed = false;
+                        } else {
+                            Log.info(file.getAbsolutePath(), " had timestamp ", time, " and now has timestamp ",
+                                    Long.toString(file.lastModified()));
                         }
                     }
 
-                    if (path.contains("/exams/") || path.endsWith("/exams") || path.contains("\\exams\\") ||
-                            path.endsWith("\\exams") || path.contains("/homework/") || path.endsWith("/homework") ||
-                            path.contains("\\homework\\") || path.endsWith("\\homework")) {
-
+                    if (isExamDirectory(path)) {
                         if (changed) {
                             processExam(file);
                         }
-                    } else if (path.contains("/problems/") || path.endsWith("/problems") ||
-                            path.contains("\\problems\\") || path.endsWith("\\problems") ||
-                            path.contains("m130problems")) {
-
+                    } else if (isProblemDirectory(path)) {
                         if (changed) {
                             processProblem(file);
                         }
@@ -441,6 +735,31 @@ public final class InstructionalCache implements InstructionalCacheInt {
         }
     }
 
+    /**
+     * Tests whether XML files in a directory are exams (or homework assignments).
+     *
+     * @param path the absolute path of the directory
+     * @return true if files in the directory are exams
+     */
+    static boolean isExamDirectory(final String path) {
+
+        return path.contains("/exams/") || path.endsWith("/exams") || path.contains("\\exams\\")
+               || path.endsWith("\\exams") || path.contains("/homework/") || path.endsWith("/homework")
+               || path.contains("\\homework\\") || path.endsWith("\\homework");
+    }
+
+    /**
+     * Tests whether XML files in a directory are problems.
+     *
+     * @param path the absolute path of the directory
+     * @return true if files in the directory are problems
+     */
+    static boolean isProblemDirectory(final String path) {
+
+        return path.contains("/problems/") || path.endsWith("/problems") || path.contains("\\problems\\")
+               || path.endsWith("\\problems") || path.contains("m130problems");
+    }
+
     /**
      * Processes a single exam file.
      *
@@ -448,49 +767,40 @@ public final class InstructionalCache implements InstructionalCacheInt {
      */
     private void processExam(final File f) {
 
-        final String xml = FileLoader.loadFileAsString(f, true);
-        if (xml != null) {
+        final ExamObj exam = readExam(f);
+        if (exam != null) {
             final String path = f.getAbsolutePath();
 
-            try {
-                final XmlContent content = new XmlContent(xml, false, false);
-                final ExamObj exam = ExamFactory.load(content, EParserMode.ALLOW_DEPRECATED);
+            if (exam.ref == null) {
+                Log.warning("Failed to load exam: " + path);
+            } else {
+                final String test;
 
-                if (exam.ref == null) {
-                    Log.warning("Failed to load exam: " + path);
+                if (path.indexOf('\\') == -1) {
+                    test = path.replace(Contexts.ROOT_PATH, CoreConstants.DOT);
                 } else {
-                    final String test;
-
-                    if (path.indexOf('\\') == -1) {
-                        test = path.replace(Contexts.ROOT_PATH, CoreConstants.DOT);
-                    } else {
-                        test = path.replace("\\", CoreConstants.DOT);
-                    }
-
-                    if (!test.endsWith(exam.ref + ".xml")) {
-                        Log.warning("Origin: ", test, ", ref-base: ", exam.ref);
-                    }
-
-                    synchronized (this.fileTimestamps) {
+                    test = path.replace("\\", CoreConstants.DOT);
+                }
 
-                        if (this.examCache.get(exam.ref) != null) {
-                            Log.warning("Scanning ", path, " Duplicate exam identifier: ",
-                                    this.examCache.get(exam.ref).ref);
-                        }
+                if (!test.endsWith(exam.ref + ".xml")) {
+                    Log.warning("Origin: ", test, ", ref-base: ", exam.ref);
+                }
 
-                        final String existing = this.examFiles.get(exam.ref);
-                        if (existing == null) {
-                            this.examFiles.put(exam.ref, path);
-                        } else if (!existing.equals(path)) {
-                            Log.warning("Same exam reference path in ", existing, " and ", path);
-                        }
+                final String existing = this.examFiles.putIfAbsent(exam.ref, path);
+                if (existing != null && !existing.equals(path)) {
+                    Log.warning("Scanning ", path, " Duplicate exam identifier: ", exam.ref);
+                    Log.warning("Same exam reference path in ", existing, " and ", path);
+                }
 
-                        this.examCache.put(exam.ref, exam);
-                        this.fileTimestamps.put(path, Long.valueOf(f.lastModified()));
-                    }
+                try {
+                    linkProblems(exam, exam.ref);
+                    exam.freeze();
+                    this.examCache.put(exam.ref, CompletableFuture.completedFuture(exam));
+                } catch (final IllegalArgumentException ex) {
+                    Log.warning("Failed to load problems for exam from ", path, ex);
                 }
-            } catch (final ParsingException ex) {
-                Log.warning("Failed to parse exam from ", path, ex);
+                this.fileTimestamps.put(path, Long.valueOf(f.lastModified()));
+                this.pathRefs.put(path, exam.ref);
             }
         }
     }
@@ -502,39 +812,26 @@ public final class InstructionalCache implements InstructionalCacheInt {
      */
     private void processProblem(final File f) {
 
-        final String xml = FileLoader.loadFileAsString(f, true);
-        if (xml != null) {
+        final AbstractProblemTemplate prob = readProblem(f);
+        if (prob != null) {
             final String path = f.getAbsolutePath();
 
-            try {
-                final XmlContent content = new XmlContent(xml, false, false);
-                final AbstractProblemTemplate prob =
-                        ProblemTemplateFactory.load(content, EParserMode.ALLOW_DEPRECATED);
-
-                if (prob.id == null) {
-                    Log.warning("Failed to load problem: " + path);
-
-                } else {
-                    synchronized (this.fileTimestamps) {
-                        if (this.problemCache.get(prob.id) != null) {
-                            Log.warning("Scanning ", path, " Duplicate problem identifier: ",
-                                    this.problemCache.get(prob.id).id);
-                        }
+            if (prob.id == null) {
+                Log.warning("Failed to load problem: " + path);
 
-                        final String existing = this.problemFiles.get(prob.id);
-                        if (existing == null) {
-                            Log.info("Scanned ", path);
-                            this.problemFiles.put(prob.id, path);
-                        } else if (!existing.equals(path)) {
-                            Log.warning("Same problem reference path in ", existing, " and ", path);
-                        }
-
-                        this.problemCache.put(prob.id, prob);
-                        this.fileTimestamps.put(path, Long.valueOf(f.lastModified()));
-                    }
+            } else {
+                final String existing = this.problemFiles.putIfAbsent(prob.id, path);
+                if (existing == null) {
+                    Log.info("Scanned ", path);
+                } else if (!existing.equals(path)) {
+                    Log.warning("Scanning ", path, " Duplicate problem identifier: ", prob.id);
+                    Log.warning("Same problem reference path in ", existing, " and ", path);
                 }
-            } catch (final ParsingException ex) {
-                Log.warning("Failed to parse exam from ", path, ex);
+
+                prob.freeze();
+                this.problemCache.put(prob.id, CompletableFuture.completedFuture(prob));
+                this.fileTimestamps.put(path, Long.valueOf(f.lastModified()));
+                this.pathRefs.put(path, prob.id);
             }
         }
     }
@@ -0,0 +1,277 @@
+package dev.mathops.assessment;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A background task that loads every exam and problem in an instruction tree into an {@code InstructionalCache}, so
+ * students do not wait for sources to be parsed on their first requests.
+ *
+ * <p>
+ * Exam and problem references are discovered from the directory tree without parsing any files, and each reference is
+ * then retrieved through the cache on a bounded fork/join pool (in FIFO order): first the exams named as priorities
+ * (typically those whose testing windows are open), then all other exams, then any problems not referenced by an exam.
+ * Because retrievals go through the cache, a student request for an object that is being warmed waits for that load
+ * rather than starting another, and loading an exam loads (once) the problems it references.
+ *
+ * <p>
+ * Progress (objects discovered, loaded, and failed) and the time taken to load each reference can be queried while
+ * the warm-up runs. The time for an exam includes the time to load any of its problems that were not already loaded.
+ */
+public final class InstructionalCacheWarmup {
+
+    /** Loads that take longer than this many milliseconds are logged. */
+    private static final long SLOW_LOAD_MS = 1000L;
+
+    /** The cache being warmed. */
+    private final InstructionalCache owner;
+
+    /** The directory relative to which references are resolved. */
+    private final File root;
+
+    /** The references of exams to load first. */
+    private final Set<String> priorityExams;
+
+    /** The pool on which objects are loaded. */
+    private final ForkJoinPool pool;
+
+    /** The number of references discovered. */
+    private final AtomicInteger total;
+
+    /** The number of references loaded. */
+    private final AtomicInteger loaded;
+
+    /** The number of references that could not be loaded. */
+    private final AtomicInteger failed;
+
+    /** The time taken to load each reference, in milliseconds. */
+    private final Map<String, Long> loadTimes;
+
+    /** The time the warm-up started. */
+    private final long startTime;
+
+    /** The time the warm-up finished; 0 until it has. */
+    private volatile long endTime = 0L;
+
+    /**
+     * Constructs a new {@code InstructionalCacheWarmup}.
+     *
+     * @param theOwner         the cache to warm
+     * @param theBase          the directory under which instructional data files are stored
+     * @param thePriorityExams the references of exams to load first
+     * @param parallelism      the maximum number of objects to load concurrently
+     */
+    InstructionalCacheWarmup(final InstructionalCache theOwner, final File theBase,
+                             final Collection<String> thePriorityExams, final int parallelism) {
+
+        this.owner = theOwner;
+        this.root = FactoryBase.getRefRoot(theBase);
+        this.priorityExams = new HashSet<>(thePriorityExams);
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null, true);
+
+        this.total = new AtomicInteger(0);
+        this.loaded = new AtomicInteger(0);
+        this.failed = new AtomicInteger(0);
+        this.loadTimes = new ConcurrentHashMap<>(1000);
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts the warm-up. This method returns immediately; loads run on the pool's (daemon) worker threads.
+     */
+    void start() {
+
+        this.pool.execute(this::run);
+    }
+
+    /**
+     * Discovers references and submits a task to load each one.
+     */
+    private void run() {
+
+        final List<String> exams = new ArrayList<>(200);
+        final List<String> problems = new ArrayList<>(2000);
+        discover(this.root, null, exams, problems);
+
+        final List<String> ordered = new ArrayList<>(exams.size() + problems.size());
+        for (final String ref : exams) {
+            if (this.priorityExams.contains(ref)) {
+                ordered.add(ref);
+            }
+        }
+        final int numPriority = ordered.size();
+        for (final String ref : exams) {
+            if (!this.priorityExams.contains(ref)) {
+                ordered.add(ref);
+            }
+        }
+        final int numExams = ordered.size();
+        ordered.addAll(problems);
+
+        this.total.set(ordered.size());
+        Log.info("Instructional cache warm-up: ", Integer.toString(numExams), " exams (",
+                Integer.toString(numPriority), " open) and ", Integer.toString(problems.size()), " problems on ",
+                Integer.toString(this.pool.getParallelism()), " threads");
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(ordered.size());
+        for (int i = 0; i < ordered.size(); ++i) {
+            final String ref = ordered.get(i);
+            final boolean isExam = i < numExams;
+            tasks.add(this.pool.submit(() -> load(ref, isExam)));
+        }
+        for (final ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        this.endTime = System.currentTimeMillis();
+        Log.info("Instructional cache warm-up complete: ", Integer.toString(this.loaded.get()), " loaded, ",
+                Integer.toString(this.failed.get()), " failed in ", Long.toString(this.endTime - this.startTime),
+                " ms");
+
+        this.pool.shutdown();
+    }
+
+    /**
+     * Discovers exam and problem references by scanning a directory tree, without parsing any files.
+     *
+     * @param dir      the directory to scan
+     * @param prefix   the reference prefix for files in the directory ({@code null} for the root)
+     * @param exams    the list to which to add exam references
+     * @param problems the list to which to add problem references
+     */
+    private static void discover(final File dir, final String prefix, final List<? super String> exams,
+                                 final List<? super String> problems) {
+
+        final String path = dir.getAbsolutePath();
+        final File[] list = dir.listFiles();
+
+        if (list != null) {
+            Arrays.sort(list);
+
+            for (final File file : list) {
+                final String name = file.getName();
+
+                if (file.isDirectory()) {
+                    discover(file, prefix == null ? name : prefix + "." + name, exams, problems);
+                } else if (prefix != null && name.toLowerCase(Locale.ROOT).endsWith(".xml")) {
+                    final String ref = prefix + "." + name.substring(0, name.length() - 4);
+
+                    if (InstructionalCache.isExamDirectory(path)) {
+                        exams.add(ref);
+                    } else if (InstructionalCache.isProblemDirectory(path)) {
+                        problems.add(ref);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a single reference into the cache and records the time taken.
+     *
+     * @param ref    the reference
+     * @param isExam true if the reference is to an exam; false if to a problem
+     */
+    private void load(final String ref, final boolean isExam) {
+
+        final long start = System.nanoTime();
+
+        Object obj = null;
+        try {
+            obj = isExam ? this.owner.retrieveExam(ref) : this.owner.retrieveProblem(ref);
+        } catch (final RuntimeException ex) {
+            Log.warning("Instructional cache warm-up failed to load ", ref, ex);
+        }
+
+        final long ms = (System.nanoTime() - start) / 1000000L;
+        this.loadTimes.put(ref, Long.valueOf(ms));
+
+        if (obj == null) {
+            this.failed.incrementAndGet();
+        } else {
+            this.loaded.incrementAndGet();
+        }
+
+        if (ms > SLOW_LOAD_MS) {
+            Log.info("Instructional cache warm-up: ", ref, " took ", Long.toString(ms), " ms");
+        }
+    }
+
+    /**
+     * Gets the number of references discovered (0 until discovery is complete).
+     *
+     * @return the number of references
+     */
+    public int getTotal() {
+
+        return this.total.get();
+    }
+
+    /**
+     * Gets the number of references loaded so far.
+     *
+     * @return the number loaded
+     */
+    public int getLoaded() {
+
+        return this.loaded.get();
+    }
+
+    /**
+     * Gets the number of references that could not be loaded.
+     *
+     * @return the number that failed
+     */
+    public int getFailed() {
+
+        return this.failed.get();
+    }
+
+    /**
+     * Tests whether the warm-up has finished.
+     *
+     * @return true if finished
+     */
+    public boolean isDone() {
+
+        return this.endTime != 0L;
+    }
+
+    /**
+     * Gets the time elapsed since the warm-up started, or the total time taken if it has finished.
+     *
+     * @return the elapsed time, in milliseconds
+     */
+    public long getElapsedMs() {
+
+        final long end = this.endTime;
+
+        return (end == 0L ? System.currentTimeMillis() : end) - this.startTime;
+    }
+
+    /**
+     * Gets the time taken to load each reference loaded so far.
+     *
+     * @return a map from reference to load time in milliseconds
+     */
+    public Map<String, Long> getLoadTimes() {
+
+        return Collections.unmodifiableMap(new HashMap<>(this.loadTimes));
+    }
+}
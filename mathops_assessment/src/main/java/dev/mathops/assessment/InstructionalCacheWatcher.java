@@ -0,0 +1,146 @@
+package dev.mathops.assessment;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A background task that watches the instruction directory tree with a {@code WatchService} and tells an
+ * {@code InstructionalCache} when an XML file it has loaded changes or is deleted. Change detection compares each
+ * file's modification time against the timestamp recorded when the cache loaded it, so events for files that were
+ * never loaded (or that did not actually change) are ignored.
+ */
+final class InstructionalCacheWatcher implements Runnable {
+
+    /** The cache to notify. */
+    private final InstructionalCache owner;
+
+    /** The root of the directory tree to watch. */
+    private final File base;
+
+    /** The watch service. */
+    private final WatchService watcher;
+
+    /** A map from watch key to the directory it watches. */
+    private final Map<WatchKey, Path> keys;
+
+    /**
+     * Constructs a new {@code InstructionalCacheWatcher}.
+     *
+     * @param theOwner the cache to notify
+     * @param theBase  the root of the directory tree to watch
+     * @throws IOException if the watch service could not be created
+     */
+    InstructionalCacheWatcher(final InstructionalCache theOwner, final File theBase) throws IOException {
+
+        this.owner = theOwner;
+        this.base = theBase;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.keys = new HashMap<>(100);
+    }
+
+    /**
+     * Starts the watcher on a daemon thread.
+     */
+    void start() {
+
+        final Thread thread = new Thread(this, "Instructional cache watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the watcher.
+     */
+    void stop() {
+
+        try {
+            this.watcher.close();
+        } catch (final IOException ex) {
+            Log.warning(ex);
+        }
+    }
+
+    /**
+     * Registers a directory and all of its subdirectories with the watch service.
+     *
+     * @param dir the directory
+     */
+    private void registerTree(final File dir) {
+
+        try {
+            final Path path = dir.toPath();
+            final WatchKey key = path.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            this.keys.put(key, path);
+        } catch (final IOException ex) {
+            Log.warning("Unable to watch ", dir.getAbsolutePath(), ex);
+        }
+
+        final File[] list = dir.listFiles();
+        if (list != null) {
+            for (final File file : list) {
+                if (file.isDirectory()) {
+                    registerTree(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the watch loop until the watch service is closed.
+     */
+    @Override
+    public void run() {
+
+        registerTree(this.base);
+        Log.info("Instructional cache watching ", Integer.toString(this.keys.size()), " directories under ",
+                this.base.getAbsolutePath());
+
+        try {
+            while (true) {
+                final WatchKey key = this.watcher.take();
+                final Path dir = this.keys.get(key);
+
+                if (dir != null) {
+                    final List<WatchEvent<?>> events = key.pollEvents();
+                    for (final WatchEvent<?> event : events) {
+                        final WatchEvent.Kind<?> kind = event.kind();
+
+                        if (kind == StandardWatchEventKinds.OVERFLOW) {
+                            this.owner.invalidateAll();
+                        } else if (event.context() instanceof final Path name) {
+                            final File file = dir.resolve(name).toFile();
+
+                            if (kind == StandardWatchEventKinds.ENTRY_CREATE && file.isDirectory()) {
+                                registerTree(file);
+                            } else if (file.getName().toLowerCase(Locale.ROOT).endsWith(".xml")) {
+                                this.owner.fileChanged(file);
+                            }
+                        }
+                    }
+                }
+
+                if (!key.reset()) {
+                    this.keys.remove(key);
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException ex) {
+            Log.info("Instructional cache watcher stopped");
+        }
+    }
+}
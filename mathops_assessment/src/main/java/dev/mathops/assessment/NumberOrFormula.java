@@ -5,11 +5,18 @@ import dev.mathops.assessment.formula.Formula;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.log.Log;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * A container for a Number and a Formula, only one of which should be present. This supports a common idiom in which
  * either a constant or formula is provided for some real-valued parameter.
  */
-public final class NumberOrFormula {
+public final class NumberOrFormula implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -7066093931434893119L;
 
     /** The number. */
     private final Number number;
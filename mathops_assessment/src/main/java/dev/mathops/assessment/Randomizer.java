@@ -1,30 +1,68 @@
 package dev.mathops.assessment;
 
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
 
 /**
- * A shared random number generation class that can be called statically by all classes. This avoids the overhead of
- * each class constructing its own random number generator.
+ * Derives seeds for the per-realization random number generators used to realize exams and problems. There is no
+ * shared generator: each realization draws from its own {@code SplittableRandom}, seeded from the exam's seed (normally
+ * its serial number) and the identity of the item being realized, so realization is free of contention and a realized
+ * exam can be reproduced from its seed.
  */
 public enum Randomizer {
     ;
 
-    /** A pseudo-random number generator. */
-    private static final Random random;
+    /** The golden-ratio increment used by SplitMix64. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
 
-    static {
-        random = new Random(System.currentTimeMillis());
+    /**
+     * Derives a seed for an item within a realization.
+     *
+     * @param seed the realization seed
+     * @param id   the identifier of the item (an exam or problem reference)
+     * @return the derived seed
+     */
+    public static long seedFor(final long seed, final String id) {
+
+        long hash = seed;
+
+        if (id != null) {
+            // A 64-bit FNV-1a hash of the identifier bytes, which (unlike String.hashCode) rarely collides
+            long fnv = 0xCBF29CE484222325L;
+            for (final byte b : id.getBytes(StandardCharsets.UTF_8)) {
+                fnv ^= (long) (b & 0xFF);
+                fnv *= 0x100000001B3L;
+            }
+            hash = mix(hash + GOLDEN_GAMMA) ^ fnv;
+        }
+
+        return mix(hash);
     }
 
     /**
-     * Generates a random integer between 0 and n-1, inclusive.
+     * Derives a seed for an item at a position within a realization.
      *
-     * @param max a value that the number must fall below
-     * @return the random value
+     * @param seed     the realization seed
+     * @param id       the identifier of the item (an exam or problem reference)
+     * @param position the position of the item (for example, a problem ID within an exam)
+     * @return the derived seed
      */
-    public static int nextInt(final int max) {
+    public static long seedFor(final long seed, final String id, final int position) {
+
+        return mix(seedFor(seed, id) + GOLDEN_GAMMA * (long) (position + 1));
+    }
+
+    /**
+     * The SplitMix64 finalizer, which scrambles the bits of a 64-bit value.
+     *
+     * @param value the value
+     * @return the scrambled value
+     */
+    private static long mix(final long value) {
+
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
 
-        // Note: "Random" class is thread-safe.
-        return random.nextInt(max);
+        return z ^ (z >>> 31);
     }
 }
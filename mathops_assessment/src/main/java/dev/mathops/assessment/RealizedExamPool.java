@@ -0,0 +1,460 @@
+package dev.mathops.assessment;
+
+import dev.mathops.assessment.exam.ExamObj;
+import dev.mathops.commons.CoreConstants;
+import dev.mathops.commons.log.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of pre-realized exams, kept per exam version (exam reference) and topped up by background threads, so that an
+ * exam delivery can take an already-realized exam rather than realizing one while the student waits.
+ *
+ * <p>
+ * The target size of each version's pool adapts to demand: takes are counted per minute, and the target is set to cover
+ * {@code DEMAND_HORIZON_MIN} minutes at the smoothed rate (between {@code MIN_TARGET} and {@code MAX_TARGET}).
+ * Versions that have been delivered in a proctored setting always keep at least {@code PROCTORED_RESERVE} exams ready,
+ * since proctored sessions tend to start in bursts when a testing center opens.
+ *
+ * <p>
+ * Pooled exams are discarded if they are older than {@code MAX_AGE_MS}, which bounds how long a changed exam or problem
+ * file can continue to be served from the pool.
+ *
+ * <p>
+ * A pooled exam has been realized from a random seed (recorded in {@code ExamObj.realizationSeed}) but has no serial
+ * number; the caller must call {@code ExamObj.assignDelivery} before presenting it.
+ */
+public final class RealizedExamPool {
+
+    /** The number of minutes of demand each pool should be able to absorb. */
+    private static final double DEMAND_HORIZON_MIN = 2.0;
+
+    /** The weight given to the most recent minute when smoothing the demand rate. */
+    private static final double DEMAND_SMOOTHING = 0.3;
+
+    /** The minimum target size for a version with any recent demand. */
+    private static final int MIN_TARGET = 1;
+
+    /** The maximum target size for any version. */
+    private static final int MAX_TARGET = 40;
+
+    /** The minimum target size for a version that has been delivered in a proctored setting. */
+    private static final int PROCTORED_RESERVE = 5;
+
+    /** The smoothed demand rate (per minute) below which a version is considered idle. */
+    private static final double IDLE_RATE = 0.05;
+
+    /** The maximum age of a pooled exam, in milliseconds. */
+    private static final long MAX_AGE_MS = 15L * 60L * 1000L;
+
+    /** The number of attempts to realize an exam before giving up on a refill. */
+    private static final int MAX_REALIZE_ATTEMPTS = 3;
+
+    /** The singleton instance. */
+    private static RealizedExamPool instance = null;
+
+    /** The per-version pools. */
+    private final Map<String, VersionPool> pools;
+
+    /** The executor that refills pools and updates demand rates. */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new {@code RealizedExamPool}.
+     */
+    private RealizedExamPool() {
+
+        this.pools = new ConcurrentHashMap<>(50);
+
+        final int numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        final AtomicInteger threadNum = new AtomicInteger(1);
+        final ThreadFactory factory = r -> {
+            final Thread thread = new Thread(r, "Realized exam pool " + threadNum.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        this.executor = Executors.newScheduledThreadPool(numThreads, factory);
+        this.executor.scheduleAtFixedRate(this::updateDemand, 1L, 1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Gets the singleton {@code RealizedExamPool} instance.
+     *
+     * @return the instance
+     */
+    public static RealizedExamPool getInstance() {
+
+        synchronized (CoreConstants.INSTANCE_SYNCH) {
+            if (instance == null) {
+                instance = new RealizedExamPool();
+            }
+
+            return instance;
+        }
+    }
+
+    /**
+     * Takes a pre-realized exam from the pool for an exam version, if one is available, and triggers a background
+     * refill of that version's pool.
+     *
+     * @param ref         the exam reference
+     * @param isProctored {@code true} if the exam is being delivered in a proctored setting
+     * @return the realized exam (to which the caller must assign a serial number), or {@code null} if the pool was
+     *         empty, in which case the caller should realize an exam itself
+     */
+    public ExamObj take(final String ref, final boolean isProctored) {
+
+        final VersionPool pool = this.pools.computeIfAbsent(ref, VersionPool::new);
+        pool.takesThisMinute.incrementAndGet();
+        if (isProctored) {
+            pool.proctored = true;
+        }
+
+        final long now = System.currentTimeMillis();
+        ExamObj result = null;
+
+        while (result == null) {
+            final PooledExam pooled = pool.exams.poll();
+            if (pooled == null) {
+                break;
+            }
+            pool.size.decrementAndGet();
+
+            if (now - pooled.created > MAX_AGE_MS) {
+                pool.discarded.incrementAndGet();
+            } else {
+                result = pooled.exam;
+            }
+        }
+
+        if (result == null) {
+            pool.misses.incrementAndGet();
+        } else {
+            pool.hits.incrementAndGet();
+        }
+
+        scheduleRefill(pool);
+
+        return result;
+    }
+
+    /**
+     * Ensures a version has a pool with at least a minimum target, so that exams are realized before the first
+     * delivery (for example, when a testing center is about to open).
+     *
+     * @param ref         the exam reference
+     * @param isProctored {@code true} if the version will be delivered in a proctored setting
+     */
+    public void prime(final String ref, final boolean isProctored) {
+
+        final VersionPool pool = this.pools.computeIfAbsent(ref, VersionPool::new);
+        if (isProctored) {
+            pool.proctored = true;
+        }
+        pool.primed = true;
+
+        scheduleRefill(pool);
+    }
+
+    /**
+     * Gets statistics on all version pools.
+     *
+     * @return the list of statistics, one per version
+     */
+    public List<Stats> getStats() {
+
+        final List<Stats> result = new ArrayList<>(this.pools.size());
+
+        for (final VersionPool pool : this.pools.values()) {
+            result.add(new Stats(pool));
+        }
+
+        return result;
+    }
+
+    /**
+     * Schedules a refill of a version pool, unless one is already scheduled or running.
+     *
+     * @param pool the version pool
+     */
+    private void scheduleRefill(final VersionPool pool) {
+
+        if (pool.size.get() < pool.target() && pool.refilling.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(() -> refill(pool));
+            } catch (final RejectedExecutionException ex) {
+                pool.refilling.set(false);
+                Log.warning("Unable to schedule refill of exam pool for ", pool.ref, ex);
+            }
+        }
+    }
+
+    /**
+     * Realizes exams until a version pool reaches its target size.
+     *
+     * @param pool the version pool
+     */
+    private void refill(final VersionPool pool) {
+
+        try {
+            int failures = 0;
+
+            while (pool.size.get() < pool.target() && failures < MAX_REALIZE_ATTEMPTS) {
+                final long start = System.nanoTime();
+                final ExamObj exam = InstructionalCache.getExam(pool.ref);
+
+                if (exam == null || exam.ref == null) {
+                    Log.warning("Unable to load template for pooled exam ", pool.ref);
+                    break;
+                }
+
+                if (exam.realize(false, false, 0L, ThreadLocalRandom.current().nextLong())) {
+                    final long elapsed = System.nanoTime() - start;
+                    pool.refills.incrementAndGet();
+                    pool.refillNanos.addAndGet(elapsed);
+                    pool.maxRefillNanos.accumulateAndGet(elapsed, Math::max);
+
+                    pool.exams.add(new PooledExam(exam));
+                    pool.size.incrementAndGet();
+                    failures = 0;
+                } else {
+                    pool.realizeFailures.incrementAndGet();
+                    ++failures;
+                }
+            }
+        } catch (final RuntimeException ex) {
+            Log.warning("Failed to refill exam pool for ", pool.ref, ex);
+        } finally {
+            pool.refilling.set(false);
+        }
+    }
+
+    /**
+     * Folds each version's takes over the last minute into its smoothed demand rate, discards expired exams, and
+     * schedules refills where needed.
+     */
+    private void updateDemand() {
+
+        try {
+            final long now = System.currentTimeMillis();
+
+            for (final VersionPool pool : this.pools.values()) {
+                final int takes = pool.takesThisMinute.getAndSet(0);
+                pool.demandRate = DEMAND_SMOOTHING * (double) takes + (1.0 - DEMAND_SMOOTHING) * pool.demandRate;
+
+                if (pool.exams.removeIf(pooled -> now - pooled.created > MAX_AGE_MS)) {
+                    pool.size.set(pool.exams.size());
+                }
+
+                scheduleRefill(pool);
+            }
+        } catch (final RuntimeException ex) {
+            Log.warning("Failed to update exam pool demand", ex);
+        }
+    }
+
+    /**
+     * A pooled exam with its creation time.
+     */
+    private static final class PooledExam {
+
+        /** The realized exam. */
+        final ExamObj exam;
+
+        /** The time the exam was realized. */
+        final long created;
+
+        /**
+         * Constructs a new {@code PooledExam}.
+         *
+         * @param theExam the realized exam
+         */
+        PooledExam(final ExamObj theExam) {
+
+            this.exam = theExam;
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The pool for a single exam version.
+     */
+    private static final class VersionPool {
+
+        /** The exam reference. */
+        final String ref;
+
+        /** The pooled exams. */
+        final ConcurrentLinkedQueue<PooledExam> exams;
+
+        /** The number of pooled exams (tracked separately, since queue size is not constant-time). */
+        final AtomicInteger size;
+
+        /** True while a refill is scheduled or running. */
+        final AtomicBoolean refilling;
+
+        /** The number of takes in the current minute. */
+        final AtomicInteger takesThisMinute;
+
+        /** The number of takes satisfied from the pool. */
+        final AtomicLong hits;
+
+        /** The number of takes that found the pool empty. */
+        final AtomicLong misses;
+
+        /** The number of pooled exams discarded for age. */
+        final AtomicLong discarded;
+
+        /** The number of exams realized into the pool. */
+        final AtomicLong refills;
+
+        /** The number of failed realization attempts during refills. */
+        final AtomicLong realizeFailures;
+
+        /** The total time spent realizing exams into the pool, in nanoseconds. */
+        final AtomicLong refillNanos;
+
+        /** The longest time spent realizing one exam into the pool, in nanoseconds. */
+        final AtomicLong maxRefillNanos;
+
+        /** The smoothed demand rate, in takes per minute. */
+        volatile double demandRate;
+
+        /** True if this version has been delivered in a proctored setting. */
+        volatile boolean proctored;
+
+        /** True if this version was explicitly primed. */
+        volatile boolean primed;
+
+        /**
+         * Constructs a new {@code VersionPool}.
+         *
+         * @param theRef the exam reference
+         */
+        VersionPool(final String theRef) {
+
+            this.ref = theRef;
+            this.exams = new ConcurrentLinkedQueue<>();
+            this.size = new AtomicInteger(0);
+            this.refilling = new AtomicBoolean(false);
+            this.takesThisMinute = new AtomicInteger(0);
+            this.hits = new AtomicLong(0L);
+            this.misses = new AtomicLong(0L);
+            this.discarded = new AtomicLong(0L);
+            this.refills = new AtomicLong(0L);
+            this.realizeFailures = new AtomicLong(0L);
+            this.refillNanos = new AtomicLong(0L);
+            this.maxRefillNanos = new AtomicLong(0L);
+        }
+
+        /**
+         * Computes the current target size of the pool.
+         *
+         * @return the target size
+         */
+        int target() {
+
+            final double rate = Math.max(this.demandRate, (double) this.takesThisMinute.get());
+            int target;
+
+            if (rate < IDLE_RATE) {
+                target = this.primed ? MIN_TARGET : 0;
+            } else {
+                target = Math.max(MIN_TARGET, (int) Math.ceil(rate * DEMAND_HORIZON_MIN));
+            }
+
+            if (this.proctored) {
+                target = Math.max(target, PROCTORED_RESERVE);
+            }
+
+            return Math.min(target, MAX_TARGET);
+        }
+    }
+
+    /**
+     * A snapshot of statistics for a single version pool.
+     */
+    public static final class Stats {
+
+        /** The exam reference. */
+        public final String ref;
+
+        /** The number of exams currently pooled. */
+        public final int size;
+
+        /** The current target size. */
+        public final int target;
+
+        /** The smoothed demand rate, in takes per minute. */
+        public final double demandRate;
+
+        /** The number of takes satisfied from the pool. */
+        public final long hits;
+
+        /** The number of takes that found the pool empty. */
+        public final long misses;
+
+        /** The number of pooled exams discarded for age. */
+        public final long discarded;
+
+        /** The number of exams realized into the pool. */
+        public final long refills;
+
+        /** The number of failed realization attempts during refills. */
+        public final long realizeFailures;
+
+        /** The average time to realize one exam into the pool, in milliseconds. */
+        public final double avgRefillMs;
+
+        /** The longest time to realize one exam into the pool, in milliseconds. */
+        public final double maxRefillMs;
+
+        /**
+         * Constructs a new {@code Stats}.
+         *
+         * @param pool the pool whose statistics to capture
+         */
+        private Stats(final VersionPool pool) {
+
+            this.ref = pool.ref;
+            this.size = pool.size.get();
+            this.target = pool.target();
+            this.demandRate = pool.demandRate;
+            this.hits = pool.hits.get();
+            this.misses = pool.misses.get();
+            this.discarded = pool.discarded.get();
+            this.refills = pool.refills.get();
+            this.realizeFailures = pool.realizeFailures.get();
+
+            final long nanos = pool.refillNanos.get();
+            this.avgRefillMs = this.refills == 0L ? 0.0 : (double) nanos / (double) this.refills / 1.0e6;
+            this.maxRefillMs = (double) pool.maxRefillNanos.get() / 1.0e6;
+        }
+
+        /**
+         * Gets the fraction of takes satisfied from the pool.
+         *
+         * @return the hit rate, from 0 to 1
+         */
+        public double hitRate() {
+
+            final long total = this.hits + this.misses;
+
+            return total == 0L ? 0.0 : (double) this.hits / (double) total;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package dev.mathops.assessment.document;
 
 import dev.mathops.text.builder.SimpleBuilder;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -10,7 +12,11 @@ import java.util.Objects;
  * {@code NumberBounds} and a border width (which must be in pixel space).  The drawing size, minus the border width on
  * each side, is mapped to the graph space bounds to resolve graph coordinates.
  */
-public final class CoordinateSystems {
+public final class CoordinateSystems implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -3543353006726061351L;
 
     /** The width of the region in "pixel space". */
     private final Number pixelSpaceWidth;
@@ -1,9 +1,16 @@
 package dev.mathops.assessment.document;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * A container for layout bounds, computed when an object is laid out.
  */
-public final class DocObjectLayoutBounds {
+public final class DocObjectLayoutBounds implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = 8462379561340081252L;
 
     /** The size and position of the object. */
     public int x;
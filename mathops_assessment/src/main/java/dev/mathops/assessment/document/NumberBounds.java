@@ -2,10 +2,17 @@ package dev.mathops.assessment.document;
 
 import dev.mathops.text.builder.SimpleBuilder;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * An immutable bounding rectangle specified by four {@code Number} objects.
  */
-public final class NumberBounds {
+public final class NumberBounds implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -7929377921563375858L;
 
     /** The x coordinate at the left edge. */
     private final Number leftX;
@@ -1,10 +1,16 @@
 package dev.mathops.assessment.document.svggen;
 
+import dev.mathops.assessment.document.AxisSpec;
+import dev.mathops.assessment.document.AxisTicksSpec;
+import dev.mathops.assessment.document.BoundingRect;
 import dev.mathops.assessment.document.CoordinateSystems;
 import dev.mathops.assessment.document.EArcFillStyle;
 import dev.mathops.assessment.document.EStrokeCap;
 import dev.mathops.assessment.document.EStrokeJoin;
+import dev.mathops.assessment.document.ETextAnchor;
 import dev.mathops.assessment.document.FillStyle;
+import dev.mathops.assessment.document.GridSpec;
+import dev.mathops.assessment.document.inst.AbstractPrimitiveContainerInst;
 import dev.mathops.assessment.document.inst.StrokeStyleInst;
 import dev.mathops.assessment.document.inst.AbstractPrimitiveInst;
 import dev.mathops.assessment.document.inst.DocDrawingInst;
@@ -21,10 +27,18 @@ import dev.mathops.assessment.document.inst.DocPrimitiveRectangleInst;
 import dev.mathops.assessment.document.inst.DocPrimitiveSpanInst;
 import dev.mathops.assessment.document.inst.DocPrimitiveTextInst;
 import dev.mathops.assessment.document.inst.RectangleShapeInst;
+import dev.mathops.assessment.formula.Formula;
+import dev.mathops.assessment.variable.AbstractVariable;
+import dev.mathops.assessment.variable.EvalContext;
+import dev.mathops.assessment.variable.VariableReal;
+import dev.mathops.commons.number.Irrational;
 import dev.mathops.text.builder.HtmlBuilder;
 import dev.mathops.text.parser.xml.XmlEscaper;
 
 import java.awt.geom.Rectangle2D;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
 
 /**
  * Converts a subclasses of {@code AbstractPrimitiveContainerInst} into SVG.  "span" content of such a container is not
@@ -34,6 +48,36 @@ import java.awt.geom.Rectangle2D;
 public enum PrimitiveContainerInstConverter {
     ;
 
+    /** The grid color used when a graph does not specify one (matches the raster renderer). */
+    private static final String DEFAULT_GRID_COLOR = "rgb(200,200,255)";
+
+    /** The largest jump in y (in pixels) between adjacent samples of a formula before the curve is broken. */
+    private static final double MAX_FORMULA_JUMP = 500.0;
+
+    /**
+     * Tests whether every primitive in a container can be expressed in SVG.  Containers that fail this test should be
+     * rendered as raster images instead.
+     *
+     * @param container the container
+     * @return {@code true} if the container can be converted to SVG
+     */
+    public static boolean isConvertible(final AbstractPrimitiveContainerInst container) {
+
+        boolean convertible = container != null;
+
+        if (convertible) {
+            for (final AbstractPrimitiveInst primitive : container.getPrimitives()) {
+                // Spans are not yet supported in SVG
+                if (primitive == null || primitive instanceof DocPrimitiveSpanInst) {
+                    convertible = false;
+                    break;
+                }
+            }
+        }
+
+        return convertible;
+    }
+
     /**
      * Given a {@code DocDrawingInst}, generates the corresponding SVG.
      *
@@ -49,7 +93,7 @@ public enum PrimitiveContainerInstConverter {
         final int width = Math.max(0, drawing.getWidth());
         final int height = Math.max(0, drawing.getHeight());
 
-        svg.add("<svg width='", Integer.toString(width), "' height='", Integer.toString(height), "'>");
+        startSvg(svg, width, height, drawing.getAltText());
 
         // If there is a background color, draw that first
         final String bgColor = drawing.getBgColorName();
@@ -104,21 +148,45 @@ public enum PrimitiveContainerInstConverter {
      */
     public static String convertDocGraphXYInst(final DocGraphXYInst graph, final DocObjectInstStyle ambientStyle) {
 
+        return convertDocGraphXYInst(graph, ambientStyle, null);
+    }
+
+    /**
+     * Given a {@code DocGraphXYInst}, generates the corresponding SVG.
+     *
+     * @param graph        the {@code DocGraphXYInst}
+     * @param ambientStyle the style (font settings) of surrounding HTML, to use as a default if the drawing does not
+     *                     specify its own style
+     * @param context      the evaluation context in which to evaluate formulas; {@code null} to evaluate formulas with
+     *                     only their domain variable defined
+     * @return the generated SVG
+     */
+    public static String convertDocGraphXYInst(final DocGraphXYInst graph, final DocObjectInstStyle ambientStyle,
+                                               final EvalContext context) {
+
         final HtmlBuilder svg = new HtmlBuilder(1000);
 
         final int width = graph.getWidth();
         final int height = graph.getHeight();
 
-        svg.add("<svg width='", Integer.toString(width), "' height='", Integer.toString(height), "'>");
+        startSvg(svg, width, height, graph.getAltText());
 
-        // If there is a background color, draw that first
+        // Draw the background first (the graph is white unless it specifies a background color)
         final String bgColor = graph.getBgColorName();
-        if (bgColor != null) {
-            svg.add("<rect x='0' y='0' width='", Integer.toString(width), "' height='", Integer.toString(height),
-                    "' fill='", bgColor, "'/>");
-        }
+        svg.add("<rect x='0' y='0' width='", Integer.toString(width), "' height='", Integer.toString(height),
+                "' fill='", bgColor == null ? "white" : bgColor, "'/>");
 
-        // TODO: Draw axes beneath primitives (which will include the function primitives)
+        // Grid lines and axes are drawn within the border
+        final StrokeStyleInst border = graph.getBorder();
+        final int inset = border == null ? 0 : (int) border.getStrokeWidth();
+        final GraphArea area = new GraphArea(graph.getWindow(), inset, inset, width - 2 * inset,
+                height - 2 * inset);
+
+        if (area.isValid()) {
+            emitGridAndTicks(svg, graph, area, true);
+            emitGridAndTicks(svg, graph, area, false);
+            emitAxes(svg, graph, area);
+        }
 
         final CoordinateSystems coordinates = graph.getCoordinates();
 
@@ -142,13 +210,12 @@ public enum PrimitiveContainerInstConverter {
                 emitSpan(svg, span);
             } else if (primitive instanceof final DocPrimitiveTextInst text) {
                 emitText(svg, text);
-            } else if (primitive instanceof final DocPrimitiveFormulaInst formula) {
-                emitFormula(svg, formula);
+            } else if (primitive instanceof final DocPrimitiveFormulaInst formula && area.isValid()) {
+                emitFormula(svg, formula, area, context);
             }
         }
 
         // If there is a border, draw it on top of all primitives
-        final StrokeStyleInst border = graph.getBorder();
         if (border != null) {
             drawBorder(svg, width, height, border);
         }
@@ -158,6 +225,272 @@ public enum PrimitiveContainerInstConverter {
         return svg.toString();
     }
 
+    /**
+     * Starts an SVG element.
+     *
+     * @param svg     the {@code HtmlBuilder} to which to append
+     * @param width   the width, in pixels
+     * @param height  the height, in pixels
+     * @param altText the alternative text; {@code null} if none
+     */
+    private static void startSvg(final HtmlBuilder svg, final int width, final int height, final String altText) {
+
+        svg.add("<svg width='", Integer.toString(width), "' height='", Integer.toString(height),
+                "' style='vertical-align:baseline;'");
+
+        if (altText == null) {
+            svg.add(" aria-hidden='true'>");
+        } else {
+            final String escaped = XmlEscaper.escape(altText);
+            svg.add(" role='img' aria-label='", escaped, "'><title>", escaped, "</title>");
+        }
+    }
+
+    /**
+     * Draws the grid lines and tick marks (with labels) for one axis of a graph.  Grid lines and tick marks are placed
+     * at multiples of the axis tick interval, omitting those at the crossing with the other axis if axes are drawn.
+     *
+     * @param svg   the {@code HtmlBuilder} to which to append
+     * @param graph the graph
+     * @param area  the area within the graph border
+     * @param isX   {@code true} to draw vertical lines and ticks along the x-axis; {@code false} to draw horizontal
+     *              lines and ticks along the y-axis
+     */
+    private static void emitGridAndTicks(final HtmlBuilder svg, final DocGraphXYInst graph, final GraphArea area,
+                                         final boolean isX) {
+
+        final AxisSpec axis = isX ? graph.getXAxis() : graph.getYAxis();
+        final AxisTicksSpec ticks = axis == null ? null : axis.getTicks();
+        final Number intervalNbr = ticks == null ? null : ticks.getTickInterval();
+        final double interval = intervalNbr == null ? 0.0 : Math.abs(intervalNbr.doubleValue());
+
+        if (interval == 0.0 || Double.isNaN(interval)) {
+            return;
+        }
+
+        final GridSpec grid = graph.getGrid();
+        final int gridWidth = grid == null ? 0 : grid.getWidth();
+        final String gridColor = grid == null || grid.getColor() == null ? DEFAULT_GRID_COLOR : grid.getColor();
+
+        // The position of the axis along which ticks are drawn (NaN if it is not visible)
+        final double axisPos = isX ? area.visibleY(0.0) : area.visibleX(0.0);
+        final AxisSpec crossing = isX ? graph.getYAxis() : graph.getXAxis();
+        final boolean hasAxes = crossing != null && crossing.getAxisStyle() != null
+                                && crossing.getAxisStyle().getStrokeWidth() > 0.0;
+
+        final double min = isX ? area.minX : area.minY;
+        final double max = isX ? area.maxX : area.maxY;
+        final double perPixel = (max - min) / (isX ? area.width : area.height);
+
+        final HtmlBuilder gridPath = new HtmlBuilder(200);
+        final HtmlBuilder tickPath = new HtmlBuilder(200);
+        final HtmlBuilder labels = new HtmlBuilder(200);
+
+        final int tickWidth = ticks.getTickWidth();
+        final int tickPos = ticks.getTickPosLen();
+        final int tickNeg = ticks.getTickNegLen();
+        final float labelSize = ticks.getTickLabelSize();
+        final boolean drawTicks = tickWidth > 0 && (tickPos > 0 || tickNeg > 0) && !Double.isNaN(axisPos);
+
+        final long first = (long) Math.floor(min / interval) + 1L;
+        final long last = (long) Math.ceil(max / interval) - 1L;
+
+        for (long step = first; step <= last; ++step) {
+            final double value = (double) step * interval;
+
+            if ((hasAxes && Math.abs(value) < interval / 10.0) || value <= min || value >= max) {
+                continue;
+            }
+
+            final double pos = isX ? area.toPixelX(value) : area.toPixelY(value);
+
+            if (gridWidth > 0) {
+                if (isX) {
+                    gridPath.add("M", fmt(pos), ",", fmt(area.top), "V", fmt(area.top + area.height));
+                } else {
+                    gridPath.add("M", fmt(area.left), ",", fmt(pos), "H", fmt(area.left + area.width));
+                }
+            }
+
+            if (drawTicks) {
+                if (isX) {
+                    tickPath.add("M", fmt(pos), ",", fmt(axisPos - (double) tickPos), "V",
+                            fmt(axisPos + (double) tickNeg));
+                } else {
+                    tickPath.add("M", fmt(axisPos - (double) tickNeg), ",", fmt(pos), "H",
+                            fmt(axisPos + (double) tickPos));
+                }
+
+                if (labelSize > 0.0f && Math.abs(value - min) > perPixel && Math.abs(value - max) > perPixel) {
+                    final String lbl = tickLabel(value, intervalNbr);
+                    if (isX) {
+                        labels.add("<text x='", fmt(pos), "' y='", fmt(axisPos + (double) tickNeg + (double) labelSize),
+                                "' text-anchor='middle'>", lbl, "</text>");
+                    } else {
+                        labels.add("<text x='", fmt(axisPos - (double) tickNeg - 2.0), "' y='",
+                                fmt(pos + (double) labelSize * 0.35), "' text-anchor='end'>", lbl, "</text>");
+                    }
+                }
+            }
+        }
+
+        if (gridPath.length() > 0) {
+            svg.add("<path d='", gridPath.toString(), "' fill='none' stroke='", gridColor, "' stroke-width='",
+                    Integer.toString(gridWidth), "'/>");
+        }
+
+        if (tickPath.length() > 0) {
+            svg.add("<path d='", tickPath.toString(), "' fill='none' stroke='", ticks.getTickColor(),
+                    "' stroke-width='", Integer.toString(tickWidth), "'/>");
+        }
+
+        if (labels.length() > 0) {
+            final String labelColor = ticks.getTickColor();
+            svg.add("<g fill='", labelColor, "' font-size='", fmt((double) labelSize), "px'");
+            final DocObjectInstStyle style = graph.getStyle();
+            if (style != null && style.fontName != null) {
+                svg.add(" font-family='", XmlEscaper.escape(style.fontName), "'");
+            }
+            svg.add(">", labels.toString(), "</g>");
+        }
+    }
+
+    /**
+     * Draws the axes of a graph, with their labels, where they fall within the graph area.
+     *
+     * @param svg   the {@code HtmlBuilder} to which to append
+     * @param graph the graph
+     * @param area  the area within the graph border
+     */
+    private static void emitAxes(final HtmlBuilder svg, final DocGraphXYInst graph, final GraphArea area) {
+
+        final double axisX = area.visibleX(0.0);
+        final double axisY = area.visibleY(0.0);
+
+        final AxisSpec xAxis = graph.getXAxis();
+        final AxisSpec yAxis = graph.getYAxis();
+        final DocObjectInstStyle style = graph.getStyle();
+
+        if (yAxis != null && !Double.isNaN(axisX)) {
+            final StrokeStyleInst stroke = yAxis.getAxisStyle();
+            if (stroke != null && stroke.getStrokeWidth() > 0.0) {
+                svg.add("<line x1='", fmt(axisX), "' y1='", fmt(area.top), "' x2='", fmt(axisX), "' y2='",
+                        fmt(area.top + area.height), "'");
+                appendStroke(svg, stroke, false);
+                svg.add("/>");
+            }
+
+            final float size = yAxis.getLabelSize();
+            if (size > 0.0f && yAxis.getLabel() != null && !Double.isNaN(axisY)) {
+                emitAxisLabel(svg, yAxis, style, axisX + 4.0, area.top + (double) size * 0.8, "start");
+            }
+        }
+
+        if (xAxis != null && !Double.isNaN(axisY)) {
+            final StrokeStyleInst stroke = xAxis.getAxisStyle();
+            if (stroke != null && stroke.getStrokeWidth() > 0.0) {
+                svg.add("<line x1='", fmt(area.left), "' y1='", fmt(axisY), "' x2='", fmt(area.left + area.width),
+                        "' y2='", fmt(axisY), "'");
+                appendStroke(svg, stroke, false);
+                svg.add("/>");
+            }
+
+            final float size = xAxis.getLabelSize();
+            if (size > 0.0f && xAxis.getLabel() != null && !Double.isNaN(axisX)) {
+                emitAxisLabel(svg, xAxis, style, area.left + area.width - 2.0, axisY - (double) size * 0.25, "end");
+            }
+        }
+    }
+
+    /**
+     * Emits the label for an axis.  Labels are drawn in the axis color, as the raster renderer does.
+     *
+     * @param svg    the {@code HtmlBuilder} to which to append
+     * @param axis   the axis
+     * @param style  the graph style (whose font family is used)
+     * @param x      the x coordinate of the label anchor
+     * @param y      the y coordinate of the label baseline
+     * @param anchor the SVG text anchor
+     */
+    private static void emitAxisLabel(final HtmlBuilder svg, final AxisSpec axis, final DocObjectInstStyle style,
+                                      final double x, final double y, final String anchor) {
+
+        final StrokeStyleInst stroke = axis.getAxisStyle();
+        final String color = stroke == null ? axis.getLabelColor() : stroke.getStrokeColorName();
+
+        svg.add("<text x='", fmt(x), "' y='", fmt(y), "' text-anchor='", anchor, "' fill='", color,
+                "' font-size='", fmt((double) axis.getLabelSize()), "px'");
+        if (style != null && style.fontName != null) {
+            svg.add(" font-family='", XmlEscaper.escape(style.fontName), "'");
+        }
+        svg.add(">", XmlEscaper.escape(axis.getLabel()), "</text>");
+    }
+
+    /**
+     * Generates the label for a tick mark.  Ticks at multiples of an irrational interval (like pi) are labeled as
+     * fractions of the irrational factor.
+     *
+     * @param value    the value at the tick mark
+     * @param interval the tick interval
+     * @return the label
+     */
+    private static String tickLabel(final double value, final Number interval) {
+
+        String lbl;
+
+        if (interval instanceof final Irrational irr) {
+            final int top = (int) Math.round(value / irr.getFactorValue() * (double) irr.denominator);
+            final int gcd = new BigInteger(Integer.toString(top)).gcd(BigInteger.valueOf(irr.denominator)).intValue();
+            final int reducedTop = top / gcd;
+            final int reducedBot = (int) (irr.denominator / (long) gcd);
+
+            final String factor = irr.getFactorString();
+            if (reducedTop == 1) {
+                lbl = factor;
+            } else if (reducedTop == -1) {
+                lbl = "\u2212" + factor;
+            } else if (reducedTop > 0) {
+                lbl = reducedTop + factor;
+            } else {
+                lbl = "\u2212" + Math.abs(reducedTop) + factor;
+            }
+
+            if (reducedBot != 1) {
+                lbl = lbl + "/" + reducedBot;
+            }
+        } else {
+            final NumberFormat format = new DecimalFormat();
+            format.setMaximumFractionDigits(3);
+            lbl = format.format(value);
+            if ((int) lbl.charAt(0) == (int) '-') {
+                lbl = "\u2212" + lbl.substring(1);
+            }
+        }
+
+        return XmlEscaper.escape(lbl);
+    }
+
+    /**
+     * Formats a coordinate with at most one decimal place, which is enough precision for display and keeps the
+     * generated SVG compact.
+     *
+     * @param value the value
+     * @return the formatted value
+     */
+    private static String fmt(final double value) {
+
+        final long tenths = Math.round(value * 10.0);
+        final String result;
+
+        if (tenths % 10L == 0L) {
+            result = Long.toString(tenths / 10L);
+        } else {
+            result = Double.toString((double) tenths / 10.0);
+        }
+
+        return result;
+    }
+
     /**
      * Draws a border using a specified style.  The rectangle is calculated so the border will fall on the edges of the
      * drawing.
@@ -179,43 +512,61 @@ public enum PrimitiveContainerInstConverter {
     }
 
     /**
-     * Draws a rectangle using a specified stroke style.  Coordinates and width/height define an outline on which the
-     * stroke is centered.
+     * Tests whether a stroke style will produce a visible stroke.
      *
-     * @param svg    the {@code HtmlBuilder} to which to append
-     * @param x      the x coordinate of the top left corner
-     * @param y      the y coordinate of the top left corner
-     * @param width  the rectangle width, in pixels
-     * @param height the rectangle height, in pixels
-     * @param stroke the stroke style
-     * @param fill   the fill style
+     * @param stroke the stroke style (may be {@code null})
+     * @return {@code true} if the stroke is visible
      */
-    private static void drawRect(final HtmlBuilder svg, final double x, final double y, final double width,
-                                 final double height, final StrokeStyleInst stroke, final FillStyle fill) {
+    private static boolean isVisible(final StrokeStyleInst stroke) {
+
+        return stroke != null && stroke.getStrokeWidth() > 0.0 && stroke.getAlpha() > 0.0;
+    }
 
-        final double strokeWidth = stroke.getStrokeWidth();
-        final double alpha = stroke.getAlpha();
+    /**
+     * Tests whether a fill style will produce a visible fill.
+     *
+     * @param fill the fill style (may be {@code null})
+     * @return {@code true} if the fill is visible
+     */
+    private static boolean isVisible(final FillStyle fill) {
 
-        if (strokeWidth > 0.0 && alpha > 0.0) {
-            svg.add("<rect");
-            svg.addAttribute("x", Double.toString(x), 0);
-            svg.addAttribute("y", Double.toString(y), 0);
-            svg.addAttribute("width", Double.toString(width), 0);
-            svg.addAttribute("height", Double.toString(height), 0);
+        return fill != null && fill.getAlpha() > 0.0;
+    }
 
-            if (fill != null) {
-                final double fillAlpha = fill.getAlpha();
+    /**
+     * Appends the "fill" attributes for a fill style.  SVG fills shapes by default, so a shape with no visible fill
+     * gets an explicit "none".
+     *
+     * @param svg  the {@code HtmlBuilder} to which to append
+     * @param fill the fill style (may be {@code null})
+     */
+    private static void appendFill(final HtmlBuilder svg, final FillStyle fill) {
 
-                if (fillAlpha > 0.0) {
-                    svg.addAttribute("fill", fill.getFillColorName(), 0);
-                    if (fillAlpha < 0.99) {
-                        svg.addAttribute("fill-opacity", Double.toString(fillAlpha), 0);
-                    }
-                }
+        if (isVisible(fill)) {
+            final double fillAlpha = fill.getAlpha();
+            svg.addAttribute("fill", fill.getFillColorName(), 0);
+            if (fillAlpha < 0.99) {
+                svg.addAttribute("fill-opacity", Double.toString(fillAlpha), 0);
             }
+        } else {
+            svg.addAttribute("fill", "none", 0);
+        }
+    }
+
+    /**
+     * Appends the "stroke" attributes for a stroke style, if the stroke is visible.
+     *
+     * @param svg         the {@code HtmlBuilder} to which to append
+     * @param stroke      the stroke style (may be {@code null})
+     * @param corners     {@code true} if the stroked shape has corners (so the miter limit is relevant)
+     */
+    private static void appendStroke(final HtmlBuilder svg, final StrokeStyleInst stroke, final boolean corners) {
+
+        if (isVisible(stroke)) {
+            final double alpha = stroke.getAlpha();
 
             svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-            svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
+            svg.addAttribute("stroke-width", Double.toString(stroke.getStrokeWidth()), 0);
 
             final EStrokeCap cap = stroke.getCap();
             if (cap == EStrokeCap.ROUND) {
@@ -232,9 +583,11 @@ public enum PrimitiveContainerInstConverter {
             }
 
             // NOTE: For square corners, miter limit won't matter unless it's less than sqrt(2)
-            final float miterlimit = stroke.getMiterLimit();
-            if (miterlimit < 1.414f) {
-                svg.addAttribute("stroke-miterlimit", Float.toString(miterlimit), 0);
+            if (corners) {
+                final float miterlimit = stroke.getMiterLimit();
+                if (miterlimit < 1.414f) {
+                    svg.addAttribute("stroke-miterlimit", Float.toString(miterlimit), 0);
+                }
             }
 
             if (alpha < 0.99) {
@@ -252,13 +605,11 @@ public enum PrimitiveContainerInstConverter {
                 }
                 svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
             }
-
-            svg.add("/>");
         }
     }
 
     /**
-     * Draws an ellipse using a specified stroke style.  Coordinates and width/height define an outline on which the
+     * Draws a rectangle using a specified stroke style.  Coordinates and width/height define an outline on which the
      * stroke is centered.
      *
      * @param svg    the {@code HtmlBuilder} to which to append
@@ -269,69 +620,44 @@ public enum PrimitiveContainerInstConverter {
      * @param stroke the stroke style
      * @param fill   the fill style
      */
-    private static void drawEllipse(final HtmlBuilder svg, final double x, final double y, final double width,
-                                    final double height, final StrokeStyleInst stroke, final FillStyle fill) {
-
-        final double strokeWidth = stroke.getStrokeWidth();
-        final double alpha = stroke.getAlpha();
+    private static void drawRect(final HtmlBuilder svg, final double x, final double y, final double width,
+                                 final double height, final StrokeStyleInst stroke, final FillStyle fill) {
 
-        if (strokeWidth > 0.0 && alpha > 0.0) {
-            svg.add("<ellipse");
+        if (isVisible(stroke) || isVisible(fill)) {
+            svg.add("<rect");
             svg.addAttribute("x", Double.toString(x), 0);
             svg.addAttribute("y", Double.toString(y), 0);
             svg.addAttribute("width", Double.toString(width), 0);
             svg.addAttribute("height", Double.toString(height), 0);
+            appendFill(svg, fill);
+            appendStroke(svg, stroke, true);
+            svg.add("/>");
+        }
+    }
 
-            if (fill != null) {
-                final double fillAlpha = fill.getAlpha();
-
-                if (fillAlpha > 0.0) {
-                    svg.addAttribute("fill", fill.getFillColorName(), 0);
-                    if (fillAlpha < 0.99) {
-                        svg.addAttribute("fill-opacity", Double.toString(fillAlpha), 0);
-                    }
-                }
-            }
-
-            svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-            svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
-
-            final EStrokeCap cap = stroke.getCap();
-            if (cap == EStrokeCap.ROUND) {
-                svg.addAttribute("stroke-linecap", "round", 0);
-            } else if (cap == EStrokeCap.SQUARE) {
-                svg.addAttribute("stroke-linecap", "square", 0);
-            }
-
-            final EStrokeJoin join = stroke.getJoin();
-            if (join == EStrokeJoin.ROUND) {
-                svg.addAttribute("stroke-linejoin", "round", 0);
-            } else if (join == EStrokeJoin.BEVEL) {
-                svg.addAttribute("stroke-linejoin", "bevel", 0);
-            }
-
-            // NOTE: For square corners, miter limit won't matter unless it's less than sqrt(2)
-            final float miterlimit = stroke.getMiterLimit();
-            if (miterlimit < 1.414f) {
-                svg.addAttribute("stroke-miterlimit", Float.toString(miterlimit), 0);
-            }
-
-            if (alpha < 0.99) {
-                svg.addAttribute("stroke-opacity", Double.toString(alpha), 0);
-            }
-
-            final float[] dash = stroke.getDash();
-            final int len = dash.length;
-            if (len > 0) {
-                final HtmlBuilder pattern = new HtmlBuilder(20);
-                pattern.add(dash[0]);
-                for (int i = 1; i < len; ++i) {
-                    pattern.add(',');
-                    pattern.add(dash[i]);
-                }
-                svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
-            }
+    /**
+     * Draws an ellipse using a specified stroke style.  Coordinates and width/height define an outline on which the
+     * stroke is centered.
+     *
+     * @param svg    the {@code HtmlBuilder} to which to append
+     * @param x      the x coordinate of the top left corner
+     * @param y      the y coordinate of the top left corner
+     * @param width  the rectangle width, in pixels
+     * @param height the rectangle height, in pixels
+     * @param stroke the stroke style
+     * @param fill   the fill style
+     */
+    private static void drawEllipse(final HtmlBuilder svg, final double x, final double y, final double width,
+                                    final double height, final StrokeStyleInst stroke, final FillStyle fill) {
 
+        if (isVisible(stroke) || isVisible(fill)) {
+            svg.add("<ellipse");
+            svg.addAttribute("cx", Double.toString(x + width * 0.5), 0);
+            svg.addAttribute("cy", Double.toString(y + height * 0.5), 0);
+            svg.addAttribute("rx", Double.toString(Math.abs(width) * 0.5), 0);
+            svg.addAttribute("ry", Double.toString(Math.abs(height) * 0.5), 0);
+            appendFill(svg, fill);
+            appendStroke(svg, stroke, false);
             svg.add("/>");
         }
     }
@@ -350,102 +676,54 @@ public enum PrimitiveContainerInstConverter {
         final Rectangle2D bounds = shape.getBoundsRect(coordinates);
 
         final double arcAngle = arc.getArcAngle();
-        if (arcAngle < -360.0 || arcAngle > 360.0) {
+        if (arcAngle <= -360.0 || arcAngle >= 360.0) {
 
             drawEllipse(svg, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight(), arc.getStrokeStyle(),
                     arc.getFillStyle());
         } else {
-            // NOTE that "positive" angle is clockwise from horizontal in the SVG coordinate system.
+            // NOTE: Angles are counterclockwise from horizontal (as in Java2D), so the y offset from the center is
+            // negated for the SVG coordinate system, where "y" increases downward.
 
             final double startAngle = arc.getStartAngle();
 
-            final double cx = (bounds.getX() + bounds.getWidth()) * 0.5;
-            final double cy = (bounds.getY() + bounds.getHeight()) * 0.5;
+            final double cx = bounds.getX() + bounds.getWidth() * 0.5;
+            final double cy = bounds.getY() + bounds.getHeight() * 0.5;
             final double rx = bounds.getWidth() * 0.5;
             final double ry = bounds.getHeight() * 0.5;
 
             final double startAngleRad = Math.toRadians(startAngle);
             final double endAngleRad = Math.toRadians(startAngle + arcAngle);
             final double startX = cx + rx * StrictMath.cos(startAngleRad);
-            final double startY = cx + ry * StrictMath.sin(startAngleRad);
+            final double startY = cy - ry * StrictMath.sin(startAngleRad);
             final double endX = cx + rx * StrictMath.cos(endAngleRad);
-            final double endY = cx + ry * StrictMath.sin(endAngleRad);
+            final double endY = cy - ry * StrictMath.sin(endAngleRad);
 
-            // If "arc angle" is positive, the "sweep flag" is 0
+            // If "arc angle" is positive (counterclockwise), the "sweep flag" is 0
             final String sweepFlag = arcAngle >= 0.0 ? "0" : "1";
             final String largeArc = (arcAngle > 180.0 || arcAngle < -180.0) ? "1" : "0";
 
+            final String arcPath = "M" + startX + "," + startY + " A" + rx + "," + ry + ",0," + largeArc + ","
+                                   + sweepFlag + "," + endX + "," + endY;
+
             // If there is a fill, do the fill before the stroke
             final FillStyle fill = arc.getFillStyle();
-            if (fill != null) {
-                final double fillAlpha = fill.getAlpha();
-
-                if (fillAlpha > 0.0) {
-                    final EArcFillStyle arcFill = arc.getArcFill();
-
-                    svg.add("<path d='M", Double.toString(startX), ",", Double.toString(startY), " A",
-                            Double.toString(rx), ",", Double.toString(ry), ",0,", largeArc, ",", sweepFlag, ",",
-                            Double.toString(endX), ",", Double.toString(endY));
-
-                    if (arcFill == EArcFillStyle.PIE) {
-                        svg.add(" L", Double.toString(cx), ",", Double.toString(cy), " Z");
-                    } else if (arcFill == EArcFillStyle.CHORD) {
-                        svg.add(" Z");
-                    }
-                    svg.add("' fill='", fill.getFillColorName(), "'");
-                    if (fillAlpha < 0.99) {
-                        svg.add("' fill-opacity='", Double.toString(fillAlpha), "'");
-                    }
-                    svg.add("/>");
+            final EArcFillStyle arcFill = arc.getArcFill();
+            if (isVisible(fill) && arcFill != null && arcFill != EArcFillStyle.NONE) {
+                svg.add("<path d='", arcPath);
+                if (arcFill == EArcFillStyle.PIE) {
+                    svg.add(" L", Double.toString(cx), ",", Double.toString(cy), " Z'");
+                } else {
+                    svg.add(" Z'");
                 }
+                appendFill(svg, fill);
+                svg.add("/>");
             }
 
             final StrokeStyleInst stroke = arc.getStrokeStyle();
-            if (stroke != null) {
-                final double strokeWidth = stroke.getStrokeWidth();
-                final double alpha = stroke.getAlpha();
-
-                if (strokeWidth > 0.0 && alpha > 0.0) {
-                    svg.add("<path d='M", Double.toString(startX), ",", Double.toString(startY), " A",
-                            Double.toString(rx), ",", Double.toString(ry), ",0,", largeArc, ",", sweepFlag, ",",
-                            Double.toString(endX), ",", Double.toString(endY));
-
-                    svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-                    svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
-
-                    final EStrokeCap cap = stroke.getCap();
-                    if (cap == EStrokeCap.ROUND) {
-                        svg.addAttribute("stroke-linecap", "round", 0);
-                    } else if (cap == EStrokeCap.SQUARE) {
-                        svg.addAttribute("stroke-linecap", "square", 0);
-                    }
-
-                    final EStrokeJoin join = stroke.getJoin();
-                    if (join == EStrokeJoin.ROUND) {
-                        svg.addAttribute("stroke-linejoin", "round", 0);
-                    } else if (join == EStrokeJoin.BEVEL) {
-                        svg.addAttribute("stroke-linejoin", "bevel", 0);
-                    }
-
-                    // NOTE: Miter limit is not needed for an arc
-
-                    if (alpha < 0.99) {
-                        svg.addAttribute("stroke-opacity", Double.toString(alpha), 0);
-                    }
-
-                    final float[] dash = stroke.getDash();
-                    final int len = dash.length;
-                    if (len > 0) {
-                        final HtmlBuilder pattern = new HtmlBuilder(20);
-                        pattern.add(dash[0]);
-                        for (int i = 1; i < len; ++i) {
-                            pattern.add(',');
-                            pattern.add(dash[i]);
-                        }
-                        svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
-                    }
-                    svg.add("/>");
-                }
+            if (isVisible(stroke)) {
+                svg.add("<path d='", arcPath, "' fill='none'");
+                appendStroke(svg, stroke, false);
+                svg.add("/>");
             }
         }
     }
@@ -461,59 +739,20 @@ public enum PrimitiveContainerInstConverter {
                                  final CoordinateSystems coordinates) {
 
         final StrokeStyleInst stroke = line.getStrokeStyle();
-        if (stroke != null) {
-            final double strokeWidth = stroke.getStrokeWidth();
-            final double alpha = stroke.getAlpha();
-
-            if (strokeWidth > 0.0 && alpha > 0.0) {
-
-                final RectangleShapeInst shape = line.getShape();
-                final Rectangle2D bounds = shape.getBoundsRect(coordinates);
-
-                final double x1 = bounds.getX();
-                final double y1 = bounds.getY();
-                final double x2 = x1 + bounds.getWidth();
-                final double y2 = y1 + bounds.getHeight();
-
-                svg.add("<line x1='", Double.toString(x1), "' y1='", Double.toString(y1), "' x2='",
-                        Double.toString(x2), "' y2='", Double.toString(y2));
-
-                svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-                svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
 
-                final EStrokeCap cap = stroke.getCap();
-                if (cap == EStrokeCap.ROUND) {
-                    svg.addAttribute("stroke-linecap", "round", 0);
-                } else if (cap == EStrokeCap.SQUARE) {
-                    svg.addAttribute("stroke-linecap", "square", 0);
-                }
-
-                final EStrokeJoin join = stroke.getJoin();
-                if (join == EStrokeJoin.ROUND) {
-                    svg.addAttribute("stroke-linejoin", "round", 0);
-                } else if (join == EStrokeJoin.BEVEL) {
-                    svg.addAttribute("stroke-linejoin", "bevel", 0);
-                }
+        if (isVisible(stroke)) {
+            final RectangleShapeInst shape = line.getShape();
+            final Rectangle2D bounds = shape.getBoundsRect(coordinates);
 
-                // NOTE: Miter limit is not needed for an arc
+            final double x1 = bounds.getX();
+            final double y1 = bounds.getY();
+            final double x2 = x1 + bounds.getWidth();
+            final double y2 = y1 + bounds.getHeight();
 
-                if (alpha < 0.99) {
-                    svg.addAttribute("stroke-opacity", Double.toString(alpha), 0);
-                }
-
-                final float[] dash = stroke.getDash();
-                final int len = dash.length;
-                if (len > 0) {
-                    final HtmlBuilder pattern = new HtmlBuilder(20);
-                    pattern.add(dash[0]);
-                    for (int i = 1; i < len; ++i) {
-                        pattern.add(',');
-                        pattern.add(dash[i]);
-                    }
-                    svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
-                }
-                svg.add("/>");
-            }
+            svg.add("<line x1='", Double.toString(x1), "' y1='", Double.toString(y1), "' x2='",
+                    Double.toString(x2), "' y2='", Double.toString(y2), "'");
+            appendStroke(svg, stroke, false);
+            svg.add("/>");
         }
     }
 
@@ -556,70 +795,18 @@ public enum PrimitiveContainerInstConverter {
         final StrokeStyleInst stroke = polygon.getStrokeStyle();
         final FillStyle fill = polygon.getFillStyle();
 
-        svg.add("<polygon points='", Double.toString(x[0]), ",", Double.toString(y[0]));
-        for (int i = 1; i < count; ++i) {
-            svg.add(" ", Double.toString(x[i]), ",", Double.toString(y[i]));
-        }
-        svg.add("'");
-
-        if (fill != null) {
-            final double fillAlpha = fill.getAlpha();
-
-            if (fillAlpha > 0.0) {
-                svg.addAttribute("fill", fill.getFillColorName(), 0);
-                if (fillAlpha < 0.99) {
-                    svg.addAttribute("fill-opacity", Double.toString(fillAlpha), 0);
-                }
+        if (count > 0 && (isVisible(stroke) || isVisible(fill))) {
+            svg.add("<polygon points='", Double.toString(x[0]), ",", Double.toString(y[0]));
+            for (int i = 1; i < count; ++i) {
+                svg.add(" ", Double.toString(x[i]), ",", Double.toString(y[i]));
             }
-        }
+            svg.add("'");
 
-        if (stroke != null) {
-            final double strokeWidth = stroke.getStrokeWidth();
-            final double alpha = stroke.getAlpha();
+            appendFill(svg, fill);
+            appendStroke(svg, stroke, true);
 
-            if (strokeWidth > 0.0 && alpha > 0.0) {
-                svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-                svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
-
-                final EStrokeCap cap = stroke.getCap();
-                if (cap == EStrokeCap.ROUND) {
-                    svg.addAttribute("stroke-linecap", "round", 0);
-                } else if (cap == EStrokeCap.SQUARE) {
-                    svg.addAttribute("stroke-linecap", "square", 0);
-                }
-
-                final EStrokeJoin join = stroke.getJoin();
-                if (join == EStrokeJoin.ROUND) {
-                    svg.addAttribute("stroke-linejoin", "round", 0);
-                } else if (join == EStrokeJoin.BEVEL) {
-                    svg.addAttribute("stroke-linejoin", "bevel", 0);
-                }
-
-                // NOTE: For square corners, miter limit won't matter unless it's less than sqrt(2)
-                final float miterlimit = stroke.getMiterLimit();
-                if (miterlimit < 1.414f) {
-                    svg.addAttribute("stroke-miterlimit", Float.toString(miterlimit), 0);
-                }
-
-                if (alpha < 0.99) {
-                    svg.addAttribute("stroke-opacity", Double.toString(alpha), 0);
-                }
-
-                final float[] dash = stroke.getDash();
-                final int len = dash.length;
-                if (len > 0) {
-                    final HtmlBuilder pattern = new HtmlBuilder(20);
-                    pattern.add(dash[0]);
-                    for (int i = 1; i < len; ++i) {
-                        pattern.add(',');
-                        pattern.add(dash[i]);
-                    }
-                    svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
-                }
-            }
+            svg.add("/>");
         }
-
-        svg.add("/>");
     }
 
     /**
@@ -636,59 +823,17 @@ public enum PrimitiveContainerInstConverter {
 
         final StrokeStyleInst stroke = polyline.getStrokeStyle();
 
-        svg.add("<polygon points='", Double.toString(x[0]), ",", Double.toString(y[0]));
-        for (int i = 1; i < count; ++i) {
-            svg.add(" ", Double.toString(x[i]), ",", Double.toString(y[i]));
-        }
-        svg.add("'");
-
-        if (stroke != null) {
-            final double strokeWidth = stroke.getStrokeWidth();
-            final double alpha = stroke.getAlpha();
-
-            if (strokeWidth > 0.0 && alpha > 0.0) {
-                svg.addAttribute("stroke", stroke.getStrokeColorName(), 0);
-                svg.addAttribute("stroke-width", Double.toString(strokeWidth), 0);
-
-                final EStrokeCap cap = stroke.getCap();
-                if (cap == EStrokeCap.ROUND) {
-                    svg.addAttribute("stroke-linecap", "round", 0);
-                } else if (cap == EStrokeCap.SQUARE) {
-                    svg.addAttribute("stroke-linecap", "square", 0);
-                }
-
-                final EStrokeJoin join = stroke.getJoin();
-                if (join == EStrokeJoin.ROUND) {
-                    svg.addAttribute("stroke-linejoin", "round", 0);
-                } else if (join == EStrokeJoin.BEVEL) {
-                    svg.addAttribute("stroke-linejoin", "bevel", 0);
-                }
-
-                // NOTE: For square corners, miter limit won't matter unless it's less than sqrt(2)
-                final float miterlimit = stroke.getMiterLimit();
-                if (miterlimit < 1.414f) {
-                    svg.addAttribute("stroke-miterlimit", Float.toString(miterlimit), 0);
-                }
+        if (count > 0 && isVisible(stroke)) {
+            svg.add("<polyline points='", Double.toString(x[0]), ",", Double.toString(y[0]));
+            for (int i = 1; i < count; ++i) {
+                svg.add(" ", Double.toString(x[i]), ",", Double.toString(y[i]));
+            }
+            svg.add("' fill='none'");
 
-                if (alpha < 0.99) {
-                    svg.addAttribute("stroke-opacity", Double.toString(alpha), 0);
-                }
+            appendStroke(svg, stroke, true);
 
-                final float[] dash = stroke.getDash();
-                final int len = dash.length;
-                if (len > 0) {
-                    final HtmlBuilder pattern = new HtmlBuilder(20);
-                    pattern.add(dash[0]);
-                    for (int i = 1; i < len; ++i) {
-                        pattern.add(',');
-                        pattern.add(dash[i]);
-                    }
-                    svg.addAttribute("stroke-dasharray", pattern.toString(), 0);
-                }
-            }
+            svg.add("/>");
         }
-
-        svg.add("/>");
     }
 
     /**
@@ -761,8 +906,28 @@ public enum PrimitiveContainerInstConverter {
 
         if (alpha > 0.0 && isVisible) {
             svg.add("<text x='", Double.toString(text.getX()), "' y='", Double.toString(text.getY()),
-                    "' color='", style.colorName, "' font-family='", style.fontName, "' font-size='",
-                    Float.toString(style.fontSize), "pt'");
+                    "' fill='", style.colorName, "' font-size='", Float.toString(style.fontSize), "px'");
+
+            if (style.fontName != null) {
+                svg.add(" font-family='", XmlEscaper.escape(style.fontName), "'");
+            }
+
+            final ETextAnchor anchor = text.getAnchor();
+            if (anchor == ETextAnchor.N || anchor == ETextAnchor.C || anchor == ETextAnchor.S) {
+                svg.add(" text-anchor='middle'");
+            } else if (anchor == ETextAnchor.NE || anchor == ETextAnchor.E || anchor == ETextAnchor.SE) {
+                svg.add(" text-anchor='end'");
+            }
+
+            if (anchor == ETextAnchor.NW || anchor == ETextAnchor.N || anchor == ETextAnchor.NE) {
+                svg.add(" dominant-baseline='text-before-edge'");
+            } else if (anchor == ETextAnchor.W || anchor == ETextAnchor.C || anchor == ETextAnchor.E) {
+                svg.add(" dominant-baseline='central'");
+            }
+
+            if (alpha < 0.99) {
+                svg.add(" fill-opacity='", Double.toString(alpha), "'");
+            }
 
             final boolean isItalic = (fontStyle & DocObjectInstStyle.ITALIC) == DocObjectInstStyle.ITALIC;
             if (isItalic) {
@@ -802,14 +967,203 @@ public enum PrimitiveContainerInstConverter {
         }
     }
 
+
     /**
-     * Emits the SVG for a formula.
+     * Emits the SVG for a formula, sampling it once per pixel column across the visible part of its domain.  The curve
+     * is broken where the formula has no value or jumps too far between samples (as at an asymptote).
      *
      * @param svg     the {@code HtmlBuilder} to which to append
      * @param formula the formula
+     * @param area    the area within the graph border
+     * @param context the evaluation context in which to evaluate the formula; {@code null} to evaluate the formula with
+     *                only its domain variable defined
      */
-    private static void emitFormula(final HtmlBuilder svg, final DocPrimitiveFormulaInst formula) {
+    private static void emitFormula(final HtmlBuilder svg, final DocPrimitiveFormulaInst formula,
+                                    final GraphArea area, final EvalContext context) {
 
-        // TODO:
+        final Formula expression = formula.getFormula();
+        final StrokeStyleInst stroke = formula.getStrokeStyle();
+
+        if (expression == null || !isVisible(stroke)) {
+            return;
+        }
+
+        final String varName = formula.getDomainVarName();
+        final AbstractVariable contextVar = context == null ? null : context.getVariable(varName);
+
+        final EvalContext evalContext;
+        final AbstractVariable domainVar;
+        if (contextVar == null) {
+            evalContext = new EvalContext();
+            domainVar = new VariableReal(varName);
+            evalContext.addVariable(domainVar);
+        } else {
+            evalContext = context;
+            domainVar = contextVar;
+        }
+        final Object origValue = domainVar.getValue();
+
+        final double domainMin = Math.max(area.minX, formula.getDomainMin());
+        final double domainMax = Math.min(area.maxX, formula.getDomainMax());
+        final double perPixel = (area.maxX - area.minX) / area.width;
+
+        // Points far outside the graph are clamped so the path stays compact (the SVG viewport clips them)
+        final double minPixelY = area.top - area.height;
+        final double maxPixelY = area.top + 2.0 * area.height;
+
+        final HtmlBuilder path = new HtmlBuilder(2000);
+
+        if (domainMin < domainMax && perPixel > 0.0) {
+            final int steps = (int) Math.ceil((domainMax - domainMin) / perPixel);
+            boolean penDown = false;
+            double priorY = 0.0;
+
+            for (int i = 0; i <= steps; ++i) {
+                final double x = i == steps ? domainMax : domainMin + (double) i * perPixel;
+                domainVar.setValue(Double.valueOf(x));
+                final Object value = expression.evaluate(evalContext);
+
+                if (value instanceof final Number nbr && Double.isFinite(nbr.doubleValue())) {
+                    final double px = area.toPixelX(x);
+                    final double py = Math.max(minPixelY, Math.min(maxPixelY, area.toPixelY(nbr.doubleValue())));
+
+                    if (penDown && Math.abs(py - priorY) < MAX_FORMULA_JUMP) {
+                        path.add("L", fmt(px), ",", fmt(py));
+                    } else {
+                        path.add("M", fmt(px), ",", fmt(py));
+                    }
+                    penDown = true;
+                    priorY = py;
+                } else {
+                    penDown = false;
+                }
+            }
+
+            domainVar.setValue(origValue);
+        }
+
+        if (path.length() > 0) {
+            svg.add("<path d='", path.toString(), "' fill='none'");
+            appendStroke(svg, stroke, false);
+            svg.add("/>");
+        }
+    }
+
+    /**
+     * The area of a graph within its border, and the mapping from graph coordinates to pixel coordinates in that area.
+     */
+    private static final class GraphArea {
+
+        /** The left edge, in pixels. */
+        final double left;
+
+        /** The top edge, in pixels. */
+        final double top;
+
+        /** The width, in pixels. */
+        final double width;
+
+        /** The height, in pixels. */
+        final double height;
+
+        /** The minimum x coordinate of the graph window. */
+        final double minX;
+
+        /** The maximum x coordinate of the graph window. */
+        final double maxX;
+
+        /** The minimum y coordinate of the graph window. */
+        final double minY;
+
+        /** The maximum y coordinate of the graph window. */
+        final double maxY;
+
+        /**
+         * Constructs a new {@code GraphArea}.
+         *
+         * @param window    the graph window (in graph coordinates)
+         * @param theLeft   the left edge, in pixels
+         * @param theTop    the top edge, in pixels
+         * @param theWidth  the width, in pixels
+         * @param theHeight the height, in pixels
+         */
+        GraphArea(final BoundingRect window, final int theLeft, final int theTop, final int theWidth,
+                  final int theHeight) {
+
+            this.left = (double) theLeft;
+            this.top = (double) theTop;
+            this.width = (double) theWidth;
+            this.height = (double) theHeight;
+
+            if (window == null) {
+                this.minX = 0.0;
+                this.maxX = 0.0;
+                this.minY = 0.0;
+                this.maxY = 0.0;
+            } else {
+                this.minX = window.getX();
+                this.maxX = window.getX() + window.getWidth();
+                this.minY = window.getY();
+                this.maxY = window.getY() + window.getHeight();
+            }
+        }
+
+        /**
+         * Tests whether the area and window are non-empty.
+         *
+         * @return {@code true} if coordinates can be mapped
+         */
+        boolean isValid() {
+
+            return this.width > 0.0 && this.height > 0.0 && this.maxX > this.minX && this.maxY > this.minY;
+        }
+
+        /**
+         * Maps an x coordinate to a pixel position.
+         *
+         * @param x the x coordinate
+         * @return the pixel x position
+         */
+        double toPixelX(final double x) {
+
+            return this.left + this.width * (x - this.minX) / (this.maxX - this.minX);
+        }
+
+        /**
+         * Maps a y coordinate to a pixel position.
+         *
+         * @param y the y coordinate
+         * @return the pixel y position
+         */
+        double toPixelY(final double y) {
+
+            return this.top + this.height - this.height * (y - this.minY) / (this.maxY - this.minY);
+        }
+
+        /**
+         * Maps an x coordinate to a pixel position if it falls strictly within the area.
+         *
+         * @param x the x coordinate
+         * @return the pixel x position; {@code Double.NaN} if outside the area
+         */
+        double visibleX(final double x) {
+
+            final double px = toPixelX(x);
+
+            return px > this.left && px < this.left + this.width ? px : Double.NaN;
+        }
+
+        /**
+         * Maps a y coordinate to a pixel position if it falls strictly within the area.
+         *
+         * @param y the y coordinate
+         * @return the pixel y position; {@code Double.NaN} if outside the area
+         */
+        double visibleY(final double y) {
+
+            final double py = toPixelY(y);
+
+            return py > this.top && py < this.top + this.height ? py : Double.NaN;
+        }
     }
 }
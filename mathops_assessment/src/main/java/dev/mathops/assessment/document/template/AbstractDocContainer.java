@@ -93,6 +93,22 @@ public abstract class AbstractDocContainer extends AbstractDocObjectTemplate {
         }
     }
 
+    /**
+     * Determines which parts of this object have static content, so that is done once on a shared template rather
+     * than as HTML is generated for its copies. It descends through the tree preparing all children.
+     */
+    @Override
+    public final void prepareHtmlFragments() {
+
+        super.prepareHtmlFragments();
+
+        if (this.children != null) {
+            for (final AbstractDocObjectTemplate child : this.children) {
+                child.prepareHtmlFragments();
+            }
+        }
+    }
+
     /**
      * Add a new object.
      *
@@ -108,6 +124,8 @@ public abstract class AbstractDocContainer extends AbstractDocObjectTemplate {
         }
         this.children.add(comp);
         comp.setScale(getScale());
+
+        invalidateLayout();
     }
 
     /**
@@ -156,6 +174,8 @@ public abstract class AbstractDocContainer extends AbstractDocObjectTemplate {
     final void clearChildren() {
 
         this.children = null;
+
+        invalidateLayout();
     }
 
     /**
@@ -171,11 +191,34 @@ public abstract class AbstractDocContainer extends AbstractDocObjectTemplate {
 
         if (this.children != null) {
             for (final AbstractDocObjectTemplate child : this.children) {
-                child.doLayout(context, mathMode);
+                child.updateLayout(context, mathMode);
             }
         }
     }
 
+    /**
+     * Determines whether this object's layout depends on the evaluation context. A container's layout depends on the
+     * context if it references parameters or if the layout of any child depends on the context.
+     *
+     * @return {@code true} if layout depends on the evaluation context
+     */
+    @Override
+    boolean computeLayoutContextDependent() {
+
+        boolean result = super.computeLayoutContextDependent();
+
+        if (!result && this.children != null) {
+            for (final AbstractDocObjectTemplate child : this.children) {
+                if (child.isLayoutContextDependent()) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Add any parameter names referenced by children of this object to a set of names.
      *
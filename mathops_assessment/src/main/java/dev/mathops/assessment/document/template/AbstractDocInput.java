@@ -392,6 +392,18 @@ public abstract class AbstractDocInput extends AbstractDocContainer {
         }
     }
 
+    /**
+     * Determines whether this object's layout depends on the evaluation context. An input's layout depends on its
+     * current value, so it is always laid out.
+     *
+     * @return {@code true}
+     */
+    @Override
+    final boolean computeLayoutContextDependent() {
+
+        return true;
+    }
+
     /**
      * Add XML attributes specific to input fields to an XML block.
      *
@@ -7,9 +7,9 @@ import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.awt.FontMetrics;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
@@ -202,7 +202,7 @@ abstract class AbstractDocInputField extends AbstractDocInput {
     @Override
     public final void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
         final int h = fm.getAscent() + fm.getDescent() + MARGIN_TOP + INSET_TOP + INSET_BOTTOM
                 + MARGIN_BOTTOM;
         int w;
@@ -11,10 +11,10 @@ import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.commons.ui.ColorNames;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.io.File;
 import java.io.PrintStream;
@@ -88,6 +88,17 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
     /** The rendering scale. */
     private float scale = 1.0f;
 
+    /** Cached HTML for static content, shared with deep copies (created lazily). */
+    private transient HtmlFragmentCache htmlFragments;
+
+    /**
+     * {@code Boolean.TRUE} if this object's layout depends on the evaluation context; {@code null} until determined.
+     */
+    private transient Boolean layoutContextDependent;
+
+    /** The conditions of the last layout, if it can be reused; {@code null} if the object must be laid out. */
+    private transient LayoutKey lastLayout;
+
     /* Static initialization to create the default format. */
     static {
         final BundledFontManager bfm = BundledFontManager.getInstance();
@@ -124,7 +135,8 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
 
     /**
      * Copy information from a source {@code DocObject} object, including all underlying {@code DocFormattable}
-     * information.
+     * information, and the conditions of its last layout (so a copy of an object that has been laid out is not laid
+     * out again under the same conditions).
      *
      * @param source the {@code DocObject} from which to copy data
      */
@@ -144,8 +156,23 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
             this.bounds.centerLine = source.bounds.centerLine;
         }
         this.leftAlign = source.getLeftAlign();
+        this.htmlFragments = source.getHtmlFragments();
 
         copyFormatFrom(source);
+        copyLayoutFrom(source);
+    }
+
+    /**
+     * Copies the conditions of the last layout from a source object. The geometry that layout produced must already
+     * have been copied. Containers call this again once they have added copies of their children, since adding a
+     * child discards remembered layout state.
+     *
+     * @param source the object from which to copy layout state
+     */
+    final void copyLayoutFrom(final AbstractDocObjectTemplate source) {
+
+        this.layoutContextDependent = source.layoutContextDependent;
+        this.lastLayout = source.lastLayout;
     }
 
     /**
@@ -193,6 +220,33 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
         return this.scale;
     }
 
+    /**
+     * Gets the cache of HTML generated for this object's static content, which is shared with deep copies.
+     *
+     * @return the cache
+     */
+    public final HtmlFragmentCache getHtmlFragments() {
+
+        // A race here at worst gives some copies separate caches
+        HtmlFragmentCache result = this.htmlFragments;
+
+        if (result == null) {
+            result = new HtmlFragmentCache();
+            this.htmlFragments = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines which parts of this object have static content, so that is done once on a shared template rather
+     * than as HTML is generated for its copies. It descends through the tree preparing all children.
+     */
+    public void prepareHtmlFragments() {
+
+        getHtmlFragments().isStatic(this);
+    }
+
     /**
      * This method uncaches the font for an object. It should be used whenever an object's parentage changes, or when a
      * parent's font attributes change. It descends through the tree uncaching fonts of all children.
@@ -671,6 +725,75 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
      */
     protected abstract void doLayout(EvalContext context, ELayoutMode mathMode);
 
+    /**
+     * Recompute the size of the object's bounding box, and those of its children, if needed. If the object's layout
+     * does not depend on the evaluation context, and it was last laid out in the same layout mode, with the same font
+     * measurements, scale, and width, the geometry from that layout is still valid, and layout is skipped. Containers
+     * call this rather than {@code doLayout} to lay out their children, so only subtrees that need it are laid out.
+     *
+     * @param context  the evaluation context
+     * @param mathMode text mode, inline-math mode, or display-math mode
+     */
+    public final void updateLayout(final EvalContext context, final ELayoutMode mathMode) {
+
+        if (isLayoutContextDependent()) {
+            doLayout(context, mathMode);
+        } else {
+            final FontMeasures measures = BundledFontManager.getInstance().getFontMeasures(getFont());
+            final LayoutKey key = new LayoutKey(measures, mathMode, this.scale, getWidth());
+
+            if (!key.equals(this.lastLayout)) {
+                doLayout(context, mathMode);
+                // Layout may set the width, so the key is taken after layout
+                this.lastLayout = new LayoutKey(measures, mathMode, this.scale, getWidth());
+            }
+        }
+    }
+
+    /**
+     * Tests whether this object's layout depends on the evaluation context (or on any other state that can change
+     * between layouts, like the contents of input fields). The result is determined once and remembered until the
+     * object's structure changes.
+     *
+     * @return {@code true} if layout depends on the evaluation context
+     */
+    public final boolean isLayoutContextDependent() {
+
+        Boolean result = this.layoutContextDependent;
+
+        if (result == null) {
+            result = Boolean.valueOf(computeLayoutContextDependent());
+            this.layoutContextDependent = result;
+        }
+
+        return result.booleanValue();
+    }
+
+    /**
+     * Determines whether this object's layout depends on the evaluation context. This base class method tests whether
+     * the object references any parameters; subclasses whose layout depends on other state override it.
+     *
+     * @return {@code true} if layout depends on the evaluation context
+     */
+    boolean computeLayoutContextDependent() {
+
+        return !parameterNames().isEmpty();
+    }
+
+    /**
+     * Discards any remembered layout state for this object and its ancestors, so they will be laid out again. This is
+     * called when the structure of the tree changes.
+     */
+    final void invalidateLayout() {
+
+        this.layoutContextDependent = null;
+        this.lastLayout = null;
+
+        if (this.parent != null) {
+            this.parent.invalidateLayout();
+        }
+    }
+
     /**
      * Calculates the width of a decimal digit 0 in the current font.
      *
@@ -678,7 +801,7 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
      */
     final int calculateDigitWidth() {
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
         return fm.stringWidth("0");
     }
 
@@ -1075,4 +1198,16 @@ public abstract class AbstractDocObjectTemplate implements Serializable {
 
         return work;
     }
+
+    /**
+     * The conditions under which an object was laid out.
+     *
+     * @param measures the measurements of the object's font (a new instance is created when fonts are measured in a
+     *                 different rendering context)
+     * @param mathMode the layout mode
+     * @param scale    the rendering scale
+     * @param width    the object width
+     */
+    private record LayoutKey(FontMeasures measures, ELayoutMode mathMode, float scale, int width) {
+    }
 }
@@ -38,7 +38,13 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
     private final List<AbstractDocPrimitive> primitives;
 
     /** The off-screen buffer to which to draw the graph. */
-    private BufferedImage offscreen;
+    private transient BufferedImage offscreen;
+
+    /** The context of the last layout, from which the off-screen buffer is built when first needed. */
+    private transient EvalContext layoutContext;
+
+    /** True if the off-screen buffer has not been built since the last layout. */
+    private transient boolean offscreenStale;
 
     /** The alternative text for the generated image for accessibility. */
     private final String altText;
@@ -91,15 +97,29 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
     }
 
     /**
-     * Gets the off-screen image.
+     * Gets the off-screen image, building it first if it has not been built since the last layout.
      *
      * @return the off-screen image
      */
     public final BufferedImage getOffscreen() {
 
+        if (this.offscreenStale && this.layoutContext != null) {
+            buildOffscreen(false, this.layoutContext);
+        }
+
         return this.offscreen;
     }
 
+    /**
+     * Releases the off-screen image for reuse by later rendering on the current thread. This should be called once the
+     * image has been encoded, by the thread that built it; the image must not be used afterward.
+     */
+    public final void releaseOffscreen() {
+
+        RasterPool.release(this.offscreen);
+        this.offscreen = null;
+    }
+
     /**
      * Sets the "coordinate systems in which coordinates can be specified.
      *
@@ -123,13 +143,17 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
     }
 
     /**
-     * Add a primitive to the drawing.
+     * Add a primitive to the drawing. This discards remembered layout state, so a copy of a drawing (whose primitives
+     * are added after its other data is copied) is laid out again, recording the context from which its off-screen
+     * image is built.
      *
      * @param primitive the primitive to add
      */
     final void addPrimitive(final AbstractDocPrimitive primitive) {
 
         this.primitives.add(primitive);
+
+        invalidateLayout();
     }
 
     /**
@@ -150,10 +174,12 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
     @Override
     public final void paintComponent(final Graphics grx, final ELayoutMode mathMode) {
 
-        if (this.offscreen != null) {
+        final BufferedImage image = getOffscreen();
+
+        if (image != null) {
             prePaint(grx);
             innerPaintComponent(grx);
-            grx.drawImage(this.offscreen, 0, 0, null);
+            grx.drawImage(image, 0, 0, null);
             postPaint(grx);
         }
     }
@@ -168,8 +194,11 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
 
         if (this.offscreen == null || (this.offscreen.getWidth() != width)
             || (this.offscreen.getHeight() != height)) {
-            this.offscreen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            RasterPool.release(this.offscreen);
+            this.offscreen = RasterPool.acquire(width, height);
         }
+
+        this.offscreenStale = false;
     }
 
     /**
@@ -204,7 +233,10 @@ public abstract class AbstractDocPrimitiveContainer extends AbstractDocContainer
             p.doLayout(context);
         }
 
-        buildOffscreen(false, context);
+        // The off-screen image is built when first needed - consumers that build it themselves (like HTML generation)
+        // would otherwise render every drawing twice
+        this.layoutContext = context;
+        this.offscreenStale = true;
     }
 
     /**
@@ -6,9 +6,9 @@ import dev.mathops.assessment.document.inst.DocObjectInstStyle;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.io.File;
 import java.io.PrintStream;
@@ -56,7 +56,7 @@ public final class DocAlignmentMark extends AbstractDocObjectTemplate {
     @Override
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
 
         final int h = fm.getAscent() + fm.getDescent();
 
@@ -62,6 +62,8 @@ public final class DocColumn extends AbstractDocContainer {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -170,16 +170,13 @@ public final class DocDrawing extends AbstractDocPrimitiveContainer {
     }
 
     /**
-     * Draw the graph to an offscreen image.
+     * Evaluates the width of the drawing, before scaling.
      *
-     * @param forceWhite true to force background rectangle to be white if it is the first primitive in the drawing and
-     *                   it is filled
-     * @param context    the evaluation context
+     * @param context the evaluation context
+     * @return the width (the current width if it cannot be evaluated)
      */
-    @Override
-    public void buildOffscreen(final boolean forceWhite, final EvalContext context) {
+    private int evaluateWidth(final EvalContext context) {
 
-        // Calculate width and height
         int w = getWidth();
         if (this.widthConstant != null) {
             w = this.widthConstant.intValue();
@@ -190,6 +187,17 @@ public final class DocDrawing extends AbstractDocPrimitiveContainer {
             }
         }
 
+        return w;
+    }
+
+    /**
+     * Evaluates the height of the drawing, before scaling.
+     *
+     * @param context the evaluation context
+     * @return the height (the current height if it cannot be evaluated)
+     */
+    private int evaluateHeight(final EvalContext context) {
+
         int h = getHeight();
         if (this.heightConstant != null) {
             h = this.heightConstant.intValue();
@@ -200,6 +208,23 @@ public final class DocDrawing extends AbstractDocPrimitiveContainer {
             }
         }
 
+        return h;
+    }
+
+    /**
+     * Draw the graph to an offscreen image.
+     *
+     * @param forceWhite true to force background rectangle to be white if it is the first primitive in the drawing and
+     *                   it is filled
+     * @param context    the evaluation context
+     */
+    @Override
+    public void buildOffscreen(final boolean forceWhite, final EvalContext context) {
+
+        // Calculate width and height
+        int w = evaluateWidth(context);
+        int h = evaluateHeight(context);
+
         w = Math.round((float) w * getScale());
         h = Math.round((float) h * getScale());
 
@@ -240,25 +265,8 @@ public final class DocDrawing extends AbstractDocPrimitiveContainer {
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
         // Calculate width and height
-        int w = getWidth();
-        if (this.widthConstant != null) {
-            w = this.widthConstant.intValue();
-        } else if (this.widthFormula != null) {
-            final Object o = this.widthFormula.evaluate(context);
-            if (o instanceof final Number nbr) {
-                w = nbr.intValue();
-            }
-        }
-
-        int h = getHeight();
-        if (this.heightConstant != null) {
-            h = this.heightConstant.intValue();
-        } else if (this.heightFormula != null) {
-            final Object o = this.heightFormula.evaluate(context);
-            if (o instanceof final Number nbr) {
-                h = nbr.intValue();
-            }
-        }
+        final int w = evaluateWidth(context);
+        final int h = evaluateHeight(context);
 
         setOrigSize(w, h);
 
@@ -309,8 +317,8 @@ public final class DocDrawing extends AbstractDocPrimitiveContainer {
         final String alt = getAltText();
         final String actualAlt = alt == null ? null : generateStringContents(evalContext, alt);
 
-        return new DocDrawingInst(objStyle, null, getWidth(), getHeight(), getCoordinates(), actualAlt, null,
-                primitivesInstList);
+        return new DocDrawingInst(objStyle, null, evaluateWidth(evalContext), evaluateHeight(evalContext),
+                getCoordinates(), actualAlt, null, primitivesInstList);
     }
 
     /**
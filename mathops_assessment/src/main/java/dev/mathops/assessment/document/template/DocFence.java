@@ -105,6 +105,8 @@ public final class DocFence extends AbstractDocSpanBase {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -149,7 +151,7 @@ public final class DocFence extends AbstractDocSpanBase {
             // child objects recursively. Parameter references will use this method to build a
             // list of resolved layout objects.
 
-            child.doLayout(context, mathMode);
+            child.updateLayout(context, mathMode);
 
             if (child instanceof final DocSimpleSpan childSpan) {
                 childSpan.accumulateFlowObjects(objects);
@@ -122,6 +122,8 @@ public final class DocFraction extends AbstractDocContainer {
 
         copy.lineY = this.lineY;
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -135,8 +137,8 @@ public final class DocFraction extends AbstractDocContainer {
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
         // layout children if needed
-        this.numerator.doLayout(context, mathMode);
-        this.denominator.doLayout(context, mathMode);
+        this.numerator.updateLayout(context, mathMode);
+        this.denominator.updateLayout(context, mathMode);
 
         final int nWidth = this.numerator.getWidth();
         final int nHeight = this.numerator.getHeight();
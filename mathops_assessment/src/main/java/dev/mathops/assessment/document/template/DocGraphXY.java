@@ -771,9 +771,14 @@ public final class DocGraphXY extends AbstractDocPrimitiveContainer {
         final DocObjectInstStyle objStyle = new DocObjectInstStyle(getColorName(), getFontName(), (float) getFontSize(),
                 getFontStyle());
 
+        // Unnamed colors take the defaults the raster renderer uses
+        final String actualBorderColor = this.borderColorName == null ? "gray" : this.borderColorName;
+        final String actualAxisColor = this.axisColorName == null ? "gray" : this.axisColorName;
+        final String actualTickColor = this.tickColorName == null ? "black" : this.tickColorName;
+
         final StrokeStyleInst borderStyle = this.borderWidth == 0 ? null :
                 new StrokeStyleInst(this.borderWidth,
-                        this.borderColorName, null, 1.0, EStrokeCap.BUTT, EStrokeJoin.MITER, 10.0f);
+                        actualBorderColor, null, 1.0, EStrokeCap.BUTT, EStrokeJoin.MITER, 10.0f);
 
         final List<AbstractDocPrimitive> primitives = getPrimitives();
         final List<AbstractPrimitiveInst> primitivesInstList = new ArrayList<>(primitives.size());
@@ -791,7 +796,7 @@ public final class DocGraphXY extends AbstractDocPrimitiveContainer {
 
         final GridSpec grid = new GridSpec(this.gridWidth, this.gridColorName);
 
-        final StrokeStyleInst axisStroke = new StrokeStyleInst(this.axisWidth, this.axisColorName, null, 1.0,
+        final StrokeStyleInst axisStroke = new StrokeStyleInst(this.axisWidth, actualAxisColor, null, 1.0,
                 EStrokeCap.BUTT, EStrokeJoin.MITER, 10.0f);
 
         final int tickPosLen;
@@ -804,15 +809,17 @@ public final class DocGraphXY extends AbstractDocPrimitiveContainer {
             tickNegLen = 0;
         }
 
-        final boolean hasTicks = this.tickWidth > 9 && this.tickSize > 0 && this.tickColorName != null;
+        // Tick specifications carry the interval for grid lines too, so they are present (with zero width if ticks
+        // are hidden) whenever there is an interval
+        final int actualTickWidth = this.tickSize > 0 ? this.tickWidth : 0;
 
-        final AxisTicksSpec xTicks = hasTicks ?
-                new AxisTicksSpec(this.tickWidth, tickPosLen, tickNegLen,
-                        this.tickColorName, this.xTickInterval, (float) this.tickLabelSize, "black") : null;
+        final AxisTicksSpec xTicks = this.xTickInterval == null ? null :
+                new AxisTicksSpec(actualTickWidth, tickPosLen, tickNegLen,
+                        actualTickColor, this.xTickInterval, (float) this.tickLabelSize, "black");
 
-        final AxisTicksSpec yTicks = hasTicks ?
-                new AxisTicksSpec(this.tickWidth, tickPosLen, tickNegLen,
-                        this.tickColorName, this.yTickInterval, (float) this.tickLabelSize, "black") : null;
+        final AxisTicksSpec yTicks = this.yTickInterval == null ? null :
+                new AxisTicksSpec(actualTickWidth, tickPosLen, tickNegLen,
+                        actualTickColor, this.yTickInterval, (float) this.tickLabelSize, "black");
 
         final AxisSpec xAxis = new AxisSpec(axisStroke, this.xAxisLabel, (float) this.axisLabelSize, "black", xTicks);
         final AxisSpec yAxis = new AxisSpec(axisStroke, this.yAxisLabel, (float) this.axisLabelSize, "black", yTicks);
@@ -7,9 +7,9 @@ import dev.mathops.assessment.document.inst.DocObjectInstStyle;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.io.File;
 import java.io.PrintStream;
@@ -87,7 +87,7 @@ public final class DocHSpace extends AbstractDocObjectTemplate {
 
         final int digitWidth = calculateDigitWidth();
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
         final int h = fm.getAscent() + fm.getDescent();
 
         int w = (int) Math.round(Math.max(0.0, (double) digitWidth * wid));
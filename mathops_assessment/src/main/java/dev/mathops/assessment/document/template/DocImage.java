@@ -17,6 +17,8 @@ import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -36,8 +38,8 @@ public final class DocImage extends AbstractDocObjectTemplate implements ImageOb
     @Serial
     private static final long serialVersionUID = 4380476680775193342L;
 
-    /** The text contents of the object. */
-    private BufferedImage image;
+    /** The text contents of the object (serialized by {@code writeObject}). */
+    private transient BufferedImage image;
 
     /** The scaled width. */
     private NumberOrFormula scaledWidth;
@@ -74,7 +76,8 @@ public final class DocImage extends AbstractDocObjectTemplate implements ImageOb
     }
 
     /**
-     * Serialize the object, which writes the {@code BufferedImage} as a PNG stream.
+     * Serialize the object, which writes the {@code BufferedImage} as PNG data (written as a byte array so reading it
+     * does not consume data that follows it in the stream).
      *
      * @param out the output stream to which to write
      * @throws IOException if there is an error writing to the stream
@@ -84,7 +87,13 @@ public final class DocImage extends AbstractDocObjectTemplate implements ImageOb
 
         out.defaultWriteObject();
 
-        ImageIO.write(this.image, "png", out); // png is lossless
+        if (this.image == null) {
+            out.writeObject(null);
+        } else {
+            final ByteArrayOutputStream png = new ByteArrayOutputStream(10000);
+            ImageIO.write(this.image, "png", png); // png is lossless
+            out.writeObject(png.toByteArray());
+        }
     }
 
     /**
@@ -99,7 +108,8 @@ public final class DocImage extends AbstractDocObjectTemplate implements ImageOb
 
         in.defaultReadObject();
 
-        this.image = ImageIO.read(in);
+        final Object png = in.readObject();
+        this.image = png instanceof final byte[] bytes ? ImageIO.read(new ByteArrayInputStream(bytes)) : null;
     }
 
     /**
@@ -187,6 +197,7 @@ public final class DocImage extends AbstractDocObjectTemplate implements ImageOb
 
         this.source = theSource;
         loadImage();
+        invalidateLayout();
     }
 
     /**
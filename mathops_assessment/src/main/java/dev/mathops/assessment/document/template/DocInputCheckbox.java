@@ -9,10 +9,10 @@ import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.assessment.variable.VariableInputInteger;
 import dev.mathops.commons.log.Log;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Color;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
@@ -204,7 +204,7 @@ public final class DocInputCheckbox extends AbstractDocInput {
     @Override
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
         final int w = fm.getAscent() + INSET_LEFT + INSET_RIGHT;
 
         setBaseLine(INSET_TOP + fm.getAscent());
@@ -10,6 +10,7 @@ import dev.mathops.assessment.variable.VariableInputInteger;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Color;
@@ -244,7 +245,7 @@ public final class DocInputDropdown extends AbstractDocInput {
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
         final Font font = getFont();
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(font);
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(font);
 
         int maxTextWidth = 0;
         for (final DocInputDropdownOption option : this.options) {
@@ -61,6 +61,8 @@ public final class DocMathSpan extends AbstractDocSpanBase {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -102,7 +104,7 @@ public final class DocMathSpan extends AbstractDocSpanBase {
             // Allow the child to lay out its own contents. For transparent spans, this lays out child objects
             // recursively. Parameter references will use this method to build a list of resolved layout objects.
 
-            child.doLayout(context, mathMode);
+            child.updateLayout(context, mathMode);
 
             if (child instanceof final DocSimpleSpan childSpan) {
                 childSpan.accumulateFlowObjects(objects);
@@ -8,13 +8,12 @@ import dev.mathops.assessment.document.inst.DocObjectInstStyle;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
-import java.awt.font.GlyphVector;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.Serial;
@@ -64,6 +63,8 @@ public final class DocNonwrappingSpan extends AbstractDocSpanBase {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -108,7 +109,7 @@ public final class DocNonwrappingSpan extends AbstractDocSpanBase {
             // child objects recursively. Parameter references will use this method to build a
             // list of resolved layout objects.
 
-            child.doLayout(context, mathMode);
+            child.updateLayout(context, mathMode);
 
             if (child instanceof final DocSimpleSpan childSpan) {
                 childSpan.accumulateFlowObjects(objects);
@@ -136,9 +137,8 @@ public final class DocNonwrappingSpan extends AbstractDocSpanBase {
             // There are no baseline-aligned things - use our font to find a center line.
             final BundledFontManager bfm = BundledFontManager.getInstance();
             final Font font = getFont();
-            final FontMetrics fm = bfm.getFontMetrics(font);
-            final GlyphVector gv = font.createGlyphVector(fm.getFontRenderContext(), "My");
-            maxCenter = (int) Math.round(-gv.getGlyphOutline(0).getBounds2D().getMinY() * 0.5);
+            final FontMeasures fm = bfm.getFontMeasures(font);
+            maxCenter = (int) Math.round(fm.getCapHeight() * 0.5);
         }
 
         // Compute maximum height of any object - this will become the new baseline height for the whole span.
@@ -10,12 +10,11 @@ import dev.mathops.assessment.document.inst.DocParagraphInst;
 import dev.mathops.assessment.formula.Formula;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
-import java.awt.font.GlyphVector;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.Serial;
@@ -128,6 +127,8 @@ public final class DocParagraph extends AbstractDocSpanBase {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -230,7 +231,7 @@ public final class DocParagraph extends AbstractDocSpanBase {
             // child objects recursively. Parameter references will use this method to build a
             // list of resolved layout objects.
 
-            child.doLayout(context, mathMode);
+            child.updateLayout(context, mathMode);
 
             if (child instanceof final DocSimpleSpan childSpan) {
                 childSpan.accumulateFlowObjects(objects);
@@ -406,9 +407,8 @@ public final class DocParagraph extends AbstractDocSpanBase {
             // There are no baseline-aligned things - use our font to find a center line.
             final BundledFontManager bfm = BundledFontManager.getInstance();
             final Font font = getFont();
-            final FontMetrics fm = bfm.getFontMetrics(font);
-            final GlyphVector gv = font.createGlyphVector(fm.getFontRenderContext(), "My");
-            maxCenter = (int) Math.round(-gv.getGlyphOutline(0).getBounds2D().getMinY() * 0.5);
+            final FontMeasures fm = bfm.getFontMeasures(font);
+            maxCenter = (int) Math.round(fm.getCapHeight() * 0.5);
         }
 
         // Compute maximum height of any object - this will become the new baseline height for the whole span.
@@ -395,23 +395,35 @@ final class DocPrimitiveFormula extends AbstractDocPrimitive {
     @Override
     public DocPrimitiveFormulaInst createInstance(final EvalContext evalContext) {
 
-        final Object minX = this.formulaMinX.evaluate(evalContext);
-        final Object maxX = this.formulaMaxX.evaluate(evalContext);
+        final Object minX = this.formulaMinX == null ? Double.valueOf(Double.NEGATIVE_INFINITY)
+                : this.formulaMinX.evaluate(evalContext);
+        final Object maxX = this.formulaMaxX == null ? Double.valueOf(Double.POSITIVE_INFINITY)
+                : this.formulaMaxX.evaluate(evalContext);
+        final Object width = this.strokeWidth == null ? Double.valueOf(1.0) : this.strokeWidth.evaluate(evalContext);
 
         final DocPrimitiveFormulaInst result;
 
-        if (minX instanceof final Number minNbr && maxX instanceof final Number maxNbr) {
+        if (this.formula != null && this.formulaStyle == CURVE && minX instanceof final Number minNbr
+            && maxX instanceof final Number maxNbr && width instanceof final Number widthNbr) {
 
-            final AbstractFormulaObject simplified = this.formula.simplify(evalContext);
+            // Simplification substitutes the values of non-input variables, so it is done only when the domain
+            // variable is an input (otherwise, its current value would replace it throughout the formula)
+            final AbstractVariable domainVar = evalContext.getVariable(this.domainVarName);
             final Formula simpleFormula;
-            if (simplified instanceof final Formula sf) {
-                simpleFormula = sf;
+            if (domainVar != null && domainVar.isInput()) {
+                final AbstractFormulaObject simplified = this.formula.simplify(evalContext);
+                if (simplified instanceof final Formula sf) {
+                    simpleFormula = sf;
+                } else {
+                    simpleFormula = new Formula(simplified);
+                }
             } else {
-                simpleFormula = new Formula(simplified);
+                simpleFormula = this.formula;
             }
 
-            final StrokeStyleInst stroke = new StrokeStyleInst(1.0, this.formulaColorName, null, 1.0, EStrokeCap.BUTT,
-                    EStrokeJoin.MITER, 10.0f);
+            final String colorName = this.formulaColorName == null ? "black" : this.formulaColorName;
+            final StrokeStyleInst stroke = new StrokeStyleInst(widthNbr.doubleValue(), colorName, null, 1.0,
+                    EStrokeCap.BUTT, EStrokeJoin.MITER, 10.0f);
 
             result = new DocPrimitiveFormulaInst(simpleFormula, this.domainVarName, stroke, minNbr.doubleValue(),
                     maxNbr.doubleValue());
@@ -615,13 +615,42 @@ final class DocPrimitiveText extends AbstractDocPrimitive {
         if (xVal instanceof final Number xNbr && yVal instanceof final Number yNbr) {
 
             final double alphaValue = this.alpha == null ? 1.0 : this.alpha.doubleValue();
-            final float fsize = this.fontSize == null ? 12.0f : this.fontSize.floatValue();
-            final int fstyle = this.fontStyle == null ? 0 : this.fontStyle.intValue();
 
-            final DocObjectInstStyle objStyle = new DocObjectInstStyle(this.colorName, this.fontName, fsize, fstyle);
+            // Unspecified font attributes are inherited from the owning drawing, as when drawn
+            final String actualFontName;
+            if (this.isStixText) {
+                actualFontName = "STIX Two Text Regular";
+            } else if (this.isStixMath) {
+                actualFontName = "STIX Two Math Regular";
+            } else if (this.fontName == null && this.owner != null) {
+                actualFontName = this.owner.getFontName();
+            } else {
+                actualFontName = this.fontName;
+            }
+
+            final float fsize;
+            if (this.fontSize != null) {
+                fsize = this.fontSize.floatValue();
+            } else if (this.owner != null) {
+                fsize = this.owner.getFontSize();
+            } else {
+                fsize = 12.0f;
+            }
+
+            final int fstyle;
+            if (this.fontStyle != null) {
+                fstyle = this.fontStyle.intValue();
+            } else if (this.owner != null) {
+                fstyle = this.owner.getFontStyle();
+            } else {
+                fstyle = 0;
+            }
+
+            final String actualColorName = this.colorName == null ? "black" : this.colorName;
+            final DocObjectInstStyle objStyle = new DocObjectInstStyle(actualColorName, actualFontName, fsize, fstyle);
 
-            result = new DocPrimitiveTextInst(xNbr.doubleValue(), yNbr.doubleValue(), this.value,this.anchor,
-                    objStyle, alphaValue);
+            result = new DocPrimitiveTextInst(xNbr.doubleValue(), yNbr.doubleValue(),
+                    generateStringContents(evalContext), this.anchor, objStyle, alphaValue);
         } else {
             result = null;
         }
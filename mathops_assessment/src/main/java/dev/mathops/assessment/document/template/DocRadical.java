@@ -96,6 +96,8 @@ public final class DocRadical extends AbstractDocContainer {
             copy.add(copy.root);
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -124,7 +126,7 @@ public final class DocRadical extends AbstractDocContainer {
     @Override
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
-        this.base.doLayout(context, mathMode);
+        this.base.updateLayout(context, mathMode);
 
         final int bWidth = this.base.getWidth();
         final int bHeight = this.base.getHeight();
@@ -132,7 +134,7 @@ public final class DocRadical extends AbstractDocContainer {
         int rWidth = 0;
         int rHeight = 0;
         if (this.root != null) {
-            this.root.doLayout(context, mathMode);
+            this.root.updateLayout(context, mathMode);
             rWidth = this.root.getWidth();
             rHeight = this.root.getHeight();
         }
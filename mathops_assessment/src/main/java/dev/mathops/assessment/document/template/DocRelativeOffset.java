@@ -170,6 +170,8 @@ public final class DocRelativeOffset extends AbstractDocContainer {
             copy.add(copy.under);
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -203,7 +205,7 @@ public final class DocRelativeOffset extends AbstractDocContainer {
         int baseWidth = 0;
         int baseHeight = 0;
         if (this.base != null) {
-            this.base.doLayout(context, mathMode);
+            this.base.updateLayout(context, mathMode);
             baseWidth = this.base.getWidth();
             baseHeight = this.base.getHeight();
         }
@@ -211,7 +213,7 @@ public final class DocRelativeOffset extends AbstractDocContainer {
         int supWidth = 0;
         int supHeight = 0;
         if (this.superscript != null) {
-            this.superscript.doLayout(context, mathMode);
+            this.superscript.updateLayout(context, mathMode);
             supWidth = this.superscript.getWidth();
             supHeight = this.superscript.getHeight();
         }
@@ -219,7 +221,7 @@ public final class DocRelativeOffset extends AbstractDocContainer {
         int subWidth = 0;
         int subHeight = 0;
         if (this.subscript != null) {
-            this.subscript.doLayout(context, mathMode);
+            this.subscript.updateLayout(context, mathMode);
             subWidth = this.subscript.getWidth();
             subHeight = this.subscript.getHeight();
         }
@@ -227,7 +229,7 @@ public final class DocRelativeOffset extends AbstractDocContainer {
         int overWidth = 0;
         int overHeight = 0;
         if (this.over != null) {
-            this.over.doLayout(context, mathMode);
+            this.over.updateLayout(context, mathMode);
             overWidth = this.over.getWidth();
             overHeight = this.over.getHeight();
         }
@@ -235,7 +237,7 @@ public final class DocRelativeOffset extends AbstractDocContainer {
         int underWidth = 0;
         int underHeight = 0;
         if (this.under != null) {
-            this.under.doLayout(context, mathMode);
+            this.under.updateLayout(context, mathMode);
             underWidth = this.under.getWidth();
             underHeight = this.under.getHeight();
         }
@@ -51,6 +51,8 @@ public class DocSimpleSpan extends AbstractDocSpanBase {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
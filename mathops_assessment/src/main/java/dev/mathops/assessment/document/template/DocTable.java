@@ -165,9 +165,9 @@ public final class DocTable extends AbstractDocContainer {
         copy.cellInsets = this.cellInsets;
         copy.spacing = this.spacing;
         copy.justification = this.justification;
-        copy.rowY = this.rowY;
-        copy.rowBase = this.rowBase;
-        copy.colX = this.colX;
+        copy.rowY = this.rowY == null ? null : this.rowY.clone();
+        copy.rowBase = this.rowBase == null ? null : this.rowBase.clone();
+        copy.colX = this.colX == null ? null : this.colX.clone();
         copy.boxWidth = this.boxWidth;
         copy.hLineWidth = this.hLineWidth;
         copy.vLineWidth = this.vLineWidth;
@@ -301,7 +301,7 @@ public final class DocTable extends AbstractDocContainer {
 
             for (final DocNonwrappingSpan docNonwrappingSpan : objectDatum) {
                 if (docNonwrappingSpan != null) {
-                    docNonwrappingSpan.doLayout(context, mathMode);
+                    docNonwrappingSpan.updateLayout(context, mathMode);
                 }
             }
         }
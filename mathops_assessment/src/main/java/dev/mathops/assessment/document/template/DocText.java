@@ -7,6 +7,7 @@ import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.ui.ColorNames;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Font;
@@ -14,7 +15,6 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
-import java.awt.font.GlyphVector;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.Serial;
@@ -150,17 +150,16 @@ public final class DocText extends AbstractDocObjectTemplate {
 
                 if ((ch >= (int) 'a' && ch <= (int) 'z') || (ch >= (int) 'A' && ch <= (int) 'Z')
                     || (ch >= 0x03b1 && ch <= 0x03f5)) {
-                    font = font.deriveFont(Font.ITALIC);
+                    font = bfm.getStyledFont(font, Font.ITALIC);
                 }
             } else {
                 // Print any extended run of text in italics
-                font = font.deriveFont(Font.ITALIC);
+                font = bfm.getStyledFont(font, Font.ITALIC);
             }
         }
 
-        FontMetrics fm = bfm.getFontMetrics(font);
-        final GlyphVector gv = font.createGlyphVector(fm.getFontRenderContext(), "My");
-        final int asc = (int) Math.round(-gv.getGlyphOutline(0).getBounds2D().getMinY() * 1.2);
+        FontMeasures fm = bfm.getFontMeasures(font);
+        final int asc = (int) Math.round(fm.getCapHeight() * 1.2);
         int w;
 
         if (this.text == null) {
@@ -172,8 +171,8 @@ public final class DocText extends AbstractDocObjectTemplate {
                 final int ch = (int)txt.charAt(0);
 
                 if (ch == 0x2147 || ch == 0x2148) {
-                    font = font.deriveFont(Font.ITALIC);
-                    fm = bfm.getFontMetrics(font);
+                    font = bfm.getStyledFont(font, Font.ITALIC);
+                    fm = bfm.getFontMeasures(font);
 
                     if (ch == 0x2147) {
                         w = fm.stringWidth("e");
@@ -197,7 +196,7 @@ public final class DocText extends AbstractDocObjectTemplate {
 
         setWidth(w);
 
-        final int desc = (int) Math.round(gv.getGlyphOutline(1).getBounds2D().getMaxY() * 1.2);
+        final int desc = (int) Math.round(fm.getDescenderDepth() * 1.2);
         final int h = asc + desc;
         setHeight(h);
     }
@@ -7,6 +7,7 @@ import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.ui.ColorNames;
 import dev.mathops.font.BundledFontManager;
+import dev.mathops.font.FontMeasures;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.awt.Color;
@@ -59,7 +60,7 @@ public final class DocWhitespace extends AbstractDocObjectTemplate {
     @Override
     public void doLayout(final EvalContext context, final ELayoutMode mathMode) {
 
-        final FontMetrics fm = BundledFontManager.getInstance().getFontMetrics(getFont());
+        final FontMeasures fm = BundledFontManager.getInstance().getFontMeasures(getFont());
         final int h = fm.getAscent() + fm.getDescent();
 
         int w = fm.stringWidth(CoreConstants.SPC);
@@ -46,6 +46,8 @@ public final class DocWrappingSpan extends DocSimpleSpan {
             copy.add(child.deepCopy());
         }
 
+        copy.copyLayoutFrom(this);
+
         return copy;
     }
 
@@ -0,0 +1,76 @@
+package dev.mathops.assessment.document.template;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached HTML for a document object whose content does not depend on any variable. A single cache is shared by an
+ * object and all of its deep copies (so the copies realized from a shared problem template reuse HTML generated for any
+ * of them). Templates are treated as immutable once copied, so cached HTML is never invalidated.
+ *
+ * <p>
+ * The HTML generated for an object also depends on the surrounding style and on generation options, so fragments are
+ * stored under a key the HTML generator builds from those; a small number of keys is kept per object.
+ */
+public final class HtmlFragmentCache {
+
+    /** The maximum number of fragments cached per object. */
+    private static final int MAX_FRAGMENTS = 8;
+
+    /** {@code Boolean.TRUE} if the object's content is static; {@code null} until determined. */
+    private volatile Boolean staticContent;
+
+    /** The cached fragments. */
+    private final Map<String, String> fragments;
+
+    /**
+     * Constructs a new {@code HtmlFragmentCache}.
+     */
+    HtmlFragmentCache() {
+
+        this.fragments = new ConcurrentHashMap<>(4);
+    }
+
+    /**
+     * Tests whether an object's content is static (it references no parameters, so its HTML is the same for every
+     * realization).
+     *
+     * @param obj the object that owns this cache (or one of its copies)
+     * @return {@code true} if the content is static
+     */
+    public boolean isStatic(final AbstractDocObjectTemplate obj) {
+
+        Boolean result = this.staticContent;
+
+        if (result == null) {
+            result = Boolean.valueOf(obj.parameterNames().isEmpty());
+            this.staticContent = result;
+        }
+
+        return result.booleanValue();
+    }
+
+    /**
+     * Gets a cached fragment.
+     *
+     * @param key the fragment key
+     * @return the fragment; {@code null} if not cached
+     */
+    public String get(final String key) {
+
+        return this.fragments.get(key);
+    }
+
+    /**
+     * Caches a fragment, unless the maximum number of fragments is already cached.
+     *
+     * @param key  the fragment key
+     * @param html the fragment
+     */
+    public void put(final String key, final String html) {
+
+        if (this.fragments.size() < MAX_FRAGMENTS) {
+            this.fragments.putIfAbsent(key, html);
+        }
+    }
+}
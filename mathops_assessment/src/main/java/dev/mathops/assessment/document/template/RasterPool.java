@@ -0,0 +1,149 @@
+package dev.mathops.assessment.document.template;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A per-thread pool of off-screen RGB images used to render drawings and graphs. Rendering a document allocates an
+ * image for every drawing and graph, and under load those large, short-lived arrays dominate garbage collection; this
+ * pool lets a thread reuse its images once they have been encoded and released.
+ *
+ * <p>
+ * Pooled images are allocated with dimensions rounded up to a bucket size, and handed out as sub-images of the
+ * requested size that share the pooled image's raster. Each thread has its own pool (images are acquired and released
+ * by the thread that renders and encodes them), so no synchronization is needed. The pixels retained per thread are
+ * bounded; images released beyond that bound are left to the garbage collector.
+ */
+final class RasterPool {
+
+    /** The granularity to which pooled image dimensions are rounded. */
+    private static final int BUCKET = 32;
+
+    /** The maximum number of pixels retained in a thread's pool. */
+    private static final long MAX_POOLED_PIXELS = 1L << 20;
+
+    /**
+     * True to pool images. This is fixed when the class is loaded; pooling is disabled (only to measure its effect) by
+     * setting the "mathops.rasterPool" system property to "false".
+     */
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("mathops.rasterPool", "true"));
+
+    /** The pool for each thread. */
+    private static final ThreadLocal<RasterPool> POOLS = ThreadLocal.withInitial(RasterPool::new);
+
+    /** The free images, keyed on bucketed dimensions. */
+    private final Map<Long, Deque<BufferedImage>> free;
+
+    /**
+     * The pooled image that backs each sub-image currently handed out (weakly keyed, so images that are never released
+     * are simply collected; {@code BufferedImage} uses identity equality).
+     */
+    private final Map<BufferedImage, BufferedImage> inUse;
+
+    /** The number of pixels in free images. */
+    private long freePixels;
+
+    /**
+     * Constructs a new {@code RasterPool}.
+     */
+    private RasterPool() {
+
+        this.free = new HashMap<>(10);
+        this.inUse = new WeakHashMap<>(10);
+    }
+
+    /**
+     * Acquires an image, cleared to black (as a newly allocated image would be).
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @return the image
+     */
+    static BufferedImage acquire(final int width, final int height) {
+
+        final BufferedImage result;
+
+        if (ENABLED && width > 0 && height > 0) {
+            result = POOLS.get().innerAcquire(width, height);
+        } else {
+            result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases an image obtained from {@code acquire} on the current thread. Images not obtained from this thread's
+     * pool are ignored.
+     *
+     * @param image the image
+     */
+    static void release(final BufferedImage image) {
+
+        if (image != null) {
+            POOLS.get().innerRelease(image);
+        }
+    }
+
+    /**
+     * Acquires an image from this pool.
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @return the image
+     */
+    private BufferedImage innerAcquire(final int width, final int height) {
+
+        final int bucketW = (width + BUCKET - 1) / BUCKET * BUCKET;
+        final int bucketH = (height + BUCKET - 1) / BUCKET * BUCKET;
+        final Long key = Long.valueOf(((long) bucketW << 32) | (long) bucketH);
+
+        final Deque<BufferedImage> images = this.free.get(key);
+        BufferedImage pooled = images == null ? null : images.poll();
+
+        if (pooled == null) {
+            pooled = new BufferedImage(bucketW, bucketH, BufferedImage.TYPE_INT_RGB);
+        } else {
+            this.freePixels -= (long) bucketW * (long) bucketH;
+        }
+
+        final BufferedImage result = pooled.getSubimage(0, 0, width, height);
+
+        final Graphics2D g2d = result.createGraphics();
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, width, height);
+        g2d.dispose();
+
+        this.inUse.put(result, pooled);
+
+        return result;
+    }
+
+    /**
+     * Returns an image to this pool.
+     *
+     * @param image the image
+     */
+    private void innerRelease(final BufferedImage image) {
+
+        final BufferedImage pooled = this.inUse.remove(image);
+
+        if (pooled != null) {
+            final int w = pooled.getWidth();
+            final int h = pooled.getHeight();
+            final long pixels = (long) w * (long) h;
+
+            if (this.freePixels + pixels <= MAX_POOLED_PIXELS) {
+                final Long key = Long.valueOf(((long) w << 32) | (long) h);
+                this.free.computeIfAbsent(key, k -> new ArrayDeque<>(2)).push(pooled);
+                this.freePixels += pixels;
+            }
+        }
+    }
+}
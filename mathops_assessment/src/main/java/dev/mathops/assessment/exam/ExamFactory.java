@@ -192,6 +192,7 @@ public enum ExamFactory {
             final String remoteStr = nonempty.getStringAttr("remote");
             final String proctoredStr = nonempty.getStringAttr("proctored");
             final String serialNumberStr = nonempty.getStringAttr("serial-number");
+            final String seedStr = nonempty.getStringAttr("seed");
             final String bgColorStr = nonempty.getStringAttr("bg-color");
 
             Long allowedSeconds = null;
@@ -200,6 +201,7 @@ public enum ExamFactory {
             Long presentationTime = null;
             Long completionTime = null;
             Long serialNumber = null;
+            Long seed = null;
             Color bgColor = null;
 
             if (examName == null) {
@@ -266,6 +268,14 @@ public enum ExamFactory {
                     valid = false;
                 }
             }
+            if (seedStr != null) {
+                try {
+                    seed = Long.valueOf(seedStr);
+                } catch (final NumberFormatException ex) {
+                    content.logError(top, "Invalid 'seed' attribute on <exam> element.");
+                    valid = false;
+                }
+            }
             if (bgColorStr != null) {
                 if (ColorNames.isColorNameValid(bgColorStr)) {
                     bgColor = ColorNames.getColor(bgColorStr);
@@ -287,6 +297,7 @@ public enum ExamFactory {
                 exam.presentationTime = presentationTime == null ? 0L : presentationTime.longValue();
                 exam.completionTime = completionTime == null ? 0L : completionTime.longValue();
                 exam.serialNumber = serialNumber;
+                exam.realizationSeed = seed;
 
                 if ("Y".equals(remoteStr)) {
                     exam.remote = true;
@@ -1,6 +1,7 @@
 package dev.mathops.assessment.exam;
 
 import dev.mathops.assessment.AbstractXmlObject;
+import dev.mathops.assessment.Randomizer;
 import dev.mathops.assessment.document.template.DocColumn;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.variable.EvalContext;
@@ -111,9 +112,15 @@ public final class ExamObj extends AbstractXmlObject {
     /** The serial number assigned to the realized exam. */
     public Long serialNumber;
 
+    /** The seed from which the exam was realized; realizing a copy of the template with this seed reproduces it. */
+    public Long realizationSeed;
+
     /** The HTML representation of the exam instructions. */
     public String instructionsHtml;
 
+    /** True if this exam is a shared template; checked only by {@code realize} (see {@code freeze}). */
+    private boolean frozen;
+
     /**
      * Constructs a new, empty {@code ExamObj}.
      */
@@ -138,6 +145,10 @@ public final class ExamObj extends AbstractXmlObject {
      * the clone are set to zero. The clone also does not carry over the current section and problem value nor the
      * serial number, or exam listeners.
      *
+     * <p>
+     * Candidate problem templates are shared between the original and the copy; realizing the copy makes copies of
+     * only the problems it selects. The copy is never frozen.
+     *
      * @return a copy of the original object
      */
     public ExamObj deepCopy() {
@@ -184,6 +195,30 @@ public final class ExamObj extends AbstractXmlObject {
         return copy;
     }
 
+    /**
+     * Marks this exam as a shared template. A frozen exam is not realized; callers should realize a copy obtained from
+     * {@code deepCopy}.
+     *
+     * <p>
+     * The flag is only a guard against realizing the template: {@code realize} refuses a frozen exam, but the exam's
+     * fields remain public and mutable, and nothing else checks the flag. Code holding a shared template must treat it
+     * as read-only.
+     */
+    public void freeze() {
+
+        this.frozen = true;
+    }
+
+    /**
+     * Tests whether this exam is a shared template.
+     *
+     * @return {@code true} if frozen
+     */
+    public boolean isFrozen() {
+
+        return this.frozen;
+    }
+
     /**
      * Gets the set of parameters used to realize the problem.
      *
@@ -375,17 +410,37 @@ public final class ExamObj extends AbstractXmlObject {
      *
      * @param isRemote    {@code true} if the exam is being taken remotely
      * @param isProctored {@code true} if the exam is being taken in an unproctored setting
-     * @param serial      the serial number for the realized exam
+     * @param serial      the serial number for the realized exam, which is also used as the realization seed
      * @return {@code true} if realization succeeds; {@code false} otherwise
      */
     public boolean realize(final boolean isRemote, final boolean isProctored, final long serial) {
 
+        return realize(isRemote, isProctored, serial, serial);
+    }
+
+    /**
+     * Realizes this exam from a specified seed. All random choices made while realizing the exam (problem selection and
+     * ordering, variable values, and choice ordering) are drawn from generators derived from the seed, so realizing
+     * another copy of the same template with the same seed produces the same exam.
+     *
+     * @param isRemote    {@code true} if the exam is being taken remotely
+     * @param isProctored {@code true} if the exam is being taken in an unproctored setting
+     * @param serial      the serial number for the realized exam
+     * @param seed        the realization seed
+     * @return {@code true} if realization succeeds; {@code false} otherwise
+     */
+    public boolean realize(final boolean isRemote, final boolean isProctored, final long serial, final long seed) {
+
+        if (this.frozen) {
+            Log.warning("Attempt to realize frozen exam template ", this.ref);
+            return false;
+        }
+
         boolean result = true;
 
-        this.remote = isRemote;
-        this.proctored = isProctored;
-        this.serialNumber = Long.valueOf(serial);
-        this.realizationTime = System.currentTimeMillis();
+        assignDelivery(isRemote, isProctored, serial);
+        this.realizationSeed = Long.valueOf(seed);
+        this.evalContext.setSeed(Randomizer.seedFor(seed, this.ref));
 
         // Realize each section
         for (final ExamSection sect : this.examSections) {
@@ -453,6 +508,23 @@ public final class ExamObj extends AbstractXmlObject {
         return result;
     }
 
+    /**
+     * Assigns the delivery settings and serial number of a realized exam, and sets its realization time to the current
+     * time. This is called by {@code realize}, and should also be called when delivering an exam that was realized
+     * ahead of time (for example, from a {@code RealizedExamPool}).
+     *
+     * @param isRemote    {@code true} if the exam is being taken remotely
+     * @param isProctored {@code true} if the exam is being taken in a proctored setting
+     * @param serial      the serial number for the realized exam
+     */
+    public void assignDelivery(final boolean isRemote, final boolean isProctored, final long serial) {
+
+        this.remote = isRemote;
+        this.proctored = isProctored;
+        this.serialNumber = Long.valueOf(serial);
+        this.realizationTime = System.currentTimeMillis();
+    }
+
     /**
      * Builds the array of selected problems in index order.
      */
@@ -534,6 +606,10 @@ public final class ExamObj extends AbstractXmlObject {
             writeAttribute(xml, "serial-number", this.serialNumber);
         }
 
+        if (this.realizationSeed != null) {
+            writeAttribute(xml, "seed", this.realizationSeed);
+        }
+
         if (this.remote) {
             xml.add(" remote='Y'");
         }
@@ -71,7 +71,8 @@ public final class ExamProblem extends AbstractXmlObject {
     }
 
     /**
-     * Makes a clone of the object.
+     * Makes a clone of the object. The candidate problem templates are shared with the original rather than copied,
+     * since they are never modified: realization makes a copy of only the selected problem.
      *
      * @param theExam the exam to which this problem belongs
      * @return a copy of the original object
@@ -85,9 +86,7 @@ public final class ExamProblem extends AbstractXmlObject {
         copy.mandatory = this.mandatory;
         copy.numPoints = this.numPoints;
 
-        for (final AbstractProblemTemplate prob : this.problems) {
-            copy.problems.add(prob.deepCopy());
-        }
+        copy.problems.addAll(this.problems);
 
         return copy;
     }
@@ -211,19 +210,20 @@ public final class ExamProblem extends AbstractXmlObject {
     }
 
     /**
-     * Realizes this exam problem by choosing one of possibly several available problems, then realizing that problem.
+     * Realizes this exam problem by choosing one of possibly several available problems, then realizing a copy of that
+     * problem (the available problems themselves are templates that may be shared, and are never modified).
      *
      * @param context the context of the owning exam
      * @return {@code true} if realization succeeded; {@code false} otherwise.
      */
     boolean realize(final EvalContext context) {
 
-        // Choose one problem at random and save it as the selected problem
+        // Choose one problem at random and save a copy of it as the selected problem
         if (this.problems.size() == 1) {
-            this.selectedProblem = this.problems.getFirst();
+            this.selectedProblem = this.problems.getFirst().deepCopy();
         } else if (this.problems.size() > 1) {
-            final int which = Randomizer.nextInt(this.problems.size());
-            this.selectedProblem = this.problems.get(which);
+            final int which = context.getRandom().nextInt(this.problems.size());
+            this.selectedProblem = this.problems.get(which).deepCopy();
         } else {
             Log.warning("No problems configured in an exam problem.");
 
@@ -233,6 +233,14 @@ public final class ExamProblem extends AbstractXmlObject {
         this.selectedRef = this.selectedProblem.id;
         this.selectedProblem.evalContext.setPrintTarget(context.isPrintTarget());
 
+        // Seed the problem from the exam seed, the problem ID, and its position, so its values do not depend on how
+        // many random draws were made before it
+        final Long examSeed = context.getSeed();
+        if (examSeed != null) {
+            this.selectedProblem.evalContext.setSeed(Randomizer.seedFor(examSeed.longValue(), this.selectedRef,
+                    this.problemId));
+        }
+
         return this.selectedProblem.realize(this.selectedProblem.evalContext);
     }
 
@@ -1,7 +1,6 @@
 package dev.mathops.assessment.exam;
 
 import dev.mathops.assessment.AbstractXmlObject;
-import dev.mathops.assessment.Randomizer;
 import dev.mathops.assessment.Realizable;
 import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.commons.CoreConstants;
@@ -13,6 +12,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.random.RandomGenerator;
 
 /**
  * A section within an exam. Sections are a portion of an exam that have the property that they may deliver their
@@ -282,8 +282,9 @@ public final class ExamSection extends AbstractXmlObject implements Realizable {
                 }
 
                 // Now randomly order that list into problemOrder.
+                final RandomGenerator random = context.getRandom();
                 for (int i = 0; i < size; i++) {
-                    final int which = Randomizer.nextInt(size - i);
+                    final int which = random.nextInt(size - i);
                     final Long value = list.get(which);
                     this.problemOrder[i] = value.intValue();
 
@@ -5,11 +5,17 @@ import dev.mathops.assessment.variable.EvalContext;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.io.PrintStream;
+import java.io.Serial;
+import java.io.Serializable;
 
 /**
  * The base class for all entities that exist in a formula.
  */
-public abstract class AbstractFormulaObject {
+public abstract class AbstractFormulaObject implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -3372281378596125783L;
 
     /**
      * Construct a new {@code AbstractFormulaObjectBase}.
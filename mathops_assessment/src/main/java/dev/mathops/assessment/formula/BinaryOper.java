@@ -161,19 +161,7 @@ public final class BinaryOper extends AbstractFormulaContainer implements IEdita
                     if (right instanceof ErrorValue) {
                         result = right;
                     } else {
-                        result = switch (this.op) {
-                            case SUBTRACT -> doSubtract(left, right);
-                            case DIVIDE -> doDivide(left, right);
-                            case POWER -> doPower(left, right);
-                            case REMAINDER -> doModulo(left, right);
-                            case LT -> doLessThan(left, right);
-                            case GT -> doGreaterThan(left, right);
-                            case LE -> doLessThanOrEqual(left, right);
-                            case GE -> doGreaterThanOrEqual(left, right);
-                            case EQ -> doEqual(left, right);
-                            case NE -> doNotEqual(left, right);
-                            default -> new ErrorValue("Invalid operation: " + this.op);
-                        };
+                        result = applyBinary(this.op, left, right);
                     }
                 }
             } else {
@@ -184,6 +172,31 @@ public final class BinaryOper extends AbstractFormulaContainer implements IEdita
         return result;
     }
 
+    /**
+     * Applies a two-argument operator to evaluated arguments, neither of which is an {@code ErrorValue}.
+     *
+     * @param theOp the operator (not AND, OR, ADD, MULTIPLY, or APPROX, which accept any number of arguments)
+     * @param left  the left argument
+     * @param right the right argument
+     * @return the result, or an {@code ErrorValue} if unable to compute
+     */
+    static Object applyBinary(final EBinaryOp theOp, final Object left, final Object right) {
+
+        return switch (theOp) {
+            case SUBTRACT -> doSubtract(left, right);
+            case DIVIDE -> doDivide(left, right);
+            case POWER -> doPower(left, right);
+            case REMAINDER -> doModulo(left, right);
+            case LT -> doLessThan(left, right);
+            case GT -> doGreaterThan(left, right);
+            case LE -> doLessThanOrEqual(left, right);
+            case GE -> doGreaterThanOrEqual(left, right);
+            case EQ -> doEqual(left, right);
+            case NE -> doNotEqual(left, right);
+            default -> new ErrorValue("Invalid operation: " + theOp);
+        };
+    }
+
     /**
      * Determine the logical AND between any number of Boolean values. The result is a Boolean.
      *
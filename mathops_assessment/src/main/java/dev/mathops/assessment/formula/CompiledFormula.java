@@ -0,0 +1,1195 @@
+package dev.mathops.assessment.formula;
+
+import dev.mathops.assessment.variable.AbstractVariable;
+import dev.mathops.assessment.variable.EvalContext;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code Formula} compiled to a tree of closures. Variable references are bound to slots that are filled once per
+ * evaluation, and operators whose argument types are known are evaluated on primitive {@code long}, {@code double}, or
+ * {@code boolean} values without boxing.
+ *
+ * <p>
+ * Argument types are speculated from the variable values present when the formula is compiled. If a variable later
+ * holds a value of a different type, evaluation returns {@code DEOPT} and the caller falls back to the interpreter
+ * (and may recompile, treating that variable as having no fixed type). Subtrees the compiler does not handle (string,
+ * span, vector, switch, and test operations, for example) are evaluated by the interpreter.
+ *
+ * <p>
+ * A compiled formula is immutable apart from its cached variable binding, and may be evaluated by several threads.
+ */
+final class CompiledFormula {
+
+    /** A marker returned when a variable's value type no longer matches the compiled code. */
+    static final Object DEOPT = new Object();
+
+    /** Node kind for nodes producing {@code long} values. */
+    private static final int LONG = 1;
+
+    /** Node kind for nodes producing {@code double} values. */
+    private static final int DOUBLE = 2;
+
+    /** Node kind for nodes producing {@code boolean} values. */
+    private static final int BOOLEAN = 3;
+
+    /** Node kind for nodes producing boxed values (which may be {@code ErrorValue}). */
+    private static final int ANY = 4;
+
+    /** The names of the variables bound to each slot. */
+    private final String[] slotNames;
+
+    /** The root of the closure tree. */
+    private final Node root;
+
+    /** The name of the variable whose type change caused the most recent deoptimization. */
+    private volatile String deoptName;
+
+    /** The most recent binding of slots to variables. */
+    private volatile Binding binding;
+
+    /**
+     * Constructs a new {@code CompiledFormula}.
+     *
+     * @param theSlotNames the names of the variables bound to each slot
+     * @param theRoot      the root of the closure tree
+     */
+    private CompiledFormula(final String[] theSlotNames, final Node theRoot) {
+
+        this.slotNames = theSlotNames;
+        this.root = theRoot;
+    }
+
+    /**
+     * Compiles a formula.
+     *
+     * @param formula     the formula
+     * @param context     the context whose current variable values determine speculated argument types
+     * @param polymorphic the names of variables whose values are not to be assumed to have a fixed type
+     * @return the compiled formula; null if the formula has no tree or some variable has no value
+     */
+    static CompiledFormula compile(final Formula formula, final EvalContext context,
+                                   final Collection<String> polymorphic) {
+
+        if (formula.numChildren() == 0) {
+            return null;
+        }
+
+        final String[] names = formula.parameterNames();
+        final Map<String, Integer> slots = new HashMap<>(names.length * 2);
+        final Object[] values = new Object[names.length];
+
+        for (int i = 0; i < names.length; ++i) {
+            final AbstractVariable var = context.getVariable(names[i]);
+            values[i] = var == null ? null : var.getValue();
+            if (values[i] == null) {
+                return null;
+            }
+            slots.put(names[i], Integer.valueOf(i));
+        }
+
+        final Compiler compiler = new Compiler(slots, values, polymorphic);
+
+        return new CompiledFormula(names, compiler.compile(formula.getChild(0)));
+    }
+
+    /**
+     * Gets the name of the variable whose type change caused the most recent deoptimization.
+     *
+     * @return the variable name; null if evaluation has not been deoptimized
+     */
+    String getDeoptName() {
+
+        return this.deoptName;
+    }
+
+    /**
+     * Evaluates the compiled formula. If any variable has no value, an {@code ErrorValue} is returned, as it would be
+     * by {@code Formula.evaluate}.
+     *
+     * @param context the context under which to evaluate the formula
+     * @return the result (a {@code Long}, {@code Double}, {@code Boolean}, other value, or {@code ErrorValue}), or
+     *         {@code DEOPT} if a variable's value type does not match the compiled code
+     */
+    Object evaluate(final EvalContext context) {
+
+        Binding bound = this.binding;
+        if (bound == null || bound.context != context || bound.version != context.getVersion()) {
+            bound = new Binding(context, this.slotNames);
+            this.binding = bound;
+        }
+
+        final int count = this.slotNames.length;
+        final Object[] values = new Object[count];
+        for (int i = 0; i < count; ++i) {
+            final AbstractVariable var = bound.vars[i];
+            final Object theValue = var == null ? null : var.getValue();
+
+            if (theValue == null) {
+                return new ErrorValue("Parameter {" + this.slotNames[i] + "} has no value.");
+            }
+            values[i] = theValue;
+        }
+
+        Object result;
+        try {
+            result = this.root.eval(values, context);
+        } catch (final Failure ex) {
+            result = ex.error;
+        } catch (final Deopt ex) {
+            this.deoptName = this.slotNames[ex.slot];
+            result = DEOPT;
+        }
+
+        return result;
+    }
+
+    /**
+     * The variables bound to slots for one context.
+     */
+    private static final class Binding {
+
+        /** The context. */
+        final EvalContext context;
+
+        /** The context version when the binding was made. */
+        final int version;
+
+        /** The variable bound to each slot (null where the context has no such variable). */
+        final AbstractVariable[] vars;
+
+        /**
+         * Constructs a new {@code Binding}.
+         *
+         * @param theContext the context
+         * @param names      the variable names
+         */
+        Binding(final EvalContext theContext, final String[] names) {
+
+            this.context = theContext;
+            this.version = theContext.getVersion();
+            this.vars = new AbstractVariable[names.length];
+            for (int i = 0; i < names.length; ++i) {
+                this.vars[i] = theContext.getVariable(names[i]);
+            }
+        }
+    }
+
+    /**
+     * Thrown by a typed node to report an error. Carries no stack trace.
+     */
+    private static final class Failure extends RuntimeException {
+
+        /** Version number for serialization. */
+        private static final long serialVersionUID = 2236472085125466411L;
+
+        /** The error. */
+        final ErrorValue error;
+
+        /**
+         * Constructs a new {@code Failure}.
+         *
+         * @param theError the error
+         */
+        Failure(final ErrorValue theError) {
+
+            super(null, null, false, false);
+            this.error = theError;
+        }
+    }
+
+    /**
+     * Thrown when a slot's value does not have the type the compiled code assumes. Carries no stack trace.
+     */
+    private static final class Deopt extends RuntimeException {
+
+        /** Version number for serialization. */
+        private static final long serialVersionUID = -1830927735366208126L;
+
+        /** The slot index. */
+        final int slot;
+
+        /**
+         * Constructs a new {@code Deopt}.
+         *
+         * @param theSlot the slot index
+         */
+        Deopt(final int theSlot) {
+
+            super(null, null, false, false);
+            this.slot = theSlot;
+        }
+    }
+
+    /**
+     * Builds the closure tree.
+     */
+    private static final class Compiler {
+
+        /** Map from variable name to slot index. */
+        private final Map<String, Integer> slots;
+
+        /** The values of the variables in each slot at compile time. */
+        private final Object[] values;
+
+        /** The names of variables whose values are not to be assumed to have a fixed type. */
+        private final Collection<String> polymorphic;
+
+        /**
+         * Constructs a new {@code Compiler}.
+         *
+         * @param theSlots       map from variable name to slot index
+         * @param theValues      the values of the variables in each slot
+         * @param thePolymorphic the names of variables whose values are not to be assumed to have a fixed type
+         */
+        Compiler(final Map<String, Integer> theSlots, final Object[] theValues,
+                 final Collection<String> thePolymorphic) {
+
+            this.slots = theSlots;
+            this.values = theValues;
+            this.polymorphic = thePolymorphic;
+        }
+
+        /**
+         * Compiles a formula object.
+         *
+         * @param obj the object
+         * @return the compiled node
+         */
+        Node compile(final AbstractFormulaObject obj) {
+
+            final Node result;
+
+            if (obj instanceof ConstIntegerValue || obj instanceof ConstRealValue || obj instanceof ConstBooleanValue) {
+                result = constant(obj.evaluate(null));
+            } else if (obj instanceof final VariableRef ref) {
+                result = compileRef(ref);
+            } else if (obj instanceof final GroupingOper grouping && grouping.numChildren() > 0) {
+                result = compile(grouping.getChild(0));
+            } else if (obj instanceof final UnaryOper unary && unary.getChild(0) != null) {
+                result = compileUnary(unary);
+            } else if (obj instanceof final BinaryOper binary) {
+                result = compileBinary(binary);
+            } else if (obj instanceof final Function function && function.getChild(0) != null) {
+                result = new FunctionNode(function, compile(function.getChild(0)));
+            } else {
+                result = new Interpreted(obj);
+            }
+
+            return result;
+        }
+
+        /**
+         * Creates a node for a constant value.
+         *
+         * @param value the value
+         * @return the node
+         */
+        private static Node constant(final Object value) {
+
+            final int kind = kindOf(value);
+
+            return new Constant(kind, value);
+        }
+
+        /**
+         * Determines the node kind that corresponds to a value.
+         *
+         * @param value the value
+         * @return the kind
+         */
+        private static int kindOf(final Object value) {
+
+            final int kind;
+
+            if (value instanceof Long) {
+                kind = LONG;
+            } else if (value instanceof Double) {
+                kind = DOUBLE;
+            } else if (value instanceof Boolean) {
+                kind = BOOLEAN;
+            } else {
+                kind = ANY;
+            }
+
+            return kind;
+        }
+
+        /**
+         * Compiles a variable reference.
+         *
+         * @param ref the reference
+         * @return the node
+         */
+        private Node compileRef(final VariableRef ref) {
+
+            final Integer slot = this.slots.get(ref.name);
+
+            final Node result;
+            if (slot == null || ref.index != null) {
+                result = new Interpreted(ref);
+            } else {
+                final int index = slot.intValue();
+                final int kind = this.polymorphic.contains(ref.name) ? ANY : kindOf(this.values[index]);
+                result = new Slot(kind, index);
+            }
+
+            return result;
+        }
+
+        /**
+         * Compiles a unary operator.
+         *
+         * @param unary the operator
+         * @return the node
+         */
+        private Node compileUnary(final UnaryOper unary) {
+
+            final Node arg = compile(unary.getChild(0));
+            final boolean numeric = arg.kind == LONG || arg.kind == DOUBLE;
+
+            final Node result;
+            if (!numeric) {
+                result = new Interpreted(unary);
+            } else if (unary.getOp() == EUnaryOp.MINUS) {
+                result = new Negate(arg);
+            } else {
+                result = arg;
+            }
+
+            return result;
+        }
+
+        /**
+         * Compiles a binary operator.
+         *
+         * @param binary the operator
+         * @return the node
+         */
+        private Node compileBinary(final BinaryOper binary) {
+
+            final int count = binary.numChildren();
+            final Node[] args = new Node[count];
+            boolean allLong = true;
+            boolean allNumeric = true;
+            boolean allBoolean = true;
+
+            for (int i = 0; i < count; ++i) {
+                final AbstractFormulaObject child = binary.getChild(i);
+                if (child == null) {
+                    return new Interpreted(binary);
+                }
+                args[i] = compile(child);
+                final int kind = args[i].kind;
+                allLong = allLong && kind == LONG;
+                allNumeric = allNumeric && (kind == LONG || kind == DOUBLE);
+                allBoolean = allBoolean && kind == BOOLEAN;
+            }
+
+            final EBinaryOp op = binary.op;
+            final Node result;
+
+            if (count == 0) {
+                result = new Interpreted(binary);
+            } else if (op == EBinaryOp.ADD || op == EBinaryOp.MULTIPLY) {
+                final boolean add = op == EBinaryOp.ADD;
+                if (allNumeric) {
+                    result = new Arithmetic(allLong ? LONG : DOUBLE, add, args);
+                } else {
+                    result = new GenericArithmetic(add, args);
+                }
+            } else if (op == EBinaryOp.AND || op == EBinaryOp.OR) {
+                if (allBoolean) {
+                    result = new Logical(op == EBinaryOp.AND, args);
+                } else {
+                    result = new Interpreted(binary);
+                }
+            } else if (op == EBinaryOp.APPROX) {
+                result = count == 3 && allNumeric ? new Approx(args) : new Interpreted(binary);
+            } else if (count != 2) {
+                result = new Interpreted(binary);
+            } else if (allNumeric && op != EBinaryOp.POWER && !(allLong && op == EBinaryOp.DIVIDE)) {
+                result = new NumericBinary(op, allLong, args[0], args[1]);
+            } else if (allBoolean && (op == EBinaryOp.EQ || op == EBinaryOp.NE)) {
+                result = new BooleanEquality(op == EBinaryOp.EQ, args[0], args[1]);
+            } else if (allLong) {
+                result = new LongDivide(args[0], args[1]);
+            } else {
+                result = new GenericBinary(op, args[0], args[1]);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A node in the closure tree. A node's kind determines which evaluation methods are valid: LONG nodes support
+     * {@code evalLong} and {@code evalDouble}, DOUBLE nodes support {@code evalDouble}, BOOLEAN nodes support
+     * {@code evalBoolean}, and all nodes support {@code eval}. Typed nodes report errors by throwing {@code Failure};
+     * ANY nodes return {@code ErrorValue} objects.
+     */
+    private abstract static class Node {
+
+        /** The node kind. */
+        final int kind;
+
+        /**
+         * Constructs a new {@code Node}.
+         *
+         * @param theKind the node kind
+         */
+        Node(final int theKind) {
+
+            this.kind = theKind;
+        }
+
+        /**
+         * Evaluates a LONG node.
+         *
+         * @param values  the slot values
+         * @param context the evaluation context
+         * @return the value
+         */
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            throw new IllegalStateException("Not a LONG node");
+        }
+
+        /**
+         * Evaluates a LONG or DOUBLE node as a {@code double}.
+         *
+         * @param values  the slot values
+         * @param context the evaluation context
+         * @return the value
+         */
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            return (double) evalLong(values, context);
+        }
+
+        /**
+         * Evaluates a BOOLEAN node.
+         *
+         * @param values  the slot values
+         * @param context the evaluation context
+         * @return the value
+         */
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            throw new IllegalStateException("Not a BOOLEAN node");
+        }
+
+        /**
+         * Evaluates the node to a boxed value.
+         *
+         * @param values  the slot values
+         * @param context the evaluation context
+         * @return the value
+         */
+        Object eval(final Object[] values, final EvalContext context) {
+
+            return switch (this.kind) {
+                case LONG -> Long.valueOf(evalLong(values, context));
+                case DOUBLE -> Double.valueOf(evalDouble(values, context));
+                case BOOLEAN -> Boolean.valueOf(evalBoolean(values, context));
+                default -> throw new IllegalStateException("ANY node must override eval");
+            };
+        }
+    }
+
+    /**
+     * A constant.
+     */
+    private static final class Constant extends Node {
+
+        /** The boxed value. */
+        private final Object value;
+
+        /** The value as a long (for LONG nodes). */
+        private final long longValue;
+
+        /** The value as a double (for LONG and DOUBLE nodes). */
+        private final double doubleValue;
+
+        /** The value as a boolean (for BOOLEAN nodes). */
+        private final boolean booleanValue;
+
+        /**
+         * Constructs a new {@code Constant}.
+         *
+         * @param theKind  the node kind
+         * @param theValue the value
+         */
+        Constant(final int theKind, final Object theValue) {
+
+            super(theKind);
+
+            this.value = theValue;
+            this.longValue = theValue instanceof final Long lng ? lng.longValue() : 0L;
+            this.doubleValue = theValue instanceof final Number num ? num.doubleValue() : 0.0;
+            this.booleanValue = theValue instanceof final Boolean bool && bool.booleanValue();
+        }
+
+        @Override
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            return this.longValue;
+        }
+
+        @Override
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            return this.doubleValue;
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            return this.booleanValue;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            return this.value;
+        }
+    }
+
+    /**
+     * A variable value from a slot.
+     */
+    private static final class Slot extends Node {
+
+        /** The slot index. */
+        private final int index;
+
+        /**
+         * Constructs a new {@code Slot}.
+         *
+         * @param theKind  the node kind
+         * @param theIndex the slot index
+         */
+        Slot(final int theKind, final int theIndex) {
+
+            super(theKind);
+
+            this.index = theIndex;
+        }
+
+        @Override
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            if (values[this.index] instanceof final Long lng) {
+                return lng.longValue();
+            }
+            throw new Deopt(this.index);
+        }
+
+        @Override
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            final Object value = values[this.index];
+
+            if (this.kind == LONG && value instanceof final Long lng) {
+                return lng.doubleValue();
+            }
+            if (this.kind == DOUBLE && value instanceof final Double dbl) {
+                return dbl.doubleValue();
+            }
+            throw new Deopt(this.index);
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            if (values[this.index] instanceof final Boolean bool) {
+                return bool.booleanValue();
+            }
+            throw new Deopt(this.index);
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            final Object value = values[this.index];
+
+            if (this.kind != ANY && kindOf(value) != this.kind) {
+                throw new Deopt(this.index);
+            }
+
+            return value;
+        }
+
+        /**
+         * Determines the node kind that corresponds to a value.
+         *
+         * @param value the value
+         * @return the kind
+         */
+        private static int kindOf(final Object value) {
+
+            return Compiler.kindOf(value);
+        }
+    }
+
+    /**
+     * A subtree evaluated by the interpreter.
+     */
+    private static final class Interpreted extends Node {
+
+        /** The subtree. */
+        private final AbstractFormulaObject obj;
+
+        /**
+         * Constructs a new {@code Interpreted}.
+         *
+         * @param theObj the subtree
+         */
+        Interpreted(final AbstractFormulaObject theObj) {
+
+            super(ANY);
+
+            this.obj = theObj;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            return this.obj == null ? new ErrorValue("Formula has a missing term.") : this.obj.evaluate(context);
+        }
+    }
+
+    /**
+     * Negation of a numeric argument.
+     */
+    private static final class Negate extends Node {
+
+        /** The argument. */
+        private final Node arg;
+
+        /**
+         * Constructs a new {@code Negate}.
+         *
+         * @param theArg the argument (a LONG or DOUBLE node)
+         */
+        Negate(final Node theArg) {
+
+            super(theArg.kind);
+
+            this.arg = theArg;
+        }
+
+        @Override
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            return -this.arg.evalLong(values, context);
+        }
+
+        @Override
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            return this.kind == LONG ? (double) -this.arg.evalLong(values, context)
+                    : -this.arg.evalDouble(values, context);
+        }
+    }
+
+    /**
+     * A sum or product of numeric arguments.
+     */
+    private static final class Arithmetic extends Node {
+
+        /** True for a sum, false for a product. */
+        private final boolean add;
+
+        /** The arguments (LONG or DOUBLE nodes). */
+        private final Node[] args;
+
+        /**
+         * Constructs a new {@code Arithmetic}.
+         *
+         * @param theKind LONG if all arguments are LONG nodes; DOUBLE otherwise
+         * @param isAdd   true for a sum, false for a product
+         * @param theArgs the arguments
+         */
+        Arithmetic(final int theKind, final boolean isAdd, final Node[] theArgs) {
+
+            super(theKind);
+
+            this.add = isAdd;
+            this.args = theArgs;
+        }
+
+        @Override
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            long result = this.add ? 0L : 1L;
+
+            if (this.add) {
+                for (final Node arg : this.args) {
+                    result += arg.evalLong(values, context);
+                }
+            } else {
+                for (final Node arg : this.args) {
+                    result *= arg.evalLong(values, context);
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            if (this.kind == LONG) {
+                return (double) evalLong(values, context);
+            }
+
+            double result = this.add ? 0.0 : 1.0;
+
+            if (this.add) {
+                for (final Node arg : this.args) {
+                    result += arg.evalDouble(values, context);
+                }
+            } else {
+                for (final Node arg : this.args) {
+                    result *= arg.evalDouble(values, context);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A sum or product of arguments of any type, following the rules of {@code BinaryOper}.
+     */
+    private static final class GenericArithmetic extends Node {
+
+        /** True for a sum, false for a product. */
+        private final boolean add;
+
+        /** The arguments. */
+        private final Node[] args;
+
+        /**
+         * Constructs a new {@code GenericArithmetic}.
+         *
+         * @param isAdd   true for a sum, false for a product
+         * @param theArgs the arguments
+         */
+        GenericArithmetic(final boolean isAdd, final Node[] theArgs) {
+
+            super(ANY);
+
+            this.add = isAdd;
+            this.args = theArgs;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            long longValue = this.add ? 0L : 1L;
+            double doubleValue = this.add ? 0.0 : 1.0;
+            boolean allInteger = true;
+
+            for (final Node arg : this.args) {
+                final Object child = arg.eval(values, context);
+
+                if (child instanceof ErrorValue) {
+                    return child;
+                }
+
+                if (child instanceof final Long longChild) {
+                    if (allInteger) {
+                        longValue = this.add ? longValue + longChild.longValue() : longValue * longChild.longValue();
+                    }
+                    doubleValue = this.add ? doubleValue + longChild.doubleValue()
+                            : doubleValue * longChild.doubleValue();
+                } else if (child instanceof final Number numberChild) {
+                    doubleValue = this.add ? doubleValue + numberChild.doubleValue()
+                            : doubleValue * numberChild.doubleValue();
+                    allInteger = false;
+                } else {
+                    return new ErrorValue(this.add ? "Can only perform + operation on numeric values."
+                            : "Can only perform * operation on numeric values.");
+                }
+            }
+
+            return allInteger ? Long.valueOf(longValue) : Double.valueOf(doubleValue);
+        }
+    }
+
+    /**
+     * A logical AND or OR of boolean arguments. Every argument is evaluated, as in {@code BinaryOper}, so errors in
+     * later arguments are reported.
+     */
+    private static final class Logical extends Node {
+
+        /** True for AND, false for OR. */
+        private final boolean and;
+
+        /** The arguments (BOOLEAN nodes). */
+        private final Node[] args;
+
+        /**
+         * Constructs a new {@code Logical}.
+         *
+         * @param isAnd   true for AND, false for OR
+         * @param theArgs the arguments
+         */
+        Logical(final boolean isAnd, final Node[] theArgs) {
+
+            super(BOOLEAN);
+
+            this.and = isAnd;
+            this.args = theArgs;
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            boolean result = this.and;
+
+            for (final Node arg : this.args) {
+                final boolean value = arg.evalBoolean(values, context);
+                result = this.and ? result && value : result || value;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * An "approximately equal to" test on three numeric arguments.
+     */
+    private static final class Approx extends Node {
+
+        /** The arguments (LONG or DOUBLE nodes). */
+        private final Node[] args;
+
+        /**
+         * Constructs a new {@code Approx}.
+         *
+         * @param theArgs the arguments
+         */
+        Approx(final Node[] theArgs) {
+
+            super(BOOLEAN);
+
+            this.args = theArgs;
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            final double num1 = this.args[0].evalDouble(values, context);
+            final double num2 = this.args[1].evalDouble(values, context);
+            final double num3 = this.args[2].evalDouble(values, context);
+
+            return Math.abs(num1 - num2) <= Math.abs(num3);
+        }
+    }
+
+    /**
+     * A two-argument operator on numeric arguments: subtraction, remainder, comparisons, and division (when at least
+     * one argument is real).
+     */
+    private static final class NumericBinary extends Node {
+
+        /** The operator. */
+        private final EBinaryOp op;
+
+        /** True if both arguments are LONG nodes. */
+        private final boolean longArgs;
+
+        /** The left argument. */
+        private final Node left;
+
+        /** The right argument. */
+        private final Node right;
+
+        /**
+         * Constructs a new {@code NumericBinary}.
+         *
+         * @param theOp     the operator
+         * @param isLong    true if both arguments are LONG nodes
+         * @param theLeft   the left argument
+         * @param theRight  the right argument
+         */
+        NumericBinary(final EBinaryOp theOp, final boolean isLong, final Node theLeft, final Node theRight) {
+
+            super(kindFor(theOp, isLong));
+
+            this.op = theOp;
+            this.longArgs = isLong;
+            this.left = theLeft;
+            this.right = theRight;
+        }
+
+        /**
+         * Determines the kind of node for an operator.
+         *
+         * @param theOp  the operator
+         * @param isLong true if both arguments are LONG nodes
+         * @return the node kind
+         */
+        private static int kindFor(final EBinaryOp theOp, final boolean isLong) {
+
+            final int result;
+
+            if (theOp == EBinaryOp.SUBTRACT || theOp == EBinaryOp.REMAINDER) {
+                result = isLong ? LONG : DOUBLE;
+            } else if (theOp == EBinaryOp.DIVIDE) {
+                result = DOUBLE;
+            } else {
+                result = BOOLEAN;
+            }
+
+            return result;
+        }
+
+        @Override
+        long evalLong(final Object[] values, final EvalContext context) {
+
+            final long lhs = this.left.evalLong(values, context);
+            final long rhs = this.right.evalLong(values, context);
+
+            if (this.op == EBinaryOp.SUBTRACT) {
+                return lhs - rhs;
+            }
+            if (rhs == 0L) {
+                throw new Failure(new ErrorValue("Modulus zero"));
+            }
+            return lhs % rhs;
+        }
+
+        @Override
+        double evalDouble(final Object[] values, final EvalContext context) {
+
+            if (this.kind == LONG) {
+                return (double) evalLong(values, context);
+            }
+
+            final double lhs = this.left.evalDouble(values, context);
+            final double rhs = this.right.evalDouble(values, context);
+
+            return switch (this.op) {
+                case SUBTRACT -> lhs - rhs;
+                case REMAINDER -> {
+                    if (rhs == 0.0) {
+                        throw new Failure(new ErrorValue("Modulus zero"));
+                    }
+                    yield lhs % rhs;
+                }
+                default -> {
+                    if (rhs == 0.0) {
+                        throw new Failure(new ErrorValue("Divide by zero"));
+                    }
+                    yield lhs / rhs;
+                }
+            };
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            final boolean result;
+
+            if (this.longArgs) {
+                final long lhs = this.left.evalLong(values, context);
+                final long rhs = this.right.evalLong(values, context);
+
+                result = switch (this.op) {
+                    case LT -> lhs < rhs;
+                    case GT -> lhs > rhs;
+                    case LE -> lhs <= rhs;
+                    case GE -> lhs >= rhs;
+                    case EQ -> lhs == rhs;
+                    default -> lhs != rhs;
+                };
+            } else {
+                final double lhs = this.left.evalDouble(values, context);
+                final double rhs = this.right.evalDouble(values, context);
+
+                result = switch (this.op) {
+                    case LT -> lhs < rhs;
+                    case GT -> lhs > rhs;
+                    case LE -> lhs <= rhs;
+                    case GE -> lhs >= rhs;
+                    case EQ -> lhs == rhs;
+                    default -> lhs != rhs;
+                };
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * An equality or inequality test on boolean arguments.
+     */
+    private static final class BooleanEquality extends Node {
+
+        /** True for equality, false for inequality. */
+        private final boolean equal;
+
+        /** The left argument. */
+        private final Node left;
+
+        /** The right argument. */
+        private final Node right;
+
+        /**
+         * Constructs a new {@code BooleanEquality}.
+         *
+         * @param isEqual  true for equality, false for inequality
+         * @param theLeft  the left argument
+         * @param theRight the right argument
+         */
+        BooleanEquality(final boolean isEqual, final Node theLeft, final Node theRight) {
+
+            super(BOOLEAN);
+
+            this.equal = isEqual;
+            this.left = theLeft;
+            this.right = theRight;
+        }
+
+        @Override
+        boolean evalBoolean(final Object[] values, final EvalContext context) {
+
+            final boolean lhs = this.left.evalBoolean(values, context);
+            final boolean rhs = this.right.evalBoolean(values, context);
+
+            return this.equal == (lhs == rhs);
+        }
+    }
+
+    /**
+     * Division of integers, which produces an integer when the denominator divides the numerator and a real otherwise.
+     */
+    private static final class LongDivide extends Node {
+
+        /** The numerator (a LONG node). */
+        private final Node left;
+
+        /** The denominator (a LONG node). */
+        private final Node right;
+
+        /**
+         * Constructs a new {@code LongDivide}.
+         *
+         * @param theLeft  the numerator
+         * @param theRight the denominator
+         */
+        LongDivide(final Node theLeft, final Node theRight) {
+
+            super(ANY);
+
+            this.left = theLeft;
+            this.right = theRight;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            final long lhs = this.left.evalLong(values, context);
+            final long rhs = this.right.evalLong(values, context);
+
+            final Object result;
+
+            if (rhs == 0L) {
+                result = new ErrorValue("Divide by zero");
+            } else if (lhs % rhs == 0L) {
+                result = Long.valueOf(lhs / rhs);
+            } else {
+                result = Double.valueOf((double) lhs / (double) rhs);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A two-argument operator on arguments of any type, evaluated by {@code BinaryOper.applyBinary}.
+     */
+    private static final class GenericBinary extends Node {
+
+        /** The operator. */
+        private final EBinaryOp op;
+
+        /** The left argument. */
+        private final Node left;
+
+        /** The right argument. */
+        private final Node right;
+
+        /**
+         * Constructs a new {@code GenericBinary}.
+         *
+         * @param theOp    the operator
+         * @param theLeft  the left argument
+         * @param theRight the right argument
+         */
+        GenericBinary(final EBinaryOp theOp, final Node theLeft, final Node theRight) {
+
+            super(ANY);
+
+            this.op = theOp;
+            this.left = theLeft;
+            this.right = theRight;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            final Object lhs = this.left.eval(values, context);
+            if (lhs instanceof ErrorValue) {
+                return lhs;
+            }
+
+            final Object rhs = this.right.eval(values, context);
+            if (rhs instanceof ErrorValue) {
+                return rhs;
+            }
+
+            return BinaryOper.applyBinary(this.op, lhs, rhs);
+        }
+    }
+
+    /**
+     * A function applied to a compiled argument.
+     */
+    private static final class FunctionNode extends Node {
+
+        /** The function. */
+        private final Function function;
+
+        /** The argument. */
+        private final Node arg;
+
+        /**
+         * Constructs a new {@code FunctionNode}.
+         *
+         * @param theFunction the function
+         * @param theArg      the argument
+         */
+        FunctionNode(final Function theFunction, final Node theArg) {
+
+            super(ANY);
+
+            this.function = theFunction;
+            this.arg = theArg;
+        }
+
+        @Override
+        Object eval(final Object[] values, final EvalContext context) {
+
+            final Object value = this.arg.eval(values, context);
+
+            return value instanceof ErrorValue ? value : this.function.apply(value);
+        }
+    }
+}
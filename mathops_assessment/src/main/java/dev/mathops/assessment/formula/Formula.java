@@ -19,6 +19,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A mathematical formula or expression that may involve numbers (integer or real), boolean values, strings, parameters
@@ -33,6 +34,15 @@ public final class Formula extends AbstractFormulaContainer {
     /** A zero-length array used to create other arrays. */
     private static final String[] ZERO_LEN_STRING_ARR = new String[0];
 
+    /** The number of interpreted evaluations after which a formula is compiled. */
+    private static final int COMPILE_THRESHOLD = 2;
+
+    /**
+     * The number of times compiled code may be discarded, or compilation may fail, before the formula is only
+     * interpreted.
+     */
+    private static final int MAX_DEOPTS = 4;
+
     /**
      * The parameters appearing in the formula. Since each named parameter may appear more than once, this is a
      * {@code Map} whose key is the parameter name, and whose values are {@code List}s of {@code VariableRef} objects
@@ -40,6 +50,18 @@ public final class Formula extends AbstractFormulaContainer {
      */
     public final Map<String, List<VariableRef>> params;
 
+    /** The compiled form of the formula; null until compiled, or after compiled code is discarded. */
+    private transient volatile CompiledFormula compiled;
+
+    /** The names of variables seen holding values of more than one type. */
+    private volatile Set<String> polymorphic;
+
+    /** The number of evaluations performed by the interpreter since compilation was last attempted. */
+    private final AtomicInteger interpretedCount;
+
+    /** The number of times compiled code has been discarded or compilation has failed. */
+    private final AtomicInteger deoptCount;
+
     /**
      * Construct a new {@code Formula} with a specified parse tree.
      *
@@ -50,6 +72,9 @@ public final class Formula extends AbstractFormulaContainer {
         super();
 
         this.params = new HashMap<>(0);
+        this.polymorphic = Set.of();
+        this.interpretedCount = new AtomicInteger(0);
+        this.deoptCount = new AtomicInteger(0);
 
         if (root != null) {
             addChild(root);
@@ -217,7 +242,10 @@ public final class Formula extends AbstractFormulaContainer {
     }
 
     /**
-     * Evaluates the object within the tree. Subclasses should override this to produce the correct value.
+     * Evaluates the object within the tree. The first few evaluations use the interpreter; after that, the formula is
+     * compiled (see {@code CompiledFormula}), and compiled code is used until a variable's value changes type. A
+     * failed compilation (when some variable has no value) counts against the limit on discarded code, and is not
+     * retried until the interpreter has again been used for the threshold number of evaluations.
      *
      * @param context the context under which to evaluate the formula
      * @return a Long, Double, Boolean, or DocSimpleSpan value of the object, or a String with an error message if
@@ -226,6 +254,49 @@ public final class Formula extends AbstractFormulaContainer {
     @Override
     public Object evaluate(final EvalContext context) {
 
+        CompiledFormula comp = this.compiled;
+
+        if (comp == null) {
+            if (this.deoptCount.get() >= MAX_DEOPTS
+                || this.interpretedCount.getAndIncrement() < COMPILE_THRESHOLD) {
+                return interpret(context);
+            }
+
+            comp = CompiledFormula.compile(this, context, this.polymorphic);
+            if (comp == null) {
+                this.deoptCount.incrementAndGet();
+                this.interpretedCount.set(0);
+                return interpret(context);
+            }
+            this.compiled = comp;
+        }
+
+        final Object result = comp.evaluate(context);
+
+        if (result == CompiledFormula.DEOPT) {
+            // A variable changed type - discard the compiled code, and do not assume a type for that variable again
+            final Set<String> newPolymorphic = new HashSet<>(this.polymorphic);
+            newPolymorphic.add(comp.getDeoptName());
+            this.polymorphic = newPolymorphic;
+            this.compiled = null;
+            this.deoptCount.incrementAndGet();
+
+            return interpret(context);
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluates the formula by walking the tree of formula objects. This is the reference implementation against which
+     * compiled evaluation is checked.
+     *
+     * @param context the context under which to evaluate the formula
+     * @return a Long, Double, Boolean, or DocSimpleSpan value of the object, or a String with an error message if
+     *         unable to compute
+     */
+    Object interpret(final EvalContext context) {
+
         final String[] names = parameterNames();
 
         // Check to see if all parameters have values assigned
@@ -279,6 +350,7 @@ public final class Formula extends AbstractFormulaContainer {
                         canEvaluate = true;
                     } else {
                         setChild(0, newChild);
+                        this.compiled = null;
                     }
                 }
             }
@@ -174,43 +174,47 @@ public final class Function extends AbstractFormulaContainer implements IEditabl
 
         final Object arg = getChild(0).evaluate(context);
 
-        final Object result;
-        if (arg instanceof ErrorValue) {
-            result = arg;
-        } else {
-            result = switch (this.function) {
-                case ABS -> abs(arg);
-                case ACOS -> acos(arg);
-                case ASIN -> asin(arg);
-                case ATAN -> atan(arg);
-                case CBRT -> cbrt(arg);
-                case CEIL -> ceil(arg);
-                case COS -> cos(arg);
-                case COT -> cot(arg);
-                case CSC -> csc(arg);
-                case EXP -> exp(arg);
-                case FLOOR -> floor(arg);
-                case GCD -> gcd(arg);
-                case LCM -> lcm(arg);
-                case LOG -> log(arg);
-                case NOT -> not(arg);
-                case ROUND -> round(arg);
-                case SEC -> sec(arg);
-                case SIN -> sin(arg);
-                case SQRT -> sqrt(arg);
-                case SRAD2 -> srad2(arg);
-                case SRAD3 -> srad3(arg);
-                case TAN -> tan(arg);
-                case TO_DEG -> toDeg(arg);
-                case TO_RAD -> toRad(arg);
-                case LCASE -> lcase(arg);
-                case UCASE -> ucase(arg);
-                case RAD_NUM -> radNum(arg);
-                case RAD_DEN -> radDen(arg);
-            };
-        }
-
-        return result;
+        return arg instanceof ErrorValue ? arg : apply(arg);
+    }
+
+    /**
+     * Applies the function to an evaluated argument that is not an {@code ErrorValue}.
+     *
+     * @param arg the argument
+     * @return the result, or an {@code ErrorValue} if unable to compute
+     */
+    Object apply(final Object arg) {
+
+        return switch (this.function) {
+            case ABS -> abs(arg);
+            case ACOS -> acos(arg);
+            case ASIN -> asin(arg);
+            case ATAN -> atan(arg);
+            case CBRT -> cbrt(arg);
+            case CEIL -> ceil(arg);
+            case COS -> cos(arg);
+            case COT -> cot(arg);
+            case CSC -> csc(arg);
+            case EXP -> exp(arg);
+            case FLOOR -> floor(arg);
+            case GCD -> gcd(arg);
+            case LCM -> lcm(arg);
+            case LOG -> log(arg);
+            case NOT -> not(arg);
+            case ROUND -> round(arg);
+            case SEC -> sec(arg);
+            case SIN -> sin(arg);
+            case SQRT -> sqrt(arg);
+            case SRAD2 -> srad2(arg);
+            case SRAD3 -> srad3(arg);
+            case TAN -> tan(arg);
+            case TO_DEG -> toDeg(arg);
+            case TO_RAD -> toRad(arg);
+            case LCASE -> lcase(arg);
+            case UCASE -> ucase(arg);
+            case RAD_NUM -> radNum(arg);
+            case RAD_DEN -> radDen(arg);
+        };
     }
 
     /**
@@ -3,12 +3,18 @@ package dev.mathops.assessment.formula;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.text.builder.HtmlBuilder;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.Collection;
 
 /**
  * An immutable vector of long integer values.
  */
-public final class IntegerVectorValue {
+public final class IntegerVectorValue implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = 9209048192664332770L;
 
     /** The vector elements. */
     private final long[] elements;
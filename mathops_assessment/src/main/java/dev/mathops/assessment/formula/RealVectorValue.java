@@ -4,10 +4,17 @@ import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.number.NumberParser;
 import dev.mathops.text.builder.HtmlBuilder;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * An immutable vector of double values.
  */
-public final class RealVectorValue {
+public final class RealVectorValue implements Serializable {
+
+    /** Version number for serialization. */
+    @Serial
+    private static final long serialVersionUID = -7805996213034643214L;
 
     /** The vector elements. */
     private final Number[] elements;
@@ -56,6 +56,16 @@ public class UnaryOper extends AbstractFormulaContainer implements IEditableForm
         return copy;
     }
 
+    /**
+     * Gets the operator.
+     *
+     * @return the operator
+     */
+    EUnaryOp getOp() {
+
+        return this.op;
+    }
+
     /**
      * Generate the string representation of the object.
      *
@@ -9,15 +9,50 @@ import dev.mathops.text.builder.HtmlBuilder;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Converts one generation each DocColumn associated with any exam or problem in the system, and appends all of them to
- * a single large HTML file for review (prefaced with the identifier of the source of the object).
+ * a series of large HTML files for review (prefaced with the identifier of the source of the object).
+ *
+ * <p>
+ * Each exam and problem is converted by its own task on a pool with one thread per processor. Every task works on its
+ * own copy of its exam or problem (so realizations share no evaluation context) and generates its HTML into its own
+ * builder, with element IDs drawn from a range reserved for that task. Results are written to the output files in
+ * order as they complete, and the time taken for each object is written to a timings file.
  */
 public enum BulkConvert {
     ;
 
+    /** The directory to which output files are written. */
+    private static final File OUT_DIR = new File("/Users/benoit/Desktop");
+
+    /** The size at which an output file is closed and a new file is started. */
+    private static final int MAX_FILE_CHARS = 4000000;
+
+    /** The number of element IDs reserved for each task. */
+    private static final int IDS_PER_TASK = 100000;
+
+    /** The number of attempts made to realize each problem. */
+    private static final int MAX_ATTEMPTS = 100;
+
+    /**
+     * The result of converting one exam or problem.
+     *
+     * @param ref  the reference of the exam or problem
+     * @param html the generated HTML
+     * @param ms   the time taken, in milliseconds
+     */
+    private record Result(String ref, String html, long ms) {
+    }
+
     /**
      * Performs the conversion.
      */
@@ -26,20 +61,51 @@ public enum BulkConvert {
         final InstructionalCache cache = InstructionalCache.getInstance();
         cache.rescan();
 
-        final int[] id = {1};
-        final HtmlBuilder htm = new HtmlBuilder(4050000);
-        htm.addln("<html>");
-        htm.addln("<head></head>");
-        htm.addln("<body style='font-size:24px'>");
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
 
-        for (final String ref : cache.getExamFileRefs()) {
-            final ExamObj exam = InstructionalCache.getExam(ref);
-            htm.addln("Exam: ", exam.ref);
+        try {
+            final List<Future<Result>> results = new ArrayList<>(1000);
+            int taskIndex = 0;
+
+            for (final String ref : cache.getExamFileRefs()) {
+                final int firstId = 1 + taskIndex * IDS_PER_TASK;
+                results.add(pool.submit(() -> convertExam(ref, firstId)));
+                ++taskIndex;
+            }
+            for (final String ref : cache.getProblemFileRefs()) {
+                final int firstId = 1 + taskIndex * IDS_PER_TASK;
+                results.add(pool.submit(() -> convertProblem(ref, firstId)));
+                ++taskIndex;
+            }
+
+            writeResults(results);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts a single exam.
+     *
+     * @param ref     the exam reference
+     * @param firstId the first element ID reserved for the exam
+     * @return the result
+     */
+    private static Result convertExam(final String ref, final int firstId) {
+
+        final long start = System.nanoTime();
 
-            // Log.info(exam.getIdentifierReference().ref);
+        final HtmlBuilder htm = new HtmlBuilder(2000);
+        final ExamObj exam = InstructionalCache.getExam(ref);
+
+        if (exam == null) {
+            Log.warning("Unable to load ", ref);
+        } else {
+            htm.addln("Exam: ", exam.ref);
 
             exam.realize(true, false, 123456L);
-            ExamObjConverter.populateExamHtml(exam, id);
+            ExamObjConverter.populateExamHtml(exam, new int[]{firstId});
             final String instr = exam.instructionsHtml;
             if (instr != null) {
                 htm.addln(instr);
@@ -48,33 +114,30 @@ public enum BulkConvert {
             htm.addln("<hr>");
         }
 
-        int index = 1;
+        return new Result(ref, htm.toString(), (System.nanoTime() - start) / 1000000L);
+    }
 
-        for (final String ref : cache.getProblemFileRefs()) {
+    /**
+     * Converts a single problem.
+     *
+     * @param ref     the problem reference
+     * @param firstId the first element ID reserved for the problem
+     * @return the result
+     */
+    private static Result convertProblem(final String ref, final int firstId) {
 
-            if (htm.length() > 4000000) {
-                htm.addln("</body></html>");
+        final long start = System.nanoTime();
 
-                final File dest = new File("/Users/benoit/Desktop/bulk_dump_" + index + ".html");
-                try (final FileWriter out = new FileWriter(dest, StandardCharsets.UTF_8)) {
-                    out.write(htm.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-                htm.reset();
-                htm.addln("<html>");
-                htm.addln("<head></head>");
-                htm.addln("<body style='font-size:24px'>");
-                ++index;
-            }
+        final HtmlBuilder htm = new HtmlBuilder(10000);
+        final AbstractProblemTemplate problem = InstructionalCache.getProblem(ref);
 
-            final AbstractProblemTemplate problem = InstructionalCache.getProblem(ref);
+        if (problem == null) {
+            Log.warning("Unable to load ", ref);
+        } else {
             htm.addln("Problem: ", problem.id).br();
 
-            // Log.info(problem.getIdentifierReference().ref);
-
             boolean realized = false;
-            for (int i = 0; i < 100; ++i) {
+            for (int i = 0; i < MAX_ATTEMPTS; ++i) {
                 if (problem.realize(problem.evalContext)) {
                     realized = true;
                     break;
@@ -82,8 +145,7 @@ public enum BulkConvert {
             }
 
             if (realized) {
-
-                ProblemConverter.populateProblemHtml(problem, id);
+                ProblemConverter.populateProblemHtml(problem, new int[]{firstId});
 
                 final String questionHtml = problem.questionHtml;
                 if (questionHtml != null) {
@@ -112,13 +174,94 @@ public enum BulkConvert {
             }
         }
 
-        htm.addln("</body></html>");
-        final File dest = new File("/Users/benoit/Desktop/bulk_dump_"
-                + index + ".html");
-        try (final FileWriter out = new FileWriter(dest, StandardCharsets.UTF_8)) {
-            out.write(htm.toString());
-        } catch (final IOException ex) {
+        return new Result(ref, htm.toString(), (System.nanoTime() - start) / 1000000L);
+    }
+
+    /**
+     * Writes results to output files in order, as they complete, starting a new file whenever the current one exceeds
+     * the maximum size, and writes the time taken for each to a timings file.
+     *
+     * @param results the results, in the order they are to be written
+     */
+    private static void writeResults(final Iterable<Future<Result>> results) {
+
+        int index = 1;
+        Writer out = null;
+        int written = 0;
+
+        try (final Writer timings = new FileWriter(new File(OUT_DIR, "bulk_timings.csv"), StandardCharsets.UTF_8)) {
+            timings.write("ref,ms\n");
+
+            for (final Future<Result> future : results) {
+                final Result result = future.get();
+
+                timings.write(result.ref() + "," + result.ms() + "\n");
+                timings.flush();
+
+                if (out == null) {
+                    out = startFile(index);
+                    written = 0;
+                }
+
+                out.write(result.html());
+                written += result.html().length();
+
+                if (written > MAX_FILE_CHARS) {
+                    endFile(out);
+                    out = null;
+                    ++index;
+                }
+            }
+
+            if (out != null) {
+                endFile(out);
+                out = null;
+            }
+        } catch (final IOException | ExecutionException ex) {
             Log.warning(ex);
+        } catch (final InterruptedException ex) {
+            Log.warning(ex);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final IOException ex) {
+                    Log.warning(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts an output file.
+     *
+     * @param index the file index
+     * @return the writer
+     * @throws IOException if the file could not be created
+     */
+    private static Writer startFile(final int index) throws IOException {
+
+        final File dest = new File(OUT_DIR, "bulk_dump_" + index + ".html");
+        final Writer out = new FileWriter(dest, StandardCharsets.UTF_8);
+
+        out.write("<html>\n");
+        out.write("<head></head>\n");
+        out.write("<body style='font-size:24px'>\n");
+
+        return out;
+    }
+
+    /**
+     * Finishes and closes an output file.
+     *
+     * @param out the writer
+     * @throws IOException if the file could not be written
+     */
+    private static void endFile(final Writer out) throws IOException {
+
+        try (out) {
+            out.write("</body></html>\n");
         }
     }
 
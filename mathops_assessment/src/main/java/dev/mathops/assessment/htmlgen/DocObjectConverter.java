@@ -4,9 +4,13 @@ import dev.mathops.assessment.HtmlImage;
 import dev.mathops.assessment.NumberOrFormula;
 import dev.mathops.assessment.document.EFieldStyle;
 import dev.mathops.assessment.document.ELayoutMode;
+import dev.mathops.assessment.document.inst.DocDrawingInst;
+import dev.mathops.assessment.document.inst.DocGraphXYInst;
+import dev.mathops.assessment.document.svggen.PrimitiveContainerInstConverter;
 import dev.mathops.assessment.document.template.AbstractDocContainer;
 import dev.mathops.assessment.document.template.AbstractDocInput;
 import dev.mathops.assessment.document.template.AbstractDocObjectTemplate;
+import dev.mathops.assessment.document.template.AbstractDocPrimitiveContainer;
 import dev.mathops.assessment.document.template.AbstractDocSpanBase;
 import dev.mathops.assessment.document.template.DocAlignmentMark;
 import dev.mathops.assessment.document.template.DocColumn;
@@ -35,6 +39,7 @@ import dev.mathops.assessment.document.template.DocTable;
 import dev.mathops.assessment.document.template.DocText;
 import dev.mathops.assessment.document.template.DocVSpace;
 import dev.mathops.assessment.document.template.DocWhitespace;
+import dev.mathops.assessment.document.template.HtmlFragmentCache;
 import dev.mathops.assessment.formula.Formula;
 import dev.mathops.assessment.variable.AbstractVariable;
 import dev.mathops.assessment.variable.EvalContext;
@@ -60,6 +65,13 @@ import java.util.Queue;
 enum DocObjectConverter {
     ;
 
+    /**
+     * True to use cached HTML for static content. This is fixed when the class is loaded; the cache is disabled (only
+     * to measure its effect) by setting the "mathops.fragmentCache" system property to "false".
+     */
+    static final boolean FRAGMENT_CACHE_ENABLED = Boolean.parseBoolean(System.getProperty("mathops.fragmentCache",
+            "true"));
+
     /**
      * Given a realized {@code DocColumn}, generates the corresponding HTML.
      *
@@ -68,15 +80,17 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @return the generated HTML
      */
     static String convertDocColumn(final DocColumn obj, final Deque<Style> styleStack,
-                                   final boolean enabled, final int[] id, final EvalContext context) {
+                                   final boolean enabled, final int[] id, final EGraphicsFormat format,
+                                   final EvalContext context) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
-        appendChildrenHtml(obj, obj, htm, styleStack, enabled, id, context, false);
+        appendChildrenHtml(obj, obj, htm, styleStack, enabled, id, format, context, false);
 
         return htm.toString();
     }
@@ -86,32 +100,109 @@ enum DocObjectConverter {
      *
      * @param obj        the {@code DocDrawing}
      * @param styleStack the font size stack - top Integer is current HTML font size
+     * @param format     the format in which to emit the drawing
      * @param context    the evaluation context
      * @return the generated HTML
      */
     private static String convertDocDrawing(final DocDrawing obj, final Queue<Style> styleStack,
-                                            final EvalContext context) {
+                                            final EGraphicsFormat format, final EvalContext context) {
 
-        String result = CoreConstants.EMPTY;
+        String result = null;
+
+        if (format == EGraphicsFormat.SVG && isUnscaled(obj)) {
+            try {
+                final DocDrawingInst inst = obj.createInstance(context);
+                if (PrimitiveContainerInstConverter.isConvertible(inst)) {
+                    result = PrimitiveContainerInstConverter.convertDocDrawingInst(inst, null);
+                }
+            } catch (final IllegalArgumentException ex) {
+                Log.warning("Unable to generate SVG for drawing - using raster image", ex);
+            }
+        }
+
+        if (result == null) {
+            result = convertRaster(obj, styleStack, format, context);
+        }
+
+        return result;
+    }
+
+    /**
+     * Generates the HTML for a raster image of a drawing or graph. In formats other than {@code RASTER}, the image is
+     * taken from (or added to) the {@code ImageStore} and referenced by URL, so identical images are rendered and
+     * encoded only once. The off-screen image is released for reuse once it has been encoded.
+     *
+     * @param obj        the drawing or graph
+     * @param styleStack the font size stack - top Integer is current HTML font size
+     * @param format     the format in which to emit the image
+     * @param context    the evaluation context
+     * @return the generated HTML
+     */
+    private static String convertRaster(final AbstractDocPrimitiveContainer obj, final Queue<Style> styleStack,
+                                        final EGraphicsFormat format, final EvalContext context) {
 
-        obj.buildOffscreen(false, context);
+        String result = CoreConstants.EMPTY;
 
-        final BufferedImage offscreen = obj.getOffscreen();
-        if (offscreen != null) {
-            final Style style = styleStack.peek();
-            if (style != null) {
-                final String alt = obj.getAltText();
-                final String actualAlt = alt == null ? null : obj.generateStringContents(context, alt);
+        final Style style = styleStack.peek();
+        if (style != null) {
+            final String alt = obj.getAltText();
+            final String actualAlt = alt == null ? null : obj.generateStringContents(context, alt);
+
+            final float size = style.getSize();
+            final float scale = obj.getScale();
+            // Images are linked only if the store can serve them for as long as the page is open
+            final String key = format == EGraphicsFormat.RASTER || !ImageStore.getInstance().isDurable() ? null
+                    : ImageStore.makeKey(obj, context, size);
+
+            if (key == null) {
+                obj.buildOffscreen(false, context);
+
+                final BufferedImage offscreen = obj.getOffscreen();
+                if (offscreen != null) {
+                    result = new HtmlImage(offscreen, 0.0, (double) size, actualAlt).toImg((double) scale);
+                    obj.releaseOffscreen();
+                }
+            } else {
+                final ImageStore store = ImageStore.getInstance();
+                ImageStore.Image stored = store.lookup(key);
+
+                if (stored == null) {
+                    obj.buildOffscreen(false, context);
+
+                    final BufferedImage offscreen = obj.getOffscreen();
+                    if (offscreen != null) {
+                        final byte[] png = new HtmlImage(offscreen, 0.0, (double) size, actualAlt).toPng();
+                        if (png != null) {
+                            stored = new ImageStore.Image(png, offscreen.getWidth(), offscreen.getHeight());
+                            store.store(key, stored);
+                        }
+                        obj.releaseOffscreen();
+                    }
+                }
 
-                final float size = style.getSize();
-                final float scale = obj.getScale();
-                result = new HtmlImage(offscreen, 0.0, (double) size, actualAlt).toImg((double) scale);
+                if (stored != null) {
+                    store.recordReference(key, stored);
+                    result = new HtmlImage(null, 0.0, (double) size, actualAlt).makeImg(ImageStore.url(key),
+                            stored.width, stored.height, (double) scale);
+                }
             }
         }
 
         return result;
     }
 
+    /**
+     * Tests whether a drawing or graph is rendered at its natural size.  The SVG generators work in the unscaled
+     * coordinate space, so scaled objects are rasterized.
+     *
+     * @param obj the drawing or graph
+     * @return {@code true} if the object's scale is 1
+     */
+    private static boolean isUnscaled(final AbstractDocObjectTemplate obj) {
+
+        return Math.abs(obj.getScale() - 1.0f) < 0.001f;
+    }
+
     /**
      * Gets the color string, in the form "rgb(1,2,3)" from a color name.
      *
@@ -138,13 +229,14 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocFence(final DocColumn column, final DocFence obj, final Deque<Style> styleStack,
-                                          final boolean enabled, final int[] id, final EvalContext context,
-                                          final boolean inMath) {
+                                          final boolean enabled, final int[] id, final EGraphicsFormat format,
+                                          final EvalContext context, final boolean inMath) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
@@ -241,7 +333,7 @@ enum DocObjectConverter {
 
         htm.addln("<span class='sr-only'> ", openText, " </span>");
 
-        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, inMath);
+        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, inMath);
 
         if (closeText != null) {
             htm.addln("<span class='sr-only'> ", closeText, " </span>");
@@ -261,12 +353,14 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocFraction(final DocColumn column, final DocFraction obj,
                                              final Deque<Style> styleStack, final boolean enabled, final int[] id,
+                                             final EGraphicsFormat format,
                                              final EvalContext context, final boolean inMath) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
@@ -280,7 +374,7 @@ enum DocObjectConverter {
 
         final DocNonwrappingSpan numerator = obj.getNumerator();
         if (numerator != null) {
-            htm.add(convertDocNonwrappingSpan(column, numerator, styleStack, enabled, id, context, inMath));
+            htm.add(convertDocNonwrappingSpan(column, numerator, styleStack, enabled, id, format, context, inMath));
         }
         htm.eTd().eTr();
         htm.sTr().add("<td style='font-size:inherit;font-family:inherit; text-align:center; padding:0 .2em; ",
@@ -289,7 +383,7 @@ enum DocObjectConverter {
 
         final DocNonwrappingSpan denominator = obj.getDenominator();
         if (denominator != null) {
-            htm.add(convertDocNonwrappingSpan(column, denominator, styleStack, enabled, id, context, inMath));
+            htm.add(convertDocNonwrappingSpan(column, denominator, styleStack, enabled, id, format, context, inMath));
         }
         htm.eTd().eTr().eTable();
         htm.addln("<span class='sr-only'> end of fraction, </span>");
@@ -302,30 +396,30 @@ enum DocObjectConverter {
      *
      * @param obj        the {@code DocGraphXY}
      * @param styleStack the font size stack - top Integer is current HTML font size
+     * @param format     the format in which to emit the graph
      * @param context    the evaluation context
      * @return the generated HTML
      */
     private static String convertDocGraphXY(final DocGraphXY obj, final Queue<Style> styleStack,
-                                            final EvalContext context) {
-
-        String result = CoreConstants.EMPTY;
-
-        obj.buildOffscreen(false, context);
-
-        final BufferedImage offscreen = obj.getOffscreen();
+                                            final EGraphicsFormat format, final EvalContext context) {
 
-        if (offscreen != null) {
-            final Style style = styleStack.peek();
-            if (style != null) {
-                final String alt = obj.getAltText();
-                final String actualAlt = alt == null ? null : obj.generateStringContents(context, alt);
+        String result = null;
 
-                final float size = style.getSize();
-                final float scale = obj.getScale();
-                result = new HtmlImage(offscreen, 0.0, (double) size, actualAlt).toImg((double) scale);
+        if (format == EGraphicsFormat.SVG && isUnscaled(obj)) {
+            try {
+                final DocGraphXYInst inst = obj.createInstance(context);
+                if (PrimitiveContainerInstConverter.isConvertible(inst)) {
+                    result = PrimitiveContainerInstConverter.convertDocGraphXYInst(inst, null, context);
+                }
+            } catch (final IllegalArgumentException ex) {
+                Log.warning("Unable to generate SVG for graph - using raster image", ex);
             }
         }
 
+        if (result == null) {
+            result = convertRaster(obj, styleStack, format, context);
+        }
+
         return result;
     }
 
@@ -388,13 +482,15 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocParameterRef(final DocColumn column, final DocParameterReference obj,
                                                  final Deque<Style> styleStack, final boolean enabled,
-                                                 final int[] id, final EvalContext context, final boolean inMath) {
+                                                 final int[] id, final EGraphicsFormat format,
+                                                 final EvalContext context, final boolean inMath) {
 
         final String result;
 
@@ -413,7 +509,7 @@ enum DocObjectConverter {
                 final AbstractDocContainer origParent = template.getParent();
                 final AbstractDocContainer refParent = obj.getParent();
                 template.setParent(refParent);
-                appendChildHtml(column, template, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, template, htm, styleStack, enabled, id, format, context, inMath);
                 template.setParent(origParent);
             } else {
                 final String fontName = obj.getFontName();
@@ -435,12 +531,13 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @return the generated HTML
      */
     private static String convertDocParagraph(final DocColumn column, final DocParagraph obj,
                                               final Deque<Style> styleStack, final boolean enabled, final int[] id,
-                                              final EvalContext context) {
+                                              final EGraphicsFormat format, final EvalContext context) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
@@ -505,7 +602,7 @@ enum DocObjectConverter {
                         break;
                     }
                     if (child.isVisible()) {
-                        appendChildHtml(column, child, htm, styleStack, enabled, id, context, false);
+                        appendChildHtml(column, child, htm, styleStack, enabled, id, format, context, false);
                         prior = child;
                     }
                 }
@@ -539,7 +636,7 @@ enum DocObjectConverter {
                     if (child instanceof DocAlignmentMark) {
                         emit = true;
                     } else if (emit && child.isVisible()) {
-                        appendChildHtml(column, child, htm, styleStack, enabled, id, context, false);
+                        appendChildHtml(column, child, htm, styleStack, enabled, id, format, context, false);
                     }
                 }
 
@@ -552,7 +649,7 @@ enum DocObjectConverter {
             } else {
                 // Treat "left-hang" as "left" if there is no mark
                 htm.addln("<div style='", marginStr, "'>");
-                appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, false);
+                appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, false);
                 htm.eDiv();
             }
         } else {
@@ -564,7 +661,7 @@ enum DocObjectConverter {
                 htm.addln("<div style='", marginStr, "'>");
             }
 
-            appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, false);
+            appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, false);
         }
         htm.eDiv();
 
@@ -580,12 +677,14 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocRadical(final DocColumn column, final DocRadical obj,
                                             final Deque<Style> styleStack, final boolean enabled, final int[] id,
+                                            final EGraphicsFormat format,
                                             final EvalContext context, final boolean inMath) {
 
         final float objFontSize = (float) obj.getFontSize();
@@ -632,7 +731,7 @@ enum DocObjectConverter {
             if (root != null && root.isVisible()) {
                 htm.add("<span class='sr-only'> root </span>");
                 htm.add("<sup style='position:relative; left:.7em; top:-.8ex; line-height:1.2em; margin-left:-.4em;'>");
-                appendChildHtml(column, root, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, root, htm, styleStack, enabled, id, format, context, inMath);
                 htm.add("</sup>");
             }
         }
@@ -651,7 +750,7 @@ enum DocObjectConverter {
         // Both 'base' and 'root' are children - just append the base...
         final AbstractDocObjectTemplate base = obj.getBase();
         if (base != null && base.isVisible()) {
-            appendChildHtml(column, base, htm, styleStack, enabled, id, context, inMath);
+            appendChildHtml(column, base, htm, styleStack, enabled, id, format, context, inMath);
         }
 
         htm.eDiv();
@@ -674,13 +773,15 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocRelativeOffset(final DocColumn column, final DocRelativeOffset obj,
                                                    final Deque<Style> styleStack, final boolean enabled,
-                                                   final int[] id, final EvalContext context, final boolean inMath) {
+                                                   final int[] id, final EGraphicsFormat format,
+                                                   final EvalContext context, final boolean inMath) {
 
         final float objFontSize = (float) obj.getFontSize();
         final String objColorName = obj.getColorName();
@@ -717,7 +818,7 @@ enum DocObjectConverter {
         htm.add("<span style='white-space:nowrap'>");
         if (over == null) {
             if (under == null) {
-                appendChildHtml(column, base, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, base, htm, styleStack, enabled, id, format, context, inMath);
             } else {
                 // Just under (like a limit construction)
                 htm.add("<div style='display:inline-grid; ",
@@ -726,9 +827,9 @@ enum DocObjectConverter {
                         "grid-template-areas: \"base\" \"under\"; ",
                         "align-content: end;'>");
                 htm.add("<span style='grid-area:under; text-align:center;'>");
-                appendChildHtml(column, under, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, under, htm, styleStack, enabled, id, format, context, inMath);
                 htm.eSpan().add("<span style='grid-area:base; text-align:center;'>");
-                appendChildHtml(column, base, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, base, htm, styleStack, enabled, id, format, context, inMath);
                 htm.eSpan();
                 htm.eDiv();
             }
@@ -744,12 +845,12 @@ enum DocObjectConverter {
                         "grid-template-columns: 1fr; grid-template-rows: 1em 1fr 1em; ",
                         "grid-template-areas: \"over\" \"base\" \"under\";'>");
                 htm.add("<span style='grid-area:under; text-align:center;'>");
-                appendChildHtml(column, under, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, under, htm, styleStack, enabled, id, format, context, inMath);
                 htm.eSpan().add("<span style='grid-area:over; text-align:center;'>");
             }
-            appendChildHtml(column, over, htm, styleStack, enabled, id, context, inMath);
+            appendChildHtml(column, over, htm, styleStack, enabled, id, format, context, inMath);
             htm.eSpan().add("<span style='grid-area:base; text-align:center;'>");
-            appendChildHtml(column, base, htm, styleStack, enabled, id, context, inMath);
+            appendChildHtml(column, base, htm, styleStack, enabled, id, format, context, inMath);
             htm.eSpan();
             htm.eDiv();
         }
@@ -769,7 +870,7 @@ enum DocObjectConverter {
             htm.add(inMath ? "<span class='sr-only'> raised to power </span>"
                     : "<span class='sr-only'> superscript </span>");
             htm.add("<sup style='position:relative; top:-.05em;line-height:1.2em;margin-left:.15em;'>");
-            appendChildHtml(column, sup, htm, styleStack, enabled, id, context, inMath);
+            appendChildHtml(column, sup, htm, styleStack, enabled, id, format, context, inMath);
             htm.add("</sup>");
             htm.add(inMath ? "<span class='sr-only'> end of power, </span>"
                     : "<span class='sr-only'> end of superscript, </span>");
@@ -777,7 +878,7 @@ enum DocObjectConverter {
         if (sub != null) {
             htm.add("<span class='sr-only'> subscript </span>");
             htm.add("<sub style='position:relative; top:.2em;line-height:1em;margin-left:.12em;'>");
-            appendChildHtml(column, sub, htm, styleStack, enabled, id, context, inMath);
+            appendChildHtml(column, sub, htm, styleStack, enabled, id, format, context, inMath);
             htm.add("</sub>");
             htm.add("<span class='sr-only'> end of subscript, </span>");
         }
@@ -808,12 +909,14 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocTable(final DocColumn column, final DocTable obj,
                                           final Deque<Style> styleStack, final boolean enabled, final int[] id,
+                                          final EGraphicsFormat format,
                                           final EvalContext context, final boolean inMath) {
 
         final float objFontSize = (float) obj.getFontSize();
@@ -905,7 +1008,7 @@ enum DocObjectConverter {
                 htm.add('>');
 
                 if (cell != null) {
-                    appendChildHtml(column, data[row][col], htm, styleStack, enabled, id, context, inMath);
+                    appendChildHtml(column, data[row][col], htm, styleStack, enabled, id, format, context, inMath);
                 }
 
                 htm.eTd();
@@ -2580,18 +2683,20 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocNonwrappingSpan(final DocColumn column, final DocNonwrappingSpan obj,
                                                     final Deque<Style> styleStack, final boolean enabled,
-                                                    final int[] id, final EvalContext context, final boolean inMath) {
+                                                    final int[] id, final EGraphicsFormat format,
+                                                    final EvalContext context, final boolean inMath) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
         htm.add("<span style='white-space:nowrap;'>");
-        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, inMath);
+        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, inMath);
         htm.eSpan();
 
         return htm.toString();
@@ -2606,17 +2711,19 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @param inMath     {@code true} if content is within a math span
      * @return the generated HTML
      */
     private static String convertDocSimpleSpan(final DocColumn column, final DocSimpleSpan obj,
                                                final Deque<Style> styleStack, final boolean enabled, final int[] id,
+                                               final EGraphicsFormat format,
                                                final EvalContext context, final boolean inMath) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
-        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, inMath);
+        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, inMath);
 
         return htm.toString();
     }
@@ -2630,17 +2737,18 @@ enum DocObjectConverter {
      * @param enabled    true to disable inputs (used when showing answers or solutions)
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      * @return the generated HTML
      */
     private static String convertDocMathSpan(final DocColumn column, final DocMathSpan obj,
                                              final Deque<Style> styleStack, final boolean enabled, final int[] id,
-                                             final EvalContext context) {
+                                             final EGraphicsFormat format, final EvalContext context) {
 
         final HtmlBuilder htm = new HtmlBuilder(1000);
 
         htm.add("<span style='white-space:nowrap; color:#0070C0;'>");
-        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, context, true);
+        appendChildrenHtml(column, obj, htm, styleStack, enabled, id, format, context, true);
         htm.eSpan();
 
         return htm.toString();
@@ -2690,12 +2798,13 @@ enum DocObjectConverter {
      * @param id         a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                   incremented each time a unique ID is called for)
      * @param inMath     {@code true} if content is within a math span
+     * @param format     the format in which to emit drawings and graphs
      * @param context    the evaluation context
      */
     private static void appendChildrenHtml(final DocColumn column, final AbstractDocContainer parent,
                                            final HtmlBuilder htm, final Deque<Style> styleStack,
-                                           final boolean enabled, final int[] id, final EvalContext context,
-                                           final boolean inMath) {
+                                           final boolean enabled, final int[] id, final EGraphicsFormat format,
+                                           final EvalContext context, final boolean inMath) {
 
         final float parentFontSize = (float) parent.getFontSize();
         final String parentColorName = parent.getColorName();
@@ -2720,7 +2829,7 @@ enum DocObjectConverter {
 
         for (final AbstractDocObjectTemplate child : parent.getChildren()) {
             if (child.isVisible()) {
-                appendChildHtml(column, child, htm, styleStack, enabled, id, context, inMath);
+                appendChildHtml(column, child, htm, styleStack, enabled, id, format, context, inMath);
             }
         }
 
@@ -2731,7 +2840,9 @@ enum DocObjectConverter {
     }
 
     /**
-     * Appends the HTML for a single child to an {@code HtmlBuilder}.
+     * Appends the HTML for a single child to an {@code HtmlBuilder}. If the child's content is static, its HTML is
+     * taken from (or added to) the fragment cache it shares with the template from which it was copied, so only the
+     * parts of a document that depend on variables are regenerated for each realization.
      *
      * @param column  the owning column
      * @param child   the child to append
@@ -2741,11 +2852,58 @@ enum DocObjectConverter {
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
      * @param inMath  {@code true} if content is within a math span
+     * @param format  the format in which to emit drawings and graphs
      * @param context the evaluation context
      */
     private static void appendChildHtml(final DocColumn column, final AbstractDocObjectTemplate child,
                                         final HtmlBuilder htm, final Deque<Style> styles, final boolean enabled,
-                                        final int[] id, final EvalContext context, final boolean inMath) {
+                                        final int[] id, final EGraphicsFormat format,
+                                        final EvalContext context, final boolean inMath) {
+
+        final Style current = styles.peek();
+        final HtmlFragmentCache cache = child.getHtmlFragments();
+
+        if (FRAGMENT_CACHE_ENABLED && current != null && cache.isStatic(child)) {
+            final String key = current.getSize() + "|" + current.getColorName() + (enabled ? "|E" : "|D")
+                               + (inMath ? "|M|" : "|T|") + format.name();
+            String fragment = cache.get(key);
+
+            if (fragment == null) {
+                final int startId = id[0];
+                final HtmlBuilder fragmentHtm = new HtmlBuilder(100);
+                appendChildContent(column, child, fragmentHtm, styles, enabled, id, format, context, inMath);
+                fragment = fragmentHtm.toString();
+
+                // Content that allocated unique IDs differs between conversions, so is not cached
+                if (id[0] == startId) {
+                    cache.put(key, fragment);
+                }
+            }
+
+            htm.add(fragment);
+        } else {
+            appendChildContent(column, child, htm, styles, enabled, id, format, context, inMath);
+        }
+    }
+
+    /**
+     * Generates the HTML for a single child and appends it to an {@code HtmlBuilder}.
+     *
+     * @param column  the owning column
+     * @param child   the child to append
+     * @param htm     the {@code HtmlBuilder} to which to append
+     * @param styles  the font size stack - top Integer is current HTML font size
+     * @param enabled true to disable inputs (used when showing answers or solutions)
+     * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
+     *                incremented each time a unique ID is called for)
+     * @param inMath  {@code true} if content is within a math span
+     * @param format  the format in which to emit drawings and graphs
+     * @param context the evaluation context
+     */
+    private static void appendChildContent(final DocColumn column, final AbstractDocObjectTemplate child,
+                                           final HtmlBuilder htm, final Deque<Style> styles, final boolean enabled,
+                                           final int[] id, final EGraphicsFormat format,
+                                           final EvalContext context, final boolean inMath) {
 
         final float childFontSize = (float) child.getFontSize();
         final String childColorName = child.getColorName();
@@ -2770,21 +2928,23 @@ enum DocObjectConverter {
         }
 
         switch (child) {
-            case final DocColumn col -> htm.add(convertDocColumn(col, styles, enabled, id, context));
-            case final DocDrawing drawing -> htm.add(convertDocDrawing(drawing, styles, context));
-            case final DocFence fence -> htm.add(convertDocFence(column, fence, styles, enabled, id, context, inMath));
+            case final DocColumn col -> htm.add(convertDocColumn(col, styles, enabled, id, format, context));
+            case final DocDrawing drawing -> htm.add(convertDocDrawing(drawing, styles, format, context));
+            case final DocFence fence ->
+                    htm.add(convertDocFence(column, fence, styles, enabled, id, format, context, inMath));
             case final DocFraction fraction ->
-                    htm.add(convertDocFraction(column, fraction, styles, enabled, id, context, inMath));
-            case final DocGraphXY graph -> htm.add(convertDocGraphXY(graph, styles, context));
+                    htm.add(convertDocFraction(column, fraction, styles, enabled, id, format, context, inMath));
+            case final DocGraphXY graph -> htm.add(convertDocGraphXY(graph, styles, format, context));
             case final DocImage image -> htm.add(convertDocImage(image, styles));
             case final DocParameterReference ref ->
-                    htm.add(convertDocParameterRef(column, ref, styles, enabled, id, context, inMath));
-            case final DocParagraph p -> htm.add(convertDocParagraph(column, p, styles, enabled, id, context));
+                    htm.add(convertDocParameterRef(column, ref, styles, enabled, id, format, context, inMath));
+            case final DocParagraph p -> htm.add(convertDocParagraph(column, p, styles, enabled, id, format, context));
             case final DocRadical radical ->
-                    htm.add(convertDocRadical(column, radical, styles, enabled, id, context, inMath));
+                    htm.add(convertDocRadical(column, radical, styles, enabled, id, format, context, inMath));
             case final DocRelativeOffset rel ->
-                    htm.add(convertDocRelativeOffset(column, rel, styles, enabled, id, context, inMath));
-            case final DocTable table -> htm.add(convertDocTable(column, table, styles, enabled, id, context, inMath));
+                    htm.add(convertDocRelativeOffset(column, rel, styles, enabled, id, format, context, inMath));
+            case final DocTable table ->
+                    htm.add(convertDocTable(column, table, styles, enabled, id, format, context, inMath));
             case final DocText text -> htm.add(convertDocText(text, styles, inMath));
             case final DocHSpace hspace -> htm.add(convertDocHSpace(hspace, context));
             case final DocVSpace vspace -> htm.add(convertDocVSpace(vspace, context));
@@ -2801,10 +2961,11 @@ enum DocObjectConverter {
             case final DocInputDropdown dropdown ->
                     htm.add(convertDocInputDropdown(dropdown, styles, enabled, context));
             case final DocNonwrappingSpan span ->
-                    htm.add(convertDocNonwrappingSpan(column, span, styles, enabled, id, context, inMath));
+                    htm.add(convertDocNonwrappingSpan(column, span, styles, enabled, id, format, context, inMath));
             case final DocSimpleSpan span ->
-                    htm.add(convertDocSimpleSpan(column, span, styles, enabled, id, context, inMath));
-            case final DocMathSpan span -> htm.add(convertDocMathSpan(column, span, styles, enabled, id, context));
+                    htm.add(convertDocSimpleSpan(column, span, styles, enabled, id, format, context, inMath));
+            case final DocMathSpan span ->
+                    htm.add(convertDocMathSpan(column, span, styles, enabled, id, format, context));
             case final DocSymbolPalette span -> htm.add(convertDocSymbolPalette(span));
             default -> {
             }
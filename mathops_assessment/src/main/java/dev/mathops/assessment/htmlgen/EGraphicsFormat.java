@@ -0,0 +1,22 @@
+package dev.mathops.assessment.htmlgen;
+
+/**
+ * Formats in which drawings and graphs are emitted when generating HTML.
+ */
+public enum EGraphicsFormat {
+
+    /** A PNG image rendered off-screen and inlined as a data URL. */
+    RASTER,
+
+    /**
+     * A PNG image held in the {@code ImageStore} and referenced by its URL (relative to the site, which must serve
+     * the store's images). If the store is not durable, the image is inlined as with {@code RASTER}.
+     */
+    LINKED_RASTER,
+
+    /**
+     * Inline SVG, where the drawing or graph contains only content that can be expressed as SVG (otherwise, a linked
+     * raster image is used for that object).
+     */
+    SVG
+}
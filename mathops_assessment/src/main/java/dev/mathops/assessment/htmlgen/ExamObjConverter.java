@@ -22,12 +22,29 @@ public enum ExamObjConverter {
      */
     public static void populateExamHtml(final ExamObj exam, final int[] id) {
 
+        populateExamHtml(exam, id, EGraphicsFormat.RASTER);
+    }
+
+    /**
+     * Populates the html fields in a realized {@code ExamObj}.
+     *
+     * @param exam   the exam to populate
+     * @param id     a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
+     *               incremented each time a unique ID is called for)
+     * @param format the format in which to emit drawings and graphs
+     */
+    public static void populateExamHtml(final ExamObj exam, final int[] id, final EGraphicsFormat format) {
+
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn instructions = exam.instructions;
 
         exam.instructionsHtml = instructions == null ? null : DocObjectConverter
-                .convertDocColumn(instructions, styleStack, false, id, exam.getEvalContext());
+                .convertDocColumn(instructions, styleStack, false, id, format, exam.getEvalContext());
+
+        if (format != EGraphicsFormat.RASTER) {
+            ImageStore.getInstance().recordPage();
+        }
     }
 }
@@ -0,0 +1,503 @@
+package dev.mathops.assessment.htmlgen;
+
+import dev.mathops.assessment.document.template.AbstractDocObjectTemplate;
+import dev.mathops.assessment.variable.AbstractVariable;
+import dev.mathops.assessment.variable.EvalContext;
+import dev.mathops.commons.log.Log;
+import dev.mathops.text.builder.HtmlBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, content-addressed store of rendered PNG images. Images are keyed on a hash of the content that determines
+ * their pixels (the drawing or graph definition, the values of the parameters it references, and the scale), so an
+ * image rendered once is shared by every page that shows the same content, and the URL under which it is served never
+ * changes meaning (allowing browsers to cache it indefinitely).
+ *
+ * <p>
+ * An image URL handed out in a page must stay resolvable while the page is open, but an image cannot be regenerated
+ * from its key. Images are therefore linked by URL only when the store is durable - when a spill directory is
+ * configured, to which every image is written when stored, so it can be served after it is evicted from memory or the
+ * server restarts (and, if the directory is shared, by any server). Without a spill directory, pages inline their
+ * images as before. Images are held in memory up to a byte budget, evicting least-recently-used images.
+ */
+public final class ImageStore {
+
+    /** The relative URL path (within a site) under which stored images are served. */
+    public static final String URL_PATH = "rendered/";
+
+    /** The filename extension for stored images. */
+    private static final String EXTENSION = ".png";
+
+    /** The default memory budget, in bytes. */
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+    /** The length of a key (a hex-encoded SHA-256 hash). */
+    private static final int KEY_LEN = 64;
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The single instance. */
+    private static final ImageStore INSTANCE = new ImageStore();
+
+    /** The images held in memory, in least-recently-used order. */
+    private final LinkedHashMap<String, Image> images;
+
+    /** The total size of images held in memory. */
+    private long memoryBytes;
+
+    /** The memory budget, in bytes. */
+    private long maxBytes;
+
+    /** The directory to which images are written; {@code null} if the store is not durable. */
+    private File spillDir;
+
+    /** The number of lookups. */
+    private final AtomicLong lookups;
+
+    /** The number of lookups satisfied from memory or disk. */
+    private final AtomicLong hits;
+
+    /** The number of lookups satisfied from the spill directory. */
+    private final AtomicLong diskHits;
+
+    /** The number of pages (converted problems or exams) generated in a format that references stored images. */
+    private final AtomicLong pages;
+
+    /** The number of bytes by which pages were smaller than if the images had been inlined. */
+    private final AtomicLong bytesSaved;
+
+    /**
+     * Constructs a new {@code ImageStore}.
+     */
+    private ImageStore() {
+
+        this.images = new LinkedHashMap<>(256, 0.75f, true);
+        this.maxBytes = DEFAULT_MAX_BYTES;
+        this.lookups = new AtomicLong();
+        this.hits = new AtomicLong();
+        this.diskHits = new AtomicLong();
+        this.pages = new AtomicLong();
+        this.bytesSaved = new AtomicLong();
+    }
+
+    /**
+     * Gets the single instance.
+     *
+     * @return the instance
+     */
+    public static ImageStore getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Configures the store.
+     *
+     * @param theMaxBytes the memory budget, in bytes
+     * @param theSpillDir the directory to which to write images; {@code null} if images are not to be linked by URL
+     */
+    public synchronized void configure(final long theMaxBytes, final File theSpillDir) {
+
+        if (theSpillDir != null && !theSpillDir.exists() && !theSpillDir.mkdirs()) {
+            Log.warning("Unable to create image spill directory ", theSpillDir.getAbsolutePath());
+            this.spillDir = null;
+        } else {
+            this.spillDir = theSpillDir;
+        }
+
+        this.maxBytes = Math.max(0L, theMaxBytes);
+        evict();
+    }
+
+    /**
+     * Tests whether the store is durable, meaning images it holds can be served for as long as a page that references
+     * them may be open. Images should be linked by URL only if this is true.
+     *
+     * @return {@code true} if a spill directory is configured
+     */
+    public synchronized boolean isDurable() {
+
+        return this.spillDir != null;
+    }
+
+    /**
+     * Computes the key for the image of a drawing or graph.
+     *
+     * @param obj       the drawing or graph
+     * @param context   the evaluation context
+     * @param pointSize the point size at which the object is rendered
+     * @return the key; {@code null} if a key could not be computed
+     */
+    public static String makeKey(final AbstractDocObjectTemplate obj, final EvalContext context,
+                                 final float pointSize) {
+
+        final HtmlBuilder content = new HtmlBuilder(1000);
+
+        content.addln(obj.getClass().getName(), " scale=", Float.toString(obj.getScale()), " size=",
+                Float.toString(pointSize));
+        obj.toXml(content, 0);
+        content.addln();
+
+        // Input variables are excluded - they do not affect rendering, and drawing formulas update their values
+        final List<String> names = new ArrayList<>(obj.parameterNames());
+        Collections.sort(names);
+        for (final String name : names) {
+            final AbstractVariable var = context.getVariable(name);
+            if (var != null && !var.isInput()) {
+                content.addln(name, "=", var.valueAsString());
+            }
+        }
+
+        String key = null;
+
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+
+            final char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; ++i) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+                hex[i * 2 + 1] = HEX[hash[i] & 0x0F];
+            }
+            key = new String(hex);
+        } catch (final NoSuchAlgorithmException ex) {
+            Log.warning(ex);
+        }
+
+        return key;
+    }
+
+    /**
+     * Tests whether a string is a well-formed key.
+     *
+     * @param key the string
+     * @return {@code true} if the string has the form of a key
+     */
+    public static boolean isKey(final String key) {
+
+        boolean valid = key != null && key.length() == KEY_LEN;
+
+        if (valid) {
+            for (int i = 0; i < KEY_LEN; ++i) {
+                final char ch = key.charAt(i);
+                if ((ch < '0' || ch > '9') && (ch < 'a' || ch > 'f')) {
+                    valid = false;
+                    break;
+                }
+            }
+        }
+
+        return valid;
+    }
+
+    /**
+     * Generates the URL (relative to the site) of a stored image.
+     *
+     * @param key the image key
+     * @return the URL
+     */
+    public static String url(final String key) {
+
+        return URL_PATH + key + EXTENSION;
+    }
+
+    /**
+     * Looks up an image for inclusion in a page, recording the lookup in the hit rate.
+     *
+     * @param key the image key
+     * @return the image; {@code null} if not stored
+     */
+    public Image lookup(final String key) {
+
+        this.lookups.incrementAndGet();
+
+        final Image result = get(key);
+        if (result != null) {
+            this.hits.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a stored image from memory or from the spill directory.
+     *
+     * @param key the image key
+     * @return the image; {@code null} if not stored
+     */
+    public Image get(final String key) {
+
+        Image result;
+        final File dir;
+
+        synchronized (this) {
+            result = this.images.get(key);
+            dir = this.spillDir;
+        }
+
+        if (result == null && dir != null && isKey(key)) {
+            final File file = new File(dir, key + EXTENSION);
+
+            if (file.exists()) {
+                try {
+                    result = Image.fromPng(Files.readAllBytes(file.toPath()));
+                    if (result != null) {
+                        this.diskHits.incrementAndGet();
+                        hold(key, result);
+                    }
+                } catch (final IOException ex) {
+                    Log.warning("Unable to read stored image ", file.getAbsolutePath(), ex);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores an image, writing it to the spill directory if one is configured.
+     *
+     * @param key   the image key
+     * @param image the image
+     */
+    public void store(final String key, final Image image) {
+
+        final File dir;
+        synchronized (this) {
+            dir = this.spillDir;
+        }
+
+        if (dir != null) {
+            final File file = new File(dir, key + EXTENSION);
+
+            if (!file.exists()) {
+                final File temp = new File(dir, key + ".tmp");
+                try {
+                    Files.write(temp.toPath(), image.png);
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (final IOException ex) {
+                    Log.warning("Unable to write stored image to ", file.getAbsolutePath(), ex);
+                }
+            }
+        }
+
+        hold(key, image);
+    }
+
+    /**
+     * Holds an image in memory, evicting least-recently-used images if needed to stay within the budget.
+     *
+     * @param key   the image key
+     * @param image the image
+     */
+    private void hold(final String key, final Image image) {
+
+        synchronized (this) {
+            final Image prior = this.images.put(key, image);
+            if (prior != null) {
+                this.memoryBytes -= (long) prior.png.length;
+            }
+            this.memoryBytes += (long) image.png.length;
+        }
+
+        evict();
+    }
+
+    /**
+     * Evicts least-recently-used images until the images in memory fit within the budget. Evicted images remain in
+     * the spill directory, if one is configured.
+     */
+    private synchronized void evict() {
+
+        final Iterator<Map.Entry<String, Image>> iter = this.images.entrySet().iterator();
+        while (this.memoryBytes > this.maxBytes && iter.hasNext()) {
+            final Map.Entry<String, Image> entry = iter.next();
+            this.memoryBytes -= (long) entry.getValue().png.length;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Records that a stored image was referenced by URL rather than inlined.
+     *
+     * @param key   the image key
+     * @param image the image
+     */
+    void recordReference(final String key, final Image image) {
+
+        final long inlineLen = (long) "data:image/png;base64,".length() + ((long) image.png.length + 2L) / 3L * 4L;
+
+        this.bytesSaved.addAndGet(inlineLen - (long) url(key).length());
+    }
+
+    /**
+     * Records that a page (a converted problem or exam) was generated in a format that references stored images.
+     */
+    void recordPage() {
+
+        this.pages.incrementAndGet();
+    }
+
+    /**
+     * Gets a snapshot of statistics.
+     *
+     * @return the statistics
+     */
+    public Stats getStats() {
+
+        return new Stats(this);
+    }
+
+    /**
+     * A stored image.
+     */
+    public static final class Image {
+
+        /** The PNG file contents. */
+        final byte[] png;
+
+        /** The image width, in pixels. */
+        public final int width;
+
+        /** The image height, in pixels. */
+        public final int height;
+
+        /**
+         * Constructs a new {@code Image}.
+         *
+         * @param thePng    the PNG file contents
+         * @param theWidth  the image width, in pixels
+         * @param theHeight the image height, in pixels
+         */
+        public Image(final byte[] thePng, final int theWidth, final int theHeight) {
+
+            this.png = thePng;
+            this.width = theWidth;
+            this.height = theHeight;
+        }
+
+        /**
+         * Creates an image from PNG file contents, reading its dimensions from the PNG header.
+         *
+         * @param png the PNG file contents
+         * @return the image; {@code null} if the data is not a PNG file
+         */
+        static Image fromPng(final byte[] png) {
+
+            Image result = null;
+
+            // The 8-byte signature is followed by the IHDR chunk (length, type, width, height)
+            if (png.length > 24 && png[12] == 'I' && png[13] == 'H' && png[14] == 'D' && png[15] == 'R') {
+                final int w = ((png[16] & 0xFF) << 24) | ((png[17] & 0xFF) << 16) | ((png[18] & 0xFF) << 8)
+                              | (png[19] & 0xFF);
+                final int h = ((png[20] & 0xFF) << 24) | ((png[21] & 0xFF) << 16) | ((png[22] & 0xFF) << 8)
+                              | (png[23] & 0xFF);
+                result = new Image(png, w, h);
+            }
+
+            return result;
+        }
+
+        /**
+         * Gets the size of the PNG file.
+         *
+         * @return the size, in bytes
+         */
+        public int size() {
+
+            return this.png.length;
+        }
+
+        /**
+         * Gets a copy of the PNG file contents.
+         *
+         * @return the PNG file contents
+         */
+        public byte[] getPng() {
+
+            return this.png.clone();
+        }
+    }
+
+    /**
+     * A snapshot of statistics.
+     */
+    public static final class Stats {
+
+        /** The number of images held in memory. */
+        public final int count;
+
+        /** The total size of images held in memory. */
+        public final long memoryBytes;
+
+        /** The number of lookups. */
+        public final long lookups;
+
+        /** The number of lookups satisfied from memory or disk. */
+        public final long hits;
+
+        /** The number of lookups satisfied from the spill directory. */
+        public final long diskHits;
+
+        /** The number of pages generated in a format that references stored images. */
+        public final long pages;
+
+        /** The number of bytes by which pages were smaller than if the images had been inlined. */
+        public final long bytesSaved;
+
+        /**
+         * Constructs a new {@code Stats}.
+         *
+         * @param store the store whose statistics to capture
+         */
+        private Stats(final ImageStore store) {
+
+            synchronized (store) {
+                this.count = store.images.size();
+                this.memoryBytes = store.memoryBytes;
+            }
+
+            this.lookups = store.lookups.get();
+            this.hits = store.hits.get();
+            this.diskHits = store.diskHits.get();
+            this.pages = store.pages.get();
+            this.bytesSaved = store.bytesSaved.get();
+        }
+
+        /**
+         * Gets the fraction of lookups that found a stored image.
+         *
+         * @return the hit rate, from 0 to 1
+         */
+        public double hitRate() {
+
+            return this.lookups == 0L ? 0.0 : (double) this.hits / (double) this.lookups;
+        }
+
+        /**
+         * Gets the average number of bytes saved per page.
+         *
+         * @return the average bytes saved
+         */
+        public double bytesSavedPerPage() {
+
+            return this.pages == 0L ? 0.0 : (double) this.bytesSaved / (double) this.pages;
+        }
+    }
+}
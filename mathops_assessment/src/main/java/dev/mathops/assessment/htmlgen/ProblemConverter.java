@@ -31,17 +31,32 @@ public enum ProblemConverter {
      */
     public static void populateProblemHtml(final AbstractProblemTemplate problem, final int[] id) {
 
+        populateProblemHtml(problem, id, EGraphicsFormat.RASTER);
+    }
+
+    /**
+     * Populates the html fields in a realized {@code Problem}.
+     *
+     * @param problem the problem to populate
+     * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
+     *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
+     */
+    public static void populateProblemHtml(final AbstractProblemTemplate problem, final int[] id,
+                                           final EGraphicsFormat format) {
+
         synchronized (problem) {
             switch (problem) {
                 case final ProblemMultipleChoiceTemplate problemMultipleChoiceTemplate ->
-                        populateMultipleChoice(problemMultipleChoiceTemplate, id);
+                        populateMultipleChoice(problemMultipleChoiceTemplate, id, format);
                 case final ProblemMultipleSelectionTemplate problemMultipleSelectionTemplate ->
-                        populateMutipleSelection(problemMultipleSelectionTemplate, id);
-                case final ProblemNumericTemplate problemNumericTemplate -> populateNumeric(problemNumericTemplate, id);
+                        populateMutipleSelection(problemMultipleSelectionTemplate, id, format);
+                case final ProblemNumericTemplate problemNumericTemplate ->
+                        populateNumeric(problemNumericTemplate, id, format);
                 case final ProblemEmbeddedInputTemplate problemEmbeddedInputTemplate ->
-                        populateEmbeddedInput(problemEmbeddedInputTemplate, id);
+                        populateEmbeddedInput(problemEmbeddedInputTemplate, id, format);
                 case final ProblemAutoCorrectTemplate problemAutoCorrectTemplate ->
-                        populateAutoCorrect(problemAutoCorrectTemplate, id);
+                        populateAutoCorrect(problemAutoCorrectTemplate, id, format);
                 case final ProblemDummyTemplate dummy -> {
                     if (dummy.id != null) {
                         Log.warning("Populating Dummy problem ", dummy.id);
@@ -53,6 +68,10 @@ public enum ProblemConverter {
                 }
             }
         }
+
+        if (format != EGraphicsFormat.RASTER) {
+            ImageStore.getInstance().recordPage();
+        }
     }
 
     /**
@@ -71,19 +90,21 @@ public enum ProblemConverter {
      * @param problem the {@code ProblemMultipleChoice} to populate
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
      */
-    private static void populateMultipleChoice(final ProblemMultipleChoiceTemplate problem, final int[] id) {
+    private static void populateMultipleChoice(final ProblemMultipleChoiceTemplate problem, final int[] id,
+                                               final EGraphicsFormat format) {
 
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn question = problem.question;
         final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, false,
-                id, problem.evalContext);
+                id, format, problem.evalContext);
 
         final DocColumn solution = problem.solution;
         final String solutionHtml = solution == null ? null : DocObjectConverter
-                .convertDocColumn(solution, styleStack, false, id, problem.evalContext);
+                .convertDocColumn(solution, styleStack, false, id, format, problem.evalContext);
 
         final int[] choiceOrder = problem.choiceOrder;
         final int len = choiceOrder.length;
@@ -94,7 +115,8 @@ public enum ProblemConverter {
 
         for (int i = 0; i < len; ++i) {
             final ProblemChoiceTemplate choice = problem.getChoices().get(choiceOrder[i]);
-            choiceHtml[i] = DocObjectConverter.convertDocColumn(choice.doc, styleStack, false, id, problem.evalContext);
+            choiceHtml[i] = DocObjectConverter.convertDocColumn(choice.doc, styleStack, false, id, format,
+                    problem.evalContext);
             choiceId[i] = Integer.toString(choice.choiceId);
             correct[i] = Boolean.TRUE.equals(choice.correct.evaluate(problem.evalContext));
         }
@@ -198,19 +220,21 @@ public enum ProblemConverter {
      * @param problem the {@code ProblemMultipleChoice} to populate
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
      */
-    private static void populateMutipleSelection(final ProblemMultipleSelectionTemplate problem, final int[] id) {
+    private static void populateMutipleSelection(final ProblemMultipleSelectionTemplate problem, final int[] id,
+                                                 final EGraphicsFormat format) {
 
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn question = problem.question;
-        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, false, id,
+        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, false, id, format,
                 problem.evalContext);
 
         final DocColumn solution = problem.solution;
         final String solutionHtml = solution == null ? null : DocObjectConverter
-                .convertDocColumn(solution, styleStack, false, id, problem.evalContext);
+                .convertDocColumn(solution, styleStack, false, id, format, problem.evalContext);
 
         final int[] choiceOrder = problem.choiceOrder;
         final int len = choiceOrder.length;
@@ -221,7 +245,8 @@ public enum ProblemConverter {
 
         for (int i = 0; i < len; ++i) {
             final ProblemChoiceTemplate choice = problem.getChoices().get(problem.choiceOrder[i]);
-            choiceHtml[i] = DocObjectConverter.convertDocColumn(choice.doc, styleStack, false, id, problem.evalContext);
+            choiceHtml[i] = DocObjectConverter.convertDocColumn(choice.doc, styleStack, false, id, format,
+                    problem.evalContext);
             choiceId[i] = Integer.toString(choice.choiceId);
             correct[i] = Boolean.TRUE.equals(choice.correct.evaluate(problem.evalContext));
         }
@@ -304,19 +329,21 @@ public enum ProblemConverter {
      * @param problem the {@code ProblemNumeric} to populate
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
      */
-    private static void populateNumeric(final ProblemNumericTemplate problem, final int[] id) {
+    private static void populateNumeric(final ProblemNumericTemplate problem, final int[] id,
+                                        final EGraphicsFormat format) {
 
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn question = problem.question;
-        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, false, id,
+        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, false, id, format,
                 problem.evalContext);
 
         final DocColumn solution = problem.solution;
         final String solutionHtml = solution == null ? null : DocObjectConverter
-                .convertDocColumn(solution, styleStack, false, id, problem.evalContext);
+                .convertDocColumn(solution, styleStack, false, id, format, problem.evalContext);
 
         final HtmlBuilder content = new HtmlBuilder(1000);
 
@@ -408,25 +435,27 @@ public enum ProblemConverter {
      * @param problem the {@code ProblemEmbeddedInput} to populate
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
      */
-    private static void populateEmbeddedInput(final ProblemEmbeddedInputTemplate problem, final int[] id) {
+    private static void populateEmbeddedInput(final ProblemEmbeddedInputTemplate problem, final int[] id,
+                                              final EGraphicsFormat format) {
 
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn question = problem.question;
         final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, true,
-                id, problem.evalContext);
+                id, format, problem.evalContext);
         final String questionDisabledHtml = DocObjectConverter.convertDocColumn(question,
-                styleStack, false, id, problem.evalContext);
+                styleStack, false, id, format, problem.evalContext);
 
         final DocColumn answer = problem.correctAnswer;
         final String answerHtml = answer == null ? null : DocObjectConverter
-                .convertDocColumn(answer, styleStack, false, id, problem.evalContext);
+                .convertDocColumn(answer, styleStack, false, id, format, problem.evalContext);
 
         final DocColumn solution = problem.solution;
         final String solutionHtml = solution == null ? null : DocObjectConverter
-                .convertDocColumn(solution, styleStack, false, id, problem.evalContext);
+                .convertDocColumn(solution, styleStack, false, id, format, problem.evalContext);
 
         // Generate version with the question that the user will interact with
         problem.questionHtml = questionHtml;
@@ -458,17 +487,19 @@ public enum ProblemConverter {
      * @param problem the {@code ProblemAutoCorrect} to populate
      * @param id      a one-integer array that holds a value used to generate unique IDs for spans (element [0] is
      *                incremented each time a unique ID is called for)
+     * @param format  the format in which to emit drawings and graphs
      */
-    private static void populateAutoCorrect(final ProblemAutoCorrectTemplate problem, final int[] id) {
+    private static void populateAutoCorrect(final ProblemAutoCorrectTemplate problem, final int[] id,
+                                            final EGraphicsFormat format) {
 
         final Deque<Style> styleStack = new LinkedList<>();
         styleStack.push(new Style(AbstractDocObjectTemplate.DEFAULT_BASE_FONT_SIZE, "black"));
 
         final DocColumn question = problem.question;
-        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, true, id,
+        final String questionHtml = DocObjectConverter.convertDocColumn(question, styleStack, true, id, format,
                 problem.evalContext);
         final String questionDisabledHtml = DocObjectConverter.convertDocColumn(question, styleStack, false, id,
-                problem.evalContext);
+                format, problem.evalContext);
 
         // Generate version with the question that the user will interact with
         problem.questionHtml = questionHtml;
@@ -71,6 +71,9 @@ public abstract class AbstractProblemTemplate extends AbstractXmlObject implemen
     /** The score, once the problem bas been graded. */
     public double score;
 
+    /** True if this problem is a shared template; checked only by {@code realize} (see {@code freeze}). */
+    private boolean frozen;
+
     /**
      * Constructs an empty {@code AbstractProblemTemplate} object.
      */
@@ -123,6 +126,40 @@ public abstract class AbstractProblemTemplate extends AbstractXmlObject implemen
         copy.studentResponse = null;
     }
 
+    /**
+     * Marks this problem as a shared template. A frozen problem is not realized; callers should realize a copy obtained
+     * from {@code deepCopy} (copies are never frozen). The variable dependency graph is built here, once, and shared by
+     * all copies, so circular references are reported when the problem is loaded. The static parts of the question
+     * and solution, whose generated HTML is shared by all copies, are also identified here.
+     *
+     * <p>
+     * The flag is only a guard against realizing the template: {@code realize} refuses a frozen problem, but the
+     * problem's fields remain public and mutable, and nothing else checks the flag. Code holding a shared template must
+     * treat it as read-only.
+     */
+    public final void freeze() {
+
+        this.frozen = true;
+        this.evalContext.prepareGraph(this.id);
+
+        if (this.question != null) {
+            this.question.prepareHtmlFragments();
+        }
+        if (this.solution != null) {
+            this.solution.prepareHtmlFragments();
+        }
+    }
+
+    /**
+     * Tests whether this problem is a shared template.
+     *
+     * @return {@code true} if frozen
+     */
+    public final boolean isFrozen() {
+
+        return this.frozen;
+    }
+
     /**
      * Gets the problem type.
      *
@@ -209,6 +246,11 @@ public abstract class AbstractProblemTemplate extends AbstractXmlObject implemen
     @Override
     public boolean realize(final EvalContext context) {
 
+        if (this.frozen) {
+            Log.warning("Attempt to realize frozen problem template ", this.id);
+            return false;
+        }
+
         if (context != this.evalContext) {
             Log.warning("Contexts differ!");
         }
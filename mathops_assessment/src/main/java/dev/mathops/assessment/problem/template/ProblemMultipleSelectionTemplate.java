@@ -1,6 +1,5 @@
 package dev.mathops.assessment.problem.template;
 
-import dev.mathops.assessment.Randomizer;
 import dev.mathops.assessment.document.inst.DocColumnInst;
 import dev.mathops.assessment.formula.ErrorValue;
 import dev.mathops.assessment.formula.Formula;
@@ -494,7 +493,7 @@ public final class ProblemMultipleSelectionTemplate extends AbstractProblemMulti
                 for (int i = 0; i < size; ++i) {
 
                     if (this.choiceOrder[i] == -1) {
-                        final int which = Randomizer.nextInt(list.size());
+                        final int which = context.getRandom().nextInt(list.size());
                         final Long value = list.get(which);
                         list.remove(which);
                         this.choiceOrder[i] = value.intValue();
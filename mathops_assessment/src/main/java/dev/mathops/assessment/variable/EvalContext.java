@@ -12,6 +12,9 @@ import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.text.builder.HtmlBuilder;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -20,8 +23,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * A collection of parameters. This class has the ability to generate values for the parameters, resolving ordering
@@ -30,14 +34,20 @@ import java.util.Set;
  */
 public final class EvalContext extends AbstractXmlObject {
 
-    /** The seed for secure random number generation. */
-    private static long seed;
-
     /** The set of parameters. */
     private final HashMap<String, AbstractVariable> vars;
 
-    /** Random number generator for building parameters. */
-    private final Random rand;
+    /** Random number generator for building parameters (confined to the thread realizing this context). */
+    private transient SplittableRandom rand;
+
+    /** The seed from which the generator was created; null if it was seeded arbitrarily. */
+    private Long seed;
+
+    /** The variable dependency graph, shared with copies; null if not prepared or if variables have changed. */
+    private transient VariableGraph graph;
+
+    /** A counter incremented each time a variable is added or removed. */
+    private volatile int version;
 
     /** Flag indicating derived value out of range, need to randomize again. */
     private boolean retry;
@@ -55,17 +65,60 @@ public final class EvalContext extends AbstractXmlObject {
         // Preserve insertion order
         this.vars = new LinkedHashMap<>(10);
 
-        if (seed == 0L) {
-            seed = System.currentTimeMillis();
-        }
-
-        this.rand = new Random();
-        this.rand.setSeed(seed);
-        seed = this.rand.nextLong();
+        this.rand = new SplittableRandom();
 
         this.printTarget = false;
     }
 
+    /**
+     * Deserializes the object, creating a new random number generator (seeded as the original was, if it was seeded).
+     *
+     * @param in the input stream from which to read
+     * @throws IOException            if there is an error reading from the stream
+     * @throws ClassNotFoundException if the default deserialization finds an invalid class
+     */
+    @Serial
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        this.rand = this.seed == null ? new SplittableRandom() : new SplittableRandom(this.seed.longValue());
+    }
+
+    /**
+     * Reseeds the random number generator used to generate variable values. Realizing the same template with the same
+     * seed generates the same values.
+     *
+     * @param theSeed the seed
+     */
+    public void setSeed(final long theSeed) {
+
+        this.seed = Long.valueOf(theSeed);
+        this.rand = new SplittableRandom(theSeed);
+    }
+
+    /**
+     * Gets the seed from which the random number generator was most recently created.
+     *
+     * @return the seed; null if the generator was seeded arbitrarily
+     */
+    public Long getSeed() {
+
+        return this.seed;
+    }
+
+    /**
+     * Gets the random number generator used to generate variable values. Other random choices made while realizing the
+     * owning object (problem selection and ordering, choice ordering) should draw from this generator so realization
+     * is reproducible from the seed.
+     *
+     * @return the random number generator
+     */
+    public RandomGenerator getRandom() {
+
+        return this.rand;
+    }
+
     /**
      * Sets the flag that indicates exam or problem is being prepared for print output.
      *
@@ -89,7 +142,7 @@ public final class EvalContext extends AbstractXmlObject {
     /**
      * Creates a copy of the parameter set. This is a deep copy that creates distinct copies of each contained
      * {@code Parameter}. The randomizer in the copy will NOT inherit the seed value of the original (so they will NOT
-     * generate the same parameter values the next time each is generated).
+     * generate the same parameter values the next time each is generated unless the copy is given a seed).
      *
      * @return a copy of the original object
      */
@@ -100,6 +153,7 @@ public final class EvalContext extends AbstractXmlObject {
         for (final Map.Entry<String, AbstractVariable> entry : this.vars.entrySet()) {
             copy.vars.put(entry.getKey(), entry.getValue().deepCopy());
         }
+        copy.graph = this.graph;
 
         return copy;
     }
@@ -140,6 +194,17 @@ public final class EvalContext extends AbstractXmlObject {
         return this.vars.values();
     }
 
+    /**
+     * Gets a counter that changes each time a variable is added or removed, so callers that cache resolved variables
+     * can tell when their cache is stale.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+
+        return this.version;
+    }
+
     /**
      * Retrieves a particular variable based on its name.
      *
@@ -160,6 +225,8 @@ public final class EvalContext extends AbstractXmlObject {
 
         synchronized (this.vars) {
             this.vars.put(var.name, var);
+            this.graph = null;
+            ++this.version;
         }
     }
 
@@ -172,163 +239,187 @@ public final class EvalContext extends AbstractXmlObject {
 
         synchronized (this.vars) {
             this.vars.remove(name);
+            this.graph = null;
+            ++this.version;
         }
     }
 
+    /**
+     * Builds the variable dependency graph, checking for circular references. The graph is shared with all copies of
+     * this context made by {@code deepCopy}, so this should be called once on a template whose variables will not
+     * change. Adding or removing a variable discards the graph.
+     *
+     * @param identifier an identifier to include in log messages on error
+     * @return {@code true} if the graph is free of circular references; {@code false} otherwise
+     */
+    public boolean prepareGraph(final String identifier) {
+
+        final VariableGraph newGraph;
+
+        synchronized (this.vars) {
+            newGraph = VariableGraph.build(this.vars);
+            this.graph = newGraph;
+        }
+
+        if (newGraph.isCyclic()) {
+            Log.warning(identifier, ": Circular reference among variables ", newGraph.getCyclicNames());
+        }
+
+        return !newGraph.isCyclic();
+    }
+
     /**
      * Generates values for the parameters, if possible.
      *
+     * <p>
+     * Values are generated in a single pass in dependency order. If a value violates a constraint (a derived value
+     * falls outside its range or matches an excluded value), only the random variables on which the failing variable
+     * depends, and the variables downstream of them, are re-sampled.
+     *
      * @param identifier an identifier to include in log messages on error
      * @return {@code true} if successful, {@code false} otherwise
      */
     public boolean generate(final String identifier) {
 
-        synchronized (this) {
-            synchronized (this.vars) {
-
-                // See if all parameters referenced in any formula are really in our set of parameters.
-                // If not, there's no point trying to generate.
-                if (!verifyParametersPresent()) {
-                    return false;
-                }
+        final long start = System.nanoTime();
+        final int[] resamples = new int[1];
+        final boolean ok;
 
-                // If random parameters result in derived values falling outside the permitted range,
-                // we will re-attempt to generate new random parameters. We cap this number of attempts
-                // at 10,000 tries.
-                for (int attempts = 0; attempts < 10000; ++attempts) {
-                    this.retry = false;
+        synchronized (this.vars) {
+            ok = generateInOrder(identifier, resamples);
+        }
 
-                    // Clear all random and derived parameter values
-                    for (final AbstractVariable p : this.vars.values()) {
-                        p.clearDerivedValues();
-                    }
+        GenerationCostTracker.record(identifier, System.nanoTime() - start, resamples[0], ok);
 
-                    // Loop until every parameter that is not an input has a value, or until we pass
-                    // through all parameters without making any progress, or until too many iterations
-                    // have been attempted.
-                    int inx;
+        return ok;
+    }
 
-                    for (inx = 0; inx < 1000; ++inx) {
+    /**
+     * Generates values for the parameters in dependency order. Called while holding the lock on {@code vars}.
+     *
+     * @param identifier an identifier to include in log messages on error
+     * @param resamples  a 1-integer array whose [0] entry is set to the number of re-samples performed
+     * @return {@code true} if successful, {@code false} otherwise
+     */
+    private boolean generateInOrder(final String identifier, final int[] resamples) {
 
-                        // See if we're done yet (if all parameters have a value)
-                        boolean done = true;
+        // See if all parameters referenced in any formula are really in our set of parameters.
+        // If not, there's no point trying to generate.
+        if (!verifyParametersPresent()) {
+            return false;
+        }
 
-                        for (final AbstractVariable param : this.vars.values()) {
-                            if (param.isInput()) {
-                                continue;
-                            }
+        // A context that was not prepared (one being edited, for example) gets a fresh graph every time
+        final VariableGraph theGraph = this.graph == null ? VariableGraph.build(this.vars) : this.graph;
+        if (theGraph.isCyclic()) {
+            Log.warning(identifier, ": Circular reference among variables ", theGraph.getCyclicNames());
+            return false;
+        }
 
-                            if (!param.hasValue()) {
-                                done = false;
-                                break;
-                            }
-                        }
+        final AbstractVariable[] ordered = theGraph.bind(this.vars);
+        final int count = ordered.length;
 
-                        if (done) {
-                            return true;
-                        }
+        for (final AbstractVariable p : ordered) {
+            p.clearDerivedValues();
+        }
 
-                        // Scan all parameters, trying to generate values for those that do not yet
-                        // have one, and tracking whether we made any headway.
-                        boolean change = false;
+        // If random parameters result in derived values falling outside the permitted range, we re-sample the
+        // affected part of the graph. We cap this number of attempts at 10,000 tries.
+        int first = 0;
+        for (int attempts = 0; attempts < 10000; ++attempts) {
+            this.retry = false;
 
-                        for (final AbstractVariable p : this.vars.values()) {
-                            // Don't generate input parameters
-                            if (p.isInput()) {
-                                continue;
-                            }
+            int failed = -1;
+            for (int i = first; i < count; ++i) {
+                final AbstractVariable p = ordered[i];
 
-                            if (!p.hasValue() && generateValue(p)) {
-                                change = true;
-                            }
-                        }
+                // Don't generate input parameters, and keep values that were not invalidated
+                if (p.isInput() || p.hasValue()) {
+                    continue;
+                }
 
-                        // If we derived some values, but they are forbidden, retry
-                        if (this.retry) {
-                            inx = 2000; // So we don't think it was an infinite loop
-                            break;
-                        }
+                if (!generateValue(p)) {
+                    failed = i;
+                    break;
+                }
+            }
 
-                        // If we went through the list and were not able to derive any more values,
-                        // break out to prevent infinite loop.
-                        if (!change) {
-                            final HtmlBuilder msg = new HtmlBuilder(100);
-                            msg.addln(identifier, ": Unable to compute values for:");
+            if (failed == -1) {
+                return true;
+            }
 
-                            for (final AbstractVariable param : this.vars.values()) {
-                                if (param.isInput()) {
-                                    continue;
-                                }
+            if (!this.retry) {
+                logUnableToCompute(identifier);
+                return false;
+            }
 
-                                if (!param.hasValue()) {
-                                    msg.addln("   {", param.name, "} : ", param.toXmlString(0));
-                                }
-                            }
+            final int[] resample = theGraph.getResampleSet(failed);
+            if (resample.length == 0) {
+                Log.warning(identifier, ": Constraint on {", ordered[failed].name,
+                        "} fails and does not depend on any random value.");
+                return false;
+            }
 
-                            msg.add(" [other parameter values are ");
-
-                            for (final AbstractVariable param : this.vars.values()) {
-
-                                if (param instanceof VariableInteger || param instanceof VariableReal
-                                        || param instanceof VariableBoolean || param instanceof VariableRandomInteger
-                                        || param instanceof VariableRandomReal || param instanceof VariableRandomBoolean
-                                        || param instanceof VariableRandomPermutation
-                                        || param instanceof VariableRandomSimpleAngle) {
-                                    msg.add(" {", param.name,
-                                            "=", param.getValue(), "}");
-                                } else if (param instanceof VariableSpan || param instanceof VariableRandomChoice
-                                        || param instanceof VariableDerived) {
-                                    final Object value = param.getValue();
-
-                                    if (value instanceof final DocSimpleSpan span) {
-                                        msg.add(" {", param.name, "=\"", span.toXml(0), "\"}");
-                                    } else {
-                                        msg.add(" {", param.name, "=", value, "}");
-                                    }
-                                } else if (param.isInput()) {
-                                    final Object value = param.getValue();
+            for (final int index : resample) {
+                ordered[index].clearDerivedValues();
+            }
+            first = resample[0];
+            ++resamples[0];
+        }
 
-                                    msg.add(" {", param.name, "=", value, "}");
-                                }
-                            }
+        // If we get here, we tried 10,000 times to build a "good" set of parameters, but were unable to.
+        Log.warning(identifier, ": Unable to obey derived value constraints. Infinite loop.");
 
-                            msg.add(". Check for circular references.");
+        return false;
+    }
 
-                            Log.warning(msg.toString());
+    /**
+     * Logs the variables that could not be computed, along with the values of the others.
+     *
+     * @param identifier an identifier to include in the log message
+     */
+    private void logUnableToCompute(final String identifier) {
 
-                            return false;
-                        }
-                    }
+        final HtmlBuilder msg = new HtmlBuilder(100);
+        msg.addln(identifier, ": Unable to compute values for:");
 
-                    if (inx == 1000) {
-                        final HtmlBuilder msg = new HtmlBuilder(50);
-                        msg.add(identifier, ": Unable to compute values for");
+        for (final AbstractVariable param : this.vars.values()) {
+            if (param.isInput()) {
+                continue;
+            }
 
-                        for (final AbstractVariable param : this.vars.values()) {
-                            if (param.isInput()) {
-                                continue;
-                            }
+            if (!param.hasValue()) {
+                msg.addln("   {", param.name, "} : ", param.toXmlString(0));
+            }
+        }
 
-                            if (!param.hasValue()) {
-                                msg.add(" {", param.name, "}");
-                            }
-                        }
+        msg.add(" [other parameter values are ");
 
-                        msg.add(". Infinite loop while trying.");
+        for (final AbstractVariable param : this.vars.values()) {
 
-                        Log.warning(msg.toString());
+            if (param instanceof VariableInteger || param instanceof VariableReal
+                    || param instanceof VariableBoolean || param instanceof VariableRandomInteger
+                    || param instanceof VariableRandomReal || param instanceof VariableRandomBoolean
+                    || param instanceof VariableRandomPermutation
+                    || param instanceof VariableRandomSimpleAngle) {
+                msg.add(" {", param.name, "=", param.getValue(), "}");
+            } else if (param instanceof VariableSpan || param instanceof VariableRandomChoice
+                    || param instanceof VariableDerived) {
+                final Object value = param.getValue();
 
-                        return false;
-                    }
+                if (value instanceof final DocSimpleSpan span) {
+                    msg.add(" {", param.name, "=\"", span.toXml(0), "\"}");
+                } else {
+                    msg.add(" {", param.name, "=", value, "}");
                 }
-            }
-
-            // If we get here, we tried 10,000 times to build a "good" set of parameters, but were
-            // unable to.
-            Log.warning(identifier, ": Unable to obey derived value constraints. Infinite loop.");
+            } else if (param.isInput()) {
+                final Object value = param.getValue();
 
-            return false;
+                msg.add(" {", param.name, "=", value, "}");
+            }
         }
+
+        Log.warning(msg.toString());
     }
 
 //    /**
@@ -0,0 +1,182 @@
+package dev.mathops.assessment.variable;
+
+import dev.mathops.commons.log.Log;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the cost of generating variable values, per problem, so problems that are expensive to generate (usually
+ * because their constraints reject most random samples) can be found and rewritten.
+ *
+ * <p>
+ * A single generation that takes an unusually long time is also logged as it happens.
+ */
+public enum GenerationCostTracker {
+    ;
+
+    /** A single generation that takes longer than this (in nanoseconds) is logged. */
+    private static final long SLOW_NANOS = 50_000_000L;
+
+    /** Accumulated costs, keyed by problem identifier. */
+    private static final Map<String, Accumulator> COSTS = new ConcurrentHashMap<>(500);
+
+    /**
+     * Records the cost of one generation.
+     *
+     * @param identifier the problem identifier
+     * @param nanos      the elapsed time, in nanoseconds
+     * @param resamples  the number of times a constraint failure caused variables to be re-sampled
+     * @param success    {@code true} if values were generated
+     */
+    static void record(final String identifier, final long nanos, final int resamples, final boolean success) {
+
+        final String key = identifier == null ? "(unknown)" : identifier;
+        final Accumulator acc = COSTS.computeIfAbsent(key, k -> new Accumulator());
+
+        acc.generations.increment();
+        acc.totalNanos.add(nanos);
+        acc.resamples.add((long) resamples);
+        acc.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (!success) {
+            acc.failures.increment();
+        }
+
+        if (nanos > SLOW_NANOS) {
+            Log.warning(key, ": Variable generation took ", Long.toString(nanos / 1_000_000L), " ms with ",
+                    Integer.toString(resamples), " re-samples");
+        }
+    }
+
+    /**
+     * Gets a snapshot of accumulated costs, most expensive (by total time) first.
+     *
+     * @return the list of costs
+     */
+    public static List<Cost> getCosts() {
+
+        final List<Cost> result = new ArrayList<>(COSTS.size());
+
+        for (final Map.Entry<String, Accumulator> entry : COSTS.entrySet()) {
+            result.add(new Cost(entry.getKey(), entry.getValue()));
+        }
+
+        result.sort(Comparator.comparingLong((Cost cost) -> cost.totalNanos).reversed());
+
+        return result;
+    }
+
+    /**
+     * Logs the most expensive problems.
+     *
+     * @param count the maximum number of problems to log
+     */
+    public static void logMostExpensive(final int count) {
+
+        final List<Cost> costs = getCosts();
+        final int num = Math.min(count, costs.size());
+
+        for (int i = 0; i < num; ++i) {
+            final Cost cost = costs.get(i);
+            Log.info(cost.identifier, ": ", Long.toString(cost.generations), " generations, avg ",
+                    String.format("%.3f", Double.valueOf(cost.getAverageMs())), " ms, max ",
+                    String.format("%.3f", Double.valueOf((double) cost.maxNanos / 1.0e6)), " ms, avg re-samples ",
+                    String.format("%.1f", Double.valueOf(cost.getAverageResamples())), ", failures ",
+                    Long.toString(cost.failures));
+        }
+    }
+
+    /**
+     * Discards all accumulated costs.
+     */
+    public static void reset() {
+
+        COSTS.clear();
+    }
+
+    /**
+     * Running totals for one problem.
+     */
+    private static final class Accumulator {
+
+        /** The number of generations. */
+        final LongAdder generations = new LongAdder();
+
+        /** The number of failed generations. */
+        final LongAdder failures = new LongAdder();
+
+        /** The total elapsed time, in nanoseconds. */
+        final LongAdder totalNanos = new LongAdder();
+
+        /** The total number of re-samples. */
+        final LongAdder resamples = new LongAdder();
+
+        /** The longest single generation, in nanoseconds. */
+        final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    /**
+     * A snapshot of the accumulated cost for one problem.
+     */
+    public static final class Cost {
+
+        /** The problem identifier. */
+        public final String identifier;
+
+        /** The number of generations. */
+        public final long generations;
+
+        /** The number of failed generations. */
+        public final long failures;
+
+        /** The total elapsed time, in nanoseconds. */
+        public final long totalNanos;
+
+        /** The total number of re-samples. */
+        public final long resamples;
+
+        /** The longest single generation, in nanoseconds. */
+        public final long maxNanos;
+
+        /**
+         * Constructs a new {@code Cost}.
+         *
+         * @param theIdentifier the problem identifier
+         * @param acc           the accumulator whose totals to capture
+         */
+        private Cost(final String theIdentifier, final Accumulator acc) {
+
+            this.identifier = theIdentifier;
+            this.generations = acc.generations.sum();
+            this.failures = acc.failures.sum();
+            this.totalNanos = acc.totalNanos.sum();
+            this.resamples = acc.resamples.sum();
+            this.maxNanos = acc.maxNanos.get();
+        }
+
+        /**
+         * Gets the average time per generation.
+         *
+         * @return the average time, in milliseconds
+         */
+        public double getAverageMs() {
+
+            return this.generations == 0L ? 0.0 : (double) this.totalNanos / (double) this.generations / 1.0e6;
+        }
+
+        /**
+         * Gets the average number of re-samples per generation.
+         *
+         * @return the average number of re-samples
+         */
+        public double getAverageResamples() {
+
+            return this.generations == 0L ? 0.0 : (double) this.resamples / (double) this.generations;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package dev.mathops.assessment.variable;
+
+import dev.mathops.assessment.NumberOrFormula;
+import dev.mathops.assessment.document.template.DocSimpleSpan;
+import dev.mathops.assessment.formula.Formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependency graph of the variables in an {@code EvalContext}. A variable depends on every variable named in its
+ * min/max formulae, its derived formula, its excludes and choose-from lists, its maximum denominator, or its span
+ * value.
+ *
+ * <p>
+ * The graph stores a topological ordering of the variables (ties are broken by declaration order) so values can be
+ * generated in a single pass, and, for each variable, the set of variables that must be re-sampled if that variable
+ * fails one of its constraints: everything downstream of the random variables on which it depends.
+ *
+ * <p>
+ * Instances are immutable once built, and are shared between a problem template's context and all of its copies.
+ */
+final class VariableGraph {
+
+    /** The variable names, in topological order. */
+    private final String[] order;
+
+    /** For each position in the ordering, the sorted positions to clear and regenerate after a constraint failure. */
+    private final int[][] resample;
+
+    /** The names of variables that participate in a cycle (empty if the graph is acyclic). */
+    private final List<String> cyclic;
+
+    /**
+     * Constructs a new {@code VariableGraph}.
+     *
+     * @param theOrder    the variable names, in topological order
+     * @param theResample the re-sample sets for each position in the ordering
+     * @param theCyclic   the names of variables that participate in a cycle
+     */
+    private VariableGraph(final String[] theOrder, final int[][] theResample, final List<String> theCyclic) {
+
+        this.order = theOrder;
+        this.resample = theResample;
+        this.cyclic = theCyclic;
+    }
+
+    /**
+     * Builds the dependency graph for a set of variables.
+     *
+     * @param vars the variables, keyed by name, in declaration order
+     * @return the graph
+     */
+    static VariableGraph build(final Map<String, AbstractVariable> vars) {
+
+        final int count = vars.size();
+        final String[] names = vars.keySet().toArray(new String[count]);
+        final Map<String, Integer> indexOf = new HashMap<>(count * 2);
+        for (int i = 0; i < count; ++i) {
+            indexOf.put(names[i], Integer.valueOf(i));
+        }
+
+        // deps[i] holds the declaration indices of the variables on which variable i depends
+        final BitSet[] deps = new BitSet[count];
+        final List<List<Integer>> dependents = new ArrayList<>(count);
+        final boolean[] random = new boolean[count];
+        final int[] inDegree = new int[count];
+
+        for (int i = 0; i < count; ++i) {
+            dependents.add(new ArrayList<>(4));
+        }
+
+        for (int i = 0; i < count; ++i) {
+            final AbstractVariable var = vars.get(names[i]);
+            random[i] = isRandom(var);
+            deps[i] = new BitSet(count);
+
+            for (final String name : referencedNames(var)) {
+                final Integer index = indexOf.get(name);
+                if (index != null && !deps[i].get(index.intValue())) {
+                    deps[i].set(index.intValue());
+                    dependents.get(index.intValue()).add(Integer.valueOf(i));
+                    ++inDegree[i];
+                }
+            }
+        }
+
+        // Kahn's algorithm, always taking the earliest-declared ready variable so the order is stable
+        final int[] position = new int[count];
+        Arrays.fill(position, -1);
+        final String[] order = new String[count];
+        final int[] declIndex = new int[count];
+        final BitSet ready = new BitSet(count);
+        for (int i = 0; i < count; ++i) {
+            if (inDegree[i] == 0) {
+                ready.set(i);
+            }
+        }
+
+        int placed = 0;
+        for (int next = ready.nextSetBit(0); next >= 0; next = ready.nextSetBit(0)) {
+            ready.clear(next);
+            position[next] = placed;
+            declIndex[placed] = next;
+            order[placed] = names[next];
+            ++placed;
+
+            for (final Integer dependent : dependents.get(next)) {
+                final int d = dependent.intValue();
+                --inDegree[d];
+                if (inDegree[d] == 0) {
+                    ready.set(d);
+                }
+            }
+        }
+
+        final List<String> cyclic = new ArrayList<>(0);
+        if (placed < count) {
+            for (int i = 0; i < count; ++i) {
+                if (position[i] == -1) {
+                    cyclic.add(names[i]);
+                }
+            }
+            return new VariableGraph(Arrays.copyOf(order, placed), new int[0][], cyclic);
+        }
+
+        final int[][] resample = new int[count][];
+        for (int p = 0; p < count; ++p) {
+            final int decl = declIndex[p];
+
+            // The random variables upstream of (or equal to) this variable
+            final BitSet roots = new BitSet(count);
+            final BitSet seen = new BitSet(count);
+            final List<Integer> stack = new ArrayList<>(count);
+            stack.add(Integer.valueOf(decl));
+            while (!stack.isEmpty()) {
+                final int cur = stack.remove(stack.size() - 1).intValue();
+                if (!seen.get(cur)) {
+                    seen.set(cur);
+                    if (random[cur]) {
+                        roots.set(cur);
+                    }
+                    for (int up = deps[cur].nextSetBit(0); up >= 0; up = deps[cur].nextSetBit(up + 1)) {
+                        stack.add(Integer.valueOf(up));
+                    }
+                }
+            }
+
+            // Everything downstream of (or equal to) those random variables, by position in the ordering
+            final BitSet affected = new BitSet(count);
+            final BitSet visited = new BitSet(count);
+            for (int r = roots.nextSetBit(0); r >= 0; r = roots.nextSetBit(r + 1)) {
+                stack.add(Integer.valueOf(r));
+            }
+            while (!stack.isEmpty()) {
+                final int cur = stack.remove(stack.size() - 1).intValue();
+                if (!visited.get(cur)) {
+                    visited.set(cur);
+                    affected.set(position[cur]);
+                    for (final Integer dependent : dependents.get(cur)) {
+                        stack.add(dependent);
+                    }
+                }
+            }
+
+            resample[p] = affected.stream().toArray();
+        }
+
+        return new VariableGraph(order, resample, cyclic);
+    }
+
+    /**
+     * Tests whether a variable is one whose value is chosen at random.
+     *
+     * @param var the variable
+     * @return {@code true} if the variable is random
+     */
+    private static boolean isRandom(final AbstractVariable var) {
+
+        return var instanceof VariableRandomInteger || var instanceof VariableRandomReal
+                || var instanceof VariableRandomBoolean || var instanceof VariableRandomChoice
+                || var instanceof VariableRandomPermutation || var instanceof VariableRandomSimpleAngle;
+    }
+
+    /**
+     * Gathers the names of all variables referenced by a variable. Indexed references like "name[2]" are reduced to
+     * the base variable name.
+     *
+     * @param var the variable
+     * @return the referenced names (may contain duplicates or names that are not defined)
+     */
+    private static List<String> referencedNames(final AbstractVariable var) {
+
+        final List<Formula> formulas = new ArrayList<>(10);
+
+        if (var instanceof final IRangedVariable ranged) {
+            addFormula(formulas, ranged.getMin());
+            addFormula(formulas, ranged.getMax());
+        }
+
+        if (var instanceof final VariableDerived derived && derived.getFormula() != null) {
+            formulas.add(derived.getFormula());
+        }
+
+        if (var instanceof final IExcludableVariable excludable) {
+            addFormulas(formulas, excludable.getExcludes());
+        }
+
+        if (var instanceof final VariableRandomChoice choice) {
+            addFormulas(formulas, choice.getChooseFromList());
+        }
+
+        if (var instanceof final VariableRandomSimpleAngle angle) {
+            addFormula(formulas, angle.getMaxDenom());
+        }
+
+        final List<String> result = new ArrayList<>(10);
+
+        for (final Formula formula : formulas) {
+            for (final String name : formula.parameterNames()) {
+                result.add(baseName(name));
+            }
+        }
+
+        if (var.getValue() instanceof final DocSimpleSpan span) {
+            for (final String name : span.parameterNames()) {
+                result.add(baseName(name));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the formula from a {@code NumberOrFormula} to a list, if there is one.
+     *
+     * @param formulas the list to which to add
+     * @param value    the number or formula (may be null)
+     */
+    private static void addFormula(final Collection<? super Formula> formulas, final NumberOrFormula value) {
+
+        if (value != null && value.getFormula() != null) {
+            formulas.add(value.getFormula());
+        }
+    }
+
+    /**
+     * Adds all non-null formulas from an array to a list.
+     *
+     * @param formulas the list to which to add
+     * @param array    the array (may be null)
+     */
+    private static void addFormulas(final Collection<? super Formula> formulas, final Formula[] array) {
+
+        if (array != null) {
+            for (final Formula formula : array) {
+                if (formula != null) {
+                    formulas.add(formula);
+                }
+            }
+        }
+    }
+
+    /**
+     * Strips any index suffix from a referenced variable name.
+     *
+     * @param name the name, like "a" or "a[2]"
+     * @return the base name
+     */
+    private static String baseName(final String name) {
+
+        final int bracket = name.indexOf('[');
+
+        return bracket > 0 && name.charAt(name.length() - 1) == ']' ? name.substring(0, bracket) : name;
+    }
+
+    /**
+     * Tests whether the graph contains a cycle.
+     *
+     * @return {@code true} if some variables participate in a cycle
+     */
+    boolean isCyclic() {
+
+        return !this.cyclic.isEmpty();
+    }
+
+    /**
+     * Gets the names of the variables that participate in a cycle.
+     *
+     * @return the names (empty if the graph is acyclic)
+     */
+    List<String> getCyclicNames() {
+
+        return this.cyclic;
+    }
+
+    /**
+     * Gets the number of variables in the ordering.
+     *
+     * @return the number of variables
+     */
+    int size() {
+
+        return this.order.length;
+    }
+
+    /**
+     * Looks up the variables in topological order.
+     *
+     * @param vars the variables, keyed by name
+     * @return the variables, in topological order (entries are null for names not in the map)
+     */
+    AbstractVariable[] bind(final Map<String, AbstractVariable> vars) {
+
+        final int count = this.order.length;
+        final AbstractVariable[] result = new AbstractVariable[count];
+
+        for (int i = 0; i < count; ++i) {
+            result[i] = vars.get(this.order[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the positions to clear and regenerate after the variable at a position fails one of its constraints.
+     *
+     * @param position the position of the failing variable in the ordering
+     * @return the positions to re-sample, in increasing order (empty if the failing variable does not depend on any
+     *         random variable, in which case re-sampling cannot help)
+     */
+    int[] getResampleSet(final int position) {
+
+        return this.resample[position];
+    }
+}
@@ -0,0 +1,48 @@
+package dev.mathops.assessment;
+
+import dev.mathops.assessment.exam.ExamObj;
+
+import java.io.File;
+
+/**
+ * A harness that measures the time from startup to the first exam being available, either parsing the exam and its
+ * problems from XML or decoding them from an instruction snapshot.
+ *
+ * <p>
+ * Each mode should be run in a fresh JVM, so class loading and the file system cache affect both equally (run the
+ * "xml" mode once first to warm the file system cache). The mode is passed to the cache through the
+ * "mathops.instructionSnapshot" system property.
+ *
+ * <p>
+ * Usage: {@code InstructionSnapshotBenchmark <instruction-directory> <exam-ref> xml|snapshot}
+ */
+enum InstructionSnapshotBenchmark {
+    ;
+
+    /**
+     * Main method to execute the benchmark.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        if (args.length == 3) {
+            // The cache reads this property when its class is loaded, which happens below
+            System.setProperty("mathops.instructionSnapshot", Boolean.toString("snapshot".equals(args[2])));
+
+            final long start = System.nanoTime();
+            final InstructionalCache cache = InstructionalCache.getInstance(new File(args[0]));
+            final ExamObj exam = cache.retrieveExam(args[1]);
+            final long elapsed = System.nanoTime() - start;
+
+            if (exam == null) {
+                System.out.println("Exam " + args[1] + " not found");
+            } else {
+                System.out.printf("%s: time to first exam %,.1f ms%n", args[2],
+                        Double.valueOf((double) elapsed / 1.0e6));
+            }
+        } else {
+            System.out.println("Usage: InstructionSnapshotBenchmark <instruction-directory> <exam-ref> xml|snapshot");
+        }
+    }
+}
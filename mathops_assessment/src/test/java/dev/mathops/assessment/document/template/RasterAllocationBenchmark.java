@@ -0,0 +1,109 @@
+package dev.mathops.assessment.document.template;
+
+import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.htmlgen.ProblemConverter;
+import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A harness that measures the bytes allocated and the rate at which pages are generated when HTML is generated for
+ * realized problems, for every problem in the instruction tree.
+ *
+ * <p>
+ * The pool of off-screen images used to render drawings and graphs is fixed for the life of the JVM, so to measure its
+ * effect, run the harness twice: once as is, and once with {@code -Dmathops.rasterPool=false}. Drawings and graphs
+ * whose content is static are served from the HTML fragment cache after the warm-up pass, so the measured difference
+ * comes from those that depend on parameters (which are rendered on every page).
+ */
+enum RasterAllocationBenchmark {
+    ;
+
+    /** The number of realizations per problem. */
+    private static final int REALIZATIONS = 5;
+
+    /** The number of times HTML is generated for each realization. */
+    private static final int RENDERS = 5;
+
+    /** The thread management bean, used to read per-thread allocation counts. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Realizes copies of all problems.
+     *
+     * @param cache the instructional cache
+     * @return the realized problems
+     */
+    private static List<AbstractProblemTemplate> realizeAll(final InstructionalCache cache) {
+
+        final List<String> refs = cache.getProblemFileRefs();
+        final List<AbstractProblemTemplate> result = new ArrayList<>(refs.size() * REALIZATIONS);
+
+        for (final String ref : refs) {
+            final AbstractProblemTemplate template = InstructionalCache.getProblemTemplate(ref);
+
+            if (template != null) {
+                for (int i = 0; i < REALIZATIONS; ++i) {
+                    final AbstractProblemTemplate copy = template.deepCopy();
+                    if (copy.realize(copy.evalContext)) {
+                        result.add(copy);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Generates HTML for all problems, and measures the bytes allocated per page and pages generated per second.
+     *
+     * @param problems the realized problems
+     * @return a two-element array with bytes allocated per page and pages per second
+     */
+    private static double[] measure(final List<AbstractProblemTemplate> problems) {
+
+        final long tid = Thread.currentThread().threadId();
+
+        // Warm up
+        for (final AbstractProblemTemplate problem : problems) {
+            ProblemConverter.populateProblemHtml(problem, new int[]{1});
+        }
+
+        final long before = THREADS.getThreadAllocatedBytes(tid);
+        final long start = System.nanoTime();
+        for (int i = 0; i < RENDERS; ++i) {
+            for (final AbstractProblemTemplate problem : problems) {
+                ProblemConverter.populateProblemHtml(problem, new int[]{1});
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long after = THREADS.getThreadAllocatedBytes(tid);
+
+        final double pages = (double) (problems.size() * RENDERS);
+
+        return new double[]{(double) (after - before) / pages, pages / ((double) elapsed / 1.0e9)};
+    }
+
+    /**
+     * Main method to execute the benchmark.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        final InstructionalCache cache = InstructionalCache.getInstance();
+        cache.rescan();
+
+        final List<AbstractProblemTemplate> problems = realizeAll(cache);
+
+        final double[] result = measure(problems);
+
+        System.out.printf("%,d realized problems%n", Integer.valueOf(problems.size()));
+        System.out.printf("%s %,12.0f bytes/page   %,.1f pages/s%n", RasterPool.ENABLED ? "pooled  " : "unpooled",
+                Double.valueOf(result[0]), Double.valueOf(result[1]));
+    }
+}
@@ -0,0 +1,96 @@
+package dev.mathops.assessment.document.template;
+
+import dev.mathops.assessment.document.ELayoutMode;
+import dev.mathops.assessment.variable.EvalContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code AbstractDocObjectTemplate} class.
+ */
+final class TestAbstractDocObjectTemplate {
+
+    /** A position no layout would assign, used to detect whether an object was laid out. */
+    private static final int SENTINEL = -12345;
+
+    /**
+     * Constructs a new {@code TestAbstractDocObjectTemplate}
+     */
+    TestAbstractDocObjectTemplate() {
+
+        //  No action
+    }
+
+    /**
+     * Creates a span with static content, and lays it out.
+     *
+     * @param context the evaluation context
+     * @return the span
+     */
+    private static DocNonwrappingSpan makeLaidOutSpan(final EvalContext context) {
+
+        final DocNonwrappingSpan span = new DocNonwrappingSpan();
+        span.add(new DocText("Hello"));
+        span.add(new DocText("world"));
+        span.updateLayout(context, ELayoutMode.TEXT);
+
+        return span;
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Deep copy of a laid-out static span is not laid out again")
+    void test0101() {
+
+        final EvalContext context = new EvalContext();
+        final DocNonwrappingSpan span = makeLaidOutSpan(context);
+        final AbstractDocObjectTemplate second = span.getChildren().get(1);
+        assertTrue(second.getX() > 0, "Second child should follow the first");
+
+        final DocNonwrappingSpan copy = span.deepCopy();
+        assertEquals(span.getWidth(), copy.getWidth(), "Copy should have the source's width");
+        assertEquals(span.getHeight(), copy.getHeight(), "Copy should have the source's height");
+        assertEquals(second.getX(), copy.getChildren().get(1).getX(), "Copy should have the source's child position");
+
+        // Layout positions the second child, so a moved child that stays put shows layout was skipped
+        copy.getChildren().get(1).setX(SENTINEL);
+        copy.updateLayout(new EvalContext(), ELayoutMode.TEXT);
+
+        assertEquals(SENTINEL, copy.getChildren().get(1).getX(), "Copy should not be laid out again");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Deep copy is laid out again in a different layout mode")
+    void test0102() {
+
+        final EvalContext context = new EvalContext();
+        final DocNonwrappingSpan copy = makeLaidOutSpan(context).deepCopy();
+
+        copy.getChildren().get(1).setX(SENTINEL);
+        copy.updateLayout(context, ELayoutMode.INLINE_MATH);
+
+        assertNotEquals(SENTINEL, copy.getChildren().get(1).getX(), "Copy should be laid out in a new mode");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Adding a child to a deep copy discards its remembered layout")
+    void test0103() {
+
+        final EvalContext context = new EvalContext();
+        final DocNonwrappingSpan copy = makeLaidOutSpan(context).deepCopy();
+
+        copy.getChildren().get(1).setX(SENTINEL);
+        copy.add(new DocText("!"));
+        copy.updateLayout(context, ELayoutMode.TEXT);
+
+        assertNotEquals(SENTINEL, copy.getChildren().get(1).getX(), "Changed copy should be laid out again");
+        assertTrue(copy.getChildren().get(2).getX() > copy.getChildren().get(1).getX(),
+                "Added child should follow the others");
+    }
+}
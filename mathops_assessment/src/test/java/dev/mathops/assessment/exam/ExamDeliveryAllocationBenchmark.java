@@ -0,0 +1,143 @@
+package dev.mathops.assessment.exam;
+
+import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A harness that measures the bytes allocated per exam delivery (obtaining an exam from the instructional cache,
+ * installing its problems, and realizing it) for every exam in the instruction tree.
+ *
+ * <p>
+ * Two paths are measured. The "legacy" path reproduces the former behavior, in which every candidate problem of every
+ * exam problem was deep-copied once by {@code ExamObj.deepCopy} and again by {@code InstructionalCache.getProblem}. The
+ * "overlay" path is the current behavior, in which candidate problems are shared templates and only selected problems
+ * are copied during realization.
+ */
+enum ExamDeliveryAllocationBenchmark {
+    ;
+
+    /** The number of deliveries to measure per exam per path. */
+    private static final int ITERATIONS = 20;
+
+    /** The thread management bean, used to read per-thread allocation counts. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Delivers an exam using the legacy path.
+     *
+     * @param ref the exam reference
+     */
+    private static void deliverLegacy(final String ref) {
+
+        final ExamObj exam = InstructionalCache.getExam(ref);
+
+        final int numSect = exam.getNumSections();
+        for (int i = 0; i < numSect; ++i) {
+            final ExamSection sect = exam.getSection(i);
+            final int numProb = sect.getNumProblems();
+            for (int j = 0; j < numProb; ++j) {
+                final ExamProblem eprob = sect.getProblem(j);
+                final int num = eprob.getNumProblems();
+                for (int k = 0; k < num; ++k) {
+                    final AbstractProblemTemplate template = eprob.getProblem(k);
+                    final AbstractProblemTemplate examCopy = template.deepCopy();
+                    eprob.setProblem(k, examCopy.deepCopy());
+                }
+            }
+        }
+
+        exam.realize(false, false, 123456L);
+    }
+
+    /**
+     * Delivers an exam using the overlay path.
+     *
+     * @param ref the exam reference
+     */
+    private static void deliverOverlay(final String ref) {
+
+        final ExamObj exam = InstructionalCache.getExam(ref);
+
+        final int numSect = exam.getNumSections();
+        for (int i = 0; i < numSect; ++i) {
+            final ExamSection sect = exam.getSection(i);
+            final int numProb = sect.getNumProblems();
+            for (int j = 0; j < numProb; ++j) {
+                final ExamProblem eprob = sect.getProblem(j);
+                final int num = eprob.getNumProblems();
+                for (int k = 0; k < num; ++k) {
+                    final AbstractProblemTemplate prb = InstructionalCache.getProblemTemplate(eprob.getProblem(k).id);
+                    if (prb != null) {
+                        eprob.setProblem(k, prb);
+                    }
+                }
+            }
+        }
+
+        exam.realize(false, false, 123456L);
+    }
+
+    /**
+     * Measures the average bytes allocated by one delivery of an exam.
+     *
+     * @param ref    the exam reference
+     * @param legacy true to measure the legacy path; false to measure the overlay path
+     * @return the average number of bytes allocated per delivery
+     */
+    private static long measure(final String ref, final boolean legacy) {
+
+        final long tid = Thread.currentThread().getId();
+
+        // Warm up
+        for (int i = 0; i < 3; ++i) {
+            if (legacy) {
+                deliverLegacy(ref);
+            } else {
+                deliverOverlay(ref);
+            }
+        }
+
+        final long before = THREADS.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < ITERATIONS; ++i) {
+            if (legacy) {
+                deliverLegacy(ref);
+            } else {
+                deliverOverlay(ref);
+            }
+        }
+        final long after = THREADS.getThreadAllocatedBytes(tid);
+
+        return (after - before) / (long) ITERATIONS;
+    }
+
+    /**
+     * Main method to execute the benchmark.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        final InstructionalCache cache = InstructionalCache.getInstance();
+        cache.rescan();
+
+        long totalLegacy = 0L;
+        long totalOverlay = 0L;
+
+        for (final String ref : cache.getExamFileRefs()) {
+            final long legacy = measure(ref, true);
+            final long overlay = measure(ref, false);
+            totalLegacy += legacy;
+            totalOverlay += overlay;
+
+            System.out.printf("%-40s legacy %,12d bytes   overlay %,12d bytes%n", ref, Long.valueOf(legacy),
+                    Long.valueOf(overlay));
+        }
+
+        final double ratio = totalOverlay == 0L ? 0.0 : (double) totalLegacy / (double) totalOverlay;
+        System.out.printf("TOTAL legacy %,d bytes, overlay %,d bytes, reduction %.1fx%n", Long.valueOf(totalLegacy),
+                Long.valueOf(totalOverlay), Double.valueOf(ratio));
+    }
+}
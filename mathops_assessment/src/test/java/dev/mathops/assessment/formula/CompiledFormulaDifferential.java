@@ -0,0 +1,160 @@
+package dev.mathops.assessment.formula;
+
+import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.NumberOrFormula;
+import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
+import dev.mathops.assessment.variable.AbstractVariable;
+import dev.mathops.assessment.variable.EvalContext;
+import dev.mathops.assessment.variable.IExcludableVariable;
+import dev.mathops.assessment.variable.IRangedVariable;
+import dev.mathops.assessment.variable.VariableDerived;
+import dev.mathops.assessment.variable.VariableRandomChoice;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A differential harness that checks compiled formula evaluation against the interpreter across the full problem bank.
+ * Each problem is realized several times, and after each realization every formula in every variable definition is
+ * evaluated both by {@code Formula.interpret} and by a freshly compiled {@code CompiledFormula}. Results must be
+ * identical: the same class and value (doubles are compared bit for bit), or an {@code ErrorValue} from both.
+ *
+ * <p>
+ * Optional arguments are the number of realizations per problem (default 20) and the path of the instruction
+ * directory.
+ */
+enum CompiledFormulaDifferential {
+    ;
+
+    /**
+     * Gathers every formula in a variable definition.
+     *
+     * @param var      the variable
+     * @param formulas the list to which to add formulas
+     */
+    private static void gatherFormulas(final AbstractVariable var, final List<? super Formula> formulas) {
+
+        if (var instanceof final IRangedVariable ranged) {
+            addFormula(formulas, ranged.getMin());
+            addFormula(formulas, ranged.getMax());
+        }
+        if (var instanceof final VariableDerived derived && derived.getFormula() != null) {
+            formulas.add(derived.getFormula());
+        }
+        if (var instanceof final IExcludableVariable excludable && excludable.getExcludes() != null) {
+            for (final Formula formula : excludable.getExcludes()) {
+                if (formula != null) {
+                    formulas.add(formula);
+                }
+            }
+        }
+        if (var instanceof final VariableRandomChoice choice && choice.getChooseFromList() != null) {
+            for (final Formula formula : choice.getChooseFromList()) {
+                if (formula != null) {
+                    formulas.add(formula);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the formula from a {@code NumberOrFormula} to a list, if there is one.
+     *
+     * @param formulas the list
+     * @param value    the number or formula (may be null)
+     */
+    private static void addFormula(final List<? super Formula> formulas, final NumberOrFormula value) {
+
+        if (value != null && value.getFormula() != null) {
+            formulas.add(value.getFormula());
+        }
+    }
+
+    /**
+     * Tests whether two evaluation results are identical.
+     *
+     * @param interpreted the result from the interpreter
+     * @param compiled    the result from compiled code
+     * @return {@code true} if the results match
+     */
+    private static boolean same(final Object interpreted, final Object compiled) {
+
+        final boolean result;
+
+        if (interpreted instanceof ErrorValue) {
+            result = compiled instanceof ErrorValue;
+        } else if (interpreted instanceof final Double d1) {
+            result = compiled instanceof final Double d2
+                    && Double.doubleToRawLongBits(d1.doubleValue()) == Double.doubleToRawLongBits(d2.doubleValue());
+        } else if (interpreted == null) {
+            result = compiled == null;
+        } else {
+            result = compiled != null && interpreted.getClass() == compiled.getClass()
+                    && interpreted.toString().equals(compiled.toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * Main method to execute the harness.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        final InstructionalCache cache = args.length > 1 ? InstructionalCache.getInstance(new File(args[1]))
+                : InstructionalCache.getInstance();
+        cache.rescan();
+
+        long evaluations = 0L;
+        long deopts = 0L;
+        long mismatches = 0L;
+        int problems = 0;
+
+        final List<Formula> formulas = new ArrayList<>(50);
+
+        for (final String ref : cache.getProblemFileRefs()) {
+            ++problems;
+
+            for (int round = 0; round < rounds; ++round) {
+                final AbstractProblemTemplate problem = InstructionalCache.getProblem(ref);
+                if (problem == null || !problem.realize(problem.evalContext)) {
+                    break;
+                }
+
+                final EvalContext context = problem.evalContext;
+                formulas.clear();
+                for (final AbstractVariable var : context.getVariables()) {
+                    gatherFormulas(var, formulas);
+                }
+
+                for (final Formula formula : formulas) {
+                    final Object interpreted = formula.interpret(context);
+                    final CompiledFormula compiled = CompiledFormula.compile(formula, context, Set.of());
+                    if (compiled == null) {
+                        continue;
+                    }
+
+                    final Object result = compiled.evaluate(context);
+                    ++evaluations;
+
+                    if (result == CompiledFormula.DEOPT) {
+                        ++deopts;
+                    } else if (!same(interpreted, result)) {
+                        ++mismatches;
+                        System.out.println(ref + ": " + formula + " interpreted=" + interpreted + " compiled="
+                                + result);
+                    }
+                }
+            }
+        }
+
+        System.out.printf("%d problems, %,d evaluations, %,d deoptimizations, %,d mismatches%n",
+                Integer.valueOf(problems), Long.valueOf(evaluations), Long.valueOf(deopts), Long.valueOf(mismatches));
+    }
+}
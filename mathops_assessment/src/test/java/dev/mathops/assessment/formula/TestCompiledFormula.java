@@ -0,0 +1,205 @@
+package dev.mathops.assessment.formula;
+
+import dev.mathops.assessment.EParserMode;
+import dev.mathops.assessment.variable.EvalContext;
+import dev.mathops.assessment.variable.VariableInteger;
+import dev.mathops.assessment.variable.VariableReal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code CompiledFormula} class. Compiled evaluation is checked against the interpreter: results must be
+ * identical (the same class and value, with doubles compared bit for bit), or an {@code ErrorValue} from both.
+ */
+final class TestCompiledFormula {
+
+    /** Formulas over integer variables {a} and {b} and real variable {r}. */
+    private static final String[] FORMULAS = {"{a}+2*{b}", "{a}-{b}-7", "{a}*{b}", "{a}/{b}", "({a}+{b})*({a}-{b})",
+            "{a}^2-{b}", "{r}*3.5", "{r}/{a}", "{a}+{r}", "{r}^2+{r}", "-{a}", "{a}<{b}", "{a}>={b}", "{r}>{a}",
+            "{a}/0", "{r}/0.0"};
+
+    /** The number of sets of variable values with which to evaluate each formula. */
+    private static final int ROUNDS = 200;
+
+    /**
+     * Constructs a new {@code TestCompiledFormula}
+     */
+    TestCompiledFormula() {
+
+        //  No action
+    }
+
+    /**
+     * Creates a context with integer variables {a} and {b} and real variable {r}.
+     *
+     * @return the context
+     */
+    private static EvalContext makeContext() {
+
+        final EvalContext context = new EvalContext();
+        context.addVariable(new VariableInteger("a"));
+        context.addVariable(new VariableInteger("b"));
+        context.addVariable(new VariableReal("r"));
+
+        return context;
+    }
+
+    /**
+     * Assigns random values to the variables in a context.
+     *
+     * @param context the context
+     * @param rnd     the random number generator
+     */
+    private static void assignValues(final EvalContext context, final Random rnd) {
+
+        context.getVariable("a").setValue(Long.valueOf((long) rnd.nextInt(41) - 20L));
+        context.getVariable("b").setValue(Long.valueOf((long) rnd.nextInt(41) - 20L));
+        context.getVariable("r").setValue(Double.valueOf(rnd.nextDouble() * 200.0 - 100.0));
+    }
+
+    /**
+     * Parses a formula.
+     *
+     * @param context the context
+     * @param text    the formula text
+     * @return the formula
+     */
+    private static Formula parse(final EvalContext context, final String text) {
+
+        final Formula formula = FormulaFactory.parseFormulaString(context, text, EParserMode.NORMAL);
+        assertNotNull(formula, "Unable to parse " + text);
+
+        return formula;
+    }
+
+    /**
+     * Tests whether two evaluation results are identical.
+     *
+     * @param interpreted the result from the interpreter
+     * @param compiled    the result from compiled code
+     * @return {@code true} if the results match
+     */
+    private static boolean same(final Object interpreted, final Object compiled) {
+
+        final boolean result;
+
+        if (interpreted instanceof ErrorValue) {
+            result = compiled instanceof ErrorValue;
+        } else if (interpreted instanceof final Double d1) {
+            result = compiled instanceof final Double d2
+                    && Double.doubleToRawLongBits(d1.doubleValue()) == Double.doubleToRawLongBits(d2.doubleValue());
+        } else if (interpreted == null) {
+            result = compiled == null;
+        } else {
+            result = compiled != null && interpreted.getClass() == compiled.getClass()
+                    && interpreted.toString().equals(compiled.toString());
+        }
+
+        return result;
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Compiled code matches the interpreter")
+    void test0101() {
+
+        final EvalContext context = makeContext();
+        final Random rnd = new Random(12345L);
+
+        for (final String text : FORMULAS) {
+            final Formula formula = parse(context, text);
+
+            for (int i = 0; i < ROUNDS; ++i) {
+                assignValues(context, rnd);
+
+                final Object interpreted = formula.interpret(context);
+                final CompiledFormula compiled = CompiledFormula.compile(formula, context, Set.of());
+                assertNotNull(compiled, "Unable to compile " + text);
+
+                final Object result = compiled.evaluate(context);
+                assertNotSame(CompiledFormula.DEOPT, result, "Unexpected deoptimization of " + text);
+                assertTrue(same(interpreted, result), text + ": interpreted=" + interpreted + " compiled=" + result);
+            }
+        }
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Repeated evaluation matches the interpreter once compiled")
+    void test0102() {
+
+        final EvalContext context = makeContext();
+        final Random rnd = new Random(23456L);
+
+        for (final String text : FORMULAS) {
+            final Formula formula = parse(context, text);
+
+            for (int i = 0; i < ROUNDS; ++i) {
+                assignValues(context, rnd);
+
+                final Object interpreted = formula.interpret(context);
+                final Object result = formula.evaluate(context);
+                assertTrue(same(interpreted, result), text + ": interpreted=" + interpreted + " evaluated=" + result);
+            }
+        }
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Change in variable type deoptimizes to the interpreter")
+    void test0103() {
+
+        final EvalContext context = makeContext();
+        final Formula formula = parse(context, "{a}+{b}");
+
+        context.getVariable("a").setValue(Long.valueOf(2L));
+        context.getVariable("b").setValue(Long.valueOf(3L));
+
+        final CompiledFormula compiled = CompiledFormula.compile(formula, context, Set.of());
+        assertNotNull(compiled, "Unable to compile formula");
+        assertEquals(Long.valueOf(5L), compiled.evaluate(context), "Compiled integer sum is incorrect");
+
+        context.getVariable("b").setValue(Double.valueOf(0.5));
+        assertNotSame(CompiledFormula.DEOPT, CompiledFormula.compile(formula, context, Set.of("b")).evaluate(context),
+                "Formula compiled with polymorphic variable should not deoptimize");
+        assertEquals(CompiledFormula.DEOPT, compiled.evaluate(context), "Type change should deoptimize");
+        assertEquals("b", compiled.getDeoptName(), "Deoptimization names wrong variable");
+
+        for (int i = 0; i < 10; ++i) {
+            context.getVariable("b").setValue((i & 1) == 0 ? Long.valueOf((long) i) : Double.valueOf((double) i));
+            assertTrue(same(formula.interpret(context), formula.evaluate(context)),
+                    "Evaluation after type change does not match interpreter");
+        }
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Formula with a missing value is interpreted until the value is assigned")
+    void test0104() {
+
+        final EvalContext context = makeContext();
+        final Formula formula = parse(context, "{a}*{b}");
+
+        context.getVariable("a").setValue(Long.valueOf(6L));
+        assertNull(CompiledFormula.compile(formula, context, Set.of()),
+                "Formula with a missing value should not compile");
+
+        for (int i = 0; i < 20; ++i) {
+            assertTrue(formula.evaluate(context) instanceof ErrorValue, "Missing value should give an error");
+        }
+
+        context.getVariable("b").setValue(Long.valueOf(7L));
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(Long.valueOf(42L), formula.evaluate(context), "Product is incorrect once value assigned");
+        }
+    }
+}
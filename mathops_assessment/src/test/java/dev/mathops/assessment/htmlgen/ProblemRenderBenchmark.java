@@ -0,0 +1,100 @@
+package dev.mathops.assessment.htmlgen;
+
+import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A harness that measures the rate at which HTML is generated for realized problems, for every problem in the
+ * instruction tree.
+ *
+ * <p>
+ * Each problem template is copied and realized several times (as when delivered to different students), and then HTML
+ * is generated for each realization repeatedly (as when a homework session regenerates it as the student works). Only
+ * HTML generation is timed.
+ *
+ * <p>
+ * The cache of HTML for static content is fixed for the life of the JVM, so to measure its effect, run the harness
+ * twice: once as is, and once with {@code -Dmathops.fragmentCache=false}.
+ */
+enum ProblemRenderBenchmark {
+    ;
+
+    /** The number of realizations per problem. */
+    private static final int REALIZATIONS = 5;
+
+    /** The number of times HTML is generated for each realization. */
+    private static final int RENDERS = 5;
+
+    /**
+     * Realizes copies of all problems.
+     *
+     * @param cache the instructional cache
+     * @return the realized problems
+     */
+    private static List<AbstractProblemTemplate> realizeAll(final InstructionalCache cache) {
+
+        final List<String> refs = cache.getProblemFileRefs();
+        final List<AbstractProblemTemplate> result = new ArrayList<>(refs.size() * REALIZATIONS);
+
+        for (final String ref : refs) {
+            final AbstractProblemTemplate template = InstructionalCache.getProblemTemplate(ref);
+
+            if (template != null) {
+                for (int i = 0; i < REALIZATIONS; ++i) {
+                    final AbstractProblemTemplate copy = template.deepCopy();
+                    if (copy.realize(copy.evalContext)) {
+                        result.add(copy);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Measures the rate at which problem HTML is generated.
+     *
+     * @param problems the realized problems
+     * @return the number of problems rendered per second
+     */
+    private static double measure(final List<AbstractProblemTemplate> problems) {
+
+        // Warm up (this also fills the fragment cache, if enabled, as a running server's would be)
+        for (final AbstractProblemTemplate problem : problems) {
+            ProblemConverter.populateProblemHtml(problem, new int[]{1});
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < RENDERS; ++i) {
+            for (final AbstractProblemTemplate problem : problems) {
+                ProblemConverter.populateProblemHtml(problem, new int[]{1});
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        return (double) (problems.size() * RENDERS) / ((double) elapsed / 1.0e9);
+    }
+
+    /**
+     * Main method to execute the benchmark.
+     *
+     * @param args command-line arguments
+     */
+    public static void main(final String... args) {
+
+        final InstructionalCache cache = InstructionalCache.getInstance();
+        cache.rescan();
+
+        final List<AbstractProblemTemplate> problems = realizeAll(cache);
+
+        final double rate = measure(problems);
+
+        System.out.printf("%,d realized problems%n", Integer.valueOf(problems.size()));
+        System.out.printf("%s fragment cache %,.1f pages/s%n",
+                DocObjectConverter.FRAGMENT_CACHE_ENABLED ? "with" : "without", Double.valueOf(rate));
+    }
+}
@@ -7,6 +7,8 @@ import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
@@ -16,10 +18,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides font management for a packaged set of fonts. This allows fonts to be bundled with an application, without
  * dependence on a set of fonts being installed on a client machine.
+ *
+ * <p>
+ * Derived fonts and their measurements are cached, since layout requests the same few fonts many times for every
+ * document it lays out. The caches are concurrent, so layout may run on many threads at once.
  */
 public final class BundledFontManager {
 
@@ -44,6 +52,9 @@ public final class BundledFontManager {
     /** Estimated count of bundled fonts. */
     private static final int ESTIMATED_COUNT = 20;
 
+    /** The maximum number of derived fonts (or font measurements) to cache. */
+    private static final int MAX_CACHED = 2000;
+
     /** Object on which to synchronize static instance creation. */
     private static final Object INSTANCE_SYNCH = new Object();
 
@@ -56,7 +67,7 @@ public final class BundledFontManager {
     /** Object on which to synchronize member variable access. */
     private final Object synch;
 
-    /** The {@code Graphics} of the off-screen buffered image. */
+    /** The {@code Graphics} of the off-screen buffered image (accessed only while synchronized on synch). */
     private Graphics grx;
 
     /** A map of 1-point fonts as read from the font directory. */
@@ -65,6 +76,15 @@ public final class BundledFontManager {
     /** Storage for error messages generated by the font manager. */
     private final List<String> reasons;
 
+    /** Cached derived fonts. */
+    private final Map<FontKey, Font> derived;
+
+    /** Cached style variants of fonts, indexed by style. */
+    private final Map<Font, Font[]> styleVariants;
+
+    /** Cached measurements of fonts, taken using the current {@code Graphics}. */
+    private final Map<Font, FontMeasures> measures;
+
     /** The names of the installed fonts. */
     private String[] names;
 
@@ -79,6 +99,10 @@ public final class BundledFontManager {
         final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
         this.grx = image.getGraphics();
         this.reasons = new ArrayList<>(ESTIMATED_COUNT);
+
+        this.derived = new ConcurrentHashMap<>(100);
+        this.styleVariants = new ConcurrentHashMap<>(100);
+        this.measures = new ConcurrentHashMap<>(100);
     }
 
     /**
@@ -257,19 +281,84 @@ public final class BundledFontManager {
 
         final String actual = actualFontName(name);
         final int style2 = style & (Font.BOLD | Font.ITALIC);
-        final Font onePoint = this.fonts.get(actual);
+        final FontKey key = new FontKey(actual, (float) size, style2);
+
+        Font result = this.derived.get(key);
+
+        if (result == null) {
+            final Font onePoint = this.fonts.get(actual);
+
+            if (onePoint == null) {
+                // Emergency fall back
+                Log.warning(new IOException("Unable to get font " + name + " (" + actual + "), " + size
+                        + " pt, using SANS as fallback"));
+                result = new Font(SANS, style2, (int) size);
+            } else {
+                result = onePoint.deriveFont(style2, (float) size);
+                if (this.derived.size() < MAX_CACHED) {
+                    this.derived.putIfAbsent(key, result);
+                }
+            }
+        }
 
-        final Font derived;
-        if (onePoint == null) {
-            // Emergency fall back
-            Log.warning(new IOException("Unable to get font " + name + " (" + actual + "), " + size
-                    + " pt, using SANS as fallback"));
-            derived = new Font(SANS, style2, (int) size);
-        } else {
-            derived = onePoint.deriveFont(style2, (float) size);
+        return result;
+    }
+
+    /**
+     * Retrieves a font in the same face and size as a given font, but in a different style (this is equivalent to
+     * {@code font.deriveFont(style)}, but the result is cached).
+     *
+     * @param font  the font
+     * @param style the style, as defined in the {@code Font} class
+     * @return the font in the requested style
+     */
+    public Font getStyledFont(final Font font, final int style) {
+
+        final int style2 = style & (Font.BOLD | Font.ITALIC);
+
+        Font[] variants = this.styleVariants.get(font);
+        if (variants == null) {
+            variants = new Font[4];
+            if (this.styleVariants.size() < MAX_CACHED) {
+                final Font[] existing = this.styleVariants.putIfAbsent(font, variants);
+                if (existing != null) {
+                    variants = existing;
+                }
+            }
+        }
+
+        // Races may derive a variant twice, but the results are equal
+        Font result = variants[style2];
+        if (result == null) {
+            result = font.deriveFont(style2);
+            variants[style2] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieves the measurements of a font, taken using the {@code Graphics} used to generate font metrics. This may be
+     * called from any thread.
+     *
+     * @param font the font
+     * @return the measurements
+     */
+    public FontMeasures getFontMeasures(final Font font) {
+
+        FontMeasures result = this.measures.get(font);
+
+        if (result == null) {
+            result = new FontMeasures(getFontMetrics(font));
+            if (this.measures.size() < MAX_CACHED) {
+                final FontMeasures existing = this.measures.putIfAbsent(font, result);
+                if (existing != null) {
+                    result = existing;
+                }
+            }
         }
 
-        return derived;
+        return result;
     }
 
     /**
@@ -297,7 +386,25 @@ public final class BundledFontManager {
      */
     public void setGraphics(final Graphics graphics) {
 
-        this.grx = graphics;
+        synchronized (this.synch) {
+            if (!Objects.equals(renderContext(this.grx), renderContext(graphics))) {
+                // Measurements taken with the old graphics may not apply to the new graphics
+                this.measures.clear();
+            }
+
+            this.grx = graphics;
+        }
+    }
+
+    /**
+     * Gets the font render context of a {@code Graphics}.
+     *
+     * @param graphics the {@code Graphics} object
+     * @return the font render context; {@code null} if {@code graphics} is not a {@code Graphics2D}
+     */
+    private static FontRenderContext renderContext(final Graphics graphics) {
+
+        return graphics instanceof final Graphics2D g2d ? g2d.getFontRenderContext() : null;
     }
 
     /**
@@ -307,19 +414,23 @@ public final class BundledFontManager {
      */
     public Graphics getGraphics() {
 
-        return this.grx;
+        synchronized (this.synch) {
+            return this.grx;
+        }
     }
 
     /**
      * Retrieves a font metrics object for a font, using the {@code Graphics} that is associated with the off-screen
-     * image.
+     * image. Layout should use {@code getFontMeasures} instead, which does not contend for the shared {@code Graphics}.
      *
      * @param font the font for which to get metrics
      * @return the metrics for the font
      */
     public FontMetrics getFontMetrics(final Font font) {
 
-        return this.grx.getFontMetrics(font);
+        synchronized (this.synch) {
+            return this.grx.getFontMetrics(font);
+        }
     }
 
     /**
@@ -333,6 +444,16 @@ public final class BundledFontManager {
         this.reasons.add(err);
     }
 
+    /**
+     * The key under which a derived font is cached.
+     *
+     * @param name  the actual font name
+     * @param size  the point size
+     * @param style the style
+     */
+    private record FontKey(String name, float size, int style) {
+    }
+
     /**
      * Main method for testing.
      *
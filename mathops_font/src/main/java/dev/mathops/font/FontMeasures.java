@@ -0,0 +1,254 @@
+package dev.mathops.font;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Measurements of a font that are used during layout, taken once from the font's metrics so that text can be measured
+ * without going through AWT {@code FontMetrics} (which requires a shared {@code Graphics}).
+ *
+ * <p>
+ * Ascent, descent, and leading are copied from the font metrics, and the bounds of the "M" and "y" glyphs (used by
+ * layout to position baselines and center lines) are computed when the object is created. Advance widths are kept in a
+ * table indexed by character, with printable ASCII characters filled when the object is created and other characters
+ * filled on first use. String widths are the sum of character advances, rounded, which is how {@code FontMetrics}
+ * computes them for text that needs no complex layout; strings with characters outside the ranges known to be simple
+ * are measured with the font metrics instead.
+ *
+ * <p>
+ * Instances are safe to use from multiple threads. Table entries may be computed more than once by racing threads,
+ * but always to the same value.
+ */
+public final class FontMeasures {
+
+    /** The number of characters whose advances are kept in the table. */
+    private static final int TABLE_SIZE = 0x2C00;
+
+    /** The font. */
+    private final Font font;
+
+    /** The font metrics, used only for text that is not simple. */
+    private final FontMetrics metrics;
+
+    /** The font render context. */
+    private final FontRenderContext frc;
+
+    /** The ascent from the font metrics. */
+    private final int ascent;
+
+    /** The descent from the font metrics. */
+    private final int descent;
+
+    /** The leading from the font metrics. */
+    private final int leading;
+
+    /** The distance from the baseline to the top of the "M" glyph outline. */
+    private final double capHeight;
+
+    /** The distance from the baseline to the bottom of the "y" glyph outline. */
+    private final double descenderDepth;
+
+    /** Character advances; {@code NaN} where not yet computed. */
+    private final float[] advances;
+
+    /**
+     * Constructs a new {@code FontMeasures}.
+     *
+     * @param theMetrics the font metrics from which to take measurements
+     */
+    FontMeasures(final FontMetrics theMetrics) {
+
+        this.font = theMetrics.getFont();
+        this.metrics = theMetrics;
+        this.frc = theMetrics.getFontRenderContext();
+
+        this.ascent = theMetrics.getAscent();
+        this.descent = theMetrics.getDescent();
+        this.leading = theMetrics.getLeading();
+
+        final GlyphVector gv = this.font.createGlyphVector(this.frc, "My");
+        this.capHeight = -gv.getGlyphOutline(0).getBounds2D().getMinY();
+        this.descenderDepth = gv.getGlyphOutline(1).getBounds2D().getMaxY();
+
+        this.advances = new float[TABLE_SIZE];
+        Arrays.fill(this.advances, Float.NaN);
+        for (int ch = 0x20; ch < 0x7F; ++ch) {
+            this.advances[ch] = computeAdvance((char) ch);
+        }
+    }
+
+    /**
+     * Gets the font.
+     *
+     * @return the font
+     */
+    public Font getFont() {
+
+        return this.font;
+    }
+
+    /**
+     * Gets the font render context in which measurements were taken.
+     *
+     * @return the font render context
+     */
+    public FontRenderContext getFontRenderContext() {
+
+        return this.frc;
+    }
+
+    /**
+     * Gets the ascent (as reported by {@code FontMetrics}).
+     *
+     * @return the ascent
+     */
+    public int getAscent() {
+
+        return this.ascent;
+    }
+
+    /**
+     * Gets the descent (as reported by {@code FontMetrics}).
+     *
+     * @return the descent
+     */
+    public int getDescent() {
+
+        return this.descent;
+    }
+
+    /**
+     * Gets the leading (as reported by {@code FontMetrics}).
+     *
+     * @return the leading
+     */
+    public int getLeading() {
+
+        return this.leading;
+    }
+
+    /**
+     * Gets the standard height of a line of text (the sum of leading, ascent, and descent).
+     *
+     * @return the height
+     */
+    public int getHeight() {
+
+        return this.leading + this.ascent + this.descent;
+    }
+
+    /**
+     * Gets the distance from the baseline to the top of the outline of the "M" glyph.
+     *
+     * @return the height
+     */
+    public double getCapHeight() {
+
+        return this.capHeight;
+    }
+
+    /**
+     * Gets the distance from the baseline to the bottom of the outline of the "y" glyph.
+     *
+     * @return the depth
+     */
+    public double getDescenderDepth() {
+
+        return this.descenderDepth;
+    }
+
+    /**
+     * Computes the width of a string, as {@code FontMetrics.stringWidth} would.
+     *
+     * @param str the string
+     * @return the width
+     */
+    public int stringWidth(final String str) {
+
+        final int len = str.length();
+        float total = 0.0f;
+        boolean simple = true;
+
+        for (int i = 0; i < len; ++i) {
+            final char ch = str.charAt(i);
+
+            if (isSimple(ch)) {
+                float adv = this.advances[ch];
+                if (Float.isNaN(adv)) {
+                    adv = computeAdvance(ch);
+                    this.advances[ch] = adv;
+                }
+                total += adv;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+
+        final int result;
+
+        if (simple) {
+            result = (int) (0.5f + total);
+        } else {
+            synchronized (this.metrics) {
+                result = this.metrics.stringWidth(str);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the advance of a single character.
+     *
+     * @param ch the character
+     * @return the advance
+     */
+    private float computeAdvance(final char ch) {
+
+        final Rectangle2D bounds = this.font.getStringBounds(new char[]{ch}, 0, 1, this.frc);
+
+        return (float) bounds.getWidth();
+    }
+
+    /**
+     * Tests whether a character is in a range whose characters are laid out by simply summing their advances (no
+     * combining marks, bidirectional text, or complex scripts), and whose advances are kept in the table.
+     *
+     * @param ch the character
+     * @return true if the character is simple
+     */
+    private static boolean isSimple(final char ch) {
+
+        final boolean result;
+
+        if (ch < 0x0300) {
+            result = true;
+        } else if (ch < 0x0370) {
+            // Combining diacritical marks
+            result = false;
+        } else if (ch < 0x0590) {
+            // Greek, Cyrillic, Armenian
+            result = true;
+        } else if (ch < 0x2000) {
+            // Hebrew, Arabic, and other complex scripts
+            result = false;
+        } else if (ch < 0x20D0) {
+            // General punctuation, super/subscripts, and currency, excluding formatting controls
+            result = !((ch >= 0x200C && ch <= 0x200F) || (ch >= 0x202A && ch <= 0x202E)
+                       || (ch >= 0x2066 && ch <= 0x206F));
+        } else if (ch < 0x2100) {
+            // Combining marks for symbols
+            result = false;
+        } else {
+            // Letter-like symbols through supplemental math operators and miscellaneous symbols and arrows
+            result = ch < TABLE_SIZE;
+        }
+
+        return result;
+    }
+}
@@ -17,6 +17,7 @@ import dev.mathops.db.schema.legacy.rec.RawStcourse;
 import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.live.rec.LiveReg;
 import dev.mathops.db.schema.main.rec.TermRec;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.sql.SQLException;
@@ -149,6 +150,9 @@ public final class CsuLiveRegChecker {
                 } else {
                     removeFatalHolds(cache, stuId, "23", "07");
                 }
+
+                // The checks above may have changed the student, registration, or hold rows
+                StudentStatusCache.getInstance().invalidate(stuId);
             }
         }
     }
@@ -0,0 +1,88 @@
+package dev.mathops.session;
+
+/**
+ * The types of record stored for a delivered exam in an {@code ExamArchive}. Each type corresponds to a file that was
+ * stored in the exam's directory before exams were archived.
+ */
+public enum EExamRecordType {
+
+    /** The XML of the reply that presented the exam. */
+    EXAM((byte) 1, "exam.xml.Z"),
+
+    /** The most recent set of answers submitted. */
+    ANSWERS((byte) 2, "answers.txt.Z"),
+
+    /** The most recent set of answers submitted through recovery. */
+    RECOVERY((byte) 3, "recovery.txt.Z"),
+
+    /** A block of exam activity log lines (all blocks are concatenated when read). */
+    ACTIVITY((byte) 4, "exam_activity.log");
+
+    /** The code stored in archive records. */
+    final byte code;
+
+    /** The name of the file in which records of this type were stored in a per-exam directory. */
+    public final String legacyFilename;
+
+    /**
+     * Constructs a new {@code EExamRecordType}.
+     *
+     * @param theCode           the code stored in archive records
+     * @param theLegacyFilename the name of the file in which records of this type were stored in a per-exam directory
+     */
+    EExamRecordType(final byte theCode, final String theLegacyFilename) {
+
+        this.code = theCode;
+        this.legacyFilename = theLegacyFilename;
+    }
+
+    /**
+     * Tests whether a record of this type is appended to, rather than replaced by, later records.
+     *
+     * @return {@code true} if all records are retained and concatenated when read
+     */
+    public boolean isCumulative() {
+
+        return this == ACTIVITY;
+    }
+
+    /**
+     * Finds the type with a particular code.
+     *
+     * @param code the code
+     * @return the type; {@code null} if none has the code
+     */
+    static EExamRecordType forCode(final byte code) {
+
+        EExamRecordType result = null;
+
+        for (final EExamRecordType value : values()) {
+            if (value.code == code) {
+                result = value;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the type stored in a legacy file with a particular name.
+     *
+     * @param filename the filename
+     * @return the type; {@code null} if none is stored in a file with that name
+     */
+    public static EExamRecordType forLegacyFilename(final String filename) {
+
+        EExamRecordType result = null;
+
+        for (final EExamRecordType value : values()) {
+            if (value.legacyFilename.equals(filename)) {
+                result = value;
+                break;
+            }
+        }
+
+        return result;
+    }
+}
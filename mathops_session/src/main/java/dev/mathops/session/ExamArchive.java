@@ -0,0 +1,920 @@
+package dev.mathops.session;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An append-only store of delivered exam records (presented exam XML, answers, recovery answers, and activity logs) for
+ * one term. This replaces the directory per student per exam (with separate compressed files for each record) used
+ * previously, which grew to millions of small files per year.
+ *
+ * <p>
+ * Records are appended to numbered segment files ("exams-00001.seg", ...). A new segment is started when the current
+ * one reaches {@code MAX_SEGMENT_SIZE}. Each record has the form [length:int][crc32:int][body], where the body is
+ * [type:byte][compression:byte][serial:long][timestamp:long][rawLength:int][idLength:byte][studentId][payload]. The
+ * payload is deflated using a preset dictionary of common exam XML fragments, which compresses small records far better
+ * than independent gzip files.
+ *
+ * <p>
+ * Each segment has an index file ("exams-00001.idx") of [offset:long][length:int][type:byte][serial:long]
+ * [idLength:byte][studentId] entries, appended after each record, from which the in-memory index keyed by (student,
+ * serial, type) is built when the archive is opened. Records at the end of a segment that are missing from its index
+ * (from a crash between the two writes) are recovered by scanning the segment, and a truncated or corrupt record at the
+ * end of the newest segment is discarded.
+ *
+ * <p>
+ * Reads of a single record use positional reads of the segment channel and never block appends. A later record of the
+ * same key replaces an earlier one, except for activity records, all of which are retained and concatenated. Each
+ * appended record is forced to storage before its index entry is written and the append returns, so a record whose
+ * append succeeded survives a crash (index entries are not forced, since they can be rebuilt from the segment).
+ *
+ * <p>
+ * Archives are obtained through {@code get}, which returns a shared instance per directory. Opening an archive creates
+ * nothing on disk; the directory and first segment are created by the first append. All open archives are closed by
+ * {@code closeAll} when the server shuts down.
+ */
+public final class ExamArchive {
+
+    /** The prefix of segment and index filenames. */
+    private static final String FILENAME_PREFIX = "exams-";
+
+    /** The suffix of segment filenames. */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /** The suffix of index filenames. */
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /** The segment size at which a new segment is started. */
+    private static final long MAX_SEGMENT_SIZE = 256L * 1024L * 1024L;
+
+    /** The largest record body accepted when reading. */
+    private static final int MAX_RECORD_LEN = 64 * 1024 * 1024;
+
+    /** The length of the [length][crc32] header that precedes each record body. */
+    private static final int HEADER_LEN = 8;
+
+    /** The length of the fixed part of a record body (the fields before the student ID length). */
+    private static final int BODY_FIXED_LEN = 22;
+
+    /** The length of the fixed part of an index entry (the fields before the student ID). */
+    private static final int INDEX_FIXED_LEN = 22;
+
+    /** Compression code for a payload stored without compression. */
+    private static final byte STORED = 0;
+
+    /**
+     * Compression code for a payload deflated with {@code DICTIONARY}. The dictionary must never change: a different
+     * dictionary requires a new compression code.
+     */
+    private static final byte DEFLATED_DICT1 = 1;
+
+    /** The preset dictionary for deflated payloads, with the most common fragments at the end. */
+    private static final byte[] DICTIONARY = String.join("",
+            "<condition></condition><letter-if><valid-if><pass-if><reference><image></image><width></width>",
+            "<height></height><sub></sub><sup></sup><table></table><tr><td></td></tr><ol><li></li></ol>",
+            "<exclude></exclude><min></min><max></max><param></param><expr></expr><formula></formula>",
+            "answers.txt.Z recovery.txt.Z get-review-exam-reply> ",
+            " num-choices=\" random-order=\" current-section=\" current-problem=\" created=\" completed=\"",
+            " bg-color=\" max-denom=\" format=\" condition=\" correct=\" position=\" points=\" presented=\"",
+            " weight=\" unit=\" time-limit=\" short-name=\" serial-number=\" seed=\" score=\" result=\"",
+            " realized=\" problem-id=\" course=\" version=\" value-type=\" type=\"string\" type=\"long\"",
+            " type=\"double\" type=\"boolean\" type=\"irrational\" type=\"int-vector\"",
+            "<span></span><input></input><enabled></enabled><text></text><math></math>",
+            "<get-exam-reply><exam </exam><exam-section</exam-section><exam-problem</exam-problem>",
+            "<problem-multiple-choice</problem-multiple-choice><problem-numeric</problem-numeric>",
+            "<choice </choice><var name=\"</var><span>",
+            "</span> id=\" value=\" name=\"").getBytes(StandardCharsets.UTF_8);
+
+    /** Open archives, keyed by absolute directory. */
+    private static final Map<File, ExamArchive> ARCHIVES = new ConcurrentHashMap<>(10);
+
+    /** The directory containing the segment and index files. */
+    private final File dir;
+
+    /** Object on which to synchronize appends and closing. */
+    private final Object synch;
+
+    /** The location of the latest record for each key. */
+    private final Map<Key, Location> index;
+
+    /** Channels from which to read each segment, keyed by segment number. */
+    private final Map<Integer, FileChannel> readers;
+
+    /** The number of the segment to which records are appended (0 if none exists). */
+    private int currentSegment;
+
+    /** The channel to which records are appended; {@code null} if no segment exists. */
+    private FileChannel segmentChannel;
+
+    /** The channel to which index entries are appended; {@code null} if no segment exists. */
+    private FileChannel indexChannel;
+
+    /** True once the archive has been closed. */
+    private boolean closed;
+
+    /**
+     * Constructs a new {@code ExamArchive}.
+     *
+     * @param theDir the directory containing the segment and index files
+     */
+    private ExamArchive(final File theDir) {
+
+        this.dir = theDir;
+        this.synch = new Object();
+        this.index = new ConcurrentHashMap<>(10000);
+        this.readers = new ConcurrentHashMap<>(10);
+    }
+
+    /**
+     * Gets the archive stored in a directory, opening it if this is the first request.
+     *
+     * @param dir the directory (which need not exist yet)
+     * @return the archive; {@code null} if an existing archive could not be opened
+     */
+    public static ExamArchive get(final File dir) {
+
+        final File key = dir.getAbsoluteFile();
+        ExamArchive archive = ARCHIVES.get(key);
+
+        if (archive == null) {
+            synchronized (ARCHIVES) {
+                archive = ARCHIVES.get(key);
+
+                if (archive == null) {
+                    final ExamArchive opened = new ExamArchive(key);
+                    try {
+                        opened.open();
+                        ARCHIVES.put(key, opened);
+                        archive = opened;
+                    } catch (final IOException ex) {
+                        Log.severe("Failed to open exam archive in ", key.getAbsolutePath(), ex);
+                        opened.close();
+                    }
+                }
+            }
+        }
+
+        return archive;
+    }
+
+    /**
+     * Closes all open archives.
+     */
+    public static void closeAll() {
+
+        for (final ExamArchive archive : new ArrayList<>(ARCHIVES.values())) {
+            archive.close();
+        }
+    }
+
+    /**
+     * Opens the archive, loading the index of every segment and recovering any records missing from an index.
+     *
+     * @throws IOException if a segment or index could not be read
+     */
+    private void open() throws IOException {
+
+        final File[] files = this.dir.listFiles();
+        final List<Integer> numbers = new ArrayList<>(10);
+
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                if (name.startsWith(FILENAME_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        numbers.add(Integer.valueOf(name.substring(FILENAME_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (final NumberFormatException ex) {
+                        Log.warning("Ignoring unrecognized file in exam archive: ", file.getAbsolutePath());
+                    }
+                }
+            }
+        }
+
+        Collections.sort(numbers);
+
+        final long start = System.nanoTime();
+        final int numSegments = numbers.size();
+        for (int i = 0; i < numSegments; ++i) {
+            loadSegment(numbers.get(i).intValue(), i == numSegments - 1);
+        }
+
+        if (numSegments > 0) {
+            final int last = numbers.get(numSegments - 1).intValue();
+            openForAppend(last);
+
+            Log.info("Opened exam archive in ", this.dir.getAbsolutePath(), " with ", Integer.toString(numSegments),
+                    " segments and ", Integer.toString(this.index.size()), " records in ",
+                    Long.toString((System.nanoTime() - start) / 1000000L), " ms");
+        }
+    }
+
+    /**
+     * Loads the index of a segment, then scans any records after the last indexed record, adding them to the index and
+     * the index file.
+     *
+     * @param number the segment number
+     * @param isLast true if this is the newest segment (whose tail is truncated if it is corrupt)
+     * @throws IOException if the segment or index could not be read
+     */
+    private void loadSegment(final int number, final boolean isLast) throws IOException {
+
+        final File segFile = segmentFile(number);
+        final File idxFile = indexFile(number);
+
+        final FileChannel reader = FileChannel.open(segFile.toPath(), StandardOpenOption.READ);
+        this.readers.put(Integer.valueOf(number), reader);
+        final long segSize = reader.size();
+
+        // Load the index, stopping at the first incomplete entry or one that points past the end of the segment
+        long indexedEnd = 0L;
+        long idxValid = 0L;
+
+        if (idxFile.exists()) {
+            try (final InputStream fis = Files.newInputStream(idxFile.toPath());
+                 final DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 65536))) {
+
+                while (true) {
+                    final long offset = in.readLong();
+                    final int length = in.readInt();
+                    final byte code = in.readByte();
+                    final long serial = in.readLong();
+                    final byte[] id = new byte[in.readUnsignedByte()];
+                    in.readFully(id);
+
+                    final EExamRecordType type = EExamRecordType.forCode(code);
+                    final long end = offset + (long) HEADER_LEN + (long) length;
+                    if (type == null || end > segSize) {
+                        break;
+                    }
+
+                    addToIndex(new Key(new String(id, StandardCharsets.UTF_8), serial, type),
+                            number, offset, length);
+                    indexedEnd = Math.max(indexedEnd, end);
+                    idxValid += (long) (INDEX_FIXED_LEN + id.length);
+                }
+            } catch (final EOFException ex) {
+                // Normal end of the index (possibly with a partial entry from a crash)
+            }
+        }
+
+        // Recover records written after the last index entry
+        final List<byte[]> recovered = new ArrayList<>(0);
+        long pos = indexedEnd;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LEN);
+
+        while (pos < segSize) {
+            header.clear();
+            final boolean headerOk = readFully(reader, header, pos);
+            final int length = headerOk ? header.getInt(0) : -1;
+            final int crc = headerOk ? header.getInt(4) : 0;
+
+            ByteBuffer body = null;
+            if (length >= BODY_FIXED_LEN + 1 && length <= MAX_RECORD_LEN
+                    && pos + (long) HEADER_LEN + (long) length <= segSize) {
+                body = ByteBuffer.allocate(length);
+                if (!readFully(reader, body, pos + (long) HEADER_LEN) || crcOf(body.array()) != crc) {
+                    body = null;
+                }
+            }
+
+            final Key key = body == null ? null : keyOf(body.array());
+            if (key == null) {
+                if (isLast) {
+                    Log.warning("Discarding corrupt data at offset ", Long.toString(pos), " of ",
+                            segFile.getAbsolutePath());
+                    try (final FileChannel trunc = FileChannel.open(segFile.toPath(), StandardOpenOption.WRITE)) {
+                        trunc.truncate(pos);
+                    }
+                } else {
+                    Log.warning("Corrupt data at offset ", Long.toString(pos), " of ", segFile.getAbsolutePath());
+                }
+                break;
+            }
+
+            addToIndex(key, number, pos, length);
+            recovered.add(makeIndexEntry(key, pos, length));
+            pos += (long) HEADER_LEN + (long) length;
+        }
+
+        // Drop any partial index entry, then append entries for recovered records
+        final boolean idxNeedsTruncate = idxFile.exists() && idxFile.length() != idxValid;
+        if (idxNeedsTruncate || !recovered.isEmpty()) {
+            try (final FileChannel idx = FileChannel.open(idxFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                idx.truncate(idxValid);
+                long idxPos = idxValid;
+                for (final byte[] entry : recovered) {
+                    final ByteBuffer buf = ByteBuffer.wrap(entry);
+                    while (buf.hasRemaining()) {
+                        idxPos += (long) idx.write(buf, idxPos);
+                    }
+                }
+            }
+            if (!recovered.isEmpty()) {
+                Log.info("Recovered ", Integer.toString(recovered.size()), " unindexed records in ",
+                        segFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Opens the channels to which records and index entries are appended.
+     *
+     * @param number the segment number
+     * @throws IOException if the channels could not be opened
+     */
+    private void openForAppend(final int number) throws IOException {
+
+        if (this.segmentChannel != null) {
+            this.segmentChannel.close();
+            this.indexChannel.close();
+        }
+
+        this.segmentChannel = FileChannel.open(segmentFile(number).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.indexChannel = FileChannel.open(indexFile(number).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.currentSegment = number;
+
+        final Integer key = Integer.valueOf(number);
+        if (!this.readers.containsKey(key)) {
+            this.readers.put(key, FileChannel.open(segmentFile(number).toPath(), StandardOpenOption.READ));
+        }
+    }
+
+    /**
+     * Gets the file that stores a segment.
+     *
+     * @param number the segment number
+     * @return the file
+     */
+    private File segmentFile(final int number) {
+
+        return new File(this.dir, FILENAME_PREFIX + String.format("%05d", Integer.valueOf(number)) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Gets the file that stores the index of a segment.
+     *
+     * @param number the segment number
+     * @return the file
+     */
+    private File indexFile(final int number) {
+
+        return new File(this.dir, FILENAME_PREFIX + String.format("%05d", Integer.valueOf(number)) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Adds a record location to the index.
+     *
+     * @param key     the record key
+     * @param segment the segment number
+     * @param offset  the offset of the record in the segment
+     * @param length  the length of the record body
+     */
+    private void addToIndex(final Key key, final int segment, final long offset, final int length) {
+
+        if (key.type().isCumulative()) {
+            this.index.compute(key, (k, prior) -> new Location(segment, offset, length, prior));
+        } else {
+            this.index.put(key, new Location(segment, offset, length, null));
+        }
+    }
+
+    /**
+     * Tests whether the archive contains a record.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @return {@code true} if a record of the specified type exists for the exam
+     */
+    public boolean contains(final String studentId, final long serial, final EExamRecordType type) {
+
+        return this.index.containsKey(new Key(studentId, serial, type));
+    }
+
+    /**
+     * Appends a record to the archive. For all types except {@code ACTIVITY}, the record replaces any existing record
+     * with the same student, serial number, and type.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @param data      the record data
+     * @return {@code true} if the record was written
+     */
+    public boolean append(final String studentId, final long serial, final EExamRecordType type,
+                          final byte[] data) {
+
+        return append(studentId, serial, type, data, false);
+    }
+
+    /**
+     * Appends a record to the archive only if there is no record with the same student, serial number, and type. The
+     * test and the append are atomic, so of two concurrent appends with the same key, only one is written.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @param data      the record data
+     * @return {@code true} if the record was written; {@code false} if a record with the key exists or the record could
+     *         not be written
+     */
+    public boolean appendIfAbsent(final String studentId, final long serial, final EExamRecordType type,
+                                  final byte[] data) {
+
+        return append(studentId, serial, type, data, true);
+    }
+
+    /**
+     * Appends a record to the archive.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @param data      the record data
+     * @param ifAbsent  {@code true} to append only if there is no record with the same key
+     * @return {@code true} if the record was written
+     */
+    private boolean append(final String studentId, final long serial, final EExamRecordType type,
+                           final byte[] data, final boolean ifAbsent) {
+
+        final byte[] id = studentId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > 255) {
+            Log.warning("Invalid student ID for exam archive: '", studentId, "'");
+            return false;
+        }
+
+        // Compress and frame the record before taking the lock
+        final byte[] deflated = deflate(data);
+        final boolean useDeflated = deflated.length < data.length;
+        final byte[] payload = useDeflated ? deflated : data;
+
+        final int length = BODY_FIXED_LEN + 1 + id.length + payload.length;
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_LEN + length);
+        record.putInt(length);
+        record.putInt(0);
+        record.put(type.code);
+        record.put(useDeflated ? DEFLATED_DICT1 : STORED);
+        record.putLong(serial);
+        record.putLong(System.currentTimeMillis());
+        record.putInt(data.length);
+        record.put((byte) id.length);
+        record.put(id);
+        record.put(payload);
+
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_LEN, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        final Key key = new Key(studentId, serial, type);
+        boolean ok = false;
+
+        synchronized (this.synch) {
+            if (this.closed) {
+                Log.warning("Attempt to append to closed exam archive in ", this.dir.getAbsolutePath());
+            } else if (ifAbsent && this.index.containsKey(key)) {
+                Log.warning("Exam archive in ", this.dir.getAbsolutePath(), " already has ", type.name(),
+                        " record for exam ", Long.toString(serial), " for ", studentId);
+            } else {
+                try {
+                    if (this.segmentChannel == null) {
+                        if (!this.dir.exists() && !this.dir.mkdirs()) {
+                            throw new IOException("Unable to create " + this.dir.getAbsolutePath());
+                        }
+                        openForAppend(1);
+                    } else if (this.segmentChannel.size() > 0L
+                               && this.segmentChannel.size() + (long) record.remaining() > MAX_SEGMENT_SIZE) {
+                        openForAppend(this.currentSegment + 1);
+                    }
+
+                    final long offset = this.segmentChannel.size();
+                    while (record.hasRemaining()) {
+                        this.segmentChannel.write(record);
+                    }
+                    this.segmentChannel.force(false);
+
+                    final ByteBuffer entry = ByteBuffer.wrap(makeIndexEntry(key, offset, length));
+                    while (entry.hasRemaining()) {
+                        this.indexChannel.write(entry);
+                    }
+
+                    addToIndex(key, this.currentSegment, offset, length);
+                    ok = true;
+                } catch (final IOException ex) {
+                    Log.severe("Failed to append to exam archive in ", this.dir.getAbsolutePath(), ex);
+                }
+            }
+        }
+
+        return ok;
+    }
+
+    /**
+     * Reads a record from the archive. For {@code ACTIVITY} records, the data from all records is concatenated in the
+     * order they were written.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @return the record data; {@code null} if there is no such record or it could not be read
+     */
+    public byte[] read(final String studentId, final long serial, final EExamRecordType type) {
+
+        Location loc = this.index.get(new Key(studentId, serial, type));
+        byte[] result = null;
+
+        if (loc != null) {
+            if (loc.previous() == null) {
+                final ArchivedRecord rec = readRecord(loc);
+                result = rec == null ? null : rec.data();
+            } else {
+                final List<byte[]> parts = new ArrayList<>(10);
+                int total = 0;
+                while (loc != null) {
+                    final ArchivedRecord rec = readRecord(loc);
+                    if (rec != null) {
+                        parts.add(rec.data());
+                        total += rec.data().length;
+                    }
+                    loc = loc.previous();
+                }
+
+                result = new byte[total];
+                int pos = 0;
+                for (int i = parts.size() - 1; i >= 0; --i) {
+                    final byte[] part = parts.get(i);
+                    System.arraycopy(part, 0, result, pos, part.length);
+                    pos += part.length;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the record at a location.
+     *
+     * @param loc the location
+     * @return the record; {@code null} if it could not be read
+     */
+    private ArchivedRecord readRecord(final Location loc) {
+
+        ArchivedRecord result = null;
+
+        final FileChannel reader = this.readers.get(Integer.valueOf(loc.segment()));
+        if (reader != null) {
+            final ByteBuffer buf = ByteBuffer.allocate(HEADER_LEN + loc.length());
+            try {
+                if (readFully(reader, buf, loc.offset()) && buf.getInt(0) == loc.length()) {
+                    final byte[] body = Arrays.copyOfRange(buf.array(), HEADER_LEN, HEADER_LEN + loc.length());
+                    if (crcOf(body) == buf.getInt(4)) {
+                        result = decode(body);
+                    }
+                }
+            } catch (final IOException | DataFormatException ex) {
+                Log.warning("Failed to read exam archive record in ", this.dir.getAbsolutePath(), ex);
+            }
+        }
+
+        if (result == null) {
+            Log.warning("Corrupt exam archive record at offset ", Long.toString(loc.offset()), " of segment ",
+                    Integer.toString(loc.segment()), " in ", this.dir.getAbsolutePath());
+        }
+
+        return result;
+    }
+
+    /**
+     * Streams all current records of a type, in the order they were written. Segments are read sequentially, so this
+     * is much faster than reading each record by key. Records written after the scan begins may not be included. For
+     * all types except {@code ACTIVITY}, records that have been replaced by a later record are skipped.
+     *
+     * @param type     the type of record to scan; {@code null} to scan all records
+     * @param consumer the consumer to which to deliver each record
+     * @return the number of records delivered
+     */
+    public int scan(final EExamRecordType type, final Consumer<? super ArchivedRecord> consumer) {
+
+        final List<Integer> numbers = new ArrayList<>(this.readers.keySet());
+        Collections.sort(numbers);
+        int count = 0;
+
+        for (final Integer number : numbers) {
+            final FileChannel reader = this.readers.get(number);
+
+            try {
+                final long size = reader.size();
+
+                try (final InputStream fis = Files.newInputStream(segmentFile(number.intValue()).toPath());
+                     final DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 1 << 18))) {
+
+                    long pos = 0L;
+                    while (pos < size) {
+                        final int length = in.readInt();
+                        final int crc = in.readInt();
+                        if (length < BODY_FIXED_LEN + 1 || length > MAX_RECORD_LEN) {
+                            throw new IOException("Invalid record length at offset " + pos);
+                        }
+                        final byte[] body = new byte[length];
+                        in.readFully(body);
+
+                        if (type == null || body[0] == type.code) {
+                            final Key key = keyOf(body);
+                            final Location current = key == null ? null : this.index.get(key);
+
+                            final boolean isCurrent = current != null && (key.type().isCumulative()
+                                    || current.offset() == pos && current.segment() == number.intValue());
+
+                            if (isCurrent) {
+                                if (crcOf(body) == crc) {
+                                    consumer.accept(decode(body));
+                                    ++count;
+                                } else {
+                                    Log.warning("Corrupt exam archive record at offset ", Long.toString(pos),
+                                            " of segment ", number, " in ", this.dir.getAbsolutePath());
+                                }
+                            }
+                        }
+
+                        pos += (long) HEADER_LEN + (long) length;
+                    }
+                }
+            } catch (final IOException | DataFormatException ex) {
+                Log.warning("Failed to scan segment ", number, " of exam archive in ", this.dir.getAbsolutePath(),
+                        ex);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes the archive and removes it from the set of open archives.
+     */
+    public void close() {
+
+        synchronized (this.synch) {
+            this.closed = true;
+
+            try {
+                if (this.segmentChannel != null) {
+                    this.segmentChannel.close();
+                    this.indexChannel.close();
+                }
+                for (final FileChannel reader : this.readers.values()) {
+                    reader.close();
+                }
+            } catch (final IOException ex) {
+                Log.warning("Failed to close exam archive in ", this.dir.getAbsolutePath(), ex);
+            }
+
+            this.segmentChannel = null;
+            this.indexChannel = null;
+            this.readers.clear();
+        }
+
+        ARCHIVES.remove(this.dir, this);
+    }
+
+    /**
+     * Reads from a channel at a position until a buffer is full or the end of the channel is reached.
+     *
+     * @param channel  the channel
+     * @param buf      the buffer
+     * @param position the position at which to start reading
+     * @return {@code true} if the buffer was filled
+     * @throws IOException if there is an error reading
+     */
+    private static boolean readFully(final FileChannel channel, final ByteBuffer buf, final long position)
+            throws IOException {
+
+        long pos = position;
+        while (buf.hasRemaining()) {
+            final int count = channel.read(buf, pos);
+            if (count < 0) {
+                break;
+            }
+            pos += (long) count;
+        }
+
+        return !buf.hasRemaining();
+    }
+
+    /**
+     * Computes the CRC32 of a record body.
+     *
+     * @param body the body
+     * @return the CRC32, as stored in the record header
+     */
+    private static int crcOf(final byte[] body) {
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Extracts the key from a record body.
+     *
+     * @param body the body
+     * @return the key; {@code null} if the body is malformed
+     */
+    private static Key keyOf(final byte[] body) {
+
+        final EExamRecordType type = EExamRecordType.forCode(body[0]);
+        final int idLen = (int) body[BODY_FIXED_LEN] & 0xFF;
+        Key result = null;
+
+        if (type != null && idLen > 0 && BODY_FIXED_LEN + 1 + idLen <= body.length) {
+            final ByteBuffer buf = ByteBuffer.wrap(body);
+            final String studentId = new String(body, BODY_FIXED_LEN + 1, idLen, StandardCharsets.UTF_8);
+            result = new Key(studentId, buf.getLong(2), type);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds an index entry.
+     *
+     * @param key    the record key
+     * @param offset the offset of the record in its segment
+     * @param length the length of the record body
+     * @return the index entry
+     */
+    private static byte[] makeIndexEntry(final Key key, final long offset, final int length) {
+
+        final byte[] id = key.studentId().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buf = ByteBuffer.allocate(INDEX_FIXED_LEN + id.length);
+
+        buf.putLong(offset);
+        buf.putInt(length);
+        buf.put(key.type().code);
+        buf.putLong(key.serial());
+        buf.put((byte) id.length);
+        buf.put(id);
+
+        return buf.array();
+    }
+
+    /**
+     * Decodes a record body.
+     *
+     * @param body the body (whose CRC has been verified)
+     * @return the record
+     * @throws DataFormatException if the body is malformed or its payload cannot be decompressed
+     */
+    private static ArchivedRecord decode(final byte[] body) throws DataFormatException {
+
+        final Key key = keyOf(body);
+        if (key == null) {
+            throw new DataFormatException("Malformed exam archive record");
+        }
+
+        final ByteBuffer buf = ByteBuffer.wrap(body);
+        final byte compression = buf.get(1);
+        final long timestamp = buf.getLong(10);
+        final int rawLength = buf.getInt(18);
+        final int payloadStart = BODY_FIXED_LEN + 1 + ((int) body[BODY_FIXED_LEN] & 0xFF);
+        final int payloadLen = body.length - payloadStart;
+
+        final byte[] data;
+        if (compression == STORED && payloadLen == rawLength) {
+            data = Arrays.copyOfRange(body, payloadStart, body.length);
+        } else if (compression == DEFLATED_DICT1) {
+            data = inflate(body, payloadStart, payloadLen, rawLength);
+        } else {
+            throw new DataFormatException("Unsupported exam archive record compression");
+        }
+
+        return new ArchivedRecord(key.studentId(), key.serial(), key.type(), timestamp, data);
+    }
+
+    /**
+     * Deflates data using the preset dictionary.
+     *
+     * @param data the data
+     * @return the deflated data
+     */
+    private static byte[] deflate(final byte[] data) {
+
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(data);
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                final int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflates data that was deflated using the preset dictionary.
+     *
+     * @param src       the array containing the deflated data
+     * @param offset    the offset of the deflated data
+     * @param length    the length of the deflated data
+     * @param rawLength the length of the inflated data
+     * @return the inflated data
+     * @throws DataFormatException if the data is malformed
+     */
+    private static byte[] inflate(final byte[] src, final int offset, final int length, final int rawLength)
+            throws DataFormatException {
+
+        final Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(src, offset, length);
+
+            final byte[] out = new byte[rawLength];
+            int pos = 0;
+            while (pos < rawLength) {
+                final int count = inflater.inflate(out, pos, rawLength - pos);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new DataFormatException("Truncated exam archive record");
+                    }
+                }
+                pos += count;
+            }
+
+            return out;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * The key of a record.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     */
+    private record Key(String studentId, long serial, EExamRecordType type) {
+    }
+
+    /**
+     * The location of a record.
+     *
+     * @param segment  the segment number
+     * @param offset   the offset of the record header in the segment
+     * @param length   the length of the record body
+     * @param previous the location of the previous record with the same key, for cumulative record types
+     */
+    private record Location(int segment, long offset, int length, Location previous) {
+    }
+
+    /**
+     * A record read from the archive.
+     *
+     * @param studentId the student ID
+     * @param serial    the exam serial number
+     * @param type      the record type
+     * @param timestamp the time the record was written, in milliseconds since the epoch
+     * @param data      the record data
+     */
+    public record ArchivedRecord(String studentId, long serial, EExamRecordType type, long timestamp, byte[] data) {
+    }
+}
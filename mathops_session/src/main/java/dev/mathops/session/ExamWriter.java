@@ -11,18 +11,20 @@ import dev.mathops.session.txn.messages.GetExamReply;
 import dev.mathops.session.txn.messages.MessageFactory;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * A class that can read and write data files in the student data directory.
+ *
+ * <p>
+ * Records of delivered exams are stored in a per-term {@code ExamArchive}. Exams delivered before the archive was
+ * introduced (and not yet migrated into it) are stored in a directory per student per exam, and are still read from
+ * there when not found in the archive.
  */
 public final class ExamWriter {
 
@@ -32,8 +34,8 @@ public final class ExamWriter {
     /** The exam answers file. */
     public static final String ANSWERS_FILE = "answers.txt.Z";
 
-    /** The exam recovery file. */
-    private static final String RECOVERY_FILE = "recovery.txt.Z";
+    /** The name of the directory, within a term's student data directory, that holds the exam archive. */
+    public static final String ARCHIVE_DIR = "exam_archive";
 
     /** The path under which to read/write student data. */
     private final File dataPath;
@@ -47,7 +49,18 @@ public final class ExamWriter {
     }
 
     /**
-     * Constructs the path under which an exam of a specified serial number will be stored.
+     * Gets the exam archive for a term.
+     *
+     * @param shortTermStr the short term string
+     * @return the archive; {@code null} if it could not be opened
+     */
+    public ExamArchive getArchive(final String shortTermStr) {
+
+        return ExamArchive.get(new File(new File(this.dataPath, "student" + shortTermStr), ARCHIVE_DIR));
+    }
+
+    /**
+     * Constructs the path under which an exam of a specified serial number was stored before exams were archived.
      *
      * @param shortTermStr the short term string
      * @param studentId    the student ID
@@ -61,11 +74,24 @@ public final class ExamWriter {
 
         final File examDir = new File(new File(new File(this.dataPath, fname), studentId), "exams");
 
-        return new File(examDir, serial >= 0L ? Long.toString(serial) : "P" + (-serial));
+        return new File(examDir, serialName(serial));
     }
 
     /**
-     * Constructs the path under which an exam of a specified serial number will be stored.
+     * Formats a serial number the way exam directories were named before exams were archived.
+     *
+     * @param serial the serial number (negative for practice exams)
+     * @return the serial number, if positive, or "P" followed by the negated serial number, if negative
+     */
+    public static String serialName(final long serial) {
+
+        return serial >= 0L ? Long.toString(serial) : "P" + (-serial);
+    }
+
+    /**
+     * Constructs the relative path that identifies an exam of a specified serial number to pages that present past
+     * exams. This is the path of the exam's directory (relative to the data directory) before exams were archived;
+     * {@code readStoredFile} resolves it against the archive.
      *
      * @param shortTermStr the short term string
      * @param studentId    the student ID
@@ -77,19 +103,14 @@ public final class ExamWriter {
 
         final HtmlBuilder xml = new HtmlBuilder(50);
 
-        xml.add("student", shortTermStr, CoreConstants.SLASH, studentId, "/exams/");
-        if (serial >= 0L) {
-            xml.add(Long.toString(serial));
-        } else {
-            xml.add("P", Long.toString(-serial));
-        }
+        xml.add("student", shortTermStr, CoreConstants.SLASH, studentId, "/exams/", serialName(serial));
 
         return xml.toString();
     }
 
     /**
-     * Writes the record of a presented exam for a student. This currently writes the XML representation of the exam
-     * into a subdirectory maintained for the student.
+     * Writes the record of a presented exam for a student. This appends the XML representation of the exam to the
+     * term's exam archive.
      *
      * @param studentId the ID of the student under which to record the exam
      * @param term      the term under which to file the exam
@@ -114,39 +135,35 @@ public final class ExamWriter {
             return false;
         }
 
-        final int serial = exam.serialNumber.intValue();
-        final File path = makeExamPath(term.term.shortString, studentId, serial);
+        final long serial = exam.serialNumber.longValue();
+        final String shortTermStr = term.term.shortString;
+        final ExamArchive archive = getArchive(shortTermStr);
 
-        if (path.exists()) {
-            Log.warning("Path [", path.getAbsolutePath(),
-                    "] already exists!  Cannot issue another exam in same second.");
+        if (archive == null) {
             return false;
         }
 
-        Log.info("Writing ", exam.examVersion, " exam to ", path.getAbsolutePath());
+        if (makeExamPath(shortTermStr, studentId, serial).exists()) {
+            Log.warning("Exam ", Long.toString(serial), " for ", studentId,
+                    " already exists!  Cannot issue another exam in same second.");
+            return false;
+        }
 
-        boolean ok = path.mkdirs();
+        Log.info("Writing ", exam.examVersion, " exam ", Long.toString(serial), " for ", studentId);
 
-        if (ok) {
-            final File file = new File(path, EXAM_FILE);
+        // The archive rejects the exam if another with the same serial number has already been written
+        final boolean ok = archive.appendIfAbsent(studentId, serial, EExamRecordType.EXAM,
+                reply.getBytes(StandardCharsets.UTF_8));
 
-            try (final GZIPOutputStream gz = new GZIPOutputStream(new FileOutputStream(file))) {
-                gz.write(reply.getBytes(StandardCharsets.UTF_8));
-                gz.finish();
-            } catch (final Exception ex) {
-                ok = false;
-                Log.severe("Failed to write presented exam", ex);
-            }
-        } else {
-            Log.severe("Failed to create directory to write presented exam", path);
+        if (!ok) {
+            Log.severe("Failed to write presented exam");
         }
 
         return ok;
     }
 
     /**
-     * Writes the record of a presented exam for a student. This currently writes the XML representation of the exam
-     * into a subdirectory maintained for the student.
+     * Reads the record of a presented exam for a student.
      *
      * @param studentId the ID of the student under which to record the exam
      * @param term      the term under which the exam is filed
@@ -159,29 +176,15 @@ public final class ExamWriter {
         ExamObj exam = null;
 
         if (studentId != null && term != null) {
-            final File path = makeExamPath(term.term.shortString, studentId, serial);
+            final String shortTermStr = term.term.shortString;
+            final ExamArchive archive = getArchive(shortTermStr);
 
-            Log.info("Looking in ", path.getAbsolutePath(), " for exam data");
+            byte[] result = archive == null ? null : archive.read(studentId, serial, EExamRecordType.EXAM);
 
-            // Copy the file into a byte array
-            final File file = new File(path, EXAM_FILE);
-            byte[] result = null;
-
-            if (file.exists()) {
-                try (final InputStream in = new GZIPInputStream(new FileInputStream(file));
-                     final ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-
-                    final byte[] buffer = new byte[1024];
-                    int len = in.read(buffer);
-
-                    while (len > 0) {
-                        out.write(buffer, 0, len);
-                        len = in.read(buffer);
-                    }
-                    result = out.toByteArray();
-                } catch (final IOException ex) {
-                    Log.warning("Failed to read exam file ", file.getAbsolutePath(), ex);
-                }
+            if (result == null) {
+                final File path = makeExamPath(shortTermStr, studentId, serial);
+                Log.info("Looking in ", path.getAbsolutePath(), " for exam data");
+                result = readLegacyFile(new File(path, EXAM_FILE));
             }
 
             if (result != null) {
@@ -199,8 +202,8 @@ public final class ExamWriter {
     }
 
     /**
-     * Writes the record of an exam update sent by the student. This currently writes the XML representation of the exam
-     * into a subdirectory maintained for the student.
+     * Writes the record of an exam update sent by the student. This appends the list of answers to the term's exam
+     * archive, where it replaces any earlier list of answers for the exam.
      *
      * @param studentId the ID of the student under which to record the exam
      * @param term      the term under which the exam is filed
@@ -227,12 +230,6 @@ public final class ExamWriter {
         }
 
         final long serial = ((Long) answers[0][0]).longValue();
-        final File path = makeExamPath(term.term.shortString, id, serial);
-
-        if (!path.exists() && !path.mkdirs()) {
-            Log.warning("Failed to create directory " + path.getAbsolutePath());
-        }
-
         final HtmlBuilder builder = new HtmlBuilder(50);
 
         final int numAns = answers.length;
@@ -259,20 +256,100 @@ public final class ExamWriter {
             builder.addln();
         }
 
-        final File file = new File(path, recovery ? RECOVERY_FILE : ANSWERS_FILE);
-        boolean ok = false;
+        final ExamArchive archive = getArchive(term.term.shortString);
+        final boolean ok = archive != null && archive.append(id, serial,
+                recovery ? EExamRecordType.RECOVERY : EExamRecordType.ANSWERS,
+                builder.toString().getBytes(StandardCharsets.UTF_8));
 
-        try (final GZIPOutputStream gz = new GZIPOutputStream(new FileOutputStream(file))) {
-            gz.write(builder.toString().getBytes(StandardCharsets.UTF_8));
-            gz.finish();
-            ok = true;
-        } catch (final Exception ex) {
-            Log.severe("Failed to write updated exam data", ex);
+        if (!ok) {
+            Log.severe("Failed to write updated exam data");
         }
 
         return ok;
     }
 
+    /**
+     * Appends a line to the activity log of an exam.
+     *
+     * @param shortTermStr the short term string
+     * @param studentId    the student ID
+     * @param serial       the exam serial number
+     * @param line         the line to append (including its line terminator)
+     * @return {@code true} if the line was written
+     */
+    public boolean appendExamActivity(final String shortTermStr, final String studentId, final long serial,
+                                      final String line) {
+
+        final ExamArchive archive = getArchive(shortTermStr);
+
+        return archive != null && archive.append(studentId, serial, EExamRecordType.ACTIVITY,
+                line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a stored exam file given its path relative to a data directory, as constructed by {@code makeWebExamPath}
+     * with a filename like {@code EXAM_FILE} or {@code ANSWERS_FILE} appended. If the file exists in an exam directory,
+     * it is read from there; otherwise, the record is read from the term's exam archive under the data directory.
+     * Compressed files are decompressed.
+     *
+     * @param baseDir the data directory
+     * @param relPath the relative path, like "student202510/888123456/exams/1234567/exam.xml.Z"
+     * @return the file contents; {@code null} if not found
+     */
+    public static byte[] readStoredFile(final File baseDir, final String relPath) {
+
+        byte[] result = null;
+
+        final File file = new File(baseDir, relPath);
+        if (file.exists()) {
+            result = readLegacyFile(file);
+        } else {
+            final String[] parts = relPath.split(CoreConstants.SLASH);
+
+            if (parts.length == 5 && parts[0].startsWith("student") && "exams".equals(parts[2])) {
+                final EExamRecordType type = EExamRecordType.forLegacyFilename(parts[4]);
+                final File archiveDir = new File(new File(baseDir, parts[0]), ARCHIVE_DIR);
+
+                if (type != null && archiveDir.isDirectory()) {
+                    try {
+                        final long serial = parts[3].startsWith("P") ? -Long.parseLong(parts[3].substring(1))
+                                : Long.parseLong(parts[3]);
+                        final ExamArchive archive = ExamArchive.get(archiveDir);
+                        if (archive != null) {
+                            result = archive.read(parts[1], serial, type);
+                        }
+                    } catch (final NumberFormatException ex) {
+                        Log.warning("Invalid exam serial number in path: ", relPath);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a file from an exam directory, decompressing it if its name ends with ".Z".
+     *
+     * @param file the file
+     * @return the file contents; {@code null} if the file does not exist or could not be read
+     */
+    public static byte[] readLegacyFile(final File file) {
+
+        byte[] result = null;
+
+        if (file.exists()) {
+            try (final InputStream fis = new FileInputStream(file);
+                 final InputStream in = file.getName().endsWith(".Z") ? new GZIPInputStream(fis) : fis) {
+                result = in.readAllBytes();
+            } catch (final IOException ex) {
+                Log.warning("Failed to read exam file ", file.getAbsolutePath(), ex);
+            }
+        }
+
+        return result;
+    }
+
 //    /**
 //     * Main method to load an exam as many times as possible in 5 seconds and report an average
 //     * number of exams per second loaded.
@@ -125,17 +125,17 @@ public interface ISessionManager {
     ImmutableSessionInfo getUserSession(String sessionId);
 
     /**
-     * Writes a persistent record of all current sessions to a file in a specified directory (any existing sessions file
-     * in that directory is overwritten). This is intended to be called from the {@code destroy} method of an
-     * authentication servlet to allow sessions to survive a redeployment of that servlet (but not a shutdown of the
-     * server, since that would destroy SSL session IDs).
+     * Finishes writing a persistent record of all current sessions in a specified directory. This is intended to be
+     * called from the {@code destroy} method of an authentication servlet to allow sessions to survive a redeployment
+     * of that servlet.
      *
      * @param dir the directory in which to persist the active sessions
      */
     void persist(File dir);
 
     /**
-     * Loads a set of active sessions previously written by {@code persist}.
+     * Loads a set of active sessions previously written to a directory, and begins persisting session changes to that
+     * directory.
      *
      * @param dir the directory in which persisted sessions were written
      */
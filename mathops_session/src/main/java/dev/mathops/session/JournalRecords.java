@@ -0,0 +1,156 @@
+package dev.mathops.session;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Utilities for the append-only journal files used to persist live sessions (the login session journal and the HTML
+ * session store journals).
+ *
+ * <p>
+ * Each record in a journal has the form [length:int][record][crc32:int], where the record begins with a type byte
+ * followed by a type-specific payload, and the length covers the record. A truncated or corrupt record at the tail of a
+ * journal (from a crash mid-write) ends replay without error.
+ */
+public enum JournalRecords {
+    ;
+
+    /**
+     * A handler for records read during replay.
+     */
+    @FunctionalInterface
+    public interface IRecordHandler {
+
+        /**
+         * Applies one record.
+         *
+         * @param record the record (type byte followed by payload)
+         * @throws IOException if the record could not be parsed
+         */
+        void apply(byte[] record) throws IOException;
+    }
+
+    /**
+     * Frames a record with its length prefix and CRC suffix.
+     *
+     * @param record the record (type byte followed by payload)
+     * @return a buffer, ready to be written, containing the framed record
+     */
+    public static ByteBuffer frame(final byte[] record) {
+
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+
+        final ByteBuffer buf = ByteBuffer.allocate(record.length + 8);
+        buf.putInt(record.length);
+        buf.put(record);
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        return buf;
+    }
+
+    /**
+     * Frames a record and writes it to a channel.
+     *
+     * @param channel the channel
+     * @param record  the record (type byte followed by payload)
+     * @throws IOException if there is an error writing
+     */
+    public static void write(final FileChannel channel, final byte[] record) throws IOException {
+
+        final ByteBuffer buf = frame(record);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * Reads the records in a journal file, passing each to a handler. Reading stops without error at the end of the
+     * file or at a truncated or corrupt record. If the handler cannot parse a record, reading stops and a warning is
+     * logged.
+     *
+     * @param file      the journal file
+     * @param maxLength the largest record length to accept
+     * @param name      the name of the journal, for log messages (like "session")
+     * @param handler   the handler to which to pass each record
+     * @return the number of records read
+     */
+    public static int replay(final File file, final int maxLength, final String name, final IRecordHandler handler) {
+
+        int count = 0;
+
+        try (final InputStream fis = new FileInputStream(file);
+             final DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 65536))) {
+
+            final CRC32 crc = new CRC32();
+            while (true) {
+                final int len;
+                try {
+                    len = in.readInt();
+                } catch (final EOFException ex) {
+                    break;
+                }
+
+                if (len <= 0 || len > maxLength) {
+                    Log.warning("Invalid ", name, " journal record length; ignoring remainder of journal");
+                    break;
+                }
+
+                final byte[] record = new byte[len];
+                final int storedCrc;
+                try {
+                    in.readFully(record);
+                    storedCrc = in.readInt();
+                } catch (final EOFException ex) {
+                    Log.warning("Truncated ", name, " journal record; ignoring remainder of journal");
+                    break;
+                }
+
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != storedCrc) {
+                    Log.warning("Corrupt ", name, " journal record; ignoring remainder of journal");
+                    break;
+                }
+
+                handler.apply(record);
+                ++count;
+            }
+        } catch (final IOException ex) {
+            Log.warning("Failed to replay ", name, " journal", ex);
+        }
+
+        return count;
+    }
+
+    /**
+     * Replaces a journal file with a newly written file, atomically if the file system supports it.
+     *
+     * @param source the newly written file
+     * @param target the journal file to replace
+     * @throws IOException if the file could not be replaced
+     */
+    public static void replace(final File source, final File target) throws IOException {
+
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import dev.mathops.commons.log.Log;
 import dev.mathops.db.field.ERole;
 import dev.mathops.text.builder.HtmlBuilder;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoField;
@@ -51,10 +54,10 @@ public final class LiveSessionInfo {
     private String screenName = null;
 
     /** The date/time when the session had its last activity. */
-    private Instant lastActivity;
+    private volatile Instant lastActivity;
 
     /** The date/time when the session will time out if no activity occurs. */
-    private Instant timeout;
+    private volatile Instant timeout;
 
     /** The role. */
     private ERole role;
@@ -77,6 +80,15 @@ public final class LiveSessionInfo {
     /** The time offset to apply to this session. */
     private long timeOffset = 0L;
 
+    /** The sequence number of the most recent journal record written for this session. */
+    private long journalSeq = 0L;
+
+    /** The last activity time (milliseconds) most recently written to the journal. */
+    private long journaledActivity = 0L;
+
+    /** True once the removal of this session has been journaled; no further records are written for it. */
+    private boolean journalRemoved = false;
+
     /**
      * Constructs a new {@code LiveSessionInfo}. The user ID, screen name, role, and presence are not set, as these
      * objects are created before login is completed. The establishment time and the last activity time are both set to
@@ -225,8 +237,9 @@ public final class LiveSessionInfo {
      */
     void touch() {
 
-        this.lastActivity = Instant.now();
-        this.timeout = Instant.now().plusMillis(TIMEOUT);
+        final Instant now = Instant.now();
+        this.lastActivity = now;
+        this.timeout = now.plusMillis(TIMEOUT);
     }
 
     /**
@@ -420,6 +433,197 @@ public final class LiveSessionInfo {
         }
     }
 
+    /**
+     * Restores the last activity and timeout fields, to be used when replaying a session journal.
+     *
+     * @param theLastActivity the date/time of the last activity on the session
+     * @param theTimeout      the date/time the session times out
+     */
+    void restoreActivity(final Instant theLastActivity, final Instant theTimeout) {
+
+        this.lastActivity = theLastActivity;
+        this.timeout = theTimeout;
+    }
+
+    /**
+     * Advances the journal sequence number for this session. Called while synchronized on the session, each time a
+     * journal record is generated.
+     *
+     * @return the new sequence number
+     */
+    long nextJournalSeq() {
+
+        ++this.journalSeq;
+        return this.journalSeq;
+    }
+
+    /**
+     * Gets the sequence number of the most recent journal record for this session.
+     *
+     * @return the sequence number
+     */
+    long getJournalSeq() {
+
+        return this.journalSeq;
+    }
+
+    /**
+     * Sets the sequence number of the most recent journal record for this session, used when replaying a journal.
+     *
+     * @param theSeq the sequence number
+     */
+    void setJournalSeq(final long theSeq) {
+
+        this.journalSeq = theSeq;
+    }
+
+    /**
+     * Gets the last activity time most recently written to the journal.
+     *
+     * @return the last journaled activity time, in milliseconds since the epoch
+     */
+    long getJournaledActivity() {
+
+        return this.journaledActivity;
+    }
+
+    /**
+     * Sets the last activity time most recently written to the journal.
+     *
+     * @param theActivity the last journaled activity time, in milliseconds since the epoch
+     */
+    void setJournaledActivity(final long theActivity) {
+
+        this.journaledActivity = theActivity;
+    }
+
+    /**
+     * Tests whether the removal of this session has been journaled. Called while synchronized on the session.
+     *
+     * @return {@code true} if the removal has been journaled
+     */
+    boolean isJournalRemoved() {
+
+        return this.journalRemoved;
+    }
+
+    /**
+     * Marks this session as removed, so no further journal records are written for it. Called while synchronized on
+     * the session, when its removal record is generated.
+     */
+    void setJournalRemoved() {
+
+        this.journalRemoved = true;
+    }
+
+    /**
+     * Writes the full state of this session to a journal record.
+     *
+     * @param out the output to which to write
+     * @throws IOException if there is an error writing
+     */
+    void writeJournalState(final DataOutput out) throws IOException {
+
+        out.writeUTF(this.loginSessionId);
+        out.writeLong(this.journalSeq);
+        out.writeLong(this.loginSessionTag);
+        writeNullable(out, this.authType);
+        out.writeLong(this.established.toEpochMilli());
+
+        writeNullable(out, this.userId);
+        writeNullable(out, this.firstName);
+        writeNullable(out, this.lastName);
+        writeNullable(out, this.screenName);
+
+        out.writeLong(this.lastActivity.toEpochMilli());
+        out.writeLong(this.timeout.toEpochMilli());
+        writeNullable(out, this.role == null ? null : this.role.abbrev);
+        out.writeLong(this.timeOffset);
+
+        writeNullable(out, this.actAsUserId);
+        writeNullable(out, this.actAsFirstName);
+        writeNullable(out, this.actAsLastName);
+        writeNullable(out, this.actAsScreenName);
+        writeNullable(out, this.actAsRole == null ? null : this.actAsRole.abbrev);
+    }
+
+    /**
+     * Reads the full state of a session from a journal record written by {@code writeJournalState}.
+     *
+     * @param in the input from which to read
+     * @return the session
+     * @throws IOException if there is an error reading
+     */
+    static LiveSessionInfo readJournalState(final DataInput in) throws IOException {
+
+        final String id = in.readUTF();
+        final long seq = in.readLong();
+        final long tag = in.readLong();
+        final String auth = readNullable(in);
+        final long est = in.readLong();
+
+        final String user = readNullable(in);
+        final String first = readNullable(in);
+        final String last = readNullable(in);
+        final String screen = readNullable(in);
+
+        final long lastAct = in.readLong();
+        final long tmout = in.readLong();
+        final String roleStr = readNullable(in);
+        final long offset = in.readLong();
+
+        final LiveSessionInfo sess = new LiveSessionInfo(id, tag, auth, ERole.fromAbbrev(roleStr));
+        sess.userId = user;
+        sess.firstName = first;
+        sess.lastName = last;
+        sess.screenName = screen;
+        sess.established = Instant.ofEpochMilli(est);
+        sess.lastActivity = Instant.ofEpochMilli(lastAct);
+        sess.timeout = Instant.ofEpochMilli(tmout);
+        sess.timeOffset = offset;
+
+        sess.actAsUserId = readNullable(in);
+        sess.actAsFirstName = readNullable(in);
+        sess.actAsLastName = readNullable(in);
+        sess.actAsScreenName = readNullable(in);
+        final String actAsRoleStr = readNullable(in);
+        sess.actAsRole = actAsRoleStr == null ? null : ERole.fromAbbrev(actAsRoleStr);
+
+        sess.journalSeq = seq;
+        sess.journaledActivity = lastAct;
+
+        return sess;
+    }
+
+    /**
+     * Writes a string that may be {@code null}.
+     *
+     * @param out   the output to which to write
+     * @param value the value
+     * @throws IOException if there is an error writing
+     */
+    private static void writeNullable(final DataOutput out, final String value) throws IOException {
+
+        if (value == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string written by {@code writeNullable}.
+     *
+     * @param in the input from which to read
+     * @return the value, which may be {@code null}
+     * @throws IOException if there is an error reading
+     */
+    private static String readNullable(final DataInput in) throws IOException {
+
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     /**
      * Appends the XML representation of this live session to an {@code HtmlBuilder}.
      *
@@ -9,12 +9,10 @@ import dev.mathops.session.login.LocalLoginProcessor;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.io.File;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A cache of active sessions, maintained by the session manager. The cache stores three types of sessions: normal
@@ -23,6 +21,17 @@ import java.util.Map;
  * <p>
  * The session cache manages the only live copy of session records. All changes to session records MUST take place
  * within this cache. Immutable copies of session records can be obtained with appropriate permissions.
+ *
+ * <p>
+ * Sessions are stored in a concurrent map, so validating a session does not take any cache-wide lock. Changes to a
+ * single session (and the construction of its immutable copy) are synchronized on that session's
+ * {@code LiveSessionInfo} object. Session timeouts are tracked by a {@code SessionTimerWheel} so expired sessions can
+ * be purged without scanning every live session. Every session except the anonymous session is scheduled in the wheel
+ * (including a session added under the testing-station ID), and is unscheduled when it is removed.
+ *
+ * <p>
+ * Once a {@code SessionJournal} is opened, every session creation, change, touch, and removal is recorded in that
+ * journal, so live sessions can be restored after a restart or crash.
  */
 public class SessionCache {
 
@@ -60,12 +69,15 @@ public class SessionCache {
     /** Administrator screen name. */
     private static final String ADMIN_SCREEN = "STEVE PROD-BAERREAL";
 
-    /** Object on which to synchronize access to the session maps. */
-    private final Object synch;
-
     /** A map from secure session ID to session information. */
     private final Map<String, LiveSessionInfo> userSessions;
 
+    /** The timer wheel that tracks session timeouts. */
+    private final SessionTimerWheel timerWheel;
+
+    /** The session journal; {@code null} if sessions are not being journaled. */
+    private volatile SessionJournal journal;
+
     /** The testing center sessions (max one per context). */
     private final ImmutableSessionInfo testingSession;
 
@@ -80,8 +92,9 @@ public class SessionCache {
      */
     SessionCache() {
 
-        this.synch = new Object();
-        this.userSessions = new HashMap<>(TYP_NUM_SESSIONS);
+        this.userSessions = new ConcurrentHashMap<>(TYP_NUM_SESSIONS);
+        this.timerWheel = new SessionTimerWheel(System.currentTimeMillis());
+        this.journal = null;
 
         // Support testing session ID in testing transaction context
         final LiveSessionInfo liveTesting = new LiveSessionInfo(TEST_SESSION_ID, LocalLoginProcessor.TYPE, ERole.GUEST);
@@ -92,7 +105,7 @@ public class SessionCache {
         final LiveSessionInfo liveAnon = new LiveSessionInfo(ANONYMOUS_SESSION, LocalLoginProcessor.TYPE, ERole.GUEST);
         this.userSessions.put(ANONYMOUS_SESSION, liveAnon);
 
-        this.loggedOutSessions = new HashMap<>(50);
+        this.loggedOutSessions = new ConcurrentHashMap<>(50);
 
         this.sysadmins = new ArrayList<>(4);
         final File file = new File(PathList.getInstance().get(EPath.CFG_PATH), "sysadmins");
@@ -129,8 +142,21 @@ public class SessionCache {
      */
     final ImmutableSessionInfo addUserSession(final LiveSessionInfo sess) {
 
-        synchronized (this.synch) {
-            this.userSessions.put(sess.loginSessionId, sess);
+        final LiveSessionInfo replaced = this.userSessions.put(sess.loginSessionId, sess);
+        if (replaced != null && replaced != sess) {
+            this.timerWheel.unschedule(replaced);
+        }
+
+        if (!ANONYMOUS_SESSION.equals(sess.loginSessionId)) {
+            this.timerWheel.schedule(sess);
+
+            final SessionJournal jrnl = this.journal;
+            if (jrnl != null) {
+                jrnl.recordState(sess);
+            }
+        }
+
+        synchronized (sess) {
             return sess.makeImmutable();
         }
     }
@@ -142,42 +168,117 @@ public class SessionCache {
      */
     final void removeUserSession(final String sessionId) {
 
-        synchronized (this.synch) {
-            if (!ANONYMOUS_SESSION.equals(sessionId)) {
-                this.userSessions.remove(sessionId);
+        if (!ANONYMOUS_SESSION.equals(sessionId)) {
+            final LiveSessionInfo removed = this.userSessions.remove(sessionId);
+            if (removed != null) {
+                this.timerWheel.unschedule(removed);
+
+                final SessionJournal jrnl = this.journal;
+                if (jrnl != null) {
+                    jrnl.recordRemove(removed);
+                }
             }
         }
     }
 
     /**
-     * Removes any timed out user sessions from the user session cache.
+     * Removes any timed out user sessions from the user session cache. This advances the timer wheel to the current
+     * time, so its cost depends on the time elapsed since the last call and the number of sessions that expired, not on
+     * the number of live sessions.
      */
     final void clearTimedOut() {
 
-        final Instant now = Instant.now();
-        final long timeout = System.currentTimeMillis() - SHIBBOLETH_TIMEOUT;
+        final long now = System.currentTimeMillis();
+        final long timeout = now - SHIBBOLETH_TIMEOUT;
 
-        synchronized (this.synch) {
-            final Iterator<Map.Entry<String, LiveSessionInfo>> iter =
-                    this.userSessions.entrySet().iterator();
+        final SessionJournal jrnl = this.journal;
+        final List<LiveSessionInfo> expired = this.timerWheel.advance(now);
+        for (final LiveSessionInfo live : expired) {
+            if (this.userSessions.remove(live.loginSessionId, live)) {
+                Log.info("Session: ", live.loginSessionId, " timed out");
+                if (jrnl != null) {
+                    jrnl.recordRemove(live);
+                }
+            }
+        }
 
-            while (iter.hasNext()) {
+        this.loggedOutSessions.values().removeIf(value -> value.longValue() < timeout);
+    }
 
-                final Map.Entry<String, LiveSessionInfo> entry = iter.next();
-                final LiveSessionInfo live = entry.getValue();
+    /**
+     * Gets the number of live user sessions (including the anonymous session).
+     *
+     * @return the number of sessions
+     */
+    public final int getNumUserSessions() {
 
-                if (live.loginSessionId.equals(ANONYMOUS_SESSION)) {
-                    continue;
-                }
+        return this.userSessions.size();
+    }
 
-                if (live.getTimeout().compareTo(now) < 0) {
-                    Log.info("Session: ", entry.getValue().loginSessionId,
-                            " timed out");
-                    iter.remove();
+    /**
+     * Replays the session journal in a directory, if one exists, restoring its live sessions into the cache. This
+     * should be called before {@code startJournal}.
+     *
+     * @param dir the directory in which the journal is stored
+     * @return {@code true} if an existing journal was replayed; {@code false} if there was no journal
+     */
+    final boolean replayJournal(final File dir) {
+
+        final SessionJournal oldJournal = new SessionJournal(dir);
+        final boolean existed = oldJournal.exists();
+
+        if (existed) {
+            final Map<String, LiveSessionInfo> restored = oldJournal.replay();
+            for (final LiveSessionInfo sess : restored.values()) {
+                if (SessionJournal.isJournaled(sess.loginSessionId)) {
+                    addUserSession(sess);
                 }
             }
+        }
 
-            this.loggedOutSessions.entrySet().removeIf(entry -> entry.getValue().longValue() < timeout);
+        return existed;
+    }
+
+    /**
+     * Starts journaling all session changes to a journal in a directory. The journal is first rewritten to contain
+     * exactly the sessions currently in the cache (including any restored by {@code replayJournal}).
+     *
+     * @param dir the directory in which the journal is stored
+     */
+    final void startJournal(final File dir) {
+
+        final SessionJournal newJournal = new SessionJournal(dir);
+        newJournal.start(this.userSessions::values);
+        this.journal = newJournal;
+    }
+
+    /**
+     * Performs a final compaction of the session journal and closes it.
+     */
+    final void closeJournal() {
+
+        final SessionJournal jrnl = this.journal;
+        if (jrnl != null) {
+            this.journal = null;
+            jrnl.stop(this.userSessions.values());
+        }
+    }
+
+    /**
+     * Records a change to a session in the journal, if journaling is active. Must be called without holding the
+     * session's monitor. If the session is removed concurrently, the journal either records nothing (if the removal
+     * was recorded first) or records a state that replay discards in favor of the later-numbered removal.
+     *
+     * @param sessionId the session ID
+     */
+    private void journalState(final String sessionId) {
+
+        final SessionJournal jrnl = this.journal;
+        if (jrnl != null) {
+            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+            if (sess != null) {
+                jrnl.recordState(sess);
+            }
         }
     }
 
@@ -190,12 +291,11 @@ public class SessionCache {
      */
     final void persistToXml(final HtmlBuilder xml) {
 
-        synchronized (this.synch) {
-
-            for (final LiveSessionInfo sess : this.userSessions.values()) {
-                if (sess.isTimedOut() || ANONYMOUS_SESSION.equals(sess.loginSessionId)) {
-                    continue;
-                }
+        for (final LiveSessionInfo sess : this.userSessions.values()) {
+            if (sess.isTimedOut() || ANONYMOUS_SESSION.equals(sess.loginSessionId)) {
+                continue;
+            }
+            synchronized (sess) {
                 sess.appendXml(xml);
             }
         }
@@ -212,20 +312,20 @@ public class SessionCache {
 
         final List<ImmutableSessionInfo> result;
 
-        synchronized (this.synch) {
-            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+        final LiveSessionInfo sess = this.userSessions.get(sessionId);
 
-            if (sess == null) {
-                result = null;
-            } else if (sess.getRole().canActAs(ERole.ADMINISTRATOR)) {
-                result = new ArrayList<>(this.userSessions.size());
+        if (sess == null) {
+            result = null;
+        } else if (sess.getRole().canActAs(ERole.ADMINISTRATOR)) {
+            result = new ArrayList<>(this.userSessions.size());
 
-                for (final LiveSessionInfo toCopy : this.userSessions.values()) {
+            for (final LiveSessionInfo toCopy : this.userSessions.values()) {
+                synchronized (toCopy) {
                     result.add(toCopy.makeImmutable());
                 }
-            } else {
-                result = null;
             }
+        } else {
+            result = null;
         }
 
         return result;
@@ -239,10 +339,14 @@ public class SessionCache {
      */
     public final ImmutableSessionInfo getUserSession(final String sessionId) {
 
-        synchronized (this.synch) {
-            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+        final LiveSessionInfo sess = this.userSessions.get(sessionId);
 
-            return sess == null ? null : sess.makeImmutable();
+        if (sess == null) {
+            return null;
+        }
+
+        synchronized (sess) {
+            return sess.makeImmutable();
         }
     }
 
@@ -270,19 +374,27 @@ public class SessionCache {
 
         final SessionResult result;
 
-        synchronized (this.synch) {
-            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+        final LiveSessionInfo sess = this.userSessions.get(sessionId);
 
-            if (sess == null || sess.getRole() == null) {
-                result = new SessionResult(INVALID_ERR + sessionId);
-            } else if (sess.getRole().canActAs(actAsRole)) {
-                sess.setActAsUserInfo(actAsUserId, actAsScreenName, actAsRole);
-                result = new SessionResult(sess.makeImmutable());
-            } else {
-                result = new SessionResult(NO_AUTH_ACT_AS);
+        if (sess == null) {
+            result = new SessionResult(INVALID_ERR + sessionId);
+        } else {
+            synchronized (sess) {
+                if (sess.getRole() == null) {
+                    result = new SessionResult(INVALID_ERR + sessionId);
+                } else if (sess.getRole().canActAs(actAsRole)) {
+                    sess.setActAsUserInfo(actAsUserId, actAsScreenName, actAsRole);
+                    result = new SessionResult(sess.makeImmutable());
+                } else {
+                    result = new SessionResult(NO_AUTH_ACT_AS);
+                }
             }
         }
 
+        if (result.session != null) {
+            journalState(sessionId);
+        }
+
         return result;
     }
 
@@ -312,22 +424,30 @@ public class SessionCache {
 
         final SessionResult result;
 
-        synchronized (this.synch) {
-            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+        final LiveSessionInfo sess = this.userSessions.get(sessionId);
 
-            if (sess == null || sess.getRole() == null) {
-                result = new SessionResult(INVALID_ERR + sessionId);
-            } else if (sess.getRole().canActAs(newRole)) {
-                sess.setUserInfo(newUserId, newFirstName, newLastName, newScreenName);
-                sess.setRole(newRole);
-                sess.setTimeOffset(0L);
-                sess.clearActAsUserInfo();
-                result = new SessionResult(sess.makeImmutable());
-            } else {
-                result = new SessionResult(NO_AUTH_ACT_AS);
+        if (sess == null) {
+            result = new SessionResult(INVALID_ERR + sessionId);
+        } else {
+            synchronized (sess) {
+                if (sess.getRole() == null) {
+                    result = new SessionResult(INVALID_ERR + sessionId);
+                } else if (sess.getRole().canActAs(newRole)) {
+                    sess.setUserInfo(newUserId, newFirstName, newLastName, newScreenName);
+                    sess.setRole(newRole);
+                    sess.setTimeOffset(0L);
+                    sess.clearActAsUserInfo();
+                    result = new SessionResult(sess.makeImmutable());
+                } else {
+                    result = new SessionResult(NO_AUTH_ACT_AS);
+                }
             }
         }
 
+        if (result.session != null) {
+            journalState(sessionId);
+        }
+
         return result;
     }
 
@@ -343,17 +463,21 @@ public class SessionCache {
 
         final SessionResult result;
 
-        synchronized (this.synch) {
-            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+        final LiveSessionInfo sess = this.userSessions.get(sessionId);
 
-            if (sess == null) {
-                result = new SessionResult(INVALID_ERR + sessionId);
-            } else {
+        if (sess == null) {
+            result = new SessionResult(INVALID_ERR + sessionId);
+        } else {
+            synchronized (sess) {
                 sess.setTimeOffset(timeOffset);
                 result = new SessionResult(sess.makeImmutable());
             }
         }
 
+        if (result.session != null) {
+            journalState(sessionId);
+        }
+
         return result;
     }
 
@@ -369,21 +493,28 @@ public class SessionCache {
 
         final SessionResult result;
 
-        synchronized (this.synch) {
-            if (sessionId == null) {
-                result = new SessionResult(INVALID_ERR);
+        if (sessionId == null) {
+            result = new SessionResult(INVALID_ERR);
+        } else {
+            final LiveSessionInfo sess = this.userSessions.get(sessionId);
+
+            if (sess == null) {
+                // Do this test here rather than above since it will be very rarely used, and
+                // we don't want the overhead of the test on EVERY valid session activity
+                result = checkForSpecialSession(sessionId);
             } else {
-                final LiveSessionInfo sess = this.userSessions.get(sessionId);
-
-                if (sess == null) {
-                    // Do this test here rather than above since it will be very rarely used, and
-                    // we don't want the overhead of the test on EVERY valid session activity
-                    result = checkForSpecialSession(sessionId);
-                } else if (sess.isTimedOut()) {
-                    result = new SessionResult(TIMED_OUT);
-                } else {
-                    sess.touch();
-                    result = new SessionResult(sess.makeImmutable());
+                synchronized (sess) {
+                    if (sess.isTimedOut()) {
+                        result = new SessionResult(TIMED_OUT);
+                    } else {
+                        sess.touch();
+                        result = new SessionResult(sess.makeImmutable());
+                    }
+                }
+
+                final SessionJournal jrnl = this.journal;
+                if (jrnl != null && result.session != null) {
+                    jrnl.recordTouch(sess);
                 }
             }
         }
@@ -429,9 +560,7 @@ public class SessionCache {
     public final void storeLoggedOutSession(final String value) {
 
         Log.info("Logout from session " + value);
-        synchronized (this.synch) {
-            this.loggedOutSessions.put(value, Long.valueOf(System.currentTimeMillis()));
-        }
+        this.loggedOutSessions.put(value, Long.valueOf(System.currentTimeMillis()));
     }
 
     /**
@@ -442,8 +571,6 @@ public class SessionCache {
      */
     public final boolean isLoggedOutSession(final String value) {
 
-        synchronized (this.synch) {
-            return this.loggedOutSessions.containsKey(value);
-        }
+        return this.loggedOutSessions.containsKey(value);
     }
 }
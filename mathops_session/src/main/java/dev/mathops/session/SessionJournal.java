@@ -0,0 +1,473 @@
+package dev.mathops.session;
+
+import dev.mathops.commons.log.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An append-only binary journal of live session events (creation, touch, change of user or act-as user, and removal).
+ * Every record is written directly to the journal file's channel, so it reaches the operating system before the
+ * operation that generated it returns, and survives the server process being killed.
+ *
+ * <p>
+ * Records are framed and replayed by {@code JournalRecords}, so a truncated or corrupt record at the tail of the file
+ * (from a crash mid-write) ends replay without error.
+ *
+ * <p>
+ * Records carry a per-session sequence number, so replay can discard records that were generated before a newer record
+ * for the same session but reached the file after it. This includes removal records: replay remembers the sequence
+ * number at which each session was removed, so a state record that was generated before a logout but appended after
+ * its removal record cannot restore the session. Once a session's removal has been generated, no further records are
+ * generated for it.
+ *
+ * <p>
+ * The anonymous and testing-station sessions are never journaled, and records for them are ignored on replay.
+ *
+ * <p>
+ * Touch records are rate-limited to one per session per {@code TOUCH_INTERVAL}, since a session that loses up to that
+ * much of its activity on a crash still has nearly its full timeout remaining.
+ *
+ * <p>
+ * The journal is compacted on a background thread once enough records accumulate: a snapshot of all live sessions is
+ * written to a temporary file, which then atomically replaces the journal.
+ */
+final class SessionJournal {
+
+    /** The journal filename. */
+    static final String JOURNAL_FILENAME = "live_sessions.journal";
+
+    /** The temporary filename used during compaction. */
+    private static final String COMPACT_FILENAME = "live_sessions.journal.tmp";
+
+    /** Record type for a full session state (creation or change). */
+    private static final byte REC_STATE = 1;
+
+    /** Record type for a touch (activity and timeout update). */
+    private static final byte REC_TOUCH = 2;
+
+    /** Record type for a session removal (logout or expiration). */
+    private static final byte REC_REMOVE = 3;
+
+    /** The minimum interval between journaled touches of a single session, in milliseconds. */
+    private static final long TOUCH_INTERVAL = 60L * 1000L;
+
+    /** The interval between checks for whether compaction is needed, in seconds. */
+    private static final long COMPACT_CHECK_SEC = 60L;
+
+    /** The minimum number of records appended since the last compaction before compaction is done. */
+    private static final int MIN_COMPACT_RECORDS = 10000;
+
+    /** The largest record length accepted during replay. */
+    private static final int MAX_RECORD_LEN = 64 * 1024;
+
+    /** The directory containing the journal. */
+    private final File dir;
+
+    /** The journal file. */
+    private final File file;
+
+    /** Object on which to synchronize writes and compaction. */
+    private final Object synch;
+
+    /** The open channel to which records are appended; {@code null} if not open. */
+    private FileChannel channel;
+
+    /** The number of records appended since the last compaction. */
+    private int appendedSinceCompact;
+
+    /** The number of sessions written by the last compaction. */
+    private int liveAtCompact;
+
+    /** The executor that runs background compaction. */
+    private ScheduledExecutorService compactor;
+
+    /**
+     * Constructs a new {@code SessionJournal}.
+     *
+     * @param theDir the directory in which the journal is stored
+     */
+    SessionJournal(final File theDir) {
+
+        this.dir = theDir;
+        this.file = new File(theDir, JOURNAL_FILENAME);
+        this.synch = new Object();
+    }
+
+    /**
+     * Tests whether a journal file exists.
+     *
+     * @return {@code true} if the journal file exists
+     */
+    boolean exists() {
+
+        return this.file.exists();
+    }
+
+    /**
+     * Replays the journal file, reconstructing the set of sessions it describes. Sessions that have timed out are
+     * omitted.
+     *
+     * @return a map from session ID to session (empty if there is no journal)
+     */
+    Map<String, LiveSessionInfo> replay() {
+
+        final Map<String, LiveSessionInfo> result = new HashMap<>(100);
+        final Map<String, Long> removed = new HashMap<>(100);
+
+        if (this.file.exists()) {
+            final long start = System.nanoTime();
+
+            final int count = JournalRecords.replay(this.file, MAX_RECORD_LEN, "session",
+                    record -> apply(record, result, removed));
+
+            result.values().removeIf(LiveSessionInfo::isTimedOut);
+
+            final long elapsed = (System.nanoTime() - start) / 1000000L;
+            Log.info("Replayed ", Integer.toString(count), " session journal records (",
+                    Integer.toString(result.size()), " live sessions) in ", Long.toString(elapsed), " ms");
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests whether sessions with a particular ID are journaled. The anonymous session and the testing-station session
+     * are not.
+     *
+     * @param sessionId the session ID
+     * @return {@code true} if the session is journaled
+     */
+    static boolean isJournaled(final String sessionId) {
+
+        return !SessionCache.ANONYMOUS_SESSION.equals(sessionId) && !SessionCache.TEST_SESSION_ID.equals(sessionId);
+    }
+
+    /**
+     * Applies a single record during replay.
+     *
+     * @param record   the record (type byte followed by payload)
+     * @param sessions the map of sessions being reconstructed
+     * @param removed  a map from the ID of each removed session to the sequence number of its removal record
+     * @throws IOException if the record could not be parsed
+     */
+    private static void apply(final byte[] record, final Map<String, LiveSessionInfo> sessions,
+                              final Map<String, Long> removed) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        final byte type = in.readByte();
+
+        if (type == REC_STATE) {
+            final LiveSessionInfo sess = LiveSessionInfo.readJournalState(in);
+            final String id = sess.loginSessionId;
+            final Long removedSeq = removed.get(id);
+            final LiveSessionInfo existing = sessions.get(id);
+
+            if (isJournaled(id) && (removedSeq == null || removedSeq.longValue() < sess.getJournalSeq())
+                && (existing == null || existing.getJournalSeq() < sess.getJournalSeq())) {
+                sessions.put(id, sess);
+            }
+        } else if (type == REC_TOUCH) {
+            final String id = in.readUTF();
+            final long seq = in.readLong();
+            final long lastActivity = in.readLong();
+            final long timeout = in.readLong();
+
+            final LiveSessionInfo existing = sessions.get(id);
+            if (existing != null && existing.getJournalSeq() < seq) {
+                existing.restoreActivity(Instant.ofEpochMilli(lastActivity), Instant.ofEpochMilli(timeout));
+                existing.setJournalSeq(seq);
+                existing.setJournaledActivity(lastActivity);
+            }
+        } else if (type == REC_REMOVE) {
+            final String id = in.readUTF();
+            final long seq = in.readLong();
+
+            final LiveSessionInfo existing = sessions.get(id);
+            if (existing != null && existing.getJournalSeq() < seq) {
+                sessions.remove(id);
+            }
+            removed.merge(id, Long.valueOf(seq), (a, b) -> a.longValue() >= b.longValue() ? a : b);
+        } else {
+            Log.warning("Unrecognized session journal record type: ", Byte.toString(type));
+        }
+    }
+
+    /**
+     * Opens the journal for appending, first compacting it to contain exactly a specified set of live sessions, and
+     * starts background compaction.
+     *
+     * @param liveSessions a supplier of the current set of live sessions
+     */
+    void start(final Supplier<? extends Collection<LiveSessionInfo>> liveSessions) {
+
+        synchronized (this.synch) {
+            compact(liveSessions.get());
+
+            if (this.compactor == null) {
+                this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    final Thread thread = new Thread(r, "Session journal compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.compactor.scheduleWithFixedDelay(() -> compactIfNeeded(liveSessions), COMPACT_CHECK_SEC,
+                        COMPACT_CHECK_SEC, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops background compaction, performs a final compaction, and closes the journal.
+     *
+     * @param liveSessions the current set of live sessions
+     */
+    void stop(final Collection<LiveSessionInfo> liveSessions) {
+
+        synchronized (this.synch) {
+            if (this.compactor != null) {
+                this.compactor.shutdownNow();
+                this.compactor = null;
+            }
+
+            if (this.channel != null) {
+                compact(liveSessions);
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Records the full state of a session (on creation, or when its user, act-as user, role, or time offset changes).
+     * Nothing is recorded if the session's removal has already been recorded. The caller must not hold the session's
+     * monitor.
+     *
+     * @param sess the session
+     */
+    void recordState(final LiveSessionInfo sess) {
+
+        if (!isJournaled(sess.loginSessionId)) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_STATE);
+            synchronized (sess) {
+                if (sess.isJournalRemoved()) {
+                    return;
+                }
+                sess.nextJournalSeq();
+                sess.setJournaledActivity(sess.getLastActivity().toEpochMilli());
+                sess.writeJournalState(out);
+            }
+        } catch (final IOException ex) {
+            Log.warning("Failed to serialize session journal record", ex);
+            return;
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Records a touch of a session, if the session has not had a touch journaled recently. The caller must not hold
+     * the session's monitor.
+     *
+     * @param sess the session
+     */
+    void recordTouch(final LiveSessionInfo sess) {
+
+        if (!isJournaled(sess.loginSessionId)) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_TOUCH);
+            synchronized (sess) {
+                final long activity = sess.getLastActivity().toEpochMilli();
+                if (sess.isJournalRemoved() || activity - sess.getJournaledActivity() < TOUCH_INTERVAL) {
+                    return;
+                }
+                sess.setJournaledActivity(activity);
+                out.writeUTF(sess.loginSessionId);
+                out.writeLong(sess.nextJournalSeq());
+                out.writeLong(activity);
+                out.writeLong(sess.getTimeout().toEpochMilli());
+            }
+        } catch (final IOException ex) {
+            Log.warning("Failed to serialize session journal record", ex);
+            return;
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Records the removal of a session, which must already have been removed from the set of live sessions. The
+     * record carries the session's next sequence number, so any state record generated before it is discarded on
+     * replay, even if it reaches the file later. The caller must not hold the session's monitor.
+     *
+     * @param sess the session that was removed
+     */
+    void recordRemove(final LiveSessionInfo sess) {
+
+        if (!isJournaled(sess.loginSessionId)) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_REMOVE);
+            synchronized (sess) {
+                if (sess.isJournalRemoved()) {
+                    return;
+                }
+                sess.setJournalRemoved();
+                out.writeUTF(sess.loginSessionId);
+                out.writeLong(sess.nextJournalSeq());
+            }
+        } catch (final IOException ex) {
+            Log.warning("Failed to serialize session journal record", ex);
+            return;
+        }
+
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Appends a record to the journal, if the journal is open.
+     *
+     * @param record the record (type byte followed by payload)
+     */
+    private void append(final byte[] record) {
+
+        synchronized (this.synch) {
+            if (this.channel != null) {
+                try {
+                    JournalRecords.write(this.channel, record);
+                    ++this.appendedSinceCompact;
+                } catch (final IOException ex) {
+                    Log.warning("Failed to append to session journal", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs a compaction if enough records have accumulated since the last compaction.
+     *
+     * @param liveSessions a supplier of the current set of live sessions
+     */
+    private void compactIfNeeded(final Supplier<? extends Collection<LiveSessionInfo>> liveSessions) {
+
+        try {
+            synchronized (this.synch) {
+                final int threshold = Math.max(MIN_COMPACT_RECORDS, 4 * this.liveAtCompact);
+                if (this.channel != null && this.appendedSinceCompact > threshold) {
+                    compact(liveSessions.get());
+                }
+            }
+        } catch (final RuntimeException ex) {
+            Log.warning("Session journal compaction failed", ex);
+        }
+    }
+
+    /**
+     * Rewrites the journal to contain one state record per live session, then reopens it for appending. Called with
+     * the journal lock held.
+     *
+     * @param liveSessions the current set of live sessions
+     */
+    private void compact(final Collection<LiveSessionInfo> liveSessions) {
+
+        final long start = System.nanoTime();
+
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            Log.warning("Unable to create directory ", this.dir.getAbsolutePath());
+            return;
+        }
+
+        final File tmp = new File(this.dir, COMPACT_FILENAME);
+        int count = 0;
+
+        try (final FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            for (final LiveSessionInfo sess : liveSessions) {
+                if (!isJournaled(sess.loginSessionId) || sess.isTimedOut()) {
+                    continue;
+                }
+
+                bytes.reset();
+                try (final DataOutputStream data = new DataOutputStream(bytes)) {
+                    data.writeByte(REC_STATE);
+                    synchronized (sess) {
+                        if (sess.isJournalRemoved()) {
+                            continue;
+                        }
+                        sess.writeJournalState(data);
+                    }
+                }
+
+                JournalRecords.write(out, bytes.toByteArray());
+                ++count;
+            }
+            out.force(true);
+        } catch (final IOException ex) {
+            Log.warning("Failed to write compacted session journal", ex);
+            return;
+        }
+
+        closeChannel();
+
+        try {
+            JournalRecords.replace(tmp, this.file);
+        } catch (final IOException ex) {
+            Log.warning("Failed to replace session journal with compacted journal", ex);
+        }
+
+        try {
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (final IOException ex) {
+            Log.warning("Failed to open session journal; sessions will not be journaled", ex);
+        }
+
+        this.appendedSinceCompact = 0;
+        this.liveAtCompact = count;
+
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+        Log.info("Compacted session journal to ", Integer.toString(count), " sessions in ", Long.toString(elapsed),
+                " ms");
+    }
+
+    /**
+     * Closes the append channel, if open. Called with the journal lock held.
+     */
+    private void closeChannel() {
+
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (final IOException ex) {
+                Log.warning("Failed to close session journal", ex);
+            }
+            this.channel = null;
+        }
+    }
+}
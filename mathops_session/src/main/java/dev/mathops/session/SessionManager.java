@@ -306,16 +306,28 @@ public final class SessionManager extends SessionCache implements ISessionManage
     }
 
     /**
-     * Writes a persistent record of all current sessions to a file in a specified directory (any existing sessions file
-     * in that directory is overwritten). This is intended to be called from the {@code destroy} method of an
-     * authentication servlet to allow sessions to survive a new deployment of that servlet (but not a shutdown of the
-     * server, since that would destroy SSL session IDs).
+     * Finishes persisting all current sessions in a specified directory. Sessions are journaled continuously once
+     * {@code load} has been called, so this performs a final compaction of the session journal and closes it. This is
+     * intended to be called from the {@code destroy} method of an authentication servlet.
      *
      * @param dir the directory in which to persist the active sessions
      */
     @Override
     public void persist(final File dir) {
 
+        Log.info("Session manager closing session journal in " + dir.getAbsolutePath());
+        closeJournal();
+    }
+
+    /**
+     * Exports all current sessions to an XML file in a specified directory (any existing sessions file in that
+     * directory is overwritten). If no session journal is present when {@code load} is next called on that directory,
+     * sessions are restored from this file.
+     *
+     * @param dir the directory in which to write the XML file
+     */
+    public void exportXml(final File dir) {
+
         final HtmlBuilder xml = new HtmlBuilder(1000);
         try {
             Log.info("Session manager persisting to " + dir.getAbsolutePath());
@@ -340,14 +352,30 @@ public final class SessionManager extends SessionCache implements ISessionManage
     }
 
     /**
-     * Loads a set of active sessions previously written by {@code persist}, and deletes that session file so old
-     * sessions cannot be re-used later.
+     * Restores active sessions from the session journal in a directory, then begins journaling all session changes to
+     * that directory. If there is no journal, but there is an XML file written by {@code exportXml}, sessions are
+     * restored from that file, which is then deleted so old sessions cannot be re-used later.
      *
      * @param dir the directory in which persisted sessions were written
      */
     @Override
     public void load(final File dir) {
 
+        if (!replayJournal(dir)) {
+            importXml(dir);
+        }
+
+        startJournal(dir);
+    }
+
+    /**
+     * Loads a set of active sessions previously written by {@code exportXml}, and deletes that session file so old
+     * sessions cannot be re-used later.
+     *
+     * @param dir the directory in which the XML file was written
+     */
+    private void importXml(final File dir) {
+
         final File target = new File(dir, PERSIST_FILENAME);
 
         Log.info("Restoring sessions from ", target.getAbsolutePath());
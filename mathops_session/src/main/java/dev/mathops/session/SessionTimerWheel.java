@@ -0,0 +1,277 @@
+package dev.mathops.session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hierarchical timer wheel that tracks the timeouts of live sessions so expired sessions can be found without
+ * scanning every session.
+ *
+ * <p>
+ * The wheel has three levels of 64 slots each. Level 0 slots are one tick (one second) wide, level 1 slots are 64
+ * ticks wide, and level 2 slots are 4096 ticks wide, so the wheel spans a little over three days. When a level 0
+ * revolution completes, the next level 1 slot is "cascaded" down into level 0 (and similarly from level 2 to level 1).
+ *
+ * <p>
+ * Sessions are not moved within the wheel when they are touched. Instead, when a session's slot comes due, its current
+ * timeout is checked: if the session was touched since it was scheduled, it is simply rescheduled at its new timeout.
+ * This keeps the session validation path free of any interaction with the wheel.
+ *
+ * <p>
+ * A session that is removed before it expires (on logout) is unscheduled: its entry stays in its slot until that slot
+ * comes due, but no longer references the session, so the session can be collected immediately.
+ *
+ * <p>
+ * The wheel is guarded by its own lock, which is taken only when sessions are added and when the wheel is advanced,
+ * never when sessions are validated.
+ */
+final class SessionTimerWheel {
+
+    /** The number of milliseconds per tick. */
+    private static final long TICK_MS = 1000L;
+
+    /** The number of bits used to index slots within a level. */
+    private static final int SLOT_BITS = 6;
+
+    /** The number of slots per level. */
+    private static final int NUM_SLOTS = 1 << SLOT_BITS;
+
+    /** A mask to extract a slot index. */
+    private static final long SLOT_MASK = (long) (NUM_SLOTS - 1);
+
+    /** The number of levels. */
+    private static final int NUM_LEVELS = 3;
+
+    /** The number of ticks spanned by the entire wheel. */
+    private static final long SPAN_TICKS = 1L << (SLOT_BITS * NUM_LEVELS);
+
+    /** Object on which to synchronize access to the wheel. */
+    private final Object synch;
+
+    /** The slots, indexed by level then by slot. */
+    private final List<List<Entry>> slots;
+
+    /** A map from each scheduled session to its entry. */
+    private final Map<LiveSessionInfo, Entry> entries;
+
+    /** The current tick (the tick whose slot was most recently processed). */
+    private long currentTick;
+
+    /** The number of sessions currently scheduled. */
+    private int size;
+
+    /**
+     * Constructs a new {@code SessionTimerWheel}.
+     *
+     * @param nowMs the current time, in milliseconds since the epoch
+     */
+    SessionTimerWheel(final long nowMs) {
+
+        this.synch = new Object();
+
+        final int total = NUM_LEVELS * NUM_SLOTS;
+        this.slots = new ArrayList<>(total);
+        for (int i = 0; i < total; ++i) {
+            this.slots.add(new ArrayList<>(4));
+        }
+        this.entries = new HashMap<>(100);
+
+        this.currentTick = nowMs / TICK_MS;
+    }
+
+    /**
+     * Gets the number of sessions currently scheduled in the wheel.
+     *
+     * @return the number of scheduled sessions
+     */
+    int size() {
+
+        synchronized (this.synch) {
+            return this.size;
+        }
+    }
+
+    /**
+     * Schedules a session to be checked for expiration at its current timeout. If the session is already scheduled,
+     * its existing entry is replaced.
+     *
+     * @param sess the session
+     */
+    void schedule(final LiveSessionInfo sess) {
+
+        final long deadline = toTick(sess.getTimeout().toEpochMilli());
+
+        synchronized (this.synch) {
+            // The current tick's slot has already been processed, so an overdue session goes in the next tick's slot
+            final Entry entry = new Entry(sess, Math.max(deadline, this.currentTick + 1L));
+            final Entry old = this.entries.put(sess, entry);
+            if (old == null) {
+                ++this.size;
+            } else {
+                old.session = null;
+            }
+            place(entry);
+        }
+    }
+
+    /**
+     * Unschedules a session that has been removed, so the wheel no longer holds a reference to it. Does nothing if the
+     * session is not scheduled.
+     *
+     * @param sess the session
+     */
+    void unschedule(final LiveSessionInfo sess) {
+
+        synchronized (this.synch) {
+            final Entry old = this.entries.remove(sess);
+            if (old != null) {
+                old.session = null;
+                --this.size;
+            }
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time, returning the list of sessions that have expired. Sessions that were
+     * touched since being scheduled are rescheduled at their new timeout rather than returned.
+     *
+     * @param nowMs the current time, in milliseconds since the epoch
+     * @return the list of expired sessions (empty if none)
+     */
+    List<LiveSessionInfo> advance(final long nowMs) {
+
+        final List<LiveSessionInfo> expired = new ArrayList<>(10);
+        final long targetTick = nowMs / TICK_MS;
+
+        synchronized (this.synch) {
+            while (this.currentTick < targetTick) {
+                ++this.currentTick;
+
+                if ((this.currentTick & SLOT_MASK) == 0L) {
+                    if (((this.currentTick >> SLOT_BITS) & SLOT_MASK) == 0L) {
+                        cascade(2);
+                    }
+                    cascade(1);
+                }
+
+                final List<Entry> due = slotList(0, this.currentTick);
+                if (!due.isEmpty()) {
+                    final List<Entry> fired = new ArrayList<>(due);
+                    due.clear();
+
+                    for (final Entry entry : fired) {
+                        final LiveSessionInfo sess = entry.session;
+                        if (sess == null) {
+                            continue;
+                        }
+
+                        final long actual = toTick(sess.getTimeout().toEpochMilli());
+                        if (actual > this.currentTick) {
+                            entry.deadline = actual;
+                            place(entry);
+                        } else {
+                            expired.add(sess);
+                            this.entries.remove(sess);
+                            --this.size;
+                        }
+                    }
+                }
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Moves all entries from the current slot of a higher level down into lower levels. Called with the lock held.
+     *
+     * @param level the level to cascade (1 or 2)
+     */
+    private void cascade(final int level) {
+
+        final List<Entry> slot = slotList(level, this.currentTick >> (SLOT_BITS * level));
+        if (!slot.isEmpty()) {
+            final List<Entry> moving = new ArrayList<>(slot);
+            slot.clear();
+            for (final Entry entry : moving) {
+                if (entry.session != null) {
+                    place(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Places an entry in the appropriate slot based on its deadline relative to the current tick. Entries whose
+     * deadline has already passed are placed in the current level 0 slot, which is used only while cascading (before
+     * that slot is processed). Called with the lock held.
+     *
+     * @param entry the entry to place
+     */
+    private void place(final Entry entry) {
+
+        final long maxTick = this.currentTick + SPAN_TICKS - 1L;
+        final long tick = Math.min(Math.max(entry.deadline, this.currentTick), maxTick);
+        final long delta = tick - this.currentTick;
+
+        final int level;
+        if (delta < (long) NUM_SLOTS) {
+            level = 0;
+        } else if (delta < (long) (NUM_SLOTS * NUM_SLOTS)) {
+            level = 1;
+        } else {
+            level = 2;
+        }
+
+        slotList(level, tick >> (SLOT_BITS * level)).add(entry);
+    }
+
+    /**
+     * Gets the list of entries for a slot.
+     *
+     * @param level the level
+     * @param index the (unmasked) slot index within the level
+     * @return the slot list
+     */
+    private List<Entry> slotList(final int level, final long index) {
+
+        return this.slots.get(level * NUM_SLOTS + (int) (index & SLOT_MASK));
+    }
+
+    /**
+     * Converts a time in milliseconds to a tick number, rounding up.
+     *
+     * @param ms the time in milliseconds since the epoch
+     * @return the tick number
+     */
+    private static long toTick(final long ms) {
+
+        return (ms + TICK_MS - 1L) / TICK_MS;
+    }
+
+    /**
+     * An entry in the wheel.
+     */
+    private static final class Entry {
+
+        /** The session; {@code null} if the session was unscheduled. */
+        LiveSessionInfo session;
+
+        /** The tick at which the session was last scheduled to expire. */
+        long deadline;
+
+        /**
+         * Constructs a new {@code Entry}.
+         *
+         * @param theSession  the session
+         * @param theDeadline the deadline tick
+         */
+        Entry(final LiveSessionInfo theSession, final long theDeadline) {
+
+            this.session = theSession;
+            this.deadline = theDeadline;
+        }
+    }
+}
@@ -105,26 +105,48 @@ public final class CourseSiteLogic {
     /**
      * Gathers all data. If any error occurs, the appropriate error code and message are set.
      *
+     * <p>
+     * Data computed for the same student in the same context within the last few seconds is reused from the
+     * {@code StudentStatusCache}.
+     *
      * @return {@code true} if successful; {@code false} if any failure (in which case error message is set)
      */
     public boolean gatherData() {
 
-        final ZonedDateTime now = this.sessionInfo.getNow();
-        final SiteData theData = new SiteData(this.siteProfile, now);
-
-        // First, do all database queries we'll need, so we get as close to a consistent image of the data as we can.
-        final boolean success = theData.load(this.cache, this.sessionInfo);
-        this.data = theData;
-
-        if (success) {
-            try {
-                this.course = new CourseSiteLogicCourse(this.cache, this, theData, this.sessionInfo);
-            } catch (final SQLException ex) {
-                Log.warning(ex);
+        final StudentStatusCache statusCache = StudentStatusCache.getInstance();
+        final String studentId = this.sessionInfo.getEffectiveUserId();
+        final String context = StudentStatusCache.makeContext(this.siteProfile, this.sessionInfo);
+
+        final StudentStatusCache.Entry cached = statusCache.get(studentId, context);
+
+        final boolean success;
+
+        if (cached == null) {
+            final long start = System.nanoTime();
+            final ZonedDateTime now = this.sessionInfo.getNow();
+            final SiteData theData = new SiteData(this.siteProfile, now);
+
+            // First, do all database queries we'll need, so we get as close to a consistent image of the data as we
+            // can.
+            success = theData.load(this.cache, this.sessionInfo);
+            this.data = theData;
+            this.course = null;
+
+            if (success) {
+                try {
+                    this.course = new CourseSiteLogicCourse(this.cache, theData, this.sessionInfo);
+                    statusCache.put(studentId, new StudentStatusCache.Entry(context, theData, this.course, start));
+                } catch (final SQLException ex) {
+                    Log.warning(ex);
+                }
+            } else {
+                final String err = theData.getError();
+                setError(err);
             }
         } else {
-            final String err = theData.getError();
-            setError(err);
+            this.data = cached.data();
+            this.course = cached.course();
+            success = true;
         }
 
         return success;
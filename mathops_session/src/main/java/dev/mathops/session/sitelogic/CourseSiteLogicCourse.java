@@ -44,6 +44,9 @@ import java.util.TreeSet;
  * Logic and data access relating to the course information for courses in which the student is enrolled.
  * <p>
  * Web page code should be performing NO logic - just layout and formatting of the information gathered here.
+ * <p>
+ * Instances are shared between requests through the {@code StudentStatusCache}, so they keep no reference to the data
+ * cache, login session, or {@code CourseSiteLogic} of the request that built them.
  */
 public final class CourseSiteLogicCourse {
 
@@ -62,14 +65,11 @@ public final class CourseSiteLogicCourse {
     /** The set of guest student IDs. */
     private static final List<String> GUEST_IDS = Arrays.asList(GUEST, AACTUTOR);
 
-    /** The owning site logic object. */
-    private final CourseSiteLogic owner;
-
     /** The course site data. */
     private final SiteData data;
 
-    /** The login session. */
-    private final ImmutableSessionInfo session;
+    /** The date/time at which the data was processed, in the session's time frame (which may be offset). */
+    private final ZonedDateTime sessionNow;
 
     /** The list of courses (not open yet) that the student may now start. */
     public final Set<CourseInfo> availableCourses;
@@ -144,17 +144,15 @@ public final class CourseSiteLogicCourse {
      * Constructs a new {@code CourseSiteLogicCourse}.
      *
      * @param cache      the data cache
-     * @param theOwner   the owning course site logic
      * @param theData    the course site data from which to construct profile information
      * @param theSession the login session
      * @throws SQLException if there is an error accessing the database
      */
-    CourseSiteLogicCourse(final Cache cache, final CourseSiteLogic theOwner, final SiteData theData,
-                          final ImmutableSessionInfo theSession) throws SQLException {
+    CourseSiteLogicCourse(final Cache cache, final SiteData theData, final ImmutableSessionInfo theSession)
+            throws SQLException {
 
-        this.owner = theOwner;
         this.data = theData;
-        this.session = theSession;
+        this.sessionNow = theSession.getNow();
 
         this.availableCourses = new TreeSet<>();
         this.unavailableCourses = new TreeSet<>();
@@ -183,17 +181,19 @@ public final class CourseSiteLogicCourse {
         this.courseLabels = new TreeMap<>();
 
         final ZonedDateTime now = ZonedDateTime.now();
-        processData(cache, now);
+        processData(cache, theSession, now);
     }
 
     /**
      * Populates data for all current courses for a student, once the active term has been loaded.
      *
-     * @param cache the data cache
-     * @param now   the current date/time
+     * @param cache   the data cache
+     * @param session the login session
+     * @param now     the current date/time
      * @throws SQLException if there is an error accessing the database
      */
-    private void processData(final Cache cache, final ZonedDateTime now) throws SQLException {
+    private void processData(final Cache cache, final ImmutableSessionInfo session, final ZonedDateTime now)
+            throws SQLException {
 
         final SiteDataStudent stuData = this.data.studentData;
 
@@ -205,7 +205,7 @@ public final class CourseSiteLogicCourse {
         if (GUEST_IDS.contains(student.stuId)) {
             loadGuestData(student.stuId);
         } else {
-            loadStudentData(cache, now);
+            loadStudentData(cache, session, now);
         }
     }
 
@@ -304,13 +304,15 @@ public final class CourseSiteLogicCourse {
     /**
      * Loads the available course data for a genuine student.
      *
-     * @param cache the data cache
-     * @param now   the current date/time
+     * @param cache   the data cache
+     * @param session the login session
+     * @param now     the current date/time
      * @throws SQLException if there is an error accessing the database
      */
-    private void loadStudentData(final Cache cache, final ZonedDateTime now) throws SQLException {
+    private void loadStudentData(final Cache cache, final ImmutableSessionInfo session, final ZonedDateTime now)
+            throws SQLException {
 
-        if (this.session.getEffectiveRole().canActAs(ERole.ADMINISTRATOR)) {
+        if (session.getEffectiveRole().canActAs(ERole.ADMINISTRATOR)) {
             final String lblm117 = this.courseLabels.get(RawRecordConstants.M117);
             this.inProgressCourses.add(new CourseInfo(RawRecordConstants.M117, lblm117));
 
@@ -364,7 +366,7 @@ public final class CourseSiteLogicCourse {
     private void addSpecialStudentCourses() {
 
         final SiteDataStudent stuData = this.data.studentData;
-        final ZonedDateTime now = this.owner.sessionInfo.getNow();
+        final ZonedDateTime now = this.sessionNow;
 
         if (stuData.isSpecialType(now, "TUTOR", "M384", "ADMIN")) {
 
@@ -461,7 +463,7 @@ public final class CourseSiteLogicCourse {
             LocalDate paceDeadlineDay = null;
             LocalDate lastTryDeadlineDay = null;
             int lastTryAttempts = -1;
-            final LocalDate today = this.owner.sessionInfo.getNow().toLocalDate();
+            final LocalDate today = this.sessionNow.toLocalDate();
 
             if (paceOrder != null) {
                 for (final RawMilestone msRec : allMilestones) {
@@ -638,7 +640,7 @@ public final class CourseSiteLogicCourse {
         final boolean isIncomplete = studentCourse.iDeadlineDt != null;
 
         if (isIncomplete) {
-            final LocalDate today = this.owner.sessionInfo.getNow().toLocalDate();
+            final LocalDate today = this.sessionNow.toLocalDate();
 
             final LocalDate dline;
 
@@ -0,0 +1,249 @@
+package dev.mathops.session.sitelogic;
+
+import dev.mathops.db.cfg.Profile;
+import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.data.SiteData;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A short-lived cache of the course status computed for each student by {@code CourseSiteLogic}, so a student moving
+ * between course site pages does not rebuild the same data (registrations, exam and homework history, milestones,
+ * pacing structure, and deadlines) on every page view.
+ *
+ * <p>
+ * An entry holds one student's data as computed for one context (the database profile, the effective role, and the
+ * session time offset, all of which affect the result); a lookup in a different context is a miss. Entries expire a
+ * short time after they are computed, and the cache holds a bounded number of entries, evicting the least recently
+ * used.
+ *
+ * <p>
+ * Code that writes rows affecting a student's status (exam and homework submission, pending exams, starting a course,
+ * registration and hold updates from the live registration check, e-text conversion, schedule and pace order changes,
+ * milestone extensions, and the administrative pages that edit these rows) calls {@code invalidate} for that student
+ * once the write is done. The exception is writes made by the status computation itself (recording satisfied
+ * prerequisites or a pacing structure it has determined), since the result it computes already reflects them. A
+ * result whose computation began before the most recent invalidation for its student is not stored, so a computation
+ * that overlaps a write cannot cache data from before the write. Writes made by other processes (desktop
+ * applications, batch jobs) are not seen until entries expire.
+ */
+public final class StudentStatusCache {
+
+    /** The default time an entry remains valid, in milliseconds. */
+    private static final long DEFAULT_TTL_MS = 30000L;
+
+    /** The default maximum number of entries. */
+    private static final int DEFAULT_MAX_ENTRIES = 2000;
+
+    /** The single instance. */
+    private static final StudentStatusCache INSTANCE = new StudentStatusCache();
+
+    /** Entries, keyed by student ID, in least-recently-used order. */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** The time of the most recent invalidation of each student (from {@code System.nanoTime}), oldest first. */
+    private final LinkedHashMap<String, Long> invalidations;
+
+    /** The time an entry remains valid, in nanoseconds. */
+    private long ttlNanos;
+
+    /** The maximum number of entries. */
+    private int maxEntries;
+
+    /** The number of lookups. */
+    private final AtomicLong lookups;
+
+    /** The number of lookups that found a valid entry. */
+    private final AtomicLong hits;
+
+    /** The number of invalidations. */
+    private final AtomicLong invalidationCount;
+
+    /**
+     * A cached result.
+     *
+     * @param context    the context in which the result was computed
+     * @param data       the site data
+     * @param course     the course logic (which keeps no reference to the request that computed it)
+     * @param startNanos the time computation of the result began (from {@code System.nanoTime})
+     */
+    record Entry(String context, SiteData data, CourseSiteLogicCourse course, long startNanos) {
+    }
+
+    /**
+     * Constructs a new {@code StudentStatusCache}.
+     */
+    private StudentStatusCache() {
+
+        this.entries = new LinkedHashMap<>(256, 0.75f, true);
+        this.invalidations = new LinkedHashMap<>(256);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MS);
+        this.maxEntries = DEFAULT_MAX_ENTRIES;
+        this.lookups = new AtomicLong();
+        this.hits = new AtomicLong();
+        this.invalidationCount = new AtomicLong();
+    }
+
+    /**
+     * Gets the single instance.
+     *
+     * @return the instance
+     */
+    public static StudentStatusCache getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Configures the cache.
+     *
+     * @param theTtlMs      the time an entry remains valid, in milliseconds (0 to disable caching)
+     * @param theMaxEntries the maximum number of entries
+     */
+    public synchronized void configure(final long theTtlMs, final int theMaxEntries) {
+
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, theTtlMs));
+        this.maxEntries = Math.max(0, theMaxEntries);
+        evict();
+    }
+
+    /**
+     * Generates the context string for a computation.
+     *
+     * @param profile the database profile
+     * @param session the session
+     * @return the context string
+     */
+    static String makeContext(final Profile profile, final ImmutableSessionInfo session) {
+
+        return profile.id + "/" + session.getEffectiveRole().name() + "/" + session.timeOffset;
+    }
+
+    /**
+     * Looks up a cached result.
+     *
+     * @param studentId the student ID
+     * @param context   the context
+     * @return the entry; {@code null} if there is no valid entry for the student in the context
+     */
+    synchronized Entry get(final String studentId, final String context) {
+
+        this.lookups.incrementAndGet();
+
+        Entry result = this.entries.get(studentId);
+
+        if (result != null) {
+            if (System.nanoTime() - result.startNanos() >= this.ttlNanos) {
+                this.entries.remove(studentId);
+                result = null;
+            } else if (result.context().equals(context)) {
+                this.hits.incrementAndGet();
+            } else {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores a result, unless the student was invalidated after its computation began or it has already expired.
+     *
+     * @param studentId the student ID
+     * @param entry     the entry
+     */
+    synchronized void put(final String studentId, final Entry entry) {
+
+        final Long invalidated = this.invalidations.get(studentId);
+        final boolean stale = invalidated != null && invalidated.longValue() - entry.startNanos() >= 0L;
+
+        if (!stale && System.nanoTime() - entry.startNanos() < this.ttlNanos) {
+            this.entries.put(studentId, entry);
+            evict();
+        }
+    }
+
+    /**
+     * Discards any cached result for a student. Called after writing data that affects the student's status.
+     *
+     * @param studentId the student ID
+     */
+    public synchronized void invalidate(final String studentId) {
+
+        if (studentId != null) {
+            final long now = System.nanoTime();
+
+            this.invalidationCount.incrementAndGet();
+            this.entries.remove(studentId);
+
+            // Re-insert so the map stays in order of invalidation time, then discard invalidations older than any
+            // computation that could still be stored
+            this.invalidations.remove(studentId);
+            this.invalidations.put(studentId, Long.valueOf(now));
+
+            final Iterator<Long> iter = this.invalidations.values().iterator();
+            while (iter.hasNext()) {
+                if (now - iter.next().longValue() < this.ttlNanos) {
+                    break;
+                }
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts least-recently-used entries until the cache is within its size limit.
+     */
+    private void evict() {
+
+        final Iterator<Map.Entry<String, Entry>> iter = this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maxEntries && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the number of lookups.
+     *
+     * @return the number of lookups
+     */
+    public long getLookups() {
+
+        return this.lookups.get();
+    }
+
+    /**
+     * Gets the number of lookups that found a valid entry.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+
+        return this.hits.get();
+    }
+
+    /**
+     * Gets the number of invalidations.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidations() {
+
+        return this.invalidationCount.get();
+    }
+}
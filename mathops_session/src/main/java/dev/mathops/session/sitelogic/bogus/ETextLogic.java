@@ -13,6 +13,7 @@ import dev.mathops.db.schema.legacy.rec.RawStetext;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -195,6 +196,8 @@ public enum ETextLogic {
                     }
                 }
             }
+
+            StudentStatusCache.getInstance().invalidate(studentId);
         } else {
             Log.warning("An e-text had retention 'C', but there is no ",
                     "corresponding e-text with retention 'Y' to which to convert");
@@ -4,6 +4,7 @@ import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.Profile;
+import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ImmutableSessionInfo;
 
 import java.sql.SQLException;
@@ -129,6 +130,12 @@ public final class SiteData {
     /**
      * Queries all database data relevant to a session's effective user ID within the session's context.
      *
+     * <p>
+     * The queries that depend only on the student ID and active term are started concurrently (see
+     * {@code SiteDataQueries}), then each phase runs in order, taking query results as it needs them, and running in
+     * sequence the queries that depend on the results or updates of earlier phases. The time taken by each phase is
+     * recorded in {@code SiteDataLoadStats}.
+     *
      * @param cache   the data cache
      * @param session the session info
      * @return {@code true} if success; {@code false} on any error
@@ -140,37 +147,50 @@ public final class SiteData {
         // NOTE: The "live reg" query is not done here - this logic will be called on each page
         // refresh, and live registration updates happen only on login
 
-        // final long t0 = System.currentTimeMillis();
-
-//        this.contextData.loadData(cache, this.courses);
-        // final long t1 = System.currentTimeMillis();
-
-        final boolean b2 = this.studentData.loadData(cache, session);
-        // final long t2 = System.currentTimeMillis();
-
-        final boolean b3 = this.milestoneData.preload(cache);
-        // final long t3 = System.currentTimeMillis();
-
-        final boolean b4 = this.registrationData.loadData(cache, session);
-        // final long t4 = System.currentTimeMillis();
+        final TermRec active = cache.getSystemData().getActiveTerm();
 
-        final boolean b5 = this.milestoneData.loadData(cache);
-        // final long t5 = System.currentTimeMillis();
+        boolean success = false;
 
-        final boolean b6 = this.activityData.loadData(cache);
-        // final long t6 = System.currentTimeMillis();
-
-        final boolean b7 = this.statusData.loadData(cache);
-        // final long t7 = System.currentTimeMillis();
-
-        // Log.info(" Context data: " + (t1 - t0));
-        // Log.info(" Student data: " + (t2 - t1));
-        // Log.info(" Milestone PRE data: " + (t3 - t2));
-        // Log.info(" Registration data: " + (t4 - t3));
-        // Log.info(" Milestone data: " + (t5 - t4));
-        // Log.info(" Activity data: " + (t6 - t5));
-        // Log.info(" Status data: " + (t7 - t6));
+        if (active == null) {
+            setError("Unable to query active term");
+        } else {
+            final long t0 = System.nanoTime();
+            final SiteDataQueries queries = new SiteDataQueries(this.profile, session.getEffectiveUserId(),
+                    active.term);
+
+            try {
+                final boolean b2 = this.studentData.loadData(cache, queries);
+                final long t1 = System.nanoTime();
+                SiteDataLoadStats.record("phase: student", t1 - t0);
+
+                if (b2) {
+                    final boolean b3 = this.milestoneData.preload(queries.getStudentTerms());
+                    final boolean b4 = this.registrationData.loadData(cache, session, queries);
+                    final long t2 = System.nanoTime();
+                    SiteDataLoadStats.record("phase: registration", t2 - t1);
+
+                    final boolean b5 = this.milestoneData.loadData(cache);
+                    final long t3 = System.nanoTime();
+                    SiteDataLoadStats.record("phase: milestone", t3 - t2);
+
+                    final boolean b6 = this.activityData.loadData(queries);
+                    final long t4 = System.nanoTime();
+                    SiteDataLoadStats.record("phase: activity", t4 - t3);
+
+                    final boolean b7 = this.statusData.loadData(cache);
+                    final long t5 = System.nanoTime();
+                    SiteDataLoadStats.record("phase: status", t5 - t4);
+                    SiteDataLoadStats.record("phase: total", t5 - t0);
+
+                    success = b3 && b4 && b5 && b6 && b7;
+                }
+            } finally {
+                if (!success) {
+                    queries.cancel();
+                }
+            }
+        }
 
-        return b2 && b3 && b4 && b5 && b6 && b7;
+        return success;
     }
 }
@@ -1,8 +1,5 @@
 package dev.mathops.session.sitelogic.data;
 
-import dev.mathops.db.Cache;
-import dev.mathops.db.schema.legacy.impl.RawStexamLogic;
-import dev.mathops.db.schema.legacy.impl.RawSthomeworkLogic;
 import dev.mathops.db.schema.legacy.rec.RawStexam;
 import dev.mathops.db.schema.legacy.rec.RawSthomework;
 
@@ -179,30 +176,29 @@ public final class SiteDataActivity {
      * {@code SuteDataProfile} object, and the {@code SiteDateRegistration} object, and the {@code SiteDateCourse}
      * object will have been populated in the process.
      *
-     * @param cache the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    boolean loadData(final Cache cache) throws SQLException {
+    boolean loadData(final SiteDataQueries queries) throws SQLException {
 
         // We assume that only current, relevant exam/homework/lesson date is retained, so there
         // is no harm in simply querying all of it!
-        return loadExams(cache) && loadHomework(cache);
+        return loadExams(queries) && loadHomework(queries);
     }
 
     /**
      * Loads and organizes all submitted exams for the student.
      *
-     * @param cache the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadExams(final Cache cache) throws SQLException {
+    private boolean loadExams(final SiteDataQueries queries) throws SQLException {
 
         final boolean success = true;
 
-        final List<RawStexam> allExams =
-                RawStexamLogic.queryByStudent(cache, this.owner.studentData.getStudent().stuId, true);
+        final List<RawStexam> allExams = queries.getStudentExams();
 
         for (final RawStexam exam : allExams) {
             final Map<Integer, List<RawStexam>> map = this.studentExams.computeIfAbsent(exam.course,
@@ -217,16 +213,15 @@ public final class SiteDataActivity {
     /**
      * Loads and organizes all submitted homework for the student.
      *
-     * @param cache the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if there is an error accessing the database
      */
-    private boolean loadHomework(final Cache cache) throws SQLException {
+    private boolean loadHomework(final SiteDataQueries queries) throws SQLException {
 
         final boolean success = true;
 
-        final List<RawSthomework> allHw = RawSthomeworkLogic.queryByStudent(cache,
-                this.owner.studentData.getStudent().stuId, false);
+        final List<RawSthomework> allHw = queries.getStudentHomework();
 
         for (final RawSthomework hw : allHw) {
             final String courseId = hw.course;
@@ -0,0 +1,108 @@
+package dev.mathops.session.sitelogic.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of the queries and phases performed when {@code SiteData} objects are loaded, accumulated since the server
+ * started, for display on diagnostics pages.
+ *
+ * <p>
+ * Each query that {@code SiteDataQueries} runs concurrently is recorded under the name of the query, and each ordered
+ * phase of {@code SiteData.load} is recorded under the name of the phase, prefixed with "phase:". Recording is
+ * lock-free.
+ */
+public enum SiteDataLoadStats {
+    ;
+
+    /** The number of nanoseconds in a microsecond. */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /** Map from query or phase name to its counters. */
+    private static final Map<String, Counters> COUNTERS = new ConcurrentHashMap<>(30);
+
+    /**
+     * Accumulated timings for one query or phase.
+     *
+     * @param name        the query or phase name
+     * @param count       the number of times it was performed
+     * @param totalMicros the total time taken, in microseconds
+     * @param maxMicros   the longest time taken, in microseconds
+     */
+    public record Entry(String name, long count, long totalMicros, long maxMicros) {
+
+        /**
+         * Gets the average time taken.
+         *
+         * @return the average time, in microseconds (0 if the count is zero)
+         */
+        public long averageMicros() {
+
+            return this.count == 0L ? 0L : this.totalMicros / this.count;
+        }
+    }
+
+    /**
+     * Counters for one query or phase.
+     */
+    private static final class Counters {
+
+        /** The number of times performed. */
+        final LongAdder count;
+
+        /** The total time, in microseconds. */
+        final LongAdder total;
+
+        /** The longest time, in microseconds. */
+        final AtomicLong max;
+
+        /**
+         * Constructs a new {@code Counters}.
+         */
+        Counters() {
+
+            this.count = new LongAdder();
+            this.total = new LongAdder();
+            this.max = new AtomicLong(0L);
+        }
+    }
+
+    /**
+     * Records the time taken by a query or phase.
+     *
+     * @param name         the query or phase name
+     * @param elapsedNanos the time taken, in nanoseconds
+     */
+    static void record(final String name, final long elapsedNanos) {
+
+        final long micros = elapsedNanos / NANOS_PER_MICRO;
+        final Counters counters = COUNTERS.computeIfAbsent(name, k -> new Counters());
+
+        counters.count.increment();
+        counters.total.add(micros);
+        counters.max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Takes a snapshot of the timings.
+     *
+     * @return the timings, sorted by name
+     */
+    public static List<Entry> snapshot() {
+
+        final List<Entry> result = new ArrayList<>(COUNTERS.size());
+
+        for (final Map.Entry<String, Counters> entry : COUNTERS.entrySet()) {
+            final Counters counters = entry.getValue();
+            result.add(new Entry(entry.getKey(), counters.count.sum(), counters.total.sum(), counters.max.get()));
+        }
+
+        result.sort((a, b) -> a.name().compareTo(b.name()));
+
+        return result;
+    }
+}
@@ -148,11 +148,21 @@ public final class SiteDataMilestone {
 
         final String studentId = this.owner.studentData.getStudent().stuId;
 
+        return preload(RawSttermLogic.queryByStudent(cache, studentId));
+    }
+
+    /**
+     * Stores the student's term records (queried before registration data loading).
+     *
+     * @param list the student term records
+     * @return {@code true} if success; {@code false} on any error
+     */
+    boolean preload(final Iterable<RawStterm> list) {
+
         // Clear, since we will call this again if the student term data was changed so what we
         // end up with is current
         this.studentTerms.clear();
 
-        final List<RawStterm> list = RawSttermLogic.queryByStudent(cache, studentId);
         for (final RawStterm test : list) {
             this.studentTerms.put(test.termKey.shortString, test);
         }
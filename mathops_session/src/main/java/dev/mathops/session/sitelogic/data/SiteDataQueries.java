@@ -0,0 +1,528 @@
+package dev.mathops.session.sitelogic.data;
+
+import dev.mathops.commons.log.Log;
+import dev.mathops.db.Cache;
+import dev.mathops.db.cfg.Profile;
+import dev.mathops.db.field.TermKey;
+import dev.mathops.db.schema.RawRecordConstants;
+import dev.mathops.db.schema.legacy.impl.RawAdminHoldLogic;
+import dev.mathops.db.schema.legacy.impl.RawFfrTrnsLogic;
+import dev.mathops.db.schema.legacy.impl.RawMpeCreditLogic;
+import dev.mathops.db.schema.legacy.impl.RawSpecialStusLogic;
+import dev.mathops.db.schema.legacy.impl.RawStcourseLogic;
+import dev.mathops.db.schema.legacy.impl.RawStetextLogic;
+import dev.mathops.db.schema.legacy.impl.RawStexamLogic;
+import dev.mathops.db.schema.legacy.impl.RawSthomeworkLogic;
+import dev.mathops.db.schema.legacy.impl.RawStmpeLogic;
+import dev.mathops.db.schema.legacy.impl.RawSttermLogic;
+import dev.mathops.db.schema.legacy.impl.RawStudentLogic;
+import dev.mathops.db.schema.legacy.rec.RawAdminHold;
+import dev.mathops.db.schema.legacy.rec.RawFfrTrns;
+import dev.mathops.db.schema.legacy.rec.RawMpeCredit;
+import dev.mathops.db.schema.legacy.rec.RawSpecialStus;
+import dev.mathops.db.schema.legacy.rec.RawStcourse;
+import dev.mathops.db.schema.legacy.rec.RawStetext;
+import dev.mathops.db.schema.legacy.rec.RawStexam;
+import dev.mathops.db.schema.legacy.rec.RawSthomework;
+import dev.mathops.db.schema.legacy.rec.RawStmpe;
+import dev.mathops.db.schema.legacy.rec.RawStterm;
+import dev.mathops.db.schema.legacy.rec.RawStudent;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The per-student queries on which {@code SiteData} loading depends, started concurrently so page latency is the
+ * longest of their round trips rather than the sum.
+ *
+ * <p>
+ * Every query here depends only on the student ID and the active term, and each reads data that the ordered phases of
+ * {@code SiteData.load} do not write before they would have read it, so the loaders see the same data they would have
+ * seen querying in sequence. Queries whose parameters depend on earlier results, and those that follow updates (like
+ * the student term and milestone queries made after pace track is determined), stay in the ordered phases.
+ *
+ * <p>
+ * Each load starts its queries on virtual threads of its own, so one page view never waits for a thread another page
+ * view is using. A server-wide limit on the number of queries in flight keeps loading from holding more database
+ * connections than the connection pool provides: a query that cannot get a permit when loading starts is not queued,
+ * but runs in the request thread when its result is needed, just as it did before queries were started concurrently.
+ * A request thread waits a bounded time for a result; if a query has not finished by then, it is abandoned and run
+ * again in the request thread. Each query runs with its own {@code Cache}, since a {@code Cache} is not shared between
+ * threads. The time taken by each query is recorded in {@code SiteDataLoadStats}.
+ */
+final class SiteDataQueries {
+
+    /**
+     * The maximum number of queries that may be in flight on query threads, across all loads. This should not exceed
+     * the number of connections the connection pool allows, less a margin for request threads.
+     */
+    private static final int MAX_CONCURRENT_QUERIES = 24;
+
+    /** The number of seconds a request thread waits for a query before running the query itself. */
+    private static final long QUERY_TIMEOUT_SEC = 10L;
+
+    /** Permits for queries in flight on query threads. */
+    private static final Semaphore PERMITS = new Semaphore(MAX_CONCURRENT_QUERIES);
+
+    /** The database profile. */
+    private final Profile profile;
+
+    /** The student ID. */
+    final String studentId;
+
+    /** The student record (null if the student ID is a special ID with a synthetic record). */
+    private final Pending<RawStudent> student;
+
+    /** The student e-texts. */
+    private final Pending<List<RawStetext>> studentETexts;
+
+    /** The special student categories. */
+    private final Pending<List<RawSpecialStus>> specialStudents;
+
+    /** The student holds. */
+    private final Pending<List<RawAdminHold>> studentHolds;
+
+    /** The student placement attempts. */
+    private final Pending<List<RawStmpe>> studentPlacement;
+
+    /** The student ELM exams. */
+    private final Pending<List<RawStexam>> studentElm;
+
+    /** The student placement credit. */
+    private final Pending<List<RawMpeCredit>> studentPlacementCredit;
+
+    /** The student credit by exam. */
+    private final Pending<List<RawStcourse>> studentOTCredit;
+
+    /** The student term records. */
+    private final Pending<List<RawStterm>> studentTerms;
+
+    /** All past and current registrations. */
+    private final Pending<List<RawStcourse>> allRegistrations;
+
+    /** Active-term registrations. */
+    private final Pending<List<RawStcourse>> activeTermRegistrations;
+
+    /** Transfer credit. */
+    private final Pending<List<RawFfrTrns>> transferCredit;
+
+    /** All submitted exams. */
+    private final Pending<List<RawStexam>> studentExams;
+
+    /** All submitted homework. */
+    private final Pending<List<RawSthomework>> studentHomework;
+
+    /** All pending queries, used to cancel queries not yet started when loading fails. */
+    private final List<Pending<?>> all;
+
+    /**
+     * A query that runs against a cache.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    private interface Query<T> {
+
+        /**
+         * Runs the query.
+         *
+         * @param cache the data cache
+         * @return the result
+         * @throws SQLException if there is an error accessing the database
+         */
+        T run(Cache cache) throws SQLException;
+    }
+
+    /**
+     * Constructs a new {@code SiteDataQueries}, starting all queries.
+     *
+     * @param profile    the database profile
+     * @param studentId  the student ID
+     * @param activeTerm the active term key
+     */
+    SiteDataQueries(final Profile profile, final String studentId, final TermKey activeTerm) {
+
+        this.profile = profile;
+        this.studentId = studentId;
+        this.all = new ArrayList<>(14);
+
+        final ThreadFactory factory = Thread.ofVirtual().name("SiteData query ", 0L).factory();
+        final ExecutorService executor = Executors.newThreadPerTaskExecutor(factory);
+
+        if (SiteDataStudent.makeSyntheticStudent(studentId) == null) {
+            this.student = start(executor, "student", cache -> RawStudentLogic.query(cache, studentId, false));
+        } else {
+            this.student = new Pending<>("student", cache -> null);
+            this.student.future = CompletableFuture.completedFuture(null);
+        }
+
+        this.studentETexts = start(executor, "stetext", cache -> RawStetextLogic.queryByStudent(cache, studentId));
+        this.specialStudents = start(executor, "special_stus",
+                cache -> RawSpecialStusLogic.queryByStudent(cache, studentId));
+        this.studentHolds = start(executor, "admin_hold", cache -> RawAdminHoldLogic.queryByStudent(cache, studentId));
+        this.studentPlacement = start(executor, "stmpe",
+                cache -> RawStmpeLogic.queryLegalByStudent(cache, studentId));
+        this.studentElm = start(executor, "stexam (ELM)",
+                cache -> RawStexamLogic.queryByStudentCourse(cache, studentId, RawRecordConstants.M100T, false));
+        this.studentPlacementCredit = start(executor, "mpe_credit",
+                cache -> RawMpeCreditLogic.queryByStudent(cache, studentId));
+        this.studentOTCredit = start(executor, "stcourse (credit by exam)",
+                cache -> RawStcourseLogic.queryCreditByExam(cache, studentId));
+        this.studentTerms = start(executor, "stterm", cache -> RawSttermLogic.queryByStudent(cache, studentId));
+        this.allRegistrations = start(executor, "stcourse (all)",
+                cache -> RawStcourseLogic.queryByStudent(cache, studentId, false, false));
+        this.activeTermRegistrations = start(executor, "stcourse (active term)",
+                cache -> RawStcourseLogic.queryByStudent(cache, studentId, activeTerm, true, false));
+        this.transferCredit = start(executor, "ffr_trns", cache -> RawFfrTrnsLogic.queryByStudent(cache, studentId));
+        this.studentExams = start(executor, "stexam", cache -> RawStexamLogic.queryByStudent(cache, studentId, true));
+        this.studentHomework = start(executor, "sthomework",
+                cache -> RawSthomeworkLogic.queryByStudent(cache, studentId, false));
+
+        // Tasks already submitted still run; this only lets the executor's resources be reclaimed when they finish
+        executor.shutdown();
+    }
+
+    /**
+     * Starts a query on a query thread if a permit is available. Otherwise, the query will run in the request thread
+     * when its result is needed.
+     *
+     * @param executor the executor on which to run the query
+     * @param name     the query name, under which its time is recorded
+     * @param query    the query
+     * @param <T>      the result type
+     * @return the pending query
+     */
+    private <T> Pending<T> start(final ExecutorService executor, final String name, final Query<T> query) {
+
+        final Pending<T> pending = new Pending<>(name, query);
+
+        if (PERMITS.tryAcquire()) {
+            try {
+                pending.future = executor.submit(() -> runWithPermit(pending));
+            } catch (final RejectedExecutionException ex) {
+                PERMITS.release();
+            }
+        }
+
+        this.all.add(pending);
+
+        return pending;
+    }
+
+    /**
+     * Runs a query on a query thread, then releases the permit acquired when the query was started. Does nothing if
+     * the query was cancelled before it began (in which case the canceller released the permit).
+     *
+     * @param pending the pending query
+     * @param <T>     the result type
+     * @return the result; {@code null} if the query was cancelled before it began
+     * @throws SQLException if there is an error accessing the database
+     */
+    private <T> T runWithPermit(final Pending<T> pending) throws SQLException {
+
+        T result = null;
+
+        if (pending.claim()) {
+            try {
+                result = run(pending);
+            } finally {
+                PERMITS.release();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs a query with a new {@code Cache}, recording the time taken.
+     *
+     * @param pending the pending query
+     * @param <T>     the result type
+     * @return the result
+     * @throws SQLException if there is an error accessing the database
+     */
+    private <T> T run(final Pending<T> pending) throws SQLException {
+
+        final long start = System.nanoTime();
+        try {
+            return pending.query.run(new Cache(this.profile));
+        } finally {
+            SiteDataLoadStats.record(pending.name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Gets the result of a query, waiting a bounded time for a query thread to complete it, or running it in the
+     * calling thread if it was never started or did not finish in time.
+     *
+     * @param pending the pending query
+     * @param <T>     the result type
+     * @return the result
+     * @throws SQLException if the query failed or the wait was interrupted
+     */
+    private <T> T await(final Pending<T> pending) throws SQLException {
+
+        final Future<T> future = pending.future;
+
+        if (future != null) {
+            try {
+                return future.get(QUERY_TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (final ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof final SQLException sqlEx) {
+                    throw sqlEx;
+                }
+                throw new SQLException("Query failed", cause);
+            } catch (final TimeoutException ex) {
+                // Abandon the query without interrupting it (its connection returns to the pool when it finishes)
+                Log.warning("SiteData query '", pending.name, "' did not complete in ",
+                        Long.toString(QUERY_TIMEOUT_SEC), " seconds; running it in the request thread");
+                cancel(pending);
+            } catch (final CancellationException ex) {
+                // Fall through to run the query here
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for query", ex);
+            }
+        }
+
+        return run(pending);
+    }
+
+    /**
+     * Cancels a pending query, releasing its permit if it had not yet begun.
+     *
+     * @param pending the pending query
+     */
+    private static void cancel(final Pending<?> pending) {
+
+        final Future<?> future = pending.future;
+
+        if (future != null && !future.isDone()) {
+            future.cancel(false);
+            if (pending.claim()) {
+                PERMITS.release();
+            }
+        }
+    }
+
+    /**
+     * Cancels any queries that have not yet started (called when loading fails, and the results will not be used).
+     */
+    void cancel() {
+
+        for (final Pending<?> pending : this.all) {
+            cancel(pending);
+        }
+    }
+
+    /**
+     * Gets the student record.
+     *
+     * @return the student record; {@code null} if the student was not found or has a synthetic record
+     * @throws SQLException if the query failed
+     */
+    RawStudent getStudent() throws SQLException {
+
+        return await(this.student);
+    }
+
+    /**
+     * Gets the student e-texts.
+     *
+     * @return the student e-texts
+     * @throws SQLException if the query failed
+     */
+    List<RawStetext> getStudentETexts() throws SQLException {
+
+        return await(this.studentETexts);
+    }
+
+    /**
+     * Gets the special student categories.
+     *
+     * @return the special student categories
+     * @throws SQLException if the query failed
+     */
+    List<RawSpecialStus> getSpecialStudents() throws SQLException {
+
+        return await(this.specialStudents);
+    }
+
+    /**
+     * Gets the student holds.
+     *
+     * @return the student holds
+     * @throws SQLException if the query failed
+     */
+    List<RawAdminHold> getStudentHolds() throws SQLException {
+
+        return await(this.studentHolds);
+    }
+
+    /**
+     * Gets the student's legal placement attempts.
+     *
+     * @return the placement attempts
+     * @throws SQLException if the query failed
+     */
+    List<RawStmpe> getStudentPlacement() throws SQLException {
+
+        return await(this.studentPlacement);
+    }
+
+    /**
+     * Gets the student's ELM exams.
+     *
+     * @return the ELM exams
+     * @throws SQLException if the query failed
+     */
+    List<RawStexam> getStudentElm() throws SQLException {
+
+        return await(this.studentElm);
+    }
+
+    /**
+     * Gets the student placement credit.
+     *
+     * @return the placement credit
+     * @throws SQLException if the query failed
+     */
+    List<RawMpeCredit> getStudentPlacementCredit() throws SQLException {
+
+        return await(this.studentPlacementCredit);
+    }
+
+    /**
+     * Gets the student credit by exam.
+     *
+     * @return the credit by exam records
+     * @throws SQLException if the query failed
+     */
+    List<RawStcourse> getStudentOTCredit() throws SQLException {
+
+        return await(this.studentOTCredit);
+    }
+
+    /**
+     * Gets the student term records, as they were before registration data was loaded.
+     *
+     * @return the student term records
+     * @throws SQLException if the query failed
+     */
+    List<RawStterm> getStudentTerms() throws SQLException {
+
+        return await(this.studentTerms);
+    }
+
+    /**
+     * Gets all past and current registrations.
+     *
+     * @return the registrations
+     * @throws SQLException if the query failed
+     */
+    List<RawStcourse> getAllRegistrations() throws SQLException {
+
+        return await(this.allRegistrations);
+    }
+
+    /**
+     * Gets active-term registrations that have not been dropped.
+     *
+     * @return the registrations
+     * @throws SQLException if the query failed
+     */
+    List<RawStcourse> getActiveTermRegistrations() throws SQLException {
+
+        return await(this.activeTermRegistrations);
+    }
+
+    /**
+     * Gets transfer credit.
+     *
+     * @return the transfer credit records
+     * @throws SQLException if the query failed
+     */
+    List<RawFfrTrns> getTransferCredit() throws SQLException {
+
+        return await(this.transferCredit);
+    }
+
+    /**
+     * Gets all submitted exams.
+     *
+     * @return the exams
+     * @throws SQLException if the query failed
+     */
+    List<RawStexam> getStudentExams() throws SQLException {
+
+        return await(this.studentExams);
+    }
+
+    /**
+     * Gets all submitted homework.
+     *
+     * @return the homework
+     * @throws SQLException if the query failed
+     */
+    List<RawSthomework> getStudentHomework() throws SQLException {
+
+        return await(this.studentHomework);
+    }
+
+    /**
+     * A query that may have been started on a query thread.
+     *
+     * @param <T> the result type
+     */
+    private static final class Pending<T> {
+
+        /** The query name. */
+        final String name;
+
+        /** The query. */
+        final Query<T> query;
+
+        /** Set when the query begins on a query thread, or is cancelled before it begins. */
+        private final AtomicBoolean claimed;
+
+        /** The future that will hold the result; {@code null} if the query was not started on a query thread. */
+        Future<T> future;
+
+        /**
+         * Constructs a new {@code Pending}.
+         *
+         * @param theName  the query name
+         * @param theQuery the query
+         */
+        Pending(final String theName, final Query<T> theQuery) {
+
+            this.name = theName;
+            this.query = theQuery;
+            this.claimed = new AtomicBoolean(false);
+        }
+
+        /**
+         * Claims the query, either to run it on a query thread or to cancel it. Only the first claim succeeds.
+         *
+         * @return {@code true} if the claim succeeded
+         */
+        boolean claim() {
+
+            return this.claimed.compareAndSet(false, true);
+        }
+    }
+}
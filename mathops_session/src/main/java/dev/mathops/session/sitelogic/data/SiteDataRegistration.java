@@ -6,7 +6,6 @@ import dev.mathops.db.field.ERole;
 import dev.mathops.db.logic.SystemData;
 import dev.mathops.db.logic.course.PaceTrackLogic;
 import dev.mathops.db.logic.course.PrerequisiteLogic;
-import dev.mathops.db.schema.legacy.impl.RawFfrTrnsLogic;
 import dev.mathops.db.schema.legacy.impl.RawStcourseLogic;
 import dev.mathops.db.schema.legacy.impl.RawSttermLogic;
 import dev.mathops.db.schema.legacy.impl.RawStudentLogic;
@@ -21,6 +20,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -249,19 +249,21 @@ public final class SiteDataRegistration {
      *
      * @param cache   the data cache
      * @param session the login session
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    boolean loadData(final Cache cache, final ImmutableSessionInfo session) throws SQLException {
+    boolean loadData(final Cache cache, final ImmutableSessionInfo session, final SiteDataQueries queries)
+            throws SQLException {
 
         final SystemData systemData = cache.getSystemData();
         this.active = systemData.getActiveTerm();
 
         final String studentId = this.owner.studentData.getStudent().stuId;
 
-        final boolean b1 = loadRegistrations(cache, studentId);
+        final boolean b1 = loadRegistrations(cache, queries);
 
-        this.transferCredit = RawFfrTrnsLogic.queryByStudent(cache, studentId);
+        this.transferCredit = queries.getTransferCredit();
 
         final boolean b2 = buildSpecialStuRegs(cache, session);
 
@@ -306,7 +308,7 @@ public final class SiteDataRegistration {
     }
 
     /**
-     * Updates the pace order in the database for a registration record.
+     * Updates the pace order in the database for a registration record, and invalidates the student's cached status.
      *
      * @param cache        the data cache
      * @param reg          the registration record
@@ -318,6 +320,7 @@ public final class SiteDataRegistration {
 
         if (RawStcourseLogic.updatePaceOrder(cache, reg.stuId, reg.course, reg.sect, reg.termKey, newPaceOrder)) {
             reg.paceOrder = newPaceOrder;
+            StudentStatusCache.getInstance().invalidate(reg.stuId);
         }
     }
 
@@ -325,18 +328,18 @@ public final class SiteDataRegistration {
      * Loads all completed course records (regardless of term) for a student, as well as all current term records that
      * have not been dropped. This will include "ignored" records.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param cache   the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadRegistrations(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadRegistrations(final Cache cache, final SiteDataQueries queries) throws SQLException {
 
         final boolean success = true;
 
         // Load all courses marked as completed (for all terms), that are not credit by exam, used for testing
         // prerequisites (we store credit by exam elsewhere)
-        final List<RawStcourse> allPastAndCurrent = RawStcourseLogic.queryByStudent(cache, studentId, false, false);
+        final List<RawStcourse> allPastAndCurrent = queries.getAllRegistrations();
 
         this.allCompletedCourses = new ArrayList<>(allPastAndCurrent.size());
         for (final RawStcourse past : allPastAndCurrent) {
@@ -347,8 +350,7 @@ public final class SiteDataRegistration {
 
         // Now load current term registrations, but discard any "dropped" (keep those forfeit)
 
-        final List<RawStcourse> curTermReg =
-                RawStcourseLogic.queryByStudent(cache, studentId, this.active.term, true, false);
+        final List<RawStcourse> curTermReg = queries.getActiveTermRegistrations();
 
         this.registrations = new ArrayList<>(curTermReg.size());
         this.registrationTerms = new ArrayList<>(curTermReg.size());
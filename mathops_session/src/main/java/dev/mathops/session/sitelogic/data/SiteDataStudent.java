@@ -3,13 +3,6 @@ package dev.mathops.session.sitelogic.data;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.db.logic.SystemData;
 import dev.mathops.db.Cache;
-import dev.mathops.db.schema.legacy.impl.RawAdminHoldLogic;
-import dev.mathops.db.schema.legacy.impl.RawMpeCreditLogic;
-import dev.mathops.db.schema.legacy.impl.RawSpecialStusLogic;
-import dev.mathops.db.schema.legacy.impl.RawStcourseLogic;
-import dev.mathops.db.schema.legacy.impl.RawStetextLogic;
-import dev.mathops.db.schema.legacy.impl.RawStexamLogic;
-import dev.mathops.db.schema.legacy.impl.RawStmpeLogic;
 import dev.mathops.db.schema.legacy.impl.RawStudentLogic;
 import dev.mathops.db.schema.legacy.rec.RawAdminHold;
 import dev.mathops.db.schema.legacy.rec.RawEtextCourse;
@@ -21,8 +14,6 @@ import dev.mathops.db.schema.legacy.rec.RawStetext;
 import dev.mathops.db.schema.legacy.rec.RawStexam;
 import dev.mathops.db.schema.legacy.rec.RawStmpe;
 import dev.mathops.db.schema.legacy.rec.RawStudent;
-import dev.mathops.db.schema.RawRecordConstants;
-import dev.mathops.session.ImmutableSessionInfo;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -275,23 +266,21 @@ public final class SiteDataStudent {
      * At the time this method is called; the {@code SiteData} object will have loaded the active term, all calendar
      * records, all pace track rules, and the {@code SiteDataContext} object.
      *
-     * @param cache          the data cache
-     * @param theSessionInfo the session info
+     * @param cache   the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    boolean loadData(final Cache cache, final ImmutableSessionInfo theSessionInfo) throws SQLException {
+    boolean loadData(final Cache cache, final SiteDataQueries queries) throws SQLException {
 
-        final String studentId = theSessionInfo.getEffectiveUserId();
-
-        return loadStudent(cache, studentId)
-                && loadStudentETexts(cache, studentId)
-                && loadSpecialStudent(cache, studentId)
-                && loadStudentHolds(cache, studentId)
-                && loadStudentPlacement(cache, studentId)
-                && loadStudentElm(cache, studentId)
-                && loadStudentPlacementCredit(cache, studentId)
-                && loadStudentOTCredit(cache, studentId);
+        return loadStudent(queries)
+                && loadStudentETexts(cache, queries)
+                && loadSpecialStudent(queries)
+                && loadStudentHolds(queries)
+                && loadStudentPlacement(queries)
+                && loadStudentElm(queries)
+                && loadStudentPlacementCredit(queries)
+                && loadStudentOTCredit(queries);
 
         // TODO: Get score coupons (or move that to the scores object)?
         // TODO: Make a student preferences object?
@@ -301,20 +290,19 @@ public final class SiteDataStudent {
     /**
      * Loads the student record.
      *
-     * @param cache     the data cache
-     * @param studentId the student ID
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadStudent(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudent(final SiteDataQueries queries) throws SQLException {
 
         final boolean success;
 
         // Test for special IDs that create synthetic student records
-        this.student = makeSyntheticStudent(studentId);
+        this.student = makeSyntheticStudent(queries.studentId);
 
         if (this.student == null) {
-            this.student = RawStudentLogic.query(cache, studentId, false);
+            this.student = queries.getStudent();
 
             if (this.student == null) {
                 this.owner.setError("Unable to query student record");
@@ -335,7 +323,7 @@ public final class SiteDataStudent {
      * @param studentId the student ID
      * @return the synthetic record (defaults to a "Guest" record if the student ID is not a recognized special ID)
      */
-    private static RawStudent makeSyntheticStudent(final String studentId) {
+    static RawStudent makeSyntheticStudent(final String studentId) {
 
         // Detect special IDs and generate synthetic student records, marking as not-real
 
@@ -350,16 +338,16 @@ public final class SiteDataStudent {
     /**
      * Loads all e-texts owned by the student.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param cache   the data cache
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadStudentETexts(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentETexts(final Cache cache, final SiteDataQueries queries) throws SQLException {
 
         final SystemData systemData = cache.getSystemData();
 
-        this.studentETexts = RawStetextLogic.queryByStudent(cache, studentId);
+        this.studentETexts = queries.getStudentETexts();
 
         final LocalDate today = this.owner.now.toLocalDate();
         for (final RawStetext stetext : this.studentETexts) {
@@ -384,14 +372,13 @@ public final class SiteDataStudent {
     /**
      * Loads all special categories for which the student is configured.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadSpecialStudent(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadSpecialStudent(final SiteDataQueries queries) throws SQLException {
 
-        final List<RawSpecialStus> allSpecial = RawSpecialStusLogic.queryByStudent(cache, studentId);
+        final List<RawSpecialStus> allSpecial = queries.getSpecialStudents();
         if (allSpecial.isEmpty()) {
             this.specialStudents = allSpecial;
         } else {
@@ -414,14 +401,13 @@ public final class SiteDataStudent {
     /**
      * Loads all holds currently applied to a student's account.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadStudentHolds(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentHolds(final SiteDataQueries queries) throws SQLException {
 
-        this.studentHolds = RawAdminHoldLogic.queryByStudent(cache, studentId);
+        this.studentHolds = queries.getStudentHolds();
 
         return true;
     }
@@ -429,14 +415,13 @@ public final class SiteDataStudent {
     /**
      * Loads all placement attempts for a student.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadStudentPlacement(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentPlacement(final SiteDataQueries queries) throws SQLException {
 
-        this.studentPlacement = RawStmpeLogic.queryLegalByStudent(cache, studentId);
+        this.studentPlacement = queries.getStudentPlacement();
 
         return true;
     }
@@ -444,14 +429,13 @@ public final class SiteDataStudent {
     /**
      * Loads all ELM attempts for a student.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if an error occurs reading data
      */
-    private boolean loadStudentElm(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentElm(final SiteDataQueries queries) throws SQLException {
 
-        this.studentElm = RawStexamLogic.queryByStudentCourse(cache, studentId, RawRecordConstants.M100T, false);
+        this.studentElm = queries.getStudentElm();
 
         return true;
     }
@@ -459,14 +443,13 @@ public final class SiteDataStudent {
     /**
      * Loads all placement credit for a student.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if there is an error accessing the database
      */
-    private boolean loadStudentPlacementCredit(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentPlacementCredit(final SiteDataQueries queries) throws SQLException {
 
-        this.studentPlacementCredit = RawMpeCreditLogic.queryByStudent(cache, studentId);
+        this.studentPlacementCredit = queries.getStudentPlacementCredit();
 
         return true;
     }
@@ -474,14 +457,13 @@ public final class SiteDataStudent {
     /**
      * Loads all OT credit for a student.
      *
-     * @param cache     the data cache
-     * @param studentId the ID of the student
+     * @param queries the queries started for the student
      * @return {@code true} if success; {@code false} on any error
      * @throws SQLException if there is an error accessing the database
      */
-    private boolean loadStudentOTCredit(final Cache cache, final String studentId) throws SQLException {
+    private boolean loadStudentOTCredit(final SiteDataQueries queries) throws SQLException {
 
-        this.studentOTCredit = RawStcourseLogic.queryCreditByExam(cache, studentId);
+        this.studentOTCredit = queries.getStudentOTCredit();
 
         return true;
     }
@@ -26,6 +26,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.db.field.TermKey;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.text.builder.HtmlBuilder;
 
 import java.sql.SQLException;
@@ -438,6 +439,7 @@ class EligibilityTesterBase {
                                 Log.info("Setting student pacing to ", pacingId,
                                         " as part of testing exam eligibility");
                                 RawStudentLogic.updatePacingStructure(cache, this.student.stuId, pacingId);
+                                StudentStatusCache.getInstance().invalidate(this.student.stuId);
                             }
                         }
 
@@ -14,6 +14,7 @@ import dev.mathops.db.schema.legacy.rec.RawStcourse;
 import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.field.TermKey;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -135,6 +136,7 @@ public final class StartCourse extends LogicBase {
             if (sect.pacingStructure != null) {
                 Log.info("Setting student pacing to ", sect.pacingStructure, " as student starts course ", theCourse);
                 RawStudentLogic.updatePacingStructure(cache, stu.stuId, sect.pacingStructure);
+                StudentStatusCache.getInstance().invalidate(stu.stuId);
             }
         }
 
@@ -160,6 +162,7 @@ public final class StartCourse extends LogicBase {
         if (RawStcourseLogic.updateOpenStatusAndFinalClassRoll(cache, stCourse.stuId, stCourse.course, stCourse.sect,
                 stCourse.termKey, "Y", stCourse.finalClassRoll, stCourse.lastClassRollDt)) {
             stCourse.openStatus = "Y";
+            StudentStatusCache.getInstance().invalidate(stCourse.stuId);
         }
 
         return "Y".equals(stCourse.openStatus);
@@ -44,6 +44,7 @@ import dev.mathops.session.ISessionManager;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.LiveSessionInfo;
 import dev.mathops.session.sitelogic.bogus.ETextLogic;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -1970,6 +1971,7 @@ public final class StudentCourseStatus extends LogicBase {
 
                     this.studentCourse.completed = "Y";
                     this.studentCourse.score = score;
+                    StudentStatusCache.getInstance().invalidate(this.studentCourse.stuId);
                 }
 
                 Log.info("Marking course ", this.studentCourse.course, " as completed with score ",
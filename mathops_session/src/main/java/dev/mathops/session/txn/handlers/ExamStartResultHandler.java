@@ -5,6 +5,7 @@ import dev.mathops.db.Cache;
 import dev.mathops.db.schema.legacy.impl.RawClientPcLogic;
 import dev.mathops.db.schema.legacy.impl.RawPendingExamLogic;
 import dev.mathops.db.schema.legacy.rec.RawClientPc;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.txn.messages.AbstractRequestBase;
 import dev.mathops.session.txn.messages.ExamStartResultReply;
 import dev.mathops.session.txn.messages.ExamStartResultRequest;
@@ -109,6 +110,7 @@ public final class ExamStartResultHandler extends AbstractHandlerBase {
                     } else {
                         final String studentId = getStudentData().getStudentId();
                         RawPendingExamLogic.delete(cache, request.serialNumber, studentId);
+                        StudentStatusCache.getInstance().invalidate(studentId);
                     }
                 }
 
@@ -117,6 +119,7 @@ public final class ExamStartResultHandler extends AbstractHandlerBase {
             } else {
                 final String studentId = getStudentData().getStudentId();
                 RawPendingExamLogic.delete(cache, request.serialNumber, studentId);
+                StudentStatusCache.getInstance().invalidate(studentId);
             }
         }
 
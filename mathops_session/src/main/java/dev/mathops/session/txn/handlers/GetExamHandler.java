@@ -1,6 +1,7 @@
 package dev.mathops.session.txn.handlers;
 
 import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.RealizedExamPool;
 import dev.mathops.assessment.document.template.DocColumn;
 import dev.mathops.assessment.document.template.DocNonwrappingSpan;
 import dev.mathops.assessment.document.template.DocParagraph;
@@ -39,6 +40,7 @@ import dev.mathops.db.schema.main.rec.MasteryExamRec;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ExamWriter;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.ExamEligibilityTester;
 import dev.mathops.session.txn.messages.AbstractRequestBase;
 import dev.mathops.session.txn.messages.AvailableExam;
@@ -431,6 +433,7 @@ public final class GetExamHandler extends AbstractHandlerBase {
                                     avail.exam.unit, avail.exam.examType, avail.timelimitFactor, "STU");
 
                             RawPendingExamLogic.insert(cache, pending);
+                            StudentStatusCache.getInstance().invalidate(student.stuId);
                         }
                     }
                 } else {
@@ -593,7 +596,7 @@ public final class GetExamHandler extends AbstractHandlerBase {
                         Log.warning("Exam " + exam.ref + " section " + onSect + " problem " + onProb + " choice "
                                 + i + " getProblem() returned " + prb);
                     } else if (!(prb instanceof ProblemAutoCorrectTemplate)) {
-                        prb = InstructionalCache.getProblem(prb.id);
+                        prb = InstructionalCache.getProblemTemplate(prb.id);
 
                         if (prb != null) {
                             eprob.setProblem(i, prb);
@@ -639,12 +642,14 @@ public final class GetExamHandler extends AbstractHandlerBase {
     private void buildPresentedExam(final Cache cache, final String ref, final long serial,
                                     final GetExamReply reply, final TermRec term, final boolean isProctored) {
 
-        final ExamObj exam = InstructionalCache.getExam(ref);
+        // Read the exam's attributes from the shared template; a copy is made only if no pooled exam can be used
+        final ExamObj template = InstructionalCache.getExamTemplate(ref);
+        ExamObj presented = null;
 
-        if (exam == null) {
+        if (template == null) {
             reply.status = GetExamReply.CANNOT_LOAD_EXAM_TEMPLATE;
             Log.warning("Unable to load template for " + ref);
-        } else if (exam.ref == null) {
+        } else if (template.ref == null) {
             reply.status = GetExamReply.CANNOT_LOAD_EXAM_TEMPLATE;
             Log.warning("Errors loading exam template");
         } else {
@@ -655,10 +660,10 @@ public final class GetExamHandler extends AbstractHandlerBase {
             try {
                 final RawStudent student = studentData.getStudentRecord();
 
-                final List<RawStexam> stexams = RawStexamLogic.getExamsByVersion(cache, student.stuId, exam.examVersion,
-                        false);
+                final List<RawStexam> stexams = RawStexamLogic.getExamsByVersion(cache, student.stuId,
+                        template.examVersion, false);
 
-                final String examCourse = exam.course;
+                final String examCourse = template.course;
                 if (stexams.size() > 1 && (RawRecordConstants.M117.equals(examCourse)
                         || RawRecordConstants.M118.equals(examCourse)
                         || RawRecordConstants.M124.equals(examCourse)
@@ -703,45 +708,63 @@ public final class GetExamHandler extends AbstractHandlerBase {
                     }
                 }
 
-                // Now we must add the exam's problems so it can be realized.
-                final int numSect = exam.getNumSections();
+                final boolean isRemote = "Y".equals(getTestingCenter().isRemote);
 
-                for (int onSect = 0; onSect < numSect; ++onSect) {
-                    final ExamSection esect = exam.getSection(onSect);
-                    final int numProb = esect.getNumProblems();
+                // Use a pre-realized exam if one is available (unless items are to be auto-passed, which requires
+                // changes to the exam before realization)
+                final ExamObj pooled = autoPassItems.isEmpty()
+                        ? RealizedExamPool.getInstance().take(ref, isProctored) : null;
+                final boolean realized;
+                if (pooled == null) {
+                    final ExamObj exam = template.deepCopy();
 
-                    for (int onProb = 0; onProb < numProb; ++onProb) {
+                    // Now we must add the exam's problems so it can be realized.
+                    final int numSect = exam.getNumSections();
 
-                        final ExamProblem eprob = esect.getProblem(onProb);
-                        final int num = eprob.getNumProblems();
+                    for (int onSect = 0; onSect < numSect; ++onSect) {
+                        final ExamSection esect = exam.getSection(onSect);
+                        final int numProb = esect.getNumProblems();
 
-                        final Integer problemIdObj = Integer.valueOf(eprob.problemId);
-                        if (autoPassItems.contains(problemIdObj)) {
-                            final ProblemAutoCorrectTemplate prb = new ProblemAutoCorrectTemplate(2);
-                            for (int i = 0; i < num; ++i) {
-                                eprob.setProblem(i, prb);
-                            }
-                        } else {
-                            for (int i = 0; i < num; ++i) {
-                                AbstractProblemTemplate prb = eprob.getProblem(i);
+                        for (int onProb = 0; onProb < numProb; ++onProb) {
 
-                                if (prb == null || prb.id == null) {
-                                    Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb + " choice "
-                                            + i + " getProblem() returned " + prb);
-                                } else {
-                                    prb = InstructionalCache.getProblem(prb.id);
+                            final ExamProblem eprob = esect.getProblem(onProb);
+                            final int num = eprob.getNumProblems();
+
+                            final Integer problemIdObj = Integer.valueOf(eprob.problemId);
+                            if (autoPassItems.contains(problemIdObj)) {
+                                final ProblemAutoCorrectTemplate prb = new ProblemAutoCorrectTemplate(2);
+                                for (int i = 0; i < num; ++i) {
+                                    eprob.setProblem(i, prb);
+                                }
+                            } else {
+                                for (int i = 0; i < num; ++i) {
+                                    AbstractProblemTemplate prb = eprob.getProblem(i);
 
-                                    if (prb != null) {
-                                        eprob.setProblem(i, prb);
+                                    if (prb == null || prb.id == null) {
+                                        Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb
+                                                + " choice " + i + " getProblem() returned " + prb);
+                                    } else {
+                                        prb = InstructionalCache.getProblemTemplate(prb.id);
+
+                                        if (prb != null) {
+                                            eprob.setProblem(i, prb);
+                                        }
                                     }
                                 }
                             }
                         }
                     }
+
+                    realized = exam.realize(isRemote, isProctored, serial);
+                    presented = exam;
+                } else {
+                    pooled.assignDelivery(isRemote, isProctored, serial);
+                    realized = true;
+                    presented = pooled;
                 }
 
-                if (exam.realize("Y".equals(getTestingCenter().isRemote), isProctored, serial)) {
-                    reply.presentedExam = exam;
+                if (realized) {
+                    reply.presentedExam = presented;
                     reply.status = GetExamReply.SUCCESS;
                     reply.studentId = student.stuId;
 
@@ -763,7 +786,7 @@ public final class GetExamHandler extends AbstractHandlerBase {
         // TODO: Pre-populate "Survey" section of exam with existing answers.
 
         if (reply.status == GetExamReply.SUCCESS) {
-            reply.presentedExam = exam;
+            reply.presentedExam = presented;
         }
     }
 }
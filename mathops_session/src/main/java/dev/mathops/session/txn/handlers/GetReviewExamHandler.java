@@ -345,7 +345,7 @@ public final class GetReviewExamHandler extends AbstractHandlerBase {
                             Log.warning("Problem " + (onProb + 1) + CoreConstants.DOT + (i + 1) + " in section "
                                     + (onSect + 1) + " in exam ", exam.ref, " invalid");
                         } else {
-                            prb = InstructionalCache.getProblem(prb.id);
+                            prb = InstructionalCache.getProblemTemplate(prb.id);
 
                             if (prb != null) {
                                 eprob.setProblem(i, prb);
@@ -81,6 +81,7 @@ import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ISessionManager;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.LiveSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.StudentCourseStatus;
 import dev.mathops.session.txn.messages.AbstractRequestBase;
 import dev.mathops.session.txn.messages.UpdateExamReply;
@@ -286,6 +287,7 @@ public final class UpdateExamHandler extends AbstractHandlerBase {
                             "Y", "C", null, exam.course, unit, examObj.examType, "N", source, null);
 
                     RawStexamLogic.insert(cache, stexam);
+                    StudentStatusCache.getInstance().invalidate(stuId);
                 }
             }
         }
@@ -436,12 +438,16 @@ public final class UpdateExamHandler extends AbstractHandlerBase {
             }
         }
 
-        RawPendingExamLogic.delete(cache, presented.serialNumber, student.stuId);
+        try {
+            RawPendingExamLogic.delete(cache, presented.serialNumber, student.stuId);
 
-        if ("synthetic".equals(presented.ref)) {
-            processStandardMasteryExam(cache, presented, student, req);
-        } else {
-            processOldExam(cache, presented, student, isTut, req, rep);
+            if ("synthetic".equals(presented.ref)) {
+                processStandardMasteryExam(cache, presented, student, req);
+            } else {
+                processOldExam(cache, presented, student, isTut, req, rep);
+            }
+        } finally {
+            StudentStatusCache.getInstance().invalidate(student.stuId);
         }
 
         final RawClientPc client = getClient();
@@ -0,0 +1,99 @@
+package dev.mathops.session;
+
+import dev.mathops.db.field.ERole;
+import dev.mathops.session.login.LocalLoginProcessor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load harness that measures the throughput of {@code SessionCache.validate()} with many concurrent threads, at a
+ * range of live session counts. Each thread validates randomly chosen session IDs for a fixed interval, and the total
+ * number of validations per second is reported.
+ */
+enum SessionCacheBenchmark {
+    ;
+
+    /** The numbers of live sessions to test. */
+    private static final int[] SESSION_COUNTS = {1000, 5000, 10000, 25000, 50000};
+
+    /** The duration of the warm-up interval for each run, in milliseconds. */
+    private static final long WARMUP_MS = 2000L;
+
+    /** The duration of the measurement interval for each run, in milliseconds. */
+    private static final long MEASURE_MS = 5000L;
+
+    /**
+     * Runs the benchmark for one session count.
+     *
+     * @param numSessions the number of live sessions
+     * @param numThreads  the number of validating threads
+     * @throws InterruptedException if interrupted while waiting for threads
+     */
+    private static void run(final int numSessions, final int numThreads) throws InterruptedException {
+
+        final SessionCache cache = new SessionCache();
+
+        final String[] ids = new String[numSessions];
+        for (int i = 0; i < numSessions; ++i) {
+            ids[i] = "BenchSession" + i;
+            final LiveSessionInfo live = new LiveSessionInfo(ids[i], LocalLoginProcessor.TYPE, ERole.STUDENT);
+            live.setUserInfo(Integer.toString(800000000 + i), "First", "Last", "First Last");
+            cache.addUserSession(live);
+        }
+
+        final AtomicBoolean measuring = new AtomicBoolean(false);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final LongAdder count = new LongAdder();
+        final CountDownLatch done = new CountDownLatch(numThreads);
+
+        for (int t = 0; t < numThreads; ++t) {
+            final Thread thread = new Thread(() -> {
+                final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (running.get()) {
+                    final SessionResult result = cache.validate(ids[rnd.nextInt(numSessions)]);
+                    if (result.session != null && measuring.get()) {
+                        count.increment();
+                    }
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(WARMUP_MS);
+        measuring.set(true);
+        final long start = System.nanoTime();
+        Thread.sleep(MEASURE_MS);
+        measuring.set(false);
+        final long elapsed = System.nanoTime() - start;
+        running.set(false);
+        done.await();
+
+        final double perSecond = (double) count.sum() * 1.0e9 / (double) elapsed;
+        System.out.printf("%6d sessions, %2d threads: %,14.0f validations/sec%n", Integer.valueOf(numSessions),
+                Integer.valueOf(numThreads), Double.valueOf(perSecond));
+    }
+
+    /**
+     * Main method to execute the benchmark.
+     *
+     * @param args command-line arguments (an optional thread count)
+     */
+    public static void main(final String... args) {
+
+        final int numThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors() * 2;
+
+        try {
+            for (final int numSessions : SESSION_COUNTS) {
+                run(numSessions, numThreads);
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
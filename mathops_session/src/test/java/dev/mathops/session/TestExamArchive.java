@@ -0,0 +1,263 @@
+package dev.mathops.session;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code ExamArchive} class.
+ */
+final class TestExamArchive {
+
+    /** A student ID. */
+    private static final String STUDENT = "800000001";
+
+    /** An exam serial number. */
+    private static final long SERIAL = 12345678L;
+
+    /** A temporary directory in which to store archives. */
+    @TempDir
+    File dir;
+
+    /**
+     * Constructs a new {@code TestExamArchive}
+     */
+    TestExamArchive() {
+
+        //  No action
+    }
+
+    /**
+     * Builds record data of a specified size that compresses well, as exam XML does.
+     *
+     * @param tag  a tag to make the data distinct
+     * @param size the approximate size, in bytes
+     * @return the data
+     */
+    private static byte[] makeData(final String tag, final int size) {
+
+        final StringBuilder builder = new StringBuilder(size + 100);
+        int i = 0;
+        while (builder.length() < size) {
+            builder.append("<exam-problem problem-id=\"").append(tag).append(i).append("\"><var name=\"x\" value=\"")
+                    .append(i * 7).append("\"/></exam-problem>");
+            ++i;
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the first segment file of the archive.
+     *
+     * @return the segment file
+     */
+    private File segmentFile() {
+
+        return new File(this.dir, "exams-00001.seg");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Appended records read back")
+    void test0101() {
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+
+        final byte[] exam = makeData("exam", 20000);
+        final byte[] tiny = {(byte) 1, (byte) 2, (byte) 3};
+
+        assertFalse(archive.contains(STUDENT, SERIAL, EExamRecordType.EXAM), "Empty archive should have no record");
+        assertTrue(archive.append(STUDENT, SERIAL, EExamRecordType.EXAM, exam), "Append should succeed");
+        assertTrue(archive.append(STUDENT, SERIAL, EExamRecordType.ANSWERS, tiny), "Append should succeed");
+
+        assertTrue(archive.contains(STUDENT, SERIAL, EExamRecordType.EXAM), "Archive should have exam record");
+        assertArrayEquals(exam, archive.read(STUDENT, SERIAL, EExamRecordType.EXAM), "Exam record is incorrect");
+        assertArrayEquals(tiny, archive.read(STUDENT, SERIAL, EExamRecordType.ANSWERS), "Answers are incorrect");
+        assertNull(archive.read(STUDENT, SERIAL, EExamRecordType.RECOVERY), "Missing record should be null");
+        assertTrue(segmentFile().length() < 20000L, "Exam record should be compressed");
+
+        archive.close();
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Later records replace earlier ones, except activity records")
+    void test0102() {
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+
+        final byte[] first = "1;A\n2;B\n".getBytes(StandardCharsets.UTF_8);
+        final byte[] second = "1;C\n2;D\n".getBytes(StandardCharsets.UTF_8);
+        archive.append(STUDENT, SERIAL, EExamRecordType.ANSWERS, first);
+        archive.append(STUDENT, SERIAL, EExamRecordType.ANSWERS, second);
+
+        archive.append(STUDENT, SERIAL, EExamRecordType.ACTIVITY, "line 1\n".getBytes(StandardCharsets.UTF_8));
+        archive.append(STUDENT, SERIAL, EExamRecordType.ACTIVITY, "line 2\n".getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals(second, archive.read(STUDENT, SERIAL, EExamRecordType.ANSWERS),
+                "Later answers should replace earlier");
+        assertEquals("line 1\nline 2\n", new String(archive.read(STUDENT, SERIAL, EExamRecordType.ACTIVITY),
+                StandardCharsets.UTF_8), "Activity records should be concatenated");
+
+        final List<String> scanned = new ArrayList<>(2);
+        archive.scan(EExamRecordType.ANSWERS, rec -> scanned.add(new String(rec.data(), StandardCharsets.UTF_8)));
+        assertEquals(List.of("1;C\n2;D\n"), scanned, "Scan should deliver only the current answers");
+
+        archive.close();
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Append if absent writes only the first of concurrent records with a key")
+    void test0103() throws InterruptedException, ExecutionException {
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+
+        final int count = 16;
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        final List<Callable<Boolean>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            final byte[] data = makeData("exam" + i, 2000);
+            tasks.add(() -> Boolean.valueOf(archive.appendIfAbsent(STUDENT, SERIAL, EExamRecordType.EXAM, data)));
+        }
+
+        int written = 0;
+        try {
+            for (final Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (result.get().booleanValue()) {
+                    ++written;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, written, "Exactly one record should be written");
+        assertEquals(1, archive.scan(EExamRecordType.EXAM, rec -> {
+        }), "Archive should hold one exam record");
+
+        archive.close();
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Records survive closing and reopening")
+    void test0104() {
+
+        final byte[] exam = makeData("exam", 5000);
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+        archive.append(STUDENT, SERIAL, EExamRecordType.EXAM, exam);
+        archive.append(STUDENT, SERIAL + 1L, EExamRecordType.EXAM, exam);
+        archive.append(STUDENT, SERIAL, EExamRecordType.ACTIVITY, "a\n".getBytes(StandardCharsets.UTF_8));
+        archive.append(STUDENT, SERIAL, EExamRecordType.ACTIVITY, "b\n".getBytes(StandardCharsets.UTF_8));
+        ExamArchive.closeAll();
+
+        assertFalse(archive.append(STUDENT, SERIAL, EExamRecordType.ANSWERS, exam), "Closed archive should reject");
+
+        final ExamArchive reopened = ExamArchive.get(this.dir);
+        assertNotNull(reopened, "Archive should reopen");
+        assertArrayEquals(exam, reopened.read(STUDENT, SERIAL + 1L, EExamRecordType.EXAM), "Exam should survive");
+        assertEquals("a\nb\n", new String(reopened.read(STUDENT, SERIAL, EExamRecordType.ACTIVITY),
+                StandardCharsets.UTF_8), "Activity should survive");
+        assertFalse(reopened.appendIfAbsent(STUDENT, SERIAL, EExamRecordType.EXAM, exam),
+                "Reopened archive should reject a duplicate exam");
+
+        reopened.close();
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Torn record at the tail is discarded on reopen")
+    void test0105() throws IOException {
+
+        final byte[] exam = makeData("exam", 5000);
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+        archive.append(STUDENT, SERIAL, EExamRecordType.EXAM, exam);
+        final long goodLength = segmentFile().length();
+        archive.append(STUDENT, SERIAL + 1L, EExamRecordType.EXAM, exam);
+        archive.close();
+
+        // Simulate a crash part way through writing the second record
+        final long tornLength = goodLength + (segmentFile().length() - goodLength) / 2L;
+        try (final RandomAccessFile raf = new RandomAccessFile(segmentFile(), "rw")) {
+            raf.setLength(tornLength);
+        }
+
+        final ExamArchive reopened = ExamArchive.get(this.dir);
+        assertNotNull(reopened, "Archive should reopen");
+        assertArrayEquals(exam, reopened.read(STUDENT, SERIAL, EExamRecordType.EXAM), "First record should survive");
+        assertFalse(reopened.contains(STUDENT, SERIAL + 1L, EExamRecordType.EXAM), "Torn record should be dropped");
+        assertEquals(goodLength, segmentFile().length(), "Torn record should be truncated");
+
+        assertTrue(reopened.append(STUDENT, SERIAL + 2L, EExamRecordType.EXAM, exam), "Append should succeed");
+        reopened.close();
+
+        final ExamArchive again = ExamArchive.get(this.dir);
+        assertNotNull(again, "Archive should reopen");
+        assertArrayEquals(exam, again.read(STUDENT, SERIAL + 2L, EExamRecordType.EXAM),
+                "Record appended after the torn tail should survive");
+        again.close();
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Corrupt record at the tail is discarded, and unindexed records recovered")
+    void test0106() throws IOException {
+
+        final byte[] exam = makeData("exam", 5000);
+
+        final ExamArchive archive = ExamArchive.get(this.dir);
+        assertNotNull(archive, "Archive should open");
+        archive.append(STUDENT, SERIAL, EExamRecordType.EXAM, exam);
+        archive.append(STUDENT, SERIAL + 1L, EExamRecordType.EXAM, exam);
+        final long goodLength = segmentFile().length();
+        archive.append(STUDENT, SERIAL + 2L, EExamRecordType.EXAM, exam);
+        archive.close();
+
+        // Corrupt the last record, and lose the index so every record must be recovered by scanning
+        try (final RandomAccessFile raf = new RandomAccessFile(segmentFile(), "rw")) {
+            final long pos = segmentFile().length() - 10L;
+            raf.seek(pos);
+            final int value = raf.read();
+            raf.seek(pos);
+            raf.write(value ^ 0x5A);
+        }
+        assertTrue(new File(this.dir, "exams-00001.idx").delete(), "Index should be deleted");
+
+        final ExamArchive reopened = ExamArchive.get(this.dir);
+        assertNotNull(reopened, "Archive should reopen");
+        assertArrayEquals(exam, reopened.read(STUDENT, SERIAL, EExamRecordType.EXAM), "Record 1 should be recovered");
+        assertArrayEquals(exam, reopened.read(STUDENT, SERIAL + 1L, EExamRecordType.EXAM),
+                "Record 2 should be recovered");
+        assertFalse(reopened.contains(STUDENT, SERIAL + 2L, EExamRecordType.EXAM), "Corrupt record should be dropped");
+        assertEquals(goodLength, segmentFile().length(), "Corrupt record should be truncated");
+        reopened.close();
+    }
+}
@@ -0,0 +1,327 @@
+package dev.mathops.session;
+
+import dev.mathops.db.field.ERole;
+import dev.mathops.session.login.LocalLoginProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code SessionJournal} class.
+ */
+final class TestSessionJournal {
+
+    /** Record type for a full session state (matches {@code SessionJournal}). */
+    private static final byte REC_STATE = 1;
+
+    /** Record type for a session removal (matches {@code SessionJournal}). */
+    private static final byte REC_REMOVE = 3;
+
+    /** A temporary directory in which to store journals. */
+    @TempDir
+    File dir;
+
+    /**
+     * Constructs a new {@code TestSessionJournal}
+     */
+    TestSessionJournal() {
+
+        //  No action
+    }
+
+    /**
+     * Creates a session with a user.
+     *
+     * @param id     the session ID
+     * @param userId the user ID
+     * @return the session
+     */
+    private static LiveSessionInfo makeSession(final String id, final String userId) {
+
+        final LiveSessionInfo sess = new LiveSessionInfo(id, LocalLoginProcessor.TYPE, ERole.STUDENT);
+        sess.setUserInfo(userId, "First", "Last", "First Last");
+
+        return sess;
+    }
+
+    /**
+     * Opens a journal with no live sessions.
+     *
+     * @return the journal
+     */
+    private SessionJournal openJournal() {
+
+        final SessionJournal journal = new SessionJournal(this.dir);
+        journal.start(List::of);
+
+        return journal;
+    }
+
+    /**
+     * Builds a framed state record for a session, with a specified sequence number.
+     *
+     * @param sess the session
+     * @param seq  the sequence number
+     * @return the framed record
+     * @throws IOException if the record could not be built
+     */
+    private static byte[] stateRecord(final LiveSessionInfo sess, final long seq) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_STATE);
+            sess.setJournalSeq(seq);
+            sess.writeJournalState(out);
+        }
+
+        return frame(bytes.toByteArray());
+    }
+
+    /**
+     * Builds a framed removal record for a session, with a specified sequence number.
+     *
+     * @param id  the session ID
+     * @param seq the sequence number
+     * @return the framed record
+     * @throws IOException if the record could not be built
+     */
+    private static byte[] removeRecord(final String id, final long seq) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_REMOVE);
+            out.writeUTF(id);
+            out.writeLong(seq);
+        }
+
+        return frame(bytes.toByteArray());
+    }
+
+    /**
+     * Frames a record with its length prefix and CRC suffix.
+     *
+     * @param record the record
+     * @return the framed record
+     * @throws IOException if the record could not be framed
+     */
+    private static byte[] frame(final byte[] record) throws IOException {
+
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 8);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(record.length);
+            out.write(record);
+            out.writeInt((int) crc.getValue());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a journal file containing a sequence of framed records.
+     *
+     * @param records the records
+     * @throws IOException if the file could not be written
+     */
+    private void writeJournal(final byte[]... records) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        for (final byte[] rec : records) {
+            bytes.write(rec);
+        }
+
+        Files.write(new File(this.dir, SessionJournal.JOURNAL_FILENAME).toPath(), bytes.toByteArray());
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Replay of a missing journal")
+    void test0101() {
+
+        final SessionJournal journal = new SessionJournal(this.dir);
+
+        assertFalse(journal.exists(), "Journal should not exist");
+        assertTrue(journal.replay().isEmpty(), "Replay of missing journal should be empty");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Recorded states replay")
+    void test0102() {
+
+        final LiveSessionInfo sess1 = makeSession("Session1", "800000001");
+        final LiveSessionInfo sess2 = makeSession("Session2", "800000002");
+
+        final SessionJournal journal = openJournal();
+        journal.recordState(sess1);
+        journal.recordState(sess2);
+        sess2.setUserInfo("800000003", "Other", "User", "Other User");
+        journal.recordState(sess2);
+
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+        journal.stop(List.of(sess1, sess2));
+
+        assertEquals(2, replayed.size(), "Replay should restore both sessions");
+        assertEquals("800000001", replayed.get("Session1").getUserId(), "Session 1 has incorrect user");
+        assertEquals("800000003", replayed.get("Session2").getUserId(), "Session 2 should have its latest user");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Recorded removal replays")
+    void test0103() {
+
+        final LiveSessionInfo sess1 = makeSession("Session1", "800000001");
+        final LiveSessionInfo sess2 = makeSession("Session2", "800000002");
+
+        final SessionJournal journal = openJournal();
+        journal.recordState(sess1);
+        journal.recordState(sess2);
+        journal.recordRemove(sess1);
+        journal.recordState(sess1);
+
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+        journal.stop(List.of(sess2));
+
+        assertEquals(1, replayed.size(), "Replay should restore one session");
+        assertNull(replayed.get("Session1"), "Removed session should not be restored");
+        assertNotNull(replayed.get("Session2"), "Live session should be restored");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("State generated before removal but appended after it")
+    void test0104() throws IOException {
+
+        final LiveSessionInfo sess = makeSession("Session1", "800000001");
+
+        writeJournal(stateRecord(sess, 1L), removeRecord("Session1", 3L), stateRecord(sess, 2L));
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+
+        assertTrue(replayed.isEmpty(), "Late state record should not restore a removed session");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Removal reaching the file before the state it follows")
+    void test0105() throws IOException {
+
+        final LiveSessionInfo sess = makeSession("Session1", "800000001");
+
+        writeJournal(removeRecord("Session1", 2L), stateRecord(sess, 1L));
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+
+        assertTrue(replayed.isEmpty(), "State record older than removal should be discarded");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Anonymous and testing sessions are not journaled")
+    void test0106() throws IOException {
+
+        final LiveSessionInfo anon = makeSession(SessionCache.ANONYMOUS_SESSION, "800000001");
+        final LiveSessionInfo testing = makeSession(SessionCache.TEST_SESSION_ID, "800000002");
+        final LiveSessionInfo sess = makeSession("Session1", "800000003");
+
+        final SessionJournal journal = openJournal();
+        journal.recordState(anon);
+        journal.recordState(testing);
+        journal.recordState(sess);
+        journal.stop(List.of(anon, testing, sess));
+
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+        assertEquals(1, replayed.size(), "Only the ordinary session should be journaled");
+        assertNotNull(replayed.get("Session1"), "Ordinary session should be restored");
+
+        writeJournal(stateRecord(testing, 1L), stateRecord(anon, 1L));
+        assertTrue(new SessionJournal(this.dir).replay().isEmpty(), "Special session records should be ignored");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Truncated record at tail")
+    void test0107() throws IOException {
+
+        final LiveSessionInfo sess1 = makeSession("Session1", "800000001");
+        final LiveSessionInfo sess2 = makeSession("Session2", "800000002");
+
+        writeJournal(stateRecord(sess1, 1L), stateRecord(sess2, 1L));
+
+        final File file = new File(this.dir, SessionJournal.JOURNAL_FILENAME);
+        final long fullLen = file.length();
+        final List<Integer> sizes = new ArrayList<>(3);
+
+        // Cut the last record off at several points: in its length, its body, and its CRC
+        for (final long cut : new long[]{fullLen - 1L, fullLen - 6L, fullLen - 20L}) {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(cut);
+            }
+            sizes.add(Integer.valueOf(new SessionJournal(this.dir).replay().size()));
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(2L);
+        }
+        sizes.add(Integer.valueOf(new SessionJournal(this.dir).replay().size()));
+
+        assertEquals(List.of(Integer.valueOf(1), Integer.valueOf(1), Integer.valueOf(1), Integer.valueOf(0)), sizes,
+                "Replay should stop at a truncated record");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Corrupt record at tail")
+    void test0108() throws IOException {
+
+        final LiveSessionInfo sess1 = makeSession("Session1", "800000001");
+        final LiveSessionInfo sess2 = makeSession("Session2", "800000002");
+
+        final byte[] last = stateRecord(sess2, 1L);
+        last[last.length / 2] ^= (byte) 0x5A;
+        writeJournal(stateRecord(sess1, 1L), last, stateRecord(makeSession("Session3", "800000003"), 1L));
+
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+
+        assertEquals(1, replayed.size(), "Replay should stop at a corrupt record");
+        assertNotNull(replayed.get("Session1"), "Record before the corrupt record should be restored");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Compaction keeps only live sessions")
+    void test0109() {
+
+        final LiveSessionInfo sess1 = makeSession("Session1", "800000001");
+        final LiveSessionInfo sess2 = makeSession("Session2", "800000002");
+
+        final SessionJournal journal = openJournal();
+        journal.recordState(sess1);
+        journal.recordState(sess2);
+        journal.recordRemove(sess2);
+        journal.stop(List.of(sess1, sess2));
+
+        final Map<String, LiveSessionInfo> replayed = new SessionJournal(this.dir).replay();
+
+        assertEquals(1, replayed.size(), "Compacted journal should hold one session");
+        assertNotNull(replayed.get("Session1"), "Live session should survive compaction");
+    }
+}
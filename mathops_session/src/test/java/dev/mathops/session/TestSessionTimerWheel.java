@@ -0,0 +1,180 @@
+package dev.mathops.session;
+
+import dev.mathops.db.field.ERole;
+import dev.mathops.session.login.LocalLoginProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code SessionTimerWheel} class.
+ */
+final class TestSessionTimerWheel {
+
+    /** The time at which each test's wheel is constructed, in milliseconds (on a tick boundary). */
+    private static final long BASE = 1_700_000_000_000L;
+
+    /**
+     * Constructs a new {@code TestSessionTimerWheel}
+     */
+    TestSessionTimerWheel() {
+
+        //  No action
+    }
+
+    /**
+     * Creates a session with a specified timeout.
+     *
+     * @param id        the session ID
+     * @param timeoutMs the timeout, in milliseconds since the epoch
+     * @return the session
+     */
+    private static LiveSessionInfo makeSession(final String id, final long timeoutMs) {
+
+        final LiveSessionInfo sess = new LiveSessionInfo(id, LocalLoginProcessor.TYPE, ERole.STUDENT);
+        sess.restoreActivity(Instant.ofEpochMilli(BASE), Instant.ofEpochMilli(timeoutMs));
+
+        return sess;
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Session expires at its deadline and not before")
+    void test0101() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final LiveSessionInfo sess = makeSession("Session1", BASE + 5000L);
+        wheel.schedule(sess);
+
+        assertEquals(1, wheel.size(), "Wheel should hold one session");
+        assertTrue(wheel.advance(BASE + 4999L).isEmpty(), "Session should not expire before its deadline");
+
+        final List<LiveSessionInfo> expired = wheel.advance(BASE + 5000L);
+        assertEquals(1, expired.size(), "Session should expire at its deadline");
+        assertSame(sess, expired.getFirst(), "Wrong session expired");
+        assertEquals(0, wheel.size(), "Wheel should be empty");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Session whose deadline has passed expires on the next advance")
+    void test0102() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        assertTrue(wheel.advance(BASE + 10000L).isEmpty(), "Empty wheel should expire nothing");
+
+        final LiveSessionInfo past = makeSession("Session1", BASE + 3000L);
+        final LiveSessionInfo now = makeSession("Session2", BASE + 10000L);
+        wheel.schedule(past);
+        wheel.schedule(now);
+
+        final List<LiveSessionInfo> expired = wheel.advance(BASE + 11000L);
+        assertEquals(2, expired.size(), "Both overdue sessions should expire one tick later");
+        assertEquals(0, wheel.size(), "Wheel should be empty");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Touched session is rescheduled rather than expired")
+    void test0103() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final LiveSessionInfo sess = makeSession("Session1", BASE + 5000L);
+        wheel.schedule(sess);
+
+        sess.restoreActivity(Instant.ofEpochMilli(BASE + 4000L), Instant.ofEpochMilli(BASE + 200000L));
+
+        assertTrue(wheel.advance(BASE + 5000L).isEmpty(), "Touched session should not expire at old deadline");
+        assertTrue(wheel.advance(BASE + 199000L).isEmpty(), "Touched session should not expire early");
+        assertEquals(1, wheel.advance(BASE + 200000L).size(), "Touched session should expire at new deadline");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Long timeouts cascade through all levels")
+    void test0104() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final long fiveHours = 5L * 60L * 60L * 1000L;
+        final LiveSessionInfo sess = makeSession("Session1", BASE + fiveHours);
+        wheel.schedule(sess);
+
+        assertTrue(wheel.advance(BASE + fiveHours - 1000L).isEmpty(), "Session should not expire early");
+        assertEquals(1, wheel.advance(BASE + fiveHours).size(), "Session should expire at its deadline");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Unscheduled session is released and never expires")
+    void test0105() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final LiveSessionInfo sess1 = makeSession("Session1", BASE + 5000L);
+        final LiveSessionInfo sess2 = makeSession("Session2", BASE + 5000L);
+        wheel.schedule(sess1);
+        wheel.schedule(sess2);
+
+        wheel.unschedule(sess1);
+        wheel.unschedule(sess1);
+        assertEquals(1, wheel.size(), "Wheel should hold one session");
+
+        final List<LiveSessionInfo> expired = wheel.advance(BASE + 10000L);
+        assertEquals(1, expired.size(), "Only the scheduled session should expire");
+        assertSame(sess2, expired.getFirst(), "Wrong session expired");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Rescheduling a session replaces its entry")
+    void test0106() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final LiveSessionInfo sess = makeSession("Session1", BASE + 5000L);
+        wheel.schedule(sess);
+        wheel.schedule(sess);
+
+        assertEquals(1, wheel.size(), "Wheel should hold one session");
+        assertEquals(1, wheel.advance(BASE + 5000L).size(), "Session should expire once");
+        assertTrue(wheel.advance(BASE + 100000L).isEmpty(), "Session should not expire again");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Many sessions each expire at the first advance past their deadline")
+    void test0107() {
+
+        final SessionTimerWheel wheel = new SessionTimerWheel(BASE);
+        final Random rnd = new Random(12345L);
+        final List<LiveSessionInfo> sessions = new ArrayList<>(500);
+
+        for (int i = 0; i < 500; ++i) {
+            final long timeout = BASE + 1L + (long) rnd.nextInt(6000000);
+            final LiveSessionInfo sess = makeSession("Session" + i, timeout);
+            sessions.add(sess);
+            wheel.schedule(sess);
+        }
+
+        final Set<LiveSessionInfo> seen = new HashSet<>(500);
+        for (long now = BASE + 1000L; now <= BASE + 6001000L; now += 1000L) {
+            for (final LiveSessionInfo sess : wheel.advance(now)) {
+                final long timeout = sess.getTimeout().toEpochMilli();
+                assertTrue(timeout <= now, "Session expired before its deadline");
+                assertTrue(timeout > now - 1000L, "Session expired late");
+                assertTrue(seen.add(sess), "Session expired twice");
+            }
+        }
+
+        assertEquals(sessions.size(), seen.size(), "Every session should expire");
+        assertEquals(0, wheel.size(), "Wheel should be empty");
+    }
+}
@@ -29,6 +29,7 @@ dependencies {
 
     testImplementation(platform("org.junit:junit-bom:5.11.0"))
     testImplementation("org.junit.jupiter:junit-jupiter:5.11.0")
+    testImplementation("jakarta.servlet:jakarta.servlet-api:6.1.0")
 }
 
 tasks.test {
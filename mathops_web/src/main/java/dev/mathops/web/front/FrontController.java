@@ -1,5 +1,8 @@
 package dev.mathops.web.front;
 
+import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.RealizedExamPool;
+import dev.mathops.assessment.htmlgen.ImageStore;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.EMimeType;
 import dev.mathops.commons.file.FileLoader;
@@ -10,7 +13,14 @@ import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.Contexts;
 import dev.mathops.db.cfg.DatabaseConfig;
 import dev.mathops.db.cfg.Profile;
+import dev.mathops.db.logic.SystemData;
+import dev.mathops.db.schema.legacy.rec.RawCsection;
+import dev.mathops.db.schema.legacy.rec.RawCusection;
+import dev.mathops.db.schema.legacy.rec.RawExam;
+import dev.mathops.db.schema.main.rec.TermRec;
+import dev.mathops.session.ExamArchive;
 import dev.mathops.session.SessionManager;
+import dev.mathops.web.site.ServletTimer;
 import dev.mathops.web.site.WebMidController;
 import dev.mathops.web.site.html.challengeexam.ChallengeExamSessionStore;
 import dev.mathops.web.site.html.hw.HomeworkSessionStore;
@@ -33,7 +43,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serial;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * The primary front controller servlet. This servlet handles all requests for files from the "/public" path, routes
@@ -59,6 +73,26 @@ public final class FrontController extends HttpServlet {
     /** The default public directory, used when none specified. */
     private static final String DEFAULT_PUBLIC_DIR = "/opt/public";
 
+    /**
+     * Installation property with the path of the directory to which rendered images are written. Pages link to
+     * rendered images by URL only if this is set; otherwise they inline images. In a multi-server deployment, the
+     * directory should be shared by all servers.
+     */
+    private static final String RENDERED_IMAGE_DIR_PROPERTY = "rendered-image-dir";
+
+    /** The memory budget for rendered images, in bytes. */
+    private static final long RENDERED_IMAGE_BYTES = 64L * 1024L * 1024L;
+
+    /**
+     * Context parameter that, if "true", starts loading all exams and problems into the instructional cache in the
+     * background when the servlet initializes, and primes the realized exam pool for exams whose testing windows are
+     * open.
+     */
+    private static final String WARM_INSTRUCTION_PARAM = "zircon-warm-instruction";
+
+    /** The maximum number of threads used to warm the instructional cache. */
+    private static final int WARMUP_THREADS = 4;
+
     /** A commonly used character. */
     private static final char DOT = '.';
 
@@ -117,6 +151,9 @@ public final class FrontController extends HttpServlet {
 
         this.publicDir = this.installation.extractFileProperty(PUBLIC_DIR_PROPERTY, new File(DEFAULT_PUBLIC_DIR));
 
+        final File renderedDir = this.installation.extractFileProperty(RENDERED_IMAGE_DIR_PROPERTY, null);
+        ImageStore.getInstance().configure(RENDERED_IMAGE_BYTES, renderedDir);
+
         final Profile dbProfile = DatabaseConfig.getDefault().getCodeProfile(Contexts.BATCH_PATH);
         if (dbProfile == null) {
             throw new ServletException("No 'batch' code profile configured");
@@ -130,6 +167,19 @@ public final class FrontController extends HttpServlet {
             // request, but responsiveness to changes in underlying data between page requests.
 
             this.webMidController = new WebMidController(cache, config);
+
+            if ("true".equalsIgnoreCase(this.servletContext.getInitParameter(WARM_INSTRUCTION_PARAM))) {
+                final int threads = Math.min(WARMUP_THREADS, Math.max(1,
+                        Runtime.getRuntime().availableProcessors() - 1));
+                final Set<String> openRefs = openExamRefs(cache);
+                InstructionalCache.getInstance().startWarmup(openRefs, threads);
+
+                // Have an exam of each open version realized before its first delivery
+                final RealizedExamPool pool = RealizedExamPool.getInstance();
+                for (final String ref : openRefs) {
+                    pool.prime(ref, false);
+                }
+            }
         } catch (final SQLException ex) {
             throw new ServletException("Unable to connect to to database", ex);
         }
@@ -138,6 +188,49 @@ public final class FrontController extends HttpServlet {
         Log.info(initializedMsg);
     }
 
+    /**
+     * Gathers the tree references of exams whose testing windows are open today, in any section offered in the active
+     * term, so they can be loaded first when warming the instructional cache, and primed in the realized exam pool.
+     *
+     * @param cache the data cache
+     * @return the exam references
+     */
+    private static Set<String> openExamRefs(final Cache cache) {
+
+        final Set<String> refs = new HashSet<>(50);
+
+        try {
+            final SystemData systemData = cache.getSystemData();
+            final TermRec active = systemData.getActiveTerm();
+
+            if (active != null) {
+                final LocalDate today = LocalDate.now();
+
+                for (final RawCsection sect : systemData.getCourseSections(active.term)) {
+                    final List<RawExam> exams = systemData.getActiveExams(sect.course);
+
+                    for (final RawCusection cusect : systemData.getCourseUnitSections(sect.course, sect.sect,
+                            active.term)) {
+                        final boolean open = (cusect.firstTestDt == null || !today.isBefore(cusect.firstTestDt))
+                                             && (cusect.lastTestDt == null || !today.isAfter(cusect.lastTestDt));
+
+                        if (open) {
+                            for (final RawExam exam : exams) {
+                                if (exam.treeRef != null && cusect.unit.equals(exam.unit)) {
+                                    refs.add(exam.treeRef);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (final SQLException ex) {
+            Log.warning("Unable to determine open exams; warming instructional cache without priorities", ex);
+        }
+
+        return refs;
+    }
+
     /**
      * Gets the servlet configuration.
      *
@@ -191,6 +284,8 @@ public final class FrontController extends HttpServlet {
         HomeworkSessionStore.getInstance().persist(dir);
         PastExamSessionStore.getInstance().persist(dir);
         PastLtaSessionStore.getInstance().persist(dir);
+        ExamArchive.closeAll();
+        InstructionalCache.shutdown();
 
         final String terminatedMsg = Res.get(Res.SERVLET_TERMINATED);
         Log.info(terminatedMsg);
@@ -210,7 +305,8 @@ public final class FrontController extends HttpServlet {
 
     /**
      * Processes a request. The first part of the request path (between the first and second '/') is used to determine
-     * the site, then if the site is valid, the request is dispatched to the site processor.
+     * the site, then if the site is valid, the request is dispatched to the site processor. The time taken to process
+     * every request is recorded with the {@code ServletTimer}.
      *
      * @param req  the request
      * @param resp the response
@@ -221,6 +317,27 @@ public final class FrontController extends HttpServlet {
     protected void service(final HttpServletRequest req, final HttpServletResponse resp)
             throws IOException, ServletException {
 
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            serviceTimed(req, resp);
+            failed = false;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            final boolean error = failed || resp.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            ServletTimer.getInstance().recordAccess(ServletTimer.ALL, ServletTimer.ALL, elapsed, error);
+        }
+    }
+
+    /**
+     * Processes a request, once timing has started.
+     *
+     * @param req  the request
+     * @param resp the response
+     * @throws IOException if there is an error writing the response
+     */
+    private void serviceTimed(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+
         req.setCharacterEncoding("UTF-8");
 
         final String remote = req.getRemoteAddr();
@@ -756,10 +756,11 @@ public final class ProctoringMediaSite extends AbstractSite {
     }
 
     /**
-     * Serves an image file from the proctoring media directory.
+     * Serves a media file from the proctoring media directory. Files are streamed rather than loaded into memory, with
+     * support for range requests (so reviewers can seek within long recordings) and conditional GET.
      *
      * @param cache    the data cache
-     * @param filename the image filename
+     * @param filename the media filename
      * @param req      the request
      * @param resp     the response
      * @throws IOException  if there is an error writing the response
@@ -769,106 +770,45 @@ public final class ProctoringMediaSite extends AbstractSite {
     protected void serveMedia(final Cache cache, final String filename, final HttpServletRequest req,
                               final HttpServletResponse resp) throws IOException, SQLException {
 
-        final File file = new File(this.dataPath, filename);
-        final long total = file.length();
-        long start = 0L;
-        long end = total;
-        boolean ranged = false;
-
-        final String range = req.getHeader("Range");
-        if ((range != null) && range.startsWith("bytes=")) {
-            final String sub = range.substring(6);
-            if (!sub.isEmpty() && sub.charAt(sub.length() - 1) == '-') {
-                // something like '100-', use total size as end
-                try {
-                    start = Long.parseLong(sub.substring(0, sub.length() - 1));
-                    ranged = true;
-                } catch (final NumberFormatException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                final String[] split = sub.split(CoreConstants.DASH);
-                if (split.length == 2) {
-                    try {
-                        start = Integer.parseInt(split[0]);
-                        end = Integer.parseInt(split[1]);
-                        ranged = true;
-                    } catch (final NumberFormatException ex) {
-                        Log.warning(ex);
-                    }
-                } else {
-                    Log.warning("Split size was ", Integer.toString(split.length), " rather than 2");
-                }
-            }
-        }
+        final String contentType = getMediaContentType(filename.toLowerCase(Locale.ROOT));
 
-        final byte[] data;
-
-        if (ranged) {
-            data = FileLoader.loadFileAsBytes(new File(this.dataPath, filename), start, end);
+        if (contentType == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         } else {
-            data = FileLoader.loadFileAsBytes(new File(this.dataPath, filename), true);
+            sendFileReply(req, resp, contentType, new File(this.dataPath, filename));
         }
+    }
 
-        if (data == null) {
-            final String absPath = file.getAbsolutePath();
-            Log.warning(absPath, " not found");
-            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+    /**
+     * Gets the content type for a media file based on its extension.
+     *
+     * @param lower the filename, in lowercase
+     * @return the content type; {@code null} if the file type is not supported
+     */
+    private static String getMediaContentType(final String lower) {
+
+        final String result;
+
+        if (lower.endsWith(".png")) {
+            result = "image/png";
+        } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            result = "image/jpeg";
+        } else if (lower.endsWith(".gif")) {
+            result = "image/gif";
+        } else if (lower.endsWith(".ico")) {
+            result = "image/x-icon";
+        } else if (lower.endsWith(".webm")) {
+            result = "video/webm";
+        } else if (lower.endsWith(".mp4")) {
+            result = "video/mp4";
+        } else if (lower.endsWith(".ogv")) {
+            result = "video/ogg";
+        } else if (lower.endsWith(".pdf")) {
+            result = "application/pdf";
         } else {
-            final String lower = filename.toLowerCase(Locale.ROOT);
-
-            // final HtmlBuilder str = new HtmlBuilder(100);
-            // str.add("Serving ", lower);
-            // final Enumeration<String> headers = req.getHeaderNames();
-            // while (headers.hasMoreElements()) {
-            // final String h = headers.nextElement();
-            // final String v = req.getHeader(h);
-            // str.add(CoreConstants.SPC, h, "=", v);
-            // }
-            // Log.fine(str.toString());
-
-            if (ranged) {
-                // Log.info(" GET ", lower, " with range from ", Long.toString(start), " to ",
-                // Long.valueOf(end), " out of ", Long.toString(total));
-
-                if (lower.endsWith(".png")) {
-                    sendRangedReply(req, resp, "image/png", data, start, total);
-                } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
-                    sendRangedReply(req, resp, "image/jpeg", data, start, total);
-                } else if (lower.endsWith(".gif")) {
-                    sendRangedReply(req, resp, "image/gif", data, start, total);
-                } else if (lower.endsWith(".ico")) {
-                    sendRangedReply(req, resp, "image/x-icon", data, start, total);
-                } else if (lower.endsWith(".webm")) {
-                    sendRangedReply(req, resp, "video/webm", data, start, total);
-                } else if (lower.endsWith(".mp4")) {
-                    sendRangedReply(req, resp, "video/mp4", data, start, total);
-                } else if (lower.endsWith(".ogv")) {
-                    sendRangedReply(req, resp, "video/ogg", data, start, total);
-                } else if (lower.endsWith(".pdf")) {
-                    sendRangedReply(req, resp, "application/pdf", data, start, total);
-                } else {
-                    resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-                }
-            } else if (lower.endsWith(".png")) {
-                sendReply(req, resp, "image/png", data);
-            } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
-                sendReply(req, resp, "image/jpeg", data);
-            } else if (lower.endsWith(".gif")) {
-                sendReply(req, resp, "image/gif", data);
-            } else if (lower.endsWith(".ico")) {
-                sendReply(req, resp, "image/x-icon", data);
-            } else if (lower.endsWith(".webm")) {
-                sendReply(req, resp, "video/webm", data);
-            } else if (lower.endsWith(".mp4")) {
-                sendReply(req, resp, "video/mp4", data);
-            } else if (lower.endsWith(".ogv")) {
-                sendReply(req, resp, "video/ogg", data);
-            } else if (lower.endsWith(".pdf")) {
-                sendReply(req, resp, "application/pdf", data);
-            } else {
-                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-            }
+            result = null;
         }
+
+        return result;
     }
 }
@@ -1,5 +1,7 @@
 package dev.mathops.web.host.precalc.course;
 
+import dev.mathops.assessment.htmlgen.EGraphicsFormat;
+import dev.mathops.assessment.htmlgen.ImageStore;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
@@ -20,6 +22,7 @@ import dev.mathops.web.site.AbstractPageSite;
 import dev.mathops.web.site.BasicCss;
 import dev.mathops.web.site.ESiteType;
 import dev.mathops.web.site.Page;
+import dev.mathops.web.site.html.HtmlSessionBase;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -45,6 +48,8 @@ public class CourseSite extends AbstractPageSite {
     public CourseSite(final Site theSite, final ISessionManager theSessions) {
 
         super(theSite, theSessions);
+
+        HtmlSessionBase.setGraphicsFormat(theSite, EGraphicsFormat.SVG);
     }
 
     /**
@@ -83,6 +88,8 @@ public class CourseSite extends AbstractPageSite {
             serveLesson(subpath.substring(8), req, resp);
         } else if (subpath.startsWith("images/")) {
             serveImage(subpath.substring(7), req, resp);
+        } else if (subpath.startsWith(ImageStore.URL_PATH)) {
+            serveRenderedImage(subpath.substring(ImageStore.URL_PATH.length()), req, resp);
         } else if (subpath.endsWith(".vtt")) {
             serveVtt(subpath, req, resp);
         } else if ("favicon.ico".equals(subpath)) {
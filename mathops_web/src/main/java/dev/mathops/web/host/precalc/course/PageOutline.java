@@ -33,6 +33,7 @@ import dev.mathops.db.field.TermKey;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.sitelogic.CourseSiteLogic;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.data.SiteDataCfgCourse;
 import dev.mathops.session.sitelogic.data.SiteDataCfgCourseStatus;
 import dev.mathops.session.sitelogic.data.SiteDataCfgExamStatus;
@@ -206,6 +207,7 @@ enum PageOutline {
                         final int days = MilestoneLogic.applyLegacyAccommodationExtension(cache, stu, track,
                                 paceValue, indexValue, unitValue, type);
 
+                        StudentStatusCache.getInstance().invalidate(stu);
                         logic.gatherData();
 
                         final String typeStr = "RE".equals(type) ? "Review Exam" :
@@ -318,6 +320,7 @@ enum PageOutline {
                         final int days = MilestoneLogic.applyLegacyFreeExtension(cache, stu, track,
                                 paceValue, indexValue, unitValue, type);
 
+                        StudentStatusCache.getInstance().invalidate(stu);
                         logic.gatherData();
 
                         final String typeStr = "RE".equals(type) ? ("Unit " + unit + " Review Exam") :
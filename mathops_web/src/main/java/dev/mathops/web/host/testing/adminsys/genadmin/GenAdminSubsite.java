@@ -108,6 +108,7 @@ public final class GenAdminSubsite extends AbstractSubsite {
                 case "srvadm_control.html" -> PageServerAdminControl.doGet(cache, this.site, req, resp, session);
                 case "srvadm_diagnostics.html" ->
                         PageServerAdminDiagnostics.doGet(cache, this.site, req, resp, session);
+                case "srvadm_metrics.txt" -> PageServerAdminDiagnostics.doGetMetrics(req, resp);
                 case "db_admin.html" -> PageDbAdmin.doDbAdminPage(cache, this.site, req, resp, session);
                 case "dbadm_contexts.html" -> PageDbAdminContexts.doGet(cache, this.site, req, resp, session);
                 case "dbadm_batch.html" -> PageDbAdminBatch.doGet(cache, this.site, req, resp, session);
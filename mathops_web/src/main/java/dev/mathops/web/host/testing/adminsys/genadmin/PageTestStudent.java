@@ -43,6 +43,7 @@ import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ISessionManager;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.LiveSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.bogus.ETextLogic;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.text.builder.HtmlBuilder;
@@ -1770,6 +1771,7 @@ enum PageTestStudent {
                     RawStudentLogic.updateTestScores(cache, stuModel.stuId, newAct, newSat, stuModel.apScore);
                 }
 
+                StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
                 resp.sendRedirect("test_student.html");
             }
         }
@@ -1816,6 +1818,7 @@ enum PageTestStudent {
             }
         }
 
+        StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
         resp.sendRedirect("test_student.html");
     }
 
@@ -1936,6 +1939,8 @@ enum PageTestStudent {
             }
         }
 
+        StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
+
         if (error) {
             final HtmlBuilder htm = new HtmlBuilder(2000);
             Page.startOrdinaryPage(htm, site.getTitle(), null, false, site.getTitle(), "home.html", Page.NO_BARS, null,
@@ -2066,6 +2071,7 @@ enum PageTestStudent {
             }
         }
 
+        StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
         resp.sendRedirect("test_student.html");
     }
 
@@ -2196,6 +2202,7 @@ enum PageTestStudent {
             }
         }
 
+        StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
         resp.sendRedirect("test_student.html");
     }
 
@@ -2346,6 +2353,7 @@ enum PageTestStudent {
             }
         }
 
+        StudentStatusCache.getInstance().invalidate(RawStudent.TEST_STUDENT_ID);
         resp.sendRedirect("test_student.html");
     }
 
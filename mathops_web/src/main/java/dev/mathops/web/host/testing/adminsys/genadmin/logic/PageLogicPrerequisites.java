@@ -13,6 +13,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.text.builder.HtmlBuilder;
 import dev.mathops.web.site.AbstractSite;
 import dev.mathops.web.site.Page;
@@ -296,6 +297,7 @@ public enum PageLogicPrerequisites {
                                         " (prereq_satis was ", row.prereqSatis, " , should be 'Y') - fixed</li>");
                                 RawStcourseLogic.updatePrereqSatisfied(cache, row.stuId, row.course, row.sect,
                                         row.termKey, "Y");
+                                StudentStatusCache.getInstance().invalidate(row.stuId);
                                 ++numIssues;
                             }
                         } else if ("Y".equals(row.prereqSatis)) {
@@ -313,6 +315,7 @@ public enum PageLogicPrerequisites {
                                         " (prereq_satis was ", row.prereqSatis, ", should be 'Y') - fixed</li>");
                                 RawStcourseLogic.updatePrereqSatisfied(cache, row.stuId, row.course, row.sect,
                                         row.termKey, "Y");
+                                StudentStatusCache.getInstance().invalidate(row.stuId);
                                 ++numIssues;
                             }
                         } else if ("Y".equals(row.prereqSatis)) {
@@ -330,6 +333,7 @@ public enum PageLogicPrerequisites {
                                         " (prereq_satis was ", row.prereqSatis, " should be 'Y') - fixed</li>");
                                 RawStcourseLogic.updatePrereqSatisfied(cache, row.stuId, row.course, row.sect,
                                         row.termKey, "Y");
+                                StudentStatusCache.getInstance().invalidate(row.stuId);
                                 ++numIssues;
                             }
                         } else if ("Y".equals(row.prereqSatis)) {
@@ -347,6 +351,7 @@ public enum PageLogicPrerequisites {
                                         " (prereq_satis was ", row.prereqSatis, ", should be 'Y') - fixed</li>");
                                 RawStcourseLogic.updatePrereqSatisfied(cache, row.stuId, row.course, row.sect,
                                         row.termKey, "Y");
+                                StudentStatusCache.getInstance().invalidate(row.stuId);
                                 ++numIssues;
                             }
                         } else if ("Y".equals(row.prereqSatis)) {
@@ -364,6 +369,7 @@ public enum PageLogicPrerequisites {
                                         " (prereq_satis was ", row.prereqSatis, ", should be 'Y') - fixed</li>");
                                 RawStcourseLogic.updatePrereqSatisfied(cache, row.stuId, row.course, row.sect,
                                         row.termKey, "Y");
+                                StudentStatusCache.getInstance().invalidate(row.stuId);
                                 ++numIssues;
                             }
                         } else if ("Y".equals(row.prereqSatis)) {
@@ -1,6 +1,7 @@
 package dev.mathops.web.host.testing.adminsys.genadmin.serveradmin;
 
 import dev.mathops.assessment.InstructionalCache;
+import dev.mathops.assessment.InstructionalCacheWarmup;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.session.ImmutableSessionInfo;
@@ -16,6 +17,9 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The "Sessions" sub-page of the Server Administration page.
@@ -23,6 +27,9 @@ import java.sql.SQLException;
 public enum PageServerAdminControl {
     ;
 
+    /** The number of slowest warm-up loads to list. */
+    private static final int SLOWEST_LOADS = 10;
+
     /**
      * Generates the server administration page.
      *
@@ -92,9 +99,46 @@ public enum PageServerAdminControl {
         if ("rescanitems".equals(action) && message != null) {
             htm.addln("<dd class='red'>", message, "</dd>");
         }
+        htm.addln("</dl>");
+
+        final InstructionalCacheWarmup warmup = InstructionalCache.getInstance().getWarmup();
+        if (warmup != null) {
+            emitWarmup(htm, warmup);
+        }
         htm.eDiv();
     }
 
+    /**
+     * Appends the progress of the instructional cache warm-up, and the references that took longest to load.
+     *
+     * @param htm    the {@code HtmlBuilder} to which to write
+     * @param warmup the warm-up
+     */
+    private static void emitWarmup(final HtmlBuilder htm, final InstructionalCacheWarmup warmup) {
+
+        htm.sH(3).add("Assessment item cache warm-up").eH(3);
+
+        htm.sP();
+        htm.add(warmup.isDone() ? "Complete: " : "In progress: ", Integer.toString(warmup.getLoaded()), " of ",
+                Integer.toString(warmup.getTotal()), " loaded, ", Integer.toString(warmup.getFailed()),
+                " failed, ", Long.toString(warmup.getElapsedMs()), " ms elapsed.");
+        htm.eP();
+
+        final List<Map.Entry<String, Long>> times = new ArrayList<>(warmup.getLoadTimes().entrySet());
+        times.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        final int count = Math.min(SLOWEST_LOADS, times.size());
+        if (count > 0) {
+            htm.sP().add("Slowest loads:").eP();
+            htm.addln("<ul>");
+            for (int i = 0; i < count; ++i) {
+                final Map.Entry<String, Long> entry = times.get(i);
+                htm.addln("<li>", entry.getKey(), ": ", entry.getValue(), " ms</li>");
+            }
+            htm.addln("</ul>");
+        }
+    }
+
     /**
      * Handles a POST request to the sessions page.
      *
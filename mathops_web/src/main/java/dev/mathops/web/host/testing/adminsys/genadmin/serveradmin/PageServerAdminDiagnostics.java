@@ -1,20 +1,32 @@
 package dev.mathops.web.host.testing.adminsys.genadmin.serveradmin;
 
+import dev.mathops.assessment.RealizedExamPool;
+import dev.mathops.assessment.htmlgen.ImageStore;
+import dev.mathops.assessment.variable.GenerationCostTracker;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
+import dev.mathops.session.sitelogic.data.SiteDataLoadStats;
 import dev.mathops.text.builder.HtmlBuilder;
+import dev.mathops.text.parser.xml.XmlEscaper;
 import dev.mathops.web.site.AbstractSite;
 import dev.mathops.web.site.Page;
+import dev.mathops.web.site.ServletTimer;
+import dev.mathops.web.site.ServletTimerSnapshot;
 import dev.mathops.web.host.testing.adminsys.AdminSite;
 import dev.mathops.web.host.testing.adminsys.genadmin.EAdmSubtopic;
 import dev.mathops.web.host.testing.adminsys.genadmin.EAdminTopic;
 import dev.mathops.web.host.testing.adminsys.genadmin.GenAdminPage;
+import dev.mathops.web.site.html.HtmlSessionStore;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * The "Diagnostics" sub-page of the Server Administration page.
@@ -22,6 +34,9 @@ import java.sql.SQLException;
 public enum PageServerAdminDiagnostics {
     ;
 
+    /** The number of problems listed in the table of the most expensive problems to generate. */
+    private static final int NUM_EXPENSIVE = 25;
+
     /**
      * Generates the server administration page.
      *
@@ -59,7 +74,7 @@ public enum PageServerAdminDiagnostics {
     }
 
     /**
-     * Appends a table of active login sessions to an {@code HtmlBuilder}.
+     * Appends a table of request latencies for each page to an {@code HtmlBuilder}.
      *
      * @param htm the {@code HtmlBuilder} to which to write
      */
@@ -68,6 +83,259 @@ public enum PageServerAdminDiagnostics {
         htm.div("vgap0").hr().div("vgap0");
 
         htm.sH(2).add("Diagnostic Tools").eH(2);
+
+        htm.sH(3).add("Request Latency").eH(3);
+        htm.sP().add("Times are in milliseconds. Percentiles are accurate to within 12.5%. These values are also ",
+                "available as text at <a class='link' href='srvadm_metrics.txt'>srvadm_metrics.txt</a>.").eP();
+
+        htm.sTable("report");
+        htm.sTr();
+        htm.sTh().add("Site").eTh();
+        htm.sTh().add("Page").eTh();
+        htm.sTh().add("Count").eTh();
+        htm.sTh().add("Errors").eTh();
+        htm.sTh().add("p50").eTh();
+        htm.sTh().add("p95").eTh();
+        htm.sTh().add("p99").eTh();
+        htm.sTh().add("Max").eTh();
+        htm.sTh().add("Last min").eTh();
+        htm.sTh().add("Errors (1 min)").eTh();
+        htm.sTh().add("p50 (1 min)").eTh();
+        htm.sTh().add("p95 (1 min)").eTh();
+        htm.sTh().add("p99 (1 min)").eTh();
+        htm.eTr();
+
+        for (final ServletTimerSnapshot snap : ServletTimer.getInstance().snapshot()) {
+            final ServletTimerSnapshot.Summary all = snap.allTime();
+            final ServletTimerSnapshot.Summary recent = snap.lastMinute();
+
+            htm.sTr();
+            htm.sTd().add(XmlEscaper.escape(snap.site())).eTd();
+            htm.sTd().add(XmlEscaper.escape(snap.page())).eTd();
+            htm.sTd().add(Long.toString(all.count())).eTd();
+            htm.sTd().add(Long.toString(all.errors())).eTd();
+            htm.sTd().add(formatMs(all.p50Micros())).eTd();
+            htm.sTd().add(formatMs(all.p95Micros())).eTd();
+            htm.sTd().add(formatMs(all.p99Micros())).eTd();
+            htm.sTd().add(formatMs(snap.longestMicros())).eTd();
+            htm.sTd().add(Long.toString(recent.count())).eTd();
+            htm.sTd().add(Long.toString(recent.errors())).eTd();
+            htm.sTd().add(formatMs(recent.p50Micros())).eTd();
+            htm.sTd().add(formatMs(recent.p95Micros())).eTd();
+            htm.sTd().add(formatMs(recent.p99Micros())).eTd();
+            htm.eTr();
+        }
+        htm.eTable();
+
+        emitSiteDataTimings(htm);
+        emitImageStore(htm);
+        emitRealizedExamPool(htm);
+        emitHtmlSessionStores(htm);
+        emitGenerationCosts(htm);
+    }
+
+    /**
+     * Appends a table of the times taken by the queries and phases of course site data loading to an
+     * {@code HtmlBuilder}.
+     *
+     * @param htm the {@code HtmlBuilder} to which to write
+     */
+    private static void emitSiteDataTimings(final HtmlBuilder htm) {
+
+        final StudentStatusCache statusCache = StudentStatusCache.getInstance();
+
+        htm.sH(3).add("Course Site Data Loading").eH(3);
+        htm.sP().add("Student status cache: ", Integer.toString(statusCache.size()), " entries, ",
+                Long.toString(statusCache.getHits()), " hits in ", Long.toString(statusCache.getLookups()),
+                " lookups, ", Long.toString(statusCache.getInvalidations()), " invalidations.").eP();
+        htm.sP().add("Times are in milliseconds. Queries run concurrently; phases run in order.").eP();
+
+        htm.sTable("report");
+        htm.sTr();
+        htm.sTh().add("Query or Phase").eTh();
+        htm.sTh().add("Count").eTh();
+        htm.sTh().add("Average").eTh();
+        htm.sTh().add("Max").eTh();
+        htm.eTr();
+
+        for (final SiteDataLoadStats.Entry entry : SiteDataLoadStats.snapshot()) {
+            htm.sTr();
+            htm.sTd().add(XmlEscaper.escape(entry.name())).eTd();
+            htm.sTd().add(Long.toString(entry.count())).eTd();
+            htm.sTd().add(formatMs(entry.averageMicros())).eTd();
+            htm.sTd().add(formatMs(entry.maxMicros())).eTd();
+            htm.eTr();
+        }
+        htm.eTable();
+    }
+
+    /**
+     * Appends a table of statistics of the store of rendered images to an {@code HtmlBuilder}.
+     *
+     * @param htm the {@code HtmlBuilder} to which to write
+     */
+    private static void emitImageStore(final HtmlBuilder htm) {
+
+        final ImageStore store = ImageStore.getInstance();
+        final ImageStore.Stats stats = store.getStats();
+
+        htm.sH(3).add("Rendered Image Store").eH(3);
+        if (!store.isDurable()) {
+            htm.sP().add("No rendered image directory is configured, so images are inlined in pages.").eP();
+        }
+
+        htm.sTable("report");
+        htm.sTr().sTh().add("Images in memory").eTh().sTd().add(Integer.toString(stats.count)).eTd().eTr();
+        htm.sTr().sTh().add("Bytes in memory").eTh().sTd().add(Long.toString(stats.memoryBytes)).eTd().eTr();
+        htm.sTr().sTh().add("Lookups").eTh().sTd().add(Long.toString(stats.lookups)).eTd().eTr();
+        htm.sTr().sTh().add("Hit rate").eTh().sTd()
+                .add(String.format("%.1f%%", Double.valueOf(stats.hitRate() * 100.0))).eTd().eTr();
+        htm.sTr().sTh().add("Hits from disk").eTh().sTd().add(Long.toString(stats.diskHits)).eTd().eTr();
+        htm.sTr().sTh().add("Pages").eTh().sTd().add(Long.toString(stats.pages)).eTd().eTr();
+        htm.sTr().sTh().add("Bytes saved per page").eTh().sTd()
+                .add(String.format("%.0f", Double.valueOf(stats.bytesSavedPerPage()))).eTd().eTr();
+        htm.eTable();
+    }
+
+    /**
+     * Appends a table of the pools of pre-realized exams, with the hit rate of each and the time taken to refill it, to
+     * an {@code HtmlBuilder}.
+     *
+     * @param htm the {@code HtmlBuilder} to which to write
+     */
+    private static void emitRealizedExamPool(final HtmlBuilder htm) {
+
+        final List<RealizedExamPool.Stats> stats = RealizedExamPool.getInstance().getStats();
+        stats.sort(Comparator.comparing(stat -> stat.ref));
+
+        htm.sH(3).add("Realized Exam Pool").eH(3);
+        htm.sP().add("Exams realized ahead of delivery, by exam version. Refill times are in milliseconds.").eP();
+
+        htm.sTable("report");
+        htm.sTr();
+        htm.sTh().add("Exam").eTh();
+        htm.sTh().add("Pooled").eTh();
+        htm.sTh().add("Target").eTh();
+        htm.sTh().add("Demand/min").eTh();
+        htm.sTh().add("Hits").eTh();
+        htm.sTh().add("Misses").eTh();
+        htm.sTh().add("Hit rate").eTh();
+        htm.sTh().add("Expired").eTh();
+        htm.sTh().add("Refills").eTh();
+        htm.sTh().add("Failures").eTh();
+        htm.sTh().add("Avg Refill").eTh();
+        htm.sTh().add("Max Refill").eTh();
+        htm.eTr();
+
+        for (final RealizedExamPool.Stats stat : stats) {
+            htm.sTr();
+            htm.sTd().add(XmlEscaper.escape(stat.ref)).eTd();
+            htm.sTd().add(Integer.toString(stat.size)).eTd();
+            htm.sTd().add(Integer.toString(stat.target)).eTd();
+            htm.sTd().add(String.format("%.1f", Double.valueOf(stat.demandRate))).eTd();
+            htm.sTd().add(Long.toString(stat.hits)).eTd();
+            htm.sTd().add(Long.toString(stat.misses)).eTd();
+            htm.sTd().add(String.format("%.1f%%", Double.valueOf(stat.hitRate() * 100.0))).eTd();
+            htm.sTd().add(Long.toString(stat.discarded)).eTd();
+            htm.sTd().add(Long.toString(stat.refills)).eTd();
+            htm.sTd().add(Long.toString(stat.realizeFailures)).eTd();
+            htm.sTd().add(String.format("%.1f", Double.valueOf(stat.avgRefillMs))).eTd();
+            htm.sTd().add(String.format("%.1f", Double.valueOf(stat.maxRefillMs))).eTd();
+            htm.eTr();
+        }
+        htm.eTable();
+    }
+
+    /**
+     * Appends a table of the HTML session stores, with the number of active sessions in each and the number of
+     * records appended to its journal since it was last compacted, to an {@code HtmlBuilder}.
+     *
+     * @param htm the {@code HtmlBuilder} to which to write
+     */
+    private static void emitHtmlSessionStores(final HtmlBuilder htm) {
+
+        htm.sH(3).add("HTML Session Stores").eH(3);
+        htm.sP().add("Journals are compacted, and expired sessions purged, every 10 minutes.").eP();
+
+        htm.sTable("report");
+        htm.sTr();
+        htm.sTh().add("Store").eTh();
+        htm.sTh().add("Active Sessions").eTh();
+        htm.sTh().add("Journal Records Since Compaction").eTh();
+        htm.eTr();
+
+        for (final HtmlSessionStore<?> store : HtmlSessionStore.getStores()) {
+            htm.sTr();
+            htm.sTd().add(XmlEscaper.escape(store.getName())).eTd();
+            htm.sTd().add(Integer.toString(store.size())).eTd();
+            htm.sTd().add(Integer.toString(store.getJournalRecords())).eTd();
+            htm.eTr();
+        }
+        htm.eTable();
+    }
+
+    /**
+     * Appends a table of the problems whose variables have been most expensive to generate to an {@code HtmlBuilder}.
+     *
+     * @param htm the {@code HtmlBuilder} to which to write
+     */
+    private static void emitGenerationCosts(final HtmlBuilder htm) {
+
+        final List<GenerationCostTracker.Cost> costs = GenerationCostTracker.getCosts();
+        final int num = Math.min(NUM_EXPENSIVE, costs.size());
+
+        htm.sH(3).add("Problem Generation Costs").eH(3);
+        htm.sP().add("Problems whose variables have taken the most total time to generate. Times are in milliseconds.")
+                .eP();
+
+        htm.sTable("report");
+        htm.sTr();
+        htm.sTh().add("Problem").eTh();
+        htm.sTh().add("Generations").eTh();
+        htm.sTh().add("Average").eTh();
+        htm.sTh().add("Max").eTh();
+        htm.sTh().add("Avg Re-samples").eTh();
+        htm.sTh().add("Failures").eTh();
+        htm.eTr();
+
+        for (int i = 0; i < num; ++i) {
+            final GenerationCostTracker.Cost cost = costs.get(i);
+
+            htm.sTr();
+            htm.sTd().add(XmlEscaper.escape(cost.identifier)).eTd();
+            htm.sTd().add(Long.toString(cost.generations)).eTd();
+            htm.sTd().add(String.format("%.1f", Double.valueOf(cost.getAverageMs()))).eTd();
+            htm.sTd().add(formatMs(cost.maxNanos / 1000L)).eTd();
+            htm.sTd().add(String.format("%.1f", Double.valueOf(cost.getAverageResamples()))).eTd();
+            htm.sTd().add(Long.toString(cost.failures)).eTd();
+            htm.eTr();
+        }
+        htm.eTable();
+    }
+
+    /**
+     * Formats a time in microseconds as milliseconds with one decimal place.
+     *
+     * @param micros the time in microseconds
+     * @return the formatted time
+     */
+    private static String formatMs(final long micros) {
+
+        return String.format("%.1f", Double.valueOf((double) micros / 1000.0));
+    }
+
+    /**
+     * Sends request latency metrics as plain text, in the Prometheus text exposition format.
+     *
+     * @param req  the request
+     * @param resp the response
+     * @throws IOException if there is an error writing the response
+     */
+    public static void doGetMetrics(final ServletRequest req, final HttpServletResponse resp) throws IOException {
+
+        final String text = ServletTimer.getInstance().exportText();
+
+        AbstractSite.sendReply(req, resp, "text/plain; version=0.0.4", text.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -43,7 +43,7 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -178,13 +178,13 @@ public final class PageServerAdminSessions {
 
         htm.div("vgap0").hr().div("vgap0");
 
-        final Map<String, PlacementExamSession> map =
+        final Collection<PlacementExamSession> sessions =
                 PlacementExamSessionStore.getInstance().getPlacementExamSessions();
-        Log.info("There are " + map.size() + " placement sessions.");
+        Log.info("There are " + sessions.size() + " placement sessions.");
 
         // Create a new sorted map whose keys are based on student name (last, first)
         final Map<String, PlacementExamSession> newmap = new TreeMap<>();
-        for (final PlacementExamSession sess : map.values()) {
+        for (final PlacementExamSession sess : sessions) {
 
             final RawStudent stu = sess.getStudent();
             if (stu == null) {
@@ -300,24 +300,21 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlUnitExamSessions(final HtmlBuilder htm) {
 
-        final Map<String, Map<String, UnitExamSession>> map = UnitExamSessionStore.getInstance().getUnitExamSessions();
-        Log.info("There are " + map.size() + " sessions with unit exams in progress.");
+        final Collection<UnitExamSession> sessions = UnitExamSessionStore.getInstance().getUnitExamSessions();
+        Log.info("There are " + sessions.size() + " unit exams in progress.");
 
         // Create a new sorted map whose keys are based on student name (last, first)
         final Map<String, UnitExamSession> newmap = new TreeMap<>();
-        for (final Map<String, UnitExamSession> inner : map.values()) {
-
-            for (final UnitExamSession sess : inner.values()) {
-
-                final RawStudent stu = sess.getStudent();
-                if (stu == null) {
-                    Log.warning("Unit exam session had null student: ", sess.studentId);
-                } else {
-                    // Sort by name, but add session and exam IDs to key in case of duplicate names
-                    final String name = stu.lastName + CoreConstants.SPC + stu.firstName + CoreConstants.SPC
-                                        + sess.sessionId + CoreConstants.SPC + sess.version;
-                    newmap.put(name, sess);
-                }
+        for (final UnitExamSession sess : sessions) {
+
+            final RawStudent stu = sess.getStudent();
+            if (stu == null) {
+                Log.warning("Unit exam session had null student: ", sess.studentId);
+            } else {
+                // Sort by name, but add session and exam IDs to key in case of duplicate names
+                final String name = stu.lastName + CoreConstants.SPC + stu.firstName + CoreConstants.SPC
+                                    + sess.sessionId + CoreConstants.SPC + sess.version;
+                newmap.put(name, sess);
             }
         }
 
@@ -427,22 +424,14 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlReviewExamSessions(final HtmlBuilder htm) {
 
-        final Map<String, Map<String, ReviewExamSession>> map =
-                ReviewExamSessionStore.getInstance().getReviewExamSessions();
+        final Collection<ReviewExamSession> sessions = ReviewExamSessionStore.getInstance().getReviewExamSessions();
+        Log.info("There are " + sessions.size() + " review exams in progress.");
 
+        // Create a new sorted map whose keys are based on student ID
         final Map<String, ReviewExamSession> newmap = new TreeMap<>();
-
-        synchronized (map) {
-            Log.info("There are " + map.size() + " sessions with review exams in progress.");
-
-            // Create a new sorted map whose keys are based on student name (last, first)
-            for (final Map<String, ReviewExamSession> inner : map.values()) {
-                for (final ReviewExamSession sess : inner.values()) {
-                    final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC
-                                        + sess.version;
-                    newmap.put(name, sess);
-                }
-            }
+        for (final ReviewExamSession sess : sessions) {
+            final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC + sess.version;
+            newmap.put(name, sess);
         }
 
         htm.div("vgap0").hr().div("vgap0");
@@ -551,21 +540,14 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlLearningTargetSessions(final HtmlBuilder htm) {
 
-        final HashMap<String, HashMap<String, LtaSession>> map = LtaSessionStore.getInstance().getLtaSessions();
+        final Collection<LtaSession> sessions = LtaSessionStore.getInstance().getLtaSessions();
+        Log.info("There are " + sessions.size() + " learning target assignments in progress.");
 
+        // Create a new sorted map whose keys are based on student ID
         final Map<String, LtaSession> newmap = new TreeMap<>();
-
-        synchronized (map) {
-            Log.info("There are " + map.size() + " sessions with learning target assignments in progress.");
-
-            // Create a new sorted map whose keys are based on student name (last, first)
-            for (final Map<String, LtaSession> inner : map.values()) {
-                for (final LtaSession sess : inner.values()) {
-                    final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC
-                                        + sess.version;
-                    newmap.put(name, sess);
-                }
-            }
+        for (final LtaSession sess : sessions) {
+            final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC + sess.version;
+            newmap.put(name, sess);
         }
 
         htm.div("vgap0").hr().div("vgap0");
@@ -673,19 +655,14 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlHomeworkSessions(final HtmlBuilder htm) {
 
-        final HashMap<String, HashMap<String, HomeworkSession>> map =
-                HomeworkSessionStore.getInstance().getHomeworkSessions();
-        Log.info("There are " + map.size() + " sessions with homework in progress.");
+        final Collection<HomeworkSession> sessions = HomeworkSessionStore.getInstance().getHomeworkSessions();
+        Log.info("There are " + sessions.size() + " homework assignments in progress.");
 
-        // Create a new sorted map whose keys are based on student name (last, first)
+        // Create a new sorted map whose keys are based on student ID
         final Map<String, HomeworkSession> newmap = new TreeMap<>();
-        for (final Map<String, HomeworkSession> inner : map.values()) {
-
-            for (final HomeworkSession sess : inner.values()) {
-                final String name = sess.studentId + CoreConstants.SPC + sess.sessionId
-                                    + CoreConstants.SPC + sess.version;
-                newmap.put(name, sess);
-            }
+        for (final HomeworkSession sess : sessions) {
+            final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC + sess.version;
+            newmap.put(name, sess);
         }
 
         htm.div("vgap0").hr().div("vgap0");
@@ -763,19 +740,15 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlPastExamSessions(final HtmlBuilder htm) {
 
-        final Map<String, Map<String, PastExamSession>> map =
-                PastExamSessionStore.getInstance().getPastExamSessions();
-        Log.info("There are " + map.size() + " sessions viewing past exams.");
+        final Collection<PastExamSession> sessions = PastExamSessionStore.getInstance().getPastExamSessions();
+        Log.info("There are " + sessions.size() + " past exams being viewed.");
 
-        // Create a new sorted map whose keys are based on student name (last, first)
+        // Create a new sorted map whose keys are based on student ID
         final Map<String, PastExamSession> newmap = new TreeMap<>();
-        for (final Map<String, PastExamSession> inner : map.values()) {
-
-            for (final PastExamSession sess : inner.values()) {
-                final String name = sess.studentId + CoreConstants.SPC + sess.sessionId
-                                    + CoreConstants.SPC + sess.xmlFilename;
-                newmap.put(name, sess);
-            }
+        for (final PastExamSession sess : sessions) {
+            final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC
+                                + sess.xmlFilename;
+            newmap.put(name, sess);
         }
 
         htm.div("vgap0").hr().div("vgap0");
@@ -855,18 +828,15 @@ public final class PageServerAdminSessions {
      */
     private static void emitHtmlPastLtaSessions(final HtmlBuilder htm) {
 
-        final Map<String, Map<String, PastLtaSession>> map = PastLtaSessionStore.getInstance().getPastLtaSessions();
-        Log.info("There are " + map.size() + " sessions viewing past learning target assignments.");
+        final Collection<PastLtaSession> sessions = PastLtaSessionStore.getInstance().getPastLtaSessions();
+        Log.info("There are " + sessions.size() + " past learning target assignments being viewed.");
 
-        // Create a new sorted map whose keys are based on student name (last, first)
+        // Create a new sorted map whose keys are based on student ID
         final Map<String, PastLtaSession> newmap = new TreeMap<>();
-        for (final Map<String, PastLtaSession> inner : map.values()) {
-
-            for (final PastLtaSession sess : inner.values()) {
-                final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC
-                                    + sess.xmlFilename;
-                newmap.put(name, sess);
-            }
+        for (final PastLtaSession sess : sessions) {
+            final String name = sess.studentId + CoreConstants.SPC + sess.sessionId + CoreConstants.SPC
+                                + sess.xmlFilename;
+            newmap.put(name, sess);
         }
 
         htm.div("vgap0").hr().div("vgap0");
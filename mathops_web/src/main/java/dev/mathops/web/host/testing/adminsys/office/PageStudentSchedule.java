@@ -26,6 +26,7 @@ import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ISessionManager;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.LiveSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.data.SiteData;
 import dev.mathops.session.sitelogic.data.SiteDataCfgExamStatus;
 import dev.mathops.text.builder.HtmlBuilder;
@@ -961,6 +962,8 @@ enum PageStudentSchedule {
                         Log.warning("New appeal for exam that has already been appealed, but with same or earlier ",
                                 "deadline - not update StudentMilestone");
                     }
+
+                    StudentStatusCache.getInstance().invalidate(studentId);
                 }
 
                 doGet(cache, site, req, resp, session);
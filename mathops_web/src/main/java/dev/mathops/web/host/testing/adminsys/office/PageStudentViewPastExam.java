@@ -24,6 +24,7 @@ import dev.mathops.db.schema.legacy.rec.RawStchallenge;
 import dev.mathops.db.schema.legacy.rec.RawStexam;
 import dev.mathops.db.schema.legacy.rec.RawStmpe;
 import dev.mathops.db.schema.legacy.rec.RawStudent;
+import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.txn.messages.GetExamReply;
 import dev.mathops.session.txn.messages.GetReviewExamReply;
@@ -35,11 +36,8 @@ import jakarta.servlet.ServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
@@ -48,7 +46,6 @@ import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Pages that displays a past exam taken by a student.
@@ -265,37 +262,7 @@ enum PageStudentViewPastExam {
 
             htm.sH(3).add("Exam Details:").eH(3);
 
-            final File basePath1 = new File("/imp/data");
-            final File basePath2 = new File("/impback");
-
-            if (basePath1.isDirectory() || basePath2.isDirectory()) {
-
-                File xmlPath = new File(basePath1, xml);
-                File updPath = new File(basePath1, upd);
-
-                if (!xmlPath.exists() || !updPath.exists()) {
-                    xmlPath = new File(basePath2, xml);
-                    updPath = new File(basePath2, upd);
-
-                    if (!xmlPath.exists() || !updPath.exists()) {
-                        xmlPath = new File(basePath1, xml);
-                        updPath = new File(basePath1, upd);
-                    }
-                }
-                final ExamObj exam = loadExam(xmlPath);
-
-                if (exam == null) {
-                    htm.sP("error").add("(Unable to load exam XML file)").eP();
-                } else {
-                    if (!loadUpdates(updPath, exam)) {
-                        htm.sP("error").add("Unable to load submitted answers file - exam not submitted?").eP();
-                    }
-
-                    emitExam(htm, exam);
-                }
-            } else {
-                htm.sP("error").add("(Unable to loacate exam directory)").eP();
-            }
+            emitExamDetails(htm, xml, upd);
         }
     }
 
@@ -342,37 +309,7 @@ enum PageStudentViewPastExam {
 
             htm.sH(3).add("Exam Details:").eH(3);
 
-            final File basePath1 = new File("/imp/data");
-            final File basePath2 = new File("/impback");
-
-            if (basePath1.isDirectory() || basePath2.isDirectory()) {
-
-                File xmlPath = new File(basePath1, xml);
-                File updPath = new File(basePath1, upd);
-
-                if (!xmlPath.exists() || !updPath.exists()) {
-                    xmlPath = new File(basePath2, xml);
-                    updPath = new File(basePath2, upd);
-
-                    if (!xmlPath.exists() || !updPath.exists()) {
-                        xmlPath = new File(basePath1, xml);
-                        updPath = new File(basePath1, upd);
-                    }
-                }
-                final ExamObj exam = loadExam(xmlPath);
-
-                if (exam == null) {
-                    htm.sP("error").add("(Unable to load exam XML file)").eP();
-                } else {
-                    if (!loadUpdates(updPath, exam)) {
-                        htm.sP("error").add("Unable to load submitted answers file - exam not submitted?").eP();
-                    }
-
-                    emitExam(htm, exam);
-                }
-            } else {
-                htm.sP("error").add("(Unable to loacate exam directory)").eP();
-            }
+            emitExamDetails(htm, xml, upd);
         }
     }
 
@@ -423,30 +360,43 @@ enum PageStudentViewPastExam {
 
         htm.sH(3).add("Exam Details:").eH(3);
 
+        emitExamDetails(htm, xml, upd);
+
+    }
+
+    /**
+     * Emits the details of a past exam, read from the exam directory or the term's exam archive.
+     *
+     * @param htm the {@code HtmlBuilder} to which to append
+     * @param xml the location of the exam XML file
+     * @param upd the location of the exam update file
+     */
+    private static void emitExamDetails(final HtmlBuilder htm, final String xml, final String upd) {
+
         final File basePath1 = new File("/imp/data");
         final File basePath2 = new File("/impback");
 
         if (basePath1.isDirectory() || basePath2.isDirectory()) {
 
-            File xmlPath = new File(basePath1, xml);
-            File updPath = new File(basePath1, upd);
+            byte[] xmlData = ExamWriter.readStoredFile(basePath1, xml);
+            byte[] updData = ExamWriter.readStoredFile(basePath1, upd);
 
-            if (!xmlPath.exists() || !updPath.exists()) {
-                xmlPath = new File(basePath2, xml);
-                updPath = new File(basePath2, upd);
+            if (xmlData == null || updData == null) {
+                final byte[] xmlData2 = ExamWriter.readStoredFile(basePath2, xml);
+                final byte[] updData2 = ExamWriter.readStoredFile(basePath2, upd);
 
-                if (!xmlPath.exists() || !updPath.exists()) {
-                    xmlPath = new File(basePath1, xml);
-                    updPath = new File(basePath1, upd);
+                if (xmlData2 != null && updData2 != null) {
+                    xmlData = xmlData2;
+                    updData = updData2;
                 }
             }
 
-            final ExamObj exam = loadExam(xmlPath);
+            final ExamObj exam = xmlData == null ? null : loadExam(xml, xmlData);
 
             if (exam == null) {
                 htm.sP("error").add("(Unable to load exam XML file)").eP();
             } else {
-                if (!loadUpdates(updPath, exam)) {
+                if (updData == null || !loadUpdates(updData, exam)) {
                     htm.sP("error").add("Unable to load submitted answers file - exam not submitted?").eP();
                 }
 
@@ -455,40 +405,20 @@ enum PageStudentViewPastExam {
         } else {
             htm.sP("error").add("(Unable to loacate exam directory)").eP();
         }
-
     }
 
     /**
-     * Read the exam XML file.
+     * Parses the exam XML file.
      *
-     * @param xmlFile the XML file to read
+     * @param xmlName the relative path of the XML file, for logging
+     * @param xmlData the contents of the XML file
      * @return the loaded exam if successful; null otherwise
      */
-    private static ExamObj loadExam(final File xmlFile) {
+    private static ExamObj loadExam(final String xmlName, final byte[] xmlData) {
 
         ExamObj exam = null;
 
-        // Read the file and convert to a string and character array
-        final byte[] buffer = new byte[1024];
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        try (final InputStream in = new FileInputStream(xmlFile)) {
-            if (xmlFile.getName().endsWith(".Z")) {
-                try (final InputStream zin = new GZIPInputStream(in)) {
-                    for (int len = zin.read(buffer); len > 0; len = zin.read(buffer)) {
-                        baos.write(buffer, 0, len);
-                    }
-                }
-            } else {
-                for (int len = in.read(buffer); len > 0; len = in.read(buffer)) {
-                    baos.write(buffer, 0, len);
-                }
-            }
-        } catch (final IOException ex) {
-            Log.warning(ex);
-        }
-
-        final String str = baos.toString(StandardCharsets.UTF_8);
+        final String str = new String(xmlData, StandardCharsets.UTF_8);
         final char[] data = str.toCharArray();
 
         // Convert the character array into the proper request type
@@ -496,60 +426,37 @@ enum PageStudentViewPastExam {
             if (str.startsWith("<get-review-exam-reply>")) {
                 exam = new GetReviewExamReply(data).presentedExam;
                 if (exam == null) {
-                    Log.warning("Unable to load ", xmlFile.getAbsolutePath());
+                    Log.warning("Unable to load ", xmlName);
                 }
             } else if (str.startsWith("<get-exam-reply>")) {
                 exam = new GetExamReply(data).presentedExam;
                 if (exam == null) {
-                    Log.warning("Unable to load ", xmlFile.getAbsolutePath());
+                    Log.warning("Unable to load ", xmlName);
                 }
             } else {
                 Log.warning("Unrecognized past exam type: ", str.substring(0, Math.min(100, str.length())));
             }
         } catch (final IllegalArgumentException ex) {
-            Log.warning("Unable to load ", xmlFile.getAbsolutePath(), ex);
+            Log.warning("Unable to load ", xmlName, ex);
         }
 
         return exam;
     }
 
     /**
-     * Read the updates file, rebuild the list of student answers, and apply them to the exam.
+     * Parses the updates file, rebuilds the list of student answers, and applies them to the exam.
      *
-     * @param updatesFile the updates file to read
-     * @param exam        the exam to which to apply the updates
+     * @param updData the contents of the updates file
+     * @param exam    the exam to which to apply the updates
      * @return true if successful; false otherwise
      */
-    private static boolean loadUpdates(final File updatesFile, final ExamObj exam) {
+    private static boolean loadUpdates(final byte[] updData, final ExamObj exam) {
 
         // Log.info("Loading updates");
 
         boolean ok = false;
 
-        // Read the file and convert to String
-        final byte[] buffer = new byte[256];
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        if (updatesFile.exists()) {
-            try (final InputStream in = new FileInputStream(updatesFile)) {
-
-                if (updatesFile.getName().endsWith(".Z")) {
-                    try (final InputStream zin = new GZIPInputStream(in)) {
-                        for (int len = zin.read(buffer); len > 0; len = zin.read(buffer)) {
-                            baos.write(buffer, 0, len);
-                        }
-                    }
-                } else {
-                    for (int len = in.read(buffer); len > 0; len = in.read(buffer)) {
-                        baos.write(buffer, 0, len);
-                    }
-                }
-            } catch (final IOException ex) {
-                Log.warning("Failed to read updates file", ex);
-            }
-        }
-
-        final String str = baos.toString(StandardCharsets.UTF_8);
+        final String str = new String(updData, StandardCharsets.UTF_8);
 
         // Convert to a series of lines, trimming away line numbers
         final List<String> data = new ArrayList<>(30);
@@ -23,6 +23,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.text.builder.HtmlBuilder;
 import dev.mathops.web.site.AbstractSite;
 import dev.mathops.web.site.Page;
@@ -125,6 +126,7 @@ enum PageTestingIssueExam {
                             holds = RawAdminHoldLogic.queryByStudent(cache, stu.stuId);
                             if (holds.isEmpty()) {
                                 RawStudentLogic.updateHoldSeverity(cache, stu.stuId, null);
+                                StudentStatusCache.getInstance().invalidate(stu.stuId);
                                 go = true;
                             } else {
                                 emitStudentIdField(htm, stuId, true);
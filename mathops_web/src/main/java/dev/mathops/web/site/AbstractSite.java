@@ -1,5 +1,6 @@
 package dev.mathops.web.site;
 
+import dev.mathops.assessment.htmlgen.ImageStore;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.installation.EPath;
@@ -250,6 +251,22 @@ public abstract class AbstractSite {
         }
     }
 
+    /**
+     * Sends a file as a response, streaming its content rather than loading it into memory, with support for range
+     * requests and conditional GET (see {@code FileSender}).
+     *
+     * @param req         the request
+     * @param resp        the response
+     * @param contentType the content type
+     * @param file        the file
+     * @throws IOException if there was an exception writing the response
+     */
+    protected static void sendFileReply(final HttpServletRequest req, final HttpServletResponse resp,
+                                        final String contentType, final File file) throws IOException {
+
+        FileSender.send(req, resp, contentType, file);
+    }
+
     /**
      * Validates the user session. If the session is invalid, an error is logged and the user is redirected to the
      * index.html page.
@@ -371,6 +388,36 @@ public abstract class AbstractSite {
         return session;
     }
 
+    /**
+     * Serves a rendered image from the image store. Stored images are content-addressed (the URL changes whenever the
+     * image content would), so responses may be cached by the browser indefinitely.
+     *
+     * @param imgName the image filename (the image key followed by ".png")
+     * @param req     the request
+     * @param resp    the response
+     * @throws IOException if there is an error writing the response
+     */
+    public static void serveRenderedImage(final String imgName, final HttpServletRequest req,
+                                          final HttpServletResponse resp) throws IOException {
+
+        final String key = imgName.endsWith(".png") ? imgName.substring(0, imgName.length() - 4) : null;
+        final ImageStore.Image image = ImageStore.isKey(key) ? ImageStore.getInstance().get(key) : null;
+
+        if (image == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            final String etag = "\"" + key + "\"";
+            resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            resp.setHeader("ETag", etag);
+
+            if (etag.equals(req.getHeader("If-None-Match"))) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            } else {
+                sendReply(req, resp, "image/png", image.getPng());
+            }
+        }
+    }
+
     /**
      * Serves an image file from the images subdirectory of the base directory.
      *
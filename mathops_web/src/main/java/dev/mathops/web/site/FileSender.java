@@ -0,0 +1,418 @@
+package dev.mathops.web.site;
+
+import dev.mathops.commons.log.Log;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends files (typically large media files) as responses, streaming file content from a {@code FileChannel} rather than
+ * loading it into memory, so memory use does not depend on the size of the file.
+ *
+ * <p>
+ * Responses carry an {@code ETag} (derived from the file's size and modification time) and {@code Last-Modified}
+ * header, and conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) are answered with 304 (Not
+ * Modified) when the file has not changed. Range requests (RFC 9110) are supported in full: single ranges, open-ended
+ * ranges ("500-"), suffix ranges ("-500"), and multiple ranges (sent as {@code multipart/byteranges}), with
+ * {@code If-Range} honored and 416 (Range Not Satisfiable) sent when no requested range overlaps the file.
+ *
+ * <p>
+ * When the container supports it (Tomcat advertises this with the "org.apache.tomcat.sendfile.support" request
+ * attribute), whole-file and single-range responses are handed to the container's sendfile support, which copies file
+ * data to the socket without passing through the JVM heap. Otherwise, data is transferred from the file channel to the
+ * response stream through a small fixed-size buffer.
+ */
+enum FileSender {
+    ;
+
+    /** The request attribute with which Tomcat indicates sendfile support. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    /** The request attribute that tells Tomcat which file to send. */
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    /** The request attribute that tells Tomcat the first byte to send. */
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    /** The request attribute that tells Tomcat the byte after the last byte to send. */
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** The maximum number of ranges honored in one request (more are treated as a request for the whole file). */
+    private static final int MAX_RANGES = 20;
+
+    /**
+     * A byte range, after resolving open-ended and suffix forms against the file length.
+     *
+     * @param first the index of the first byte
+     * @param last  the index of the last byte (inclusive)
+     */
+    record ByteRange(long first, long last) {
+
+        /**
+         * Gets the number of bytes in the range.
+         *
+         * @return the length
+         */
+        long length() {
+
+            return this.last - this.first + 1L;
+        }
+    }
+
+    /**
+     * Sends a file.
+     *
+     * @param req         the request
+     * @param resp        the response
+     * @param contentType the content type
+     * @param file        the file
+     * @throws IOException if there was an exception writing the response
+     */
+    static void send(final HttpServletRequest req, final HttpServletResponse resp, final String contentType,
+                     final File file) throws IOException {
+
+        if (file.isFile()) {
+            final long length = file.length();
+            final long modified = file.lastModified();
+            final String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(modified) + "\"";
+
+            resp.setHeader("Accept-Ranges", "bytes");
+            resp.setHeader("ETag", etag);
+            resp.setDateHeader("Last-Modified", modified);
+
+            if (isNotModified(req, etag, modified)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            } else {
+                final String rangeHeader = req.getHeader("Range");
+                final List<ByteRange> ranges = rangeHeader == null || !isIfRangeSatisfied(req, etag, modified)
+                        ? null : parseRanges(rangeHeader, length);
+
+                if (ranges == null) {
+                    resp.setContentType(contentType);
+                    resp.setContentLengthLong(length);
+                    sendRange(req, resp, file, new ByteRange(0L, length - 1L));
+                } else if (ranges.isEmpty()) {
+                    resp.setHeader("Content-Range", "bytes */" + length);
+                    resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                } else if (ranges.size() == 1) {
+                    final ByteRange range = ranges.getFirst();
+                    resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    resp.setContentType(contentType);
+                    resp.setContentLengthLong(range.length());
+                    resp.setHeader("Content-Range", "bytes " + range.first() + "-" + range.last() + "/" + length);
+                    sendRange(req, resp, file, range);
+                } else {
+                    sendMultipart(resp, contentType, file, length, ranges);
+                }
+            }
+        } else {
+            Log.warning(file.getAbsolutePath(), " not found");
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    /**
+     * Tests whether a conditional request can be answered with 304 (Not Modified). {@code If-None-Match} takes
+     * precedence; {@code If-Modified-Since} is considered only if it is absent.
+     *
+     * @param req      the request
+     * @param etag     the file's entity tag
+     * @param modified the file's modification time
+     * @return true if the client's copy is current
+     */
+    private static boolean isNotModified(final HttpServletRequest req, final String etag, final long modified) {
+
+        final boolean result;
+
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            final long since = getDateHeader(req, "If-Modified-Since");
+            result = since != -1L && modified / 1000L <= since / 1000L;
+        } else {
+            result = matchesAny(ifNoneMatch, etag);
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests whether the {@code If-Range} condition (if any) is satisfied, so a {@code Range} header should be honored.
+     *
+     * @param req      the request
+     * @param etag     the file's entity tag
+     * @param modified the file's modification time
+     * @return true if ranges should be honored
+     */
+    private static boolean isIfRangeSatisfied(final HttpServletRequest req, final String etag, final long modified) {
+
+        final boolean result;
+
+        final String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            result = true;
+        } else if (ifRange.trim().startsWith("\"")) {
+            result = etag.equals(ifRange.trim());
+        } else {
+            final long date = getDateHeader(req, "If-Range");
+            result = date != -1L && modified / 1000L == date / 1000L;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a date header, treating a malformed date as absent.
+     *
+     * @param req  the request
+     * @param name the header name
+     * @return the date, or -1 if absent or malformed
+     */
+    private static long getDateHeader(final HttpServletRequest req, final String name) {
+
+        long result;
+
+        try {
+            result = req.getDateHeader(name);
+        } catch (final IllegalArgumentException ex) {
+            result = -1L;
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests whether a list of entity tags (as in {@code If-None-Match}) contains a tag, or is "*". Weak tags match
+     * their strong equivalents, as required for {@code If-None-Match}.
+     *
+     * @param list the comma-separated list of entity tags
+     * @param etag the entity tag
+     * @return true if the list matches
+     */
+    private static boolean matchesAny(final String list, final String etag) {
+
+        boolean result = false;
+
+        for (final String item : list.split(",")) {
+            String tag = item.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                result = true;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a {@code Range} header.
+     *
+     * @param header the header value
+     * @param length the file length
+     * @return the satisfiable ranges, sorted, with overlapping and adjacent ranges merged (empty if none of the ranges
+     *         is satisfiable); {@code null} if the header is not a valid byte range request and should be ignored
+     */
+    static List<ByteRange> parseRanges(final String header, final long length) {
+
+        List<ByteRange> result = null;
+
+        if (header.startsWith("bytes=")) {
+            final String[] specs = header.substring(6).split(",");
+
+            if (specs.length <= MAX_RANGES) {
+                result = new ArrayList<>(specs.length);
+
+                for (final String spec : specs) {
+                    final String trimmed = spec.trim();
+                    final int dash = trimmed.indexOf('-');
+
+                    if (dash == -1) {
+                        result = null;
+                        break;
+                    }
+
+                    try {
+                        final String firstStr = trimmed.substring(0, dash).trim();
+                        final String lastStr = trimmed.substring(dash + 1).trim();
+
+                        if (firstStr.isEmpty()) {
+                            // Suffix range: the final N bytes
+                            final long suffix = Long.parseLong(lastStr);
+                            if (suffix > 0L && length > 0L) {
+                                result.add(new ByteRange(Math.max(0L, length - suffix), length - 1L));
+                            }
+                        } else {
+                            final long first = Long.parseLong(firstStr);
+                            final long last = lastStr.isEmpty() ? length - 1L
+                                    : Math.min(Long.parseLong(lastStr), length - 1L);
+
+                            if (first < 0L || (!lastStr.isEmpty() && Long.parseLong(lastStr) < first)) {
+                                result = null;
+                                break;
+                            }
+                            if (first < length) {
+                                result.add(new ByteRange(first, last));
+                            }
+                        }
+                    } catch (final NumberFormatException ex) {
+                        result = null;
+                        break;
+                    }
+                }
+
+                if (result != null) {
+                    result = merge(result);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sorts ranges and merges those that overlap or are adjacent.
+     *
+     * @param ranges the ranges
+     * @return the merged ranges
+     */
+    static List<ByteRange> merge(final List<ByteRange> ranges) {
+
+        ranges.sort((a, b) -> Long.compare(a.first(), b.first()));
+
+        final List<ByteRange> result = new ArrayList<>(ranges.size());
+        ByteRange current = null;
+
+        for (final ByteRange range : ranges) {
+            if (current == null) {
+                current = range;
+            } else if (range.first() <= current.last() + 1L) {
+                current = new ByteRange(current.first(), Math.max(current.last(), range.last()));
+            } else {
+                result.add(current);
+                current = range;
+            }
+        }
+        if (current != null) {
+            result.add(current);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sends one range of a file as the response body (headers must already be set), using the container's sendfile
+     * support if available.
+     *
+     * @param req   the request
+     * @param resp  the response
+     * @param file  the file
+     * @param range the range
+     * @throws IOException if there was an exception writing the response
+     */
+    private static void sendRange(final HttpServletRequest req, final HttpServletResponse resp, final File file,
+                                  final ByteRange range) throws IOException {
+
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            req.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            req.setAttribute(SENDFILE_START, Long.valueOf(range.first()));
+            req.setAttribute(SENDFILE_END, Long.valueOf(range.last() + 1L));
+        } else {
+            try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 final OutputStream out = resp.getOutputStream()) {
+                transfer(channel, range, Channels.newChannel(out));
+            } catch (final IOException ex) {
+                if (!"ClientAbortException".equals(ex.getClass().getSimpleName())) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends several ranges of a file as a {@code multipart/byteranges} response.
+     *
+     * @param resp        the response
+     * @param contentType the content type of the file
+     * @param file        the file
+     * @param length      the file length
+     * @param ranges      the ranges
+     * @throws IOException if there was an exception writing the response
+     */
+    private static void sendMultipart(final HttpServletResponse resp, final String contentType, final File file,
+                                      final long length, final Iterable<ByteRange> ranges) throws IOException {
+
+        final String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+                                + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+        final List<byte[]> partHeaders = new ArrayList<>(MAX_RANGES);
+        long total = 0L;
+        for (final ByteRange range : ranges) {
+            final String head = "\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: bytes "
+                                + range.first() + "-" + range.last() + "/" + length + "\r\n\r\n";
+            final byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headBytes);
+            total += (long) headBytes.length + range.length();
+        }
+        final byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += (long) trailer.length;
+
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        resp.setContentType("multipart/byteranges; boundary=" + boundary);
+        resp.setContentLengthLong(total);
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             final OutputStream out = resp.getOutputStream()) {
+
+            final WritableByteChannel target = Channels.newChannel(out);
+            int index = 0;
+            for (final ByteRange range : ranges) {
+                out.write(partHeaders.get(index));
+                transfer(channel, range, target);
+                ++index;
+            }
+            out.write(trailer);
+        } catch (final IOException ex) {
+            if (!"ClientAbortException".equals(ex.getClass().getSimpleName())) {
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Transfers a range of a file to a channel.
+     *
+     * @param channel the file channel
+     * @param range   the range
+     * @param target  the target channel
+     * @throws IOException if there was an exception reading the file or writing the target
+     */
+    private static void transfer(final FileChannel channel, final ByteRange range, final WritableByteChannel target)
+            throws IOException {
+
+        long position = range.first();
+        long remaining = range.length();
+
+        while (remaining > 0L) {
+            final long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0L) {
+                // The file was truncated while being sent
+                throw new IOException("Unexpected end of file");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package dev.mathops.web.site;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free log-linear histogram of latencies, in microseconds. Each power of two is divided into 8 linear
+ * sub-buckets, so a recorded value is known to within 12.5%; values from 0 to about 19 hours are tracked, and larger
+ * values are counted in the last bucket.
+ *
+ * <p>
+ * Counts are held in an {@code AtomicLongArray} and are updated with atomic increments, so recording never blocks.
+ * Reads are not atomic with respect to concurrent recording, which can make a snapshot inconsistent by the handful of
+ * values recorded while it is taken.
+ */
+final class LatencyHistogram {
+
+    /** The number of bits used for sub-buckets within each power of two. */
+    private static final int SUB_BITS = 3;
+
+    /** The number of sub-buckets within each power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The largest value tracked; larger values are recorded as this value. */
+    private static final long MAX_VALUE = (1L << 36) - 1L;
+
+    /** The number of buckets. */
+    static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    /** The bucket counts. */
+    private final AtomicLongArray counts;
+
+    /**
+     * Constructs a new, empty {@code LatencyHistogram}.
+     */
+    LatencyHistogram() {
+
+        this.counts = new AtomicLongArray(NUM_BUCKETS);
+    }
+
+    /**
+     * Computes the index of the bucket that holds a value.
+     *
+     * @param micros the value, in microseconds
+     * @return the bucket index
+     */
+    static int bucketIndex(final long micros) {
+
+        final long value = Math.min(Math.max(micros, 0L), MAX_VALUE);
+        final int result;
+
+        if (value < (long) SUB_BUCKETS) {
+            result = (int) value;
+        } else {
+            final int msb = 63 - Long.numberOfLeadingZeros(value);
+            final int shift = msb - SUB_BITS;
+            final int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+            result = ((shift + 1) << SUB_BITS) + sub;
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the largest value that falls in a bucket.
+     *
+     * @param index the bucket index
+     * @return the largest value, in microseconds
+     */
+    static long bucketUpperBound(final int index) {
+
+        final long result;
+
+        if (index < SUB_BUCKETS) {
+            result = (long) index;
+        } else {
+            final int shift = (index >> SUB_BITS) - 1;
+            final long sub = (long) (index & (SUB_BUCKETS - 1));
+            result = ((((long) SUB_BUCKETS + sub + 1L) << shift)) - 1L;
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param micros the value, in microseconds
+     */
+    void record(final long micros) {
+
+        this.counts.incrementAndGet(bucketIndex(micros));
+    }
+
+    /**
+     * Adds this histogram's counts to an array of bucket counts.
+     *
+     * @param target the array (of length {@code NUM_BUCKETS}) to which to add counts
+     */
+    void addTo(final long[] target) {
+
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            target[i] += this.counts.get(i);
+        }
+    }
+
+    /**
+     * Resets all counts to zero.
+     */
+    void clear() {
+
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            this.counts.set(i, 0L);
+        }
+    }
+
+    /**
+     * Computes a percentile from an array of bucket counts.
+     *
+     * @param counts   the bucket counts
+     * @param total    the sum of the bucket counts
+     * @param fraction the percentile, as a fraction from 0 to 1
+     * @return the upper bound of the bucket that holds the percentile, in microseconds (0 if there are no counts)
+     */
+    static long percentile(final long[] counts, final long total, final double fraction) {
+
+        long result = 0L;
+
+        if (total > 0L) {
+            final long rank = Math.max(1L, (long) Math.ceil(fraction * (double) total));
+            long seen = 0L;
+
+            for (int i = 0; i < NUM_BUCKETS; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    result = bucketUpperBound(i);
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+}
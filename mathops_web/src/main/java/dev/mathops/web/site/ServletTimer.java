@@ -1,36 +1,49 @@
 package dev.mathops.web.site;
 
-import dev.mathops.db.cfg.Profile;
+import dev.mathops.text.builder.HtmlBuilder;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A singleton, thread-safe timer that can record the number of accesses to any named context and the total time spent
- * processing that context. It tracks name-status pairs where the status is an access counter and total elapsed time
- * value.
+ * A singleton, thread-safe timer that records the latency of requests to each page of each site, in log-linear
+ * histograms from which percentiles are computed (see {@code ServletTimerCounters}). Recording is lock-free, so timing
+ * adds no contention to the request path.
+ *
+ * <p>
+ * The front controller records every request under the site and page {@code ALL}; the web mid-controller records
+ * requests dispatched to sites under the site's host and path and the page's path within the site. To bound memory
+ * when clients request arbitrary paths, each site tracks at most {@code MAX_PAGES_PER_SITE} pages, and requests to
+ * further pages are recorded under {@code OTHER}.
  */
-final class ServletTimer {
+public final class ServletTimer {
 
-    /** The singleton instance. */
-    private static final Object INSTANCE_SYNCH = new Object();
+    /** The site and page under which all requests are recorded. */
+    public static final String ALL = "*";
 
-    /** The singleton instance. */
-    private static ServletTimer instance;
+    /** The page under which requests are recorded once a site has reached its page limit. */
+    static final String OTHER = "(other)";
+
+    /** The maximum number of pages tracked for each site. */
+    private static final int MAX_PAGES_PER_SITE = 200;
+
+    /** The number of nanoseconds in a microsecond. */
+    private static final long NANOS_PER_MICRO = 1000L;
 
-    /** Object on which to synchronize access to map. */
-    private final Object synch;
+    /** The singleton instance. */
+    private static final ServletTimer INSTANCE = new ServletTimer();
 
-    /** Map from database profile to map from location name to counters. */
-    private final Map<Profile, Map<String, ServletTimerCounters>> map;
+    /** Map from site to map from page to counters. */
+    private final Map<String, Map<String, ServletTimerCounters>> map;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private ServletTimer() {
 
-        this.synch = new Object();
-        this.map = new TreeMap<>();
+        this.map = new ConcurrentHashMap<>(20);
     }
 
     /**
@@ -38,35 +51,167 @@ final class ServletTimer {
      *
      * @return the instance
      */
-    static ServletTimer getInstance() {
+    public static ServletTimer getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param site         the site
+     * @param page         the page within the site
+     * @param elapsedNanos the elapsed time, in nanoseconds
+     * @param error        true if the request failed (with an exception or a 5xx status)
+     */
+    public void recordAccess(final String site, final String page, final long elapsedNanos, final boolean error) {
+
+        if (site != null && page != null) {
+            final Map<String, ServletTimerCounters> pages = this.map.computeIfAbsent(site,
+                    s -> new ConcurrentHashMap<>(50));
 
-        synchronized (INSTANCE_SYNCH) {
-            if (instance == null) {
-                instance = new ServletTimer();
+            ServletTimerCounters counters = pages.get(page);
+            if (counters == null) {
+                final String key = pages.size() < MAX_PAGES_PER_SITE ? page : OTHER;
+                counters = pages.computeIfAbsent(key, k -> new ServletTimerCounters());
             }
 
-            return instance;
+            counters.add(elapsedNanos / NANOS_PER_MICRO, error, System.currentTimeMillis());
         }
     }
 
     /**
-     * Records access to a location within a context.
+     * Takes a snapshot of the counters for all pages.
      *
-     * @param profile  the database profile under which the access was made
-     * @param location the location being called
-     * @param elapsed  the elapsed time
+     * @return the snapshots, sorted by site and page
      */
-    void recordAccess(final Profile profile, final String location, final long elapsed) {
+    public List<ServletTimerSnapshot> snapshot() {
 
-        if (profile != null && location != null) {
-            synchronized (this.synch) {
-                final Map<String, ServletTimerCounters> submap = this.map.computeIfAbsent(profile,
-                        s -> new TreeMap<>());
+        final long now = System.currentTimeMillis();
+        final List<ServletTimerSnapshot> result = new ArrayList<>(100);
 
-                final ServletTimerCounters counters = submap.computeIfAbsent(location, k -> new ServletTimerCounters());
-
-                counters.add(elapsed);
+        for (final Map.Entry<String, Map<String, ServletTimerCounters>> siteEntry : this.map.entrySet()) {
+            final String site = siteEntry.getKey();
+            for (final Map.Entry<String, ServletTimerCounters> pageEntry : siteEntry.getValue().entrySet()) {
+                result.add(pageEntry.getValue().snapshot(site, pageEntry.getKey(), now));
             }
         }
+
+        result.sort((a, b) -> {
+            final int siteCmp = a.site().compareTo(b.site());
+            return siteCmp == 0 ? a.page().compareTo(b.page()) : siteCmp;
+        });
+
+        return result;
+    }
+
+    /**
+     * Exports the counters for all pages in the Prometheus text exposition format. Latencies are exported in seconds,
+     * all-time values as counters and summaries, and last-minute values as gauges.
+     *
+     * @return the metrics text
+     */
+    public String exportText() {
+
+        final List<ServletTimerSnapshot> snapshots = snapshot();
+        final HtmlBuilder txt = new HtmlBuilder(200 + snapshots.size() * 1000);
+
+        txt.addln("# HELP mathops_requests_total Requests served since startup.");
+        txt.addln("# TYPE mathops_requests_total counter");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            txt.addln("mathops_requests_total", labels(snap, null), " ", Long.toString(snap.allTime().count()));
+        }
+
+        txt.addln("# HELP mathops_request_errors_total Requests that failed since startup.");
+        txt.addln("# TYPE mathops_request_errors_total counter");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            txt.addln("mathops_request_errors_total", labels(snap, null), " ",
+                    Long.toString(snap.allTime().errors()));
+        }
+
+        txt.addln("# HELP mathops_request_seconds Request latency since startup.");
+        txt.addln("# TYPE mathops_request_seconds summary");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            emitQuantiles(txt, "mathops_request_seconds", snap, snap.allTime());
+        }
+
+        txt.addln("# HELP mathops_request_max_seconds Longest request since startup.");
+        txt.addln("# TYPE mathops_request_max_seconds gauge");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            txt.addln("mathops_request_max_seconds", labels(snap, null), " ", seconds(snap.longestMicros()));
+        }
+
+        txt.addln("# HELP mathops_requests_1m Requests served in the last minute.");
+        txt.addln("# TYPE mathops_requests_1m gauge");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            txt.addln("mathops_requests_1m", labels(snap, null), " ", Long.toString(snap.lastMinute().count()));
+        }
+
+        txt.addln("# HELP mathops_request_errors_1m Requests that failed in the last minute.");
+        txt.addln("# TYPE mathops_request_errors_1m gauge");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            txt.addln("mathops_request_errors_1m", labels(snap, null), " ",
+                    Long.toString(snap.lastMinute().errors()));
+        }
+
+        txt.addln("# HELP mathops_request_seconds_1m Request latency in the last minute.");
+        txt.addln("# TYPE mathops_request_seconds_1m gauge");
+        for (final ServletTimerSnapshot snap : snapshots) {
+            emitQuantiles(txt, "mathops_request_seconds_1m", snap, snap.lastMinute());
+        }
+
+        return txt.toString();
+    }
+
+    /**
+     * Emits the quantile lines for a summary.
+     *
+     * @param txt     the builder to which to append
+     * @param name    the metric name
+     * @param snap    the snapshot
+     * @param summary the summary
+     */
+    private static void emitQuantiles(final HtmlBuilder txt, final String name, final ServletTimerSnapshot snap,
+                                      final ServletTimerSnapshot.Summary summary) {
+
+        txt.addln(name, labels(snap, "0.5"), " ", seconds(summary.p50Micros()));
+        txt.addln(name, labels(snap, "0.95"), " ", seconds(summary.p95Micros()));
+        txt.addln(name, labels(snap, "0.99"), " ", seconds(summary.p99Micros()));
+    }
+
+    /**
+     * Generates the label set for a metric.
+     *
+     * @param snap     the snapshot
+     * @param quantile the quantile label value; {@code null} if none
+     * @return the label set, in braces
+     */
+    private static String labels(final ServletTimerSnapshot snap, final String quantile) {
+
+        final String base = "{site=\"" + escape(snap.site()) + "\",page=\"" + escape(snap.page()) + "\"";
+
+        return quantile == null ? base + "}" : base + ",quantile=\"" + quantile + "\"}";
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value the value
+     * @return the escaped value
+     */
+    private static String escape(final String value) {
+
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Formats a time in microseconds as seconds.
+     *
+     * @param micros the time, in microseconds
+     * @return the time in seconds
+     */
+    private static String seconds(final long micros) {
+
+        return Double.toString((double) micros / 1.0e6);
     }
 }
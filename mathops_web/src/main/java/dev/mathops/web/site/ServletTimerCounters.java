@@ -1,63 +1,164 @@
 package dev.mathops.web.site;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
- * Counters for total accesses and duration.
+ * Latency counters for one page: a histogram of all requests since the server started, and a histogram of requests
+ * in a rolling one-minute window, each with a count of requests that failed.
+ *
+ * <p>
+ * Recording is lock-free. The all-time histogram is striped: each thread records into one of several histograms
+ * (chosen by thread ID), so threads serving the same page rarely contend for the same counters, and the stripes are
+ * summed when the counters are read. The window is made up of six ten-second slots; a slot is cleared by the first
+ * request to reach it in a new ten-second period, and values recorded by other threads in the instant it is cleared
+ * may be lost.
  */
 final class ServletTimerCounters {
 
-    /** The number of accesses. */
-    private int accessCount;
+    /** The number of stripes in the all-time histogram (a power of two). */
+    private static final int STRIPES = Integer.highestOneBit(Math.min(8,
+            Runtime.getRuntime().availableProcessors()));
+
+    /** The length of a window slot, in milliseconds. */
+    private static final long SLOT_MS = 10000L;
+
+    /** The number of slots in the window. */
+    private static final int NUM_SLOTS = 6;
+
+    /** The all-time histogram stripes. */
+    private final LatencyHistogram[] stripes;
+
+    /** The number of failed requests, per stripe. */
+    private final AtomicLongArray errors;
 
-    /** The total elapsed time. */
-    private long totalElapsed;
+    /** The longest elapsed time, in microseconds. */
+    private final AtomicLong longest;
 
-    /** The longest elapsed time. */
-    private long longest;
+    /** The window slots. */
+    private final Slot[] slots;
 
     /**
-     * Constructs a new {@code Counters}.
+     * One ten-second slot of the rolling window.
+     */
+    private static final class Slot {
+
+        /** The ten-second period the slot holds (time in milliseconds divided by the slot length). */
+        final AtomicLong period;
+
+        /** The histogram. */
+        final LatencyHistogram histogram;
+
+        /** The number of failed requests. */
+        final AtomicLong errors;
+
+        /**
+         * Constructs a new {@code Slot}.
+         */
+        Slot() {
+
+            this.period = new AtomicLong(-1L);
+            this.histogram = new LatencyHistogram();
+            this.errors = new AtomicLong(0L);
+        }
+    }
+
+    /**
+     * Constructs a new {@code ServletTimerCounters}.
      */
     ServletTimerCounters() {
 
-        this.accessCount = 0;
-        this.totalElapsed = 0L;
-        this.longest = 0L;
+        this.stripes = new LatencyHistogram[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            this.stripes[i] = new LatencyHistogram();
+        }
+        this.errors = new AtomicLongArray(STRIPES);
+        this.longest = new AtomicLong(0L);
+
+        this.slots = new Slot[NUM_SLOTS];
+        for (int i = 0; i < NUM_SLOTS; ++i) {
+            this.slots[i] = new Slot();
+        }
     }
 
     /**
-     * Constructs a new {@code Counters}.
+     * Records a request.
      *
-     * @param theAccessCount  the access count
-     * @param theTotalElapsed the total elapsed time
-     * @param theLongest      the longest time for one transaction
+     * @param micros the elapsed time, in microseconds
+     * @param error  true if the request failed
+     * @param nowMs  the current time, in milliseconds
      */
-    private ServletTimerCounters(final int theAccessCount, final long theTotalElapsed,
-                                 final long theLongest) {
+    void add(final long micros, final boolean error, final long nowMs) {
 
-        this.accessCount = theAccessCount;
-        this.totalElapsed = theTotalElapsed;
-        this.longest = theLongest;
+        final int stripe = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        this.stripes[stripe].record(micros);
+        if (error) {
+            this.errors.incrementAndGet(stripe);
+        }
+        this.longest.accumulateAndGet(micros, Math::max);
+
+        final long period = nowMs / SLOT_MS;
+        final Slot slot = this.slots[(int) (period % (long) NUM_SLOTS)];
+        final long slotPeriod = slot.period.get();
+        if (slotPeriod != period && slot.period.compareAndSet(slotPeriod, period)) {
+            slot.histogram.clear();
+            slot.errors.set(0L);
+        }
+        slot.histogram.record(micros);
+        if (error) {
+            slot.errors.incrementAndGet();
+        }
     }
 
     /**
-     * Adds one access count and a given elapsed time to a set of counters.
+     * Takes a snapshot of the counters.
      *
-     * @param elapsed the elapsed time
+     * @param site  the site
+     * @param page  the page
+     * @param nowMs the current time, in milliseconds
+     * @return the snapshot
      */
-    void add(final long elapsed) {
+    ServletTimerSnapshot snapshot(final String site, final String page, final long nowMs) {
+
+        final long[] all = new long[LatencyHistogram.NUM_BUCKETS];
+        long allErrors = 0L;
+        for (int i = 0; i < STRIPES; ++i) {
+            this.stripes[i].addTo(all);
+            allErrors += this.errors.get(i);
+        }
 
-        ++this.accessCount;
-        this.totalElapsed += elapsed;
-        this.longest = Math.max(this.longest, elapsed);
+        final long[] window = new long[LatencyHistogram.NUM_BUCKETS];
+        long windowErrors = 0L;
+        final long period = nowMs / SLOT_MS;
+        for (final Slot slot : this.slots) {
+            // The current slot is partly filled, so the window covers between 50 and 60 seconds
+            if (slot.period.get() > period - (long) NUM_SLOTS) {
+                slot.histogram.addTo(window);
+                windowErrors += slot.errors.get();
+            }
+        }
+
+        return new ServletTimerSnapshot(site, page, summarize(all, allErrors), summarize(window, windowErrors),
+                this.longest.get());
     }
 
     /**
-     * Returns a copy of this object.
+     * Summarizes bucket counts.
      *
-     * @return the copy
+     * @param counts     the bucket counts
+     * @param errorCount the number of failed requests
+     * @return the summary
      */
-    ServletTimerCounters copy() {
+    private static ServletTimerSnapshot.Summary summarize(final long[] counts, final long errorCount) {
+
+        long total = 0L;
+        for (final long count : counts) {
+            total += count;
+        }
 
-        return new ServletTimerCounters(this.accessCount, this.totalElapsed, this.longest);
+        return new ServletTimerSnapshot.Summary(total, errorCount,
+                LatencyHistogram.percentile(counts, total, 0.50),
+                LatencyHistogram.percentile(counts, total, 0.95),
+                LatencyHistogram.percentile(counts, total, 0.99));
     }
 }
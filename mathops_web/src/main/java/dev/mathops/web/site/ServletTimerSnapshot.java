@@ -0,0 +1,26 @@
+package dev.mathops.web.site;
+
+/**
+ * A snapshot of the latency counters for one page.
+ *
+ * @param site          the site (host and path)
+ * @param page          the page (the path within the site)
+ * @param allTime       a summary of all requests since the server started
+ * @param lastMinute    a summary of requests in the last minute
+ * @param longestMicros the longest elapsed time, in microseconds
+ */
+public record ServletTimerSnapshot(String site, String page, Summary allTime, Summary lastMinute,
+                                   long longestMicros) {
+
+    /**
+     * A summary of a set of requests. Percentiles are upper bounds, accurate to within 12.5%.
+     *
+     * @param count     the number of requests
+     * @param errors    the number of requests that failed (with an exception or a 5xx status)
+     * @param p50Micros the median elapsed time, in microseconds
+     * @param p95Micros the 95th percentile elapsed time, in microseconds
+     * @param p99Micros the 99th percentile elapsed time, in microseconds
+     */
+    public record Summary(long count, long errors, long p50Micros, long p95Micros, long p99Micros) {
+    }
+}
@@ -71,9 +71,6 @@ public final class WebMidController implements IMidController {
     /** The servlet information string. */
     private static final String INFO = Res.get(Res.INFO);
 
-    /** Purge interval, in milliseconds (10 minutes). */
-    private static final long PURGE_INTERVAL = 10 * 60000;
-
     /** A commonly used character. */
     private static final int SLASH = '/';
 
@@ -86,9 +83,6 @@ public final class WebMidController implements IMidController {
     /** The singleton user session repository. */
     private final ISessionManager sessions;
 
-    /** Time when sessions were last purged. */
-    private long lastPurge;
-
     /**
      * Constructs a new {@code WebSiteMidController}.
      *
@@ -195,8 +189,6 @@ public final class WebMidController implements IMidController {
         PastExamSessionStore.getInstance().restore(cache, session);
         PastLtaSessionStore.getInstance().restore(cache, session);
 
-        this.lastPurge = System.currentTimeMillis();
-
         final String startedMsg = Res.fmt(Res.STARTED, INFO);
         Log.info(startedMsg);
     }
@@ -285,25 +277,9 @@ public final class WebMidController implements IMidController {
             }
         } else {
             try {
-                final long timerStart = System.currentTimeMillis();
-
                 final Profile siteProfile = site.site.profile;
                 final Cache cache = new Cache(siteProfile);
 
-                if (timerStart > this.lastPurge + PURGE_INTERVAL) {
-
-                    Log.info("Purging expired HTML sessions");
-
-                    ChallengeExamSessionStore.getInstance().purgeExpired(cache);
-                    PlacementExamSessionStore.getInstance().purgeExpired(cache);
-                    UnitExamSessionStore.getInstance().purgeExpired(cache);
-                    ReviewExamSessionStore.getInstance().purgeExpired(cache);
-                    HomeworkSessionStore.getInstance().purgeExpired();
-                    PastExamSessionStore.getInstance().purgeExpired();
-
-                    this.lastPurge = timerStart;
-                }
-
                 final int pathLen = site.site.path.length();
                 String subpath = reqPath.substring(pathLen);
 
@@ -313,18 +289,22 @@ public final class WebMidController implements IMidController {
                         subpath = subpath.substring(1);
                     }
 
-                    final long start = System.currentTimeMillis();
-                    final String reqMethod = req.getMethod();
-
-                    if ("GET".equals(reqMethod)) {
-                        site.doGet(cache, subpath, type, req, resp);
-                    } else if ("POST".equals(reqMethod)) {
-                        site.doPost(cache, subpath, type, req, resp);
-                    } else {
-                        resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+                    final long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        final String reqMethod = req.getMethod();
+
+                        if ("GET".equals(reqMethod)) {
+                            site.doGet(cache, subpath, type, req, resp);
+                        } else if ("POST".equals(reqMethod)) {
+                            site.doPost(cache, subpath, type, req, resp);
+                        } else {
+                            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+                        }
+                        failed = false;
+                    } finally {
+                        recordTiming(site, subpath, start, failed, resp);
                     }
-                    final long elapsed = System.currentTimeMillis() - start;
-                    this.timer.recordAccess(siteProfile, subpath, elapsed);
                 } else if (Contexts.TESTING_HOST.equals(reqHost)
                            || Contexts.ONLINE_HOST.equals(reqHost)
                               && reqPath.startsWith(Contexts.TESTING_CENTER_PATH)) {
@@ -333,10 +313,14 @@ public final class WebMidController implements IMidController {
                         subpath = subpath.substring(1);
                     }
 
-                    final long start = System.currentTimeMillis();
-                    site.doPost(cache, subpath, type, req, resp);
-                    final long elapsed = System.currentTimeMillis() - start;
-                    this.timer.recordAccess(siteProfile, subpath, elapsed);
+                    final long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        site.doPost(cache, subpath, type, req, resp);
+                        failed = false;
+                    } finally {
+                        recordTiming(site, subpath, start, failed, resp);
+                    }
                 } else {
                     // Site requires secure connections
                     final String loc = "https://" + req.getServerName() + req.getServletPath();
@@ -406,18 +390,22 @@ public final class WebMidController implements IMidController {
                         subpath = subpath.substring(1);
                     }
 
-                    final long start = System.currentTimeMillis();
-                    final String reqMethod = req.getMethod();
-
-                    if ("GET".equals(reqMethod)) {
-                        site.doGet(cache, subpath, type, req, resp);
-                    } else if ("POST".equals(reqMethod)) {
-                        site.doPost(cache, subpath, type, req, resp);
-                    } else {
-                        resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+                    final long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        final String reqMethod = req.getMethod();
+
+                        if ("GET".equals(reqMethod)) {
+                            site.doGet(cache, subpath, type, req, resp);
+                        } else if ("POST".equals(reqMethod)) {
+                            site.doPost(cache, subpath, type, req, resp);
+                        } else {
+                            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+                        }
+                        failed = false;
+                    } finally {
+                        recordTiming(site, subpath, start, failed, resp);
                     }
-                    final long elapsed = System.currentTimeMillis() - start;
-                    this.timer.recordAccess(siteProfile, subpath, elapsed);
                 } else {
                     // Site requires secure connections
                     final String loc = "https://" + req.getServerName() + req.getServletPath();
@@ -434,6 +422,24 @@ public final class WebMidController implements IMidController {
         }
     }
 
+    /**
+     * Records the time taken to process a request to a site.
+     *
+     * @param site    the site
+     * @param subpath the page within the site
+     * @param start   the value of {@code System.nanoTime()} when processing started
+     * @param failed  true if processing ended with an exception
+     * @param resp    the response
+     */
+    private void recordTiming(final AbstractSite site, final String subpath, final long start, final boolean failed,
+                              final HttpServletResponse resp) {
+
+        final long elapsed = System.nanoTime() - start;
+        final boolean error = failed || resp.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+        this.timer.recordAccess(site.site.getHost() + site.site.path, subpath, elapsed, error);
+    }
+
     /**
      * Looks up the site based on the leading part of the path info.
      *
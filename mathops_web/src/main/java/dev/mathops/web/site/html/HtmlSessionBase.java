@@ -1,6 +1,7 @@
 package dev.mathops.web.site.html;
 
 import dev.mathops.assessment.exam.ExamObj;
+import dev.mathops.assessment.htmlgen.EGraphicsFormat;
 import dev.mathops.commons.CoreConstants;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
@@ -13,15 +14,14 @@ import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.text.builder.HtmlBuilder;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A base class for HTML session classes.
@@ -32,6 +32,9 @@ public class HtmlSessionBase {
     private static final DateTimeFormatter DATE_FMT =
             DateTimeFormatter.ofPattern("MM/dd HH:mm:ss.SSS", Locale.US);
 
+    /** The graphics format selected for each site, keyed on host and path (sites not present use raster). */
+    private static final Map<String, EGraphicsFormat> GRAPHICS_FORMATS = new ConcurrentHashMap<>(10);
+
     /** The website profile in which this session is running. */
     private Site siteProfile;
 
@@ -68,8 +71,8 @@ public class HtmlSessionBase {
     /** State of a forced termination request. */
     private EForceTerminateState forceTerminate;
 
-    /** The path where exam files are stored. */
-    private File examPath;
+    /** The serial number of the exam, used to record exam activity; null if there is no exam. */
+    private Long examSerial;
 
     /**
      * Constructs a new {@code HtmlSessionBase}.
@@ -133,6 +136,27 @@ public class HtmlSessionBase {
         this.writer = new ExamWriter();
     }
 
+    /**
+     * Selects the format in which sessions running within a website emit drawings and graphs.
+     *
+     * @param theSite   the website profile
+     * @param theFormat the graphics format
+     */
+    public static void setGraphicsFormat(final Site theSite, final EGraphicsFormat theFormat) {
+
+        GRAPHICS_FORMATS.put(theSite.getHost() + theSite.path, theFormat);
+    }
+
+    /**
+     * Gets the format in which this session emits drawings and graphs.
+     *
+     * @return the graphics format
+     */
+    protected final EGraphicsFormat getGraphicsFormat() {
+
+        return GRAPHICS_FORMATS.getOrDefault(this.host + this.path, EGraphicsFormat.RASTER);
+    }
+
     /**
      * Gets the website profile.
      *
@@ -173,10 +197,9 @@ public class HtmlSessionBase {
         this.exam = theExam;
 
         if (theExam != null && theExam.serialNumber != null && this.active != null) {
-            this.examPath = this.writer.makeExamPath(this.active.term.shortString, this.studentId,
-                    theExam.serialNumber.longValue());
+            this.examSerial = theExam.serialNumber;
         } else {
-            this.examPath = null;
+            this.examSerial = null;
         }
     }
 
@@ -207,14 +230,12 @@ public class HtmlSessionBase {
      */
     protected final void appendExamLog(final String message) {
 
-        if (this.examPath != null) {
-            final File log = new File(this.examPath, "exam_activity.log");
+        if (this.examSerial != null) {
+            final String line = DATE_FMT.format(LocalDateTime.now()) + CoreConstants.SPC + message + CoreConstants.CRLF;
 
-            try (final FileWriter out = new FileWriter(log, Charset.defaultCharset(), log.exists())) {
-                out.write(DATE_FMT.format(LocalDateTime.now()) + CoreConstants.SPC + message
-                          + CoreConstants.CRLF);
-            } catch (final IOException ex) {
-                Log.warning("Failed to append '", message, "' to ", log.getAbsolutePath(), ex);
+            if (!this.writer.appendExamActivity(this.active.term.shortString, this.studentId,
+                    this.examSerial.longValue(), line)) {
+                Log.warning("Failed to append '", message, "' to exam activity log");
             }
         }
     }
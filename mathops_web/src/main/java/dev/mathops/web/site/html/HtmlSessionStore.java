@@ -0,0 +1,732 @@
+package dev.mathops.web.site.html;
+
+import dev.mathops.commons.file.FileLoader;
+import dev.mathops.commons.log.Log;
+import dev.mathops.db.Cache;
+import dev.mathops.db.cfg.Profile;
+import dev.mathops.session.JournalRecords;
+import dev.mathops.text.builder.HtmlBuilder;
+import dev.mathops.text.parser.ParsingException;
+import dev.mathops.text.parser.xml.INode;
+import dev.mathops.text.parser.xml.NonemptyElement;
+import dev.mathops.text.parser.xml.XmlContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A store of active HTML sessions of one type (unit exams, homework, and so on), shared by the singleton session store
+ * classes for each type.
+ *
+ * <p>
+ * Sessions are held in a concurrent map, so lookups take no lock and updates to different keys do not contend. Each
+ * session store supplies an {@code IHtmlSessionHandler} that computes keys and reads and writes the session type's
+ * XML representation.
+ *
+ * <p>
+ * Every addition, change of state (reported by the session through {@code update}), and removal is appended to a
+ * journal file, so the active sessions and their state survive the server process being killed. Records are framed and
+ * replayed by {@code JournalRecords}, so a truncated or corrupt record at the tail of the journal (from a crash
+ * mid-write) ends replay without error. A scheduled sweep purges expired sessions and then compacts the journal to one
+ * record holding the current state of each active session (written to a temporary file, which atomically replaces the
+ * journal). A session whose state cannot be serialized during compaction keeps its previous record. On restart, the
+ * journal is replayed and each surviving session is parsed once.
+ *
+ * @param <S> the session type
+ */
+public final class HtmlSessionStore<S extends HtmlSessionBase> {
+
+    /** Record type for a full session state. */
+    private static final byte REC_STATE = 1;
+
+    /** Record type for a session removal. */
+    private static final byte REC_REMOVE = 2;
+
+    /** The largest record length accepted during replay. */
+    private static final int MAX_RECORD_LEN = 16 * 1024 * 1024;
+
+    /** The interval between scheduled sweeps, in seconds (10 minutes). */
+    private static final long SWEEP_INTERVAL_SEC = 600L;
+
+    /** The executor that runs scheduled sweeps for all stores. */
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "HTML session sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** All stores that have been created. */
+    private static final List<HtmlSessionStore<?>> STORES = new CopyOnWriteArrayList<>();
+
+    /** A name for the type of session stored, for logging and diagnostics. */
+    private final String name;
+
+    /** The base filename for the journal and legacy persistence files. */
+    private final String baseFilename;
+
+    /** The handler for the session type. */
+    private final IHtmlSessionHandler<S> handler;
+
+    /** The active sessions, keyed on the key computed by the handler. */
+    private final Map<String, S> sessions;
+
+    /** Object on which to synchronize updates, journal writes, and compaction. */
+    private final Object synch;
+
+    /** The directory containing the journal; {@code null} until the store is restored. */
+    private File dir;
+
+    /** The open channel to which records are appended; {@code null} if not open. */
+    private FileChannel channel;
+
+    /** The number of records appended since the last compaction. */
+    private int appendedSinceCompact;
+
+    /** The database profile used by scheduled sweeps; {@code null} until the store is restored. */
+    private Profile profile;
+
+    /** The scheduled sweep task; {@code null} if not scheduled. */
+    private ScheduledFuture<?> sweepTask;
+
+    /**
+     * Constructs a new {@code HtmlSessionStore}.
+     *
+     * @param theName         a name for the type of session stored, like "unit exam"
+     * @param theBaseFilename the base filename for the journal ("{base}.journal") and the persistence file written by
+     *                        earlier versions ("{base}.xml")
+     * @param theHandler      the handler for the session type
+     */
+    public HtmlSessionStore(final String theName, final String theBaseFilename,
+                            final IHtmlSessionHandler<S> theHandler) {
+
+        this.name = theName;
+        this.baseFilename = theBaseFilename;
+        this.handler = theHandler;
+        this.sessions = new ConcurrentHashMap<>(100);
+        this.synch = new Object();
+
+        STORES.add(this);
+    }
+
+    /**
+     * Generates the key for a session identified by a login session ID and an item ID (such as an exam or assignment
+     * ID).
+     *
+     * @param sessionId the login session ID
+     * @param itemId    the item ID
+     * @return the key
+     */
+    public static String makeKey(final String sessionId, final String itemId) {
+
+        return sessionId + "/" + itemId;
+    }
+
+    /**
+     * Gets all stores that have been created.
+     *
+     * @return the list of stores
+     */
+    public static List<HtmlSessionStore<?>> getStores() {
+
+        return Collections.unmodifiableList(STORES);
+    }
+
+    /**
+     * Gets the name of the type of session stored.
+     *
+     * @return the name
+     */
+    public String getName() {
+
+        return this.name;
+    }
+
+    /**
+     * Gets the number of active sessions.
+     *
+     * @return the number of sessions
+     */
+    public int size() {
+
+        return this.sessions.size();
+    }
+
+    /**
+     * Gets the number of records appended to the journal since it was last compacted.
+     *
+     * @return the number of records
+     */
+    public int getJournalRecords() {
+
+        synchronized (this.synch) {
+            return this.appendedSinceCompact;
+        }
+    }
+
+    /**
+     * Gets the session stored under a key.
+     *
+     * @param key the key
+     * @return the session; {@code null} if none
+     */
+    public S get(final String key) {
+
+        return this.sessions.get(key);
+    }
+
+    /**
+     * Gets a live view of the active sessions, which may be iterated while sessions are being added and removed.
+     *
+     * @return the sessions
+     */
+    public Collection<S> getSessions() {
+
+        return Collections.unmodifiableCollection(this.sessions.values());
+    }
+
+    /**
+     * Stores a session, replacing any session stored under the same key. Sessions that have timed out are ignored.
+     *
+     * @param session the session
+     * @return {@code true} if the session was stored
+     */
+    public boolean put(final S session) {
+
+        return store(session, true);
+    }
+
+    /**
+     * Stores a session if there is no session stored under the same key. Sessions that have timed out are ignored.
+     *
+     * @param session the session
+     * @return {@code true} if the session was stored
+     */
+    public boolean putIfAbsent(final S session) {
+
+        return store(session, false);
+    }
+
+    /**
+     * Stores a session and journals its state.
+     *
+     * @param session the session
+     * @param replace {@code true} to replace any existing session with the same key
+     * @return {@code true} if the session was stored
+     */
+    private boolean store(final S session, final boolean replace) {
+
+        boolean stored = false;
+
+        if (!this.handler.isTimedOut(session)) {
+            final String key = this.handler.getKey(session);
+            final byte[] record = stateRecord(key, session);
+
+            synchronized (this.synch) {
+                if (replace) {
+                    this.sessions.put(key, session);
+                    stored = true;
+                } else {
+                    stored = this.sessions.putIfAbsent(key, session) == null;
+                }
+
+                if (stored && record != null) {
+                    append(record);
+                }
+            }
+        }
+
+        return stored;
+    }
+
+    /**
+     * Journals the current state of a session after it has changed, if the session is still stored under its key.
+     * Should not be called while synchronized on the session.
+     *
+     * @param session the session
+     */
+    public void update(final S session) {
+
+        final String key = this.handler.getKey(session);
+
+        if (this.sessions.get(key) == session) {
+            final byte[] record = stateRecord(key, session);
+
+            if (record != null) {
+                synchronized (this.synch) {
+                    if (this.sessions.get(key) == session) {
+                        append(record);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the session stored under a key.
+     *
+     * @param key the key
+     * @return the removed session; {@code null} if there was none
+     */
+    public S remove(final String key) {
+
+        synchronized (this.synch) {
+            final S removed = this.sessions.remove(key);
+            if (removed != null) {
+                append(removeRecord(key));
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Removes a session if it is still stored under its key.
+     *
+     * @param key     the key
+     * @param session the session
+     */
+    private void remove(final String key, final S session) {
+
+        synchronized (this.synch) {
+            if (this.sessions.remove(key, session)) {
+                append(removeRecord(key));
+            }
+        }
+    }
+
+    /**
+     * Restores the sessions active when the server last stopped (cleanly or not), opens the journal, and schedules
+     * sweeps. Called when the server starts. Sessions that have timed out are discarded.
+     *
+     * @param cache  the data cache
+     * @param theDir the directory containing the journal
+     */
+    public void restore(final Cache cache, final File theDir) {
+
+        final long start = System.nanoTime();
+
+        synchronized (this.synch) {
+            this.dir = theDir;
+            this.profile = cache.profile;
+
+            final File journal = new File(theDir, this.baseFilename + ".journal");
+            final File legacy = new File(theDir, this.baseFilename + ".xml");
+
+            if (journal.exists()) {
+                for (final byte[] record : replay(journal).values()) {
+                    restoreSession(cache, record);
+                }
+            } else if (legacy.exists()) {
+                restoreLegacy(cache, legacy);
+            }
+
+            compact();
+
+            if (this.sweepTask == null) {
+                this.sweepTask = SWEEPER.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_SEC, SWEEP_INTERVAL_SEC,
+                        TimeUnit.SECONDS);
+            }
+        }
+
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+        Log.info("Restored ", Integer.toString(this.sessions.size()), " ", this.name, " sessions in ",
+                Long.toString(elapsed), " ms");
+    }
+
+    /**
+     * Replays a journal file.
+     *
+     * @param journal the journal file
+     * @return a map from key to the latest state record of each session that was not removed, in journal order
+     */
+    private Map<String, byte[]> replay(final File journal) {
+
+        final Map<String, byte[]> result = new LinkedHashMap<>(100);
+
+        JournalRecords.replay(journal, MAX_RECORD_LEN, this.name, record -> {
+            final DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+            final byte type = data.readByte();
+            final String key = data.readUTF();
+
+            if (type == REC_STATE) {
+                result.remove(key);
+                result.put(key, record);
+            } else if (type == REC_REMOVE) {
+                result.remove(key);
+            } else {
+                Log.warning("Unrecognized ", this.name, " journal record type: ", Byte.toString(type));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Parses and stores one session from its state record, without journaling it.
+     *
+     * @param cache  the data cache
+     * @param record the state record
+     */
+    private void restoreSession(final Cache cache, final byte[] record) {
+
+        try {
+            final DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+            data.readByte();
+            data.readUTF();
+            final byte[] xmlBytes = new byte[data.readInt()];
+            data.readFully(xmlBytes);
+            final String xml = new String(xmlBytes, StandardCharsets.UTF_8);
+
+            final XmlContent content = new XmlContent(xml, false, false);
+            final List<INode> nodes = content.getNodes();
+
+            if (nodes != null) {
+                for (final INode node : nodes) {
+                    if (node instanceof final NonemptyElement elem) {
+                        final S session = this.handler.parse(cache, xml, elem);
+                        if (!this.handler.isTimedOut(session)) {
+                            this.sessions.put(this.handler.getKey(session), session);
+                        }
+                        break;
+                    }
+                }
+            }
+        } catch (final IOException | ParsingException | DateTimeParseException | IllegalArgumentException
+                       | SQLException ex) {
+            Log.warning("Failed to restore ", this.name, " session", ex);
+        }
+    }
+
+    /**
+     * Restores sessions from the XML file written at shutdown by earlier versions, then renames that file with a
+     * ".bak" extension.
+     *
+     * @param cache  the data cache
+     * @param legacy the XML file
+     */
+    private void restoreLegacy(final Cache cache, final File legacy) {
+
+        Log.info("Restoring ", this.name, " sessions from ", legacy.getAbsolutePath());
+
+        final String xml = FileLoader.loadFileAsString(legacy, true);
+
+        if (xml != null) {
+            try {
+                final XmlContent content = new XmlContent(xml, false, false);
+                final List<INode> nodes = content.getNodes();
+
+                if (nodes != null) {
+                    for (final INode node : nodes) {
+                        if (node instanceof final NonemptyElement elem) {
+                            try {
+                                final S session = this.handler.parse(cache, xml, elem);
+                                if (!this.handler.isTimedOut(session)) {
+                                    this.sessions.putIfAbsent(this.handler.getKey(session), session);
+                                }
+                            } catch (final IllegalArgumentException | SQLException ex) {
+                                Log.warning(ex);
+                            }
+                        }
+                    }
+                }
+            } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
+                Log.warning(ex);
+            }
+        }
+
+        final File bak = new File(legacy.getParentFile(), legacy.getName() + ".bak");
+        if (bak.exists() && !bak.delete()) {
+            Log.warning("Failed to delete ", bak.getAbsolutePath());
+        }
+        if (!legacy.renameTo(bak)) {
+            Log.warning("Failed to rename ", legacy.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Cancels scheduled sweeps, compacts the journal so it holds the current state of every active session, and closes
+     * it. Called when the server shuts down.
+     *
+     * @param theDir the directory containing the journal (used if the store was never restored)
+     */
+    public void persist(final File theDir) {
+
+        synchronized (this.synch) {
+            if (this.sweepTask != null) {
+                this.sweepTask.cancel(false);
+                this.sweepTask = null;
+            }
+
+            if (this.dir == null) {
+                this.dir = theDir;
+            }
+
+            Log.info("Persisting ", this.name, " sessions to ", this.dir.getAbsolutePath());
+            compact();
+            closeChannel();
+        }
+    }
+
+    /**
+     * Performs a scheduled sweep: purges sessions the handler reports as purgable, performs any store-specific
+     * cleanup, and compacts the journal.
+     */
+    private void sweep() {
+
+        try {
+            final Profile sweepProfile;
+            synchronized (this.synch) {
+                sweepProfile = this.profile;
+            }
+
+            if (sweepProfile != null) {
+                purgeExpired(new Cache(sweepProfile));
+            }
+
+            this.handler.sweep();
+
+            synchronized (this.synch) {
+                if (this.channel != null) {
+                    compact();
+                }
+            }
+        } catch (final RuntimeException ex) {
+            Log.warning("Sweep of ", this.name, " sessions failed", ex);
+        }
+    }
+
+    /**
+     * Purges sessions the handler reports as purgable, giving the handler a chance to act on each before it is
+     * removed.
+     *
+     * @param cache the data cache
+     */
+    private void purgeExpired(final Cache cache) {
+
+        final List<Map.Entry<String, S>> expired = new ArrayList<>(10);
+        for (final Map.Entry<String, S> entry : this.sessions.entrySet()) {
+            if (this.handler.isPurgable(entry.getValue())) {
+                expired.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        for (final Map.Entry<String, S> entry : expired) {
+            final S session = entry.getValue();
+
+            try {
+                this.handler.expire(cache, session);
+            } catch (final RuntimeException ex) {
+                Log.warning("Failed to expire ", this.name, " session ", session.sessionId, ex);
+            }
+
+            Log.info("Purging expired HTML ", this.name, " session ", session.sessionId);
+            remove(entry.getKey(), session);
+        }
+    }
+
+    /**
+     * Builds a state record for a session.
+     *
+     * @param key     the key
+     * @param session the session
+     * @return the record (type byte followed by payload); {@code null} if the session's state could not be generated
+     */
+    private byte[] stateRecord(final String key, final S session) {
+
+        byte[] result = null;
+
+        try {
+            final HtmlBuilder xml = new HtmlBuilder(4000);
+            this.handler.appendXml(session, xml);
+            final byte[] xmlBytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(xmlBytes.length + 100);
+            try (final DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(REC_STATE);
+                out.writeUTF(key);
+                out.writeInt(xmlBytes.length);
+                out.write(xmlBytes);
+            }
+            result = bytes.toByteArray();
+        } catch (final IOException | RuntimeException ex) {
+            Log.warning("Failed to serialize ", this.name, " session ", session.sessionId, ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds a removal record.
+     *
+     * @param key the key
+     * @return the record (type byte followed by payload)
+     */
+    private static byte[] removeRecord(final String key) {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_REMOVE);
+            out.writeUTF(key);
+        } catch (final IOException ex) {
+            Log.warning("Failed to serialize session removal record", ex);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Appends a record to the journal, if the journal is open. Called with the store lock held.
+     *
+     * @param record the record (type byte followed by payload)
+     */
+    private void append(final byte[] record) {
+
+        if (this.channel != null) {
+            try {
+                JournalRecords.write(this.channel, record);
+                ++this.appendedSinceCompact;
+            } catch (final IOException ex) {
+                Log.warning("Failed to append to ", this.name, " journal", ex);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal to contain one state record per active session, then reopens it for appending. A session
+     * whose state cannot be serialized keeps the latest state record it has in the existing journal. Called with the
+     * store lock held.
+     */
+    private void compact() {
+
+        if (this.dir == null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            Log.warning("Unable to create directory ", this.dir.getAbsolutePath());
+            return;
+        }
+
+        final File journal = new File(this.dir, this.baseFilename + ".journal");
+        final File tmp = new File(this.dir, this.baseFilename + ".journal.tmp");
+        int count = 0;
+
+        try (final FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            final Collection<String> failed = new ArrayList<>(0);
+            for (final Map.Entry<String, S> entry : this.sessions.entrySet()) {
+                final S session = entry.getValue();
+                if (this.handler.isTimedOut(session)) {
+                    continue;
+                }
+
+                final byte[] record = stateRecord(entry.getKey(), session);
+                if (record == null) {
+                    failed.add(entry.getKey());
+                } else {
+                    JournalRecords.write(out, record);
+                    ++count;
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                count += copyPreviousRecords(journal, failed, out);
+            }
+            out.force(true);
+        } catch (final IOException ex) {
+            Log.warning("Failed to write compacted ", this.name, " journal", ex);
+            return;
+        }
+
+        closeChannel();
+
+        try {
+            JournalRecords.replace(tmp, journal);
+        } catch (final IOException ex) {
+            Log.warning("Failed to replace ", this.name, " journal with compacted journal", ex);
+        }
+
+        try {
+            this.channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (final IOException ex) {
+            Log.warning("Failed to open ", this.name, " journal; sessions will not be journaled", ex);
+        }
+
+        this.appendedSinceCompact = 0;
+
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+        Log.info("Compacted ", this.name, " journal to ", Integer.toString(count), " sessions in ",
+                Long.toString(elapsed), " ms");
+    }
+
+    /**
+     * Copies the latest state records of a set of sessions from the existing journal to a compacted journal, for
+     * sessions whose current state could not be serialized. Called with the store lock held.
+     *
+     * @param journal the existing journal
+     * @param keys    the keys of the sessions whose records to copy
+     * @param out     the channel to which the compacted journal is being written
+     * @return the number of records copied
+     * @throws IOException if there is an error writing
+     */
+    private int copyPreviousRecords(final File journal, final Collection<String> keys, final FileChannel out)
+            throws IOException {
+
+        int count = 0;
+
+        final Map<String, byte[]> previous = journal.exists() ? replay(journal) : Map.of();
+        for (final String key : keys) {
+            final byte[] record = previous.get(key);
+            if (record == null) {
+                Log.warning("No previous state of ", this.name, " session ", key, " to keep");
+            } else {
+                JournalRecords.write(out, record);
+                ++count;
+            }
+        }
+
+        Log.warning("Kept previous state of ", Integer.toString(count), " ", this.name,
+                " sessions that could not be serialized");
+
+        return count;
+    }
+
+    /**
+     * Closes the append channel, if open. Called with the store lock held.
+     */
+    private void closeChannel() {
+
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (final IOException ex) {
+                Log.warning("Failed to close ", this.name, " journal", ex);
+            }
+            this.channel = null;
+        }
+    }
+}
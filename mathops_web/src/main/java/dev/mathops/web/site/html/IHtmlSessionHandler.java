@@ -0,0 +1,83 @@
+package dev.mathops.web.site.html;
+
+import dev.mathops.db.Cache;
+import dev.mathops.text.builder.HtmlBuilder;
+import dev.mathops.text.parser.xml.NonemptyElement;
+
+import java.sql.SQLException;
+
+/**
+ * The operations an {@code HtmlSessionStore} needs to perform on the type of session it stores. Each session store
+ * provides an implementation, which has access to the package-private members of its session class.
+ *
+ * @param <S> the session type
+ */
+public interface IHtmlSessionHandler<S extends HtmlSessionBase> {
+
+    /**
+     * Gets the key under which a session is stored.
+     *
+     * @param session the session
+     * @return the key
+     */
+    String getKey(S session);
+
+    /**
+     * Tests whether a session has timed out. Timed-out sessions are not stored or journaled.
+     *
+     * @param session the session
+     * @return {@code true} if the session has timed out
+     */
+    boolean isTimedOut(S session);
+
+    /**
+     * Tests whether a session should be purged by the scheduled sweep.
+     *
+     * @param session the session
+     * @return {@code true} if the session should be purged
+     */
+    default boolean isPurgable(final S session) {
+
+        return isTimedOut(session);
+    }
+
+    /**
+     * Appends the XML representation of a session's state.
+     *
+     * @param session the session
+     * @param xml     the {@code HtmlBuilder} to which to append
+     */
+    void appendXml(S session, HtmlBuilder xml);
+
+    /**
+     * Parses a session from its XML representation.
+     *
+     * @param cache the data cache
+     * @param xml   the source XML
+     * @param elem  the XML element
+     * @return the parsed session
+     * @throws IllegalArgumentException if the XML could not be parsed
+     * @throws SQLException             if there is an error accessing the database
+     */
+    S parse(Cache cache, String xml, NonemptyElement elem) throws IllegalArgumentException, SQLException;
+
+    /**
+     * Called by the scheduled sweep for a session that is being purged, before it is removed from the store (for
+     * example, to submit an abandoned exam).
+     *
+     * @param cache   the data cache
+     * @param session the session
+     */
+    default void expire(final Cache cache, final S session) {
+
+        // No action
+    }
+
+    /**
+     * Called after each scheduled sweep, to perform any store-specific cleanup.
+     */
+    default void sweep() {
+
+        // No action
+    }
+}
@@ -57,6 +57,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.session.txn.handlers.StudentExamAnswerRec;
 import dev.mathops.session.txn.handlers.StudentExamRec;
@@ -283,6 +284,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(cache, htm);
+                ChallengeExamSessionStore.getInstance().updateChallengeExamSession(this);
                 break;
 
             case ERROR:
@@ -410,6 +412,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
                                     avail.exam.examType, avail.timelimitFactor, "STU");
 
                             RawPendingExamLogic.insert(cache, pending);
+                            StudentStatusCache.getInstance().invalidate(this.studentId);
                         }
                     }
                 } else {
@@ -470,7 +473,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
                             Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb
                                         + " choice " + i + " getProblem() returned " + prb);
                         } else {
-                            prb = InstructionalCache.getProblem(prb.id);
+                            prb = InstructionalCache.getProblemTemplate(prb.id);
 
                             if (prb != null) {
                                 eprob.setProblem(i, prb);
@@ -534,7 +537,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
         startMain(htm);
 
         if (getExam().instructionsHtml == null && getExam().instructions != null) {
-            ExamObjConverter.populateExamHtml(getExam(), new int[]{1});
+            ExamObjConverter.populateExamHtml(getExam(), new int[]{1}, getGraphicsFormat());
         }
 
         if (getExam().instructionsHtml != null) {
@@ -578,7 +581,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
                     htm.addln("No selected problem.");
                 } else {
                     if (p.questionHtml == null) {
-                        ProblemConverter.populateProblemHtml(p, new int[]{1});
+                        ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                     }
                     htm.addln(p.insertAnswers(p.questionHtml));
                 }
@@ -997,6 +1000,8 @@ public final class ChallengeExamSession extends HtmlSessionBase {
                 break;
         }
 
+        ChallengeExamSessionStore.getInstance().updateChallengeExamSession(this);
+
         return redirect;
     }
 
@@ -1236,6 +1241,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
                 final ExamObj examObj = getExam();
                 if (examObj != null) {
                     RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                    StudentStatusCache.getInstance().invalidate(this.studentId);
                     setExam(null);
                 }
 
@@ -1267,6 +1273,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
             final ExamObj examObj = getExam();
             if (examObj != null) {
                 RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                StudentStatusCache.getInstance().invalidate(this.studentId);
                 setExam(null);
             }
         } else {
@@ -1296,6 +1303,7 @@ public final class ChallengeExamSession extends HtmlSessionBase {
             final ExamObj examObj = getExam();
             if (examObj != null) {
                 RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                StudentStatusCache.getInstance().invalidate(this.studentId);
                 setExam(null);
             }
         } else {
@@ -1331,7 +1339,11 @@ public final class ChallengeExamSession extends HtmlSessionBase {
             // Write the updated exam state out somewhere permanent
             new ExamWriter().writeUpdatedExam(stuId, this.active, answers, false);
 
-            err = finalizeExam(cache, answers);
+            try {
+                err = finalizeExam(cache, answers);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         if (err != null) {
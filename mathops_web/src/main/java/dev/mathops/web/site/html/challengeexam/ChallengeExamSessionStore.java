@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -22,31 +21,29 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.format.DateTimeParseException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to unit exam session.
+ * A singleton storage class for active challenge exam sessions, keyed on student ID. Sessions are held in an {@code
+ * HtmlSessionStore}, which journals them so they survive a server restart and periodically purges expired sessions.
  */
 public final class ChallengeExamSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "challenge_exam_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "challenge_exam_sessions";
 
     /** The singleton instance. */
     private static final ChallengeExamSessionStore INSTANCE = new ChallengeExamSessionStore();
 
-    /** Map from student ID to exam session (one challenge session active per student at a time). */
-    private final Map<String, ChallengeExamSession> studentChallengeExams;
+    /** The active challenge exam sessions, keyed on student ID (one session per student at a time). */
+    private final HtmlSessionStore<ChallengeExamSession> store;
 
     /** Map from student ID to one-time challenge code. */
     private final Map<String, String> oneTimeChallengeCodes;
@@ -56,7 +53,7 @@ public final class ChallengeExamSessionStore {
      */
     private ChallengeExamSessionStore() {
 
-        this.studentChallengeExams = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("challenge exam", BASE_FILENAME, new Handler());
         this.oneTimeChallengeCodes = new HashMap<>(10);
     }
 
@@ -80,9 +77,7 @@ public final class ChallengeExamSessionStore {
 
         // Called only from the LTI page where a student takes a challenge exam via Teams
 
-        synchronized (this.studentChallengeExams) {
-            return this.studentChallengeExams.get(studentId);
-        }
+        return this.store.get(studentId);
     }
 
     /**
@@ -94,20 +89,19 @@ public final class ChallengeExamSessionStore {
      */
     public boolean setChallengeExamSession(final ChallengeExamSession theSession) {
 
-        boolean result = false;
+        // Called only from the LTI page where a student takes a challenge exam via Teams
 
-        // Called only from the LTI page where a student takes a challenge exam via Teams, and from
-        // the challenge exam session store when restoring after a restart
+        return this.store.putIfAbsent(theSession);
+    }
 
-        synchronized (this.studentChallengeExams) {
-            if (!theSession.isTimedOut()
-                && !this.studentChallengeExams.containsKey(theSession.studentId)) {
-                this.studentChallengeExams.put(theSession.studentId, theSession);
-                result = true;
-            }
-        }
+    /**
+     * Journals the state of an active challenge exam session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updateChallengeExamSession(final ChallengeExamSession theSession) {
 
-        return result;
+        this.store.update(theSession);
     }
 
     /**
@@ -119,114 +113,30 @@ public final class ChallengeExamSessionStore {
 
         // Called by the challenge exam session when the session ends
 
-        synchronized (this.studentChallengeExams) {
-            this.studentChallengeExams.remove(studentId);
-        }
+        this.store.remove(studentId);
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        // Called by the front controller when the app server is being shut down
-
-        synchronized (this.studentChallengeExams) {
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Challenge exam session store persisting to " + dir.getAbsolutePath());
-
-                for (final ChallengeExamSession session : this.studentChallengeExams.values()) {
-                    if (session.isTimedOut()) {
-                        Log.info("  Skipping timed out session ", session.sessionId);
-                        continue;
-                    }
-                    Log.info("  Appending session ", session.sessionId);
-                    session.appendXml(xml);
-                }
-
-                Log.info("Challenge exam session store generated XML");
-            } catch (final Exception ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File target = new File(dir, PERSIST_FILENAME);
-
-                try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + target.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the challenge exam sessions active when the server last stopped, and schedules purging of expired
+     * sessions. Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
-
-        // Called by the web mid-controller when the app server is being started up
-
-        synchronized (this.studentChallengeExams) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring challenge exam sessions from ", target.getAbsolutePath());
-
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setChallengeExamSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            } else if (node instanceof CData) {
-                                final String data = ((CData) node).content.trim();
-                                if (!data.isEmpty()) {
-                                    Log.warning("  Node is CData with content: ", data);
-                                }
-                            } else {
-                                Log.warning("  Node is ", node.getClass().getName());
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
+    public void restore(final Cache cache, final File dir) {
 
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -424,37 +334,95 @@ public final class ChallengeExamSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
-     *
-     * @param cache the data cache
+     * The handler through which the session store engine accesses challenge exam sessions.
      */
-    public void purgeExpired(final Cache cache) {
-
-        // Called by the web mid-controller every 10 minutes
-
-        synchronized (this.studentChallengeExams) {
-            final Iterator<Map.Entry<String, ChallengeExamSession>> iterator =
-                    this.studentChallengeExams.entrySet().iterator();
-
-            while (iterator.hasNext()) {
-                final ChallengeExamSession session = iterator.next().getValue();
-
-                if (session.isPurgable()) {
-                    Log.info("Purging expired HTML challenge exam session " + session.sessionId);
-                    try {
-                        if (session.getState() == EChallengeExamState.ITEM_NN
-                            || session.getState() == EChallengeExamState.SUBMIT_NN) {
-                            // Force-submit
-                            session.scoreAndRecordCompletion(cache);
-                        } else {
-                            session.writeExamRecovery(cache);
-                        }
-                    } catch (final SQLException ex) {
-                        Log.warning(ex);
-                    }
+    private static final class Handler implements IHtmlSessionHandler<ChallengeExamSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final ChallengeExamSession session) {
+
+            return session.studentId;
+        }
+
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final ChallengeExamSession session) {
+
+            return session.isTimedOut();
+        }
+
+        /**
+         * Tests whether a session should be purged.
+         *
+         * @param session the session
+         * @return {@code true} if the session should be purged
+         */
+        @Override
+        public boolean isPurgable(final ChallengeExamSession session) {
+
+            return session.isPurgable();
+        }
+
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final ChallengeExamSession session, final HtmlBuilder xml) {
 
-                    iterator.remove();
+            session.appendXml(xml);
+        }
+
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public ChallengeExamSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
+        }
+
+        /**
+         * Called for a session that is being purged. An exam that was started but abandoned is submitted; otherwise,
+         * an exam recovery record is written.
+         *
+         * @param cache   the data cache
+         * @param session the session
+         */
+        @Override
+        public void expire(final Cache cache, final ChallengeExamSession session) {
+
+            try {
+                if (session.getState() == EChallengeExamState.ITEM_NN
+                    || session.getState() == EChallengeExamState.SUBMIT_NN) {
+                    // Force-submit
+                    session.scoreAndRecordCompletion(cache);
+                } else {
+                    session.writeExamRecovery(cache);
                 }
+            } catch (final SQLException ex) {
+                Log.warning(ex);
             }
         }
     }
@@ -28,6 +28,7 @@ import dev.mathops.db.schema.main.rec.AssignmentRec;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.HomeworkEligibilityTester;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.text.builder.HtmlBuilder;
@@ -197,6 +198,7 @@ public final class HomeworkSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(cache, now, htm);
+                HomeworkSessionStore.getInstance().updateHomeworkSession(this);
                 break;
 
             case INTERACTING:
@@ -387,7 +389,9 @@ public final class HomeworkSession extends HtmlSessionBase {
                             "Y", "N", avail.assignmentType, avail.courseId, sect, avail.unit, avail.objective, "N",
                             null, null);
 
-                    if (!RawSthomeworkLogic.insert(cache, sthw)) {
+                    if (RawSthomeworkLogic.insert(cache, sthw)) {
+                        StudentStatusCache.getInstance().invalidate(this.studentId);
+                    } else {
                         error = "Failed to record start of assignment";
                     }
                 }
@@ -427,7 +431,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.questionHtml));
             }
@@ -457,7 +461,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.disabledHtml));
             }
@@ -493,7 +497,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.disabledHtml));
             }
@@ -524,7 +528,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
 
                 htm.addln(p.insertAnswers(p.answerHtml));
@@ -552,7 +556,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.solutionHtml));
             }
@@ -679,7 +683,9 @@ public final class HomeworkSession extends HtmlSessionBase {
         // The following synchronizes on the store's map - this CANNOT be done while in a block
         // synchronized on a session since doing so risks a race/deadlock.
 
-        if (redirect != null) {
+        if (redirect == null) {
+            HomeworkSessionStore.getInstance().updateHomeworkSession(this);
+        } else {
             HomeworkSessionStore.getInstance().removeHomeworkSession(session.loginSessionId, this.version);
         }
 
@@ -752,6 +758,7 @@ public final class HomeworkSession extends HtmlSessionBase {
                     final LocalDateTime localNow = LocalDateTime.now();
                     final int finish = TemporalUtils.minuteOfDay(localNow);
                     RawSthomeworkLogic.updateFinishTimeScore(cache, ser, ver, stu, finish, score, "N");
+                    StudentStatusCache.getInstance().invalidate(stu);
                 }
             }
         }
@@ -1011,7 +1018,11 @@ public final class HomeworkSession extends HtmlSessionBase {
                 getExam().presentationTime = timestamp - dur;
             }
 
-            error = finalizeHomework(cache, now);
+            try {
+                error = finalizeHomework(cache, now);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         return error;
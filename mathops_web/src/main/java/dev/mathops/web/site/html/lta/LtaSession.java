@@ -32,6 +32,7 @@ import dev.mathops.db.schema.main.rec.AssignmentRec;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.LtaEligibilityTester;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.session.txn.messages.GetExamReply;
@@ -246,6 +247,7 @@ public final class LtaSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(cache, now, htm);
+                LtaSessionStore.getInstance().updateLtaSession(this);
                 break;
 
             case INSTRUCTIONS:
@@ -428,7 +430,7 @@ public final class LtaSession extends HtmlSessionBase {
         final ExamObj exam = getExam();
 
         if (exam.instructionsHtml == null && exam.instructions != null) {
-            ExamObjConverter.populateExamHtml(exam, new int[]{1});
+            ExamObjConverter.populateExamHtml(exam, new int[]{1}, getGraphicsFormat());
         }
 
         if (exam.instructionsHtml != null) {
@@ -467,7 +469,7 @@ public final class LtaSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.questionHtml));
             }
@@ -590,7 +592,7 @@ public final class LtaSession extends HtmlSessionBase {
                     htm.addln("No selected problem.");
                 } else {
                     if (p.questionHtml == null) {
-                        ProblemConverter.populateProblemHtml(p, new int[]{1});
+                        ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                     }
                     htm.addln(p.insertAnswers(p.solutionHtml));
                 }
@@ -858,7 +860,9 @@ public final class LtaSession extends HtmlSessionBase {
         // The following synchronizes on the store's map - this CANNOT be done while in a block
         // synchronized on a session since doing so risks a race/deadlock.
 
-        if (redirect != null) {
+        if (redirect == null) {
+            LtaSessionStore.getInstance().updateLtaSession(this);
+        } else {
             LtaSessionStore.getInstance().removeLtaSession(session.loginSessionId, this.version);
         }
 
@@ -1091,7 +1095,11 @@ public final class LtaSession extends HtmlSessionBase {
             // Write the updated exam state out somewhere permanent
             new ExamWriter().writeUpdatedExam(stuId, this.active, answers, false);
 
-            error = finalizeAssignment(cache, now, answers);
+            try {
+                error = finalizeAssignment(cache, now, answers);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         if (error != null) {
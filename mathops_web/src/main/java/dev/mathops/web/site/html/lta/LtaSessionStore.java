@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -22,38 +21,36 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from assignment ID to LTA session.
+ * A singleton storage class for active learning target assignment sessions, keyed on login session ID and assignment
+ * ID. Sessions are held in an {@code HtmlSessionStore}, which journals them so they survive a server restart and
+ * periodically purges expired sessions.
  */
 public final class LtaSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME_XML = "lta_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "lta_sessions";
 
     /** The singleton instance. */
     private static final LtaSessionStore INSTANCE = new LtaSessionStore();
 
-    /** Map from session ID to that session's map from assignment ID to LTA session. */
-    private final HashMap<String, HashMap<String, LtaSession>> activeLtas;
+    /** The active learning target sessions, keyed on session ID and assignment ID. */
+    private final HtmlSessionStore<LtaSession> store;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private LtaSessionStore() {
 
-        this.activeLtas = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("LTA", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -67,15 +64,14 @@ public final class LtaSessionStore {
     }
 
     /**
-     * Retrieves a copy of the map of active homework sessions.
+     * Retrieves the active learning target sessions. The returned collection is a live view, which may be iterated
+     * while sessions are being added and removed.
      *
-     * @return the homework session map (outer key is session ID, inner key is exam ID)
+     * @return the learning target sessions
      */
-    public HashMap<String, HashMap<String, LtaSession>> getLtaSessions() {
+    public Collection<LtaSession> getLtaSessions() {
 
-        synchronized (this.activeLtas) {
-            return new HashMap<>(this.activeLtas);
-        }
+        return this.store.getSessions();
     }
 
     /**
@@ -83,17 +79,11 @@ public final class LtaSessionStore {
      *
      * @param sessionId    the session ID
      * @param assignmentId the assignment ID
-     * @return the homework session; {@code null} if none
+     * @return the learning target session; {@code null} if none
      */
     public LtaSession getLtaSession(final String sessionId, final String assignmentId) {
 
-        // Called by pages in course sites that present homework
-
-        synchronized (this.activeLtas) {
-            final Map<String, LtaSession> sessionMap = this.activeLtas.get(sessionId);
-
-            return sessionMap == null ? null : sessionMap.get(assignmentId);
-        }
+        return this.store.get(HtmlSessionStore.makeKey(sessionId, assignmentId));
     }
 
     /**
@@ -103,16 +93,17 @@ public final class LtaSessionStore {
      */
     public void setLtaSession(final LtaSession theSession) {
 
-        // Called by pages in course sites that present homework
+        this.store.put(theSession);
+    }
 
-        synchronized (this.activeLtas) {
-            if (!theSession.isTimedOut()) {
-                final Map<String, LtaSession> sessionMap =
-                        this.activeLtas.computeIfAbsent(theSession.sessionId, s -> new HashMap<>(2));
+    /**
+     * Journals the state of an active learning target session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updateLtaSession(final LtaSession theSession) {
 
-                sessionMap.put(theSession.version, theSession);
-            }
-        }
+        this.store.update(theSession);
     }
 
     /**
@@ -123,117 +114,30 @@ public final class LtaSessionStore {
      */
     void removeLtaSession(final String sessionId, final String assignmentId) {
 
-        // Called by the homework session when the session ends
-
-        synchronized (this.activeLtas) {
-            final Map<String, LtaSession> sessionMap = this.activeLtas.get(sessionId);
-            if (sessionMap != null) {
-                sessionMap.remove(assignmentId);
-                if (sessionMap.isEmpty()) {
-                    this.activeLtas.remove(sessionId);
-                }
-            }
-        }
+        this.store.remove(HtmlSessionStore.makeKey(sessionId, assignmentId));
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        // Called from the front controller when the app server is closing
-
-        synchronized (this.activeLtas) {
-
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Learning target session store persisting to " + dir.getAbsolutePath());
-
-                for (final Map<String, LtaSession> maps : this.activeLtas.values()) {
-                    for (final LtaSession session : maps.values()) {
-                        if (session.isTimedOut()) {
-                            Log.info("  Skipping timed out session ", session.sessionId);
-                            continue;
-                        }
-                        Log.info("  Appending session ", session.sessionId);
-                        session.appendXml(xml);
-                    }
-                }
-
-                Log.info("Learning target session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File targetXml = new File(dir, PERSIST_FILENAME_XML);
-
-                try (final FileWriter writer = new FileWriter(targetXml, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + targetXml.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the learning target sessions active when the server last stopped, and schedules purging of expired
+     * sessions. Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
-
-        // Called from the web mid-controller when the app server is starting
-
-        synchronized (this.activeLtas) {
-
-            final File sourceXml = new File(dir, PERSIST_FILENAME_XML);
-            if (sourceXml.exists()) {
-                Log.info("Restoring learning target sessions from ", sourceXml.getAbsolutePath());
-                final String xml = FileLoader.loadFileAsString(sourceXml, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setLtaSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
+    public void restore(final Cache cache, final File dir) {
 
-                final File bakXml = new File(dir, PERSIST_FILENAME_XML + ".bak");
-                if (bakXml.exists()) {
-                    if (!bakXml.delete()) {
-                        Log.warning("Failed to delete ", bakXml.getAbsolutePath());
-                    }
-                }
-                if (!sourceXml.renameTo(bakXml)) {
-                    Log.warning("Failed to rename ", sourceXml.getAbsolutePath());
-                }
-
-                // sourceXml.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -471,33 +375,61 @@ public final class LtaSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
+     * The handler through which the session store engine accesses learning target sessions.
      */
-    public void purgeExpired() {
-
-        // Called by the web mid-controller every 10 minutes
+    private static final class Handler implements IHtmlSessionHandler<LtaSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final LtaSession session) {
+
+            return HtmlSessionStore.makeKey(session.sessionId, session.version);
+        }
 
-        synchronized (this.activeLtas) {
-            final Iterator<Map.Entry<String, HashMap<String, LtaSession>>> outerIter =
-                    this.activeLtas.entrySet().iterator();
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final LtaSession session) {
 
-            while (outerIter.hasNext()) {
-                final Map<String, LtaSession> inner = outerIter.next().getValue();
+            return session.isTimedOut();
+        }
 
-                final Iterator<Map.Entry<String, LtaSession>> innerIter = inner.entrySet().iterator();
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final LtaSession session, final HtmlBuilder xml) {
 
-                while (innerIter.hasNext()) {
-                    final LtaSession sess = innerIter.next().getValue();
-                    if (sess.isTimedOut()) {
-                        Log.info("Purging expired HTML learning target assignment session " + sess.sessionId);
-                        innerIter.remove();
-                    }
-                }
+            session.appendXml(xml);
+        }
 
-                if (inner.isEmpty()) {
-                    outerIter.remove();
-                }
-            }
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public LtaSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
         }
     }
 }
@@ -16,6 +16,7 @@ import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.Site;
 import dev.mathops.db.field.ERole;
+import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
 import dev.mathops.session.txn.messages.GetExamReply;
 import dev.mathops.session.txn.messages.GetReviewExamReply;
@@ -26,18 +27,14 @@ import dev.mathops.web.site.html.HtmlSessionBase;
 import jakarta.servlet.ServletRequest;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 /**
  * A user session used to take review exams online. It takes as arguments a session ID, student name, and assignment ID
@@ -186,6 +183,7 @@ public final class PastExamSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(now, xml, upd, htm);
+                PastExamSessionStore.getInstance().updatePastExamSession(this);
                 break;
 
             case CANT_LOAD_EXAM:
@@ -221,29 +219,29 @@ public final class PastExamSession extends HtmlSessionBase {
     private void doInitial(final ZonedDateTime now, final String xml, final String upd,
                            final HtmlBuilder htm) {
 
-        // Verify presence of all required files
+        // Load all required files (from exam directories or exam archives)
         final File basePath1 = new File("/imp/data");
         final File basePath2 = new File("/impback");
 
         if (basePath1.isDirectory() || basePath2.isDirectory()) {
 
-            File xmlPath = new File(basePath1, xml);
-            File updPath = new File(basePath1, upd);
+            byte[] xmlData = ExamWriter.readStoredFile(basePath1, xml);
+            byte[] updData = ExamWriter.readStoredFile(basePath1, upd);
 
-            if (!xmlPath.exists() || !updPath.exists()) {
-                xmlPath = new File(basePath2, xml);
-                updPath = new File(basePath2, upd);
+            if (xmlData == null || updData == null) {
+                final byte[] xmlData2 = ExamWriter.readStoredFile(basePath2, xml);
+                final byte[] updData2 = ExamWriter.readStoredFile(basePath2, upd);
 
-                if (!xmlPath.exists() || !updPath.exists()) {
-                    xmlPath = new File(basePath1, xml);
-                    updPath = new File(basePath1, upd);
+                if (xmlData2 != null && updData2 != null) {
+                    xmlData = xmlData2;
+                    updData = updData2;
                 }
             }
 
-            if (xmlPath.exists()) {
-                if (updPath.exists()) {
-                    if (loadExam(xmlPath)) {
-                        if (loadUpdates(updPath, getExam())) {
+            if (xmlData != null) {
+                if (updData != null) {
+                    if (loadExam(xml, xmlData)) {
+                        if (loadUpdates(updData, getExam())) {
 
                             populateScores();
 
@@ -267,13 +265,13 @@ public final class PastExamSession extends HtmlSessionBase {
                     this.error = "Requested exam answers not found.";
                     this.state = EPastExamState.CANT_LOAD_EXAM;
                     Log.warning(this.error);
-                    Log.warning("  Missing UPD path is ", updPath);
+                    Log.warning("  Missing UPD path is ", upd);
                 }
             } else {
                 this.error = "Requested exam not found.";
                 this.state = EPastExamState.CANT_LOAD_EXAM;
                 Log.warning(this.error);
-                Log.warning("  Missing XML path is ", xmlPath);
+                Log.warning("  Missing XML path is ", xml);
             }
         } else {
             this.error = "No student exam data found on server.";
@@ -310,36 +308,18 @@ public final class PastExamSession extends HtmlSessionBase {
     }
 
     /**
-     * Read the exam XML file.
+     * Parses the exam XML file.
      *
-     * @param xmlFile the XML file to read
+     * @param xmlName the relative path of the XML file, for logging
+     * @param xmlData the contents of the XML file
      * @return true if successful; false otherwise
      */
-    private boolean loadExam(final File xmlFile) {
+    private boolean loadExam(final String xmlName, final byte[] xmlData) {
 
 //        Log.info("Loading completed exam");
 
-        // Read the file and convert to a string and character array
-        final byte[] buffer = new byte[1024];
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        try (final InputStream in = new FileInputStream(xmlFile)) {
-            if (xmlFile.getName().endsWith(".Z")) {
-                try (final InputStream zin = new GZIPInputStream(in)) {
-                    for (int len = zin.read(buffer); len > 0; len = zin.read(buffer)) {
-                        baos.write(buffer, 0, len);
-                    }
-                }
-            } else {
-                for (int len = in.read(buffer); len > 0; len = in.read(buffer)) {
-                    baos.write(buffer, 0, len);
-                }
-            }
-        } catch (final IOException ex) {
-            Log.warning(ex);
-        }
-
-        final String str = baos.toString(StandardCharsets.UTF_8);
+        // Convert the file contents to a string and character array
+        final String str = new String(xmlData, StandardCharsets.UTF_8);
         final char[] data = str.toCharArray();
 
         // Convert the character array into the proper request type
@@ -347,12 +327,12 @@ public final class PastExamSession extends HtmlSessionBase {
             if (str.startsWith("<get-review-exam-reply>")) {
                 setExam(new GetReviewExamReply(data).presentedExam);
                 if (getExam() == null) {
-                    Log.warning("Unable to load ", xmlFile.getAbsolutePath());
+                    Log.warning("Unable to load ", xmlName);
                 }
             } else if (str.startsWith("<get-exam-reply>")) {
                 setExam(new GetExamReply(data).presentedExam);
                 if (getExam() == null) {
-                    Log.warning("Unable to load ", xmlFile.getAbsolutePath());
+                    Log.warning("Unable to load ", xmlName);
                 }
             } else {
                 Log.warning("Unrecognized past exam type: ",
@@ -360,7 +340,7 @@ public final class PastExamSession extends HtmlSessionBase {
                 setExam(null);
             }
         } catch (final IllegalArgumentException ex) {
-            Log.warning("Unable to load ", xmlFile.getAbsolutePath(), ex);
+            Log.warning("Unable to load ", xmlName, ex);
             setExam(null);
         }
 
@@ -368,42 +348,19 @@ public final class PastExamSession extends HtmlSessionBase {
     }
 
     /**
-     * Read the updates file, rebuild the list of student answers, and apply them to the exam.
+     * Parses the updates file, rebuilds the list of student answers, and applies them to the exam.
      *
-     * @param updatesFile the updates file to read
+     * @param updatesData the contents of the updates file
      * @param exam        the exam to which to apply the updates
      * @return true if successful; false otherwise
      */
-    private static boolean loadUpdates(final File updatesFile, final ExamObj exam) {
+    private static boolean loadUpdates(final byte[] updatesData, final ExamObj exam) {
 
         // Log.info("Loading updates");
 
         boolean ok = false;
 
-        // Read the file and convert to String
-        final byte[] buffer = new byte[256];
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        if (updatesFile.exists()) {
-            try (final InputStream in = new FileInputStream(updatesFile)) {
-
-                if (updatesFile.getName().endsWith(".Z")) {
-                    try (final InputStream zin = new GZIPInputStream(in)) {
-                        for (int len = zin.read(buffer); len > 0; len = zin.read(buffer)) {
-                            baos.write(buffer, 0, len);
-                        }
-                    }
-                } else {
-                    for (int len = in.read(buffer); len > 0; len = in.read(buffer)) {
-                        baos.write(buffer, 0, len);
-                    }
-                }
-            } catch (final IOException ex) {
-                Log.warning("Failed to read updates file", ex);
-            }
-        }
-
-        final String str = baos.toString(StandardCharsets.UTF_8);
+        final String str = new String(updatesData, StandardCharsets.UTF_8);
 
         // Convert to a series of lines, trimming away line numbers
         final List<String> data = new ArrayList<>(30);
@@ -571,7 +528,7 @@ public final class PastExamSession extends HtmlSessionBase {
         startMain(htm);
 
         if (getExam().instructionsHtml == null && getExam().instructions != null) {
-            ExamObjConverter.populateExamHtml(getExam(), new int[]{1});
+            ExamObjConverter.populateExamHtml(getExam(), new int[]{1}, getGraphicsFormat());
         }
 
         if (getExam().instructionsHtml != null) {
@@ -604,7 +561,7 @@ public final class PastExamSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.solutionHtml));
             }
@@ -769,6 +726,8 @@ public final class PastExamSession extends HtmlSessionBase {
                 break;
         }
 
+        PastExamSessionStore.getInstance().updatePastExamSession(this);
+
         return redirect;
     }
 
@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -21,38 +20,36 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to past exam session.
+ * A singleton storage class for active past exam sessions, keyed on login session ID and exam file. Sessions are held
+ * in an {@code HtmlSessionStore}, which journals them so they survive a server restart and periodically purges expired
+ * sessions.
  */
 public final class PastExamSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "past_exam_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "past_exam_sessions";
 
     /** The singleton instance. */
     private static final PastExamSessionStore INSTANCE = new PastExamSessionStore();
 
-    /** Map from session ID to that session's map from XML path to past exam session. */
-    private final Map<String, Map<String, PastExamSession>> activePastExams;
+    /** The active past exam sessions, keyed on session ID and XML path. */
+    private final HtmlSessionStore<PastExamSession> store;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private PastExamSessionStore() {
 
-        this.activePastExams = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("past exam", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -66,31 +63,26 @@ public final class PastExamSessionStore {
     }
 
     /**
-     * Retrieves a copy of the map of active past exam sessions.
+     * Retrieves the active past exam sessions. The returned collection is a live view, which may be iterated while
+     * sessions are being added and removed.
      *
-     * @return the past exam session map (outer key is session ID, inner key is XML path)
+     * @return the past exam sessions
      */
-    public Map<String, Map<String, PastExamSession>> getPastExamSessions() {
+    public Collection<PastExamSession> getPastExamSessions() {
 
-        synchronized (this.activePastExams) {
-            return new HashMap<>(this.activePastExams);
-        }
+        return this.store.getSessions();
     }
 
     /**
-     * Gets the active past exam session for an exam ID, if any.
+     * Gets the active past exam session for an XML path, if any.
      *
      * @param sessionId the session ID
-     * @param xml       the path for the exam XML
-     * @return the review exam session; {@code null} if none
+     * @param xml       the XML path
+     * @return the past exam session; {@code null} if none
      */
     public PastExamSession getPastExamSession(final String sessionId, final String xml) {
 
-        synchronized (this.activePastExams) {
-            final Map<String, PastExamSession> sessionMap = this.activePastExams.get(sessionId);
-
-            return sessionMap == null ? null : sessionMap.get(xml);
-        }
+        return this.store.get(HtmlSessionStore.makeKey(sessionId, xml));
     }
 
     /**
@@ -100,130 +92,51 @@ public final class PastExamSessionStore {
      */
     public void setPastExamSession(final PastExamSession theSession) {
 
-        synchronized (this.activePastExams) {
-            if (!theSession.isTimedOut()) {
-                final Map<String, PastExamSession> sessionMap =
-                        this.activePastExams.computeIfAbsent(theSession.sessionId, s -> new HashMap<>(2));
+        this.store.put(theSession);
+    }
 
-                sessionMap.put(theSession.xmlFilename, theSession);
-            }
-        }
+    /**
+     * Journals the state of an active past exam session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updatePastExamSession(final PastExamSession theSession) {
+
+        this.store.update(theSession);
     }
 
     /**
      * Removes the active past exam session for an XML path.
      *
      * @param sessionId the session ID
-     * @param xml       the xml path
+     * @param xml       the XML path
      */
     void removePastExamSession(final String sessionId, final String xml) {
 
-        synchronized (this.activePastExams) {
-            final Map<String, PastExamSession> sessionMap = this.activePastExams.get(sessionId);
-            if (sessionMap != null) {
-                sessionMap.remove(xml);
-
-                if (sessionMap.isEmpty()) {
-                    this.activePastExams.remove(sessionId);
-                }
-            }
-        }
+        this.store.remove(HtmlSessionStore.makeKey(sessionId, xml));
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        synchronized (this.activePastExams) {
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Past exam session store persisting to " + dir.getAbsolutePath());
-
-                for (final Map<String, PastExamSession> maps : this.activePastExams.values()) {
-                    for (final PastExamSession session : maps.values()) {
-                        if (session.isTimedOut()) {
-                            Log.info("  Skipping timed out session ", session.sessionId);
-                            continue;
-                        }
-                        Log.info("  Appending session ", session.sessionId);
-                        session.appendXml(xml);
-                    }
-                }
-
-                Log.info("Past exam session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File target = new File(dir, PERSIST_FILENAME);
-
-                try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + target.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the past exam sessions active when the server last stopped, and schedules purging of expired sessions.
+     * Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
+    public void restore(final Cache cache, final File dir) {
 
-        synchronized (this.activePastExams) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring past exam sessions from ", target.getAbsolutePath());
-
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setPastExamSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
-
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -393,31 +306,61 @@ public final class PastExamSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
+     * The handler through which the session store engine accesses past exam sessions.
      */
-    public void purgeExpired() {
+    private static final class Handler implements IHtmlSessionHandler<PastExamSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final PastExamSession session) {
+
+            return HtmlSessionStore.makeKey(session.sessionId, session.xmlFilename);
+        }
 
-        synchronized (this.activePastExams) {
-            final Iterator<Map.Entry<String, Map<String, PastExamSession>>> outerIter =
-                    this.activePastExams.entrySet().iterator();
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final PastExamSession session) {
 
-            while (outerIter.hasNext()) {
-                final Map<String, PastExamSession> inner = outerIter.next().getValue();
+            return session.isTimedOut();
+        }
 
-                final Iterator<Map.Entry<String, PastExamSession>> innerIter = inner.entrySet().iterator();
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final PastExamSession session, final HtmlBuilder xml) {
 
-                while (innerIter.hasNext()) {
-                    final PastExamSession sess = innerIter.next().getValue();
-                    if (sess.isTimedOut()) {
-                        Log.info("Purging expired HTML past exam session " + sess.sessionId);
-                        innerIter.remove();
-                    }
-                }
+            session.appendXml(xml);
+        }
 
-                if (inner.isEmpty()) {
-                    outerIter.remove();
-                }
-            }
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public PastExamSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
         }
     }
 }
@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -21,38 +20,36 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to past LTA session.
+ * A singleton storage class for active past learning target assignment sessions, keyed on login session ID and exam
+ * file. Sessions are held in an {@code HtmlSessionStore}, which journals them so they survive a server restart and
+ * periodically purges expired sessions.
  */
 public final class PastLtaSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "past_lta_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "past_lta_sessions";
 
     /** The singleton instance. */
     private static final PastLtaSessionStore INSTANCE = new PastLtaSessionStore();
 
-    /** Map from session ID to that session's map from XML path to past exam session. */
-    private final Map<String, Map<String, PastLtaSession>> activePastExams;
+    /** The active past LTA sessions, keyed on session ID and XML path. */
+    private final HtmlSessionStore<PastLtaSession> store;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private PastLtaSessionStore() {
 
-        this.activePastExams = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("past LTA", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -66,31 +63,26 @@ public final class PastLtaSessionStore {
     }
 
     /**
-     * Retrieves a copy of the map of active past LTA sessions.
+     * Retrieves the active past LTA sessions. The returned collection is a live view, which may be iterated while
+     * sessions are being added and removed.
      *
-     * @return the past LTA session map (outer key is session ID, inner key is XML path)
+     * @return the past LTA sessions
      */
-    public Map<String, Map<String, PastLtaSession>> getPastLtaSessions() {
+    public Collection<PastLtaSession> getPastLtaSessions() {
 
-        synchronized (this.activePastExams) {
-            return new HashMap<>(this.activePastExams);
-        }
+        return this.store.getSessions();
     }
 
     /**
-     * Gets the active past LTA session for an exam ID, if any.
+     * Gets the active past LTA session for an XML path, if any.
      *
      * @param sessionId the session ID
-     * @param xml       the path for the exam XML
-     * @return the review LTA session; {@code null} if none
+     * @param xml       the XML path
+     * @return the past LTA session; {@code null} if none
      */
     public PastLtaSession getPastLtaSession(final String sessionId, final String xml) {
 
-        synchronized (this.activePastExams) {
-            final Map<String, PastLtaSession> sessionMap = this.activePastExams.get(sessionId);
-
-            return sessionMap == null ? null : sessionMap.get(xml);
-        }
+        return this.store.get(HtmlSessionStore.makeKey(sessionId, xml));
     }
 
     /**
@@ -100,130 +92,51 @@ public final class PastLtaSessionStore {
      */
     public void setPastLtaSession(final PastLtaSession theSession) {
 
-        synchronized (this.activePastExams) {
-            if (!theSession.isTimedOut()) {
-                final Map<String, PastLtaSession> sessionMap =
-                        this.activePastExams.computeIfAbsent(theSession.sessionId, s -> new HashMap<>(2));
+        this.store.put(theSession);
+    }
 
-                sessionMap.put(theSession.xmlFilename, theSession);
-            }
-        }
+    /**
+     * Journals the state of an active past LTA session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updatePastLtaSession(final PastLtaSession theSession) {
+
+        this.store.update(theSession);
     }
 
     /**
      * Removes the active past LTA session for an XML path.
      *
      * @param sessionId the session ID
-     * @param xml       the xml path
+     * @param xml       the XML path
      */
     void removePastLtaSession(final String sessionId, final String xml) {
 
-        synchronized (this.activePastExams) {
-            final Map<String, PastLtaSession> sessionMap = this.activePastExams.get(sessionId);
-            if (sessionMap != null) {
-                sessionMap.remove(xml);
-
-                if (sessionMap.isEmpty()) {
-                    this.activePastExams.remove(sessionId);
-                }
-            }
-        }
+        this.store.remove(HtmlSessionStore.makeKey(sessionId, xml));
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        synchronized (this.activePastExams) {
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Past LTA session store persisting to " + dir.getAbsolutePath());
-
-                for (final Map<String, PastLtaSession> maps : this.activePastExams.values()) {
-                    for (final PastLtaSession session : maps.values()) {
-                        if (session.isTimedOut()) {
-                            Log.info("  Skipping timed out session ", session.sessionId);
-                            continue;
-                        }
-                        Log.info("  Appending session ", session.sessionId);
-                        session.appendXml(xml);
-                    }
-                }
-
-                Log.info("Past LTA session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File target = new File(dir, PERSIST_FILENAME);
-
-                try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + target.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the past LTA sessions active when the server last stopped, and schedules purging of expired sessions.
+     * Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
+    public void restore(final Cache cache, final File dir) {
 
-        synchronized (this.activePastExams) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring past LTA sessions from ", target.getAbsolutePath());
-
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setPastLtaSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
-
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -392,31 +305,61 @@ public final class PastLtaSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
+     * The handler through which the session store engine accesses past LTA sessions.
      */
-    public void purgeExpired() {
+    private static final class Handler implements IHtmlSessionHandler<PastLtaSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final PastLtaSession session) {
+
+            return HtmlSessionStore.makeKey(session.sessionId, session.xmlFilename);
+        }
 
-        synchronized (this.activePastExams) {
-            final Iterator<Map.Entry<String, Map<String, PastLtaSession>>> outerIter =
-                    this.activePastExams.entrySet().iterator();
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final PastLtaSession session) {
 
-            while (outerIter.hasNext()) {
-                final Map<String, PastLtaSession> inner = outerIter.next().getValue();
+            return session.isTimedOut();
+        }
 
-                final Iterator<Map.Entry<String, PastLtaSession>> innerIter = inner.entrySet().iterator();
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final PastLtaSession session, final HtmlBuilder xml) {
 
-                while (innerIter.hasNext()) {
-                    final PastLtaSession sess = innerIter.next().getValue();
-                    if (sess.isTimedOut()) {
-                        Log.info("Purging expired HTML past exam session " + sess.sessionId);
-                        innerIter.remove();
-                    }
-                }
+            session.appendXml(xml);
+        }
 
-                if (inner.isEmpty()) {
-                    outerIter.remove();
-                }
-            }
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public PastLtaSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
         }
     }
 }
@@ -63,6 +63,7 @@ import dev.mathops.db.schema.legacy.rec.RawStudent;
 import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.session.txn.handlers.StudentExamAnswerRec;
 import dev.mathops.session.txn.handlers.StudentExamRec;
@@ -330,6 +331,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(cache, now, htm);
+                PlacementExamSessionStore.getInstance().updatePlacementExamSession(this);
                 break;
 
             case ERROR:
@@ -475,6 +477,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
                                         avail.exam.unit, avail.exam.examType, avail.timelimitFactor, "STU");
 
                                 RawPendingExamLogic.insert(cache, pending);
+                                StudentStatusCache.getInstance().invalidate(this.studentId);
                             }
                         }
                     } catch (final SQLException ex) {
@@ -539,7 +542,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
                             Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb + " choice " + i
                                         + " getProblem() returned " + prb);
                         } else {
-                            prb = InstructionalCache.getProblem(prb.id);
+                            prb = InstructionalCache.getProblemTemplate(prb.id);
 
                             if (prb != null) {
                                 eprob.setProblem(i, prb);
@@ -857,7 +860,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
         startMain(htm);
 
         if (getExam().instructionsHtml == null && getExam().instructions != null) {
-            ExamObjConverter.populateExamHtml(getExam(), new int[]{1});
+            ExamObjConverter.populateExamHtml(getExam(), new int[]{1}, getGraphicsFormat());
         }
 
         if (getExam().instructionsHtml != null) {
@@ -901,7 +904,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
                     htm.addln("No selected problem.");
                 } else {
                     if (p.questionHtml == null) {
-                        ProblemConverter.populateProblemHtml(p, new int[]{1});
+                        ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                     }
                     htm.addln(p.insertAnswers(p.questionHtml));
                 }
@@ -1375,6 +1378,8 @@ public final class PlacementExamSession extends HtmlSessionBase {
                 break;
         }
 
+        PlacementExamSessionStore.getInstance().updatePlacementExamSession(this);
+
         return redirect;
     }
 
@@ -1771,6 +1776,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
                 final ExamObj examObj = getExam();
                 if (examObj != null) {
                     RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                    StudentStatusCache.getInstance().invalidate(this.studentId);
                     setExam(null);
                 }
 
@@ -1804,6 +1810,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
             final ExamObj examObj = getExam();
             if (examObj != null) {
                 RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                StudentStatusCache.getInstance().invalidate(this.studentId);
                 setExam(null);
             }
         } else {
@@ -1837,6 +1844,7 @@ public final class PlacementExamSession extends HtmlSessionBase {
             final ExamObj examObj = getExam();
             if (examObj != null) {
                 RawPendingExamLogic.delete(cache, examObj.serialNumber, this.studentId);
+                StudentStatusCache.getInstance().invalidate(this.studentId);
                 setExam(null);
             }
         } else {
@@ -1874,7 +1882,12 @@ public final class PlacementExamSession extends HtmlSessionBase {
 
             // Write the updated exam state out somewhere permanent
             new ExamWriter().writeUpdatedExam(stuId, this.active, answers, false);
-            err = finalizeExam(cache, now, answers);
+
+            try {
+                err = finalizeExam(cache, now, answers);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         if (err != null) {
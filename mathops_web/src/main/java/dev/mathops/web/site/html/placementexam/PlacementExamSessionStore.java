@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -22,39 +21,36 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to unit exam session.
+ * A singleton storage class for active placement exam sessions, keyed on student ID. Sessions are held in an {@code
+ * HtmlSessionStore}, which journals them so they survive a server restart and periodically purges expired sessions.
  */
 public final class PlacementExamSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "placement_exam_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "placement_exam_sessions";
 
     /** The singleton instance. */
     private static final PlacementExamSessionStore INSTANCE = new PlacementExamSessionStore();
 
-    /** Map from student ID to exam session (one placement session active per student at a time). */
-    private final Map<String, PlacementExamSession> studentPlacementExams;
+    /** The active placement exam sessions, keyed on student ID (one session per student at a time). */
+    private final HtmlSessionStore<PlacementExamSession> store;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private PlacementExamSessionStore() {
 
-        this.studentPlacementExams = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("placement exam", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -68,16 +64,14 @@ public final class PlacementExamSessionStore {
     }
 
     /**
-     * Retrieves the map of active placement exam sessions. This is the live map which can be manipulated.
+     * Retrieves the active placement exam sessions. The returned collection is a live view, which may be iterated
+     * while sessions are being added and removed.
      *
-     * <p>
-     * Any changes to the returned may MUST be done within a block synchronized on the map.
-     *
-     * @return the placement exam session map (key is student ID)
+     * @return the placement exam sessions
      */
-    public Map<String, PlacementExamSession> getPlacementExamSessions() {
+    public Collection<PlacementExamSession> getPlacementExamSessions() {
 
-        return this.studentPlacementExams;
+        return this.store.getSessions();
     }
 
     /**
@@ -88,9 +82,7 @@ public final class PlacementExamSessionStore {
      */
     public PlacementExamSession getPlacementExamSessionForStudent(final String studentId) {
 
-        synchronized (this.studentPlacementExams) {
-            return this.studentPlacementExams.get(studentId);
-        }
+        return this.store.get(studentId);
     }
 
     /**
@@ -100,12 +92,17 @@ public final class PlacementExamSessionStore {
      */
     public void setPlacementExamSession(final PlacementExamSession theSession) {
 
-        synchronized (this.studentPlacementExams) {
-            if (!theSession.isTimedOut()
-                && !this.studentPlacementExams.containsKey(theSession.studentId)) {
-                this.studentPlacementExams.put(theSession.studentId, theSession);
-            }
-        }
+        this.store.putIfAbsent(theSession);
+    }
+
+    /**
+     * Journals the state of an active placement exam session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updatePlacementExamSession(final PlacementExamSession theSession) {
+
+        this.store.update(theSession);
     }
 
     /**
@@ -115,111 +112,30 @@ public final class PlacementExamSessionStore {
      */
     void removePlacementExamSessionForStudent(final String studentId) {
 
-        synchronized (this.studentPlacementExams) {
-            this.studentPlacementExams.remove(studentId);
-        }
+        this.store.remove(studentId);
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        synchronized (this.studentPlacementExams) {
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Placement exam session store persisting to " + dir.getAbsolutePath());
-
-                for (final PlacementExamSession session : this.studentPlacementExams.values()) {
-                    if (session.isTimedOut()) {
-                        Log.info("  Skipping timed out session ", session.sessionId);
-                        continue;
-                    }
-                    Log.info("  Appending session ", session.sessionId);
-                    session.appendXml(xml);
-                }
-
-                Log.info("Placement exam session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File target = new File(dir, PERSIST_FILENAME);
-
-                try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + target.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the placement exam sessions active when the server last stopped, and schedules purging of expired
+     * sessions. Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
-
-        synchronized (this.studentPlacementExams) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring placement exam sessions from ",
-                    target.getAbsolutePath());
-
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setPlacementExamSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            } else if (node instanceof CData) {
-                                final String data = ((CData) node).content.trim();
-                                if (!data.isEmpty()) {
-                                    Log.warning("  Node is CData with content: ", data);
-                                }
-                            } else {
-                                Log.warning("  Node is ", node.getClass().getName());
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
+    public void restore(final Cache cache, final File dir) {
 
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -436,35 +352,95 @@ public final class PlacementExamSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
-     *
-     * @param cache the data cache
+     * The handler through which the session store engine accesses placement exam sessions.
      */
-    public void purgeExpired(final Cache cache) {
-
-        synchronized (this.studentPlacementExams) {
-            final Iterator<Map.Entry<String, PlacementExamSession>> iter =
-                    this.studentPlacementExams.entrySet().iterator();
-
-            while (iter.hasNext()) {
-                final PlacementExamSession sess = iter.next().getValue();
-
-                if (sess.isPurgable()) {
-                    try {
-                        if (sess.getState() == EPlacementExamState.ITEM_NN
-                            || sess.getState() == EPlacementExamState.SUBMIT_NN) {
-                            // Force-submit
-                            sess.scoreAndRecordCompletion(cache, ZonedDateTime.now());
-                        } else {
-                            sess.writeExamRecovery(cache);
-                        }
-                    } catch (final SQLException ex) {
-                        Log.warning(ex);
-                    }
+    private static final class Handler implements IHtmlSessionHandler<PlacementExamSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final PlacementExamSession session) {
+
+            return session.studentId;
+        }
+
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final PlacementExamSession session) {
+
+            return session.isTimedOut();
+        }
+
+        /**
+         * Tests whether a session should be purged.
+         *
+         * @param session the session
+         * @return {@code true} if the session should be purged
+         */
+        @Override
+        public boolean isPurgable(final PlacementExamSession session) {
+
+            return session.isPurgable();
+        }
+
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final PlacementExamSession session, final HtmlBuilder xml) {
 
-                    Log.info("Purging expired HTML placement exam session " + sess.sessionId);
-                    iter.remove();
+            session.appendXml(xml);
+        }
+
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public PlacementExamSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
+        }
+
+        /**
+         * Called for a session that is being purged. An exam that was started but abandoned is submitted; otherwise,
+         * an exam recovery record is written.
+         *
+         * @param cache   the data cache
+         * @param session the session
+         */
+        @Override
+        public void expire(final Cache cache, final PlacementExamSession session) {
+
+            try {
+                if (session.getState() == EPlacementExamState.ITEM_NN
+                    || session.getState() == EPlacementExamState.SUBMIT_NN) {
+                    // Force-submit
+                    session.scoreAndRecordCompletion(cache, ZonedDateTime.now());
+                } else {
+                    session.writeExamRecovery(cache);
                 }
+            } catch (final SQLException ex) {
+                Log.warning(ex);
             }
         }
     }
@@ -67,6 +67,7 @@ import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.ReviewExamEligibilityTester;
 import dev.mathops.session.txn.handlers.AbstractHandlerBase;
 import dev.mathops.session.txn.handlers.StudentExamAnswerRec;
@@ -261,8 +262,11 @@ public final class ReviewExamSession extends HtmlSessionBase {
     public void generateHtml(final Cache cache, final ZonedDateTime now, final HtmlBuilder htm)
             throws SQLException {
 
+        final boolean initial;
+
         synchronized (this) {
             this.timeout = System.currentTimeMillis() + TIMEOUT;
+            initial = this.state == EReviewExamState.INITIAL;
 
             switch (this.state) {
                 case INITIAL:
@@ -297,6 +301,10 @@ public final class ReviewExamSession extends HtmlSessionBase {
                     break;
             }
         }
+
+        if (initial) {
+            ReviewExamSessionStore.getInstance().updateReviewExamSession(this);
+        }
     }
 
     /**
@@ -539,7 +547,7 @@ public final class ReviewExamSession extends HtmlSessionBase {
                             Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb + " choice " + i
                                         + " getProblem() returned " + prb);
                         } else {
-                            prb = InstructionalCache.getProblem(prb.id);
+                            prb = InstructionalCache.getProblemTemplate(prb.id);
 
                             if (prb != null) {
                                 eprob.setProblem(i, prb);
@@ -583,7 +591,7 @@ public final class ReviewExamSession extends HtmlSessionBase {
         startMain(htm);
 
         if (getExam().instructionsHtml == null && getExam().instructions != null) {
-            ExamObjConverter.populateExamHtml(getExam(), new int[]{1});
+            ExamObjConverter.populateExamHtml(getExam(), new int[]{1}, getGraphicsFormat());
         }
 
         if (getExam().instructionsHtml != null) {
@@ -622,7 +630,7 @@ public final class ReviewExamSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.questionHtml));
             }
@@ -752,7 +760,7 @@ public final class ReviewExamSession extends HtmlSessionBase {
                     htm.addln("No selected problem.");
                 } else {
                     if (p.questionHtml == null) {
-                        ProblemConverter.populateProblemHtml(p, new int[]{1});
+                        ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                     }
                     htm.addln(p.insertAnswers(p.solutionHtml));
                 }
@@ -984,7 +992,9 @@ public final class ReviewExamSession extends HtmlSessionBase {
         // The following synchronizes on the store's map - this CANNOT be done while in a block
         // synchronized on a session since doing so risks a race/deadlock.
 
-        if (redirect != null) {
+        if (redirect == null) {
+            ReviewExamSessionStore.getInstance().updateReviewExamSession(this);
+        } else {
             ReviewExamSessionStore.getInstance().removeReviewExamSession(session.loginSessionId, this.version);
         }
 
@@ -1290,7 +1300,11 @@ public final class ReviewExamSession extends HtmlSessionBase {
             // Write the updated exam state out somewhere permanent
             new ExamWriter().writeUpdatedExam(stuId, this.active, answers, false);
 
-            error = finalizeExam(cache, now, answers);
+            try {
+                error = finalizeExam(cache, now, answers);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         if (error != null) {
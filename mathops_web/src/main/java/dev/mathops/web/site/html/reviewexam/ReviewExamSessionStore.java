@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -22,38 +21,36 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to review exam session.
+ * A singleton storage class for active review exam sessions, keyed on login session ID and exam ID. Sessions are held
+ * in an {@code HtmlSessionStore}, which journals them so they survive a server restart and periodically purges expired
+ * sessions.
  */
 public final class ReviewExamSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "review_exam_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "review_exam_sessions";
 
     /** The singleton instance. */
     private static final ReviewExamSessionStore INSTANCE = new ReviewExamSessionStore();
 
-    /** Map from session ID to that session's map from exam ID to exam session. */
-    private final Map<String, Map<String, ReviewExamSession>> activeReviewExams;
+    /** The active review exam sessions, keyed on session ID and exam ID. */
+    private final HtmlSessionStore<ReviewExamSession> store;
 
     /**
      * Private constructor to prevent direct instantiation.
      */
     private ReviewExamSessionStore() {
 
-        this.activeReviewExams = new HashMap<>(100);
+        this.store = new HtmlSessionStore<>("review exam", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -67,16 +64,14 @@ public final class ReviewExamSessionStore {
     }
 
     /**
-     * Retrieves the map of active review exam sessions. This is the live map which can be manipulated.
+     * Retrieves the active review exam sessions. The returned collection is a live view, which may be iterated while
+     * sessions are being added and removed.
      *
-     * <p>
-     * Any changes to the returned may MUST be done within a block synchronized on the map.
-     *
-     * @return the review exam session map (outer key is session ID, inner key is exam ID)
+     * @return the review exam sessions
      */
-    public Map<String, Map<String, ReviewExamSession>> getReviewExamSessions() {
+    public Collection<ReviewExamSession> getReviewExamSessions() {
 
-        return this.activeReviewExams;
+        return this.store.getSessions();
     }
 
     /**
@@ -88,11 +83,7 @@ public final class ReviewExamSessionStore {
      */
     public ReviewExamSession getReviewExamSession(final String sessionId, final String examId) {
 
-        synchronized (this.activeReviewExams) {
-            final Map<String, ReviewExamSession> sessionMap = this.activeReviewExams.get(sessionId);
-
-            return sessionMap == null ? null : sessionMap.get(examId);
-        }
+        return this.store.get(HtmlSessionStore.makeKey(sessionId, examId));
     }
 
     /**
@@ -102,130 +93,51 @@ public final class ReviewExamSessionStore {
      */
     public void setReviewExamSession(final ReviewExamSession theSession) {
 
-        synchronized (this.activeReviewExams) {
-            if (!theSession.isTimedOut()) {
-                final Map<String, ReviewExamSession> sessionMap =
-                        this.activeReviewExams.computeIfAbsent(theSession.sessionId, s -> new HashMap<>(2));
-                sessionMap.put(theSession.version, theSession);
-            }
-        }
+        this.store.put(theSession);
     }
 
     /**
-     * Removes the active review exam session for an assignment ID.
+     * Journals the state of an active review exam session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updateReviewExamSession(final ReviewExamSession theSession) {
+
+        this.store.update(theSession);
+    }
+
+    /**
+     * Removes the active review exam session for an exam ID.
      *
      * @param sessionId the session ID
      * @param examId    the exam ID
      */
     void removeReviewExamSession(final String sessionId, final String examId) {
 
-        synchronized (this.activeReviewExams) {
-            final Map<String, ReviewExamSession> sessionMap = this.activeReviewExams.get(sessionId);
-            if (sessionMap != null) {
-                sessionMap.remove(examId);
-                if (sessionMap.isEmpty()) {
-                    this.activeReviewExams.remove(sessionId);
-                }
-            }
-        }
+        this.store.remove(HtmlSessionStore.makeKey(sessionId, examId));
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        final HtmlBuilder xml = new HtmlBuilder(1000);
-
-        synchronized (this.activeReviewExams) {
-            try {
-                Log.info("Review exam session store persisting to "
-                         + dir.getAbsolutePath());
-
-                for (final Map<String, ReviewExamSession> maps : this.activeReviewExams.values()) {
-                    for (final ReviewExamSession session : maps.values()) {
-                        if (session.isTimedOut()) {
-                            Log.info("  Skiping timed out session ", session.sessionId);
-                            continue;
-                        }
-                        Log.info("  Appending session ", session.sessionId);
-                        session.appendXml(xml);
-                    }
-                }
-
-                Log.info("Review exam session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-        }
-
-        if (dir.exists() || dir.mkdirs()) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                Log.info("  Persisting to " + target.getAbsolutePath());
-                writer.write(xml.toString());
-            } catch (final IOException ex) {
-                Log.warning(ex);
-            }
-        } else {
-            Log.warning("Unable to create directory ", dir.getAbsolutePath());
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the review exam sessions active when the server last stopped, and schedules purging of expired sessions.
+     * Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
-
-        synchronized (this.activeReviewExams) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring review exam sessions from ", target.getAbsolutePath());
+    public void restore(final Cache cache, final File dir) {
 
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setReviewExamSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
-
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -422,49 +334,84 @@ public final class ReviewExamSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
-     *
-     * @param cache the data cache
+     * The handler through which the session store engine accesses review exam sessions.
      */
-    public void purgeExpired(final Cache cache) {
+    private static final class Handler implements IHtmlSessionHandler<ReviewExamSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final ReviewExamSession session) {
+
+            return HtmlSessionStore.makeKey(session.sessionId, session.version);
+        }
 
-        synchronized (this.activeReviewExams) {
-            final Iterator<Map.Entry<String, Map<String, ReviewExamSession>>> outerIter =
-                    this.activeReviewExams.entrySet().iterator();
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final ReviewExamSession session) {
 
-            while (outerIter.hasNext()) {
-                final Map<String, ReviewExamSession> inner = outerIter.next().getValue();
+            return session.isTimedOut();
+        }
 
-                final Iterator<Map.Entry<String, ReviewExamSession>> innerIter =
-                        inner.entrySet().iterator();
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final ReviewExamSession session, final HtmlBuilder xml) {
 
-                while (innerIter.hasNext()) {
-                    final ReviewExamSession sess = innerIter.next().getValue();
-                    synchronized (sess) {
-                        if (sess.isTimedOut()) {
-                            final EReviewExamState state = sess.getState();
+            session.appendXml(xml);
+        }
 
-                            if (state == EReviewExamState.ITEM_NN
-                                || state == EReviewExamState.SUBMIT_NN) {
-                                Log.info("Review exam was started but abandoned - auto-submit it");
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public ReviewExamSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
+        }
 
-                                try {
-                                    sess.forceSubmit(cache, null);
-                                } catch (final SQLException ex) {
-                                    Log.warning(ex);
-                                }
-                            } else {
-                                Log.info("Purging expired HTML review exam session "
-                                         + sess.sessionId);
-                            }
-                            innerIter.remove();
-                        }
+        /**
+         * Called for a session that is being purged. A review exam that was started but abandoned is submitted.
+         *
+         * @param cache   the data cache
+         * @param session the session
+         */
+        @Override
+        public void expire(final Cache cache, final ReviewExamSession session) {
+
+            synchronized (session) {
+                final EReviewExamState state = session.getState();
+
+                if (state == EReviewExamState.ITEM_NN || state == EReviewExamState.SUBMIT_NN) {
+                    Log.info("Review exam was started but abandoned - auto-submit it");
+
+                    try {
+                        session.forceSubmit(cache, null);
+                    } catch (final SQLException ex) {
+                        Log.warning(ex);
                     }
                 }
-
-                if (inner.isEmpty()) {
-                    outerIter.remove();
-                }
             }
         }
     }
@@ -68,6 +68,7 @@ import dev.mathops.db.schema.main.rec.TermRec;
 import dev.mathops.db.schema.RawRecordConstants;
 import dev.mathops.session.ExamWriter;
 import dev.mathops.session.ImmutableSessionInfo;
+import dev.mathops.session.sitelogic.StudentStatusCache;
 import dev.mathops.session.sitelogic.servlet.ExamEligibilityTester;
 import dev.mathops.session.sitelogic.servlet.UnitExamAvailability;
 import dev.mathops.session.sitelogic.servlet.UnitExamEligibilityTester;
@@ -285,6 +286,7 @@ public final class UnitExamSession extends HtmlSessionBase {
         switch (this.state) {
             case INITIAL:
                 doInitial(cache, session, htm);
+                UnitExamSessionStore.getInstance().updateUnitExamSession(this);
                 break;
 
             case INSTRUCTIONS:
@@ -660,7 +662,7 @@ public final class UnitExamSession extends HtmlSessionBase {
                                 Log.warning("Exam " + ref + " section " + onSect + " problem " + onProb + " choice "
                                             + i + " getProblem() returned " + prb);
                             } else {
-                                prb = InstructionalCache.getProblem(prb.id);
+                                prb = InstructionalCache.getProblemTemplate(prb.id);
 
                                 if (prb != null) {
                                     eprob.setProblem(i, prb);
@@ -721,7 +723,7 @@ public final class UnitExamSession extends HtmlSessionBase {
         startMain(htm);
 
         if (getExam().instructionsHtml == null && getExam().instructions != null) {
-            ExamObjConverter.populateExamHtml(getExam(), new int[]{1});
+            ExamObjConverter.populateExamHtml(getExam(), new int[]{1}, getGraphicsFormat());
         }
 
         if (getExam().instructionsHtml != null) {
@@ -760,7 +762,7 @@ public final class UnitExamSession extends HtmlSessionBase {
                 htm.addln("No selected problem.");
             } else {
                 if (p.questionHtml == null) {
-                    ProblemConverter.populateProblemHtml(p, new int[]{1});
+                    ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                 }
                 htm.addln(p.insertAnswers(p.questionHtml));
             }
@@ -881,7 +883,7 @@ public final class UnitExamSession extends HtmlSessionBase {
                     htm.addln("No selected problem.");
                 } else {
                     if (p.questionHtml == null) {
-                        ProblemConverter.populateProblemHtml(p, new int[]{1});
+                        ProblemConverter.populateProblemHtml(p, new int[]{1}, getGraphicsFormat());
                     }
                     htm.addln(p.insertAnswers(p.solutionHtml));
                 }
@@ -1218,6 +1220,8 @@ public final class UnitExamSession extends HtmlSessionBase {
                 break;
         }
 
+        UnitExamSessionStore.getInstance().updateUnitExamSession(this);
+
         return redirect;
     }
 
@@ -1528,7 +1532,11 @@ public final class UnitExamSession extends HtmlSessionBase {
             // Write the updated exam state out somewhere permanent
             new ExamWriter().writeUpdatedExam(stuId, this.active, answers, false);
 
-            error = finalizeExam(cache, now, answers);
+            try {
+                error = finalizeExam(cache, now, answers);
+            } finally {
+                StudentStatusCache.getInstance().invalidate(stuId);
+            }
         }
 
         if (error != null) {
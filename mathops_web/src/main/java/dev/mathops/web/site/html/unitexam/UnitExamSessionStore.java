@@ -8,7 +8,6 @@ import dev.mathops.assessment.exam.ExamSection;
 import dev.mathops.assessment.problem.template.AbstractProblemTemplate;
 import dev.mathops.assessment.problem.template.ProblemTemplateFactory;
 import dev.mathops.commons.CoreConstants;
-import dev.mathops.commons.file.FileLoader;
 import dev.mathops.commons.log.Log;
 import dev.mathops.db.Cache;
 import dev.mathops.db.cfg.DatabaseConfig;
@@ -24,32 +23,34 @@ import dev.mathops.text.parser.xml.INode;
 import dev.mathops.text.parser.xml.NonemptyElement;
 import dev.mathops.text.parser.xml.XmlContent;
 import dev.mathops.text.parser.xml.XmlEscaper;
+import dev.mathops.web.site.html.HtmlSessionStore;
+import dev.mathops.web.site.html.IHtmlSessionHandler;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A singleton storage class that keeps a map from session ID to a map from exam ID to unit exam session.
+ * A singleton storage class for active unit exam sessions, keyed on login session ID and exam ID. Sessions are held in
+ * an {@code HtmlSessionStore}, which journals them so they survive a server restart and periodically purges expired
+ * sessions.
  */
 public final class UnitExamSessionStore {
 
-    /** The filename to which to persist sessions. */
-    private static final String PERSIST_FILENAME = "unit_exam_sessions.xml";
+    /** The base filename for the session journal. */
+    private static final String BASE_FILENAME = "unit_exam_sessions";
 
     /** The singleton instance. */
     private static final UnitExamSessionStore INSTANCE = new UnitExamSessionStore();
 
-    /** Map from session ID to that session's map from exam ID to exam session. */
-    private final Map<String, Map<String, UnitExamSession>> unitExamSessions;
+    /** The active unit exam sessions, keyed on session ID and exam ID. */
+    private final HtmlSessionStore<UnitExamSession> store;
 
     /** Map from exam code to the corresponding session ID. */
     private final Map<String, String> examCodeToSessionId;
@@ -60,20 +61,16 @@ public final class UnitExamSessionStore {
     /** Map from session ID to the corresponding exam code. */
     private final Map<String, String> sessionIdToExamCode;
 
-    /** Last timestamp when exam codes were tested for expiry. */
-    private long nextTimeoutScan;
-
     /**
      * Private constructor to prevent direct instantiation.
      */
     private UnitExamSessionStore() {
 
-        this.unitExamSessions = new HashMap<>(100);
-
-        this.studentIdToSessionId = new HashMap<>(200);
+        this.studentIdToSessionId = new ConcurrentHashMap<>(200);
         this.examCodeToSessionId = new HashMap<>(200);
         this.sessionIdToExamCode = new HashMap<>(200);
-        this.nextTimeoutScan = 0L;
+
+        this.store = new HtmlSessionStore<>("unit exam", BASE_FILENAME, new Handler());
     }
 
     /**
@@ -104,24 +101,6 @@ public final class UnitExamSessionStore {
             examCode = this.sessionIdToExamCode.get(sessionId);
 
             if (examCode == null) {
-                // Needs a new code, take opportunity to clean expired sessions if needed
-                if (System.currentTimeMillis() > this.nextTimeoutScan) {
-                    final SessionManager sm = SessionManager.getInstance();
-
-                    final Iterator<Map.Entry<String, String>> iter = this.examCodeToSessionId.entrySet().iterator();
-
-                    while (iter.hasNext()) {
-                        final Map.Entry<String, String> entry = iter.next();
-                        final String testId = entry.getValue();
-
-                        if (sm.getUserSession(testId) == null) {
-                            iter.remove();
-                            this.sessionIdToExamCode.remove(testId);
-                        }
-                    }
-                    this.nextTimeoutScan = System.currentTimeMillis() + 120000L;
-                }
-
                 // Generate and store the new exam code
                 do {
                     examCode = CoreConstants.newId(6);
@@ -136,6 +115,28 @@ public final class UnitExamSessionStore {
         return examCode;
     }
 
+    /**
+     * Discards exam codes whose login sessions no longer exist. Called by each scheduled sweep of the session store.
+     */
+    private void purgeExamCodes() {
+
+        final SessionManager sm = SessionManager.getInstance();
+
+        synchronized (this.examCodeToSessionId) {
+            final Iterator<Map.Entry<String, String>> iter = this.examCodeToSessionId.entrySet().iterator();
+
+            while (iter.hasNext()) {
+                final Map.Entry<String, String> entry = iter.next();
+                final String testId = entry.getValue();
+
+                if (sm.getUserSession(testId) == null) {
+                    iter.remove();
+                    this.sessionIdToExamCode.remove(testId);
+                }
+            }
+        }
+    }
+
     ///**
     // * Looks up an exam code, returning the associated login session ID if found.
     // *
@@ -160,24 +161,20 @@ public final class UnitExamSessionStore {
      */
     public String lookupStudent(final String studentId) {
 
-        synchronized (this.studentIdToSessionId) {
-            final String sid = this.studentIdToSessionId.get(studentId);
-            Log.info("Looking up student '", studentId, "' returned ", sid);
-            return sid;
-        }
+        final String sid = this.studentIdToSessionId.get(studentId);
+        Log.info("Looking up student '", studentId, "' returned ", sid);
+        return sid;
     }
 
     /**
-     * Retrieves the map of active unit exam sessions. This is the live map which can be manipulated.
-     *
-     * <p>
-     * Any changes to the returned may MUST be done within a block synchronized on the map.
+     * Retrieves the active unit exam sessions. The returned collection is a live view, which may be iterated while
+     * sessions are being added and removed.
      *
-     * @return the unit exam session map (outer key is session ID, inner key is exam ID)
+     * @return the unit exam sessions
      */
-    public Map<String, Map<String, UnitExamSession>> getUnitExamSessions() {
+    public Collection<UnitExamSession> getUnitExamSessions() {
 
-        return this.unitExamSessions;
+        return this.store.getSessions();
     }
 
     /**
@@ -189,16 +186,7 @@ public final class UnitExamSessionStore {
      */
     public UnitExamSession getUnitExamSession(final String sessionId, final String examId) {
 
-        synchronized (this.unitExamSessions) {
-            final Map<String, UnitExamSession> sessionMap = this.unitExamSessions.get(sessionId);
-
-            // if (sessionMap != null) {
-            // Log.info("Query - session map for ", sessionId,
-            // " found, testing for ", examId);
-            // }
-
-            return sessionMap == null ? null : sessionMap.get(examId);
-        }
+        return this.store.get(HtmlSessionStore.makeKey(sessionId, examId));
     }
 
     /**
@@ -208,128 +196,51 @@ public final class UnitExamSessionStore {
      */
     public void setUnitExamSession(final UnitExamSession theSession) {
 
-        synchronized (this.unitExamSessions) {
-            if (!theSession.isTimedOut()) {
-                final Map<String, UnitExamSession> sessionMap =
-                        this.unitExamSessions.computeIfAbsent(theSession.sessionId, s -> new HashMap<>(2));
-                sessionMap.put(theSession.version, theSession);
-            }
-        }
+        this.store.put(theSession);
+    }
+
+    /**
+     * Journals the state of an active unit exam session after it has changed.
+     *
+     * @param theSession the session
+     */
+    void updateUnitExamSession(final UnitExamSession theSession) {
+
+        this.store.update(theSession);
     }
 
     /**
-     * Removes the active unit exam session for an assignment ID.
+     * Removes the active unit exam session for an exam ID.
      *
      * @param sessionId the session ID
      * @param examId    the exam ID
      */
     void removeUnitExamSession(final String sessionId, final String examId) {
 
-        synchronized (this.unitExamSessions) {
-            final Map<String, UnitExamSession> sessionMap = this.unitExamSessions.get(sessionId);
-            if (sessionMap != null) {
-                sessionMap.remove(examId);
-                if (sessionMap.isEmpty()) {
-                    this.unitExamSessions.remove(sessionId);
-                }
-            }
-        }
+        this.store.remove(HtmlSessionStore.makeKey(sessionId, examId));
     }
 
     /**
-     * Persists the session store on server shutdown. The persisted session states can be restored on server restart.
+     * Persists the session store on server shutdown, compacting its journal so it holds the current state of every
+     * active session.
      *
      * @param dir the directory in which to persist the active sessions
      */
     public void persist(final File dir) {
 
-        synchronized (this.unitExamSessions) {
-            final HtmlBuilder xml = new HtmlBuilder(1000);
-            try {
-                Log.info("Unit exam session store persisting to " + dir.getAbsolutePath());
-
-                for (final Map<String, UnitExamSession> maps : this.unitExamSessions.values()) {
-                    for (final UnitExamSession session : maps.values()) {
-                        if (session.isTimedOut()) {
-                            Log.info("  Skipping timed out session ", session.sessionId);
-                            continue;
-                        }
-                        Log.info("  Appending session ", session.sessionId);
-                        session.appendXml(xml);
-                    }
-                }
-
-                Log.info("Unit exam session store generated XML");
-            } catch (final RuntimeException ex) {
-                Log.warning(ex);
-            }
-
-            if (dir.exists() || dir.mkdirs()) {
-                final File target = new File(dir, PERSIST_FILENAME);
-
-                try (final FileWriter writer = new FileWriter(target, StandardCharsets.UTF_8)) {
-                    Log.info("  Persisting to " + target.getAbsolutePath());
-                    writer.write(xml.toString());
-                } catch (final IOException ex) {
-                    Log.warning(ex);
-                }
-            } else {
-                Log.warning("Unable to create directory ", dir.getAbsolutePath());
-            }
-        }
+        this.store.persist(dir);
     }
 
     /**
-     * Restores session states persisted with the {@code persist} method. States that have been idle longer than the
-     * session idle timeout will be discarded. If the server has been down for longer than the idle timeout, this means
-     * all sessions will be discarded.
+     * Restores the unit exam sessions active when the server last stopped, and schedules purging of expired sessions.
+     * Sessions that have timed out are discarded.
      *
      * @param cache the data cache
      * @param dir   the directory from which to load the active sessions
-     * @throws SQLException if there is an error accessing the database
      */
-    public void restore(final Cache cache, final File dir) throws SQLException {
-
-        synchronized (this.unitExamSessions) {
-            final File target = new File(dir, PERSIST_FILENAME);
-
-            Log.info("Restoring unit exam sessions from ", target.getAbsolutePath());
-
-            if (target.exists()) {
-                final String xml = FileLoader.loadFileAsString(target, true);
-
-                try {
-                    final XmlContent content = new XmlContent(xml, false, false);
-                    final List<INode> nodes = content.getNodes();
-
-                    if (nodes != null) {
-                        for (final INode node : nodes) {
-                            if (node instanceof NonemptyElement) {
-                                try {
-                                    setUnitExamSession(parseSession(cache, xml, (NonemptyElement) node));
-                                } catch (final IllegalArgumentException ex) {
-                                    Log.warning(ex);
-                                }
-                            }
-                        }
-                    }
-                } catch (final ParsingException | DateTimeParseException | IllegalArgumentException ex) {
-                    Log.warning(ex);
-                }
-
-                final File bak = new File(dir, PERSIST_FILENAME + ".bak");
-                if (bak.exists()) {
-                    if (!bak.delete()) {
-                        Log.warning("Failed to delete ", bak.getAbsolutePath());
-                    }
-                }
-                if (!target.renameTo(bak)) {
-                    Log.warning("Failed to rename ", target.getAbsolutePath());
-                }
+    public void restore(final Cache cache, final File dir) {
 
-                // target.delete();
-            }
-        }
+        this.store.restore(cache, dir);
     }
 
     /**
@@ -521,46 +432,104 @@ public final class UnitExamSessionStore {
     }
 
     /**
-     * Purges all expired sessions from the store. Called periodically from the servlet container.
-     *
-     * @param cache the data cache
+     * The handler through which the session store engine accesses unit exam sessions.
      */
-    public void purgeExpired(final Cache cache) {
+    private final class Handler implements IHtmlSessionHandler<UnitExamSession> {
+
+        /**
+         * Gets the key under which a session is stored.
+         *
+         * @param session the session
+         * @return the key
+         */
+        @Override
+        public String getKey(final UnitExamSession session) {
+
+            return HtmlSessionStore.makeKey(session.sessionId, session.version);
+        }
 
-        synchronized (this.unitExamSessions) {
-            final Iterator<Map.Entry<String, Map<String, UnitExamSession>>> outerIter =
-                    this.unitExamSessions.entrySet().iterator();
+        /**
+         * Tests whether a session has timed out.
+         *
+         * @param session the session
+         * @return {@code true} if the session has timed out
+         */
+        @Override
+        public boolean isTimedOut(final UnitExamSession session) {
 
-            while (outerIter.hasNext()) {
-                final Map<String, UnitExamSession> inner = outerIter.next().getValue();
+            return session.isTimedOut();
+        }
 
-                final Iterator<Map.Entry<String, UnitExamSession>> innerIter = inner.entrySet().iterator();
+        /**
+         * Tests whether a session should be purged.
+         *
+         * @param session the session
+         * @return {@code true} if the session should be purged
+         */
+        @Override
+        public boolean isPurgable(final UnitExamSession session) {
 
-                while (innerIter.hasNext()) {
-                    final UnitExamSession sess = innerIter.next().getValue();
+            return session.isPurgable();
+        }
 
-                    if (sess.isPurgable()) {
-                        try {
-                            if (sess.getState() == EUnitExamState.ITEM_NN
-                                || sess.getState() == EUnitExamState.SUBMIT_NN) {
-                                // Force-submit
-                                sess.scoreAndRecordCompletion(cache, ZonedDateTime.now());
-                            } else {
-                                sess.writeExamRecovery(cache);
-                            }
-                        } catch (final SQLException ex) {
-                            Log.warning(ex);
-                        }
+        /**
+         * Appends the XML representation of a session's state.
+         *
+         * @param session the session
+         * @param xml     the {@code HtmlBuilder} to which to append
+         */
+        @Override
+        public void appendXml(final UnitExamSession session, final HtmlBuilder xml) {
 
-                        Log.info("Purging expired HTML unit exam session " + sess.sessionId);
-                        innerIter.remove();
-                    }
-                }
+            session.appendXml(xml);
+        }
+
+        /**
+         * Parses a session from its XML representation.
+         *
+         * @param cache the data cache
+         * @param xml   the source XML
+         * @param elem  the XML element
+         * @return the parsed session
+         * @throws IllegalArgumentException if the XML could not be parsed
+         * @throws SQLException             if there is an error accessing the database
+         */
+        @Override
+        public UnitExamSession parse(final Cache cache, final String xml, final NonemptyElement elem)
+                throws IllegalArgumentException, SQLException {
+
+            return parseSession(cache, xml, elem);
+        }
+
+        /**
+         * Called for a session that is being purged. An exam that was started but abandoned is submitted; otherwise,
+         * an exam recovery record is written.
+         *
+         * @param cache   the data cache
+         * @param session the session
+         */
+        @Override
+        public void expire(final Cache cache, final UnitExamSession session) {
 
-                if (inner.isEmpty()) {
-                    outerIter.remove();
+            try {
+                if (session.getState() == EUnitExamState.ITEM_NN || session.getState() == EUnitExamState.SUBMIT_NN) {
+                    // Force-submit
+                    session.scoreAndRecordCompletion(cache, ZonedDateTime.now());
+                } else {
+                    session.writeExamRecovery(cache);
                 }
+            } catch (final SQLException ex) {
+                Log.warning(ex);
             }
         }
+
+        /**
+         * Called after each scheduled sweep to discard exam codes whose login sessions no longer exist.
+         */
+        @Override
+        public void sweep() {
+
+            purgeExamCodes();
+        }
     }
 }
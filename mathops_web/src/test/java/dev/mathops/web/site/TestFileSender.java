@@ -0,0 +1,424 @@
+package dev.mathops.web.site;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@code FileSender} class.
+ */
+final class TestFileSender {
+
+    /** The length of the test file. */
+    private static final long LENGTH = 1000L;
+
+    /** The modification time of the test file. */
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    /** The request attribute with which Tomcat indicates sendfile support. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    /** A temporary directory in which to store the test file. */
+    @TempDir
+    File dir;
+
+    /**
+     * Constructs a new {@code TestFileSender}
+     */
+    TestFileSender() {
+
+        //  No action
+    }
+
+    /**
+     * Creates a range.
+     *
+     * @param first the index of the first byte
+     * @param last  the index of the last byte
+     * @return the range
+     */
+    private static FileSender.ByteRange range(final long first, final long last) {
+
+        return new FileSender.ByteRange(first, last);
+    }
+
+    /**
+     * Parses a {@code Range} header against the length of the test file.
+     *
+     * @param header the header
+     * @return the parsed ranges
+     */
+    private static List<FileSender.ByteRange> parse(final String header) {
+
+        return FileSender.parseRanges(header, LENGTH);
+    }
+
+    /**
+     * Formats a time as an HTTP date.
+     *
+     * @param millis the time, in milliseconds since the epoch
+     * @return the formatted date
+     */
+    private static String httpDate(final long millis) {
+
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Writes the test file, whose byte at each position is the low 8 bits of the position.
+     *
+     * @return the file
+     * @throws IOException if the file could not be written
+     */
+    private File writeFile() throws IOException {
+
+        final byte[] data = new byte[(int) LENGTH];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+
+        final File file = new File(this.dir, "media.bin");
+        Files.write(file.toPath(), data);
+        assertTrue(file.setLastModified(MODIFIED), "Unable to set file modification time");
+
+        return file;
+    }
+
+    /**
+     * Gets the entity tag {@code FileSender} sends for a file.
+     *
+     * @param file the file
+     * @return the entity tag
+     */
+    private static String etagOf(final File file) {
+
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    /**
+     * Creates a request with specified headers and attributes.
+     *
+     * @param headers    the request headers
+     * @param attributes the request attributes (updated as the sender sets attributes)
+     * @return the request
+     */
+    private static HttpServletRequest makeRequest(final Map<String, String> headers,
+                                                  final Map<String, Object> attributes) {
+
+        return (HttpServletRequest) Proxy.newProxyInstance(TestFileSender.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    final Object result;
+                    switch (method.getName()) {
+                        case "getHeader" -> result = headers.get((String) args[0]);
+                        case "getDateHeader" -> {
+                            final String value = headers.get((String) args[0]);
+                            try {
+                                result = Long.valueOf(value == null ? -1L : Instant.from(
+                                        DateTimeFormatter.RFC_1123_DATE_TIME.parse(value)).toEpochMilli());
+                            } catch (final DateTimeParseException ex) {
+                                throw new IllegalArgumentException(value, ex);
+                            }
+                        }
+                        case "getAttribute" -> result = attributes.get((String) args[0]);
+                        case "setAttribute" -> result = attributes.put((String) args[0], args[1]);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * A response that records its status, headers, and body.
+     */
+    private static final class Recorder {
+
+        /** The response status. */
+        int status = HttpServletResponse.SC_OK;
+
+        /** The response headers. */
+        final Map<String, String> headers = new HashMap<>(10);
+
+        /** The content length. */
+        long contentLength = -1L;
+
+        /** The response body. */
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(2000);
+
+        /**
+         * Constructs a new {@code Recorder}.
+         */
+        Recorder() {
+
+            // No action
+        }
+
+        /**
+         * Creates a response that records into this object.
+         *
+         * @return the response
+         */
+        HttpServletResponse response() {
+
+            final ServletOutputStream out = new ServletOutputStream() {
+
+                @Override
+                public boolean isReady() {
+
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(final WriteListener listener) {
+
+                    // No action
+                }
+
+                @Override
+                public void write(final int b) {
+
+                    Recorder.this.body.write(b);
+                }
+            };
+
+            return (HttpServletResponse) Proxy.newProxyInstance(TestFileSender.class.getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                        Object result = null;
+                        switch (method.getName()) {
+                            case "setHeader" -> this.headers.put((String) args[0], (String) args[1]);
+                            case "setDateHeader" -> this.headers.put((String) args[0], args[1].toString());
+                            case "setContentType" -> this.headers.put("Content-Type", (String) args[0]);
+                            case "setContentLengthLong" -> this.contentLength = ((Long) args[0]).longValue();
+                            case "setStatus", "sendError" -> this.status = ((Integer) args[0]).intValue();
+                            case "getOutputStream" -> result = out;
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        }
+                        return result;
+                    });
+        }
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Single, open-ended, and suffix ranges")
+    void test0101() {
+
+        assertEquals(List.of(range(0L, 99L)), parse("bytes=0-99"), "Single range is incorrect");
+        assertEquals(List.of(range(500L, 999L)), parse("bytes=500-"), "Open-ended range is incorrect");
+        assertEquals(List.of(range(800L, 999L)), parse("bytes=-200"), "Suffix range is incorrect");
+        assertEquals(List.of(range(999L, 999L)), parse("bytes=999-999"), "Last byte range is incorrect");
+        assertEquals(List.of(range(0L, 0L)), parse("bytes= 0-0 "), "First byte range is incorrect");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Ranges extending past the end of the file")
+    void test0102() {
+
+        assertEquals(List.of(range(900L, 999L)), parse("bytes=900-2000"), "Range should be clamped to the file");
+        assertEquals(List.of(range(0L, 999L)), parse("bytes=-5000"), "Suffix should be clamped to the file");
+        assertEquals(List.of(), parse("bytes=1000-"), "Range starting at the end is unsatisfiable");
+        assertEquals(List.of(), parse("bytes=1000-1999"), "Range past the end is unsatisfiable");
+        assertEquals(List.of(), parse("bytes=-0"), "Empty suffix is unsatisfiable");
+        assertEquals(List.of(range(0L, 9L)), parse("bytes=0-9,2000-3000"),
+                "Unsatisfiable range should be dropped from a list");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Multiple ranges are sorted and merged")
+    void test0103() {
+
+        assertEquals(List.of(range(0L, 9L), range(20L, 29L)), parse("bytes=0-9,20-29"), "Ranges are incorrect");
+        assertEquals(List.of(range(0L, 9L), range(20L, 29L)), parse("bytes=20-29,0-9"), "Ranges should be sorted");
+        assertEquals(List.of(range(0L, 30L)), parse("bytes=0-9,5-30"), "Overlapping ranges should be merged");
+        assertEquals(List.of(range(0L, 19L)), parse("bytes=0-9,10-19"), "Adjacent ranges should be merged");
+        assertEquals(List.of(range(0L, 9L), range(11L, 19L)), parse("bytes=0-9,11-19"),
+                "Ranges with a gap should not be merged");
+        assertEquals(List.of(range(0L, 999L)), parse("bytes=-100,0-899,950-"), "Covering ranges should be merged");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Merge of unsorted, nested, and duplicate ranges")
+    void test0104() {
+
+        final List<FileSender.ByteRange> ranges = new ArrayList<>(List.of(range(50L, 60L), range(0L, 100L),
+                range(200L, 300L), range(200L, 300L), range(301L, 310L), range(400L, 400L)));
+
+        assertEquals(List.of(range(0L, 100L), range(200L, 310L), range(400L, 400L)), FileSender.merge(ranges),
+                "Merged ranges are incorrect");
+        assertEquals(List.of(), FileSender.merge(new ArrayList<>(0)), "Merge of no ranges should be empty");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Malformed headers are ignored")
+    void test0105() {
+
+        assertNull(parse("items=0-9"), "Unknown unit should be ignored");
+        assertNull(parse("bytes=5"), "Range without a dash should be ignored");
+        assertNull(parse("bytes=a-9"), "Non-numeric range should be ignored");
+        assertNull(parse("bytes=-"), "Range with no values should be ignored");
+        assertNull(parse("bytes=9-3"), "Reversed range should be ignored");
+        assertNull(parse("bytes=0-9,9-3"), "List with a reversed range should be ignored");
+
+        final StringBuilder many = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= 20; ++i) {
+            many.append(',').append(i * 10).append('-').append(i * 10);
+        }
+        assertNull(parse(many.toString()), "More than the maximum number of ranges should be ignored");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Ranges of an empty file")
+    void test0106() {
+
+        assertEquals(List.of(), FileSender.parseRanges("bytes=0-", 0L), "Open-ended range of empty file");
+        assertEquals(List.of(), FileSender.parseRanges("bytes=-5", 0L), "Suffix range of empty file");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Single range and unsatisfiable range responses")
+    void test0107() throws IOException {
+
+        final File file = writeFile();
+
+        final Map<String, Object> attributes = new HashMap<>(4);
+        attributes.put(SENDFILE_SUPPORT, Boolean.TRUE);
+        final Recorder partial = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=100-199"), attributes), partial.response(),
+                "video/mp4", file);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, partial.status, "Range should give partial content");
+        assertEquals("bytes 100-199/1000", partial.headers.get("Content-Range"), "Content range is incorrect");
+        assertEquals(100L, partial.contentLength, "Content length is incorrect");
+        assertEquals(Long.valueOf(100L), attributes.get("org.apache.tomcat.sendfile.start"), "Start is incorrect");
+        assertEquals(Long.valueOf(200L), attributes.get("org.apache.tomcat.sendfile.end"), "End is incorrect");
+
+        final Recorder unsatisfiable = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=1000-"), new HashMap<>(4)), unsatisfiable.response(),
+                "video/mp4", file);
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, unsatisfiable.status,
+                "Unsatisfiable range should give 416");
+        assertEquals("bytes */1000", unsatisfiable.headers.get("Content-Range"), "Content range is incorrect");
+
+        final Recorder malformed = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=9-3"), new HashMap<>(4)), malformed.response(),
+                "video/mp4", file);
+
+        assertEquals(HttpServletResponse.SC_OK, malformed.status, "Malformed range should give whole file");
+        assertEquals(LENGTH, (long) malformed.body.size(), "Whole file should be sent");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Multiple ranges are sent as multipart/byteranges")
+    void test0108() throws IOException {
+
+        final File file = writeFile();
+        final Recorder rec = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9,500-509"), new HashMap<>(4)), rec.response(),
+                "video/mp4", file);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, rec.status, "Ranges should give partial content");
+        final String type = rec.headers.get("Content-Type");
+        assertTrue(type.startsWith("multipart/byteranges; boundary="), "Content type is incorrect");
+        assertEquals((long) rec.body.size(), rec.contentLength, "Content length should match body");
+
+        final String boundary = type.substring(type.indexOf('=') + 1);
+        final String body = rec.body.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-9/1000"), "First part is missing");
+        assertTrue(body.contains("Content-Range: bytes 500-509/1000"), "Second part is missing");
+        assertTrue(body.endsWith("\r\n--" + boundary + "--\r\n"), "Closing boundary is missing");
+
+        final int second = body.indexOf("Content-Range: bytes 500-509/1000");
+        final int data = body.indexOf("\r\n\r\n", second) + 4;
+        assertEquals((char) (500 & 0xFF), body.charAt(data), "Second part has incorrect data");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("If-Range honors ranges only for the current file")
+    void test0109() throws IOException {
+
+        final File file = writeFile();
+        final String etag = etagOf(file);
+
+        final Recorder sameTag = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9", "If-Range", etag), new HashMap<>(4)),
+                sameTag.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, sameTag.status, "Matching tag should honor range");
+        assertEquals(10, sameTag.body.size(), "Range should be sent");
+
+        final Recorder otherTag = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9", "If-Range", "\"other\""), new HashMap<>(4)),
+                otherTag.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_OK, otherTag.status, "Stale tag should send whole file");
+        assertEquals(LENGTH, (long) otherTag.body.size(), "Whole file should be sent");
+
+        final Recorder sameDate = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9", "If-Range", httpDate(MODIFIED)), new HashMap<>(4)),
+                sameDate.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, sameDate.status, "Matching date should honor range");
+
+        final Recorder oldDate = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9", "If-Range", httpDate(MODIFIED - 60000L)),
+                new HashMap<>(4)), oldDate.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_OK, oldDate.status, "Stale date should send whole file");
+
+        final Recorder badDate = new Recorder();
+        FileSender.send(makeRequest(Map.of("Range", "bytes=0-9", "If-Range", "yesterday"), new HashMap<>(4)),
+                badDate.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_OK, badDate.status, "Malformed date should send whole file");
+    }
+
+    /** Test case. */
+    @Test
+    @DisplayName("Conditional requests for an unchanged file")
+    void test0110() throws IOException {
+
+        final File file = writeFile();
+
+        final Recorder tag = new Recorder();
+        FileSender.send(makeRequest(Map.of("If-None-Match", "\"x\", W/" + etagOf(file)), new HashMap<>(4)),
+                tag.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tag.status, "Matching tag should give 304");
+        assertEquals(0, tag.body.size(), "No body should be sent");
+
+        final Recorder date = new Recorder();
+        FileSender.send(makeRequest(Map.of("If-Modified-Since", httpDate(MODIFIED)), new HashMap<>(4)),
+                date.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, date.status, "Unchanged date should give 304");
+
+        final Recorder changed = new Recorder();
+        FileSender.send(makeRequest(Map.of("If-None-Match", "\"x\"", "If-Modified-Since", httpDate(MODIFIED)),
+                new HashMap<>(4)), changed.response(), "video/mp4", file);
+        assertEquals(HttpServletResponse.SC_OK, changed.status, "If-None-Match should take precedence");
+    }
+}